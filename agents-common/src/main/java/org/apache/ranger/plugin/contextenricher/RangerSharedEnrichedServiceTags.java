@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.contextenricher;
+
+import org.apache.ranger.plugin.contextenricher.RangerTagEnricher.EnrichedServiceTags;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/*
+ * Shares EnrichedServiceTags - i.e. the resource-matchers and resource-tries built from service-tags - among
+ * tag-enrichers of the same service in a JVM, so that these are built once for each version of service-tags.
+ *
+ * Entries are reference counted: an entry is removed once every tag-enricher that acquired it has released it,
+ * on moving to another version of service-tags or on cleanup. Shared EnrichedServiceTags must not be updated in place.
+ */
+final class RangerSharedEnrichedServiceTags {
+	private static final Logger LOG = LoggerFactory.getLogger(RangerSharedEnrichedServiceTags.class);
+
+	private static final Map<Key, Entry> ENTRIES = new HashMap<>();
+
+	private RangerSharedEnrichedServiceTags() {
+	}
+
+	/*
+	 * returns null when the version of service-tags is not known, as service-tags without a version can't be shared
+	 */
+	static Key getKey(String serviceName, RangerServiceDef serviceDef, Long tagVersion, boolean disableTrieLookupPrefilter, boolean optimizeTrieForRetrieval, boolean optimizeTrieForSpace) {
+		if (serviceName == null || serviceDef == null || tagVersion == null || tagVersion < 0) {
+			return null;
+		}
+
+		return new Key(serviceName, serviceDef.getName(), serviceDef.getVersion(), tagVersion, disableTrieLookupPrefilter, optimizeTrieForRetrieval, optimizeTrieForSpace);
+	}
+
+	/*
+	 * returns the entry for the given key, after building its EnrichedServiceTags with the given builder if no other
+	 * tag-enricher did. When builder is null, returns null if the entry is not present. Returns null when the builder
+	 * returns null.
+	 *
+	 * The returned entry must be released, by calling release(), once the caller stops using it.
+	 */
+	static Entry acquire(Key key, Supplier<EnrichedServiceTags> builder) {
+		final Entry entry;
+
+		synchronized (ENTRIES) {
+			Entry existing = ENTRIES.get(key);
+
+			if (existing == null) {
+				if (builder == null) {
+					return null;
+				}
+
+				existing = new Entry(key);
+
+				ENTRIES.put(key, existing);
+			}
+
+			existing.refCount++;
+
+			entry = existing;
+		}
+
+		boolean isAcquired = false;
+
+		try {
+			isAcquired = entry.build(builder) != null;
+		} finally {
+			if (!isAcquired) {
+				release(entry);
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerSharedEnrichedServiceTags.acquire(" + key + "): refCount=" + entry.refCount);
+		}
+
+		return isAcquired ? entry : null;
+	}
+
+	static void release(Entry entry) {
+		if (entry != null) {
+			synchronized (ENTRIES) {
+				entry.refCount--;
+
+				if (entry.refCount <= 0) {
+					ENTRIES.remove(entry.key, entry);
+				}
+			}
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("RangerSharedEnrichedServiceTags.release(" + entry.key + "): refCount=" + entry.refCount);
+			}
+		}
+	}
+
+	// for tests
+	static int getEntryCount() {
+		synchronized (ENTRIES) {
+			return ENTRIES.size();
+		}
+	}
+
+	static final class Entry {
+		private final Key                 key;
+		private       int                 refCount;
+		private       boolean             isBuilt;
+		private       EnrichedServiceTags value;
+
+		private Entry(Key key) {
+			this.key = key;
+		}
+
+		synchronized EnrichedServiceTags getValue() {
+			return value;
+		}
+
+		private synchronized EnrichedServiceTags build(Supplier<EnrichedServiceTags> builder) {
+			if (!isBuilt && builder != null) {
+				value   = builder.get();
+				isBuilt = true;
+			}
+
+			return value;
+		}
+	}
+
+	static final class Key {
+		private final String  serviceName;
+		private final String  serviceDefName;
+		private final Long    serviceDefVersion;
+		private final Long    tagVersion;
+		private final boolean disableTrieLookupPrefilter;
+		private final boolean optimizeTrieForRetrieval;
+		private final boolean optimizeTrieForSpace;
+
+		private Key(String serviceName, String serviceDefName, Long serviceDefVersion, Long tagVersion, boolean disableTrieLookupPrefilter, boolean optimizeTrieForRetrieval, boolean optimizeTrieForSpace) {
+			this.serviceName                = serviceName;
+			this.serviceDefName             = serviceDefName;
+			this.serviceDefVersion          = serviceDefVersion;
+			this.tagVersion                 = tagVersion;
+			this.disableTrieLookupPrefilter = disableTrieLookupPrefilter;
+			this.optimizeTrieForRetrieval   = optimizeTrieForRetrieval;
+			this.optimizeTrieForSpace       = optimizeTrieForSpace;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(serviceName, serviceDefName, serviceDefVersion, tagVersion, disableTrieLookupPrefilter, optimizeTrieForRetrieval, optimizeTrieForSpace);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) obj;
+
+			return Objects.equals(serviceName, other.serviceName) &&
+			       Objects.equals(serviceDefName, other.serviceDefName) &&
+			       Objects.equals(serviceDefVersion, other.serviceDefVersion) &&
+			       Objects.equals(tagVersion, other.tagVersion) &&
+			       disableTrieLookupPrefilter == other.disableTrieLookupPrefilter &&
+			       optimizeTrieForRetrieval == other.optimizeTrieForRetrieval &&
+			       optimizeTrieForSpace == other.optimizeTrieForSpace;
+		}
+
+		@Override
+		public String toString() {
+			return "{serviceName=" + serviceName + ", serviceDef=" + serviceDefName + ":" + serviceDefVersion + ", tagVersion=" + tagVersion + "}";
+		}
+	}
+}
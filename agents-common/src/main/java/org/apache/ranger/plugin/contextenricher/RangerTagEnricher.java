@@ -34,6 +34,7 @@
 import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
 import org.apache.ranger.plugin.policyengine.RangerAccessResource;
 import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
 import org.apache.ranger.plugin.policyengine.RangerResourceTrie;
 import org.apache.ranger.plugin.policyresourcematcher.RangerDefaultPolicyResourceMatcher;
 import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
@@ -82,12 +83,14 @@ public class RangerTagEnricher extends RangerAbstractContextEnricher {
 	public static final String TAG_RETRIEVER_CLASSNAME_OPTION        = "tagRetrieverClassName";
 	private static final String TAG_DISABLE_TRIE_PREFILTER_OPTION    = "disableTrieLookupPrefilter";
 
-	private RangerTagRefresher                 tagRefresher;
-	private RangerTagRetriever                 tagRetriever;
-	private boolean                            disableTrieLookupPrefilter;
-	private EnrichedServiceTags                enrichedServiceTags;
-	private boolean                            disableCacheIfServiceNotFound = true;
-	private boolean                            dedupStrings                  = true;
+	private RangerTagRefresher                    tagRefresher;
+	private RangerTagRetriever                    tagRetriever;
+	private boolean                               disableTrieLookupPrefilter;
+	private volatile EnrichedServiceTags          enrichedServiceTags;
+	private boolean                               disableCacheIfServiceNotFound = true;
+	private boolean                               dedupStrings                  = true;
+	private boolean                               shareEnrichedServiceTags      = false;
+	private RangerSharedEnrichedServiceTags.Entry sharedEnrichedServiceTags;
 
 	private final BlockingQueue<DownloadTrigger> tagDownloadQueue = new LinkedBlockingQueue<>();
 	private Timer                              tagDownloadTimer;
@@ -109,6 +112,7 @@ public void init() {
 
 		dedupStrings               = getBooleanConfig(propertyPrefix + ".dedup.strings", true);
 		disableTrieLookupPrefilter = getBooleanOption(TAG_DISABLE_TRIE_PREFILTER_OPTION, false);
+		shareEnrichedServiceTags   = getBooleanConfig(propertyPrefix + RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_SHARED_TAG_ENRICHMENT, RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_SHARED_TAG_ENRICHMENT_DEFAULT);
 		serviceDefHelper           = new RangerServiceDefHelper(serviceDef, false);
 
 		if (StringUtils.isNotBlank(tagRetrieverClassName)) {
@@ -303,7 +307,7 @@ protected void setServiceTags(final ServiceTags serviceTags, final boolean rebui
 
 			if (serviceTags == null) {
 				LOG.info("ServiceTags is null for service " + serviceName);
-				enrichedServiceTags = null;
+				setEnrichedServiceTags(null, false);
 			} else {
 				if (dedupStrings) {
 					serviceTags.dedupStrings();
@@ -311,6 +315,10 @@ protected void setServiceTags(final ServiceTags serviceTags, final boolean rebui
 
 				if (!serviceTags.getIsDelta()) {
 					processServiceTags(serviceTags);
+				} else if (!rebuildOnlyIndex && setSharedEnrichedServiceTags(serviceTags.getTagVersion())) {
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("Using service-tags version " + serviceTags.getTagVersion() + " shared by another tag-enricher; ignoring deltas");
+					}
 				} else {
 					if (LOG.isDebugEnabled()) {
 						LOG.debug("Received service-tag deltas:" + serviceTags);
@@ -329,17 +337,17 @@ protected void setServiceTags(final ServiceTags serviceTags, final boolean rebui
 							if (enrichedServiceTags == null) {
 								trieMap = new HashMap<>();
 							} else {
-								trieMap = writeLock.isLockingEnabled() ? enrichedServiceTags.getServiceResourceTrie() : copyServiceResourceTrie();
+								trieMap = writeLock.isLockingEnabled() && !shareEnrichedServiceTags ? enrichedServiceTags.getServiceResourceTrie() : copyServiceResourceTrie();
 							}
 
-							processServiceTagDeltas(serviceTags, allServiceTags, trieMap);
+							processServiceTagDeltas(serviceTags, allServiceTags, trieMap, !rebuildOnlyIndex);
 						} else {
 							if (LOG.isDebugEnabled()) {
 								LOG.debug("Delta contains only tag attribute changes");
 							}
 							List<RangerServiceResourceMatcher> resourceMatchers = enrichedServiceTags != null ? enrichedServiceTags.getServiceResourceMatchers() : new ArrayList<>();
 							Map<String, RangerResourceTrie<RangerServiceResourceMatcher>> serviceResourceTrie = enrichedServiceTags != null ? enrichedServiceTags.getServiceResourceTrie() : new HashMap<>();
-							enrichedServiceTags = new EnrichedServiceTags(allServiceTags, resourceMatchers, serviceResourceTrie);
+							setEnrichedServiceTags(new EnrichedServiceTags(allServiceTags, resourceMatchers, serviceResourceTrie), !rebuildOnlyIndex);
 						}
 					}
 				}
@@ -391,6 +399,11 @@ public boolean preCleanup() {
 			tagRefresher.cleanup();
 		}
 
+		RangerSharedEnrichedServiceTags.Entry sharedEnrichedServiceTags = this.sharedEnrichedServiceTags;
+		this.sharedEnrichedServiceTags = null;
+
+		RangerSharedEnrichedServiceTags.release(sharedEnrichedServiceTags);
+
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerTagEnricher.preCleanup() : result=" + true);
 		}
@@ -423,9 +436,21 @@ private void processServiceTags(ServiceTags serviceTags) {
 			LOG.debug("Processing all service-tags");
 		}
 
+		RangerSharedEnrichedServiceTags.Key sharedKey = getSharedKey(serviceTags.getTagVersion());
+
+		if (sharedKey != null) {
+			setSharedEnrichedServiceTags(RangerSharedEnrichedServiceTags.acquire(sharedKey, () -> buildEnrichedServiceTags(serviceTags)));
+		} else {
+			setEnrichedServiceTags(buildEnrichedServiceTags(serviceTags), false);
+		}
+	}
+
+	private EnrichedServiceTags buildEnrichedServiceTags(ServiceTags serviceTags) {
+		final EnrichedServiceTags ret;
+
 		if (CollectionUtils.isEmpty(serviceTags.getServiceResources())) {
 			LOG.info("There are no tagged resources for service " + serviceName);
-			enrichedServiceTags = null;
+			ret = null;
 		} else {
 			ResourceHierarchies                hierarchies      = new ResourceHierarchies();
 			List<RangerServiceResourceMatcher> resourceMatchers = new ArrayList<>();
@@ -455,11 +480,13 @@ private void processServiceTags(ServiceTags serviceTags) {
 					serviceResourceTrie.put(resourceDef.getName(), new RangerResourceTrie(resourceDef, resourceMatchers, getPolicyEngineOptions().optimizeTagTrieForRetrieval, getPolicyEngineOptions().optimizeTagTrieForSpace, null));
 				}
 			}
-			enrichedServiceTags = new EnrichedServiceTags(serviceTags, resourceMatchers, serviceResourceTrie);
+			ret = new EnrichedServiceTags(serviceTags, resourceMatchers, serviceResourceTrie);
 		}
+
+		return ret;
 	}
 
-	private void processServiceTagDeltas(ServiceTags deltas, ServiceTags allServiceTags, Map<String, RangerResourceTrie<RangerServiceResourceMatcher>> serviceResourceTrie) {
+	private void processServiceTagDeltas(ServiceTags deltas, ServiceTags allServiceTags, Map<String, RangerResourceTrie<RangerServiceResourceMatcher>> serviceResourceTrie, boolean isShareable) {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("Delta contains changes other than tag attribute changes, [" + deltas.getTagsChangeExtent() + "]");
 		}
@@ -468,6 +495,7 @@ private void processServiceTagDeltas(ServiceTags deltas, ServiceTags allServiceT
 
 		ResourceHierarchies                hierarchies      = new ResourceHierarchies();
 		List<RangerServiceResourceMatcher> resourceMatchers = new ArrayList<>();
+		Set<RangerServiceResourceMatcher>  removedMatchers  = new HashSet<>();
 
 		if (enrichedServiceTags != null) {
 			resourceMatchers.addAll(enrichedServiceTags.getServiceResourceMatchers());
@@ -476,7 +504,7 @@ private void processServiceTagDeltas(ServiceTags deltas, ServiceTags allServiceT
 		List<RangerServiceResource> changedServiceResources = deltas.getServiceResources();
 
 		for (RangerServiceResource serviceResource : changedServiceResources) {
-			final boolean removedOldServiceResource = MapUtils.isEmpty(serviceResource.getResourceElements()) || removeOldServiceResource(serviceResource, resourceMatchers, serviceResourceTrie);
+			final boolean removedOldServiceResource = MapUtils.isEmpty(serviceResource.getResourceElements()) || removeOldServiceResource(serviceResource, removedMatchers, serviceResourceTrie);
 
 			if (removedOldServiceResource) {
 				if (!StringUtils.isEmpty(serviceResource.getResourceSignature())) {
@@ -529,11 +557,16 @@ private void processServiceTagDeltas(ServiceTags deltas, ServiceTags allServiceT
 			for (Map.Entry<String, RangerResourceTrie<RangerServiceResourceMatcher>> entry : serviceResourceTrie.entrySet()) {
 				entry.getValue().wrapUpUpdate();
 			}
-			enrichedServiceTags = new EnrichedServiceTags(allServiceTags, resourceMatchers, serviceResourceTrie);
+
+			if (!removedMatchers.isEmpty()) {
+				resourceMatchers.removeIf(removedMatchers::contains);
+			}
+
+			setEnrichedServiceTags(new EnrichedServiceTags(allServiceTags, resourceMatchers, serviceResourceTrie), isShareable);
 		}
 	}
 
-	private boolean removeOldServiceResource(RangerServiceResource serviceResource, List<RangerServiceResourceMatcher> resourceMatchers, Map<String, RangerResourceTrie<RangerServiceResourceMatcher>> resourceTries) {
+	private boolean removeOldServiceResource(RangerServiceResource serviceResource, Set<RangerServiceResourceMatcher> removedMatchers, Map<String, RangerResourceTrie<RangerServiceResourceMatcher>> resourceTries) {
 		boolean ret = true;
 
 		if (enrichedServiceTags != null) {
@@ -599,7 +632,8 @@ private boolean removeOldServiceResource(RangerServiceResource serviceResource,
 			}
 
 			if (ret) {
-				resourceMatchers.removeAll(oldMatchers);
+				// removed from resource-matchers list in a single pass, after processing all deltas
+				removedMatchers.addAll(oldMatchers);
 
 				if (LOG.isDebugEnabled()) {
 					LOG.debug("Found and removed [" + oldMatchers + "] matchers for service-resource[" + serviceResource + "] from trie-map");
@@ -660,6 +694,63 @@ static public RangerServiceResourceMatcher createRangerServiceResourceMatcher(Ra
 
 	}
 
+	private RangerSharedEnrichedServiceTags.Key getSharedKey(Long tagVersion) {
+		if (!shareEnrichedServiceTags) {
+			return null;
+		}
+
+		RangerPolicyEngineOptions options = getPolicyEngineOptions();
+
+		return RangerSharedEnrichedServiceTags.getKey(serviceName, serviceDef, tagVersion, disableTrieLookupPrefilter, options.optimizeTagTrieForRetrieval, options.optimizeTagTrieForSpace);
+	}
+
+	/*
+	 * makes the given enrichedServiceTags current. When sharing is enabled and isShareable is true, these are shared with
+	 * other tag-enrichers of the service - unless another tag-enricher already shared the same version, in which case that
+	 * is used instead. An index rebuilt without a change in version (rebuildOnlyIndex) is not shareable: the entry of that
+	 * version, which it is meant to replace, would be used instead
+	 */
+	private void setEnrichedServiceTags(final EnrichedServiceTags enrichedServiceTags, boolean isShareable) {
+		RangerSharedEnrichedServiceTags.Key sharedKey = enrichedServiceTags != null && isShareable ? getSharedKey(enrichedServiceTags.getServiceTags().getTagVersion()) : null;
+
+		if (sharedKey != null) {
+			setSharedEnrichedServiceTags(RangerSharedEnrichedServiceTags.acquire(sharedKey, () -> enrichedServiceTags));
+		} else {
+			RangerSharedEnrichedServiceTags.Entry oldShared = this.sharedEnrichedServiceTags;
+
+			this.enrichedServiceTags       = enrichedServiceTags;
+			this.sharedEnrichedServiceTags = null;
+
+			RangerSharedEnrichedServiceTags.release(oldShared);
+		}
+	}
+
+	/*
+	 * makes the given shared entry current, after releasing the earlier one. The entry must have been acquired by the caller
+	 */
+	private void setSharedEnrichedServiceTags(RangerSharedEnrichedServiceTags.Entry shared) {
+		RangerSharedEnrichedServiceTags.Entry oldShared = this.sharedEnrichedServiceTags;
+
+		this.enrichedServiceTags       = shared != null ? shared.getValue() : null;
+		this.sharedEnrichedServiceTags = shared;
+
+		RangerSharedEnrichedServiceTags.release(oldShared);
+	}
+
+	/*
+	 * uses EnrichedServiceTags of the given version shared by another tag-enricher, if present
+	 */
+	private boolean setSharedEnrichedServiceTags(Long tagVersion) {
+		RangerSharedEnrichedServiceTags.Key   sharedKey = getSharedKey(tagVersion);
+		RangerSharedEnrichedServiceTags.Entry shared    = sharedKey != null ? RangerSharedEnrichedServiceTags.acquire(sharedKey, null) : null;
+
+		if (shared != null) {
+			setSharedEnrichedServiceTags(shared);
+		}
+
+		return shared != null;
+	}
+
 	private void setEnrichedServiceTagsInPlugin() {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> setEnrichedServiceTagsInPlugin()");
@@ -829,12 +920,13 @@ private static Set<RangerTagForEval> getTagsForServiceResource(Date accessTime,
 		return ret;
 	}
 
+	// copies share trie-nodes with the current tries; applying deltas copies only the nodes updated
 	private Map<String, RangerResourceTrie<RangerServiceResourceMatcher>> copyServiceResourceTrie() {
 		Map<String, RangerResourceTrie<RangerServiceResourceMatcher>> ret = new HashMap<>();
 
 		if (enrichedServiceTags != null) {
 			for (Map.Entry<String, RangerResourceTrie<RangerServiceResourceMatcher>> entry : enrichedServiceTags.getServiceResourceTrie().entrySet()) {
-				RangerResourceTrie<RangerServiceResourceMatcher> resourceTrie = new RangerResourceTrie<>(entry.getValue());
+				RangerResourceTrie<RangerServiceResourceMatcher> resourceTrie = new RangerResourceTrie<>(entry.getValue(), true);
 				ret.put(entry.getKey(), resourceTrie);
 			}
 		}
@@ -24,6 +24,7 @@
 import org.apache.ranger.plugin.service.RangerAuthContext;
 import org.apache.ranger.plugin.util.DownloaderTask;
 import org.apache.ranger.plugin.util.DownloadTrigger;
+import org.apache.ranger.plugin.util.RangerCompactUserStore;
 import org.apache.ranger.plugin.util.RangerUserStore;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
@@ -46,6 +47,7 @@ public class RangerUserStoreEnricher extends RangerAbstractContextEnricher {
     private       RangerUserStore                rangerUserStore;
     private       boolean                        disableCacheIfServiceNotFound = true;
     private       boolean                        dedupStrings                  = true;
+    private       boolean                        compactUserStore              = false;
     private final BlockingQueue<DownloadTrigger> userStoreDownloadQueue = new LinkedBlockingQueue<>();
     private       Timer                          userStoreDownloadTimer;
 
@@ -61,7 +63,8 @@ public void init() {
         String userStoreRetrieverClassName = getOption(USERSTORE_RETRIEVER_CLASSNAME_OPTION);
         long   pollingIntervalMs           = getLongOption(USERSTORE_REFRESHER_POLLINGINTERVAL_OPTION, 3600 * 1000);
 
-        dedupStrings = getBooleanConfig(propertyPrefix + ".dedup.strings", true);
+        dedupStrings     = getBooleanConfig(propertyPrefix + ".dedup.strings", true);
+        compactUserStore = getBooleanConfig(propertyPrefix + ".userstore.compact.enabled", false);
 
         if (StringUtils.isNotBlank(userStoreRetrieverClassName)) {
 
@@ -193,11 +196,15 @@ public void setRangerUserStore(final RangerUserStore rangerUserStore) {
                 perf = RangerPerfTracer.getPerfTracer(PERF_SET_USERSTORE_LOG, "RangerUserStoreEnricher.setRangerUserStore(newUserStoreVersion=" + rangerUserStore.getUserStoreVersion() + ")");
             }
 
-            if (dedupStrings) {
-                rangerUserStore.dedupStrings();
-            }
+            if (compactUserStore) {
+                this.rangerUserStore = rangerUserStore instanceof RangerCompactUserStore ? rangerUserStore : new RangerCompactUserStore(rangerUserStore);
+            } else {
+                if (dedupStrings) {
+                    rangerUserStore.dedupStrings();
+                }
 
-            this.rangerUserStore = rangerUserStore;
+                this.rangerUserStore = rangerUserStore;
+            }
 
             RangerPerfTracer.logAlways(perf);
         }
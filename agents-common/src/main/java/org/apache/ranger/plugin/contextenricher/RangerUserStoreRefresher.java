@@ -29,6 +29,7 @@
 import org.apache.ranger.plugin.util.DownloadTrigger;
 import org.apache.ranger.plugin.util.RangerRESTClient;
 import org.apache.ranger.plugin.util.RangerUserStore;
+import org.apache.ranger.plugin.util.RangerCompactUserStore;
 import org.apache.ranger.plugin.util.RangerServiceNotFoundException;
 import org.apache.ranger.plugin.util.RangerRESTUtils;
 import org.slf4j.Logger;
@@ -44,6 +45,7 @@
 import java.security.PrivilegedAction;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 
 public class RangerUserStoreRefresher extends Thread {
@@ -134,6 +136,8 @@ public RangerUserStore populateUserStoreInfo() throws InterruptedException {
                     if (!hasProvidedUserStoreToReceiver) {
                         rangerUserStore = loadFromCache();
                     }
+                } else if (rangerUserStore.getIsDelta()) {
+                    rangerUserStore = applyDelta(rangerUserStore);
                 }
 
                 if (rangerUserStore != null) {
@@ -250,6 +254,30 @@ public void stopRefresher() {
     }
 
 
+    private RangerUserStore applyDelta(RangerUserStore delta) {
+        RangerUserStore current = userStoreEnricher.getRangerUserStore();
+        RangerUserStore ret;
+
+        if (current != null && !current.getIsDelta() && Objects.equals(current.getUserStoreVersion(), lastKnownVersion)) {
+            ret = current.applyDelta(delta);
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("RangerUserStoreRefresher.applyDelta(): applied delta from version " + lastKnownVersion + " to " + delta.getUserStoreVersion()
+                        + ": changedUsers=" + (delta.getChangedUsers() == null ? 0 : delta.getChangedUsers().size())
+                        + ", changedGroups=" + (delta.getChangedGroups() == null ? 0 : delta.getChangedGroups().size()));
+            }
+        } else {
+            // should not happen, as deltas are sent only for lastKnownVersion. Discard, and download full userstore next time
+            LOG.warn("RangerUserStoreRefresher.applyDelta(): received delta for version " + delta.getUserStoreVersion() + ", but current userstore version is "
+                    + (current == null ? null : current.getUserStoreVersion()) + ", lastKnownVersion=" + lastKnownVersion + ". Ignoring the delta");
+
+            ret              = null;
+            lastKnownVersion = -1L;
+        }
+
+        return ret;
+    }
+
     private RangerUserStore loadFromCache() {
         RangerUserStore rangerUserStore = null;
 
@@ -303,7 +331,8 @@ public void saveToCache(RangerUserStore rangerUserStore) {
                 try {
                     writer = new FileWriter(cacheFile);
 
-                    gson.toJson(rangerUserStore, writer);
+                    // fields of RangerCompactUserStore are not serialized by Gson; hence write its views
+                    gson.toJson(rangerUserStore instanceof RangerCompactUserStore ? ((RangerCompactUserStore) rangerUserStore).toRangerUserStore() : rangerUserStore, writer);
                 } catch (Exception excp) {
                     LOG.error("failed to save userstore information to cache file '" + cacheFile.getAbsolutePath() + "'", excp);
                 } finally {
@@ -40,6 +40,7 @@
 import org.apache.ranger.plugin.service.RangerAuthContext;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
 import org.apache.ranger.plugin.util.RangerPolicyDeltaUtil;
+import org.apache.ranger.plugin.util.RangerPrincipalDictionary;
 import org.apache.ranger.plugin.util.RangerReadWriteLock;
 import org.apache.ranger.plugin.util.RangerRoles;
 import org.apache.ranger.plugin.util.ServiceDefUtil;
@@ -66,6 +67,7 @@ public class PolicyEngine {
     private       String[]                            trustedProxyAddresses;
     private final Map<String, StringTokenReplacer>    tokenReplacers = new HashMap<>();
     private final RangerReadWriteLock                 lock;
+    private final RangerPrincipalDictionary           principalDictionary;
 
 
     public RangerReadWriteLock.RangerLock getReadLock() {
@@ -198,8 +200,9 @@ public PolicyEngine(ServicePolicies servicePolicies, RangerPluginContext pluginC
 
         normalizeServiceDefs(servicePolicies);
 
-        this.pluginContext = pluginContext;
-        this.lock          = new RangerReadWriteLock(isUseReadWriteLock);
+        this.pluginContext       = pluginContext;
+        this.lock                = new RangerReadWriteLock(isUseReadWriteLock);
+        this.principalDictionary = new RangerPrincipalDictionary();
         this.zoneMatcher   = new RangerSecurityZoneMatcher(servicePolicies.getSecurityZones(), servicePolicies.getServiceDef(), pluginContext);
 
         Boolean                  hasPolicyDeltas      = RangerPolicyDeltaUtil.hasPolicyDeltas(servicePolicies);
@@ -224,7 +227,7 @@ public PolicyEngine(ServicePolicies servicePolicies, RangerPluginContext pluginC
             options.evaluatorType = RangerPolicyEvaluator.EVALUATOR_TYPE_OPTIMIZED;
         }
 
-        policyRepository = new RangerPolicyRepository(servicePolicies, this.pluginContext);
+        policyRepository = new RangerPolicyRepository(servicePolicies, this.pluginContext, null, principalDictionary);
         serviceDefHelper = new RangerServiceDefHelper(policyRepository.getServiceDef(), false);
 
         ServicePolicies.TagPolicies tagPolicies = servicePolicies.getTagPolicies();
@@ -237,7 +240,7 @@ public PolicyEngine(ServicePolicies servicePolicies, RangerPluginContext pluginC
                 LOG.debug("PolicyEngine : Building tag-policy-repository for tag-service " + tagPolicies.getServiceName());
             }
 
-            tagPolicyRepository = new RangerPolicyRepository(tagPolicies, this.pluginContext, servicePolicies.getServiceDef(), servicePolicies.getServiceName());
+            tagPolicyRepository = new RangerPolicyRepository(tagPolicies, this.pluginContext, servicePolicies.getServiceDef(), servicePolicies.getServiceName(), principalDictionary);
         } else {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("PolicyEngine : No tag-policy-repository for service " + servicePolicies.getServiceName());
@@ -264,12 +267,14 @@ public PolicyEngine(ServicePolicies servicePolicies, RangerPluginContext pluginC
 
         if (MapUtils.isNotEmpty(servicePolicies.getSecurityZones())) {
             for (Map.Entry<String, ServicePolicies.SecurityZoneInfo> zone : servicePolicies.getSecurityZones().entrySet()) {
-                RangerPolicyRepository policyRepository = new RangerPolicyRepository(servicePolicies, this.pluginContext, zone.getKey());
+                RangerPolicyRepository policyRepository = new RangerPolicyRepository(servicePolicies, this.pluginContext, zone.getKey(), principalDictionary);
 
                 zonePolicyRepositories.put(zone.getKey(), policyRepository);
             }
         }
 
+        principalDictionary.setBaseline();
+
         for (RangerServiceDef.RangerResourceDef resourceDef : getServiceDef().getResources()) {
             Map<String, String> matchOptions = resourceDef.getMatcherOptions();
 
@@ -340,6 +345,12 @@ public PolicyEngine cloneWithDelta(ServicePolicies servicePolicies) {
                 }
             }
 
+            if (isValidDeltas && principalDictionary.isOvergrown()) {
+                LOG.info("principal-dictionary has grown to " + principalDictionary.getPrincipalCount() + " principals since the last full build; policy-engine will be rebuilt instead of applying policy-deltas");
+
+                isValidDeltas = false;
+            }
+
             if (isValidDeltas) {
                 if (writeLock.isLockingEnabled()) {
                     updatePolicyEngine(servicePolicies);
@@ -494,6 +505,7 @@ private PolicyEngine(final PolicyEngine other, ServicePolicies servicePolicies)
         this.serviceDefHelper      = other.serviceDefHelper;
         this.pluginContext         = other.pluginContext;
         this.lock                  = other.lock;
+        this.principalDictionary   = other.principalDictionary;
         this.zoneMatcher           = new RangerSecurityZoneMatcher(servicePolicies.getSecurityZones(), servicePolicies.getServiceDef(), pluginContext);
 
         long                    policyVersion                   = servicePolicies.getPolicyVersion() != null ? servicePolicies.getPolicyVersion() : -1L;
@@ -546,7 +558,7 @@ private PolicyEngine(final PolicyEngine other, ServicePolicies servicePolicies)
 
                 servicePolicies.getTagPolicies().setPolicies(tagPolicies);
 
-                this.tagPolicyRepository = new RangerPolicyRepository(servicePolicies.getTagPolicies(), this.pluginContext, servicePolicies.getServiceDef(), servicePolicies.getServiceName());
+                this.tagPolicyRepository = new RangerPolicyRepository(servicePolicies.getTagPolicies(), this.pluginContext, servicePolicies.getServiceDef(), servicePolicies.getServiceName(), principalDictionary);
             } else {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("Current policy-engine has a tagPolicyRepository");
@@ -729,7 +741,7 @@ private void getDeltasSortedByZones(PolicyEngine current, ServicePolicies servic
 
                         servicePolicies.getSecurityZones().get(zoneName).setPolicies(policies);
 
-                        policyRepository = new RangerPolicyRepository(servicePolicies, current.pluginContext, zoneName);
+                        policyRepository = new RangerPolicyRepository(servicePolicies, current.pluginContext, zoneName, current.principalDictionary);
                     } else {
                         policyRepository = new RangerPolicyRepository(otherRepository, zoneDeltas, policyVersion);
                     }
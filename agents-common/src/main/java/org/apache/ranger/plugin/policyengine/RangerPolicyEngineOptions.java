@@ -21,6 +21,7 @@
 import org.apache.hadoop.conf.Configuration;
 import org.apache.ranger.plugin.model.validation.RangerServiceDefHelper;
 import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
+import org.apache.ranger.plugin.util.RangerPrincipalDictionary;
 
 public class RangerPolicyEngineOptions {
 	public String evaluatorType = RangerPolicyEvaluator.EVALUATOR_TYPE_AUTO;
@@ -46,6 +47,7 @@ public class RangerPolicyEngineOptions {
 
 
 	private RangerServiceDefHelper serviceDefHelper;
+	private RangerPrincipalDictionary principalDictionary;
 
 	public RangerPolicyEngineOptions() {}
 
@@ -66,6 +68,7 @@ public RangerPolicyEngineOptions(final RangerPolicyEngineOptions other) {
 		this.optimizeTrieForRetrieval = other.optimizeTrieForRetrieval;
 		this.disableRoleResolution = other.disableRoleResolution;
 		this.serviceDefHelper = null;
+		this.principalDictionary = null;
 		this.optimizeTrieForSpace = other.optimizeTrieForSpace;
 		this.optimizeTagTrieForRetrieval = other.optimizeTagTrieForRetrieval;
 		this.optimizeTagTrieForSpace = other.optimizeTagTrieForSpace;
@@ -169,6 +172,14 @@ void setServiceDefHelper(RangerServiceDefHelper serviceDefHelper) {
 		this.serviceDefHelper = serviceDefHelper;
 	}
 
+	public RangerPrincipalDictionary getPrincipalDictionary() {
+		return principalDictionary;
+	}
+
+	public void setPrincipalDictionary(RangerPrincipalDictionary principalDictionary) {
+		this.principalDictionary = principalDictionary;
+	}
+
 	/*
 	* There is no need to implement these, as the options are predefined in a component ServiceREST and hence
 	* guaranteed to be unique objects. That implies that the default equals and hashCode should suffice.
@@ -43,6 +43,7 @@
 import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator.RangerPolicyResourceEvaluator;
 import org.apache.ranger.plugin.store.AbstractServiceStore;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
+import org.apache.ranger.plugin.util.RangerPrincipalDictionary;
 import org.apache.ranger.plugin.util.RangerResourceEvaluatorsRetriever;
 import org.apache.ranger.plugin.util.ServiceDefUtil;
 import org.apache.ranger.plugin.util.ServicePolicies;
@@ -183,10 +184,10 @@ enum AuditModeEnum {
     }
 
     public RangerPolicyRepository(ServicePolicies servicePolicies, RangerPluginContext pluginContext) {
-        this(servicePolicies, pluginContext, null);
+        this(servicePolicies, pluginContext, null, new RangerPrincipalDictionary());
     }
 
-    RangerPolicyRepository(ServicePolicies servicePolicies, RangerPluginContext pluginContext, String zoneName) {
+    RangerPolicyRepository(ServicePolicies servicePolicies, RangerPluginContext pluginContext, String zoneName, RangerPrincipalDictionary principalDictionary) {
         super();
 
         this.componentServiceName = this.serviceName = servicePolicies.getServiceName();
@@ -196,6 +197,8 @@ public RangerPolicyRepository(ServicePolicies servicePolicies, RangerPluginConte
         this.options              = new RangerPolicyEngineOptions(pluginContext.getConfig().getPolicyEngineOptions());
         this.pluginContext        = pluginContext;
 
+        this.options.setPrincipalDictionary(principalDictionary);
+
         if (StringUtils.isEmpty(zoneName)) {
             this.policies = servicePolicies.getPolicies();
         } else {
@@ -256,7 +259,7 @@ public RangerPolicyRepository(ServicePolicies servicePolicies, RangerPluginConte
     }
 
     RangerPolicyRepository(ServicePolicies.TagPolicies tagPolicies, RangerPluginContext pluginContext,
-                           RangerServiceDef componentServiceDef, String componentServiceName) {
+                           RangerServiceDef componentServiceDef, String componentServiceName, RangerPrincipalDictionary principalDictionary) {
         super();
 
         this.serviceName          = tagPolicies.getServiceName();
@@ -267,6 +270,8 @@ public RangerPolicyRepository(ServicePolicies servicePolicies, RangerPluginConte
         this.appId                = pluginContext.getConfig().getAppId();
         this.options              = new RangerPolicyEngineOptions(pluginContext.getConfig().getPolicyEngineOptions());
         this.pluginContext        = pluginContext;
+
+        this.options.setPrincipalDictionary(principalDictionary);
         this.policies             = normalizeAndPrunePolicies(tagPolicies.getPolicies(), componentServiceDef.getName());
         this.policyVersion        = tagPolicies.getPolicyVersion() != null ? tagPolicies.getPolicyVersion() : -1;
 
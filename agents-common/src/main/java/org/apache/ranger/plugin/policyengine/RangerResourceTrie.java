@@ -68,7 +68,11 @@
     private final boolean           isOptimizedForRetrieval;
     private final boolean           isOptimizedForSpace;
     private final Character         separatorChar;
+    private final boolean           isCopyOnWrite;
     private       Set<T>            inheritedEvaluators;
+    private       boolean           isInheritedEvaluatorsShared;
+    private       int               nodeCount;            // number of nodes when the trie was last copied fully; used only by copy-on-write tries
+    private       int               copyOnWriteNodeCount; // number of nodes created by copy-on-write updates since then
     private final TrieNode<T>       root;
 
     public RangerResourceTrie(RangerResourceDef resourceDef, List<T> evaluators) {
@@ -76,10 +80,23 @@ public RangerResourceTrie(RangerResourceDef resourceDef, List<T> evaluators) {
     }
 
     public RangerResourceTrie(RangerResourceTrie<T> other) {
+        this(other, false);
+    }
+
+    /*
+     * With isCopyOnWrite=true, the copy shares nodes with the given trie; add() and delete() on the copy replace only
+     * the nodes they modify - and, for a change to wildcard-evaluators, the subtree that inherits them - with copies.
+     * Hence the cost of an update is proportional to the size of the change instead of the size of the trie, and the
+     * given trie remains unchanged and usable while the copy is updated.
+     *
+     * Shared nodes keep nodes replaced in earlier copies reachable; once the number of such nodes exceeds the size of
+     * the trie, the copy is made in full instead.
+     */
+    public RangerResourceTrie(RangerResourceTrie<T> other, boolean isCopyOnWrite) {
         RangerPerfTracer perf = null;
 
         if(RangerPerfTracer.isPerfTraceEnabled(PERF_TRIE_INIT_LOG)) {
-            perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_INIT_LOG, "RangerResourceTrie.copyTrie(name=" + other.resourceDef.getName() + ")");
+            perf = RangerPerfTracer.getPerfTracer(PERF_TRIE_INIT_LOG, "RangerResourceTrie.copyTrie(name=" + other.resourceDef.getName() + ", isCopyOnWrite=" + isCopyOnWrite + ")");
         }
 
         this.resourceDef             = other.resourceDef;
@@ -89,16 +106,34 @@ public RangerResourceTrie(RangerResourceTrie<T> other) {
         this.isOptimizedForSpace     = other.isOptimizedForSpace;
         this.isOptimizedForRetrieval = other.isOptimizedForRetrieval;
         this.separatorChar           = other.separatorChar;
-        this.inheritedEvaluators     = other.inheritedEvaluators != null ? new HashSet<>(other.inheritedEvaluators) : null;
-        this.root                    = copyTrieSubtree(other.root, null);
+        this.isCopyOnWrite           = isCopyOnWrite;
 
-        wrapUpUpdate();
+        final int     otherNodeCount = isCopyOnWrite ? (other.isCopyOnWrite ? other.nodeCount : other.getTrieData().nodeCount) : 0;
+        final boolean shareNodes     = isCopyOnWrite && (!other.isCopyOnWrite || other.copyOnWriteNodeCount <= otherNodeCount);
 
-        if (!isOptimizedForRetrieval) {
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Trie for " + this.resourceDef.getName() + " is not optimized for retrieval. Resetting isSetup flag by calling undoSetup() on the root");
+        if (shareNodes) {
+            this.inheritedEvaluators         = other.inheritedEvaluators;
+            this.isInheritedEvaluatorsShared = other.inheritedEvaluators != null;
+            this.root                        = copyTrieNode(other.root, null);
+            this.nodeCount                   = otherNodeCount;
+            this.copyOnWriteNodeCount        = other.copyOnWriteNodeCount + 1;
+
+            wrapUpUpdate();
+        } else {
+            this.inheritedEvaluators = other.inheritedEvaluators != null ? new HashSet<>(other.inheritedEvaluators) : null;
+            this.root                = copyTrieSubtree(other.root, null);
+            this.nodeCount           = copyOnWriteNodeCount;
+
+            copyOnWriteNodeCount = 0;
+
+            wrapUpUpdate();
+
+            if (!isOptimizedForRetrieval) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Trie for " + this.resourceDef.getName() + " is not optimized for retrieval. Resetting isSetup flag by calling undoSetup() on the root");
+                }
+                root.undoSetup();
             }
-            root.undoSetup();
         }
 
         RangerPerfTracer.logAlways(perf);
@@ -164,6 +199,7 @@ public <E> RangerResourceTrie(RangerResourceDef resourceDef, List<E> evaluators,
         this.isOptimizedForSpace     = isOptimizedForSpace;
         this.isOptimizedForRetrieval = !isOptimizedForSpace && isOptimizedForRetrieval;  // isOptimizedForSpace takes precedence
         this.separatorChar           = ServiceDefUtil.getCharOption(matcherOptions, OPTION_PATH_SEPARATOR, DEFAULT_PATH_SEPARATOR_CHAR);
+        this.isCopyOnWrite           = false;
 
         final TrieNode<T> tmpRoot = buildTrie(resourceDef, evaluators, builderThreadCount);
 
@@ -260,8 +296,12 @@ public void delete(RangerPolicyResource resource, T evaluator) {
             removeInheritedEvaluator(evaluator);
         } else {
             for (String value : resource.getValues()) {
-                TrieNode<T> node = getNodeForResource(value);
+                TrieNode<T> node = getNodeForResource(value, true);
                 if (node != null) {
+                    if (node.getWildcardEvaluators() != null && node.getWildcardEvaluators().contains(evaluator)) {
+                        prepareForWildcardEvaluatorsUpdate(node);
+                    }
+
                     node.removeEvaluatorFromSubtree(evaluator);
                 }
             }
@@ -296,6 +336,8 @@ TrieNode<T> getRoot() {
     }
 
     private void addInheritedEvaluator(T evaluator) {
+        copyInheritedEvaluatorsIfShared();
+
         if (inheritedEvaluators == null) {
             inheritedEvaluators = new HashSet<>();
         }
@@ -305,6 +347,8 @@ private void addInheritedEvaluator(T evaluator) {
 
     private void removeInheritedEvaluator(T evaluator) {
         if (CollectionUtils.isNotEmpty(inheritedEvaluators) && inheritedEvaluators.contains(evaluator)) {
+            copyInheritedEvaluatorsIfShared();
+
             inheritedEvaluators.remove(evaluator);
             if (CollectionUtils.isEmpty(inheritedEvaluators)) {
                 inheritedEvaluators = null;
@@ -312,6 +356,43 @@ private void removeInheritedEvaluator(T evaluator) {
         }
     }
 
+    private void copyInheritedEvaluatorsIfShared() {
+        if (isInheritedEvaluatorsShared) {
+            inheritedEvaluators         = inheritedEvaluators != null ? new HashSet<>(inheritedEvaluators) : null;
+            isInheritedEvaluatorsShared = false;
+        }
+    }
+
+    /*
+     * wildcard-evaluators of a node are inherited by all its descendants, as part of their setup. Before updating
+     * wildcard-evaluators of a node in a copy-on-write trie, the subtree under the node is copied and its setup undone,
+     * so that descendants shared with other tries don't get setup with the updated wildcard-evaluators
+     */
+    private void prepareForWildcardEvaluatorsUpdate(TrieNode<T> node) {
+        if (isCopyOnWrite && !isOptimizedForSpace) {
+            for (TrieNode<T> child : new ArrayList<>(node.getChildren().values())) {
+                copyTrieSubtree(child, node);
+            }
+
+            node.undoSetup();
+        }
+    }
+
+    // copies the given node, without its children; the copy shares children with the given node
+    private TrieNode<T> copyTrieNode(final TrieNode<T> source, final TrieNode<T> parent) {
+        TrieNode<T> dest = new TrieNode<>(source.str);
+
+        if (parent != null) {
+            parent.addChild(dest);
+        }
+
+        dest.copyFrom(source);
+
+        dest.children.putAll(source.getChildren());
+
+        return dest;
+    }
+
     private TrieNode<T> copyTrieSubtree(final TrieNode<T> source, final TrieNode<T> parent) {
         if (TRACE_LOG.isTraceEnabled()) {
             StringBuilder sb = new StringBuilder();
@@ -325,34 +406,7 @@ private TrieNode<T> copyTrieSubtree(final TrieNode<T> source, final TrieNode<T>
             parent.addChild(dest);
         }
 
-        synchronized (source.children) {
-            dest.isSetup                           = source.isSetup;
-            dest.isSharingParentWildcardEvaluators = source.isSharingParentWildcardEvaluators;
-
-            if (source.isSharingParentWildcardEvaluators) {
-                if (dest.getParent() != null) {
-                    dest.wildcardEvaluators = dest.getParent().getWildcardEvaluators();
-                } else {
-                    dest.wildcardEvaluators = null;
-                }
-            } else {
-                if (source.wildcardEvaluators != null) {
-                    dest.wildcardEvaluators = new HashSet<>(source.wildcardEvaluators);
-                } else {
-                    dest.wildcardEvaluators = null;
-                }
-            }
-
-            if (source.evaluators != null) {
-                if (source.evaluators == source.wildcardEvaluators) {
-                    dest.evaluators = dest.wildcardEvaluators;
-                } else {
-                    dest.evaluators = new HashSet<>(source.evaluators);
-                }
-            } else {
-                dest.evaluators = null;
-            }
-        }
+        dest.copyFrom(source);
 
         Map<Character, TrieNode<T>> children = source.getChildren();
 
@@ -569,6 +623,8 @@ private void insert(TrieNode<T> currentRoot, String resource, boolean isRecursiv
         }
 
         if(isWildcard || isRecursive) {
+            prepareForWildcardEvaluatorsUpdate(curr);
+
             curr.addWildcardEvaluator(evaluator);
         } else {
             curr.addEvaluator(evaluator);
@@ -673,12 +729,16 @@ private Set<T> getEvaluatorsForResource(String resource, ResourceElementMatching
 
             if (isSelfMatch) { // resource == path(curr)
                 if (resourceEndsWithSep) { // ex: resource=/tmp/
-                    curr.getChildren().values().stream().forEach(c -> c.collectChildEvaluators(separatorChar, 0, childEvaluators));
+                    final TrieNode<T> parentNode = curr;
+
+                    curr.getChildren().values().stream().forEach(c -> c.collectChildEvaluators(parentNode, separatorChar, 0, childEvaluators));
                 } else { // ex: resource=/tmp
+                    final TrieNode<T> parentNode = curr;
+
                     curr = curr.getChild(separatorChar);
 
                     if (curr != null) {
-                        curr.collectChildEvaluators(separatorChar, 1, childEvaluators);
+                        curr.collectChildEvaluators(parentNode, separatorChar, 1, childEvaluators);
                     }
                 }
             } else if (child != null) { // resource != path(child) ex: (resource=/tmp, path(child)=/tmp/test.txt or path(child)=/tmpdir)
@@ -687,9 +747,9 @@ private Set<T> getEvaluatorsForResource(String resource, ResourceElementMatching
 
                 if (isPrefixMatch) {
                     if (resourceEndsWithSep) { // ex: resource=/tmp/
-                        child.collectChildEvaluators(separatorChar, remainingLen, childEvaluators);
+                        child.collectChildEvaluators(curr, separatorChar, remainingLen, childEvaluators);
                     } else if (child.getStr().charAt(remainingLen) == separatorChar) { //  ex: resource=/tmp
-                        child.collectChildEvaluators(separatorChar, remainingLen + 1, childEvaluators);
+                        child.collectChildEvaluators(curr, separatorChar, remainingLen + 1, childEvaluators);
                     }
                 }
             }
@@ -714,9 +774,10 @@ private Set<T> getEvaluatorsForResource(String resource, ResourceElementMatching
         return ret;
     }
 
-    private TrieNode<T> getNodeForResource(String resource) {
+    // with isForUpdate=true, nodes from the root to the returned node are replaced by copies in a copy-on-write trie
+    private TrieNode<T> getNodeForResource(String resource, boolean isForUpdate) {
         if(LOG.isDebugEnabled()) {
-            LOG.debug("==> RangerResourceTrie.getNodeForResource(" + resource + ")");
+            LOG.debug("==> RangerResourceTrie.getNodeForResource(" + resource + ", " + isForUpdate + ")");
         }
 
         RangerPerfTracer perf = null;
@@ -748,10 +809,20 @@ private TrieNode<T> getNodeForResource(String resource) {
 
         curr = (i == len) ? curr : null;
 
+        if (curr != null && isForUpdate && !curr.isOwnedBy(this)) {
+            curr = root;
+            i    = 0;
+
+            while (i < len) {
+                curr = curr.getChildForUpdate(curr.getChild(getLookupChar(resource, i)));
+                i    += curr.getStr().length();
+            }
+        }
+
         RangerPerfTracer.logAlways(perf);
 
         if(LOG.isDebugEnabled()) {
-            LOG.debug("<== RangerResourceTrie.getNodeForResource(" + resource + ")");
+            LOG.debug("<== RangerResourceTrie.getNodeForResource(" + resource + ", " + isForUpdate + ")");
         }
 
         return curr;
@@ -916,6 +987,10 @@ static class TrieData {
 
         TrieNode(String str) {
             this.str = str;
+
+            if (isCopyOnWrite) {
+                copyOnWriteNodeCount++;
+            }
         }
 
         String getStr() {
@@ -950,6 +1025,58 @@ TrieNode<U> getChild(Character ch) {
             return children.get(ch);
         }
 
+        boolean isOwnedBy(RangerResourceTrie<?> trie) {
+            return RangerResourceTrie.this == trie;
+        }
+
+        // returns the given child, after replacing it with a copy if it is shared with another trie
+        TrieNode<U> getChildForUpdate(TrieNode<U> child) {
+            if (child == null || child.isOwnedBy(RangerResourceTrie.this)) {
+                return child;
+            }
+
+            TrieNode<U> ret = new TrieNode<>(child.getStr());
+
+            addChild(ret);
+
+            ret.copyFrom(child);
+
+            ret.children.putAll(child.getChildren());
+
+            return ret;
+        }
+
+        void copyFrom(TrieNode<U> source) {
+            synchronized (source.children) {
+                isSetup                           = source.isSetup;
+                isSharingParentWildcardEvaluators = source.isSharingParentWildcardEvaluators;
+
+                if (source.isSharingParentWildcardEvaluators) {
+                    if (getParent() != null) {
+                        wildcardEvaluators = getParent().getWildcardEvaluators();
+                    } else {
+                        wildcardEvaluators = null;
+                    }
+                } else {
+                    if (source.wildcardEvaluators != null) {
+                        wildcardEvaluators = new HashSet<>(source.wildcardEvaluators);
+                    } else {
+                        wildcardEvaluators = null;
+                    }
+                }
+
+                if (source.evaluators != null) {
+                    if (source.evaluators == source.wildcardEvaluators) {
+                        evaluators = wildcardEvaluators;
+                    } else {
+                        evaluators = new HashSet<>(source.evaluators);
+                    }
+                } else {
+                    evaluators = null;
+                }
+            }
+        }
+
         void populateTrieData(RangerResourceTrie.TrieData trieData) {
             trieData.nodeCount++;
 
@@ -1002,7 +1129,7 @@ int getMaxDepth() {
 
         TrieNode<U> getOrCreateChild(String str) {
             int         len   = str.length();
-            TrieNode<U> child = children.get(getLookupChar(str, 0));
+            TrieNode<U> child = getChildForUpdate(children.get(getLookupChar(str, 0)));
 
             if (child == null) {
                 child = new TrieNode<>(str);
@@ -1063,6 +1190,8 @@ private void addChild(TrieNode<U> child) {
         void addEvaluator(U evaluator) {
             if (evaluators == null) {
                 evaluators = new HashSet<>();
+            } else if (isSetup && evaluators == wildcardEvaluators) { // don't add to wildcard-evaluators shared after setup
+                evaluators = new HashSet<>(wildcardEvaluators);
             }
 
             evaluators.add(evaluator);
@@ -1176,7 +1305,10 @@ void postSetup(Set<U> parentWildcardEvaluators) {
             for (Map.Entry<Character, TrieNode<U>> entry : children.entrySet()) {
                 TrieNode<U> child = entry.getValue();
 
-                child.postSetup(wildcardEvaluators);
+                // subtrees shared with another trie are unchanged, and were setup in that trie
+                if (child.isOwnedBy(RangerResourceTrie.this)) {
+                    child.postSetup(wildcardEvaluators);
+                }
             }
         }
 
@@ -1229,9 +1361,9 @@ void setup(Set<U> parentWildcardEvaluators) {
             }
         }
 
-        void collectChildEvaluators(Character sep, int startIdx, Set<U> childEvaluators) {
+        void collectChildEvaluators(TrieNode<U> parent, Character sep, int startIdx, Set<U> childEvaluators) {
             if (!isOptimizedForSpace) {
-                setupIfNeeded(getParent());
+                setupIfNeeded(parent);
             }
 
             final int sepPos = startIdx < str.length() ? str.indexOf(sep, startIdx) : -1;
@@ -1246,7 +1378,7 @@ void collectChildEvaluators(Character sep, int startIdx, Set<U> childEvaluators)
                     childEvaluators.addAll(this.evaluators);
                 }
 
-                children.values().stream().forEach(c -> c.collectChildEvaluators(sep, 0, childEvaluators));
+                children.values().stream().forEach(c -> c.collectChildEvaluators(this, sep, 0, childEvaluators));
             } else if (sepPos == (str.length() - 1)) { // ex: str=/tmp/test/, startIdx=5
                 if (isOptimizedForSpace) {
                     if (this.wildcardEvaluators != null) {
@@ -1268,7 +1400,7 @@ void collectChildEvaluators(String resource, int startIndex, Set<U> childEvaluat
 
                 if (childNode != null) {
                     if (!isOptimizedForSpace) {
-                        childNode.setupIfNeeded(childNode.getParent());
+                        childNode.setupIfNeeded(this);
                     }
 
                     String childStr = childNode.getStr();
@@ -1296,24 +1428,27 @@ void collectChildEvaluators(String resource, int startIndex, Set<U> childEvaluat
         private void collectChildEvaluators(Set<U> childEvaluators) {
             Stack<TrieNode<U>> nodes = new Stack<>();
 
-            nodes.addAll(children.values());
+            nodes.push(this);
 
             while (!nodes.isEmpty()) {
-                TrieNode<U> childNode = nodes.pop();
+                TrieNode<U> parentNode = nodes.pop();
 
-                if (!isOptimizedForSpace) {
-                    childNode.setupIfNeeded(childNode.getParent());
-                }
+                // parent is passed explicitly, as nodes shared across copy-on-write tries retain their original parent
+                for (TrieNode<U> childNode : parentNode.children.values()) {
+                    if (!isOptimizedForSpace) {
+                        childNode.setupIfNeeded(parentNode);
+                    }
 
-                if (childNode.wildcardEvaluators != null) {
-                    childEvaluators.addAll(childNode.wildcardEvaluators);
-                }
+                    if (childNode.wildcardEvaluators != null) {
+                        childEvaluators.addAll(childNode.wildcardEvaluators);
+                    }
 
-                if (childNode.evaluators != null) {
-                    childEvaluators.addAll(childNode.evaluators);
-                }
+                    if (childNode.evaluators != null) {
+                        childEvaluators.addAll(childNode.evaluators);
+                    }
 
-                nodes.addAll(childNode.children.values());
+                    nodes.push(childNode);
+                }
             }
         }
 
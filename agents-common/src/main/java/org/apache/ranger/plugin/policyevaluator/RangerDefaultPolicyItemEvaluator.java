@@ -18,6 +18,7 @@
  */
 package org.apache.ranger.plugin.policyevaluator;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -38,6 +39,8 @@
 import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
+import org.apache.ranger.plugin.util.RangerPrincipalDictionary;
+import org.apache.ranger.plugin.util.RangerPrincipalDictionary.RequestPrincipals;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,6 +53,12 @@ public class RangerDefaultPolicyItemEvaluator extends RangerAbstractPolicyItemEv
 
 	private boolean hasCurrentUser;
 	private boolean hasResourceOwner;
+	private boolean hasPublicGroup;
+
+	private RangerPrincipalDictionary principalDictionary;
+	private int[]                     userIds  = RangerPrincipalDictionary.EMPTY_IDS;
+	private int[]                     groupIds = RangerPrincipalDictionary.EMPTY_IDS;
+	private int[]                     roleIds  = RangerPrincipalDictionary.EMPTY_IDS;
 
 	public RangerDefaultPolicyItemEvaluator(RangerServiceDef serviceDef, RangerPolicy policy, RangerPolicyItem policyItem, int policyItemType, int policyItemIndex, RangerPolicyEngineOptions options) {
 		super(serviceDef, policy, policyItem, policyItemType, policyItemIndex, options);
@@ -66,6 +75,17 @@ public void init() {
 		this.hasCurrentUser = CollectionUtils.isNotEmpty(users) && users.contains(RangerPolicyEngine.USER_CURRENT);
 		this.hasResourceOwner = CollectionUtils.isNotEmpty(users) && users.contains(RangerPolicyEngine.RESOURCE_OWNER);
 
+		List<String> groups = policyItem.getGroups();
+		this.hasPublicGroup = CollectionUtils.isNotEmpty(groups) && groups.contains(RangerPolicyEngine.GROUP_PUBLIC);
+
+		this.principalDictionary = options != null ? options.getPrincipalDictionary() : null;
+
+		if (principalDictionary != null) {
+			this.userIds  = principalDictionary.getOrCreateUserIds(users);
+			this.groupIds = principalDictionary.getOrCreateGroupIds(groups);
+			this.roleIds  = principalDictionary.getOrCreateRoleIds(policyItem.getRoles());
+		}
+
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerDefaultPolicyItemEvaluator(policyId=" + policyId + ", conditionsCount=" + getConditionEvaluators().size() + ")");
 		}
@@ -169,7 +189,9 @@ private boolean matchUserGroupAndOwner(RangerAccessRequest request) {
 		RangerAccessResource accessedResource = request.getResource();
 		String resourceOwner = accessedResource != null ? accessedResource.getOwnerUser() : null;
 
-		if (!ret) {
+		if (principalDictionary != null) {
+			ret = matchPrincipalIds(request, user, userGroups, resourceOwner);
+		} else {
 			Set<String> roles = null;
 			if (CollectionUtils.isNotEmpty(policyItem.getRoles())) {
 				roles = RangerAccessRequestUtil.getUserRoles(request);
@@ -184,6 +206,49 @@ private boolean matchUserGroupAndOwner(RangerAccessRequest request) {
 		return ret;
 	}
 
+	/*
+	 * same as matchUserGroupAndOwner(user, userGroups, roles, owner), but using principal IDs; principals of
+	 * the request are resolved once per request, after which each policy-item is matched with bit lookups
+	 */
+	private boolean matchPrincipalIds(RangerAccessRequest request, String user, Set<String> userGroups, String resourceOwner) {
+		boolean           ret        = false;
+		RequestPrincipals principals = null;
+
+		if (user != null && policyItem.getUsers() != null) {
+			if (hasCurrentUser) {
+				ret = true;
+			} else if (userIds.length > 0) {
+				principals = RangerAccessRequestUtil.getRequestPrincipals(request, principalDictionary);
+				ret        = principals.getUserId() >= 0 && Arrays.binarySearch(userIds, principals.getUserId()) >= 0;
+			}
+		}
+		if (!ret && userGroups != null && policyItem.getGroups() != null) {
+			if (hasPublicGroup) {
+				ret = true;
+			} else if (groupIds.length > 0) {
+				if (principals == null) {
+					principals = RangerAccessRequestUtil.getRequestPrincipals(request, principalDictionary);
+				}
+				ret = RangerPrincipalDictionary.containsAny(principals.getGroupIds(), groupIds);
+			}
+		}
+		if (!ret && roleIds.length > 0) {
+			Set<String> roles = RangerAccessRequestUtil.getUserRoles(request);
+
+			if (CollectionUtils.isNotEmpty(roles)) {
+				if (principals == null) {
+					principals = RangerAccessRequestUtil.getRequestPrincipals(request, principalDictionary);
+				}
+				ret = RangerPrincipalDictionary.containsAny(principals.getRoleIds(roles), roleIds);
+			}
+		}
+		if (!ret && hasResourceOwner) {
+			ret = user != null && user.equals(resourceOwner);
+		}
+
+		return ret;
+	}
+
 	@Override
 	public boolean matchAccessType(String accessType) {
 		if (LOG.isDebugEnabled()) {
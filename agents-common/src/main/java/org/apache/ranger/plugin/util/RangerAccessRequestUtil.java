@@ -31,6 +31,7 @@
 import org.apache.ranger.plugin.policyengine.RangerAccessResource;
 import org.apache.ranger.plugin.policyengine.RangerAccessResult;
 import org.apache.ranger.plugin.policyengine.gds.GdsAccessResult;
+import org.apache.ranger.plugin.util.RangerPrincipalDictionary.RequestPrincipals;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,6 +54,7 @@ public class RangerAccessRequestUtil {
 	public static final String KEY_CONTEXT_IS_REQUEST_PREPROCESSED = "ISREQUESTPREPROCESSED";
 	public static final String KEY_CONTEXT_RESOURCE_ZONE_NAMES     = "RESOURCE_ZONE_NAMES";
 	public static final String KEY_CONTEXT_ACCESS_TYPE_RESULTS = "_ACCESS_TYPE_RESULTS";
+	public static final String KEY_CONTEXT_PRINCIPAL_IDS       = "_PRINCIPAL_IDS";
 
 	public static void setRequestTagsInContext(Map<String, Object> context, Set<RangerTagForEval> tags) {
 		if(CollectionUtils.isEmpty(tags)) {
@@ -142,6 +144,7 @@ public static Map<String, Object> copyContext(Map<String, Object> context) {
 			ret.remove(KEY_CONTEXT_ACCESSTYPES);
 			ret.remove(KEY_CONTEXT_IS_ANY_ACCESS);
 			ret.remove(KEY_CONTEXT_IS_REQUEST_PREPROCESSED);
+			ret.remove(KEY_CONTEXT_PRINCIPAL_IDS);
 			// don't remove REQUESTED_RESOURCES
 		}
 
@@ -348,6 +351,28 @@ public static Map<String, RangerAccessResult> getAccessTypeResults(Map<String, O
 		return ret;
 	}
 
+	/*
+	 * returns the request principals resolved in the given dictionary; the resolved IDs are saved in the
+	 * context, so that they are computed once per request, instead of once per policy-item evaluated
+	 */
+	public static RequestPrincipals getRequestPrincipals(RangerAccessRequest request, RangerPrincipalDictionary dictionary) {
+		String              user       = request.getUser();
+		Set<String>         userGroups = request.getUserGroups();
+		Map<String, Object> context    = request.getContext();
+		Object              val        = context != null ? context.get(KEY_CONTEXT_PRINCIPAL_IDS) : null;
+		RequestPrincipals   ret        = (val instanceof RequestPrincipals) ? (RequestPrincipals) val : null;
+
+		if (ret == null || !ret.isFor(dictionary, user, userGroups)) {
+			ret = new RequestPrincipals(dictionary, user, userGroups);
+
+			if (context != null) {
+				context.put(KEY_CONTEXT_PRINCIPAL_IDS, ret);
+			}
+		}
+
+		return ret;
+	}
+
 	public static void setAccessTypeResult(Map<String, Object> context, String accessType, RangerAccessResult result) {
 		if (context != null) {
 			Map<String, RangerAccessResult> results = getAccessTypeResults(context);
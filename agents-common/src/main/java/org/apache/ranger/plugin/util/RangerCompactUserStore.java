@@ -0,0 +1,638 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.ranger.authorization.utils.StringUtil;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Read-only RangerUserStore that keeps users, groups and their attributes in a compact form, for use in plugins
+ * having large userstores:
+ *  - each user and group name is stored once, and referred to by its index
+ *  - attribute values are stored in one sparse column per attribute name, i.e. only for the principals having the
+ *    attribute, with duplicate values shared
+ *  - group memberships of a user are stored as a sorted array of group indexes
+ *
+ * getUserAttrMapping(), getGroupAttrMapping(), getUserGroupMapping() return read-only views over this data, hence
+ * the callers are unchanged. Setters of the base class must not be used on an instance of this class.
+ *
+ * applyDelta() shares the compact data of this instance with the returned instance, and keeps the users and groups
+ * changed by deltas in small maps layered over it. The compact data is rebuilt only after the number of changed
+ * principals exceeds MAX_CHANGES_PCT_BEFORE_REBUILD percent of all principals (at least MIN_CHANGES_BEFORE_REBUILD).
+ */
+public class RangerCompactUserStore extends RangerUserStore {
+    private static final long serialVersionUID = 1L;
+
+    static final int MIN_CHANGES_BEFORE_REBUILD     = 1000;
+    static final int MAX_CHANGES_PCT_BEFORE_REBUILD = 10;
+
+    private final transient PrincipalIndex                   users;
+    private final transient PrincipalIndex                   groups;
+    private final transient AttributeColumns                 userAttrs;
+    private final transient AttributeColumns                 groupAttrs;
+    private final transient int[][]                          userGroupIds;
+    private final transient int                              userGroupsCount;
+    private final transient Map<String, String>              userCloudIds;
+    private final transient Map<String, String>              groupCloudIds;
+    private final transient Map<String, Map<String, String>> changedUserAttrs;  // users changed after the compact data was built; null value: removed
+    private final transient Map<String, Set<String>>         changedUserGroups; // same keys as changedUserAttrs
+    private final transient Map<String, Map<String, String>> changedGroupAttrs; // groups changed after the compact data was built; null value: removed
+
+    public RangerCompactUserStore(RangerUserStore other) {
+        Map<String, Map<String, String>> userAttrMapping  = emptyIfNull(other.getUserAttrMapping());
+        Map<String, Map<String, String>> groupAttrMapping = emptyIfNull(other.getGroupAttrMapping());
+        Map<String, Set<String>>         userGroupMapping = emptyIfNull(other.getUserGroupMapping());
+        Map<String, String>              strTbl           = new HashMap<>();
+        Set<String>                      userNames        = new LinkedHashSet<>(userAttrMapping.keySet());
+        Set<String>                      groupNames       = new LinkedHashSet<>(groupAttrMapping.keySet());
+
+        userNames.addAll(userGroupMapping.keySet());
+
+        for (Set<String> userGroups : userGroupMapping.values()) {
+            if (userGroups != null) {
+                groupNames.addAll(userGroups);
+            }
+        }
+
+        setUserStoreVersion(other.getUserStoreVersion());
+        setUserStoreUpdateTime(other.getUserStoreUpdateTime());
+
+        this.users         = new PrincipalIndex(userNames, strTbl);
+        this.groups        = new PrincipalIndex(groupNames, strTbl);
+        this.userAttrs     = new AttributeColumns(users, userAttrMapping, strTbl);
+        this.groupAttrs    = new AttributeColumns(groups, groupAttrMapping, strTbl);
+        this.userGroupIds  = new int[users.size()][];
+        this.userCloudIds  = Collections.unmodifiableMap(emptyIfNull(StringUtil.dedupStringsMap(other.getUserCloudIdMapping(), strTbl)));
+        this.groupCloudIds = Collections.unmodifiableMap(emptyIfNull(StringUtil.dedupStringsMap(other.getGroupCloudIdMapping(), strTbl)));
+
+        for (Map.Entry<String, Set<String>> entry : userGroupMapping.entrySet()) {
+            Set<String> userGroups = entry.getValue();
+            int[]       groupIds   = new int[userGroups != null ? userGroups.size() : 0];
+            int         idx        = 0;
+
+            if (userGroups != null) {
+                for (String group : userGroups) {
+                    groupIds[idx++] = groups.getId(group);
+                }
+            }
+
+            Arrays.sort(groupIds);
+
+            userGroupIds[users.getId(entry.getKey())] = groupIds;
+        }
+
+        this.userGroupsCount   = userGroupMapping.size();
+        this.changedUserAttrs  = Collections.emptyMap();
+        this.changedUserGroups = Collections.emptyMap();
+        this.changedGroupAttrs = Collections.emptyMap();
+    }
+
+    private RangerCompactUserStore(RangerCompactUserStore other, RangerUserStore delta) {
+        Map<String, Map<String, String>> otherUserAttrs  = other.getUserAttrMapping();
+        Map<String, Map<String, String>> otherGroupAttrs = other.getGroupAttrMapping();
+        Map<String, Map<String, String>> changedUserAttrs  = new HashMap<>(other.changedUserAttrs);
+        Map<String, Set<String>>         changedUserGroups = new HashMap<>(other.changedUserGroups);
+        Map<String, Map<String, String>> changedGroupAttrs = new HashMap<>(other.changedGroupAttrs);
+        Map<String, String>              userCloudIds      = new HashMap<>(other.userCloudIds);
+        Map<String, String>              groupCloudIds     = new HashMap<>(other.groupCloudIds);
+
+        setUserStoreVersion(delta.getUserStoreVersion());
+        setUserStoreUpdateTime(delta.getUserStoreUpdateTime());
+
+        if (delta.getChangedUsers() != null) {
+            Map<String, Set<String>> deltaUserGroups = emptyIfNull(delta.getUserGroupMapping());
+
+            for (String user : delta.getChangedUsers()) {
+                changedUserAttrs.put(user, replaceAttrs(user, otherUserAttrs.get(user), delta.getUserAttrMapping(), userCloudIds));
+                changedUserGroups.put(user, deltaUserGroups.get(user));
+            }
+        }
+
+        if (delta.getChangedGroups() != null) {
+            for (String group : delta.getChangedGroups()) {
+                changedGroupAttrs.put(group, replaceAttrs(group, otherGroupAttrs.get(group), delta.getGroupAttrMapping(), groupCloudIds));
+            }
+        }
+
+        this.users             = other.users;
+        this.groups            = other.groups;
+        this.userAttrs         = other.userAttrs;
+        this.groupAttrs        = other.groupAttrs;
+        this.userGroupIds      = other.userGroupIds;
+        this.userGroupsCount   = other.userGroupsCount;
+        this.userCloudIds      = Collections.unmodifiableMap(userCloudIds);
+        this.groupCloudIds     = Collections.unmodifiableMap(groupCloudIds);
+        this.changedUserAttrs  = changedUserAttrs;
+        this.changedUserGroups = changedUserGroups;
+        this.changedGroupAttrs = changedGroupAttrs;
+    }
+
+    @Override
+    public Map<String, Map<String, String>> getUserAttrMapping() {
+        return overlay(new PrincipalMap<>(users, userAttrs.getRowCount(), userAttrs::getRow), changedUserAttrs);
+    }
+
+    @Override
+    public Map<String, Map<String, String>> getGroupAttrMapping() {
+        return overlay(new PrincipalMap<>(groups, groupAttrs.getRowCount(), groupAttrs::getRow), changedGroupAttrs);
+    }
+
+    @Override
+    public Map<String, Set<String>> getUserGroupMapping() {
+        return overlay(new PrincipalMap<>(users, userGroupsCount, id -> userGroupIds[id] != null ? new GroupSet(userGroupIds[id]) : null), changedUserGroups);
+    }
+
+    @Override
+    public Map<String, String> getUserCloudIdMapping() {
+        return userCloudIds;
+    }
+
+    @Override
+    public Map<String, String> getGroupCloudIdMapping() {
+        return groupCloudIds;
+    }
+
+    @Override
+    public void dedupStrings() {
+        // strings are already deduped while building this instance
+    }
+
+    @Override
+    public RangerUserStore applyDelta(RangerUserStore delta) {
+        final RangerCompactUserStore ret;
+
+        int changeCount = changedUserGroups.size() + changedGroupAttrs.size() + sizeOf(delta.getChangedUsers()) + sizeOf(delta.getChangedGroups());
+
+        if (changeCount <= Math.max(MIN_CHANGES_BEFORE_REBUILD, (users.size() + groups.size()) * MAX_CHANGES_PCT_BEFORE_REBUILD / 100)) {
+            ret = new RangerCompactUserStore(this, delta);
+        } else {
+            ret = new RangerCompactUserStore(super.applyDelta(delta));
+        }
+
+        return ret;
+    }
+
+    /*
+     * returns a RangerUserStore having the views of this instance in its fields, for serializers that read fields
+     * rather than getters - like Gson
+     */
+    public RangerUserStore toRangerUserStore() {
+        RangerUserStore ret = new RangerUserStore();
+
+        ret.setUserStoreVersion(getUserStoreVersion());
+        ret.setUserStoreUpdateTime(getUserStoreUpdateTime());
+        ret.setUserAttrMapping(getUserAttrMapping());
+        ret.setGroupAttrMapping(getGroupAttrMapping());
+        ret.setUserGroupMapping(getUserGroupMapping());
+        ret.setUserCloudIdMapping(getUserCloudIdMapping());
+        ret.setGroupCloudIdMapping(getGroupCloudIdMapping());
+
+        return ret;
+    }
+
+    boolean hasChanges() {
+        return !changedUserGroups.isEmpty() || !changedGroupAttrs.isEmpty();
+    }
+
+    private static Map<String, String> replaceAttrs(String name, Map<String, String> oldAttrs, Map<String, Map<String, String>> deltaAttrMapping, Map<String, String> cloudIdMapping) {
+        String oldCloudId = oldAttrs != null ? oldAttrs.get(CLOUD_IDENTITY_NAME) : null;
+
+        if (StringUtils.isNotEmpty(oldCloudId) && name.equals(cloudIdMapping.get(oldCloudId))) {
+            cloudIdMapping.remove(oldCloudId);
+        }
+
+        Map<String, String> ret     = deltaAttrMapping != null ? deltaAttrMapping.get(name) : null;
+        String              cloudId = ret != null ? ret.get(CLOUD_IDENTITY_NAME) : null;
+
+        if (StringUtils.isNotEmpty(cloudId)) {
+            cloudIdMapping.put(cloudId, name);
+        }
+
+        return ret;
+    }
+
+    private static <V> Map<String, V> overlay(Map<String, V> base, Map<String, V> changes) {
+        return changes.isEmpty() ? base : new OverlayMap<>(base, changes);
+    }
+
+    private static int sizeOf(Collection<?> coll) {
+        return coll != null ? coll.size() : 0;
+    }
+
+    private static <K, V> Map<K, V> emptyIfNull(Map<K, V> map) {
+        return map != null ? map : Collections.emptyMap();
+    }
+
+    private static class PrincipalIndex {
+        private final Map<String, Integer> ids;
+        private final String[]             names;
+
+        PrincipalIndex(Set<String> names, Map<String, String> strTbl) {
+            this.ids   = new HashMap<>(names.size());
+            this.names = new String[names.size()];
+
+            for (String name : names) {
+                String dedupName = StringUtil.dedupString(name, strTbl);
+
+                this.names[ids.size()] = dedupName;
+
+                ids.put(dedupName, ids.size());
+            }
+        }
+
+        int getId(Object name) {
+            Integer ret = ids.get(name);
+
+            return ret != null ? ret : -1;
+        }
+
+        String getName(int id) { return names[id]; }
+
+        int size() { return names.length; }
+    }
+
+    /*
+     * attribute values in one column per attribute name; a column stores the ids of principals having the attribute,
+     * in ascending order, and their values - hence the size is proportional to the number of attribute values
+     */
+    private static class AttributeColumns {
+        private final Map<String, Integer> columnIds = new HashMap<>();
+        private final String[]             columnNames;
+        private final int[][]              columnRowIds; // [column][n]: id of the n-th principal having the attribute
+        private final String[][]           columnValues; // [column][n]: attribute value of the n-th principal
+        private final BitSet               hasRow = new BitSet();
+        private final int                  rowCount;
+
+        AttributeColumns(PrincipalIndex principals, Map<String, Map<String, String>> attrMapping, Map<String, String> strTbl) {
+            int[] columnSizes = new int[0];
+
+            for (Map<String, String> attrs : attrMapping.values()) {
+                if (attrs != null) {
+                    for (String attrName : attrs.keySet()) {
+                        Integer column = columnIds.get(attrName);
+
+                        if (column == null) {
+                            column      = columnIds.size();
+                            columnSizes = Arrays.copyOf(columnSizes, column + 1);
+
+                            columnIds.put(StringUtil.dedupString(attrName, strTbl), column);
+                        }
+
+                        columnSizes[column]++;
+                    }
+                }
+            }
+
+            columnNames  = new String[columnIds.size()];
+            columnRowIds = new int[columnIds.size()][];
+            columnValues = new String[columnIds.size()][];
+
+            for (Map.Entry<String, Integer> entry : columnIds.entrySet()) {
+                int column = entry.getValue();
+
+                columnNames[column]  = entry.getKey();
+                columnRowIds[column] = new int[columnSizes[column]];
+                columnValues[column] = new String[columnSizes[column]];
+                columnSizes[column]  = 0;
+            }
+
+            // visit principals in the order of their ids, to keep ids in each column sorted
+            for (int id = 0; id < principals.size(); id++) {
+                String name = principals.getName(id);
+
+                if (!attrMapping.containsKey(name)) {
+                    continue;
+                }
+
+                Map<String, String> attrs = attrMapping.get(name);
+
+                hasRow.set(id);
+
+                if (attrs != null) {
+                    for (Map.Entry<String, String> attr : attrs.entrySet()) {
+                        int column = columnIds.get(attr.getKey());
+                        int idx    = columnSizes[column]++;
+
+                        columnRowIds[column][idx] = id;
+                        columnValues[column][idx] = StringUtil.dedupString(attr.getValue(), strTbl);
+                    }
+                }
+            }
+
+            rowCount = hasRow.cardinality();
+        }
+
+        int getRowCount() { return rowCount; }
+
+        Map<String, String> getRow(int id) { return hasRow.get(id) ? new AttributeRow(id) : null; }
+
+        private String getValue(int column, int id) {
+            int idx = Arrays.binarySearch(columnRowIds[column], id);
+
+            return idx >= 0 ? columnValues[column][idx] : null;
+        }
+
+        private class AttributeRow extends AbstractMap<String, String> {
+            private final int id;
+
+            AttributeRow(int id) { this.id = id; }
+
+            @Override
+            public String get(Object key) {
+                Integer column = columnIds.get(key);
+
+                return column != null ? getValue(column, id) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) { return get(key) != null; }
+
+            @Override
+            public Set<Entry<String, String>> entrySet() {
+                return new AbstractSet<Entry<String, String>>() {
+                    @Override
+                    public Iterator<Entry<String, String>> iterator() {
+                        return new Iterator<Entry<String, String>>() {
+                            private int next = nextColumn(0);
+
+                            @Override
+                            public boolean hasNext() { return next < columnNames.length; }
+
+                            @Override
+                            public Entry<String, String> next() {
+                                if (!hasNext()) {
+                                    throw new NoSuchElementException();
+                                }
+
+                                Entry<String, String> ret = new SimpleImmutableEntry<>(columnNames[next], getValue(next, id));
+
+                                next = nextColumn(next + 1);
+
+                                return ret;
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        int ret = 0;
+
+                        for (int column = 0; column < columnNames.length; column++) {
+                            if (getValue(column, id) != null) {
+                                ret++;
+                            }
+                        }
+
+                        return ret;
+                    }
+                };
+            }
+
+            private int nextColumn(int from) {
+                int ret = from;
+
+                while (ret < columnNames.length && getValue(ret, id) == null) {
+                    ret++;
+                }
+
+                return ret;
+            }
+        }
+    }
+
+    private class GroupSet extends AbstractSet<String> {
+        private final int[] groupIds;
+
+        GroupSet(int[] groupIds) { this.groupIds = groupIds; }
+
+        @Override
+        public boolean contains(Object o) {
+            int id = groups.getId(o);
+
+            return id != -1 && Arrays.binarySearch(groupIds, id) >= 0;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int idx = 0;
+
+                @Override
+                public boolean hasNext() { return idx < groupIds.length; }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+
+                    return groups.getName(groupIds[idx++]);
+                }
+            };
+        }
+
+        @Override
+        public int size() { return groupIds.length; }
+    }
+
+    /*
+     * read-only map from principal name to the value computed by valueOf(principal-id); principals for which
+     * valueOf() returns null are treated as absent
+     */
+    private static class PrincipalMap<V> extends AbstractMap<String, V> {
+        private final PrincipalIndex principals;
+        private final int            size;
+        private final IntFunction<V> valueOf;
+
+        PrincipalMap(PrincipalIndex principals, int size, IntFunction<V> valueOf) {
+            this.principals = principals;
+            this.size       = size;
+            this.valueOf    = valueOf;
+        }
+
+        @Override
+        public V get(Object key) {
+            int id = principals.getId(key);
+
+            return id != -1 ? valueOf.apply(id) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) { return get(key) != null; }
+
+        @Override
+        public int size() { return size; }
+
+        @Override
+        public Set<Entry<String, V>> entrySet() {
+            return new AbstractSet<Entry<String, V>>() {
+                @Override
+                public Iterator<Entry<String, V>> iterator() {
+                    return new Iterator<Entry<String, V>>() {
+                        private int id = -1;
+                        private V   next = advance();
+
+                        @Override
+                        public boolean hasNext() { return next != null; }
+
+                        @Override
+                        public Entry<String, V> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+
+                            Entry<String, V> ret = new SimpleImmutableEntry<>(principals.getName(id), next);
+
+                            next = advance();
+
+                            return ret;
+                        }
+
+                        private V advance() {
+                            V ret = null;
+
+                            while (ret == null && ++id < principals.size()) {
+                                ret = valueOf.apply(id);
+                            }
+
+                            return ret;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() { return size; }
+            };
+        }
+    }
+
+    /*
+     * read-only map having the entries of base, replaced by the entries in changes; a null value in changes removes
+     * the entry of base
+     */
+    private static class OverlayMap<V> extends AbstractMap<String, V> {
+        private final Map<String, V> base;
+        private final Map<String, V> changes;
+        private       int            size = -1;
+
+        OverlayMap(Map<String, V> base, Map<String, V> changes) {
+            this.base    = base;
+            this.changes = changes;
+        }
+
+        @Override
+        public V get(Object key) {
+            return changes.containsKey(key) ? changes.get(key) : base.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) { return get(key) != null; }
+
+        @Override
+        public int size() {
+            if (size == -1) {
+                int ret = base.size();
+
+                for (Map.Entry<String, V> entry : changes.entrySet()) {
+                    if (base.containsKey(entry.getKey())) {
+                        ret--;
+                    }
+
+                    if (entry.getValue() != null) {
+                        ret++;
+                    }
+                }
+
+                size = ret;
+            }
+
+            return size;
+        }
+
+        @Override
+        public Set<Entry<String, V>> entrySet() {
+            return new AbstractSet<Entry<String, V>>() {
+                @Override
+                public Iterator<Entry<String, V>> iterator() {
+                    return new Iterator<Entry<String, V>>() {
+                        private final Iterator<Entry<String, V>> baseIter    = base.entrySet().iterator();
+                        private final Iterator<Entry<String, V>> changesIter = changes.entrySet().iterator();
+                        private       Entry<String, V>           next        = advance();
+
+                        @Override
+                        public boolean hasNext() { return next != null; }
+
+                        @Override
+                        public Entry<String, V> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+
+                            Entry<String, V> ret = next;
+
+                            next = advance();
+
+                            return ret;
+                        }
+
+                        private Entry<String, V> advance() {
+                            Entry<String, V> ret = null;
+
+                            while (ret == null && baseIter.hasNext()) {
+                                Entry<String, V> entry = baseIter.next();
+
+                                if (!changes.containsKey(entry.getKey())) {
+                                    ret = entry;
+                                }
+                            }
+
+                            while (ret == null && changesIter.hasNext()) {
+                                Entry<String, V> entry = changesIter.next();
+
+                                if (entry.getValue() != null) {
+                                    ret = new SimpleImmutableEntry<>(entry);
+                                }
+                            }
+
+                            return ret;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() { return OverlayMap.this.size(); }
+            };
+        }
+    }
+}
@@ -177,9 +177,19 @@ public static void setIsRoleActive(int isRoleActive) {
     }
 
     public void writeMetricsToFile(File filePath) throws Throwable {
+		writeMetricsToFile(filePath, null);
+	}
+
+	/**
+	 * Writes the VM status, along with the given component specific metrics (when not empty), to the file
+	 */
+	public void writeMetricsToFile(File filePath, Map<String, Object> componentMetrics) throws Throwable {
 
 		RangerMetrics rangerMetrics = null;
 		rangerMetrics = getVMStatus();
+		if (rangerMetrics != null && componentMetrics != null && !componentMetrics.isEmpty()) {
+			rangerMetrics.getData().putAll(componentMetrics);
+		}
 		if (null == rangerMetrics || null == filePath) {
 			LOG.debug("RangerMetrics or filePath can not be null)");
 			return;
@@ -49,6 +49,8 @@ public class RangerPluginCapability {
 	- Audit-policies
 	- User/group/tag attributes in policy
 	- additional resources in policy
+	- GDS policies
+	- UserStore deltas
      */
     private final long pluginCapabilities;
     private static final String baseRangerCapabilities = computeBaseCapabilities();
@@ -74,7 +76,8 @@ public enum RangerPluginFeature {
         RANGER_PLUGIN_CAPABILITY_AUDIT_POLICY("Audit Policy"),
         RANGER_PLUGIN_CAPABILITY_UGT_ATTRIBUTES_IN_POLICY("User/group/tag attributes in policy"),
         RANGER_PLUGIN_CAPABILITY_ADDITIONAL_RESOURCES_IN_POLICY("additional resources in policy"),
-        RANGER_PLUGIN_CAPABILITY_GDS_POLICIES("GDS Policies");
+        RANGER_PLUGIN_CAPABILITY_GDS_POLICIES("GDS Policies"),
+        RANGER_PLUGIN_CAPABILITY_USERSTORE_DELTAS("UserStore Deltas");
 
         private final String name;
         RangerPluginFeature(String name) {
@@ -117,6 +120,10 @@ public long getPluginCapabilities() {
         return pluginCapabilities;
     }
 
+    public boolean isSupported(RangerPluginFeature feature) {
+        return (pluginCapabilities & (1L << feature.ordinal())) != 0;
+    }
+
     public List<String> compare(RangerPluginCapability other) {
         final List<String> ret;
 
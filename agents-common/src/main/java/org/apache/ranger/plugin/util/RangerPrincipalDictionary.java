@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maps names of users, groups and roles referenced in policies to int IDs, so that policy items can
+ * hold their principals as sorted int arrays and match them against a request with bit lookups.
+ *
+ * IDs are created only for principals referenced in policies (by getOrCreateIds()); names seen only
+ * in requests are never added. Lookups are safe to be called concurrently with updates.
+ *
+ * A dictionary lives as long as a policy-engine generation: it is created by a full build of the engine,
+ * and shared by engines derived from it with policy-deltas, as they reuse its policy-item evaluators.
+ * IDs of principals no longer referenced are not removed; once the dictionary has grown well beyond its
+ * size at the full build (isOvergrown()), the next policy update rebuilds the engine with a new dictionary.
+ */
+public class RangerPrincipalDictionary {
+	public static final int[] EMPTY_IDS = new int[0];
+
+	static final int OVERGROWN_MIN_GROWTH = 1000;
+
+	private final    PrincipalIdMap users         = new PrincipalIdMap();
+	private final    PrincipalIdMap groups        = new PrincipalIdMap();
+	private final    PrincipalIdMap roles         = new PrincipalIdMap();
+	private volatile int            baselineCount = -1;
+
+	public int[] getOrCreateUserIds(Collection<String> names) { return users.getOrCreateIds(names); }
+
+	public int[] getOrCreateGroupIds(Collection<String> names) { return groups.getOrCreateIds(names); }
+
+	public int[] getOrCreateRoleIds(Collection<String> names) { return roles.getOrCreateIds(names); }
+
+	public int getUserId(String name) { return users.getId(name); }
+
+	public BitSet getGroupIds(Collection<String> names) { return groups.getIds(names); }
+
+	public BitSet getRoleIds(Collection<String> names) { return roles.getIds(names); }
+
+	public int getUserCount() { return users.size(); }
+
+	public int getGroupCount() { return groups.size(); }
+
+	public int getRoleCount() { return roles.size(); }
+
+	public int getPrincipalCount() { return users.size() + groups.size() + roles.size(); }
+
+	/*
+	 * records the number of principals after a full build of the policy-engine
+	 */
+	public void setBaseline() { baselineCount = getPrincipalCount(); }
+
+	/*
+	 * true when principals added by policy-deltas since the full build exceed the baseline count
+	 * (and OVERGROWN_MIN_GROWTH), i.e. when more than half of the IDs could be of principals no longer in policies
+	 */
+	public boolean isOvergrown() {
+		int baseline = baselineCount;
+
+		return baseline >= 0 && (getPrincipalCount() - baseline) > Math.max(baseline, OVERGROWN_MIN_GROWTH);
+	}
+
+	public static boolean containsAny(BitSet ids, int[] toFind) {
+		if (ids != null && !ids.isEmpty()) {
+			for (int id : toFind) {
+				if (ids.get(id)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/*
+	 * principals of a request, resolved to IDs in a dictionary. Group and role IDs are resolved on first
+	 * use, as many requests are decided without evaluating any policy-item having groups or roles
+	 */
+	public static class RequestPrincipals {
+		private final RangerPrincipalDictionary dictionary;
+		private final String                    user;
+		private final Set<String>               userGroups;
+		private final int                       userId;
+		private       BitSet                    groupIds;
+		private       Set<String>               userRoles;
+		private       BitSet                    roleIds;
+
+		public RequestPrincipals(RangerPrincipalDictionary dictionary, String user, Set<String> userGroups) {
+			this.dictionary = dictionary;
+			this.user       = user;
+			this.userGroups = userGroups;
+			this.userId     = user != null ? dictionary.getUserId(user) : -1;
+		}
+
+		public boolean isFor(RangerPrincipalDictionary dictionary, String user, Set<String> userGroups) {
+			return this.dictionary == dictionary && this.userGroups == userGroups && Objects.equals(this.user, user);
+		}
+
+		public int getUserId() { return userId; }
+
+		public BitSet getGroupIds() {
+			BitSet ret = groupIds;
+
+			if (ret == null) {
+				ret      = dictionary.getGroupIds(userGroups);
+				groupIds = ret;
+			}
+
+			return ret;
+		}
+
+		public BitSet getRoleIds(Set<String> userRoles) {
+			BitSet ret = roleIds;
+
+			if (ret == null || this.userRoles != userRoles) {
+				ret            = dictionary.getRoleIds(userRoles);
+				this.userRoles = userRoles;
+				this.roleIds   = ret;
+			}
+
+			return ret;
+		}
+	}
+
+	private static class PrincipalIdMap {
+		private final Map<String, Integer> ids    = new ConcurrentHashMap<>();
+		private final AtomicInteger        nextId = new AtomicInteger();
+
+		int[] getOrCreateIds(Collection<String> names) {
+			if (names == null || names.isEmpty()) {
+				return EMPTY_IDS;
+			}
+
+			int[] ret   = new int[names.size()];
+			int   count = 0;
+
+			for (String name : names) {
+				if (name != null) {
+					ret[count++] = ids.computeIfAbsent(name, k -> nextId.getAndIncrement());
+				}
+			}
+
+			if (count < ret.length) {
+				ret = Arrays.copyOf(ret, count);
+			}
+
+			Arrays.sort(ret);
+
+			return ret;
+		}
+
+		int getId(String name) {
+			Integer ret = ids.get(name);
+
+			return ret != null ? ret : -1;
+		}
+
+		BitSet getIds(Collection<String> names) {
+			BitSet ret = new BitSet();
+
+			if (names != null) {
+				for (String name : names) {
+					Integer id = name != null ? ids.get(name) : null;
+
+					if (id != null) {
+						ret.set(id);
+					}
+				}
+			}
+
+			return ret;
+		}
+
+		int size() { return ids.size(); }
+	}
+}
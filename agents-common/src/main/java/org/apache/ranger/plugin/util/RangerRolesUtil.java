@@ -22,33 +22,60 @@
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.plugin.model.RangerRole;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/*
+ * Indexes roles of users, groups and roles once, on creation. The index is not modified afterwards: a role
+ * update creates a new instance, hence lookups need no lock. Maps and sets returned are unmodifiable.
+ */
 public class RangerRolesUtil {
+    static final int ROLES_MEMO_MAX_SIZE = 10000;
+
     private final long                     roleVersion;
-    private final Map<String, Set<String>> userRoleMapping = new HashMap<>();
-    private final Map<String, Set<String>> groupRoleMapping = new HashMap<>();
-    private final Map<String, Set<String>> roleRoleMapping  = new HashMap<>();
+    private final Map<String, Set<String>> userRoleMapping;
+    private final Map<String, Set<String>> groupRoleMapping;
+    private final Map<String, Set<String>> roleRoleMapping;
+
+    private final Map<String, Set<String>> roleToUserMapping;
+    private final Map<String, Set<String>> roleToGroupMapping;
 
-    private final Map<String, Set<String>> roleToUserMapping = new HashMap<>();
-    private final Map<String, Set<String>> roleToGroupMapping = new HashMap<>();
+    // roles of recently seen users, along with the groups the roles were computed for
+    private final Map<String, RolesMemo>   rolesMemo        = new ConcurrentHashMap<>();
+    private final Set<String>              publicGroupRoles;
 
-    private RangerRoles                    roles            = null;
+    private final RangerRoles              roles;
     public  enum  ROLES_FOR {USER, GROUP, ROLE}
 
     public RangerRolesUtil(RangerRoles roles) {
+        Map<String, Set<String>> userRoleMapping    = new HashMap<>();
+        Map<String, Set<String>> groupRoleMapping   = new HashMap<>();
+        Map<String, Set<String>> roleRoleMapping    = new HashMap<>();
+        Map<String, Set<String>> roleToUserMapping  = new HashMap<>();
+        Map<String, Set<String>> roleToGroupMapping = new HashMap<>();
+
+        this.roles = roles;
+
         if (roles != null) {
-            this.roles  = roles;
             roleVersion = roles.getRoleVersion() != null ? roles.getRoleVersion() : -1;
 
             if (CollectionUtils.isNotEmpty(roles.getRangerRoles())) {
+                Map<String, RangerRole> nameToRole = new HashMap<>();
+
+                for (RangerRole role : roles.getRangerRoles()) {
+                    nameToRole.putIfAbsent(role.getName(), role);
+                }
+
                 for (RangerRole role : roles.getRangerRoles()) {
-                    Set<RangerRole> containedRoles = getAllContainedRoles(roles.getRangerRoles(), role);
+                    Set<RangerRole> containedRoles = getAllContainedRoles(nameToRole, role);
 
                     buildMap(userRoleMapping, role, containedRoles, ROLES_FOR.USER);
                     buildMap(groupRoleMapping, role, containedRoles, ROLES_FOR.GROUP);
@@ -73,6 +100,16 @@ public RangerRolesUtil(RangerRoles roles) {
         } else {
             roleVersion = -1L;
         }
+
+        this.userRoleMapping    = toUnmodifiable(userRoleMapping);
+        this.groupRoleMapping   = toUnmodifiable(groupRoleMapping);
+        this.roleRoleMapping    = toUnmodifiable(roleRoleMapping);
+        this.roleToUserMapping  = toUnmodifiable(roleToUserMapping);
+        this.roleToGroupMapping = toUnmodifiable(roleToGroupMapping);
+
+        Set<String> publicRoles = this.groupRoleMapping.get(RangerPolicyEngine.GROUP_PUBLIC);
+
+        publicGroupRoles = CollectionUtils.isNotEmpty(publicRoles) ? publicRoles : Collections.emptySet();
     }
 
     public long getRoleVersion() { return roleVersion; }
@@ -101,7 +138,115 @@ public Map<String, Set<String>> getRoleToGroupMapping() {
         return this.roleToGroupMapping;
     }
 
-    private Set<RangerRole> getAllContainedRoles(Set<RangerRole> roles, RangerRole role) {
+    /*
+     * Returns roles of the given user and groups, including roles of the public group, in an unmodifiable set
+     * that may be shared with other callers. Roles are memoized per user, along with the groups they were
+     * computed for; the memo is used only when the groups are the same as the memoized ones.
+     */
+    public Set<String> getRolesForUserAndGroups(String user, Set<String> groups) {
+        final Set<String> ret;
+
+        if (userRoleMapping.isEmpty() && groupRoleMapping.isEmpty()) {
+            ret = Collections.emptySet();
+        } else if (user == null) {
+            ret = computeRolesForUserAndGroups(null, groups);
+        } else {
+            Set<String> userGroups = groups != null ? groups : Collections.emptySet();
+            int         groupsHash = userGroups.hashCode();
+            RolesMemo   memo       = rolesMemo.get(user);
+
+            if (memo != null && memo.groupsHash == groupsHash && memo.groups.equals(userGroups)) {
+                ret = memo.roles;
+            } else {
+                ret = computeRolesForUserAndGroups(user, userGroups);
+
+                if (memo == null && rolesMemo.size() >= ROLES_MEMO_MAX_SIZE) {
+                    evictRolesMemo();
+                }
+
+                rolesMemo.put(user, new RolesMemo(new HashSet<>(userGroups), groupsHash, ret));
+            }
+        }
+
+        return ret;
+    }
+
+    int getRolesMemoSize() {
+        return rolesMemo.size();
+    }
+
+    boolean isRolesMemoized(String user) {
+        return rolesMemo.containsKey(user);
+    }
+
+    // makes room in the memo by removing an arbitrary entry; entries of users seen again are put back
+    private void evictRolesMemo() {
+        Iterator<String> iter = rolesMemo.keySet().iterator();
+
+        if (iter.hasNext()) {
+            iter.next();
+            iter.remove();
+        }
+    }
+
+    /*
+     * Returns the set in the index when roles come from only one of the user, a group or the public group;
+     * a new set is created only to merge roles from more than one of them.
+     */
+    private Set<String> computeRolesForUserAndGroups(String user, Set<String> groups) {
+        Set<String> ret    = null;
+        boolean     merged = false;
+
+        if (StringUtils.isNotEmpty(user)) {
+            Set<String> userRoles = userRoleMapping.get(user);
+
+            if (CollectionUtils.isNotEmpty(userRoles)) {
+                ret = userRoles;
+            }
+        }
+
+        if (CollectionUtils.isNotEmpty(groups) && !groupRoleMapping.isEmpty()) {
+            for (String group : groups) {
+                Set<String> groupRoles = groupRoleMapping.get(group);
+
+                if (CollectionUtils.isNotEmpty(groupRoles)) {
+                    if (ret == null) {
+                        ret = groupRoles;
+                    } else if (!ret.containsAll(groupRoles)) {
+                        if (!merged) {
+                            ret    = new HashSet<>(ret);
+                            merged = true;
+                        }
+
+                        ret.addAll(groupRoles);
+                    }
+                }
+            }
+        }
+
+        if (!publicGroupRoles.isEmpty()) {
+            if (ret == null) {
+                ret = publicGroupRoles;
+            } else if (!ret.containsAll(publicGroupRoles)) {
+                if (!merged) {
+                    ret    = new HashSet<>(ret);
+                    merged = true;
+                }
+
+                ret.addAll(publicGroupRoles);
+            }
+        }
+
+        if (ret == null) {
+            ret = Collections.emptySet();
+        } else if (merged) {
+            ret = Collections.unmodifiableSet(ret);
+        }
+
+        return ret;
+    }
+
+    private Set<RangerRole> getAllContainedRoles(Map<String, RangerRole> roles, RangerRole role) {
         Set<RangerRole> allRoles = new HashSet<>();
 
         allRoles.add(role);
@@ -110,11 +255,11 @@ private Set<RangerRole> getAllContainedRoles(Set<RangerRole> roles, RangerRole r
         return allRoles;
     }
 
-    private void addContainedRoles(Set<RangerRole> allRoles, Set<RangerRole> roles, RangerRole role) {
+    private void addContainedRoles(Set<RangerRole> allRoles, Map<String, RangerRole> roles, RangerRole role) {
         List<RangerRole.RoleMember> roleMembers = role.getRoles();
 
         for (RangerRole.RoleMember roleMember : roleMembers) {
-            RangerRole containedRole = getContainedRole(roles, roleMember.getName());
+            RangerRole containedRole = roles.get(roleMember.getName());
 
             if (containedRole!= null && !allRoles.contains(containedRole)) {
                 allRoles.add(containedRole);
@@ -158,15 +303,29 @@ private void getRoleMap(Map<String, Set<String>> map, String roleName, List<Rang
         }
     }
 
-    private RangerRole getContainedRole(Set<RangerRole> roles, String role) {
-        return (roles.stream().filter(containedRole -> role.equals(containedRole.getName())).findAny().orElse(null));
-    }
-
     private void addMemberNames(List<RangerRole.RoleMember> members, Set<String> names) {
         for (RangerRole.RoleMember member : members) {
             names.add(member.getName());
         }
     }
-}
 
+    private static Map<String, Set<String>> toUnmodifiable(Map<String, Set<String>> map) {
+        for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+            entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+        }
+
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static class RolesMemo {
+        final Set<String> groups;
+        final int         groupsHash;
+        final Set<String> roles;
 
+        RolesMemo(Set<String> groups, int groupsHash, Set<String> roles) {
+            this.groups     = groups;
+            this.groupsHash = groupsHash;
+            this.roles      = roles;
+        }
+    }
+}
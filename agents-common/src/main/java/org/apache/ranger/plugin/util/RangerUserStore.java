@@ -32,7 +32,9 @@
 import java.io.Serializable;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 @JsonAutoDetect(fieldVisibility= JsonAutoDetect.Visibility.ANY)
@@ -49,6 +51,9 @@ public class RangerUserStore implements Serializable {
     private Map<String, Set<String>>         userGroupMapping;
     private Map<String, String>              userCloudIdMapping;
     private Map<String, String>              groupCloudIdMapping;
+    private Boolean                          isDelta;
+    private Set<String>                      changedUsers;  // in a delta: users whose attributes/groups are replaced by the ones in this delta; absent means removed
+    private Set<String>                      changedGroups; // in a delta: groups whose attributes are replaced by the ones in this delta; absent means removed
 
     public RangerUserStore() {this(-1L, null, null, null);}
 
@@ -114,6 +119,135 @@ public void setGroupCloudIdMapping(Map<String, String> groupCloudIdMapping) {
         this.groupCloudIdMapping = groupCloudIdMapping;
     }
 
+    public Boolean getIsDelta() {
+        return isDelta == null ? Boolean.FALSE : isDelta;
+    }
+
+    public void setIsDelta(Boolean isDelta) {
+        this.isDelta = isDelta;
+    }
+
+    public Set<String> getChangedUsers() {
+        return changedUsers;
+    }
+
+    public void setChangedUsers(Set<String> changedUsers) {
+        this.changedUsers = changedUsers;
+    }
+
+    public Set<String> getChangedGroups() {
+        return changedGroups;
+    }
+
+    public void setChangedGroups(Set<String> changedGroups) {
+        this.changedGroups = changedGroups;
+    }
+
+    /*
+     * Returns a userstore with the given delta applied to this one. Only the top-level maps are copied, entries of
+     * users/groups not in the delta are shared with this userstore - which is left unchanged, as it might be in use
+     * by other threads. When this userstore is itself a delta, the result is a delta covering both.
+     */
+    public RangerUserStore applyDelta(RangerUserStore delta) {
+        RangerUserStore ret = new RangerUserStore();
+
+        ret.userStoreVersion    = delta.userStoreVersion;
+        ret.userStoreUpdateTime = delta.userStoreUpdateTime;
+        ret.isDelta             = isDelta;
+        ret.userAttrMapping     = copyOf(getUserAttrMapping());
+        ret.groupAttrMapping    = copyOf(getGroupAttrMapping());
+        ret.userGroupMapping    = copyOf(getUserGroupMapping());
+        ret.userCloudIdMapping  = copyOf(getUserCloudIdMapping());
+        ret.groupCloudIdMapping = copyOf(getGroupCloudIdMapping());
+
+        if (CollectionUtils.isNotEmpty(delta.changedUsers)) {
+            for (String user : delta.changedUsers) {
+                replaceEntry(user, delta.userAttrMapping, ret.userAttrMapping, ret.userCloudIdMapping);
+
+                Set<String> userGroups = delta.userGroupMapping != null ? delta.userGroupMapping.get(user) : null;
+
+                if (userGroups != null) {
+                    ret.userGroupMapping.put(user, userGroups);
+                } else {
+                    ret.userGroupMapping.remove(user);
+                }
+            }
+        }
+
+        if (CollectionUtils.isNotEmpty(delta.changedGroups)) {
+            for (String group : delta.changedGroups) {
+                replaceEntry(group, delta.groupAttrMapping, ret.groupAttrMapping, ret.groupCloudIdMapping);
+            }
+        }
+
+        if (ret.getIsDelta()) {
+            ret.changedUsers  = union(changedUsers, delta.changedUsers);
+            ret.changedGroups = union(changedGroups, delta.changedGroups);
+        }
+
+        return ret;
+    }
+
+    /*
+     * Returns the delta that changes oldStore to newStore; i.e. oldStore.applyDelta(getDelta(oldStore, newStore))
+     * has the same users, groups and memberships as newStore
+     */
+    public static RangerUserStore getDelta(RangerUserStore oldStore, RangerUserStore newStore) {
+        RangerUserStore ret = new RangerUserStore();
+
+        ret.userStoreVersion    = newStore.userStoreVersion;
+        ret.userStoreUpdateTime = newStore.userStoreUpdateTime;
+        ret.isDelta             = Boolean.TRUE;
+        ret.userAttrMapping     = new HashMap<>();
+        ret.groupAttrMapping    = new HashMap<>();
+        ret.userGroupMapping    = new HashMap<>();
+        ret.changedUsers        = new HashSet<>();
+        ret.changedGroups       = new HashSet<>();
+
+        Set<String> users = new HashSet<>();
+
+        addKeys(users, oldStore.userAttrMapping);
+        addKeys(users, oldStore.userGroupMapping);
+        addKeys(users, newStore.userAttrMapping);
+        addKeys(users, newStore.userGroupMapping);
+
+        for (String user : users) {
+            Map<String, String> newAttrs  = get(newStore.userAttrMapping, user);
+            Set<String>         newGroups = get(newStore.userGroupMapping, user);
+
+            if (!Objects.equals(get(oldStore.userAttrMapping, user), newAttrs) || !Objects.equals(get(oldStore.userGroupMapping, user), newGroups)) {
+                ret.changedUsers.add(user);
+
+                if (newAttrs != null) {
+                    ret.userAttrMapping.put(user, newAttrs);
+                }
+
+                if (newGroups != null) {
+                    ret.userGroupMapping.put(user, newGroups);
+                }
+            }
+        }
+
+        Set<String> groups = new HashSet<>();
+
+        addKeys(groups, oldStore.groupAttrMapping);
+        addKeys(groups, newStore.groupAttrMapping);
+
+        for (String group : groups) {
+            Map<String, String> newAttrs = get(newStore.groupAttrMapping, group);
+
+            if (!Objects.equals(get(oldStore.groupAttrMapping, group), newAttrs)) {
+                ret.changedGroups.add(group);
+
+                if (newAttrs != null) {
+                    ret.groupAttrMapping.put(group, newAttrs);
+                }
+            }
+        }
+
+        return ret;
+    }
+
     public void dedupStrings() {
         Map<String, String> strTbl = new HashMap<>();
 
@@ -136,7 +270,12 @@ public String toString( ) {
     public StringBuilder toString(StringBuilder sb) {
         sb.append("RangerUserStore={")
                 .append("userStoreVersion=").append(userStoreVersion).append(", ")
-                .append("userStoreUpdateTime=").append(userStoreUpdateTime).append(", ");
+                .append("userStoreUpdateTime=").append(userStoreUpdateTime).append(", ")
+                .append("isDelta=").append(isDelta).append(", ");
+
+        Map<String, Map<String, String>> userAttrMapping  = getUserAttrMapping();
+        Map<String, Map<String, String>> groupAttrMapping = getGroupAttrMapping();
+        Map<String, Set<String>>         userGroupMapping = getUserGroupMapping();
 
         sb.append("users={");
         if(MapUtils.isNotEmpty(userAttrMapping)) {
@@ -208,4 +347,50 @@ private void buildMap(Set<UserInfo> users, Set<GroupInfo> groups) {
             }
         }
     }
+
+    private static void replaceEntry(String name, Map<String, Map<String, String>> deltaAttrMapping, Map<String, Map<String, String>> attrMapping, Map<String, String> cloudIdMapping) {
+        Map<String, String> oldAttrs   = attrMapping.remove(name);
+        String              oldCloudId = oldAttrs != null ? oldAttrs.get(CLOUD_IDENTITY_NAME) : null;
+
+        if (StringUtils.isNotEmpty(oldCloudId) && name.equals(cloudIdMapping.get(oldCloudId))) {
+            cloudIdMapping.remove(oldCloudId);
+        }
+
+        // an entry with no attributes is kept as well, so that the result matches the store the delta was computed from
+        if (deltaAttrMapping != null && deltaAttrMapping.containsKey(name)) {
+            Map<String, String> newAttrs = deltaAttrMapping.get(name);
+
+            attrMapping.put(name, newAttrs);
+
+            String cloudId = newAttrs != null ? newAttrs.get(CLOUD_IDENTITY_NAME) : null;
+
+            if (StringUtils.isNotEmpty(cloudId)) {
+                cloudIdMapping.put(cloudId, name);
+            }
+        }
+    }
+
+    private static Set<String> union(Set<String> set1, Set<String> set2) {
+        Set<String> ret = set1 != null ? new HashSet<>(set1) : new HashSet<>();
+
+        if (set2 != null) {
+            ret.addAll(set2);
+        }
+
+        return ret;
+    }
+
+    private static void addKeys(Set<String> keys, Map<String, ?> map) {
+        if (map != null) {
+            keys.addAll(map.keySet());
+        }
+    }
+
+    private static <T> Map<String, T> copyOf(Map<String, T> map) {
+        return map != null ? new HashMap<>(map) : new HashMap<>();
+    }
+
+    private static <T> T get(Map<String, T> map, String key) {
+        return map != null ? map.get(key) : null;
+    }
 }
@@ -25,6 +25,7 @@
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
+import org.apache.ranger.authorization.hadoop.config.RangerPluginConfig;
 import org.apache.ranger.plugin.contextenricher.TestTagEnricher.TagEnricherTestCase.TestData;
 import org.apache.ranger.plugin.model.RangerServiceDef;
 import org.apache.ranger.plugin.model.RangerServiceResource;
@@ -34,6 +35,7 @@
 import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher;
 import org.apache.ranger.plugin.policyresourcematcher.RangerPolicyResourceMatcher.MatchType;
 import org.apache.ranger.plugin.util.RangerAccessRequestUtil;
+import org.apache.ranger.plugin.util.RangerCommonConstants;
 import org.apache.ranger.plugin.util.ServiceTags;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -43,15 +45,23 @@
 import java.io.InputStreamReader;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class TestTagEnricher {
+    private static final RangerAccessResource HR_EMPLOYEE_SSN = createResource("hr", "employee", "ssn");
+
     static Gson gsonBuilder;
 
     @BeforeClass
@@ -94,6 +104,185 @@ public void testTagEnricher_hive() {
         runTestsFromResourceFiles(hiveTestResourceFiles);
     }
 
+    @Test
+    public void testSharedEnrichedServiceTags() {
+        TagEnricherTestCase testCase     = loadTestCase("/contextenricher/test_tagenricher_hive.json");
+        RangerTagEnricher   tagEnricher1 = createSharingTagEnricher(testCase);
+        RangerTagEnricher   tagEnricher2 = createSharingTagEnricher(testCase);
+        int                 entryCount   = RangerSharedEnrichedServiceTags.getEntryCount();
+
+        tagEnricher1.setServiceTags(createServiceTags(testCase, 1L));
+        tagEnricher2.setServiceTags(createServiceTags(testCase, 1L));
+
+        // same version: built once, shared by both enrichers
+        assertNotNull(tagEnricher1.getEnrichedServiceTags());
+        assertSame(tagEnricher1.getEnrichedServiceTags(), tagEnricher2.getEnrichedServiceTags());
+        assertEquals(entryCount + 1, RangerSharedEnrichedServiceTags.getEntryCount());
+
+        tagEnricher1.setServiceTags(createServiceTags(testCase, 2L));
+
+        assertNotSame(tagEnricher1.getEnrichedServiceTags(), tagEnricher2.getEnrichedServiceTags());
+        assertEquals(entryCount + 2, RangerSharedEnrichedServiceTags.getEntryCount());
+
+        // version 1 is no longer used by any enricher
+        tagEnricher2.setServiceTags(createServiceTags(testCase, 2L));
+
+        assertSame(tagEnricher1.getEnrichedServiceTags(), tagEnricher2.getEnrichedServiceTags());
+        assertEquals(entryCount + 1, RangerSharedEnrichedServiceTags.getEntryCount());
+
+        tagEnricher1.preCleanup();
+        tagEnricher2.preCleanup();
+
+        assertEquals(entryCount, RangerSharedEnrichedServiceTags.getEntryCount());
+    }
+
+    @Test
+    public void testSharedEnrichedServiceTagsWithDeltas() {
+        TagEnricherTestCase testCase     = loadTestCase("/contextenricher/test_tagenricher_hive.json");
+        RangerTagEnricher   tagEnricher1 = createSharingTagEnricher(testCase);
+        RangerTagEnricher   tagEnricher2 = createSharingTagEnricher(testCase);
+        int                 entryCount   = RangerSharedEnrichedServiceTags.getEntryCount();
+
+        tagEnricher1.setServiceTags(createServiceTags(testCase, 1L));
+        tagEnricher2.setServiceTags(createServiceTags(testCase, 1L));
+
+        assertSame(tagEnricher1.getEnrichedServiceTags(), tagEnricher2.getEnrichedServiceTags());
+        assertEquals(Collections.singletonList("PII"), getTagTypes(tagEnricher1, HR_EMPLOYEE_SSN));
+
+        // deltas are applied to a copy: the shared version 1 still used by tagEnricher2 must remain unchanged
+        tagEnricher1.setServiceTags(createResourceDeleteDeltas(testCase, 2L, 1L));
+
+        assertEquals(Long.valueOf(2L), tagEnricher1.getServiceTagsVersion());
+        assertEquals(Collections.emptyList(), getTagTypes(tagEnricher1, HR_EMPLOYEE_SSN));
+        assertEquals(Long.valueOf(1L), tagEnricher2.getServiceTagsVersion());
+        assertEquals(Collections.singletonList("PII"), getTagTypes(tagEnricher2, HR_EMPLOYEE_SSN));
+        assertEquals(entryCount + 2, RangerSharedEnrichedServiceTags.getEntryCount());
+
+        // version 2 built by tagEnricher1 from deltas is used by tagEnricher2, without applying the deltas again
+        tagEnricher2.setServiceTags(createResourceDeleteDeltas(testCase, 2L, 1L));
+
+        assertSame(tagEnricher1.getEnrichedServiceTags(), tagEnricher2.getEnrichedServiceTags());
+        assertEquals(Collections.emptyList(), getTagTypes(tagEnricher2, HR_EMPLOYEE_SSN));
+        assertEquals(entryCount + 1, RangerSharedEnrichedServiceTags.getEntryCount());
+
+        // other than resources under hr, which had tags only from the deleted resource
+        assertTags(testCase, tagEnricher2, new HashSet<>(Arrays.asList("hr-any", "hr.employee.ssn")));
+
+        tagEnricher1.preCleanup();
+        tagEnricher2.preCleanup();
+
+        assertEquals(entryCount, RangerSharedEnrichedServiceTags.getEntryCount());
+    }
+
+    @Test
+    public void testEnrichedServiceTagsNotSharedByDefault() {
+        TagEnricherTestCase testCase     = loadTestCase("/contextenricher/test_tagenricher_hive.json");
+        RangerTagEnricher   tagEnricher1 = createTagEnricher(testCase, false);
+        RangerTagEnricher   tagEnricher2 = createTagEnricher(testCase, false);
+        int                 entryCount   = RangerSharedEnrichedServiceTags.getEntryCount();
+
+        tagEnricher1.setServiceTags(createServiceTags(testCase, 1L));
+        tagEnricher2.setServiceTags(createServiceTags(testCase, 1L));
+
+        assertNotSame(tagEnricher1.getEnrichedServiceTags(), tagEnricher2.getEnrichedServiceTags());
+        assertEquals(entryCount, RangerSharedEnrichedServiceTags.getEntryCount());
+
+        assertTags(testCase, tagEnricher1, Collections.emptySet());
+        assertTags(testCase, tagEnricher2, Collections.emptySet());
+    }
+
+    private RangerTagEnricher createSharingTagEnricher(TagEnricherTestCase testCase) {
+        return createTagEnricher(testCase, true);
+    }
+
+    private RangerTagEnricher createTagEnricher(TagEnricherTestCase testCase, boolean shareEnrichedServiceTags) {
+        RangerPluginConfig pluginConfig = new RangerPluginConfig(testCase.serviceDef.getName(), testCase.serviceName, "test-shared-tags", null, null, null);
+
+        if (shareEnrichedServiceTags) {
+            pluginConfig.setBoolean(pluginConfig.getPropertyPrefix() + RangerCommonConstants.PLUGIN_CONFIG_SUFFIX_SHARED_TAG_ENRICHMENT, true);
+        }
+
+        RangerTagEnricher ret = new RangerTagEnricher();
+
+        ret.setServiceName(testCase.serviceName);
+        ret.setServiceDef(testCase.serviceDef);
+        ret.setPluginContext(new RangerPluginContext(pluginConfig));
+        ret.init();
+
+        return ret;
+    }
+
+    private ServiceTags createServiceTags(TagEnricherTestCase testCase, Long tagVersion) {
+        ServiceTags ret = new ServiceTags();
+
+        ret.setServiceName(testCase.serviceName);
+        ret.setTagVersion(tagVersion);
+        ret.setTagDefinitions(testCase.tagDefinitions);
+        ret.setTags(testCase.tags);
+        ret.setServiceResources(new ArrayList<>(testCase.serviceResources));
+        ret.setResourceToTagIds(testCase.resourceToTagIds);
+
+        return ret;
+    }
+
+    /*
+     * deltas that delete the service-resource of given id
+     */
+    private ServiceTags createResourceDeleteDeltas(TagEnricherTestCase testCase, Long tagVersion, Long resourceId) {
+        ServiceTags ret = new ServiceTags();
+
+        for (RangerServiceResource serviceResource : testCase.serviceResources) {
+            if (resourceId.equals(serviceResource.getId())) {
+                RangerServiceResource deleted = new RangerServiceResource(serviceResource.getGuid(), serviceResource.getServiceName(), serviceResource.getResourceElements());
+
+                deleted.setId(serviceResource.getId());
+                deleted.setResourceSignature(null);
+
+                ret.getServiceResources().add(deleted);
+            }
+        }
+
+        ret.setServiceName(testCase.serviceName);
+        ret.setTagVersion(tagVersion);
+        ret.setIsDelta(true);
+        ret.setTagsChangeExtent(ServiceTags.TagsChangeExtent.SERVICE_RESOURCE);
+
+        return ret;
+    }
+
+    private TagEnricherTestCase loadTestCase(String resourceName) {
+        return gsonBuilder.fromJson(new InputStreamReader(this.getClass().getResourceAsStream(resourceName)), TagEnricherTestCase.class);
+    }
+
+    private static RangerAccessResource createResource(String database, String table, String column) {
+        Map<String, Object> elements = new HashMap<>();
+
+        elements.put("database", database);
+        elements.put("table", table);
+        elements.put("column", column);
+
+        return new RangerAccessResourceImpl(elements);
+    }
+
+    private static List<String> getTagTypes(RangerTagEnricher tagEnricher, RangerAccessResource resource) {
+        RangerAccessRequestImpl request = new RangerAccessRequestImpl(resource, RangerPolicyEngine.ANY_ACCESS, "testUser", null, null);
+
+        tagEnricher.enrich(request);
+
+        Set<RangerTagForEval> tags = RangerAccessRequestUtil.getRequestTagsFromContext(request.getContext());
+        List<String>          ret  = new ArrayList<>();
+
+        if (tags != null) {
+            for (RangerTagForEval tag : tags) {
+                ret.add(tag.getType());
+            }
+
+            Collections.sort(ret);
+        }
+
+        return ret;
+    }
+
     private void runTestsFromResourceFiles(String[] resourceNames) {
         for(String resourceName : resourceNames) {
             InputStream       inStream = this.getClass().getResourceAsStream(resourceName);
@@ -122,10 +311,21 @@ private void runTests(InputStreamReader reader, String testName) {
         tagEnricher.init();
         tagEnricher.setServiceTags(serviceTags);
 
+        assertTags(testCase, tagEnricher, Collections.emptySet());
+    }
+
+    /*
+     * runs the tests in testCase, other than the ones named in testsToSkip
+     */
+    private void assertTags(TagEnricherTestCase testCase, RangerTagEnricher tagEnricher, Set<String> testsToSkip) {
         List<String> expectedTags = new ArrayList<>();
         List<String> resultTags   = new ArrayList<>();
 
         for (TestData test : testCase.tests) {
+            if (testsToSkip.contains(test.name)) {
+                continue;
+            }
+
             RangerAccessRequestImpl request = new RangerAccessRequestImpl(test.resource, test.accessType, "testUser", null, null);
 
             tagEnricher.enrich(request);
@@ -115,7 +115,60 @@ public void testSelfScope() {
 		verifyEvaluators("invalid: does-not-begin-with-sep", scope);
 	}
 
+	@Test
+	public void testCopyOnWriteUpdates() {
+		verifyCopyOnWriteUpdates(new RangerResourceTrie<>(PATH_RESOURCE_DEF, EVALUATORS, false, false, null));
+		verifyCopyOnWriteUpdates(new RangerResourceTrie<>(PATH_RESOURCE_DEF, EVALUATORS, true, false, null));
+		verifyCopyOnWriteUpdates(new RangerResourceTrie<>(PATH_RESOURCE_DEF, EVALUATORS, false, true, null));
+	}
+
+	private void verifyCopyOnWriteUpdates(RangerResourceTrie<RangerResourceEvaluator> original) {
+		final ResourceElementMatchingScope self   = ResourceElementMatchingScope.SELF;
+		final ResourceElementMatchingScope prefix = ResourceElementMatchingScope.SELF_OR_PREFIX;
+		final RangerResourceEvaluator      exact  = getEvaluator("/tmp/ac/d", false, false);
+		final RangerResourceEvaluator      wild   = getEvaluator("/tmp/a*", false, false);
+
+		// setup nodes of the original trie, as lookups do
+		verifyEvaluators(original, "/tmp/ab", self, EVAL_, EVAL_TMP_AB);
+		verifyEvaluators(original, "/tmp/ac/d", self, EVAL_);
+
+		RangerResourceTrie<RangerResourceEvaluator> copy = new RangerResourceTrie<>(original, true);
+
+		copy.add(exact.getPolicyResource().get(PATH_RESOURCE_DEF.getName()), exact);
+		copy.add(wild.getPolicyResource().get(PATH_RESOURCE_DEF.getName()), wild);
+		copy.delete(EVAL_TMP_AB.getPolicyResource().get(PATH_RESOURCE_DEF.getName()), EVAL_TMP_AB);
+		copy.wrapUpUpdate();
+
+		verifyEvaluators(copy, "/tmp", self, EVAL_, EVAL_TMPnr);
+		verifyEvaluators(copy, "/tmp/ab", self, EVAL_, wild);
+		verifyEvaluators(copy, "/tmp/ac/d", self, EVAL_, exact, wild);
+		verifyEvaluators(copy, "/tmp/a/b", self, EVAL_, EVAL_TMP_A_B, wild);
+		verifyEvaluators(copy, "/tmp/a", prefix, EVAL_, EVAL_TMP_A_B, EVAL_TMP_AC_D_E_F, exact, wild);
+
+		// the original trie must be unchanged
+		verifyEvaluators(original, "/tmp", self, EVAL_, EVAL_TMPnr);
+		verifyEvaluators(original, "/tmp/ab", self, EVAL_, EVAL_TMP_AB);
+		verifyEvaluators(original, "/tmp/ac/d", self, EVAL_);
+		verifyEvaluators(original, "/tmp/a/b", self, EVAL_, EVAL_TMP_A_B);
+		verifyEvaluators(original, "/tmp/a", prefix, EVAL_, EVAL_TMP_AB, EVAL_TMP_A_B, EVAL_TMP_AC_D_E_F);
+
+		// updates to a copy of the copy must not change either
+		RangerResourceTrie<RangerResourceEvaluator> copyOfCopy = new RangerResourceTrie<>(copy, true);
+
+		copyOfCopy.delete(wild.getPolicyResource().get(PATH_RESOURCE_DEF.getName()), wild);
+		copyOfCopy.wrapUpUpdate();
+
+		verifyEvaluators(copyOfCopy, "/tmp/ac/d", self, EVAL_, exact);
+		verifyEvaluators(copyOfCopy, "/tmp/a/b", self, EVAL_, EVAL_TMP_A_B);
+		verifyEvaluators(copy, "/tmp/ac/d", self, EVAL_, exact, wild);
+		verifyEvaluators(original, "/tmp/ac/d", self, EVAL_);
+	}
+
 	private void verifyEvaluators(String resource, ResourceElementMatchingScope scope, RangerResourceEvaluator... evaluators) {
+		verifyEvaluators(trie, resource, scope, evaluators);
+	}
+
+	private void verifyEvaluators(RangerResourceTrie<RangerResourceEvaluator> trie, String resource, ResourceElementMatchingScope scope, RangerResourceEvaluator... evaluators) {
 		Set<RangerResourceEvaluator> expected = evaluators.length == 0 ? null : new HashSet<>(Arrays.asList(evaluators));
 		Set<RangerResourceEvaluator> result   = trie.getEvaluatorsForResource(resource, scope);
 
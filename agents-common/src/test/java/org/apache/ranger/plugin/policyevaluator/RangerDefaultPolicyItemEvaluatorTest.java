@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyevaluator;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.apache.ranger.plugin.util.RangerPrincipalDictionary;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RangerDefaultPolicyItemEvaluatorTest {
+
+	@Test
+	public void testMatchWithDictionarySameAsWithoutDictionary() {
+		List<RangerPolicyItem> policyItems = Arrays.asList(
+				policyItem(Arrays.asList("user1"), null, null),
+				policyItem(null, Arrays.asList("finance", "hr"), null),
+				policyItem(null, null, Arrays.asList("auditor")),
+				policyItem(Arrays.asList(RangerPolicyEngine.USER_CURRENT), null, null),
+				policyItem(null, Arrays.asList(RangerPolicyEngine.GROUP_PUBLIC), null),
+				policyItem(Arrays.asList(RangerPolicyEngine.RESOURCE_OWNER), null, null),
+				policyItem(Arrays.asList("user2"), Arrays.asList("sales"), Arrays.asList("admin")));
+		List<RangerAccessRequestImpl> requests = Arrays.asList(
+				request("user1", Arrays.asList("sales"), null, null),
+				request("user3", Arrays.asList("hr", "eng"), null, null),
+				request("user3", Arrays.asList("eng"), Arrays.asList("auditor"), null),
+				request("user3", Arrays.asList("eng"), Arrays.asList("dev"), "user3"),
+				request("user4", Collections.emptyList(), null, "user1"),
+				request(null, Arrays.asList("finance"), null, null));
+
+		int matchCount = 0;
+
+		for (RangerPolicyItem policyItem : policyItems) {
+			RangerDefaultPolicyItemEvaluator withDictionary    = evaluator(policyItem, new RangerPrincipalDictionary());
+			RangerDefaultPolicyItemEvaluator withoutDictionary = evaluator(policyItem, null);
+
+			for (RangerAccessRequestImpl request : requests) {
+				boolean isMatch = withoutDictionary.isMatch(request);
+
+				assertEquals("policyItem=" + policyItem + ", request=" + request, isMatch, withDictionary.isMatch(request));
+
+				if (isMatch) {
+					matchCount++;
+				}
+			}
+		}
+
+		// user1: 1, finance/hr: 2, auditor: 1, {USER}: 5, public: 6, {OWNER}: 1, user2/sales/admin: 1
+		assertEquals(17, matchCount);
+	}
+
+	@Test
+	public void testMatchAcrossDictionaryGenerations() {
+		RangerPrincipalDictionary        generation1 = new RangerPrincipalDictionary();
+		RangerPrincipalDictionary        generation2 = new RangerPrincipalDictionary();
+		RangerDefaultPolicyItemEvaluator evaluator1  = evaluator(policyItem(Arrays.asList("user1"), Arrays.asList("finance"), null), generation1);
+		RangerDefaultPolicyItemEvaluator evaluator2  = evaluator(policyItem(Arrays.asList("user2"), Arrays.asList("hr"), null), generation2);
+		RangerAccessRequestImpl          request     = request("user2", Arrays.asList("finance"), null, null);
+
+		// principals of the request resolved in the first generation must not be used with the second one
+		assertTrue(evaluator1.isMatch(request));
+		assertTrue(evaluator2.isMatch(request));
+		assertTrue(evaluator1.isMatch(request));
+
+		// principals of the earlier generation are not added to the new one
+		assertEquals(-1, generation2.getUserId("user1"));
+		assertEquals(0, generation2.getGroupIds(Arrays.asList("finance")).cardinality());
+	}
+
+	private RangerDefaultPolicyItemEvaluator evaluator(RangerPolicyItem policyItem, RangerPrincipalDictionary dictionary) {
+		RangerPolicy              policy  = new RangerPolicy();
+		RangerPolicyEngineOptions options = new RangerPolicyEngineOptions();
+
+		policy.setId(1L);
+		policy.setPolicyItems(Collections.singletonList(policyItem));
+		options.setPrincipalDictionary(dictionary);
+
+		RangerDefaultPolicyItemEvaluator ret = new RangerDefaultPolicyItemEvaluator(new RangerServiceDef(), policy, policyItem, RangerPolicyItemEvaluator.POLICY_ITEM_TYPE_ALLOW, 0, options);
+
+		ret.init();
+
+		return ret;
+	}
+
+	private RangerPolicyItem policyItem(List<String> users, List<String> groups, List<String> roles) {
+		RangerPolicyItem ret = new RangerPolicyItem();
+
+		ret.setUsers(users);
+		ret.setGroups(groups);
+		ret.setRoles(roles);
+		ret.setDelegateAdmin(true);
+
+		return ret;
+	}
+
+	private RangerAccessRequestImpl request(String user, List<String> groups, List<String> roles, String owner) {
+		RangerAccessRequestImpl ret = new RangerAccessRequestImpl(new RangerAccessResourceImpl(new HashMap<>(), owner), RangerPolicyEngine.ADMIN_ACCESS, user, new HashSet<>(groups), roles != null ? new HashSet<>(roles) : null);
+
+		ret.setContext(new HashMap<>());
+
+		return ret;
+	}
+}
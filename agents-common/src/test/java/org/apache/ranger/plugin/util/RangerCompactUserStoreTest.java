@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import com.google.gson.Gson;
+import org.apache.ranger.plugin.model.GroupInfo;
+import org.apache.ranger.plugin.model.UserInfo;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RangerCompactUserStoreTest {
+
+	@Test
+	public void testSameContents() throws Exception {
+		RangerUserStore        userStore = createUserStore();
+		RangerCompactUserStore compact   = new RangerCompactUserStore(userStore);
+
+		assertEquals(userStore.getUserStoreVersion(), compact.getUserStoreVersion());
+		assertSameContents(userStore, compact);
+
+		// views should compare equal in both directions
+		assertEquals(compact.getUserAttrMapping(), userStore.getUserAttrMapping());
+		assertEquals(compact.getUserGroupMapping(), userStore.getUserGroupMapping());
+
+		RangerUserStore fromJson = JsonUtilsV2.jsonToObj(JsonUtilsV2.objToJson(compact), RangerUserStore.class);
+
+		assertSameContents(userStore, fromJson);
+	}
+
+	@Test
+	public void testLookups() {
+		RangerUserStoreUtil util = new RangerUserStoreUtil(new RangerCompactUserStore(createUserStore()));
+
+		assertEquals("eng", util.getUserAttributes("user2").get("dept"));
+		assertNull(util.getUserAttributes("user2").get("location"));
+		assertNull(util.getUserAttributes("user4")); // user having groups, but no attributes
+		assertNull(util.getUserAttributes("unknown"));
+		assertEquals("sf", util.getGroupAttributes("group1").get("site"));
+		assertNull(util.getGroupAttributes("group3")); // group having members, but no attributes
+		assertTrue(util.getUserGroups("user4").contains("group3"));
+		assertFalse(util.getUserGroups("user4").contains("group1"));
+		assertFalse(util.getUserGroups("user4").contains("unknown"));
+		assertNull(util.getUserGroups("user3"));
+		assertEquals("user1", util.getUserNameFromEmail("user1@example.com"));
+	}
+
+	@Test
+	public void testDedupValues() {
+		RangerCompactUserStore compact = new RangerCompactUserStore(createUserStore());
+
+		assertSame(compact.getUserAttrMapping().get("user2").get("dept"), compact.getUserAttrMapping().get("user3").get("dept"));
+	}
+
+	@Test
+	public void testApplyDelta() {
+		RangerUserStore v1 = createUserStore();
+		RangerUserStore v2 = new RangerUserStore(2L,
+		                                         users(user("user1", "dept", "finance"), user("user2", "dept", "eng")),
+		                                         groups(group("group1", "site", "la")),
+		                                         userGroups("user1", "group1", "user2", "group1"));
+
+		RangerUserStore applied = new RangerCompactUserStore(v1).applyDelta(RangerUserStore.getDelta(v1, v2));
+
+		assertSameContents(v2, applied);
+	}
+
+	@Test
+	public void testSparseAttributes() {
+		RangerUserStore        userStore = new RangerUserStore(1L, users(user("user1", "a", "1"), user("user2", "b", "2"), user("user3"), user("user4", "a", "4", "c", "4")), groups(group("group1", "a", "1")), userGroups("user3", "group1"));
+		RangerCompactUserStore compact   = new RangerCompactUserStore(userStore);
+
+		assertSameContents(userStore, compact);
+		assertEquals(1, compact.getUserAttrMapping().get("user1").size());
+		assertNull(compact.getUserAttrMapping().get("user3")); // user having groups, but no attributes
+		assertEquals(2, compact.getUserAttrMapping().get("user4").size());
+		assertNull(compact.getUserAttrMapping().get("user1").get("b"));
+		assertNull(compact.getUserAttrMapping().get("user2").get("a"));
+		assertEquals("4", compact.getUserAttrMapping().get("user4").get("c"));
+	}
+
+	@Test
+	public void testApplyDeltaWithoutRebuild() {
+		RangerUserStore v1 = createUserStore();
+		RangerUserStore v2 = new RangerUserStore(2L,
+		                                         users(user("user1", "dept", "finance", RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-user1-new"), user("user2", "dept", "eng", "title", "engineer"), user("user3", "dept", "eng"), user("user5", "dept", "sales")),
+		                                         groups(group("group1", "site", "sf", RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-group1"), group("group4", "site", "la")),
+		                                         userGroups("user1", "group1", "user2", "group2", "user4", "group3", "user5", "group4"));
+		RangerUserStore v3 = new RangerUserStore(3L,
+		                                         users(user("user2", "dept", "eng", "title", "engineer"), user("user3", "dept", "eng"), user("user5", "dept", "sales", "title", "manager")),
+		                                         groups(group("group4", "site", "la")),
+		                                         userGroups("user2", "group2", "user5", "group4", "user5", "group2"));
+
+		RangerCompactUserStore compact  = new RangerCompactUserStore(v1);
+		RangerUserStore        appliedV2 = compact.applyDelta(RangerUserStore.getDelta(v1, v2));
+		RangerUserStore        appliedV3 = appliedV2.applyDelta(RangerUserStore.getDelta(v2, v3));
+
+		assertTrue(appliedV2 instanceof RangerCompactUserStore);
+		assertTrue(((RangerCompactUserStore) appliedV2).hasChanges());
+		assertEquals(Long.valueOf(2L), appliedV2.getUserStoreVersion());
+		assertSameContents(v2, appliedV2);
+		assertEquals(v2.getUserAttrMapping().size(), appliedV2.getUserAttrMapping().size());
+		assertEquals(v2.getUserGroupMapping().size(), appliedV2.getUserGroupMapping().size());
+		assertEquals(Long.valueOf(3L), appliedV3.getUserStoreVersion());
+		assertSameContents(v3, appliedV3);
+		assertNull(appliedV3.getUserAttrMapping().get("user1"));
+		assertNull(appliedV3.getUserGroupMapping().get("user1"));
+
+		// the earlier instance is not changed by applyDelta()
+		assertSameContents(v2, appliedV2);
+		assertFalse(compact.hasChanges());
+
+		RangerUserStore fromJson = new Gson().fromJson(new Gson().toJson(((RangerCompactUserStore) appliedV3).toRangerUserStore()), RangerUserStore.class);
+
+		assertSameContents(v3, fromJson);
+	}
+
+	@Test
+	public void testApplyDeltaRebuildsAfterManyChanges() {
+		Set<UserInfo> users = new HashSet<>();
+
+		for (int i = 0; i <= RangerCompactUserStore.MIN_CHANGES_BEFORE_REBUILD; i++) {
+			users.add(user("user" + i, "dept", "dept" + (i % 10)));
+		}
+
+		RangerUserStore v1 = createUserStore();
+		RangerUserStore v2 = new RangerUserStore(2L, users, groups(group("group1", "site", "sf")), userGroups("user1", "group1"));
+
+		RangerCompactUserStore compact = new RangerCompactUserStore(v1);
+		RangerUserStore        applied = compact.applyDelta(RangerUserStore.getDelta(v1, v2));
+
+		assertTrue(applied instanceof RangerCompactUserStore);
+		assertFalse(((RangerCompactUserStore) applied).hasChanges());
+		assertNotSame(compact, applied);
+		assertSameContents(v2, applied);
+	}
+
+	private static RangerUserStore createUserStore() {
+		return new RangerUserStore(1L,
+		                           users(user("user1", "dept", "hr", RangerCommonConstants.SCRIPT_FIELD__EMAIL_ADDRESS, "user1@example.com", RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-user1"),
+		                                 user("user2", "dept", "eng", "title", "engineer"),
+		                                 user("user3", "dept", "eng")),
+		                           groups(group("group1", "site", "sf", RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-group1"), group("group2", "site", "nyc")),
+		                           userGroups("user1", "group1", "user1", "group2", "user2", "group2", "user4", "group3"));
+	}
+
+	private static void assertSameContents(RangerUserStore expected, RangerUserStore actual) {
+		assertEquals(expected.getUserAttrMapping(), actual.getUserAttrMapping());
+		assertEquals(expected.getGroupAttrMapping(), actual.getGroupAttrMapping());
+		assertEquals(expected.getUserGroupMapping(), actual.getUserGroupMapping());
+		assertEquals(expected.getUserCloudIdMapping(), actual.getUserCloudIdMapping());
+		assertEquals(expected.getGroupCloudIdMapping(), actual.getGroupCloudIdMapping());
+	}
+
+	private static UserInfo user(String name, String... attrs) {
+		return new UserInfo(name, null, map(attrs));
+	}
+
+	private static GroupInfo group(String name, String... attrs) {
+		return new GroupInfo(name, null, map(attrs));
+	}
+
+	private static Set<UserInfo> users(UserInfo... users) {
+		return new HashSet<>(Arrays.asList(users));
+	}
+
+	private static Set<GroupInfo> groups(GroupInfo... groups) {
+		return new HashSet<>(Arrays.asList(groups));
+	}
+
+	private static Map<String, Set<String>> userGroups(String... userAndGroups) {
+		Map<String, Set<String>> ret = new HashMap<>();
+
+		for (int i = 0; i + 1 < userAndGroups.length; i += 2) {
+			ret.computeIfAbsent(userAndGroups[i], k -> new HashSet<>()).add(userAndGroups[i + 1]);
+		}
+
+		return ret;
+	}
+
+	private static Map<String, String> map(String... keysAndValues) {
+		Map<String, String> ret = new HashMap<>();
+
+		for (int i = 0; i + 1 < keysAndValues.length; i += 2) {
+			ret.put(keysAndValues[i], keysAndValues[i + 1]);
+		}
+
+		return ret;
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.util.RangerPrincipalDictionary.RequestPrincipals;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RangerPrincipalDictionaryTest {
+
+	@Test
+	public void testPolicyPrincipalIds() {
+		RangerPrincipalDictionary dictionary = new RangerPrincipalDictionary();
+
+		int[] groupIds1 = dictionary.getOrCreateGroupIds(Arrays.asList("finance", "hr", null));
+		int[] groupIds2 = dictionary.getOrCreateGroupIds(Arrays.asList("hr", "engineering"));
+
+		assertEquals(2, groupIds1.length);
+		assertEquals(3, dictionary.getGroupCount());
+		assertTrue(groupIds2[0] < groupIds2[1]);
+		assertArrayEquals(RangerPrincipalDictionary.EMPTY_IDS, dictionary.getOrCreateUserIds(null));
+
+		// principals seen only in requests are not added
+		assertEquals(-1, dictionary.getUserId("user1"));
+		assertEquals(0, dictionary.getGroupIds(Arrays.asList("sales", "marketing")).cardinality());
+		assertEquals(3, dictionary.getGroupCount());
+	}
+
+	@Test
+	public void testOvergrownAfterBaseline() {
+		RangerPrincipalDictionary dictionary = new RangerPrincipalDictionary();
+
+		dictionary.getOrCreateUserIds(Arrays.asList("user1"));
+		dictionary.getOrCreateGroupIds(Arrays.asList("finance"));
+
+		assertFalse(dictionary.isOvergrown());
+
+		dictionary.setBaseline();
+
+		for (int i = 0; i < RangerPrincipalDictionary.OVERGROWN_MIN_GROWTH; i++) {
+			dictionary.getOrCreateUserIds(Arrays.asList("delta-user" + i));
+		}
+
+		assertFalse(dictionary.isOvergrown());
+
+		dictionary.getOrCreateRoleIds(Arrays.asList("delta-role"));
+
+		assertTrue(dictionary.isOvergrown());
+		assertEquals(RangerPrincipalDictionary.OVERGROWN_MIN_GROWTH + 3, dictionary.getPrincipalCount());
+	}
+
+	@Test
+	public void testRequestPrincipals() {
+		RangerPrincipalDictionary dictionary = new RangerPrincipalDictionary();
+		int[]                     userIds    = dictionary.getOrCreateUserIds(Arrays.asList("user1"));
+		int[]                     financeIds = dictionary.getOrCreateGroupIds(Arrays.asList("finance"));
+		int[]                     hrIds      = dictionary.getOrCreateGroupIds(Arrays.asList("hr", "legal"));
+		int[]                     roleIds    = dictionary.getOrCreateRoleIds(Arrays.asList("auditor"));
+		Set<String>               userGroups = new HashSet<>(Arrays.asList("finance", "sales"));
+		RequestPrincipals         principals = new RequestPrincipals(dictionary, "user1", userGroups);
+
+		assertEquals(userIds[0], principals.getUserId());
+		assertTrue(RangerPrincipalDictionary.containsAny(principals.getGroupIds(), financeIds));
+		assertFalse(RangerPrincipalDictionary.containsAny(principals.getGroupIds(), hrIds));
+		assertTrue(RangerPrincipalDictionary.containsAny(principals.getRoleIds(new HashSet<>(Arrays.asList("auditor"))), roleIds));
+		assertFalse(RangerPrincipalDictionary.containsAny(principals.getRoleIds(new HashSet<>(Arrays.asList("admin"))), roleIds));
+
+		assertTrue(principals.isFor(dictionary, "user1", userGroups));
+		assertFalse(principals.isFor(dictionary, "user1", new HashSet<>(userGroups)));
+		assertFalse(principals.isFor(new RangerPrincipalDictionary(), "user1", userGroups));
+	}
+
+	@Test
+	public void testRequestPrincipalsSavedInContext() {
+		RangerPrincipalDictionary dictionary = new RangerPrincipalDictionary();
+		RangerAccessRequestImpl   request    = new RangerAccessRequestImpl();
+
+		request.setUser("user1");
+		request.setUserGroups(new HashSet<>(Arrays.asList("finance")));
+
+		RequestPrincipals principals = RangerAccessRequestUtil.getRequestPrincipals(request, dictionary);
+
+		assertSame(principals, RangerAccessRequestUtil.getRequestPrincipals(request, dictionary));
+
+		request.setUserGroups(new HashSet<>(Arrays.asList("hr")));
+
+		assertNotSame(principals, RangerAccessRequestUtil.getRequestPrincipals(request, dictionary));
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import org.apache.ranger.plugin.model.RangerRole;
+import org.apache.ranger.plugin.model.RangerRole.RoleMember;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class RangerRolesUtilTest {
+
+	@Test
+	public void testRolesForUserAndGroups() {
+		RangerRolesUtil rolesUtil = new RangerRolesUtil(getRoles());
+
+		// analyst contains auditor: members of auditor are members of analyst as well
+		assertEquals(set("auditor", "analyst", "everyone"), rolesUtil.getRolesForUserAndGroups("user1", set("sales")));
+		assertEquals(set("analyst", "everyone"), rolesUtil.getRolesForUserAndGroups("user2", set("finance", "hr")));
+		assertEquals(set("everyone"), rolesUtil.getRolesForUserAndGroups(null, null));
+		assertEquals(set("analyst"), rolesUtil.getRoleRoleMapping().get("auditor"));
+	}
+
+	@Test
+	public void testRolesMemo() {
+		RangerRolesUtil rolesUtil = new RangerRolesUtil(getRoles());
+		Set<String>     roles1    = rolesUtil.getRolesForUserAndGroups("user2", set("finance"));
+
+		// served from the memo: the same set is shared by callers, hence must not be modifiable
+		assertSame(roles1, rolesUtil.getRolesForUserAndGroups("user2", set("finance")));
+		assertThrows(UnsupportedOperationException.class, () -> roles1.add("added-by-caller"));
+
+		// groups of the user changed: roles must be recomputed
+		assertEquals(set("everyone"), rolesUtil.getRolesForUserAndGroups("user2", set("hr")));
+		assertEquals(set("analyst", "everyone"), rolesUtil.getRolesForUserAndGroups("user2", set("finance")));
+	}
+
+	@Test
+	public void testRolesFromIndexAreShared() {
+		RangerRolesUtil rolesUtil = new RangerRolesUtil(getRoles());
+
+		// roles of only the public group: the set in the index is returned, no new set is created
+		assertSame(rolesUtil.getGroupRoleMapping().get(RangerPolicyEngine.GROUP_PUBLIC), rolesUtil.getRolesForUserAndGroups("user3", set("hr")));
+		assertSame(rolesUtil.getGroupRoleMapping().get(RangerPolicyEngine.GROUP_PUBLIC), rolesUtil.getRolesForUserAndGroups(null, null));
+
+		assertThrows(UnsupportedOperationException.class, () -> rolesUtil.getUserRoleMapping().put("user3", set("auditor")));
+		assertThrows(UnsupportedOperationException.class, () -> rolesUtil.getUserRoleMapping().get("user1").add("everyone"));
+		assertThrows(UnsupportedOperationException.class, () -> rolesUtil.getRoleToUserMapping().get("analyst").add("user3"));
+	}
+
+	@Test
+	public void testRolesMemoIsBounded() {
+		RangerRolesUtil rolesUtil = new RangerRolesUtil(getRoles());
+
+		for (int i = 0; i <= RangerRolesUtil.ROLES_MEMO_MAX_SIZE; i++) {
+			rolesUtil.getRolesForUserAndGroups("other-user" + i, set("finance"));
+		}
+
+		assertEquals(RangerRolesUtil.ROLES_MEMO_MAX_SIZE, rolesUtil.getRolesMemoSize());
+		assertTrue(rolesUtil.isRolesMemoized("other-user" + RangerRolesUtil.ROLES_MEMO_MAX_SIZE));
+
+		// recomputed after eviction
+		for (int i = 0; i <= RangerRolesUtil.ROLES_MEMO_MAX_SIZE; i++) {
+			assertEquals(set("analyst", "everyone"), rolesUtil.getRolesForUserAndGroups("other-user" + i, set("finance")));
+		}
+
+		assertEquals(RangerRolesUtil.ROLES_MEMO_MAX_SIZE, rolesUtil.getRolesMemoSize());
+	}
+
+	@Test
+	public void testNoRoles() {
+		RangerRolesUtil rolesUtil = new RangerRolesUtil(null);
+
+		Set<String> roles = rolesUtil.getRolesForUserAndGroups("user1", set("finance"));
+
+		assertTrue(roles.isEmpty());
+		assertThrows(UnsupportedOperationException.class, () -> roles.add("added-by-caller"));
+		assertTrue(rolesUtil.getUserRoleMapping().isEmpty());
+	}
+
+	private RangerRoles getRoles() {
+		RangerRole auditor  = new RangerRole("auditor", null, null, members("user1"), Collections.emptyList(), Collections.emptyList());
+		RangerRole analyst  = new RangerRole("analyst", null, null, Collections.emptyList(), members("finance"), members("auditor"));
+		RangerRole everyone = new RangerRole("everyone", null, null, Collections.emptyList(), members(RangerPolicyEngine.GROUP_PUBLIC), Collections.emptyList());
+		RangerRoles ret     = new RangerRoles();
+
+		ret.setRoleVersion(1L);
+		ret.setRangerRoles(new HashSet<>(Arrays.asList(auditor, analyst, everyone)));
+
+		return ret;
+	}
+
+	private List<RoleMember> members(String... names) {
+		RoleMember[] ret = new RoleMember[names.length];
+
+		for (int i = 0; i < names.length; i++) {
+			ret[i] = new RoleMember(names[i], false);
+		}
+
+		return Arrays.asList(ret);
+	}
+
+	private Set<String> set(String... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import org.apache.ranger.plugin.model.GroupInfo;
+import org.apache.ranger.plugin.model.UserInfo;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class RangerUserStoreTest {
+
+	@Test
+	public void testDeltaApply() throws Exception {
+		RangerUserStore v1 = new RangerUserStore(1L,
+		                                         users(user("user1", "dept", "hr", RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-user1"), user("user2", "dept", "eng"), user("user3", "dept", "eng")),
+		                                         groups(group("group1", "site", "sf"), group("group2", "site", "nyc")),
+		                                         userGroups("user1", "group1", "user2", "group2", "user3", "group2"));
+		RangerUserStore v2 = new RangerUserStore(2L,
+		                                         users(user("user1", "dept", "finance", RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-user1"), user("user3", "dept", "eng"), user("user4", "dept", "eng")),
+		                                         groups(group("group1", "site", "sf"), group("group3", "site", "la")),
+		                                         userGroups("user1", "group1", "user3", "group3", "user4", "group3"));
+
+		RangerUserStore delta = RangerUserStore.getDelta(v1, v2);
+
+		assertTrue(delta.getIsDelta());
+		assertEquals(Long.valueOf(2L), delta.getUserStoreVersion());
+		assertEquals(new HashSet<>(Arrays.asList("user1", "user2", "user3", "user4")), delta.getChangedUsers());
+		assertEquals(new HashSet<>(Arrays.asList("group2", "group3")), delta.getChangedGroups());
+
+		// delta should survive the round-trip to plugins
+		delta = JsonUtilsV2.jsonToObj(JsonUtilsV2.objToJson(delta), RangerUserStore.class);
+
+		RangerUserStore applied = v1.applyDelta(delta);
+
+		assertFalse(applied.getIsDelta());
+		assertSameContents(v2, applied);
+
+		// the original userstore should be left unchanged
+		assertEquals("hr", v1.getUserAttrMapping().get("user1").get("dept"));
+		assertTrue(v1.getUserGroupMapping().containsKey("user2"));
+	}
+
+	@Test
+	public void testDeltaMerge() {
+		RangerUserStore v1 = new RangerUserStore(1L, users(user("user1", "dept", "hr", RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-id")), groups(group("group1", "site", "sf")), userGroups("user1", "group1"));
+		RangerUserStore v2 = new RangerUserStore(2L, users(user("user1", "dept", "hr"), user("user2", "dept", "eng", RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-id")), groups(group("group1", "site", "sf")), userGroups("user1", "group1", "user2", "group1"));
+		RangerUserStore v3 = new RangerUserStore(3L, users(user("user2", "dept", "eng", RangerUserStore.CLOUD_IDENTITY_NAME, "cloud-id")), groups(group("group2", "site", "sf")), userGroups("user2", "group2"));
+
+		RangerUserStore merged = RangerUserStore.getDelta(v1, v2).applyDelta(RangerUserStore.getDelta(v2, v3));
+
+		assertTrue(merged.getIsDelta());
+		assertEquals(Long.valueOf(3L), merged.getUserStoreVersion());
+		assertEquals(new HashSet<>(Arrays.asList("user1", "user2")), merged.getChangedUsers());
+		assertEquals(new HashSet<>(Arrays.asList("group1", "group2")), merged.getChangedGroups());
+
+		RangerUserStore applied = v1.applyDelta(merged);
+
+		assertSameContents(v3, applied);
+		assertEquals("user2", applied.getUserCloudIdMapping().get("cloud-id"));
+	}
+
+	@Test
+	public void testEmptyDelta() {
+		RangerUserStore v1    = new RangerUserStore(1L, users(user("user1", "dept", "hr")), groups(group("group1", "site", "sf")), userGroups("user1", "group1"));
+		RangerUserStore v2    = new RangerUserStore(2L, users(user("user1", "dept", "hr")), groups(group("group1", "site", "sf")), userGroups("user1", "group1"));
+		RangerUserStore delta = RangerUserStore.getDelta(v1, v2);
+
+		assertTrue(delta.getChangedUsers().isEmpty());
+		assertTrue(delta.getChangedGroups().isEmpty());
+
+		RangerUserStore applied = v1.applyDelta(delta);
+
+		assertNotSame(v1.getUserAttrMapping(), applied.getUserAttrMapping());
+		assertEquals(Long.valueOf(2L), applied.getUserStoreVersion());
+		assertSameContents(v2, applied);
+	}
+
+	@Test
+	public void testDeltaApplyWithEmptyAttributes() {
+		RangerUserStore v1 = new RangerUserStore(1L, users(user("user1", "dept", "hr"), user("user2", "dept", "eng")), groups(group("group1", "site", "sf")), userGroups("user1", "group1"));
+		RangerUserStore v2 = new RangerUserStore(2L, users(user("user2", "dept", "eng")), groups(group("group1", "site", "sf")), userGroups("user1", "group1"));
+
+		// user1 and group1 remain, without any attributes
+		v2.getUserAttrMapping().put("user1", new HashMap<>());
+		v2.getGroupAttrMapping().put("group1", new HashMap<>());
+
+		RangerUserStore delta = RangerUserStore.getDelta(v1, v2);
+
+		assertEquals(Collections.singleton("user1"), delta.getChangedUsers());
+		assertEquals(Collections.singleton("group1"), delta.getChangedGroups());
+
+		RangerUserStore applied = v1.applyDelta(delta);
+
+		assertSameContents(v2, applied);
+		assertTrue(applied.getUserAttrMapping().get("user1").isEmpty());
+		assertTrue(applied.getGroupAttrMapping().get("group1").isEmpty());
+	}
+
+	private static void assertSameContents(RangerUserStore expected, RangerUserStore actual) {
+		assertEquals(expected.getUserAttrMapping(), actual.getUserAttrMapping());
+		assertEquals(expected.getGroupAttrMapping(), actual.getGroupAttrMapping());
+		assertEquals(expected.getUserGroupMapping(), actual.getUserGroupMapping());
+		assertEquals(expected.getUserCloudIdMapping(), actual.getUserCloudIdMapping());
+		assertEquals(expected.getGroupCloudIdMapping(), actual.getGroupCloudIdMapping());
+	}
+
+	private static UserInfo user(String name, String... attrs) {
+		return new UserInfo(name, null, map(attrs));
+	}
+
+	private static GroupInfo group(String name, String... attrs) {
+		return new GroupInfo(name, null, map(attrs));
+	}
+
+	private static Set<UserInfo> users(UserInfo... users) {
+		return new HashSet<>(Arrays.asList(users));
+	}
+
+	private static Set<GroupInfo> groups(GroupInfo... groups) {
+		return new HashSet<>(Arrays.asList(groups));
+	}
+
+	private static Map<String, Set<String>> userGroups(String... userAndGroups) {
+		Map<String, Set<String>> ret = new HashMap<>();
+
+		for (int i = 0; i + 1 < userAndGroups.length; i += 2) {
+			ret.computeIfAbsent(userAndGroups[i], k -> new HashSet<>()).add(userAndGroups[i + 1]);
+		}
+
+		return ret;
+	}
+
+	private static Map<String, String> map(String... keysAndValues) {
+		Map<String, String> ret = new HashMap<>();
+
+		for (int i = 0; i + 1 < keysAndValues.length; i += 2) {
+			ret.put(keysAndValues[i], keysAndValues[i + 1]);
+		}
+
+		return keysAndValues.length == 0 ? Collections.emptyMap() : ret;
+	}
+}
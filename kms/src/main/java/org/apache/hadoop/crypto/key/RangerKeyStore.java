@@ -53,9 +53,12 @@
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -96,12 +99,14 @@ public class RangerKeyStore extends KeyStoreSpi {
     private static final int     NUMBER_OF_BITS_PER_BYTE = 8;
     private static final String  SECRET_KEY_HASH_WORD    = "Apache Ranger";
 
-    private final    RangerKMSDao        kmsDao;
-    private final    RangerKMSMKI        masterKeyProvider;
-    private final    boolean             keyVaultEnabled;
-    private volatile Map<String, Object> keyEntries   = new ConcurrentHashMap<>();
-    private final    Map<String, Object> deltaEntries = new ConcurrentHashMap<>();
-
+    private final    RangerKMSDao          kmsDao;
+    private final    RangerKMSMKI          masterKeyProvider;
+    private final    boolean               keyVaultEnabled;
+    private volatile Map<String, Object>   keyEntries    = new ConcurrentHashMap<>(); // entries loaded from DB, and entries yet to be stored
+    private final    Map<String, Object>   deltaEntries  = new ConcurrentHashMap<>();
+    private volatile Map<String, KeyStamp> keyStamps     = new ConcurrentHashMap<>(); // version columns of keys in DB, by alias
+    private volatile DecryptedKeyCache     decryptedKeys = new DecryptedKeyCache(0, 0);
+    private volatile char[]                loadPassword;
 
     public RangerKeyStore(DaoManager daoManager) {
         this(daoManager, false, null);
@@ -127,15 +132,29 @@ public Key engineGetKey(String alias, char[] password) throws NoSuchAlgorithmExc
 
         alias = convertAlias(alias);
 
-        Object entry = keyEntries.get(alias);
+        Object entry = getKeyEntry(alias);
 
         Key ret = null;
 
         if (entry instanceof SecretKeyEntry) {
-            try {
-                ret = unsealKey(((SecretKeyEntry) entry).sealedKey, password);
-            } catch (Exception e) {
-                logger.error("engineGetKey({}) error", alias, e);
+            ret = (Key) decryptedKeys.get(alias, entry);
+
+            if (ret == null) {
+                try {
+                    ret = unsealKey(((SecretKeyEntry) entry).sealedKey, password);
+
+                    // metadata keys are not cached, as the provider updates the metadata in them
+                    if (ret instanceof SecretKeySpec) {
+                        decryptedKeys.put(alias, entry, ret);
+                    }
+                } catch (Exception e) {
+                    logger.error("engineGetKey({}) error", alias, e);
+                }
+            }
+
+            // callers get a copy, so that the cached key is not shared with them
+            if (ret instanceof SecretKeySpec) {
+                ret = new SecretKeySpec(ret.getEncoded(), ret.getAlgorithm());
             }
         }
 
@@ -153,15 +172,23 @@ public byte[] engineGetDecryptedZoneKeyByte(String alias) throws Exception {
 
         alias = convertAlias(alias);
 
-        Object entry = keyEntries.get(alias);
+        Object entry = getKeyEntry(alias);
 
         byte[] ret = null;
 
         try {
             if (entry instanceof SecretKeyByteEntry) {
-                SecretKeyByteEntry key = (SecretKeyByteEntry) entry;
+                byte[] decryptedKey = (byte[]) decryptedKeys.get(alias, entry);
+
+                if (decryptedKey == null) {
+                    decryptedKey = masterKeyProvider.decryptZoneKey(((SecretKeyByteEntry) entry).key);
 
-                ret = masterKeyProvider.decryptZoneKey(key.key);
+                    if (decryptedKey != null) {
+                        decryptedKeys.put(alias, entry, decryptedKey);
+                    }
+                }
+
+                ret = decryptedKey != null ? decryptedKey.clone() : null;
             }
         } catch (Exception ex) {
             throw new Exception("Error while decrypting zone key. Name : " + alias + " Error : " + ex);
@@ -197,7 +224,7 @@ public Metadata engineGetKeyMetadata(String alias) {
 
         alias = convertAlias(alias);
 
-        Object entry = keyEntries.get(alias);
+        Object entry = getKeyEntry(alias);
 
         Metadata ret = null;
 
@@ -241,6 +268,7 @@ public void addSecureKeyByteEntry(String alias, Key key, String cipher, int bitL
 
         deltaEntries.put(alias, entry);
         keyEntries.put(alias, entry);
+        decryptedKeys.remove(alias);
 
         if (logger.isDebugEnabled()) {
             logger.debug("<== addSecureKeyByteEntry({})", alias);
@@ -255,7 +283,7 @@ public Date engineGetCreationDate(String alias) {
 
         alias = convertAlias(alias);
 
-        Object entry = keyEntries.get(alias);
+        Object entry = getKeyEntry(alias);
         Date   ret   = null;
 
         if (entry != null) {
@@ -292,6 +320,7 @@ public void addKeyEntry(String alias, Key key, char[] password, String cipher, i
 
         deltaEntries.put(alias, entry);
         keyEntries.put(alias, entry);
+        decryptedKeys.remove(alias);
 
         if (logger.isDebugEnabled()) {
             logger.debug("<== addKeyEntry({})", alias);
@@ -310,6 +339,8 @@ public void engineDeleteEntry(String alias) throws KeyStoreException {
 
         keyEntries.remove(alias);
         deltaEntries.remove(alias);
+        keyStamps.remove(alias);
+        decryptedKeys.remove(alias);
 
         if (logger.isDebugEnabled()) {
             logger.debug("<== engineDeleteEntry({})", alias);
@@ -318,14 +349,14 @@ public void engineDeleteEntry(String alias) throws KeyStoreException {
 
     @Override
     public Enumeration<String> engineAliases() {
-        return Collections.enumeration(new HashSet<>(keyEntries.keySet()));
+        return Collections.enumeration(getAliases());
     }
 
     @Override
     public boolean engineContainsAlias(String alias) {
         alias = convertAlias(alias);
 
-        boolean ret = keyEntries.containsKey(alias);
+        boolean ret = keyEntries.containsKey(alias) || keyStamps.containsKey(alias);
 
         if (logger.isDebugEnabled()) {
             logger.debug("<== engineContainsAlias({}): ret={}", alias, ret);
@@ -336,7 +367,7 @@ public boolean engineContainsAlias(String alias) {
 
     @Override
     public int engineSize() {
-        int ret = keyEntries.size();
+        int ret = getAliases().size();
 
         if (logger.isDebugEnabled()) {
             logger.debug("<== engineSize(): ret={}", ret);
@@ -359,7 +390,9 @@ public void engineStore(OutputStream stream, char[] password) throws IOException
                                                                         secretSecureKey.cipher_field, secretSecureKey.bit_length,
                                                                         secretSecureKey.description, secretSecureKey.version,
                                                                         secretSecureKey.attributes);
-                dbOperationStore(xxRangerKeyStore);
+                if (!dbOperationStore(xxRangerKeyStore)) {
+                    keyEntries.remove(entry.getKey());
+                }
             }
         } else {
             // password is mandatory when storing
@@ -386,7 +419,9 @@ public void engineStore(OutputStream stream, char[] password) throws IOException
                                                                           secretKey.cipher_field, secretKey.bit_length,
                                                                           secretKey.description, secretKey.version,
                                                                           secretKey.attributes);
-                    dbOperationStore(xxRangerKeyStore);
+                    if (!dbOperationStore(xxRangerKeyStore)) {
+                        keyEntries.remove(entry.getKey());
+                    }
                 }
             }
         }
@@ -398,11 +433,13 @@ public void engineStore(OutputStream stream, char[] password) throws IOException
         }
     }
 
-    public void dbOperationStore(XXRangerKeyStore rangerKeyStore) {
+    public boolean dbOperationStore(XXRangerKeyStore rangerKeyStore) {
         if (logger.isDebugEnabled()) {
             logger.debug("==> dbOperationStore({})", rangerKeyStore.getAlias());
         }
 
+        boolean ret = false;
+
         try {
             if (kmsDao != null) {
                 XXRangerKeyStore xxRangerKeyStore = kmsDao.findByAlias(rangerKeyStore.getAlias());
@@ -418,7 +455,13 @@ public void dbOperationStore(XXRangerKeyStore rangerKeyStore) {
                 if (keyStoreExists) {
                     kmsDao.update(xxRangerKeyStore);
                 } else {
-                    kmsDao.create(xxRangerKeyStore);
+                    xxRangerKeyStore = kmsDao.create(xxRangerKeyStore);
+                }
+
+                if (xxRangerKeyStore != null) {
+                    keyStamps.put(xxRangerKeyStore.getAlias(), new KeyStamp(xxRangerKeyStore));
+
+                    ret = true;
                 }
             }
         } catch (Exception e) {
@@ -426,8 +469,10 @@ public void dbOperationStore(XXRangerKeyStore rangerKeyStore) {
         }
 
         if (logger.isDebugEnabled()) {
-            logger.debug("<== dbOperationStore({})", rangerKeyStore.getAlias());
+            logger.debug("<== dbOperationStore({}): ret={}", rangerKeyStore.getAlias(), ret);
         }
+
+        return ret;
     }
 
     @Override
@@ -446,92 +491,169 @@ public void engineLoad(InputStream stream, char[] password) throws IOException,
             return;
         }
 
-        Map<String, Object> keyEntries = new ConcurrentHashMap<>();
+        Map<String, Object>   keyEntries = new ConcurrentHashMap<>();
+        Map<String, KeyStamp> keyStamps  = new ConcurrentHashMap<>();
+        MessageDigest         md         = (password != null && !keyVaultEnabled) ? getKeyedMessageDigest(password) : null;
+        byte[]                computed   = md != null ? md.digest() : new byte[0];
 
-        if (keyVaultEnabled) {
-            for (XXRangerKeyStore rangerKey : rangerKeyDetails) {
-                String             encodedStr  = rangerKey.getEncoded();
-                byte[]             encodedByte = DatatypeConverter.parseBase64Binary(encodedStr);
-                String             alias       = rangerKey.getAlias();
-                SecretKeyByteEntry entry       = new SecretKeyByteEntry(new Date(rangerKey.getCreatedDate()), encodedByte,
-                                                                        rangerKey.getCipher(), rangerKey.getBitLength(),
-                                                                        rangerKey.getDescription(), rangerKey.getVersion(),
-                                                                        rangerKey.getAttributes());
-
-                logger.debug("engineLoad(): loaded key {}", rangerKey.getAlias());
-
-                keyEntries.put(alias, entry);
-            }
-        } else {
-            MessageDigest md = null;
+        for (XXRangerKeyStore rangerKey : rangerKeyDetails) {
+            Object entry = toKeyEntry(rangerKey, md, computed);
 
-            if (password != null) {
-                md = getKeyedMessageDigest(password);
-            }
+            logger.debug("engineLoad(): loaded key {}", rangerKey.getAlias());
 
-            byte computed[] = {};
+            keyEntries.put(rangerKey.getAlias(), entry);
+            keyStamps.put(rangerKey.getAlias(), new KeyStamp(rangerKey));
+        }
 
-            if (md != null) {
-                computed = md.digest();
-            }
+        if (logger.isDebugEnabled()) {
+            logger.debug("engineLoad(): loaded {} keys", keyEntries.size());
+        }
 
-            for (XXRangerKeyStore rangerKey : rangerKeyDetails) {
-                String encoded = rangerKey.getEncoded();
-                byte[] data    = DatatypeConverter.parseBase64Binary(encoded);
+        this.keyEntries   = keyEntries;
+        this.keyStamps    = keyStamps;
+        this.loadPassword = password;
 
-                if (data != null && data.length > 0) {
-                    stream = new ByteArrayInputStream(data);
-                } else {
-                    logger.error("No Key found for alias {}", rangerKey.getAlias());
-                }
+        decryptedKeys.clear();
 
-                if (computed != null) {
-                    int counter = 0;
+        if (logger.isDebugEnabled()) {
+            logger.debug("engineLoad(): keyEntries switched with {} keys", keyEntries.size());
+        }
+    }
 
-                    for (int i = computed.length - 1; i >= 0; i--) {
-                        if (computed[i] != data[data.length - (1 + counter)]) {
-                            Throwable t = new UnrecoverableKeyException("Password verification failed");
+    /**
+     * Refreshes the version columns of all keys from the DB, without reading key material. Entries of keys that were
+     * updated or deleted since they were loaded are discarded; these, and the keys added since, are loaded from the DB
+     * when accessed. Entries yet to be stored are retained.
+     *
+     * @return aliases of keys that were updated or deleted since they were loaded
+     */
+    public Set<String> engineRefresh(char[] password) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("==> engineRefresh()");
+        }
 
-                            logger.error("Keystore was tampered with, or password was incorrect.", t);
+        Set<String> ret = new HashSet<>();
 
-                            throw new IOException("Keystore was tampered with, or password was incorrect", t);
-                        } else {
-                            counter++;
-                        }
-                    }
-                }
+        this.loadPassword = password;
+
+        List<Object[]> rows = dbOperationLoadVersions();
 
-                SealedObject sealedKey;
+        if (rows != null) {
+            Map<String, KeyStamp> keyStamps = new ConcurrentHashMap<>();
+
+            for (Object[] row : rows) {
+                keyStamps.put((String) row[0], new KeyStamp((Long) row[1], (Integer) row[2], (Long) row[3]));
+            }
+
+            for (Map.Entry<String, KeyStamp> entry : this.keyStamps.entrySet()) {
+                if (!Objects.equals(entry.getValue(), keyStamps.get(entry.getKey()))) {
+                    ret.add(entry.getKey());
+                }
+            }
 
-                // read the (entry creation) date
-                // read the sealed key
-                try (DataInputStream dis = password != null ? new DataInputStream(new DigestInputStream(stream, md)) : new DataInputStream(stream);
-                     ObjectInputStream ois = new ObjectInputStream(dis)) {
-                    sealedKey = (SealedObject) ois.readObject();
-                } catch (ClassNotFoundException cnfe) {
-                    throw new IOException(cnfe.getMessage());
+            for (String alias : keyEntries.keySet()) {
+                if (!keyStamps.containsKey(alias)) {
+                    ret.add(alias);
                 }
+            }
 
-                SecretKeyEntry entry = new SecretKeyEntry(new Date(rangerKey.getCreatedDate()), sealedKey, rangerKey.getCipher(),
-                                                          rangerKey.getBitLength(), rangerKey.getDescription(), rangerKey.getVersion(),
-                                                          rangerKey.getAttributes());
+            ret.removeAll(deltaEntries.keySet());
 
-                logger.debug("engineLoad(): loaded key {}", rangerKey.getAlias());
+            this.keyStamps = keyStamps;
 
-                // Add the entry to the list
-                keyEntries.put(rangerKey.getAlias(), entry);
+            for (String alias : ret) {
+                keyEntries.remove(alias);
+                decryptedKeys.remove(alias);
             }
         }
 
         if (logger.isDebugEnabled()) {
-            logger.debug("engineLoad(): loaded {} keys", keyEntries.size());
+            logger.debug("<== engineRefresh(): keys={}, changed={}", keyStamps.size(), ret.size());
+        }
+
+        return ret;
+    }
+
+    /**
+     * Refreshes the version columns of the given key from the DB. If the key was updated or deleted since it was
+     * loaded, its entry is discarded; an updated key is loaded from the DB when accessed.
+     *
+     * @return true if the key was added, updated or deleted since it was last loaded or refreshed
+     */
+    public boolean engineRefreshAlias(String alias) {
+        alias = convertAlias(alias);
+
+        if (deltaEntries.containsKey(alias)) {
+            return false;
         }
 
-        this.keyEntries = keyEntries;
+        boolean  ret      = false;
+        KeyStamp existing = keyStamps.get(alias);
+        Object[] row      = dbOperationLoadVersion(alias);
+        KeyStamp current  = row != null ? new KeyStamp((Long) row[1], (Integer) row[2], (Long) row[3]) : null;
+
+        if (!Objects.equals(existing, current) || (current == null && keyEntries.containsKey(alias))) {
+            if (current != null) {
+                keyStamps.put(alias, current);
+            } else {
+                keyStamps.remove(alias);
+            }
+
+            keyEntries.remove(alias);
+            decryptedKeys.remove(alias);
+
+            ret = true;
+        }
 
         if (logger.isDebugEnabled()) {
-            logger.debug("engineLoad(): keyEntries switched with {} keys", keyEntries.size());
+            logger.debug("<== engineRefreshAlias({}): ret={}", alias, ret);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Loads the given key from the DB, verifying the password; to be used to verify the password when keys are
+     * loaded on access.
+     */
+    public boolean engineVerifyPassword(String alias, char[] password) throws IOException, NoSuchAlgorithmException {
+        XXRangerKeyStore rangerKey = dbOperationLoad(convertAlias(alias));
+        boolean          ret       = false;
+
+        if (rangerKey != null && password != null && !keyVaultEnabled) {
+            MessageDigest md = getKeyedMessageDigest(password);
+
+            toKeyEntry(rangerKey, md, md.digest());
+
+            ret = true;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Discards entries yet to be stored; these keys are loaded from the DB when accessed.
+     *
+     * @return aliases of the discarded entries
+     */
+    public Set<String> engineDiscardChanges() {
+        Set<String> ret = new HashSet<>(deltaEntries.keySet());
+
+        for (String alias : ret) {
+            keyEntries.remove(alias);
+            decryptedKeys.remove(alias);
         }
+
+        deltaEntries.clear();
+
+        return ret;
+    }
+
+    /**
+     * Decrypted keys are cached for up to ttlMs, for up to maxSize keys; the cache is disabled when either is 0
+     */
+    public void setDecryptedKeyCache(int maxSize, long ttlMs) {
+        this.decryptedKeys = new DecryptedKeyCache(maxSize, ttlMs);
     }
 
     @Override
@@ -846,7 +968,107 @@ private void validateKeyName(String name) {
     }
 
     private Object getKeyEntry(String alias) {
-        return keyEntries.get(alias);
+        Object ret = keyEntries.get(alias);
+
+        if (ret == null && keyStamps.containsKey(alias)) {
+            ret = loadKeyEntry(alias);
+        }
+
+        return ret;
+    }
+
+    private Object loadKeyEntry(String alias) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("==> loadKeyEntry({})", alias);
+        }
+
+        Object ret = null;
+
+        try {
+            XXRangerKeyStore rangerKey = dbOperationLoad(alias);
+
+            if (rangerKey != null) {
+                char[]        password = loadPassword;
+                MessageDigest md       = (password != null && !keyVaultEnabled) ? getKeyedMessageDigest(password) : null;
+
+                ret = toKeyEntry(rangerKey, md, md != null ? md.digest() : new byte[0]);
+
+                keyStamps.put(alias, new KeyStamp(rangerKey));
+
+                Object existing = keyEntries.putIfAbsent(alias, ret); // retain an entry added meanwhile
+
+                if (existing != null) {
+                    ret = existing;
+                }
+            } else {
+                keyStamps.remove(alias);
+            }
+        } catch (Exception e) {
+            logger.error("loadKeyEntry({}) error", alias, e);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("<== loadKeyEntry({}): found={}", alias, ret != null);
+        }
+
+        return ret;
+    }
+
+    private Set<String> getAliases() {
+        Set<String> ret = new HashSet<>(keyStamps.keySet());
+
+        ret.addAll(keyEntries.keySet());
+
+        return ret;
+    }
+
+    private Object toKeyEntry(XXRangerKeyStore rangerKey, MessageDigest md, byte[] computed) throws IOException {
+        if (keyVaultEnabled) {
+            byte[] encodedByte = DatatypeConverter.parseBase64Binary(rangerKey.getEncoded());
+
+            return new SecretKeyByteEntry(new Date(rangerKey.getCreatedDate()), encodedByte, rangerKey.getCipher(), rangerKey.getBitLength(),
+                                          rangerKey.getDescription(), rangerKey.getVersion(), rangerKey.getAttributes());
+        }
+
+        InputStream stream = null;
+        byte[]      data   = DatatypeConverter.parseBase64Binary(rangerKey.getEncoded());
+
+        if (data != null && data.length > 0) {
+            stream = new ByteArrayInputStream(data);
+        } else {
+            logger.error("No Key found for alias {}", rangerKey.getAlias());
+        }
+
+        if (computed != null) {
+            int counter = 0;
+
+            for (int i = computed.length - 1; i >= 0; i--) {
+                if (computed[i] != data[data.length - (1 + counter)]) {
+                    Throwable t = new UnrecoverableKeyException("Password verification failed");
+
+                    logger.error("Keystore was tampered with, or password was incorrect.", t);
+
+                    throw new IOException("Keystore was tampered with, or password was incorrect", t);
+                } else {
+                    counter++;
+                }
+            }
+        }
+
+        SealedObject sealedKey;
+
+        // read the (entry creation) date
+        // read the sealed key
+        try (DataInputStream dis = md != null ? new DataInputStream(new DigestInputStream(stream, md)) : new DataInputStream(stream);
+             ObjectInputStream ois = new ObjectInputStream(dis)) {
+            sealedKey = (SealedObject) ois.readObject();
+        } catch (ClassNotFoundException cnfe) {
+            throw new IOException(cnfe.getMessage());
+        }
+
+        return new SecretKeyEntry(new Date(rangerKey.getCreatedDate()), sealedKey, rangerKey.getCipher(),
+                                  rangerKey.getBitLength(), rangerKey.getDescription(), rangerKey.getVersion(),
+                                  rangerKey.getAttributes());
     }
 
     private XXRangerKeyStore convertKeysBetweenRangerKMSAndHSM(String alias, Key key, RangerKMSMKI rangerMKeyProvider) {
@@ -956,6 +1178,48 @@ private List<XXRangerKeyStore> dbOperationLoad() {
         return ret;
     }
 
+    private XXRangerKeyStore dbOperationLoad(String alias) {
+        XXRangerKeyStore ret = null;
+
+        try {
+            if (kmsDao != null) {
+                ret = kmsDao.getKey(alias);
+            }
+        } catch (Exception e) {
+            logger.error("dbOperationLoad({}) error", alias, e);
+        }
+
+        return ret;
+    }
+
+    private List<Object[]> dbOperationLoadVersions() {
+        List<Object[]> ret = null;
+
+        try {
+            if (kmsDao != null) {
+                ret = kmsDao.getAllKeyVersions();
+            }
+        } catch (Exception e) {
+            logger.error("dbOperationLoadVersions() error", e);
+        }
+
+        return ret;
+    }
+
+    private Object[] dbOperationLoadVersion(String alias) {
+        Object[] ret = null;
+
+        try {
+            if (kmsDao != null) {
+                ret = kmsDao.getKeyVersion(alias);
+            }
+        } catch (Exception e) {
+            logger.error("dbOperationLoadVersion({}) error", alias, e);
+        }
+
+        return ret;
+    }
+
     /**
      * To guard against tampering with the keystore, we append a keyed
      * hash with a bit of whitener.
@@ -1104,6 +1368,114 @@ private static final class SecretKeyByteEntry {
         }
     }
 
+    // version columns of a key in DB: these change when the key is stored again, or deleted and created again
+    private static final class KeyStamp {
+        final Long    id;
+        final Integer version;
+        final Long    createdDate;
+
+        KeyStamp(XXRangerKeyStore rangerKey) {
+            this(rangerKey.getId(), rangerKey.getVersion(), rangerKey.getCreatedDate());
+        }
+
+        KeyStamp(Long id, Integer version, Long createdDate) {
+            this.id          = id;
+            this.version     = version;
+            this.createdDate = createdDate;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof KeyStamp)) {
+                return false;
+            }
+
+            KeyStamp other = (KeyStamp) obj;
+
+            return Objects.equals(id, other.id) && Objects.equals(version, other.version) && Objects.equals(createdDate, other.createdDate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, version, createdDate);
+        }
+    }
+
+    /**
+     * Decrypted keys, by alias. A cached key is used only while the entry it was decrypted from is current, so an
+     * entry replaced by a reload or update is never served from the cache.
+     */
+    private static final class DecryptedKeyCache {
+        private final int                       maxSize;
+        private final long                      ttlMs;
+        private final Map<String, DecryptedKey> keys = new ConcurrentHashMap<>();
+
+        DecryptedKeyCache(int maxSize, long ttlMs) {
+            this.maxSize = maxSize;
+            this.ttlMs   = ttlMs;
+        }
+
+        Object get(String alias, Object entry) {
+            DecryptedKey ret = maxSize > 0 ? keys.get(alias) : null;
+
+            if (ret != null && (ret.entry != entry || ret.expiryTime < System.currentTimeMillis())) {
+                keys.remove(alias, ret);
+
+                ret = null;
+            }
+
+            return ret != null ? ret.key : null;
+        }
+
+        void put(String alias, Object entry, Object key) {
+            if (maxSize > 0 && ttlMs > 0) {
+                if (keys.size() >= maxSize) {
+                    evict();
+                }
+
+                keys.put(alias, new DecryptedKey(entry, key, System.currentTimeMillis() + ttlMs));
+            }
+        }
+
+        void remove(String alias) {
+            keys.remove(alias);
+        }
+
+        void clear() {
+            keys.clear();
+        }
+
+        // removes expired keys; when none expired, removes keys to make room for about 10% of maxSize
+        private void evict() {
+            long now = System.currentTimeMillis();
+
+            keys.values().removeIf(key -> key.expiryTime < now);
+
+            int toRemove = keys.size() - (maxSize - Math.max(1, maxSize / 10));
+
+            for (Iterator<String> iter = keys.keySet().iterator(); toRemove > 0 && iter.hasNext(); toRemove--) {
+                iter.next();
+                iter.remove();
+            }
+        }
+    }
+
+    private static final class DecryptedKey {
+        final Object entry;
+        final Object key;
+        final long   expiryTime;
+
+        DecryptedKey(Object entry, Object key, long expiryTime) {
+            this.entry      = entry;
+            this.key        = key;
+            this.expiryTime = expiryTime;
+        }
+    }
+
     /**
      * Encapsulate the encrypted key, so that we can retrieve the AlgorithmParameters object on the decryption side
      */
@@ -31,11 +31,13 @@
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.crypto.KeyGenerator;
@@ -80,6 +82,12 @@ public class RangerKeyStoreProvider extends KeyProvider {
     private static final String TENCENT_CLIENT_SECRET        = RangerTencentKMSProvider.TENCENT_CLIENT_SECRET;
     private static final String TENCENT_CLIENT_SECRET_ALIAS  = "ranger.kms.tencent.client.secret.alias";
     private static final String IS_GCP_ENABLED               = "ranger.kms.gcp.enabled";
+    private static final String KEY_CACHE_MAX_SIZE           = "ranger.kms.keystore.key.cache.max.size";
+    private static final String KEY_CACHE_TTL_MS             = "ranger.kms.keystore.key.cache.ttl.ms";
+    private static final int    KEY_CACHE_MAX_SIZE_DEFAULT   = 10000;
+    private static final long   KEY_CACHE_TTL_MS_DEFAULT     = 10 * 60 * 1000L;
+    private static final String MASTER_KEY_VERIFY_COUNT      = "ranger.kms.keystore.master.key.verify.count";
+    private static final int    MASTER_KEY_VERIFY_DEFAULT    = 10;
 
     private final RangerKeyStore        dbStore;
     private final char[]                masterKey;
@@ -199,7 +207,12 @@ public RangerKeyStoreProvider(Configuration conf) throws Throwable {
             masterKey = this.generateAndGetMasterKey(masterKeyProvider, password);
         }
 
-        reloadKeys();
+        dbStore.setDecryptedKeyCache(conf.getInt(KEY_CACHE_MAX_SIZE, KEY_CACHE_MAX_SIZE_DEFAULT), conf.getLong(KEY_CACHE_TTL_MS, KEY_CACHE_TTL_MS_DEFAULT));
+
+        // keys are loaded from the DB when accessed; a few keys are loaded now to verify the master key
+        refreshKeys();
+
+        verifyMasterKey(conf.getInt(MASTER_KEY_VERIFY_COUNT, MASTER_KEY_VERIFY_DEFAULT));
     }
 
     public static Configuration getDBKSConf() {
@@ -220,7 +233,7 @@ public KeyVersion createKey(String name, byte[] material, Options options) throw
         KeyVersion ret;
 
         try (AutoClosableWriteLock ignored = new AutoClosableWriteLock(lock)) {
-            reloadKeys();
+            refreshKey(name);
 
             if (dbStore.engineContainsAlias(name) || cache.containsKey(name)) {
                 throw new IOException("Key " + name + " already exists");
@@ -251,7 +264,7 @@ public void deleteKey(String name) throws IOException {
         }
 
         try (AutoClosableWriteLock ignored = new AutoClosableWriteLock(lock)) {
-            reloadKeys();
+            refreshKey(name);
 
             Metadata meta = getMetadata(name);
 
@@ -262,6 +275,8 @@ public void deleteKey(String name) throws IOException {
             for (int v = 0; v < meta.getVersions(); ++v) {
                 String versionName = buildVersionName(name, v);
 
+                dbStore.engineRefreshAlias(versionName);
+
                 try {
                     if (dbStore.engineContainsAlias(versionName)) {
                         dbStore.engineDeleteEntry(versionName);
@@ -299,8 +314,6 @@ public void flush() throws IOException {
             try (AutoClosableWriteLock ignored = new AutoClosableWriteLock(lock)) {
                 try {
                     dbStore.engineStore(null, masterKey);
-
-                    reloadKeys();
                 } catch (NoSuchAlgorithmException e) {
                     throw new IOException("No such algorithm storing key", e);
                 } catch (CertificateException e) {
@@ -309,7 +322,9 @@ public void flush() throws IOException {
 
                 changed = false;
             } catch (IOException ioe) {
-                reloadKeys();
+                removeFromCache(dbStore.engineDiscardChanges());
+
+                changed = false;
 
                 throw ioe;
             }
@@ -330,33 +345,26 @@ public KeyVersion getKeyVersion(String versionName) throws IOException {
 
         try (AutoClosableReadLock ignored = new AutoClosableReadLock(lock)) {
             if (keyVaultEnabled) {
-                try {
-                    boolean versionNameExists = dbStore.engineContainsAlias(versionName);
+                boolean versionNameExists = dbStore.engineContainsAlias(versionName);
 
-                    if (!versionNameExists) {
-                        dbStore.engineLoad(null, masterKey);
-
-                        versionNameExists = dbStore.engineContainsAlias(versionName);
-                    }
+                if (!versionNameExists) {
+                    dbStore.engineRefreshAlias(versionName);
 
-                    if (versionNameExists) {
-                        byte[] decryptKeyByte;
+                    versionNameExists = dbStore.engineContainsAlias(versionName);
+                }
 
-                        try {
-                            decryptKeyByte = dbStore.engineGetDecryptedZoneKeyByte(versionName);
-                        } catch (Exception e) {
-                            throw new RuntimeException("Error while getting decrypted key." + e);
-                        }
+                if (versionNameExists) {
+                    byte[] decryptKeyByte;
 
-                        if (decryptKeyByte != null && decryptKeyByte.length > 0) {
-                            ret = new KeyVersion(getBaseName(versionName), versionName, decryptKeyByte);
-                        }
+                    try {
+                        decryptKeyByte = dbStore.engineGetDecryptedZoneKeyByte(versionName);
+                    } catch (Exception e) {
+                        throw new RuntimeException("Error while getting decrypted key." + e);
                     }
 
-                } catch (NoSuchAlgorithmException e) {
-                    throw new IOException("Can't get algorithm for key " + e.getMessage());
-                } catch (CertificateException e) {
-                    throw new IOException("Certificate exception storing key", e);
+                    if (decryptKeyByte != null && decryptKeyByte.length > 0) {
+                        ret = new KeyVersion(getBaseName(versionName), versionName, decryptKeyByte);
+                    }
                 }
             } else {
                 SecretKeySpec key = null;
@@ -364,7 +372,7 @@ public KeyVersion getKeyVersion(String versionName) throws IOException {
                     boolean versionNameExists = dbStore.engineContainsAlias(versionName);
 
                     if (!versionNameExists) {
-                        dbStore.engineLoad(null, masterKey);
+                        dbStore.engineRefreshAlias(versionName);
 
                         versionNameExists = dbStore.engineContainsAlias(versionName);
                     }
@@ -376,8 +384,6 @@ public KeyVersion getKeyVersion(String versionName) throws IOException {
                     throw new IOException("Can't get algorithm for key " + key, e);
                 } catch (UnrecoverableKeyException e) {
                     throw new IOException("Can't recover key " + key, e);
-                } catch (CertificateException e) {
-                    throw new IOException("Certificate exception storing key", e);
                 }
 
                 if (key != null) {
@@ -433,7 +439,9 @@ public List<String> getKeys() throws IOException {
 
         ArrayList<String> ret = new ArrayList<>();
 
-        reloadKeys();
+        try (AutoClosableWriteLock ignored = new AutoClosableWriteLock(lock)) {
+            refreshKeys();
+        }
 
         Enumeration<String> e = dbStore.engineAliases();
 
@@ -467,7 +475,7 @@ public Metadata getMetadata(String name) throws IOException {
 
             if (ret == null) {
                 if (!dbStore.engineContainsAlias(name)) {
-                    dbStore.engineLoad(null, masterKey);
+                    dbStore.engineRefreshAlias(name);
                 }
 
                 if (dbStore.engineContainsAlias(name)) {
@@ -520,7 +528,7 @@ public KeyVersion rollNewVersion(String name, byte[] material) throws IOExceptio
         KeyVersion ret = null;
 
         try (AutoClosableWriteLock ignored = new AutoClosableWriteLock(lock)) {
-            reloadKeys();
+            refreshKey(name);
 
             Metadata meta = getMetadata(name);
 
@@ -711,7 +719,11 @@ private void saveKey(String name, Metadata metadata) throws IOException {
         }
     }
 
-    private void reloadKeys() throws IOException {
+    /**
+     * Reloads all keys from the DB. Other operations load keys from the DB when accessed, and discard only the keys
+     * changed in the DB, so this is needed only to discard all cached keys.
+     */
+    public void reloadKeys() throws IOException {
         if (logger.isDebugEnabled()) {
             logger.debug("==> reloadKeys()");
         }
@@ -729,6 +741,44 @@ private void reloadKeys() throws IOException {
         }
     }
 
+    // discards keys updated or deleted in the DB since they were loaded
+    private void refreshKeys() {
+        removeFromCache(dbStore.engineRefresh(masterKey));
+    }
+
+    /*
+     * loads up to keyCount keys, spread across all aliases, to verify the master key; a key that can't be verified
+     * with the master key fails with IOException
+     */
+    private void verifyMasterKey(int keyCount) throws IOException, NoSuchAlgorithmException {
+        List<String> aliases  = Collections.list(dbStore.engineAliases());
+        int          step     = Math.max(1, aliases.size() / Math.max(1, keyCount));
+        int          verified = 0;
+
+        Collections.sort(aliases);
+
+        for (int i = 0; i < aliases.size() && verified < keyCount; i += step) {
+            if (dbStore.engineVerifyPassword(aliases.get(i), masterKey)) {
+                verified++;
+            }
+        }
+
+        logger.info("Master key verified with {} of {} keys", verified, aliases.size());
+    }
+
+    private void refreshKey(String name) {
+        if (dbStore.engineRefreshAlias(name)) {
+            cache.remove(name);
+        }
+    }
+
+    // aliases in the keystore are in lower case
+    private void removeFromCache(Set<String> aliases) {
+        if (!aliases.isEmpty()) {
+            cache.keySet().removeIf(name -> aliases.contains(name.toLowerCase()));
+        }
+    }
+
     /**
      * The factory to create JksProviders, which is used by the ServiceLoader.
      */
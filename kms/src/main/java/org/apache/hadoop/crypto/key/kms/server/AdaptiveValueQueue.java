@@ -0,0 +1,324 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.crypto.key.kms.server;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.crypto.key.kms.ValueQueue.QueueRefiller;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A per-key cache of pre-generated values, like
+ * {@link org.apache.hadoop.crypto.key.kms.ValueQueue}, that is refilled
+ * asynchronously once the number of values of a key falls to its low
+ * watermark.
+ * <p>
+ * The refill of a key is split across the refill threads, so that a large
+ * refill doesn't hold back callers for long. When enabled, the low watermark
+ * of each key adapts to its demand: it is raised every time a caller finds the
+ * queue of the key empty, and lowered back towards the configured value after
+ * every refill that kept up with the demand.
+ */
+@InterfaceAudience.Private
+public class AdaptiveValueQueue<E> {
+  private static final Logger LOG = LoggerFactory.getLogger(AdaptiveValueQueue.class);
+
+  private static final String REFILL_THREAD_NAME_FORMAT  = "AdaptiveValueQueue-refill-%d";
+  private static final int    MIN_VALUES_PER_REFILL_TASK = 16;
+  private static final float  LOW_WATERMARK_RAISE_FACTOR = 1.5f;
+  private static final float  LOW_WATERMARK_DECAY_FACTOR = 0.9f;
+
+  private final ConcurrentMap<String, KeyQueue<E>> keyQueues = new ConcurrentHashMap<>();
+  private final ScheduledThreadPoolExecutor        executor;
+  private final QueueRefiller<E>                   refiller;
+  private final int                                numValues;
+  private final float                              lowWatermark;
+  private final float                              maxLowWatermark;
+  private final boolean                            isAdaptive;
+  private final long                               expiryMs;
+  private final int                                numRefillThreads;
+
+  /**
+   * Constructor
+   * @param numValues number of values to cache per key
+   * @param lowWatermark fraction of numValues at which the queue of a key is refilled
+   * @param maxLowWatermark upper bound of the adapted low watermark
+   * @param isAdaptive whether the low watermark of a key adapts to its demand
+   * @param expiryMs the queue of a key is discarded after being idle for this duration
+   * @param numRefillThreads number of threads used to refill the queues
+   * @param refiller implementation of the QueueRefiller
+   */
+  public AdaptiveValueQueue(int numValues, float lowWatermark, float maxLowWatermark, boolean isAdaptive, long expiryMs,
+                            int numRefillThreads, QueueRefiller<E> refiller) {
+    Preconditions.checkArgument(numValues > 0, "\"numValues\" must be > 0");
+    Preconditions.checkArgument(lowWatermark > 0 && lowWatermark <= 1, "\"lowWatermark\" must be > 0 and <= 1");
+    Preconditions.checkArgument(expiryMs > 0, "\"expiry\" must be > 0");
+    Preconditions.checkArgument(numRefillThreads > 0, "\"numRefillThreads\" must be > 0");
+    Preconditions.checkNotNull(refiller, "\"refiller\" must not be null");
+
+    this.refiller         = refiller;
+    this.numValues        = numValues;
+    this.lowWatermark     = lowWatermark;
+    this.maxLowWatermark  = Math.max(lowWatermark, Math.min(maxLowWatermark, 1f));
+    this.isAdaptive       = isAdaptive;
+    this.expiryMs         = expiryMs;
+    this.numRefillThreads = numRefillThreads;
+    this.executor         = new ScheduledThreadPoolExecutor(numRefillThreads, new ThreadFactoryBuilder().setDaemon(true).setNameFormat(REFILL_THREAD_NAME_FORMAT).build());
+
+    executor.scheduleWithFixedDelay(this::expireIdleQueues, expiryMs, expiryMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Synchronously fills the queues of the given keys up to their low watermark.
+   * @param keyNames keys to warm up
+   * @throws IOException if the values could not be generated
+   */
+  public void initializeQueuesForKeys(String... keyNames) throws IOException {
+    for (String keyName : keyNames) {
+      KeyQueue<E> keyQueue = getKeyQueue(keyName);
+
+      fill(keyName, keyQueue, keyQueue.generation.get(), getLowWatermarkCount(keyQueue) - keyQueue.size.get());
+    }
+  }
+
+  /**
+   * Returns the next value of the given key. When the queue of the key is
+   * empty, a value is generated synchronously.
+   * @param keyName name of the key
+   * @return the next value
+   * @throws IOException if a value could not be generated
+   */
+  public E getNext(String keyName) throws IOException {
+    KeyQueue<E> keyQueue = getKeyQueue(keyName);
+
+    keyQueue.lastAccessTime = System.currentTimeMillis();
+
+    E ret = keyQueue.poll();
+
+    if (ret == null) {
+      if (isAdaptive) {
+        keyQueue.lowWatermark      = Math.min(maxLowWatermark, keyQueue.lowWatermark * LOW_WATERMARK_RAISE_FACTOR);
+        keyQueue.missedSinceRefill = true;
+      }
+
+      submitRefill(keyName, keyQueue);
+
+      Queue<E> values = new LinkedList<>();
+
+      refiller.fillQueueForKey(keyName, values, 1);
+
+      ret = values.poll();
+
+      if (ret == null) {
+        throw new IOException("failed to generate a value for key " + keyName);
+      }
+    } else if (keyQueue.size.get() <= getLowWatermarkCount(keyQueue)) {
+      submitRefill(keyName, keyQueue);
+    }
+
+    return ret;
+  }
+
+  /**
+   * Discards the cached values of the given key, including the values being
+   * generated by an in-progress refill.
+   * @param keyName name of the key
+   */
+  public void drain(String keyName) {
+    KeyQueue<E> keyQueue = keyQueues.get(keyName);
+
+    if (keyQueue != null) {
+      keyQueue.clear();
+    }
+  }
+
+  public int getSize(String keyName) {
+    KeyQueue<E> keyQueue = keyQueues.get(keyName);
+
+    return keyQueue != null ? keyQueue.size.get() : 0;
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @VisibleForTesting
+  float getLowWatermark(String keyName) {
+    KeyQueue<E> keyQueue = keyQueues.get(keyName);
+
+    return keyQueue != null ? keyQueue.lowWatermark : lowWatermark;
+  }
+
+  @VisibleForTesting
+  boolean isRefillInProgress(String keyName) {
+    KeyQueue<E> keyQueue = keyQueues.get(keyName);
+
+    return keyQueue != null && keyQueue.isRefilling.get();
+  }
+
+  private KeyQueue<E> getKeyQueue(String keyName) {
+    return keyQueues.computeIfAbsent(keyName, k -> new KeyQueue<>(lowWatermark));
+  }
+
+  private int getLowWatermarkCount(KeyQueue<E> keyQueue) {
+    return (int) (keyQueue.lowWatermark * numValues);
+  }
+
+  private void submitRefill(String keyName, KeyQueue<E> keyQueue) {
+    if (!keyQueue.isRefilling.compareAndSet(false, true)) {
+      return;
+    }
+
+    int generation = keyQueue.generation.get();
+    int numToFill  = numValues - keyQueue.size.get();
+    int numTasks   = Math.max(1, Math.min(numRefillThreads, numToFill / MIN_VALUES_PER_REFILL_TASK));
+
+    if (numToFill <= 0) {
+      keyQueue.isRefilling.set(false);
+
+      return;
+    }
+
+    keyQueue.pendingTasks.set(numTasks);
+
+    for (int i = 0; i < numTasks; i++) {
+      final int count = numToFill / numTasks + (i < numToFill % numTasks ? 1 : 0);
+
+      try {
+        executor.execute(() -> {
+          try {
+            fill(keyName, keyQueue, generation, count);
+          } catch (Throwable excp) {
+            LOG.warn("failed to refill values for key {}", keyName, excp);
+
+            keyQueue.isRefillFailed = true;
+          } finally {
+            if (keyQueue.pendingTasks.decrementAndGet() == 0) {
+              onRefillComplete(keyName, keyQueue);
+            }
+          }
+        });
+      } catch (RejectedExecutionException excp) {
+        LOG.debug("refill of key {} rejected; the queue is shutdown", keyName);
+
+        if (keyQueue.pendingTasks.addAndGet(i - numTasks) == 0) {
+          keyQueue.isRefilling.set(false);
+        }
+
+        break;
+      }
+    }
+  }
+
+  private void onRefillComplete(String keyName, KeyQueue<E> keyQueue) {
+    boolean isRefillFailed = keyQueue.isRefillFailed;
+
+    keyQueue.isRefillFailed = false;
+
+    if (isAdaptive) {
+      if (!keyQueue.missedSinceRefill && !isRefillFailed) {
+        keyQueue.lowWatermark = Math.max(lowWatermark, keyQueue.lowWatermark * LOW_WATERMARK_DECAY_FACTOR);
+      }
+
+      keyQueue.missedSinceRefill = false;
+    }
+
+    keyQueue.isRefilling.set(false);
+
+    // values consumed while the refill was in progress might have taken the queue below the watermark again. After a
+    // failed refill, the next refill is left to the next caller, instead of retrying without pause
+    if (!isRefillFailed && keyQueue.size.get() <= getLowWatermarkCount(keyQueue) && !executor.isShutdown()) {
+      submitRefill(keyName, keyQueue);
+    }
+  }
+
+  private void fill(String keyName, KeyQueue<E> keyQueue, int generation, int count) throws IOException {
+    if (count > 0) {
+      Queue<E> values = new LinkedList<>();
+
+      refiller.fillQueueForKey(keyName, values, count);
+
+      keyQueue.addAll(generation, values);
+    }
+  }
+
+  private void expireIdleQueues() {
+    long expiryTime = System.currentTimeMillis() - expiryMs;
+
+    keyQueues.values().removeIf(keyQueue -> keyQueue.lastAccessTime < expiryTime && !keyQueue.isRefilling.get());
+  }
+
+  private static class KeyQueue<E> {
+    final Queue<E>      values       = new ConcurrentLinkedQueue<>();
+    final AtomicInteger size         = new AtomicInteger();
+    final AtomicInteger generation   = new AtomicInteger();
+    final AtomicInteger pendingTasks = new AtomicInteger();
+    final AtomicBoolean isRefilling  = new AtomicBoolean();
+    volatile float      lowWatermark;
+    volatile boolean    missedSinceRefill;
+    volatile boolean    isRefillFailed;
+    volatile long       lastAccessTime = System.currentTimeMillis();
+
+    KeyQueue(float lowWatermark) {
+      this.lowWatermark = lowWatermark;
+    }
+
+    E poll() {
+      E ret = values.poll();
+
+      if (ret != null) {
+        size.decrementAndGet();
+      }
+
+      return ret;
+    }
+
+    synchronized void addAll(int generation, Queue<E> newValues) {
+      // values generated before the queue was drained are discarded
+      if (this.generation.get() == generation) {
+        values.addAll(newValues);
+        size.addAndGet(newValues.size());
+      }
+    }
+
+    synchronized void clear() {
+      generation.incrementAndGet();
+
+      while (poll() != null) {
+        // discard
+      }
+    }
+  }
+}
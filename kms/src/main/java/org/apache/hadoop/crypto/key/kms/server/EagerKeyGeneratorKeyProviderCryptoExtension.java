@@ -24,17 +24,25 @@
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
-import java.util.concurrent.ExecutionException;
 
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.google.common.base.Preconditions;
+
+import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.crypto.CipherSuite;
 import org.apache.hadoop.crypto.key.KeyProviderCryptoExtension;
+import org.apache.hadoop.crypto.key.kms.KMSClientProvider.KMSKeyVersion;
 import org.apache.hadoop.crypto.key.kms.ValueQueue;
-import org.apache.hadoop.crypto.key.kms.ValueQueue.SyncGenerationPolicy;
+import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
 
 /**
  * A {@link KeyProviderCryptoExtension} that pre-generates and caches encrypted
- * keys.
+ * keys, and decrypts encrypted keys with a per-thread reused cipher.
  */
 @InterfaceAudience.Private
 public class EagerKeyGeneratorKeyProviderCryptoExtension
@@ -59,6 +67,17 @@
       KEY_CACHE_PREFIX + "num.fill.threads";
   public static final int KMS_KEY_CACHE_NUM_REFILL_THREADS_DEFAULT = 2;
 
+  public static final String KMS_KEY_CACHE_LOW_WATERMARK_ADAPTIVE =
+      KEY_CACHE_PREFIX + "low.watermark.adaptive";
+  public static final boolean KMS_KEY_CACHE_LOW_WATERMARK_ADAPTIVE_DEFAULT = true;
+
+  public static final String KMS_KEY_CACHE_LOW_WATERMARK_MAX =
+      KEY_CACHE_PREFIX + "low.watermark.max";
+  public static final float KMS_KEY_CACHE_LOW_WATERMARK_MAX_DEFAULT = 0.90f;
+
+  public static final String KMS_EEK_DECRYPT_CIPHER_REUSE =
+      "hadoop.security.kms.eek.decrypt.cipher.reuse";
+  public static final boolean KMS_EEK_DECRYPT_CIPHER_REUSE_DEFAULT = true;
 
   private static class CryptoExtension
       implements KeyProviderCryptoExtension.CryptoExtension {
@@ -84,33 +103,52 @@ public void fillQueueForKey(String keyName,
     }
 
     private KeyProviderCryptoExtension keyProviderCryptoExtension;
-    private final ValueQueue<EncryptedKeyVersion> encKeyVersionQueue;
+    private final AdaptiveValueQueue<EncryptedKeyVersion> encKeyVersionQueue;
+    private final ThreadLocal<Cipher> decryptCiphers;
+    private final String jceProvider;
 
     public CryptoExtension(Configuration conf,
         KeyProviderCryptoExtension keyProviderCryptoExtension) {
       this.keyProviderCryptoExtension = keyProviderCryptoExtension;
       encKeyVersionQueue =
-          new ValueQueue<KeyProviderCryptoExtension.EncryptedKeyVersion>(
+          new AdaptiveValueQueue<KeyProviderCryptoExtension.EncryptedKeyVersion>(
               conf.getInt(KMS_KEY_CACHE_SIZE,
                   KMS_KEY_CACHE_SIZE_DEFAULT),
               conf.getFloat(KMS_KEY_CACHE_LOW_WATERMARK,
                   KMS_KEY_CACHE_LOW_WATERMARK_DEFAULT),
+              conf.getFloat(KMS_KEY_CACHE_LOW_WATERMARK_MAX,
+                  KMS_KEY_CACHE_LOW_WATERMARK_MAX_DEFAULT),
+              conf.getBoolean(KMS_KEY_CACHE_LOW_WATERMARK_ADAPTIVE,
+                  KMS_KEY_CACHE_LOW_WATERMARK_ADAPTIVE_DEFAULT),
               conf.getInt(KMS_KEY_CACHE_EXPIRY_MS,
                   KMS_KEY_CACHE_EXPIRY_DEFAULT),
               conf.getInt(KMS_KEY_CACHE_NUM_REFILL_THREADS,
                   KMS_KEY_CACHE_NUM_REFILL_THREADS_DEFAULT),
-              SyncGenerationPolicy.LOW_WATERMARK, new EncryptedQueueRefiller()
+              new EncryptedQueueRefiller()
           );
+
+      // the cipher is reused only for the suite the default CryptoCodec would
+      // have used; the output of AES-CTR doesn't depend on the implementation
+      String cipherSuite = conf.get(
+          CommonConfigurationKeysPublic.HADOOP_SECURITY_CRYPTO_CIPHER_SUITE_KEY,
+          CommonConfigurationKeysPublic.HADOOP_SECURITY_CRYPTO_CIPHER_SUITE_DEFAULT);
+
+      if (conf.getBoolean(KMS_EEK_DECRYPT_CIPHER_REUSE,
+          KMS_EEK_DECRYPT_CIPHER_REUSE_DEFAULT) &&
+          CipherSuite.AES_CTR_NOPADDING.getName().equals(cipherSuite)) {
+        decryptCiphers = new ThreadLocal<Cipher>();
+      } else {
+        decryptCiphers = null;
+      }
+
+      jceProvider = conf.get(
+          CommonConfigurationKeysPublic.HADOOP_SECURITY_CRYPTO_JCE_PROVIDER_KEY);
     }
 
     @Override
     public void warmUpEncryptedKeys(String... keyNames) throws
                                                         IOException {
-      try {
-        encKeyVersionQueue.initializeQueuesForKeys(keyNames);
-      } catch (ExecutionException e) {
-        throw new IOException(e);
-      }
+      encKeyVersionQueue.initializeQueuesForKeys(keyNames);
     }
 
     @Override
@@ -121,19 +159,74 @@ public void drain(String keyName) {
     @Override
     public EncryptedKeyVersion generateEncryptedKey(String encryptionKeyName)
         throws IOException, GeneralSecurityException {
-      try {
-        return encKeyVersionQueue.getNext(encryptionKeyName);
-      } catch (ExecutionException e) {
-        throw new IOException(e);
-      }
+      return encKeyVersionQueue.getNext(encryptionKeyName);
     }
 
     @Override
     public KeyVersion
     decryptEncryptedKey(EncryptedKeyVersion encryptedKeyVersion)
         throws IOException, GeneralSecurityException {
-      return keyProviderCryptoExtension.decryptEncryptedKey(
-          encryptedKeyVersion);
+      if (decryptCiphers == null) {
+        return keyProviderCryptoExtension.decryptEncryptedKey(
+            encryptedKeyVersion);
+      }
+
+      final String encryptionKeyVersionName =
+          encryptedKeyVersion.getEncryptionKeyVersionName();
+      final KeyVersion encryptionKey =
+          keyProviderCryptoExtension.getKeyVersion(encryptionKeyVersionName);
+
+      Preconditions.checkNotNull(encryptionKey,
+          "KeyVersion name '%s' does not exist", encryptionKeyVersionName);
+      Preconditions.checkArgument(
+          encryptedKeyVersion.getEncryptedKeyVersion().getVersionName()
+              .equals(KeyProviderCryptoExtension.EEK),
+          "encryptedKey version name must be '%s', but found '%s'",
+          KeyProviderCryptoExtension.EEK,
+          encryptedKeyVersion.getEncryptedKeyVersion().getVersionName());
+
+      // same as the default CryptoExtension, without creating a CryptoCodec
+      // and direct buffers for every call
+      final byte[] encryptionIV = deriveIV(
+          encryptedKeyVersion.getEncryptedKeyIv());
+      final Cipher cipher = getDecryptCipher();
+
+      cipher.init(Cipher.DECRYPT_MODE,
+          new SecretKeySpec(encryptionKey.getMaterial(), "AES"),
+          new IvParameterSpec(encryptionIV));
+
+      final byte[] decryptedKey = cipher.doFinal(
+          encryptedKeyVersion.getEncryptedKeyVersion().getMaterial());
+
+      return new KMSKeyVersion(encryptionKey.getName(),
+          KeyProviderCryptoExtension.EK, decryptedKey);
+    }
+
+    // same as EncryptedKeyVersion.deriveIV(), which is not accessible here
+    private static byte[] deriveIV(byte[] encryptedKeyIV) {
+      byte[] ret = new byte[encryptedKeyIV.length];
+
+      for (int i = 0; i < encryptedKeyIV.length; i++) {
+        ret[i] = (byte) (encryptedKeyIV[i] ^ 0xff);
+      }
+
+      return ret;
+    }
+
+    private Cipher getDecryptCipher() throws GeneralSecurityException {
+      Cipher ret = decryptCiphers.get();
+
+      if (ret == null) {
+        String transformation = CipherSuite.AES_CTR_NOPADDING.getName();
+
+        ret = StringUtils.isEmpty(jceProvider) ?
+            Cipher.getInstance(transformation) :
+            Cipher.getInstance(transformation, jceProvider);
+
+        decryptCiphers.set(ret);
+      }
+
+      return ret;
     }
 
 	@Override
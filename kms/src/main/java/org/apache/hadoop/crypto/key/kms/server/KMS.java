@@ -52,6 +52,7 @@
 
 import java.io.IOException;
 import java.net.URI;
+import java.security.GeneralSecurityException;
 import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -80,11 +81,13 @@ public class KMS {
   private static final String KEY_NAME_VALIDATION = "[a-z,A-Z,0-9](?!.*--)(?!.*__)(?!.*-_)(?!.*_-)[\\w\\-\\_]*";
   private static final int    MAX_NUM_PER_BATCH   = 10000;
 
+  public static final String DECRYPT_BATCH_SUB_RESOURCE = "_decryptbatch";
+
   public enum KMSOp {
     CREATE_KEY, DELETE_KEY, ROLL_NEW_VERSION, INVALIDATE_CACHE,
     GET_KEYS, GET_KEYS_METADATA,
     GET_KEY_VERSIONS, GET_METADATA, GET_KEY_VERSION, GET_CURRENT_KEY,
-    GENERATE_EEK, DECRYPT_EEK, REENCRYPT_EEK, REENCRYPT_EEK_BATCH
+    GENERATE_EEK, DECRYPT_EEK, REENCRYPT_EEK, REENCRYPT_EEK_BATCH, DECRYPT_EEK_BATCH
   }
 
 
@@ -688,6 +691,63 @@ public Response reencryptEncryptedKeys(@PathParam("name") final String name, fin
     }
   }
 
+  /**
+   * Decrypts a batch of encrypted keys of the given key in one call. The
+   * payload is a list of encrypted keys in the format returned by
+   * generateEncryptedKeys; the decrypted keys are returned in the same order.
+   */
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  @POST
+  @Path(KMSRESTConstants.KEY_RESOURCE + "/{name:.*}/" + DECRYPT_BATCH_SUB_RESOURCE)
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response decryptEncryptedKeys(@PathParam("name") final String name, final List<Map> jsonPayload, @Context HttpServletRequest request) throws Exception {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("==> decryptEncryptedKeys(name={}, count={})", name, (jsonPayload != null ? jsonPayload.size() : 0));
+    }
+
+    final Stopwatch sw = Stopwatch.createStarted();
+
+    try {
+      this.kmsMetricsCollector.incrementCounter(KMSMetrics.KMSMetric.DECRYPT_EEK_BATCH_COUNT);
+      KMSWebApp.getDecryptEEKBatchCallsMeter().mark();
+
+      checkNotEmpty(name, "name");
+      checkNotNull(jsonPayload, "jsonPayload");
+
+      final UserGroupInformation user = HttpUserGroupInformation.get();
+
+      if (jsonPayload.size() > MAX_NUM_PER_BATCH) {
+        LOG.warn("Payload size {} too big for decryptEncryptedKeys from" + " user {}.", jsonPayload.size(), user);
+      }
+
+      assertAccess(Type.DECRYPT_EEK, user, KMSOp.DECRYPT_EEK_BATCH, name, request.getRemoteAddr());
+
+      final List<EncryptedKeyVersion> ekvs = parseEncryptedKeys(name, jsonPayload);
+
+      final List retJSON = user.doAs((PrivilegedExceptionAction<List>) () -> decryptEncryptedKeys(provider, ekvs));
+
+      this.kmsMetricsCollector.updateMetric(KMSMetrics.KMSMetric.DECRYPT_EEK_BATCH_KEYS_COUNT, retJSON.size());
+
+      kmsAudit.ok(user, KMSOp.DECRYPT_EEK_BATCH, name,"decrypted " + retJSON.size() + " keys");
+
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("decryptEncryptedKeys {} keys for key {} took {}", jsonPayload.size(), name, sw.stop());
+      }
+
+      return Response.ok().type(MediaType.APPLICATION_JSON).entity(retJSON).build();
+    } catch (Exception e) {
+      LOG.error("Exception in decryptEncryptedKeys.", e);
+
+      throw e;
+    } finally {
+      this.kmsMetricsCollector.updateMetric(KMSMetrics.KMSMetric.DECRYPT_EEK_BATCH_ELAPSED_TIME, sw.elapsed(TimeUnit.MILLISECONDS));
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("<== decryptEncryptedKeys(name={}, count={})", name, (jsonPayload != null ? jsonPayload.size() : 0));
+      }
+    }
+  }
+
   @SuppressWarnings("rawtypes")
   @POST
   @Path(KMSRESTConstants.KEY_VERSION_RESOURCE + "/{versionName:.*}/" + KMSRESTConstants.EEK_SUB_RESOURCE)
@@ -817,6 +877,36 @@ public Response getKeyVersions(@PathParam("name") final String name, @Context Ht
     }
    }
 
+  /*
+   * parses the payload of decryptEncryptedKeys(); all encrypted keys must be under the given key name
+   */
+  @SuppressWarnings("rawtypes")
+  static List<EncryptedKeyVersion> parseEncryptedKeys(String name, List<Map> jsonPayload) {
+    final List<EncryptedKeyVersion> ret = KMSUtil.parseJSONEncKeyVersions(name, jsonPayload);
+
+    Preconditions.checkArgument(ret.size() == jsonPayload.size(),"EncryptedKey size mismatch after parsing from json");
+
+    for (EncryptedKeyVersion ekv : ret) {
+      Preconditions.checkArgument(name.equals(ekv.getEncryptionKeyName()),"All EncryptedKeys must be under the given key name " + name);
+    }
+
+    return ret;
+  }
+
+  /*
+   * decrypts the given encrypted keys, in order; returns the JSON of decrypted keys
+   */
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  static List decryptEncryptedKeys(KeyProviderCryptoExtension provider, List<EncryptedKeyVersion> ekvs) throws IOException, GeneralSecurityException {
+    final List ret = new ArrayList<>(ekvs.size());
+
+    for (EncryptedKeyVersion ekv : ekvs) {
+      ret.add(KMSUtil.toJSON(provider.decryptEncryptedKey(ekv)));
+    }
+
+    return ret;
+  }
+
   private void assertAccess(Type aclType, UserGroupInformation ugi, KMSOp operation, String clientIp) throws AccessControlException {
     KMSWebApp.getACLs().assertAccess(aclType, ugi, operation, null, clientIp);
   }
@@ -35,6 +35,7 @@
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import com.google.common.annotations.VisibleForTesting;
 
 /**
@@ -66,11 +67,15 @@ public class KMSACLs implements Runnable, KeyACLs {
   volatile Map<KeyOpType, AccessControlList> whitelistKeyAcls = new HashMap<>();
   private ScheduledExecutorService executorService;
   private long lastReload;
+  private final AtomicLong aclsVersion = new AtomicLong();
+  @VisibleForTesting
+  final KMSAccessDecisionCache<Boolean> decisionCache;
 
   KMSACLs(Configuration conf) {
     if (conf == null) {
       conf = loadACLs();
     }
+    decisionCache = new KMSAccessDecisionCache<>(conf);
     setKMSACLs(conf);
     setKeyACLs(conf);
   }
@@ -95,6 +100,7 @@ private void setKMSACLs(Configuration conf) {
     }
     acls = tempAcls;
     blacklistedAcls = tempBlacklist;
+    aclsVersion.incrementAndGet();
   }
 
   @VisibleForTesting
@@ -143,6 +149,7 @@ void setKeyACLs(Configuration conf) {
     }
     defaultKeyAcls = tempDefaults;
     whitelistKeyAcls = tempWhitelists;
+    aclsVersion.incrementAndGet();
  }
 /**
    * Parse the acls from configuration with the specified prefix. Currently
@@ -217,6 +224,10 @@ private Configuration loadACLs() {
    */
   @Override
   public boolean hasAccess(Type type, UserGroupInformation ugi, String clientIp) {
+    return decisionCache.getDecision(aclsVersion.get(), ugi, type, null, () -> evaluateAccess(type, ugi));
+  }
+
+  private boolean evaluateAccess(Type type, UserGroupInformation ugi) {
     boolean access = acls.get(type).isUserAllowed(ugi);
     if (LOG.isDebugEnabled()) {
       LOG.debug("Checking user [{}] for: {} {} ", ugi.getShortUserName(),
@@ -259,8 +270,8 @@ public void assertAccess(Type aclType,
   @Override
   public boolean hasAccessToKey(String keyName, UserGroupInformation ugi,
       KeyOpType opType) {
-    boolean access = checkKeyAccess(keyName, ugi, opType)
-      || checkKeyAccess(whitelistKeyAcls, ugi, opType);
+    boolean access = decisionCache.getDecision(aclsVersion.get(), ugi, opType, keyName,
+        () -> checkKeyAccess(keyName, ugi, opType) || checkKeyAccess(whitelistKeyAcls, ugi, opType));
     if (!access) {
       KMSWebApp.getKMSAudit().unauthorized(ugi, opType, keyName);
     }
@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.crypto.key.kms.server;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.ranger.kms.metrics.KMSMetrics;
+import org.apache.ranger.kms.metrics.collector.KMSMetricsCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded cache of access decisions made by {@link KeyAuthorizationKeyProvider.KeyACLs}
+ * implementations, keyed by (user, groups, access type, key name).
+ * <p>
+ * Each decision is recorded with the ACLs version it was computed with, and is
+ * used only while the ACLs remain at that version. Versions must increase with
+ * each change of the ACLs: the cache only moves to a newer version, and requests
+ * made with an earlier version are evaluated without the cache. A negative
+ * version bypasses the cache, for ACLs whose decisions depend on more than the
+ * cache key - like policies with conditions. Hits, misses and bypasses are
+ * counted in {@link KMSMetrics.KMSMetric}.
+ */
+@InterfaceAudience.Private
+public class KMSAccessDecisionCache<V> {
+  private static final Logger LOG = LoggerFactory.getLogger(KMSAccessDecisionCache.class);
+
+  private final Cache<DecisionKey, Decision<V>> cache;
+  private volatile long                         cacheVersion = -1;
+
+  public KMSAccessDecisionCache(Configuration conf) {
+    boolean isEnabled = conf.getBoolean(KMSConfiguration.ACL_DECISION_CACHE_ENABLE, KMSConfiguration.ACL_DECISION_CACHE_ENABLE_DEFAULT);
+    long    maxSize   = conf.getLong(KMSConfiguration.ACL_DECISION_CACHE_MAX_SIZE, KMSConfiguration.ACL_DECISION_CACHE_MAX_SIZE_DEFAULT);
+    long    ttlMs     = conf.getLong(KMSConfiguration.ACL_DECISION_CACHE_TTL_MS, KMSConfiguration.ACL_DECISION_CACHE_TTL_MS_DEFAULT);
+
+    if (isEnabled && maxSize > 0 && ttlMs > 0) {
+      cache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS).build();
+
+      LOG.info("KMS ACL decision cache: maxSize={}, ttlMs={}", maxSize, ttlMs);
+    } else {
+      cache = null;
+
+      LOG.info("KMS ACL decision cache is disabled");
+    }
+  }
+
+  /**
+   * Returns the decision for the given request from the cache, if one computed
+   * with the given ACLs version is found; otherwise returns the decision
+   * computed by the evaluator, after caching it.
+   * @param version version of the ACLs; negative to bypass the cache
+   * @param ugi user
+   * @param accessType the access type checked
+   * @param keyName name of the key; null for checks not specific to a key
+   * @param evaluator computes the decision
+   * @return the decision
+   */
+  public V getDecision(long version, UserGroupInformation ugi, Object accessType, String keyName, Supplier<V> evaluator) {
+    if (cache == null || version < 0) {
+      incrementCounter(KMSMetrics.KMSMetric.ACL_DECISION_CACHE_BYPASS_COUNT);
+
+      return evaluator.get();
+    }
+
+    if (version > cacheVersion) {
+      synchronized (this) {
+        if (version > cacheVersion) {
+          // decisions computed with earlier versions will never be used again
+          cache.invalidateAll();
+
+          cacheVersion = version;
+        }
+      }
+    } else if (version < cacheVersion) {
+      // caller has read the version before it was updated by another thread: its decision must not replace the
+      // decisions computed with the newer version, and must not take the cache back to the earlier version
+      incrementCounter(KMSMetrics.KMSMetric.ACL_DECISION_CACHE_BYPASS_COUNT);
+
+      return evaluator.get();
+    }
+
+    DecisionKey key      = new DecisionKey(ugi, accessType, keyName);
+    Decision<V> decision = cache.getIfPresent(key);
+
+    if (decision != null && decision.version == version) {
+      incrementCounter(KMSMetrics.KMSMetric.ACL_DECISION_CACHE_HIT_COUNT);
+
+      return decision.value;
+    }
+
+    incrementCounter(KMSMetrics.KMSMetric.ACL_DECISION_CACHE_MISS_COUNT);
+
+    V ret = evaluator.get();
+
+    if (ret != null) {
+      cache.put(key, new Decision<>(version, ret));
+    }
+
+    return ret;
+  }
+
+  public void invalidateAll() {
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+
+  @VisibleForTesting
+  long size() {
+    return cache != null ? cache.size() : 0;
+  }
+
+  private static void incrementCounter(KMSMetrics.KMSMetric metric) {
+    KMSMetricsCollector collector = KMSWebApp.getKmsMetricsCollector();
+
+    if (collector != null) {
+      collector.incrementCounter(metric);
+    }
+  }
+
+  private static class Decision<V> {
+    final long version;
+    final V    value;
+
+    Decision(long version, V value) {
+      this.version = version;
+      this.value   = value;
+    }
+  }
+
+  private static class DecisionKey {
+    private final String   userName;
+    private final String[] groups;
+    private final Object   accessType;
+    private final String   keyName;
+    private final int      hashCode;
+
+    DecisionKey(UserGroupInformation ugi, Object accessType, String keyName) {
+      this.userName   = ugi.getUserName();
+      this.groups     = ugi.getGroupNames();
+      this.accessType = accessType;
+      this.keyName    = keyName;
+      this.hashCode   = Objects.hash(userName, Arrays.hashCode(groups), accessType, keyName);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (!(obj instanceof DecisionKey)) {
+        return false;
+      }
+
+      DecisionKey other = (DecisionKey) obj;
+
+      return hashCode == other.hashCode &&
+             Objects.equals(userName, other.userName) &&
+             Arrays.equals(groups, other.groups) &&
+             Objects.equals(accessType, other.accessType) &&
+             Objects.equals(keyName, other.keyName);
+    }
+  }
+}
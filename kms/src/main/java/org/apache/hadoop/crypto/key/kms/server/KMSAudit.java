@@ -31,27 +31,36 @@
 
 import com.google.common.base.Strings;
 import com.google.common.base.Preconditions;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Collection;
 /**
  * Provides convenience methods for audit logging consisting the different
  * types of events.
+ * <p>
+ * Accesses to a key by the same user and operation are aggregated, without
+ * locks, per aggregation window. When enabled, audit events are handed to
+ * the audit loggers on a background thread, keeping the loggers out of the
+ * request path.
  */
 public class KMSAudit {
 
@@ -61,10 +70,22 @@ public class KMSAudit {
     KMS.KMSOp.DECRYPT_EEK, KMS.KMSOp.GENERATE_EEK, KMS.KMSOp.REENCRYPT_EEK
   );
 
-  private Cache<String, AuditEvent> cache;
+  // access count of an aggregate being removed
+  private static final long RETIRED = Long.MIN_VALUE;
+
+  private static final long DISPATCHER_SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  private final ConcurrentMap<String, AggregatedEvent> aggregates = new ConcurrentHashMap<>();
+  private final Queue<PendingEvent> pendingEvents = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pendingCount = new AtomicInteger();
+  private final AtomicBoolean isDispatchScheduled = new AtomicBoolean();
+  private final long windowMs;
+  private final int maxPendingEvents;
 
   private ScheduledExecutorService executor;
 
+  private ExecutorService dispatcher;
+
   public static final String KMS_LOGGER_NAME = "kms-audit";
 
   private final static Logger LOG = LoggerFactory.getLogger(KMSAudit.class);
@@ -80,31 +101,23 @@ public class KMSAudit {
     // to reduce log traffic. A single message for aggregated
     // events is printed at the end of the window, along with a
     // count of the number of aggregated events.
-    long windowMs = conf.getLong(KMSConfiguration.KMS_AUDIT_AGGREGATION_WINDOW,
+    windowMs = conf.getLong(KMSConfiguration.KMS_AUDIT_AGGREGATION_WINDOW,
       KMSConfiguration.KMS_AUDIT_AGGREGATION_WINDOW_DEFAULT);
-    cache = CacheBuilder.newBuilder()
-        .expireAfterWrite(windowMs, TimeUnit.MILLISECONDS)
-        .removalListener(
-            new RemovalListener<String, AuditEvent>() {
-              @Override
-              public void onRemoval(
-                  RemovalNotification<String, AuditEvent> entry) {
-                AuditEvent event = entry.getValue();
-                if (event.getAccessCount().get() > 0) {
-                  KMSAudit.this.logEvent(OpStatus.OK, event);
-                  event.getAccessCount().set(0);
-                  KMSAudit.this.cache.put(entry.getKey(), event);
-                }
-              }
-            }).build();
+    maxPendingEvents = conf.getInt(KMSConfiguration.KMS_AUDIT_ASYNC_QUEUE_SIZE,
+      KMSConfiguration.KMS_AUDIT_ASYNC_QUEUE_SIZE_DEFAULT);
     executor = Executors.newScheduledThreadPool(1, new ThreadFactoryBuilder()
         .setDaemon(true).setNameFormat(KMS_LOGGER_NAME + "_thread").build());
     executor.scheduleAtFixedRate(new Runnable() {
       @Override
       public void run() {
-        cache.cleanUp();
+        flushAggregates(false);
       }
     }, windowMs / 10, windowMs / 10, TimeUnit.MILLISECONDS);
+    if (conf.getBoolean(KMSConfiguration.KMS_AUDIT_ASYNC_ENABLE,
+        KMSConfiguration.KMS_AUDIT_ASYNC_ENABLE_DEFAULT)) {
+      dispatcher = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+          .setDaemon(true).setNameFormat(KMS_LOGGER_NAME + "_dispatcher").build());
+    }
     initializeAuditLoggers(conf);
   }
 
@@ -165,11 +178,109 @@ private void initializeAuditLoggers(Configuration conf) {
 
   private void logEvent(final OpStatus status, AuditEvent event) {
     event.setEndTime(Time.now());
+    if (dispatcher != null) {
+      if (pendingCount.incrementAndGet() <= maxPendingEvents) {
+        pendingEvents.add(new PendingEvent(status, event));
+        scheduleDispatch();
+        return;
+      }
+      // the dispatcher is falling behind; log on this thread rather than drop the event
+      pendingCount.decrementAndGet();
+    }
+    writeEvent(status, event);
+  }
+
+  private void writeEvent(final OpStatus status, AuditEvent event) {
     for (KMSAuditLogger logger: auditLoggers) {
       logger.logAuditEvent(status, event);
     }
   }
 
+  private void scheduleDispatch() {
+    if (isDispatchScheduled.compareAndSet(false, true)) {
+      try {
+        dispatcher.execute(this::dispatchPendingEvents);
+      } catch (RejectedExecutionException ex) {
+        // shutting down
+        dispatchPendingEvents();
+      }
+    }
+  }
+
+  private void dispatchPendingEvents() {
+    do {
+      for (PendingEvent pending = pendingEvents.poll(); pending != null;
+           pending = pendingEvents.poll()) {
+        pendingCount.decrementAndGet();
+        try {
+          writeEvent(pending.status, pending.event);
+        } catch (Exception ex) {
+          LOG.warn("Failed to log audit event {}", pending.event, ex);
+        }
+      }
+      isDispatchScheduled.set(false);
+      // events added after the queue was found empty and before the flag was
+      // reset are dispatched by this thread
+    } while (!pendingEvents.isEmpty() && isDispatchScheduled.compareAndSet(false, true));
+  }
+
+  private void aggregate(final String cacheKey, final Object op,
+      final UserGroupInformation ugi, final String key, final String remoteHost,
+      final String extraMsg) {
+    while (true) {
+      AggregatedEvent aggregate = aggregates.get(cacheKey);
+      if (aggregate == null) {
+        AggregatedEvent newAggregate = new AggregatedEvent(
+            new AuditEvent(op, ugi, key, remoteHost, extraMsg));
+        aggregate = aggregates.putIfAbsent(cacheKey, newAggregate);
+        if (aggregate == null) {
+          // Log first access
+          logEvent(OpStatus.OK, new AuditEvent(newAggregate.event, 1,
+              newAggregate.windowStart));
+          return;
+        }
+      }
+      if (aggregate.accessCount.getAndIncrement() >= 0) {
+        return;
+      }
+      // the aggregate is being removed, retry with a new one
+      aggregates.remove(cacheKey, aggregate);
+    }
+  }
+
+  /**
+   * Logs the accesses aggregated since the last flush of the given aggregate.
+   *
+   * @return false if there were no accesses to log
+   */
+  private boolean flush(AggregatedEvent aggregate, long now) {
+    long count = aggregate.accessCount.get();
+    while (count > 0 && !aggregate.accessCount.compareAndSet(count, 0)) {
+      count = aggregate.accessCount.get();
+    }
+    if (count <= 0) {
+      return false;
+    }
+    long windowStart = aggregate.windowStart;
+    aggregate.windowStart = now;
+    logEvent(OpStatus.OK, new AuditEvent(aggregate.event, count, windowStart));
+    return true;
+  }
+
+  private void flushAggregates(boolean force) {
+    long now = Time.now();
+    for (Map.Entry<String, AggregatedEvent> entry : aggregates.entrySet()) {
+      AggregatedEvent aggregate = entry.getValue();
+      if (force || now - aggregate.windowStart >= windowMs) {
+        // aggregates without accesses in the last window are removed
+        if (!flush(aggregate, now)
+            && aggregate.accessCount.compareAndSet(0, RETIRED)) {
+          aggregates.remove(entry.getKey(), aggregate);
+        }
+      }
+    }
+  }
+
   /**
    * Logs to the audit service a single operation on the KMS or on a key.
    *
@@ -197,25 +308,13 @@ private void op(final OpStatus opStatus, final Object op,
         && AGGREGATE_OPS_WHITELIST.contains(op)) {
       String cacheKey = createCacheKey(user, key, op);
       if (opStatus == OpStatus.UNAUTHORIZED) {
-        cache.invalidate(cacheKey);
+        AggregatedEvent aggregate = aggregates.get(cacheKey);
+        if (aggregate != null) {
+          flush(aggregate, Time.now());
+        }
         logEvent(opStatus, new AuditEvent(op, ugi, key, remoteHost, extraMsg));
       } else {
-        try {
-          AuditEvent event = cache.get(cacheKey, new Callable<AuditEvent>() {
-            @Override
-            public AuditEvent call() throws Exception {
-              return new AuditEvent(op, ugi, key, remoteHost, extraMsg);
-            }
-          });
-          // Log first access (initialized as -1 so
-          // incrementAndGet() == 0 implies first access)
-          if (event.getAccessCount().incrementAndGet() == 0) {
-            event.getAccessCount().incrementAndGet();
-            logEvent(opStatus, event);
-          }
-        } catch (ExecutionException ex) {
-          throw new RuntimeException(ex);
-        }
+        aggregate(cacheKey, op, ugi, key, remoteHost, extraMsg);
       }
     } else {
       logEvent(opStatus, new AuditEvent(op, ugi, key, remoteHost, extraMsg));
@@ -258,6 +357,18 @@ private static String createCacheKey(String user, String key, Object op) {
 
   public void shutdown() {
     executor.shutdownNow();
+    if (dispatcher != null) {
+      dispatcher.shutdown();
+      try {
+        if (!dispatcher.awaitTermination(DISPATCHER_SHUTDOWN_TIMEOUT_SECONDS,
+            TimeUnit.SECONDS)) {
+          LOG.warn("Timed out waiting for {} pending audit events to be logged",
+              pendingCount.get());
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
     for (KMSAuditLogger logger : auditLoggers) {
         try {
           logger.cleanup();
@@ -268,6 +379,36 @@ public void shutdown() {
   }
   @VisibleForTesting
   void evictCacheForTesting() {
-    cache.invalidateAll();
+    flushAggregates(true);
+  }
+
+  @VisibleForTesting
+  void waitForDispatchForTesting() throws InterruptedException {
+    while (pendingCount.get() > 0 || isDispatchScheduled.get()) {
+      Thread.sleep(10);
+    }
+  }
+
+  private static class AggregatedEvent {
+    private final AuditEvent event;
+    // accesses since the last flush, including the first access which is
+    // logged right away; RETIRED once the aggregate is being removed
+    private final AtomicLong accessCount = new AtomicLong(1);
+    private volatile long windowStart;
+
+    AggregatedEvent(AuditEvent event) {
+      this.event = event;
+      this.windowStart = event.getStartTime();
+    }
+  }
+
+  private static class PendingEvent {
+    private final OpStatus status;
+    private final AuditEvent event;
+
+    PendingEvent(OpStatus status, AuditEvent event) {
+      this.status = status;
+      this.event = event;
+    }
   }
 }
@@ -53,8 +53,8 @@ class AuditEvent {
     private final String impersonator;
     private final String remoteHost;
     private final String extraMsg;
-    private final long startTime = System.currentTimeMillis();
-    private long endTime = startTime;
+    private final long startTime;
+    private long endTime;
 
     /**
      * @param op
@@ -88,6 +88,30 @@ class AuditEvent {
       this.remoteHost = remoteHost;
       this.op = op;
       this.extraMsg = msg;
+      this.startTime = System.currentTimeMillis();
+      this.endTime = startTime;
+    }
+
+    /**
+     * Creates a copy of the given event, to audit aggregated accesses.
+     *
+     * @param other
+     *          The event to copy
+     * @param accessCount
+     *          The number of accesses aggregated
+     * @param startTime
+     *          The time the aggregation window started
+     */
+    AuditEvent(AuditEvent other, long accessCount, long startTime) {
+      this.accessCount.set(accessCount);
+      this.op = other.op;
+      this.keyName = other.keyName;
+      this.user = other.user;
+      this.impersonator = other.impersonator;
+      this.remoteHost = other.remoteHost;
+      this.extraMsg = other.extraMsg;
+      this.startTime = startTime;
+      this.endTime = startTime;
     }
 
     public AtomicLong getAccessCount() {
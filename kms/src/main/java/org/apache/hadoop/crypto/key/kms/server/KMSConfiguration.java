@@ -61,6 +61,12 @@ public class KMSConfiguration {
   //KMS Audit logger classes to use
   public static final String KMS_AUDIT_LOGGER_KEY = CONFIG_PREFIX +
      "audit.logger";
+  // Hand audit events to the audit loggers on a background thread
+  public static final String KMS_AUDIT_ASYNC_ENABLE = CONFIG_PREFIX +
+      "audit.async.enable";
+  // Max audit events waiting for the background thread; beyond this, events are logged by the caller
+  public static final String KMS_AUDIT_ASYNC_QUEUE_SIZE = CONFIG_PREFIX +
+      "audit.async.queue.size";
   //for authorizer
   public static final String KMS_SECURITY_AUTHORIZER = CONFIG_PREFIX + "security.authorization.manager";
 
@@ -71,6 +77,8 @@ public class KMSConfiguration {
   public static final long CURR_KEY_CACHE_TIMEOUT_DEFAULT = 30 * 1000;
   // 10 secs
   public static final long KMS_AUDIT_AGGREGATION_WINDOW_DEFAULT = 10000;
+  public static final boolean KMS_AUDIT_ASYNC_ENABLE_DEFAULT = true;
+  public static final int KMS_AUDIT_ASYNC_QUEUE_SIZE_DEFAULT = 100000;
 
   // Property to Enable/Disable per Key authorization
   public static final String KEY_AUTHORIZATION_ENABLE = CONFIG_PREFIX +
@@ -78,6 +86,19 @@ public class KMSConfiguration {
 
   public static final boolean KEY_AUTHORIZATION_ENABLE_DEFAULT = true;
 
+  // Cache of ACL decisions, configured in dbks-site.xml
+  public static final String ACL_DECISION_CACHE_ENABLE = CONFIG_PREFIX +
+      "acl.decision.cache.enable";
+  public static final String ACL_DECISION_CACHE_MAX_SIZE = CONFIG_PREFIX +
+      "acl.decision.cache.max.size";
+  public static final String ACL_DECISION_CACHE_TTL_MS = CONFIG_PREFIX +
+      "acl.decision.cache.ttl.ms";
+
+  public static final boolean ACL_DECISION_CACHE_ENABLE_DEFAULT = true;
+  public static final long ACL_DECISION_CACHE_MAX_SIZE_DEFAULT = 10000;
+  // 5 mins
+  public static final long ACL_DECISION_CACHE_TTL_MS_DEFAULT = 5 * 60 * 1000;
+
   static Configuration getConfiguration(boolean loadHadoopDefaults,
       String ... resources) {
     Configuration conf = new Configuration(loadHadoopDefaults);
@@ -27,11 +27,21 @@
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.crypto.KeyGenerator;
+import javax.crypto.spec.SecretKeySpec;
 
 import org.apache.hadoop.crypto.key.RangerKeyStore;
+import org.apache.ranger.entity.XXRangerKeyStore;
 import org.apache.ranger.kms.dao.DaoManager;
+import org.apache.ranger.kms.dao.RangerKMSDao;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -142,6 +152,250 @@ public void testValidKey2() throws NoSuchAlgorithmException,
                 inputStream.close();
         }
 
+        @Test
+        public void testDecryptedKeyCache() throws Exception {
+                DaoManager daoManager = Mockito.mock(DaoManager.class);
+                RangerKeyStore rangerKeyStore = new RangerKeyStore(daoManager);
+
+                rangerKeyStore.setDecryptedKeyCache(10, 60 * 1000L);
+                rangerKeyStore.addKeyEntry("enckey@0", new SecretKeySpec(new byte[16], "AES"), masterKey, "AES", 128, "test", 1, "{}");
+
+                Key key = rangerKeyStore.engineGetKey("enckey@0", masterKey);
+
+                Assertions.assertNotNull(key);
+                Assertions.assertArrayEquals(new byte[16], key.getEncoded());
+
+                // each caller gets a copy of the cached key
+                Key cachedKey = rangerKeyStore.engineGetKey("enckey@0", masterKey);
+
+                Assertions.assertNotSame(key, cachedKey);
+                Assertions.assertArrayEquals(key.getEncoded(), cachedKey.getEncoded());
+
+                // a key updated after it was cached must not be served from the cache
+                byte[] updatedMaterial = new byte[16];
+
+                Arrays.fill(updatedMaterial, (byte) 1);
+
+                rangerKeyStore.addKeyEntry("enckey@0", new SecretKeySpec(updatedMaterial, "AES"), masterKey, "AES", 128, "test", 1, "{}");
+
+                Assertions.assertArrayEquals(updatedMaterial, rangerKeyStore.engineGetKey("enckey@0", masterKey).getEncoded());
+
+                // entries yet to be stored are discarded
+                Assertions.assertTrue(rangerKeyStore.engineDiscardChanges().contains("enckey@0"));
+                Assertions.assertFalse(rangerKeyStore.engineContainsAlias("enckey@0"));
+        }
+
+        @Test
+        public void testLoadKeyOnAccess() throws Exception {
+                Map<String, XXRangerKeyStore> rows       = new HashMap<>();
+                DaoManager                    daoManager = mockDaoManager(rows);
+                RangerKeyStore                writer     = new RangerKeyStore(daoManager);
+                RangerKeyStore                reader     = new RangerKeyStore(daoManager);
+
+                storeKey(writer, "key1@0", 1, 1);
+                storeKey(writer, "key2@0", 1, 2);
+
+                // nothing was loaded yet, hence nothing to discard
+                Assertions.assertTrue(reader.engineRefresh(masterKey).isEmpty());
+                Assertions.assertTrue(reader.engineContainsAlias("key1@0"));
+                Assertions.assertEquals(2, reader.engineSize());
+
+                Assertions.assertArrayEquals(material(1), reader.engineGetKey("key1@0", masterKey).getEncoded());
+                Assertions.assertArrayEquals(material(1), reader.engineGetKey("key1@0", masterKey).getEncoded());
+
+                // only the accessed key is loaded, once
+                Mockito.verify(daoManager.getRangerKMSDao(), Mockito.times(1)).getKey("key1@0");
+                Mockito.verify(daoManager.getRangerKMSDao(), Mockito.never()).getKey("key2@0");
+                Mockito.verify(daoManager.getRangerKMSDao(), Mockito.never()).getAllKeys();
+        }
+
+        @Test
+        public void testRefreshDiscardsChangedKeys() throws Exception {
+                Map<String, XXRangerKeyStore> rows       = new HashMap<>();
+                DaoManager                    daoManager = mockDaoManager(rows);
+                RangerKeyStore                writer     = new RangerKeyStore(daoManager);
+                RangerKeyStore                reader     = new RangerKeyStore(daoManager);
+
+                storeKey(writer, "key1@0", 1, 1);
+                storeKey(writer, "key2@0", 1, 2);
+
+                reader.engineRefresh(masterKey);
+                reader.engineGetKey("key1@0", masterKey);
+                reader.engineGetKey("key2@0", masterKey);
+
+                // key1 is updated by another instance: only its entry is discarded, and the updated key loaded on access
+                storeKey(writer, "key1@0", 2, 3);
+
+                Assertions.assertEquals(Collections.singleton("key1@0"), reader.engineRefresh(masterKey));
+                Assertions.assertArrayEquals(material(3), reader.engineGetKey("key1@0", masterKey).getEncoded());
+                Assertions.assertArrayEquals(material(2), reader.engineGetKey("key2@0", masterKey).getEncoded());
+
+                Mockito.verify(daoManager.getRangerKMSDao(), Mockito.times(2)).getKey("key1@0");
+                Mockito.verify(daoManager.getRangerKMSDao(), Mockito.times(1)).getKey("key2@0");
+
+                // key2 is deleted by another instance
+                rows.remove("key2@0");
+
+                Assertions.assertEquals(Collections.singleton("key2@0"), reader.engineRefresh(masterKey));
+                Assertions.assertFalse(reader.engineContainsAlias("key2@0"));
+                Assertions.assertTrue(reader.engineRefresh(masterKey).isEmpty());
+        }
+
+        @Test
+        public void testRefreshAlias() throws Exception {
+                Map<String, XXRangerKeyStore> rows       = new HashMap<>();
+                DaoManager                    daoManager = mockDaoManager(rows);
+                RangerKeyStore                writer     = new RangerKeyStore(daoManager);
+                RangerKeyStore                reader     = new RangerKeyStore(daoManager);
+
+                reader.engineRefresh(masterKey);
+
+                // key added by another instance
+                storeKey(writer, "key1@0", 1, 1);
+
+                Assertions.assertFalse(reader.engineContainsAlias("key1@0"));
+                Assertions.assertTrue(reader.engineRefreshAlias("key1@0"));
+                Assertions.assertArrayEquals(material(1), reader.engineGetKey("key1@0", masterKey).getEncoded());
+                Assertions.assertFalse(reader.engineRefreshAlias("key1@0"));
+
+                // key updated by another instance
+                storeKey(writer, "key1@0", 2, 2);
+
+                Assertions.assertTrue(reader.engineRefreshAlias("key1@0"));
+                Assertions.assertArrayEquals(material(2), reader.engineGetKey("key1@0", masterKey).getEncoded());
+
+                // key deleted by another instance
+                rows.remove("key1@0");
+
+                Assertions.assertTrue(reader.engineRefreshAlias("key1@0"));
+                Assertions.assertFalse(reader.engineContainsAlias("key1@0"));
+                Assertions.assertNull(reader.engineGetKey("key1@0", masterKey));
+
+                // entries yet to be stored are not refreshed
+                reader.addKeyEntry("key2@0", new SecretKeySpec(material(4), "AES"), masterKey, "AES", 128, "test", 1, "{}");
+
+                Assertions.assertFalse(reader.engineRefreshAlias("key2@0"));
+                Assertions.assertTrue(reader.engineContainsAlias("key2@0"));
+        }
+
+        @Test
+        public void testLoadKeyUpdatesStamp() throws Exception {
+                Map<String, XXRangerKeyStore> rows       = new HashMap<>();
+                DaoManager                    daoManager = mockDaoManager(rows);
+                RangerKeyStore                writer     = new RangerKeyStore(daoManager);
+                RangerKeyStore                reader     = new RangerKeyStore(daoManager);
+
+                storeKey(writer, "key1@0", 1, 1);
+
+                reader.engineRefresh(masterKey);
+
+                // key updated after the refresh, but before it is accessed: the loaded key is the updated one ...
+                storeKey(writer, "key1@0", 2, 2);
+
+                Assertions.assertArrayEquals(material(2), reader.engineGetKey("key1@0", masterKey).getEncoded());
+
+                // ... and its version columns are recorded when loaded, so the next refresh doesn't discard it
+                Assertions.assertTrue(reader.engineRefresh(masterKey).isEmpty());
+                Assertions.assertArrayEquals(material(2), reader.engineGetKey("key1@0", masterKey).getEncoded());
+
+                Mockito.verify(daoManager.getRangerKMSDao(), Mockito.times(1)).getKey("key1@0");
+        }
+
+        @Test
+        public void testVerifyPassword() throws Exception {
+                Map<String, XXRangerKeyStore> rows       = new HashMap<>();
+                DaoManager                    daoManager = mockDaoManager(rows);
+                RangerKeyStore                writer     = new RangerKeyStore(daoManager);
+                RangerKeyStore                reader     = new RangerKeyStore(daoManager);
+
+                storeKey(writer, "key1@0", 1, 1);
+
+                Assertions.assertTrue(reader.engineVerifyPassword("key1@0", masterKey));
+                Assertions.assertFalse(reader.engineVerifyPassword("key2@0", masterKey)); // no such key
+                Assertions.assertThrows(IOException.class, () -> reader.engineVerifyPassword("key1@0", "WrongPassword".toCharArray()));
+        }
+
+        private void storeKey(RangerKeyStore rangerKeyStore, String alias, int version, int material) throws Exception {
+                rangerKeyStore.addKeyEntry(alias, new SecretKeySpec(material(material), "AES"), masterKey, "AES", 128, "test", version, "{}");
+                rangerKeyStore.engineStore(null, masterKey);
+        }
+
+        private static byte[] material(int value) {
+                byte[] ret = new byte[16];
+
+                Arrays.fill(ret, (byte) value);
+
+                return ret;
+        }
+
+        /*
+         * DaoManager with RangerKMSDao backed by the given map of rows, by alias
+         */
+        private static DaoManager mockDaoManager(Map<String, XXRangerKeyStore> rows) {
+                DaoManager   daoManager = Mockito.mock(DaoManager.class);
+                RangerKMSDao kmsDao     = Mockito.mock(RangerKMSDao.class);
+                AtomicLong   nextId     = new AtomicLong(1);
+
+                Mockito.lenient().when(daoManager.getRangerKMSDao()).thenReturn(kmsDao);
+                Mockito.lenient().when(kmsDao.findByAlias(Mockito.anyString())).thenAnswer(invocation -> copy(rows.get(invocation.getArgument(0))));
+                Mockito.lenient().when(kmsDao.getKey(Mockito.anyString())).thenAnswer(invocation -> copy(rows.get(invocation.getArgument(0))));
+                Mockito.lenient().when(kmsDao.create(Mockito.any())).thenAnswer(invocation -> {
+                        XXRangerKeyStore rangerKey = invocation.getArgument(0);
+
+                        rangerKey.setId(nextId.getAndIncrement());
+                        rows.put(rangerKey.getAlias(), copy(rangerKey));
+
+                        return rangerKey;
+                });
+                Mockito.lenient().when(kmsDao.update(Mockito.any())).thenAnswer(invocation -> {
+                        XXRangerKeyStore rangerKey = invocation.getArgument(0);
+
+                        rows.put(rangerKey.getAlias(), copy(rangerKey));
+
+                        return rangerKey;
+                });
+                Mockito.lenient().when(kmsDao.getAllKeyVersions()).thenAnswer(invocation -> {
+                        List<Object[]> ret = new ArrayList<>();
+
+                        for (XXRangerKeyStore rangerKey : rows.values()) {
+                                ret.add(toVersionRow(rangerKey));
+                        }
+
+                        return ret;
+                });
+                Mockito.lenient().when(kmsDao.getKeyVersion(Mockito.anyString())).thenAnswer(invocation -> {
+                        XXRangerKeyStore rangerKey = rows.get(invocation.getArgument(0));
+
+                        return rangerKey != null ? toVersionRow(rangerKey) : null;
+                });
+
+                return daoManager;
+        }
+
+        private static Object[] toVersionRow(XXRangerKeyStore rangerKey) {
+                return new Object[] { rangerKey.getAlias(), rangerKey.getId(), rangerKey.getVersion(), rangerKey.getCreatedDate() };
+        }
+
+        private static XXRangerKeyStore copy(XXRangerKeyStore rangerKey) {
+                XXRangerKeyStore ret = null;
+
+                if (rangerKey != null) {
+                        ret = new XXRangerKeyStore();
+
+                        ret.setId(rangerKey.getId());
+                        ret.setAlias(rangerKey.getAlias());
+                        ret.setCreatedDate(rangerKey.getCreatedDate());
+                        ret.setEncoded(rangerKey.getEncoded());
+                        ret.setCipher(rangerKey.getCipher());
+                        ret.setBitLength(rangerKey.getBitLength());
+                        ret.setDescription(rangerKey.getDescription());
+                        ret.setVersion(rangerKey.getVersion());
+                        ret.setAttributes(rangerKey.getAttributes());
+                }
+
+                return ret;
+        }
+
         private InputStream generateKeyStoreFile(String keyValue) throws KeyStoreException, NoSuchAlgorithmException, CertificateException, IOException {
                 FileOutputStream stream = new FileOutputStream(new File(keyStoreFileName));
                 KeyStore ks;
@@ -0,0 +1,213 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.crypto.key.kms.server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.crypto.key.KeyProvider;
+import org.apache.hadoop.crypto.key.KeyProvider.KeyVersion;
+import org.apache.hadoop.crypto.key.KeyProviderCryptoExtension;
+import org.apache.hadoop.crypto.key.KeyProviderCryptoExtension.EncryptedKeyVersion;
+import org.apache.hadoop.crypto.key.UserProvider;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestEagerKeyGeneratorKeyProviderCryptoExtension {
+
+  private static final String KEY_NAME = "k1";
+
+  @Test
+  public void testDecryptWithReusedCipher() throws Exception {
+    Configuration              conf    = new Configuration();
+    KeyProvider                kp      = createKeyProvider(conf);
+    KeyProviderCryptoExtension plain   = KeyProviderCryptoExtension.createKeyProviderCryptoExtension(kp);
+    KeyProviderCryptoExtension eager   = new EagerKeyGeneratorKeyProviderCryptoExtension(conf, plain);
+    List<EncryptedKeyVersion>  edeks   = new ArrayList<>();
+
+    for (int i = 0; i < 20; i++) {
+      edeks.add(eager.generateEncryptedKey(KEY_NAME));
+    }
+
+    eager.rollNewVersion(KEY_NAME);
+
+    edeks.add(eager.generateEncryptedKey(KEY_NAME));
+
+    for (EncryptedKeyVersion edek : edeks) {
+      KeyVersion expected = plain.decryptEncryptedKey(edek);
+      KeyVersion actual   = eager.decryptEncryptedKey(edek);
+
+      Assertions.assertEquals(expected.getName(), actual.getName());
+      Assertions.assertEquals(KeyProviderCryptoExtension.EK, actual.getVersionName());
+      Assertions.assertArrayEquals(expected.getMaterial(), actual.getMaterial());
+    }
+  }
+
+  @Test
+  public void testAdaptiveLowWatermark() throws Exception {
+    AtomicInteger               generated = new AtomicInteger();
+    AdaptiveValueQueue<Integer> queue     = new AdaptiveValueQueue<>(64, 0.25f, 0.75f, true, 60 * 1000, 2,
+        (String keyName, Queue<Integer> keyQueue, int numValues) -> {
+          for (int i = 0; i < numValues; i++) {
+            keyQueue.add(generated.incrementAndGet());
+          }
+        });
+
+    try {
+      // first call finds the queue empty: the value is generated synchronously, and the watermark raised
+      Assertions.assertNotNull(queue.getNext(KEY_NAME));
+      Assertions.assertEquals(0.375f, queue.getLowWatermark(KEY_NAME), 0.001f);
+
+      waitForRefill(queue);
+
+      Assertions.assertEquals(64, queue.getSize(KEY_NAME));
+
+      // consume down to the watermark; the refill keeps up, hence the watermark decays
+      while (queue.getSize(KEY_NAME) > 24) {
+        queue.getNext(KEY_NAME);
+      }
+
+      waitForRefill(queue);
+
+      Assertions.assertTrue(queue.getLowWatermark(KEY_NAME) < 0.375f);
+      Assertions.assertTrue(queue.getLowWatermark(KEY_NAME) >= 0.25f);
+
+      // values generated before drain() are discarded
+      queue.drain(KEY_NAME);
+
+      Assertions.assertEquals(0, queue.getSize(KEY_NAME));
+    } finally {
+      queue.shutdown();
+    }
+  }
+
+  @Test
+  public void testNoRefillAfterFailedRefill() throws Exception {
+    AtomicInteger               refills = new AtomicInteger();
+    AdaptiveValueQueue<Integer> queue   = new AdaptiveValueQueue<>(64, 0.25f, 0.75f, true, 60 * 1000, 2,
+        (String keyName, Queue<Integer> keyQueue, int numValues) -> {
+          if (numValues == 1) { // synchronous fill, from getNext()
+            keyQueue.add(0);
+          } else {
+            refills.incrementAndGet();
+
+            throw new IOException("refill failed");
+          }
+        });
+
+    try {
+      Assertions.assertNotNull(queue.getNext(KEY_NAME));
+
+      waitForRefill(queue);
+
+      int failedRefills = refills.get();
+
+      Thread.sleep(100);
+
+      // the queue is still empty, but the failed refill is not resubmitted ...
+      Assertions.assertEquals(failedRefills, refills.get());
+      Assertions.assertEquals(0, queue.getSize(KEY_NAME));
+
+      // ... until the next caller
+      Assertions.assertNotNull(queue.getNext(KEY_NAME));
+
+      waitForRefill(queue);
+
+      Assertions.assertEquals(2 * failedRefills, refills.get());
+    } finally {
+      queue.shutdown();
+    }
+  }
+
+  /*
+   * decrypts concurrently through the reused per-thread ciphers; each key must match the one decrypted by the default
+   * CryptoExtension
+   */
+  @Test
+  public void testConcurrentDecryptWithReusedCipher() throws Exception {
+    Configuration              conf       = new Configuration();
+    KeyProvider                kp         = createKeyProvider(conf);
+    KeyProviderCryptoExtension plain      = KeyProviderCryptoExtension.createKeyProviderCryptoExtension(kp);
+    KeyProviderCryptoExtension eager      = new EagerKeyGeneratorKeyProviderCryptoExtension(conf, plain);
+    List<EncryptedKeyVersion>  edeks      = new ArrayList<>();
+    List<byte[]>               expected   = new ArrayList<>();
+    int                        numThreads = 4;
+    int                        numCalls   = 500;
+    ExecutorService            executor   = Executors.newFixedThreadPool(numThreads);
+
+    for (int i = 0; i < 50; i++) {
+      EncryptedKeyVersion edek = eager.generateEncryptedKey(KEY_NAME);
+
+      edeks.add(edek);
+      expected.add(plain.decryptEncryptedKey(edek).getMaterial());
+    }
+
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+
+      for (int t = 0; t < numThreads; t++) {
+        final int offset = t;
+
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < numCalls; i++) {
+            int index = (offset + i) % edeks.size();
+
+            Assertions.assertArrayEquals(expected.get(index), eager.decryptEncryptedKey(edeks.get(index)).getMaterial());
+          }
+
+          return null;
+        }));
+      }
+
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static KeyProvider createKeyProvider(Configuration conf) throws Exception {
+    KeyProvider ret = new UserProvider.Factory().createProvider(new URI("user:///"), conf);
+
+    KeyProvider.Options options = new KeyProvider.Options(conf);
+
+    options.setCipher("AES/CTR/NoPadding");
+    options.setBitLength(128);
+
+    ret.createKey(KEY_NAME, options);
+
+    return ret;
+  }
+
+  private static void waitForRefill(AdaptiveValueQueue<?> queue) throws InterruptedException {
+    for (int i = 0; i < 500 && queue.isRefillInProgress(KEY_NAME); i++) {
+      Thread.sleep(10);
+    }
+
+    Assertions.assertFalse(queue.isRefillInProgress(KEY_NAME));
+  }
+}
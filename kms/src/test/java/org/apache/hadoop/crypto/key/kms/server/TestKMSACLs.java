@@ -31,6 +31,7 @@
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TestKMSACLs {
 
@@ -176,6 +177,65 @@ public void testKeyAclReload() {
     Assertions.assertEquals(1, acls.defaultKeyAcls.size(), "Got unexpected sized acls:" + acls.defaultKeyAcls);
   }
 
+  @Test
+  public void testAccessDecisionCache() {
+    final Configuration conf = new Configuration(false);
+    conf.set(Type.CREATE.getAclConfigKey(), "user1");
+    conf.set(KEY_ACL + "testkey1.DECRYPT_EEK", "user1");
+    conf.set(DEFAULT_KEY_ACL_PREFIX + "DECRYPT_EEK", "");
+    final KMSACLs acls = new KMSACLs(conf);
+    final UserGroupInformation user1 = UserGroupInformation.createRemoteUser("user1");
+    final UserGroupInformation user2 = UserGroupInformation.createRemoteUser("user2");
+
+    Assertions.assertTrue(acls.hasAccess(Type.CREATE, user1, ipAddress));
+    Assertions.assertFalse(acls.hasAccess(Type.CREATE, user2, ipAddress));
+    Assertions.assertTrue(acls.hasAccessToKey("testkey1", user1, KeyOpType.DECRYPT_EEK));
+    Assertions.assertEquals(3, acls.decisionCache.size());
+
+    // served from the cache
+    Assertions.assertFalse(acls.hasAccess(Type.CREATE, user2, ipAddress));
+    Assertions.assertTrue(acls.hasAccessToKey("testkey1", user1, KeyOpType.DECRYPT_EEK));
+    Assertions.assertEquals(3, acls.decisionCache.size());
+
+    // decisions made with earlier ACLs must not be used after a reload
+    conf.set(KEY_ACL + "testkey1.DECRYPT_EEK", "user2");
+    acls.setKeyACLs(conf);
+    Assertions.assertTrue(acls.hasAccessToKey("testkey1", user2, KeyOpType.DECRYPT_EEK));
+    Assertions.assertEquals(1, acls.decisionCache.size());
+
+    // disabled cache
+    conf.setBoolean(ACL_DECISION_CACHE_ENABLE, false);
+    final KMSACLs uncachedAcls = new KMSACLs(conf);
+    Assertions.assertTrue(uncachedAcls.hasAccessToKey("testkey1", user2, KeyOpType.DECRYPT_EEK));
+    Assertions.assertEquals(0, uncachedAcls.decisionCache.size());
+  }
+
+  @Test
+  public void testAccessDecisionCacheVersion() {
+    final KMSAccessDecisionCache<Boolean> cache = new KMSAccessDecisionCache<>(new Configuration(false));
+    final UserGroupInformation user1 = UserGroupInformation.createRemoteUser("user1");
+    final AtomicInteger evalCount = new AtomicInteger();
+
+    Assertions.assertTrue(cache.getDecision(2, user1, KeyOpType.DECRYPT_EEK, "testkey1", () -> evalCount.incrementAndGet() > 0));
+    Assertions.assertTrue(cache.getDecision(2, user1, KeyOpType.DECRYPT_EEK, "testkey1", () -> evalCount.incrementAndGet() > 0));
+    Assertions.assertEquals(1, evalCount.get());
+
+    // a request made with an earlier version is evaluated, without replacing the decisions of the current version
+    Assertions.assertFalse(cache.getDecision(1, user1, KeyOpType.DECRYPT_EEK, "testkey1", () -> evalCount.incrementAndGet() < 0));
+    Assertions.assertEquals(2, evalCount.get());
+    Assertions.assertTrue(cache.getDecision(2, user1, KeyOpType.DECRYPT_EEK, "testkey1", () -> evalCount.incrementAndGet() > 0));
+    Assertions.assertEquals(2, evalCount.get());
+    Assertions.assertEquals(1, cache.size());
+
+    // a newer version discards the decisions of earlier versions
+    Assertions.assertFalse(cache.getDecision(3, user1, KeyOpType.DECRYPT_EEK, "testkey1", () -> evalCount.incrementAndGet() < 0));
+    Assertions.assertEquals(3, evalCount.get());
+    Assertions.assertTrue(cache.getDecision(2, user1, KeyOpType.DECRYPT_EEK, "testkey1", () -> evalCount.incrementAndGet() > 0));
+    Assertions.assertEquals(4, evalCount.get());
+    Assertions.assertFalse(cache.getDecision(3, user1, KeyOpType.DECRYPT_EEK, "testkey1", () -> evalCount.incrementAndGet() > 0));
+    Assertions.assertEquals(4, evalCount.get());
+  }
+
   private void assertDefaultKeyAcl(final KMSACLs acls, final KeyOpType op,
     final String... names) {
     final AccessControlList acl = acls.defaultKeyAcls.get(op);
@@ -22,6 +22,7 @@
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.crypto.key.kms.server.KMS.KMSOp;
 import org.apache.hadoop.security.UserGroupInformation;
@@ -69,7 +70,8 @@ public void cleanUp() {
     kmsAudit.shutdown();
   }
 
-  private String getAndResetLogOutput() {
+  private String getAndResetLogOutput() throws InterruptedException {
+    kmsAudit.waitForDispatchForTesting();
     capturedOut.flush();
     String logOutput = new String(memOut.toByteArray());
     memOut = new ByteArrayOutputStream();
@@ -170,6 +172,54 @@ public void testAuditLogFormat() throws Exception {
            + "UNAUTHENTICATED RemoteHost:remotehost Method:method URL:url ErrorMsg:'testmsg'"));
     }
 
+  @Test
+  public void testConcurrentAggregation() throws Exception {
+    final Configuration conf = new Configuration();
+    conf.set(KMSConfiguration.KMS_AUDIT_LOGGER_KEY, CountingAuditLogger.class.getName());
+    final KMSAudit audit = new KMSAudit(conf);
+    final int numThreads = 8;
+    final int numCalls = 10000;
+    final Thread[] threads = new Thread[numThreads];
+    try {
+      for (int i = 0; i < numThreads; i++) {
+        threads[i] = new Thread(() -> {
+          for (int j = 0; j < numCalls; j++) {
+            audit.ok(luser, KMSOp.DECRYPT_EEK, "k5", "testmsg");
+          }
+        });
+        threads[i].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      audit.evictCacheForTesting();
+      audit.waitForDispatchForTesting();
+      CountingAuditLogger logger = (CountingAuditLogger) ((List<?>) Whitebox
+          .getInternalState(audit, "auditLoggers")).get(0);
+      // the first access is logged right away, and again in the aggregate
+      Assertions.assertEquals(numThreads * numCalls + 1, logger.accessCount.get());
+    } finally {
+      audit.shutdown();
+    }
+  }
+
+  public static class CountingAuditLogger implements KMSAuditLogger {
+    private final AtomicLong accessCount = new AtomicLong();
+
+    @Override
+    public void cleanup() {
+    }
+
+    @Override
+    public void initialize(Configuration conf) {
+    }
+
+    @Override
+    public void logAuditEvent(OpStatus status, AuditEvent event) {
+      accessCount.addAndGet(event.getAccessCount().get());
+    }
+  }
+
   @SuppressWarnings("unchecked")
   @Test
   public void testInitAuditLoggers() throws Exception {
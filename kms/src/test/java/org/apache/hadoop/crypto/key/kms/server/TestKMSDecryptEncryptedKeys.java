@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.crypto.key.kms.server;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.crypto.key.KeyProvider;
+import org.apache.hadoop.crypto.key.KeyProvider.KeyVersion;
+import org.apache.hadoop.crypto.key.KeyProviderCryptoExtension;
+import org.apache.hadoop.crypto.key.KeyProviderCryptoExtension.EncryptedKeyVersion;
+import org.apache.hadoop.crypto.key.UserProvider;
+import org.apache.hadoop.crypto.key.kms.server.KeyAuthorizationKeyProvider.KeyACLs;
+import org.apache.hadoop.util.KMSUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests the decryption done by the batch endpoint KMS.decryptEncryptedKeys(), with the provider chain used by
+ * KMSWebApp: KeyAuthorizationKeyProvider over EagerKeyGeneratorKeyProviderCryptoExtension
+ */
+public class TestKMSDecryptEncryptedKeys {
+
+  private static final String KEY_NAME       = "k1";
+  private static final String OTHER_KEY_NAME = "k2";
+
+  @Test
+  @SuppressWarnings("rawtypes")
+  public void testDecryptEncryptedKeys() throws Exception {
+    Configuration              conf     = new Configuration();
+    KeyProvider                kp       = createKeyProvider(conf);
+    KeyProviderCryptoExtension plain    = KeyProviderCryptoExtension.createKeyProviderCryptoExtension(kp);
+    KeyProviderCryptoExtension provider = createKMSProvider(conf, plain);
+    List<EncryptedKeyVersion>  edeks    = new ArrayList<>();
+    List<Map>                  payload  = new ArrayList<>();
+
+    for (int i = 0; i < 5; i++) {
+      edeks.add(provider.generateEncryptedKey(KEY_NAME));
+    }
+
+    // keys encrypted with an earlier version of the key are decrypted as well
+    provider.rollNewVersion(KEY_NAME);
+
+    edeks.add(plain.generateEncryptedKey(KEY_NAME));
+
+    Assertions.assertNotEquals(edeks.get(0).getEncryptionKeyVersionName(), edeks.get(edeks.size() - 1).getEncryptionKeyVersionName());
+
+    for (EncryptedKeyVersion edek : edeks) {
+      payload.add(KMSUtil.toJSON(edek));
+    }
+
+    List decrypted = KMS.decryptEncryptedKeys(provider, KMS.parseEncryptedKeys(KEY_NAME, payload));
+
+    // decrypted keys are returned in the order of the payload
+    Assertions.assertEquals(edeks.size(), decrypted.size());
+
+    for (int i = 0; i < edeks.size(); i++) {
+      KeyVersion expected = plain.decryptEncryptedKey(edeks.get(i));
+      KeyVersion actual   = KMSUtil.parseJSONKeyVersion((Map) decrypted.get(i));
+
+      Assertions.assertEquals(KEY_NAME, actual.getName());
+      Assertions.assertEquals(KeyProviderCryptoExtension.EK, actual.getVersionName());
+      Assertions.assertArrayEquals(expected.getMaterial(), actual.getMaterial());
+    }
+
+    Assertions.assertTrue(KMS.decryptEncryptedKeys(provider, KMS.parseEncryptedKeys(KEY_NAME, Collections.emptyList())).isEmpty());
+  }
+
+  @Test
+  @SuppressWarnings("rawtypes")
+  public void testDecryptEncryptedKeyOfOtherKey() throws Exception {
+    Configuration              conf     = new Configuration();
+    KeyProvider                kp       = createKeyProvider(conf);
+    KeyProviderCryptoExtension provider = createKMSProvider(conf, KeyProviderCryptoExtension.createKeyProviderCryptoExtension(kp));
+    List<Map>                  payload  = new ArrayList<>();
+
+    payload.add(KMSUtil.toJSON(provider.generateEncryptedKey(KEY_NAME)));
+    payload.add(KMSUtil.toJSON(provider.generateEncryptedKey(OTHER_KEY_NAME)));
+
+    // the batch is authorized for KEY_NAME only: a key encrypted with a version of another key must not be decrypted
+    List<EncryptedKeyVersion> edeks = KMS.parseEncryptedKeys(KEY_NAME, payload);
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> KMS.decryptEncryptedKeys(provider, edeks));
+  }
+
+  private static KeyProviderCryptoExtension createKMSProvider(Configuration conf, KeyProviderCryptoExtension keyProvider) {
+    KeyACLs acls = Mockito.mock(KeyACLs.class);
+
+    Mockito.when(acls.isACLPresent(Mockito.anyString(), Mockito.any())).thenReturn(true);
+    Mockito.when(acls.hasAccessToKey(Mockito.anyString(), Mockito.any(), Mockito.any())).thenReturn(true);
+
+    return new KeyAuthorizationKeyProvider(new EagerKeyGeneratorKeyProviderCryptoExtension(conf, keyProvider), acls);
+  }
+
+  private static KeyProvider createKeyProvider(Configuration conf) throws Exception {
+    KeyProvider         ret     = new UserProvider.Factory().createProvider(new URI("user:///"), conf);
+    KeyProvider.Options options = new KeyProvider.Options(conf);
+
+    options.setCipher("AES/CTR/NoPadding");
+    options.setBitLength(128);
+
+    ret.createKey(KEY_NAME, options);
+    ret.createKey(OTHER_KEY_NAME, options);
+
+    return ret;
+  }
+}
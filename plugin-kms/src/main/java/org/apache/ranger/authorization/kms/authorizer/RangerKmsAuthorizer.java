@@ -23,13 +23,16 @@
 import java.net.UnknownHostException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.crypto.key.kms.server.KMSACLsType;
+import org.apache.hadoop.crypto.key.kms.server.KMSAccessDecisionCache;
 import org.apache.hadoop.crypto.key.kms.server.KMSConfiguration;
 import org.apache.hadoop.crypto.key.kms.server.KMSWebApp;
 import org.apache.hadoop.crypto.key.kms.server.KMS.KMSOp;
@@ -43,9 +46,17 @@
 import org.apache.hadoop.security.authorize.AuthorizationException;
 import org.apache.ranger.audit.provider.MiscUtil;
 import org.apache.ranger.plugin.audit.RangerDefaultAuditHandler;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.policyengine.PolicyEngine;
 import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
 import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
 import org.apache.ranger.plugin.policyengine.RangerAccessResult;
+import org.apache.ranger.plugin.policyengine.RangerAccessResultProcessor;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineImpl;
+import org.apache.ranger.plugin.policyengine.RangerPolicyRepository;
+import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
 import org.apache.ranger.plugin.service.RangerBasePlugin;
 import org.apache.ranger.plugin.util.RangerPerfTracer;
 import org.slf4j.Logger;
@@ -77,6 +88,8 @@ public class RangerKmsAuthorizer implements Runnable, KeyACLs {
 	  private long lastReload;
 
 	  private ScheduledExecutorService executorService;
+
+	  private final KMSAccessDecisionCache<RangerAccessResult> decisionCache;
 	
 	  public static final String ACCESS_TYPE_DECRYPT_EEK   	= "decrypteek";
 	  public static final String ACCESS_TYPE_GENERATE_EEK   = "generateeek";
@@ -122,6 +135,7 @@ public class RangerKmsAuthorizer implements Runnable, KeyACLs {
 		  if (conf == null) {
 		      conf = loadACLs();		
 		  }
+		  decisionCache = new KMSAccessDecisionCache<>(conf);
 		  authWithKerberos(conf);
 		  setKMSACLs(conf);	
 		  init(conf);
@@ -219,7 +233,7 @@ public boolean hasAccess(Type type, UserGroupInformation ugi, String clientIp) {
 		
 			if(plugin != null && ret) {				
 				RangerKMSAccessRequest request = new RangerKMSAccessRequest("", rangerAccessType, ugi, clientIp);
-				RangerAccessResult result = plugin.isAccessAllowed(request);
+				RangerAccessResult result = isAccessAllowed(decisionCache, plugin, request, ugi, "");
 				ret = result != null && result.getIsAllowed();
 			}
 			RangerPerfTracer.log(perf);
@@ -245,7 +259,7 @@ public boolean hasAccess(Type type, UserGroupInformation ugi, String keyName, St
 		
 			if(plugin != null && ret) {				
 				RangerKMSAccessRequest request = new RangerKMSAccessRequest(keyName, rangerAccessType, ugi, clientIp);
-				RangerAccessResult result = plugin.isAccessAllowed(request);
+				RangerAccessResult result = isAccessAllowed(decisionCache, plugin, request, ugi, keyName);
 				ret = result != null && result.getIsAllowed();
 			}
 			
@@ -325,6 +339,33 @@ private void setKMSACLs(Configuration conf) {
 			    blacklistedAcls = tempBlacklist;
 		}
 
+		/*
+		 * decisions are served from decisionCache while the plugin's policies, roles, tags and userstore remain unchanged.
+		 * A result served from the cache is passed to the result processor with the current request, to be audited as
+		 * the evaluated result would have been
+		 */
+		static RangerAccessResult isAccessAllowed(KMSAccessDecisionCache<RangerAccessResult> decisionCache, RangerKMSPlugin plugin, RangerKMSAccessRequest request, UserGroupInformation ugi, String keyName) {
+			RangerAccessResult[] evaluated = new RangerAccessResult[1];
+			RangerAccessResult   ret       = decisionCache.getDecision(plugin.getDecisionCacheVersion(), ugi, request.getAccessType(), keyName, () -> evaluated[0] = plugin.isAccessAllowed(request));
+
+			if (ret != null && ret != evaluated[0]) {
+				RangerAccessResult cached = ret;
+
+				ret = new RangerAccessResult(cached.getPolicyType(), cached.getServiceName(), cached.getServiceDef(), request);
+
+				ret.setAccessResultFrom(cached);
+				ret.setAuditResultFrom(cached);
+
+				RangerAccessResultProcessor resultProcessor = plugin.getResultProcessor();
+
+				if (resultProcessor != null) {
+					resultProcessor.processResult(ret);
+				}
+			}
+
+			return ret;
+		}
+
 		private static String getRangerAccessType(KMSACLsType.Type accessType) {
 			if (ACCESS_TYPE_MAP.containsKey(accessType)) {
 				return ACCESS_TYPE_MAP.get(accessType);
@@ -337,17 +378,95 @@ private static String getRangerAccessType(KMSACLsType.Type accessType) {
 
 	
 	class RangerKMSPlugin extends RangerBasePlugin {
+		private final AtomicLong authContextVersion  = new AtomicLong();
+		private volatile boolean isDecisionCacheable = false;
+
 		public RangerKMSPlugin() {
 			super("kms", "kms");
 		}
 
 		@Override
 		public void init() {
+			registerAuthContextEventListener(this::authContextChanged);
+
 			super.init();
 
 			RangerDefaultAuditHandler auditHandler = new RangerDefaultAuditHandler(getConfig());
 
 			super.setResultProcessor(auditHandler);
+
+			authContextChanged();
+		}
+
+		/*
+		 * returns the version to cache access decisions with; -1 when decisions depend on more than
+		 * the user, groups, access-type and key - i.e. when policies have conditions or validity schedules,
+		 * or when tag policies exist
+		 */
+		long getDecisionCacheVersion() {
+			return isDecisionCacheable ? authContextVersion.get() : -1;
+		}
+
+		private void authContextChanged() {
+			isDecisionCacheable = isDecisionCacheable(getPolicyEngine());
+
+			authContextVersion.incrementAndGet();
+		}
+
+		static boolean isDecisionCacheable(RangerPolicyEngine policyEngine) {
+			if (!(policyEngine instanceof RangerPolicyEngineImpl)) {
+				return false;
+			}
+
+			PolicyEngine engine = ((RangerPolicyEngineImpl) policyEngine).getPolicyEngine();
+
+			if (engine.getTagPolicyRepository() != null && !isEmpty(engine.getTagPolicyRepository().getPolicyEvaluators())) {
+				return false;
+			}
+
+			if (hasConditions(engine.getPolicyRepository())) {
+				return false;
+			}
+
+			for (RangerPolicyRepository zoneRepository : engine.getZonePolicyRepositories().values()) {
+				if (hasConditions(zoneRepository)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		private static boolean hasConditions(RangerPolicyRepository repository) {
+			if (repository != null && repository.getPolicyEvaluators() != null) {
+				for (RangerPolicyEvaluator evaluator : repository.getPolicyEvaluators()) {
+					RangerPolicy policy = evaluator.getPolicy();
+
+					if (!isEmpty(policy.getConditions()) || !isEmpty(policy.getValiditySchedules()) ||
+					    hasConditions(policy.getPolicyItems()) || hasConditions(policy.getDenyPolicyItems()) ||
+					    hasConditions(policy.getAllowExceptions()) || hasConditions(policy.getDenyExceptions())) {
+						return true;
+					}
+				}
+			}
+
+			return false;
+		}
+
+		private static boolean hasConditions(List<? extends RangerPolicyItem> policyItems) {
+			if (policyItems != null) {
+				for (RangerPolicyItem policyItem : policyItems) {
+					if (!isEmpty(policyItem.getConditions())) {
+						return true;
+					}
+				}
+			}
+
+			return false;
+		}
+
+		private static boolean isEmpty(List<?> list) {
+			return list == null || list.isEmpty();
 		}
 	}
 
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ranger.authorization.kms.authorizer;
+
+import java.io.InputStreamReader;
+import java.util.Collections;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.crypto.key.kms.server.KMSAccessDecisionCache;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.ranger.authorization.hadoop.config.RangerPluginConfig;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerValiditySchedule;
+import org.apache.ranger.plugin.policyengine.RangerAccessResult;
+import org.apache.ranger.plugin.policyengine.RangerAccessResultProcessor;
+import org.apache.ranger.plugin.policyengine.RangerPluginContext;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineImpl;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineOptions;
+import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Tests the caching of access decisions by RangerKmsAuthorizer, with the policies in kms-policies.json
+ */
+public class RangerKmsDecisionCacheTest {
+
+    @Test
+    public void testDecisionCacheable() throws Exception {
+        Assertions.assertTrue(RangerKMSPlugin.isDecisionCacheable(createPolicyEngine(loadPolicies())));
+    }
+
+    @Test
+    public void testNotCacheableWithPolicyConditions() throws Exception {
+        ServicePolicies policies = loadPolicies();
+
+        policies.getPolicies().get(0).setConditions(Collections.singletonList(new RangerPolicyItemCondition("ip-range", Collections.singletonList("10.0.0.0/8"))));
+
+        Assertions.assertFalse(RangerKMSPlugin.isDecisionCacheable(createPolicyEngine(policies)));
+    }
+
+    @Test
+    public void testNotCacheableWithPolicyItemConditions() throws Exception {
+        ServicePolicies policies = loadPolicies();
+
+        policies.getPolicies().get(1).getPolicyItems().get(0).setConditions(Collections.singletonList(new RangerPolicyItemCondition("ip-range", Collections.singletonList("10.0.0.0/8"))));
+
+        Assertions.assertFalse(RangerKMSPlugin.isDecisionCacheable(createPolicyEngine(policies)));
+    }
+
+    @Test
+    public void testNotCacheableWithValiditySchedules() throws Exception {
+        ServicePolicies policies = loadPolicies();
+
+        policies.getPolicies().get(0).setValiditySchedules(Collections.singletonList(new RangerValiditySchedule(null, "2099/12/31 00:00:00", null, null)));
+
+        Assertions.assertFalse(RangerKMSPlugin.isDecisionCacheable(createPolicyEngine(policies)));
+    }
+
+    @Test
+    public void testNotCacheableWithTagPolicies() throws Exception {
+        ServicePolicies             policies    = loadPolicies();
+        ServicePolicies.TagPolicies tagPolicies = new ServicePolicies.TagPolicies();
+        RangerPolicy                tagPolicy   = new RangerPolicy();
+
+        tagPolicy.setId(100L);
+        tagPolicy.setName("PII");
+        tagPolicy.setService("tagdev");
+        tagPolicy.setIsEnabled(true);
+        tagPolicy.setResources(Collections.singletonMap("tag", new RangerPolicy.RangerPolicyResource("PII")));
+        tagPolicy.setPolicyItems(Collections.singletonList(new RangerPolicy.RangerPolicyItem(Collections.singletonList(new RangerPolicy.RangerPolicyItemAccess("kms:decrypteek")), Collections.singletonList("bob"), null, null, null, false)));
+
+        tagPolicies.setServiceName("tagdev");
+        tagPolicies.setServiceId(2L);
+        tagPolicies.setPolicyVersion(1L);
+        tagPolicies.setServiceDef(EmbeddedServiceDefsUtil.instance().getEmbeddedServiceDef(EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_TAG_NAME));
+        tagPolicies.setPolicies(Collections.singletonList(tagPolicy));
+
+        policies.setTagPolicies(tagPolicies);
+
+        Assertions.assertFalse(RangerKMSPlugin.isDecisionCacheable(createPolicyEngine(policies)));
+    }
+
+    @Test
+    public void testCachedResultIsAudited() {
+        KMSAccessDecisionCache<RangerAccessResult> decisionCache   = new KMSAccessDecisionCache<>(new Configuration(false));
+        RangerKMSPlugin                            plugin          = Mockito.mock(RangerKMSPlugin.class);
+        RangerAccessResultProcessor                resultProcessor = Mockito.mock(RangerAccessResultProcessor.class);
+        UserGroupInformation                       ugi             = UserGroupInformation.createUserForTesting("bob", new String[] { "IT" });
+        RangerKMSAccessRequest                     request1        = new RangerKMSAccessRequest("newkey1", RangerKmsAuthorizer.ACCESS_TYPE_DECRYPT_EEK, ugi, "127.0.0.1");
+        RangerKMSAccessRequest                     request2        = new RangerKMSAccessRequest("newkey1", RangerKmsAuthorizer.ACCESS_TYPE_DECRYPT_EEK, ugi, "127.0.0.2");
+        RangerAccessResult                         evaluated       = new RangerAccessResult(0, "KMSTest", null, request1);
+
+        evaluated.setIsAccessDetermined(true);
+        evaluated.setIsAllowed(true);
+        evaluated.setPolicyId(51L);
+        evaluated.setIsAuditedDetermined(true);
+        evaluated.setIsAudited(true);
+
+        Mockito.when(plugin.getDecisionCacheVersion()).thenReturn(1L);
+        Mockito.when(plugin.isAccessAllowed(request1)).thenReturn(evaluated);
+        Mockito.when(plugin.getResultProcessor()).thenReturn(resultProcessor);
+
+        // evaluated, and audited, by the plugin
+        Assertions.assertSame(evaluated, RangerKmsAuthorizer.isAccessAllowed(decisionCache, plugin, request1, ugi, "newkey1"));
+        Mockito.verify(resultProcessor, Mockito.never()).processResult(Mockito.any(RangerAccessResult.class));
+
+        // served from the cache: the cached result is audited with the current request
+        RangerAccessResult cached = RangerKmsAuthorizer.isAccessAllowed(decisionCache, plugin, request2, ugi, "newkey1");
+
+        Mockito.verify(plugin, Mockito.times(1)).isAccessAllowed(Mockito.any(RangerKMSAccessRequest.class));
+
+        ArgumentCaptor<RangerAccessResult> audited = ArgumentCaptor.forClass(RangerAccessResult.class);
+
+        Mockito.verify(resultProcessor).processResult(audited.capture());
+
+        Assertions.assertSame(cached, audited.getValue());
+        Assertions.assertSame(request2, cached.getAccessRequest());
+        Assertions.assertTrue(cached.getIsAllowed());
+        Assertions.assertTrue(cached.getIsAudited());
+        Assertions.assertEquals(51L, cached.getPolicyId());
+    }
+
+    @Test
+    public void testCacheBypassed() {
+        KMSAccessDecisionCache<RangerAccessResult> decisionCache   = new KMSAccessDecisionCache<>(new Configuration(false));
+        RangerKMSPlugin                            plugin          = Mockito.mock(RangerKMSPlugin.class);
+        RangerAccessResultProcessor                resultProcessor = Mockito.mock(RangerAccessResultProcessor.class);
+        UserGroupInformation                       ugi             = UserGroupInformation.createUserForTesting("bob", new String[] { "IT" });
+        RangerKMSAccessRequest                     request         = new RangerKMSAccessRequest("newkey1", RangerKmsAuthorizer.ACCESS_TYPE_DECRYPT_EEK, ugi, "127.0.0.1");
+
+        Mockito.when(plugin.getDecisionCacheVersion()).thenReturn(-1L);
+        Mockito.when(plugin.isAccessAllowed(request)).thenAnswer(invocation -> new RangerAccessResult(0, "KMSTest", null, request));
+        Mockito.when(plugin.getResultProcessor()).thenReturn(resultProcessor);
+
+        RangerAccessResult result1 = RangerKmsAuthorizer.isAccessAllowed(decisionCache, plugin, request, ugi, "newkey1");
+        RangerAccessResult result2 = RangerKmsAuthorizer.isAccessAllowed(decisionCache, plugin, request, ugi, "newkey1");
+
+        // each request is evaluated, and audited, by the plugin
+        Assertions.assertNotSame(result1, result2);
+        Mockito.verify(plugin, Mockito.times(2)).isAccessAllowed(request);
+        Mockito.verify(resultProcessor, Mockito.never()).processResult(Mockito.any(RangerAccessResult.class));
+    }
+
+    private static ServicePolicies loadPolicies() throws Exception {
+        Gson gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+
+        try (InputStreamReader reader = new InputStreamReader(RangerKmsDecisionCacheTest.class.getResourceAsStream("/kms-policies.json"))) {
+            return gson.fromJson(reader, ServicePolicies.class);
+        }
+    }
+
+    private static RangerPolicyEngineImpl createPolicyEngine(ServicePolicies policies) {
+        RangerPluginContext pluginContext = new RangerPluginContext(new RangerPluginConfig("kms", policies.getServiceName(), "kms", "cl1", "on-prem", new RangerPolicyEngineOptions()));
+
+        return new RangerPolicyEngineImpl(policies, pluginContext, null);
+    }
+}
@@ -21,18 +21,67 @@
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.ranger.common.ContextUtil;
+import org.apache.ranger.common.MessageEnums;
 import org.apache.ranger.common.PropertiesUtil;
 import org.apache.ranger.common.RESTErrorUtil;
+import org.apache.ranger.common.SearchCriteria;
 import org.apache.ranger.common.SearchField;
 import org.apache.ranger.common.SortField;
 import org.apache.ranger.common.SortField.SORT_ORDER;
 import org.apache.ranger.db.RangerDaoManager;
 import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
+import org.apache.ranger.view.VXAccessAuditList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AccessAuditsService {
+    private static final Logger LOG = LoggerFactory.getLogger(AccessAuditsService.class);
+
+    /*
+     * opaque position returned as nextCursor of a page; pass "*" to start cursor based paging.
+     * With a cursor, startIndex is ignored and the audit store resumes after the last returned record
+     */
+    public static final String PARAM_CURSOR = "cursor";
+    public static final String CURSOR_START = "*";
+
+    /*
+     * client supplied id of a search; a running search can be cancelled with this id by the same user,
+     * and a new search with the same id cancels the one still running (e.g. when search filters change)
+     */
+    public static final String PARAM_SEARCH_ID = "searchId";
+
+    public static final String PROP_SEARCH_CACHE_TTL_MS      = "ranger.audit.search.cache.ttl.ms";
+    public static final String PROP_SEARCH_CACHE_MAX_ENTRIES = "ranger.audit.search.cache.max.entries";
+    public static final String PROP_SEARCH_TIMEOUT_MS        = "ranger.audit.search.timeout.ms";
+    public static final String PROP_SEARCH_THREADS           = "ranger.audit.search.threads";
+
+    private static final AtomicInteger          SEARCH_THREAD_COUNT    = new AtomicInteger();
+    private static final Map<String, Future<?>> RUNNING_SEARCHES       = new ConcurrentHashMap<>();
+    private static       ExecutorService        sharedSearchExecutor   = null;
+    private static       int                    searchExecutorRefCount = 0;
+
+    private long                            searchCacheTtlMs      = 0;
+    private int                             searchCacheMaxEntries = 0;
+    private long                            searchTimeoutMs       = 0;
+    private ExecutorService                 searchExecutor        = null;
+    private Map<String, CachedSearchResult> searchCache           = null;
+
     protected List<SortField> sortFields = new ArrayList<SortField>();
     protected List<SearchField> searchFields;
     @Autowired
@@ -117,6 +166,224 @@ public AccessAuditsService() {
         sortFields.add(new SortField("clientIP", "cliIP", false, SORT_ORDER.ASC));
     }
 
+    @PostConstruct
+    public void initSearch() {
+        searchCacheTtlMs      = PropertiesUtil.getLongProperty(PROP_SEARCH_CACHE_TTL_MS, 10 * 1000L);
+        searchCacheMaxEntries = PropertiesUtil.getIntProperty(PROP_SEARCH_CACHE_MAX_ENTRIES, 200);
+        searchTimeoutMs       = PropertiesUtil.getLongProperty(PROP_SEARCH_TIMEOUT_MS, 120 * 1000L);
+
+        int searchThreads = PropertiesUtil.getIntProperty(PROP_SEARCH_THREADS, 8);
+
+        LOG.info("{}={}", PROP_SEARCH_CACHE_TTL_MS, searchCacheTtlMs);
+        LOG.info("{}={}", PROP_SEARCH_CACHE_MAX_ENTRIES, searchCacheMaxEntries);
+        LOG.info("{}={}", PROP_SEARCH_TIMEOUT_MS, searchTimeoutMs);
+        LOG.info("{}={}", PROP_SEARCH_THREADS, searchThreads);
+
+        if (searchCacheTtlMs > 0 && searchCacheMaxEntries > 0) {
+            final int maxEntries = searchCacheMaxEntries;
+
+            searchCache = new LinkedHashMap<String, CachedSearchResult>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedSearchResult> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        if (searchTimeoutMs > 0 && searchThreads > 0) {
+            searchExecutor = acquireSearchExecutor(searchThreads);
+        }
+    }
+
+    @PreDestroy
+    public void destroySearch() {
+        if (searchExecutor != null) {
+            releaseSearchExecutor();
+
+            searchExecutor = null;
+        }
+    }
+
+    /*
+     * cancels the running search of the current user having the given id
+     * @return true if a running search was found and cancelled
+     */
+    public static boolean cancelSearch(String searchId) {
+        String    key    = getRunningSearchKey(searchId);
+        Future<?> future = key != null ? RUNNING_SEARCHES.remove(key) : null;
+
+        LOG.debug("cancelSearch(searchId={}): found={}", searchId, future != null);
+
+        return future != null && future.cancel(true);
+    }
+
+    /*
+     * all audit stores (Solr, Elasticsearch, CloudWatch) share one pool; only one of them is in use
+     * at a time, so a pool per store would just keep idle threads around
+     */
+    private static synchronized ExecutorService acquireSearchExecutor(int searchThreads) {
+        if (sharedSearchExecutor == null) {
+            sharedSearchExecutor = Executors.newFixedThreadPool(searchThreads, r -> {
+                Thread t = new Thread(r, "AuditSearch-" + SEARCH_THREAD_COUNT.incrementAndGet());
+
+                t.setDaemon(true);
+
+                return t;
+            });
+        }
+
+        searchExecutorRefCount++;
+
+        return sharedSearchExecutor;
+    }
+
+    private static synchronized void releaseSearchExecutor() {
+        if (searchExecutorRefCount > 0 && --searchExecutorRefCount == 0) {
+            sharedSearchExecutor.shutdownNow();
+
+            sharedSearchExecutor = null;
+        }
+    }
+
+    private static String getRunningSearchKey(String searchId) {
+        return StringUtils.isBlank(searchId) ? null : (ContextUtil.getCurrentUserLoginId() + ":" + searchId.trim());
+    }
+
+    /*
+     * Key of the search result cache: the filters, including the ones added to restrict the results
+     * to what the caller is permitted to see (zones, KMS exclusion), followed by paging and sort order
+     */
+    protected String getSearchKey(SearchCriteria searchCriteria) {
+        StringBuilder sb = new StringBuilder();
+
+        if (searchCriteria.getParamList() != null) {
+            for (Map.Entry<String, Object> entry : new TreeMap<>(searchCriteria.getParamList()).entrySet()) {
+                Object value = entry.getValue();
+
+                if (value == null || PARAM_SEARCH_ID.equals(entry.getKey())) {
+                    continue;
+                }
+
+                sb.append(entry.getKey()).append('=');
+
+                if (value instanceof Collection) {
+                    List<String> values = new ArrayList<>();
+
+                    for (Object val : (Collection<?>) value) {
+                        values.add(String.valueOf(val));
+                    }
+
+                    Collections.sort(values);
+
+                    sb.append(values);
+                } else if (value instanceof Date) {
+                    sb.append(((Date) value).getTime());
+                } else {
+                    sb.append(value);
+                }
+
+                sb.append('&');
+            }
+        }
+
+        sb.append("startIndex=").append(searchCriteria.getStartIndex())
+          .append("&maxRows=").append(searchCriteria.getMaxRows())
+          .append("&sortBy=").append(StringUtils.lowerCase(StringUtils.trimToNull(searchCriteria.getSortBy())))
+          .append("&sortType=").append(StringUtils.lowerCase(StringUtils.trimToNull(searchCriteria.getSortType())));
+
+        return sb.toString();
+    }
+
+    protected VXAccessAuditList getCachedSearchResult(String searchKey) {
+        VXAccessAuditList ret = null;
+
+        if (searchCache != null) {
+            synchronized (searchCache) {
+                CachedSearchResult cached = searchCache.get(searchKey);
+
+                if (cached != null) {
+                    if (cached.expiryTime > System.currentTimeMillis()) {
+                        ret = cached.result;
+                    } else {
+                        searchCache.remove(searchKey);
+                    }
+                }
+            }
+        }
+
+        LOG.debug("getCachedSearchResult(searchKey={}): found={}", searchKey, ret != null);
+
+        return ret;
+    }
+
+    protected void cacheSearchResult(String searchKey, VXAccessAuditList result) {
+        if (searchCache != null && result != null) {
+            synchronized (searchCache) {
+                searchCache.put(searchKey, new CachedSearchResult(result, System.currentTimeMillis() + searchCacheTtlMs));
+            }
+        }
+    }
+
+    /*
+     * runs the query against the audit store in a separate thread, so that a query running longer than
+     * the configured timeout, abandoned by an interrupted caller or cancelled with its search id is
+     * cancelled instead of holding the request thread and the audit store
+     */
+    protected <T> T executeSearch(SearchCriteria searchCriteria, Callable<T> query) throws Exception {
+        final T               ret;
+        final ExecutorService executor = searchExecutor;
+
+        if (executor == null) {
+            ret = query.call();
+        } else {
+            Object    searchId   = searchCriteria.getParamValue(PARAM_SEARCH_ID);
+            String    runningKey = searchId != null ? getRunningSearchKey(searchId.toString()) : null;
+            Future<T> future     = executor.submit(query);
+
+            if (runningKey != null) {
+                Future<?> superseded = RUNNING_SEARCHES.put(runningKey, future);
+
+                if (superseded != null) {
+                    superseded.cancel(true);
+                }
+            }
+
+            try {
+                ret = future.get(searchTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException excp) {
+                future.cancel(true);
+
+                LOG.warn("audit search did not complete in {}ms; cancelled", searchTimeoutMs);
+
+                throw restErrorUtil.createRESTException("Audit search timed out, please narrow down the search criteria", MessageEnums.ERROR_SYSTEM);
+            } catch (CancellationException excp) {
+                LOG.debug("audit search {} cancelled", searchId);
+
+                throw restErrorUtil.createRESTException("Audit search cancelled", MessageEnums.OPER_NOT_ALLOWED_FOR_STATE);
+            } catch (InterruptedException excp) {
+                future.cancel(true);
+
+                Thread.currentThread().interrupt();
+
+                throw excp;
+            } catch (ExecutionException excp) {
+                Throwable cause = excp.getCause();
+
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+
+                throw excp;
+            } finally {
+                if (runningKey != null) {
+                    RUNNING_SEARCHES.remove(runningKey, future);
+                }
+            }
+        }
+
+        return ret;
+    }
+
     protected void updateUserExclusion(Map<String, Object> paramList) {
         String val = (String) paramList.get("excludeServiceUser");
 
@@ -126,7 +393,9 @@ protected void updateUserExclusion(Map<String, Object> paramList) {
             if (CollectionUtils.isNotEmpty(excludeUsersList)) {
                 Object oldUserExclusions = paramList.get("-requestUser");
                 if (oldUserExclusions instanceof Collection && (!((Collection<?>)oldUserExclusions).isEmpty())) {
-                    excludeUsersList.addAll((Collection<String>)oldUserExclusions);
+                    for (Object oldUserExclusion : (Collection<?>) oldUserExclusions) {
+                        excludeUsersList.add(String.valueOf(oldUserExclusion));
+                    }
                     paramList.put("-requestUser", excludeUsersList);
                 } else {
                     paramList.put("-requestUser", excludeUsersList);
@@ -165,4 +434,14 @@ private List<String> getServiceUserList() {
         }
         return serviceUsersList;
     }
+
+    private static class CachedSearchResult {
+        final VXAccessAuditList result;
+        final long              expiryTime;
+
+        CachedSearchResult(VXAccessAuditList result, long expiryTime) {
+            this.result     = result;
+            this.expiryTime = expiryTime;
+        }
+    }
 }
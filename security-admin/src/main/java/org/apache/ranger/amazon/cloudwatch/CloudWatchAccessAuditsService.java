@@ -24,6 +24,8 @@
 import java.util.List;
 import java.util.Map;
 
+import javax.ws.rs.WebApplicationException;
+
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.audit.provider.MiscUtil;
@@ -75,7 +77,9 @@ public VXAccessAuditList searchXAccessAudits(SearchCriteria searchCriteria) {
 
 		List<FilteredLogEvent> result;
 		try {
-			result = cloudWatchUtil.searchResources(client, searchCriteria, searchFields, sortFields);
+			result = executeSearch(searchCriteria, () -> cloudWatchUtil.searchResources(client, searchCriteria, searchFields, sortFields));
+		} catch (WebApplicationException e) {
+			throw e;
 		} catch (Exception e) {
 			LOGGER.warn(String.format("CloudWatch query failed: %s", e.getMessage()));
 			throw restErrorUtil.createRESTException("Error querying search engine", MessageEnums.ERROR_SYSTEM);
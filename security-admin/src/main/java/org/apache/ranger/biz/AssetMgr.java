@@ -38,6 +38,7 @@
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.ranger.AccessAuditsService;
 import org.apache.ranger.amazon.cloudwatch.CloudWatchAccessAuditsService;
 import org.apache.ranger.authorization.hadoop.config.RangerAdminConfig;
 import org.apache.ranger.common.AppConstants;
@@ -771,6 +772,7 @@ private void createOrUpdatePluginInfo(final RangerPluginInfo pluginInfo, int ent
 
 		final boolean isTagVersionResetNeeded;
 		final Runnable commitWork;
+		boolean isDeleteWork = false;
 
 		if (httpCode == HttpServletResponse.SC_NOT_MODIFIED) {
 			if (!pluginActivityAuditLogNotModified) {
@@ -814,6 +816,7 @@ public void run() {
 						doDeleteXXPluginInfo(pluginInfo);
 					}
 				};
+				isDeleteWork = true;
 			} else {
 				commitWork = new Runnable() {
 					@Override
@@ -833,9 +836,13 @@ public void run() {
 			};
 		}
 
+		pluginInfoService.recordPluginActivity(pluginInfo);
+
 		if (commitWork != null) {
 			if (pluginActivityAuditCommitInline) {
 				transactionSynchronizationAdapter.executeOnTransactionCompletion(commitWork);
+			} else if (pluginInfoService.isBatchWriteEnabled()) {
+				pluginInfoService.scheduleWrite(pluginInfo, entityType, isDeleteWork, commitWork);
 			} else {
 				transactionSynchronizationAdapter.executeAsyncOnTransactionComplete(commitWork);
 			}
@@ -1219,6 +1226,10 @@ public VXAccessAuditList getAccessLogs(SearchCriteria searchCriteria) {
         }
     }
 
+	public boolean cancelAccessLogSearch(String searchId) {
+		return AccessAuditsService.cancelSearch(searchId);
+	}
+
 	public VXTrxLogList getTransactionReport(String transactionId) {
 		List<XXTrxLog> xTrxLogList = rangerDaoManager.getXXTrxLog()
 				.findByTransactionId(transactionId);
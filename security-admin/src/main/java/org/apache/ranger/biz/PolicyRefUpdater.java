@@ -19,8 +19,11 @@
 package org.apache.ranger.biz;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -54,6 +57,8 @@
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemDataMaskInfo;
 import org.apache.ranger.plugin.model.RangerRole;
 import org.apache.ranger.plugin.util.ServiceDefUtil;
+import org.apache.ranger.security.context.RangerAdminOpContext;
+import org.apache.ranger.security.context.RangerContextHolder;
 import org.apache.ranger.service.RangerAuditFields;
 import org.apache.ranger.service.XGroupService;
 import org.apache.ranger.view.VXGroup;
@@ -74,6 +79,9 @@ public class PolicyRefUpdater {
 
 	public enum PRINCIPAL_TYPE { USER, GROUP, ROLE }
 
+	private static final String REF_TYPE_RESOURCE_DEF    = "resourceDef";
+	private static final String REF_TYPE_ACCESS_TYPE_DEF = "accessTypeDef";
+
 	@Autowired
 	RangerDaoManager daoMgr;
 
@@ -152,17 +160,26 @@ public void createNewPolMappingForRefTable(RangerPolicy policy, XXPolicy xPolicy
 		}
 
 		List<XXPolicyRefResource> xPolResources = new ArrayList<>();
+		Map<String, Long>         resourceDefIds = getCachedServiceDefRefIds(REF_TYPE_RESOURCE_DEF, xServiceDef);
 		for (String resource : resourceNames) {
-			XXResourceDef xResDef = daoMgr.getXXResourceDef().findByNameAndPolicyId(resource, policy.getId());
+			Long resourceDefId;
+
+			if (resourceDefIds != null) {
+				resourceDefId = resourceDefIds.get(resource);
+			} else {
+				XXResourceDef xResDef = daoMgr.getXXResourceDef().findByNameAndPolicyId(resource, policy.getId());
+
+				resourceDefId = xResDef != null ? xResDef.getId() : null;
+			}
 
-			if (xResDef == null) {
+			if (resourceDefId == null) {
 				throw new Exception(resource + ": is not a valid resource-type. policy='"+  policy.getName() + "' service='"+ policy.getService() + "'");
 			}
 
 			XXPolicyRefResource xPolRes = rangerAuditFields.populateAuditFields(new XXPolicyRefResource(), xPolicy);
 
 			xPolRes.setPolicyId(policy.getId());
-			xPolRes.setResourceDefId(xResDef.getId());
+			xPolRes.setResourceDefId(resourceDefId);
 			xPolRes.setResourceName(resource);
 
 			xPolResources.add(xPolRes);
@@ -230,22 +247,31 @@ public void createNewPolMappingForRefTable(RangerPolicy policy, XXPolicy xPolicy
 			}
 		}
 
-		List<XXPolicyRefAccessType> xPolAccesses = new ArrayList<>();
+		List<XXPolicyRefAccessType> xPolAccesses   = new ArrayList<>();
+		Map<String, Long>           accessTypeDefIds = getCachedServiceDefRefIds(REF_TYPE_ACCESS_TYPE_DEF, xServiceDef);
 
 		// ignore built-in access-types while creating ref-table entries
 		accessTypes.removeAll(ServiceDefUtil.ACCESS_TYPE_MARKERS);
 
 		for (String accessType : accessTypes) {
-			XXAccessTypeDef xAccTypeDef = daoMgr.getXXAccessTypeDef().findByNameAndServiceId(accessType, xPolicy.getService());
+			Long accessTypeDefId;
+
+			if (accessTypeDefIds != null) {
+				accessTypeDefId = accessTypeDefIds.get(accessType);
+			} else {
+				XXAccessTypeDef xAccTypeDef = daoMgr.getXXAccessTypeDef().findByNameAndServiceId(accessType, xPolicy.getService());
+
+				accessTypeDefId = xAccTypeDef != null ? xAccTypeDef.getId() : null;
+			}
 
-			if (xAccTypeDef == null) {
+			if (accessTypeDefId == null) {
 				throw new Exception(accessType + ": is not a valid access-type. policy='" + policy.getName() + "' service='" + policy.getService() + "'");
 			}
 
 			XXPolicyRefAccessType xPolAccess = rangerAuditFields.populateAuditFields(new XXPolicyRefAccessType(), xPolicy);
 
 			xPolAccess.setPolicyId(policy.getId());
-			xPolAccess.setAccessDefId(xAccTypeDef.getId());
+			xPolAccess.setAccessDefId(accessTypeDefId);
 			xPolAccess.setAccessTypeName(accessType);
 
 			xPolAccesses.add(xPolAccess);
@@ -293,6 +319,128 @@ public void createNewPolMappingForRefTable(RangerPolicy policy, XXPolicy xPolicy
 		daoMgr.getXXPolicyRefDataMaskType().batchCreate(xxDataMaskInfos);
 	}
 
+	/*
+	 * Looks up IDs of users, groups and roles referenced in the given policies with one query per chunk of names, and
+	 * caches them in the operation context; createNewPolMappingForRefTable() then avoids a lookup per principal per policy.
+	 * Principals not found here are looked up (and created, if requested) as before.
+	 */
+	public int resolvePrincipalIds(Collection<RangerPolicy> policies) {
+		RangerAdminOpContext opContext  = RangerContextHolder.getOrCreateOpContext();
+		Set<String>          userNames  = new HashSet<>();
+		Set<String>          groupNames = new HashSet<>();
+		Set<String>          roleNames  = new HashSet<>();
+		int                  ret        = 0;
+
+		for (RangerPolicy policy : policies) {
+			for (List<? extends RangerPolicyItem> policyItems : getAllPolicyItems(policy)) {
+				if (CollectionUtils.isEmpty(policyItems)) {
+					continue;
+				}
+
+				for (RangerPolicyItem policyItem : policyItems) {
+					for (String user : policyItem.getUsers()) {
+						if (StringUtils.isNotBlank(user)) {
+							userNames.add(user.trim());
+						}
+					}
+
+					for (String group : policyItem.getGroups()) {
+						if (StringUtils.isNotBlank(group)) {
+							groupNames.add(group);
+						}
+					}
+
+					for (String role : policyItem.getRoles()) {
+						if (StringUtils.isNotBlank(role)) {
+							roleNames.add(role);
+						}
+					}
+				}
+			}
+		}
+
+		for (List<String> names : toChunks(userNames)) {
+			ret += cachePrincipalIds(opContext, PRINCIPAL_TYPE.USER, daoMgr.getXXUser().getIdsByNames(names));
+		}
+
+		for (List<String> names : toChunks(groupNames)) {
+			ret += cachePrincipalIds(opContext, PRINCIPAL_TYPE.GROUP, daoMgr.getXXGroup().getIdsByNames(names));
+		}
+
+		for (List<String> names : toChunks(roleNames)) {
+			ret += cachePrincipalIds(opContext, PRINCIPAL_TYPE.ROLE, daoMgr.getXXRole().getIdsByNames(names));
+		}
+
+		return ret;
+	}
+
+	private int cachePrincipalIds(RangerAdminOpContext opContext, PRINCIPAL_TYPE type, Map<String, Long> principalIds) {
+		for (Map.Entry<String, Long> entry : principalIds.entrySet()) {
+			opContext.setPrincipalId(type.name(), entry.getKey(), entry.getValue());
+		}
+
+		return principalIds.size();
+	}
+
+	private static List<List<String>> toChunks(Set<String> names) {
+		List<List<String>> ret   = new ArrayList<>();
+		List<String>       chunk = new ArrayList<>();
+
+		for (String name : names) {
+			chunk.add(name);
+
+			if (chunk.size() == RangerBizUtil.batchPersistSize) {
+				ret.add(chunk);
+
+				chunk = new ArrayList<>();
+			}
+		}
+
+		if (!chunk.isEmpty()) {
+			ret.add(chunk);
+		}
+
+		return ret;
+	}
+
+	/*
+	 * When enabled in the operation context, as during policy import, resource-def and access-type-def IDs of a
+	 * service-def are loaded with one query each and reused for every policy of that service-def.
+	 */
+	private Map<String, Long> getCachedServiceDefRefIds(String refType, XXServiceDef xServiceDef) {
+		RangerAdminOpContext opContext = RangerContextHolder.getOpContext();
+
+		if (opContext == null || !opContext.isCacheServiceDefRefIds() || xServiceDef == null) {
+			return null;
+		}
+
+		Map<String, Long> ret = opContext.getServiceDefRefIds(refType, xServiceDef.getId());
+
+		if (ret == null) {
+			ret = new HashMap<>();
+
+			if (REF_TYPE_RESOURCE_DEF.equals(refType)) {
+				for (XXResourceDef xResDef : daoMgr.getXXResourceDef().findByServiceDefId(xServiceDef.getId())) {
+					ret.put(xResDef.getName(), xResDef.getId());
+				}
+			} else {
+				for (XXAccessTypeDef xAccTypeDef : daoMgr.getXXAccessTypeDef().findByServiceDefId(xServiceDef.getId())) {
+					ret.put(xAccTypeDef.getName(), xAccTypeDef.getId());
+				}
+			}
+
+			opContext.setServiceDefRefIds(refType, xServiceDef.getId(), ret);
+		}
+
+		return ret;
+	}
+
+	private static Long getCachedPrincipalId(PRINCIPAL_TYPE type, String name) {
+		RangerAdminOpContext opContext = RangerContextHolder.getOpContext();
+
+		return opContext != null ? opContext.getPrincipalId(type.name(), type == PRINCIPAL_TYPE.USER ? name.trim() : name) : null;
+	}
+
 	private class PolicyPrincipalAssociator implements Runnable {
 		final PRINCIPAL_TYPE type;
 		final String    name;
@@ -321,7 +469,11 @@ boolean doAssociate(boolean isAdmin) {
 			}
 			final boolean ret;
 
-			Long id = createOrGetPrincipal(isAdmin);
+			Long id = getCachedPrincipalId(type, name);
+
+			if (id == null) {
+				id = createOrGetPrincipal(isAdmin);
+			}
 			if (id != null) {
 				// associate with policy
 				createPolicyAssociation(id, name);
@@ -509,16 +509,8 @@ public void setRoles(RangerRoles roles) {
 
     @Override
     public Set<String> getRolesFromUserAndGroups(String user, Set<String> groups) {
-        Set<String> ret;
-        try (RangerReadWriteLock.RangerLock readLock = policyEngine.getReadLock()) {
-            if (LOG.isDebugEnabled()) {
-                if (readLock.isLockingEnabled()) {
-                    LOG.debug("Acquired lock - " + readLock);
-                }
-            }
-            ret = policyEngine.getPluginContext().getAuthContext().getRolesForUserAndGroups(user, groups);
-        }
-        return ret;
+        // no lock needed: auth-context replaces its roles atomically on update
+        return policyEngine.getPluginContext().getAuthContext().getRolesForUserAndGroups(user, groups);
     }
 
     @Override
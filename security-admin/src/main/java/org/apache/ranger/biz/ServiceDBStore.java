@@ -19,10 +19,12 @@
 
 package org.apache.ranger.biz;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.net.UnknownHostException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -44,20 +46,18 @@
 import java.util.TreeSet;
 
 import javax.annotation.PostConstruct;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.ranger.audit.provider.MiscUtil;
 import org.apache.ranger.authorization.hadoop.config.RangerAdminConfig;
 import org.apache.ranger.authorization.utils.JsonUtils;
@@ -172,6 +172,8 @@
 import org.apache.ranger.plugin.util.ServicePolicies;
 import org.apache.ranger.rest.ServiceREST;
 import org.apache.ranger.rest.TagREST;
+import org.apache.ranger.security.context.RangerAdminOpContext;
+import org.apache.ranger.security.context.RangerContextHolder;
 import org.apache.ranger.service.RangerAuditFields;
 import org.apache.ranger.service.RangerDataHistService;
 import org.apache.ranger.service.RangerPolicyLabelsService;
@@ -219,6 +221,9 @@
 import com.google.common.base.Joiner;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 import static org.apache.ranger.db.XXGlobalStateDao.RANGER_GLOBAL_STATE_NAME_GDS;
 
@@ -368,6 +373,8 @@ public class ServiceDBStore extends AbstractServiceStore {
 	@Autowired
 	GUIDUtil guidUtil;
 
+	private static final int EXPORT_EXCEL_ROW_WINDOW = 100;
+
 	private static volatile boolean legacyServiceDefsInitDone = false;
 	private Boolean populateExistingBaseFields = false;
 
@@ -2530,7 +2537,7 @@ public void getPoliciesInExcel(List<RangerPolicy> policies, HttpServletResponse
 			LOG.debug("==> ServiceDBStore.getPoliciesInExcel()");
 		}
 		String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
-		String excelFileName = "Ranger_Policies_"+timeStamp+".xls";
+		String excelFileName = "Ranger_Policies_"+timeStamp+".xlsx";
 		writeExcel(policies, excelFileName, response);
 	}
 
@@ -2539,14 +2546,16 @@ public void getPoliciesInCSV(List<RangerPolicy> policies,
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> ServiceDBStore.getPoliciesInCSV()");
 		}
-		ServletOutputStream out = null;
+		Writer out = null;
 		String CSVFileName = null;
 		try {
 			String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
 			CSVFileName = "Ranger_Policies_" + timeStamp + ".csv";
-			out = response.getOutputStream();
-			StringBuilder sb = writeCSV(policies, CSVFileName, response);
-			IOUtils.write(sb.toString(), out, "UTF-8");
+			response.setContentType("text/csv");
+			response.setHeader("Content-Disposition", "attachment; filename=" + CSVFileName);
+			response.setStatus(HttpServletResponse.SC_OK);
+			out = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+			writeCSV(policies, out);
 		} catch (Exception e) {
 			LOG.error("Error while generating report file " + CSVFileName, e);
 			e.printStackTrace();
@@ -3682,6 +3691,27 @@ private void updatePolicyVersion(RangerService service, Integer policyDeltaType,
 		// so that next policy-download from plugins will get updated tag/gds policies
 		boolean isTagService = serviceDbObj.getType() == EmbeddedServiceDefsUtil.instance().getTagServiceDefId();
 
+		RangerAdminOpContext opContext = RangerContextHolder.getOpContext();
+
+		if (opContext != null && opContext.isDeferPolicyVersionUpdate()) {
+			// bulk operations update the version of each affected service once, in applyDeferredPolicyVersionUpdates()
+			List<Long> serviceIds = new ArrayList<>();
+
+			serviceIds.add(serviceId);
+
+			if (isTagService) {
+				serviceIds.addAll(serviceDao.findIdsByTagServiceId(serviceId));
+			}
+
+			opContext.getDeferredPolicyVersionServiceIds().addAll(serviceIds);
+
+			if (updateServiceInfoRoleVersion) {
+				opContext.getDeferredRoleVersionServiceIds().addAll(serviceIds);
+			}
+
+			return;
+		}
+
 		if (isTagService) {
 			List<Long> referringServiceIds = serviceDao.findIdsByTagServiceId(serviceId);
 
@@ -3707,6 +3737,38 @@ private void updatePolicyVersion(RangerService service, Integer policyDeltaType,
 		}
 	}
 
+	/*
+	 * Schedules one policy-version update for every service whose policies were changed while version updates were
+	 * deferred; the change is recorded as a service change, hence plugins will download all policies of the service
+	 */
+	public int applyDeferredPolicyVersionUpdates() {
+		RangerAdminOpContext opContext = RangerContextHolder.getOpContext();
+		int                  ret       = 0;
+
+		if (opContext != null) {
+			opContext.setDeferPolicyVersionUpdate(false);
+
+			for (Long serviceId : opContext.getDeferredPolicyVersionServiceIds()) {
+				transactionSynchronizationAdapter.executeOnTransactionCommit(new ServiceVersionUpdater(daoMgr, serviceId, VERSION_TYPE.POLICY_VERSION, null, RangerPolicyDelta.CHANGE_TYPE_SERVICE_CHANGE, null));
+
+				ret++;
+			}
+
+			for (Long serviceId : opContext.getDeferredRoleVersionServiceIds()) {
+				transactionSynchronizationAdapter.executeOnTransactionCommit(new ServiceVersionUpdater(daoMgr, serviceId, VERSION_TYPE.ROLE_VERSION, null, RangerPolicyDelta.CHANGE_TYPE_SERVICE_CHANGE, null));
+			}
+
+			opContext.getDeferredPolicyVersionServiceIds().clear();
+			opContext.getDeferredRoleVersionServiceIds().clear();
+		}
+
+		return ret;
+	}
+
+	public int resolvePolicyPrincipals(Collection<RangerPolicy> policies) {
+		return policyRefUpdater.resolvePrincipalIds(policies);
+	}
+
 	public static void persistVersionChange(ServiceVersionUpdater serviceVersionUpdater) {
 		RangerDaoManager daoMgr = serviceVersionUpdater.daoManager;
 		Long id = serviceVersionUpdater.serviceId;
@@ -4122,11 +4184,15 @@ private boolean isResourceInList(String resource, List<XXResourceDef> xResourceD
 		return false;
 	}
 
+	/*
+	 * rows are written to the response as the workbook is built; SXSSFWorkbook keeps only the last
+	 * EXPORT_EXCEL_ROW_WINDOW rows in memory and flushes the rest to a temporary file
+	 */
 	private void writeExcel(List<RangerPolicy> policies, String excelFileName, HttpServletResponse response) throws IOException {
-		Workbook workbook = null;
+		SXSSFWorkbook workbook = null;
 		OutputStream outStream = null;
 		try {
-			workbook = new HSSFWorkbook();
+			workbook = new SXSSFWorkbook(EXPORT_EXCEL_ROW_WINDOW);
 			Sheet sheet = workbook.createSheet();
 			createHeaderRow(sheet);
 			int rowCount = 0;
@@ -4198,16 +4264,12 @@ private void writeExcel(List<RangerPolicy> policies, String excelFileName, HttpS
 					}
 				}
 			}
-			ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
-			workbook.write(outByteStream);
-			byte[] outArray = outByteStream.toByteArray();
-			response.setContentType("application/ms-excel");
-			response.setContentLength(outArray.length);
+			response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
 			response.setHeader("Expires:", "0");
 			response.setHeader("Content-Disposition", "attachment; filename=" + excelFileName);
 			response.setStatus(HttpServletResponse.SC_OK);
 			outStream = response.getOutputStream();
-			outStream.write(outArray);
+			workbook.write(outStream);
 			outStream.flush();
 		} catch (IOException ex) {
 			LOG.error("Failed to create report file " + excelFileName, ex);
@@ -4218,20 +4280,24 @@ private void writeExcel(List<RangerPolicy> policies, String excelFileName, HttpS
 				outStream.close();
 			}
 			if (workbook != null) {
+				workbook.dispose();
 				workbook.close();
 			}
 		}
 	}
 
-	private StringBuilder writeCSV(List<RangerPolicy> policies, String cSVFileName, HttpServletResponse response) {
-		response.setContentType("text/csv");
-
+	/*
+	 * rows of each policy are written to the given writer before moving to the next policy
+	 */
+	private void writeCSV(List<RangerPolicy> policies, Writer out) throws IOException {
 		final String LINE_SEPARATOR = "\n";
 		final String FILE_HEADER = "ID|Name|Resources|Roles|Groups|Users|Accesses|Service Type|Status|Policy Type|Delegate Admin|isRecursive|"
 				+ "isExcludes|Service Name|Description|isAuditEnabled|Policy Conditions|Policy Condition Type|Masking Options|Row Filter Expr|Policy Label Name";
 		StringBuilder csvBuffer = new StringBuilder();
 		csvBuffer.append(FILE_HEADER);
 		csvBuffer.append(LINE_SEPARATOR);
+		out.write(csvBuffer.toString());
+		csvBuffer.setLength(0);
 		if (!CollectionUtils.isEmpty(policies)) {
 			Map<String, String> svcNameToSvcType = new HashMap<>();
 			for (RangerPolicy policy : policies) {
@@ -4289,11 +4355,10 @@ private StringBuilder writeCSV(List<RangerPolicy> policies, String cSVFileName,
 						writeCSVForPolicyItems(svcNameToSvcType, policy, policyItem, null, null, csvBuffer, POLICY_DENY_INCLUDE);
 					}
 				}
+				out.write(csvBuffer.toString());
+				csvBuffer.setLength(0);
 			}
 		}
-		response.setHeader("Content-Disposition", "attachment; filename=" + cSVFileName);
-		response.setStatus(HttpServletResponse.SC_OK);
-		return csvBuffer;
 	}
 
 	private void writeCSVForPolicyItems(Map<String, String> svcNameToSvcType, RangerPolicy policy, RangerPolicyItem policyItem, RangerDataMaskPolicyItem dataMaskPolicyItem, RangerRowFilterPolicyItem rowFilterPolicyItem, StringBuilder csvBuffer, String policyConditionType) {
@@ -4556,33 +4621,62 @@ private <T> void writeJson(List<T> objList, String jsonFileName,
 			HttpServletResponse response, JSON_FILE_NAME_TYPE type) throws JSONException, IOException {
 		response.setContentType("text/json");
 		response.setHeader("Content-Disposition", "attachment; filename="+ jsonFileName);
-		ServletOutputStream out = null;
+		JsonWriter out = null;
 
 		Gson gson = new GsonBuilder().setPrettyPrinting().create();
-		String json = null;
+		JsonObject envelope = null;
+		String listFieldName = null;
 
+		// the export envelope is serialized without the list, which is streamed in place of the empty list
 		switch(type) {
 		case POLICY :
 			RangerExportPolicyList rangerExportPolicyList = new RangerExportPolicyList();
-			rangerExportPolicyList.setGenericPolicies(objList);
 			rangerExportPolicyList.setMetaDataInfo(getMetaDataInfo());
-			json = gson.toJson(rangerExportPolicyList, RangerExportPolicyList.class);
+			envelope = gson.toJsonTree(rangerExportPolicyList, RangerExportPolicyList.class).getAsJsonObject();
+			listFieldName = "policies";
 			break;
 		case ROLE :
 			RangerExportRoleList rangerExportRoleList = new RangerExportRoleList();
-			rangerExportRoleList.setGenericRoleList(objList);
 			Map<String, Object> metaDataInfo = getMetaDataInfo();
-			metaDataInfo.put(EXPORT_COUNT,rangerExportRoleList.getListSize());
+			metaDataInfo.put(EXPORT_COUNT, objList != null ? objList.size() : 0);
 			rangerExportRoleList.setMetaDataInfo(metaDataInfo);
-			json = gson.toJson(rangerExportRoleList, RangerExportRoleList.class);
+			envelope = gson.toJsonTree(rangerExportRoleList, RangerExportRoleList.class).getAsJsonObject();
+			listFieldName = "roles";
 			break;
 		default :
 			throw restErrorUtil.createRESTException("Invalid type "+type);
 		}
 		try {
-			out = response.getOutputStream();
 			response.setStatus(HttpServletResponse.SC_OK);
-			IOUtils.write(json, out, "UTF-8");
+			out = gson.newJsonWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+			out.beginObject();
+			for (Map.Entry<String, JsonElement> entry : envelope.entrySet()) {
+				out.name(entry.getKey());
+				if (entry.getKey().equals(listFieldName)) {
+					out.beginArray();
+					if (objList != null) {
+						for (T obj : objList) {
+							if (obj == null) {
+								out.nullValue();
+							} else if (type == JSON_FILE_NAME_TYPE.POLICY) {
+								// exported policies don't carry createTime/updateTime; the policies are shared with the policy cache, hence not modified
+								JsonObject policyJson = gson.toJsonTree(obj, obj.getClass()).getAsJsonObject();
+
+								policyJson.remove("createTime");
+								policyJson.remove("updateTime");
+
+								gson.toJson(policyJson, out);
+							} else {
+								gson.toJson(obj, obj.getClass(), out);
+							}
+						}
+					}
+					out.endArray();
+				} else {
+					gson.toJson(entry.getValue(), out);
+				}
+			}
+			out.endObject();
 		} catch (Exception e) {
 			LOG.error("Error while exporting json file " + jsonFileName, e);
 		} finally {
@@ -0,0 +1,889 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.ranger.authorization.utils.JsonUtils;
+import org.apache.ranger.biz.ServiceDBStore.ServiceVersionUpdater;
+import org.apache.ranger.biz.ServiceDBStore.VERSION_TYPE;
+import org.apache.ranger.common.ContextUtil;
+import org.apache.ranger.common.DateUtil;
+import org.apache.ranger.common.GUIDUtil;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.entity.XXService;
+import org.apache.ranger.entity.XXServiceResource;
+import org.apache.ranger.entity.XXTag;
+import org.apache.ranger.entity.XXTagChangeLog;
+import org.apache.ranger.entity.XXTagDef;
+import org.apache.ranger.entity.XXTagResourceMap;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.model.RangerTagDef;
+import org.apache.ranger.plugin.store.RangerServiceResourceSignature;
+import org.apache.ranger.plugin.util.RangerPerfTracer;
+import org.apache.ranger.plugin.util.ServiceTags;
+import org.apache.ranger.service.RangerServiceResourceService;
+import org.apache.ranger.service.RangerTagService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Imports ServiceTags with a fixed number of queries per chunk of resources, instead of looking up and writing each
+ * service-resource, tag and tag-resource-map one at a time.
+ *
+ * Ids, guids and signatures of the existing resources of the service, and their tag-resource-maps, are loaded once
+ * and indexed by guid and by signature. Changes for a chunk of uploaded resources are planned in memory and written
+ * in a transaction of their own, using JDBC batch-writing; tags of unchanged resources are not written at all. The
+ * tag-version of the service is updated once, after all chunks are written - even when a later chunk fails, so that
+ * plugins see the changes already committed. When tag-deltas are enabled, a change-log record is written for each
+ * changed resource, all with this version.
+ *
+ * Only resource-private tags without guid are supported, which is how tagsync uploads tags; ServiceTags with shared
+ * tags or tag guids are imported by ServiceTagsProcessor. Existing resources are looked up within the service, while
+ * ServiceTagsProcessor looks up resource guids across all services; hence ServiceTags having a resource guid that
+ * belongs to another service are left to ServiceTagsProcessor as well, to get the same result.
+ */
+class ServiceTagsBulkImporter {
+	private static final Logger LOG      = LoggerFactory.getLogger(ServiceTagsBulkImporter.class);
+	private static final Logger PERF_LOG = RangerPerfTracer.getPerfLogger("db.ServiceTagsBulkImporter");
+
+	private final TagDBStore                          tagStore;
+	private final RangerDaoManager                    daoManager;
+	private final RangerTagService                    tagService;
+	private final GUIDUtil                            guidUtil;
+	private final TransactionTemplate                 txTemplate;
+	private final int                                 chunkSize;
+	private final Map<String, ExistingResource>       resourcesByGuid      = new HashMap<>();
+	private final Map<String, ExistingResource>       resourcesBySignature = new HashMap<>();
+	private final Map<Long, List<XXTagResourceMap>>   tagResourceMaps      = new HashMap<>(); // by resource id
+	private final Map<String, Long>                   tagDefIds            = new HashMap<>(); // by tag-def name
+	private final Set<Long>                           changedResourceIds   = new LinkedHashSet<>();
+	private       boolean                             hasOtherServiceGuids = false;
+	private       Long                                serviceId;
+	private       String                              serviceName;
+
+	ServiceTagsBulkImporter(TagDBStore tagStore, int chunkSize) {
+		this.tagStore   = tagStore;
+		this.daoManager = tagStore.daoManager;
+		this.tagService = tagStore.rangerTagService;
+		this.guidUtil   = tagStore.guidUtil;
+		this.txTemplate = new TransactionTemplate(tagStore.txManager);
+		this.chunkSize  = chunkSize > 0 ? chunkSize : 1000;
+
+		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	static boolean isSupported(ServiceTags serviceTags) {
+		String  op       = serviceTags.getOp();
+		boolean isDelete = StringUtils.equalsIgnoreCase(op, ServiceTags.OP_DELETE);
+
+		if (!isDelete && !StringUtils.equalsIgnoreCase(op, ServiceTags.OP_ADD_OR_UPDATE) && !StringUtils.equalsIgnoreCase(op, ServiceTags.OP_REPLACE)) {
+			return false;
+		}
+
+		if (isDelete && (MapUtils.isNotEmpty(serviceTags.getTags()) || MapUtils.isNotEmpty(serviceTags.getTagDefinitions()))) {
+			return false;
+		}
+
+		if (serviceTags.getTags() != null) {
+			for (RangerTag tag : serviceTags.getTags().values()) {
+				if (tag == null || !isResourcePrivateTag(tag) || StringUtils.isNotBlank(tag.getGuid())) {
+					return false;
+				}
+			}
+		}
+
+		if (serviceTags.getServiceResources() != null) {
+			for (RangerServiceResource resource : serviceTags.getServiceResources()) {
+				boolean hasResourceElements = MapUtils.isNotEmpty(resource.getResourceElements());
+
+				if (!hasResourceElements && (!isDelete || StringUtils.isBlank(resource.getGuid()))) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/*
+	 * returns false, without making any change, when a resource guid in serviceTags belongs to another service
+	 */
+	boolean importServiceTags(ServiceTags serviceTags) throws Exception {
+		RangerPerfTracer perf = null;
+
+		if (RangerPerfTracer.isPerfTraceEnabled(PERF_LOG)) {
+			perf = RangerPerfTracer.getPerfTracer(PERF_LOG, "ServiceTagsBulkImporter.importServiceTags(service=" + serviceTags.getServiceName() + ", op=" + serviceTags.getOp() + ")");
+		}
+
+		final boolean                     isDelete  = StringUtils.equalsIgnoreCase(serviceTags.getOp(), ServiceTags.OP_DELETE);
+		final boolean                     isReplace = StringUtils.equalsIgnoreCase(serviceTags.getOp(), ServiceTags.OP_REPLACE);
+		final List<RangerServiceResource> resources = serviceTags.getServiceResources() != null ? serviceTags.getServiceResources() : Collections.emptyList();
+		final boolean                     bulkMode  = RangerBizUtil.isBulkMode();
+		int                               deleted   = 0;
+
+		try {
+			runInTransaction(() -> load(serviceTags, isDelete));
+
+			if (hasOtherServiceGuids) {
+				LOG.info("ServiceTagsBulkImporter.importServiceTags(service={}): resource guids of other services found. Not imported in bulk", serviceTags.getServiceName());
+
+				return false;
+			}
+
+			RangerBizUtil.setBulkMode(true);
+
+			if (isReplace) {
+				List<ExistingResource> resourcesToDelete = getResourcesNotIn(resources);
+
+				for (int i = 0; i < resourcesToDelete.size(); i += chunkSize) {
+					List<ExistingResource> chunk = resourcesToDelete.subList(i, Math.min(resourcesToDelete.size(), i + chunkSize));
+
+					runInTransaction(() -> deleteResources(chunk));
+				}
+
+				deleted = resourcesToDelete.size();
+			}
+
+			for (int i = 0; i < resources.size(); i += chunkSize) {
+				List<RangerServiceResource> chunk = resources.subList(i, Math.min(resources.size(), i + chunkSize));
+
+				if (isDelete) {
+					runInTransaction(() -> deleteResources(findResources(chunk)));
+				} else {
+					runInTransaction(() -> addOrUpdateResources(chunk, serviceTags));
+				}
+			}
+		} catch (Exception excp) {
+			if (!changedResourceIds.isEmpty()) {
+				LOG.error("ServiceTagsBulkImporter.importServiceTags(service={}): failed after changing {} resources. Updating tag-version for these changes", serviceTags.getServiceName(), changedResourceIds.size(), excp);
+
+				try {
+					runInTransaction(this::updateTagVersion);
+				} catch (Exception versionUpdateExcp) {
+					LOG.error("ServiceTagsBulkImporter.importServiceTags(service={}): failed to update tag-version", serviceTags.getServiceName(), versionUpdateExcp);
+				}
+			}
+
+			throw excp;
+		} finally {
+			RangerBizUtil.setBulkMode(bulkMode);
+
+			RangerPerfTracer.logAlways(perf);
+		}
+
+		int changed = changedResourceIds.size();
+
+		if (changed > 0) {
+			runInTransaction(this::updateTagVersion);
+		}
+
+		LOG.info("ServiceTagsBulkImporter.importServiceTags(service={}, op={}): uploadedResources={}, replacedResourcesDeleted={}, changedResources={}", serviceTags.getServiceName(), serviceTags.getOp(), resources.size(), deleted, changed);
+
+		return true;
+	}
+
+	/*
+	 * returns true if a resource guid in serviceTags, not found in this service, belongs to a resource of another service
+	 */
+	private boolean hasOtherServiceGuids(ServiceTags serviceTags) {
+		List<String> guidsNotInService = new ArrayList<>();
+
+		if (serviceTags.getServiceResources() != null) {
+			for (RangerServiceResource resource : serviceTags.getServiceResources()) {
+				if (StringUtils.isNotBlank(resource.getGuid()) && !resourcesByGuid.containsKey(resource.getGuid())) {
+					guidsNotInService.add(resource.getGuid());
+				}
+			}
+		}
+
+		for (Object[] row : daoManager.getXXServiceResource().findGuidAndServiceIdByGuids(guidsNotInService)) {
+			if (!serviceId.equals(row[1])) {
+				LOG.debug("ServiceTagsBulkImporter.hasOtherServiceGuids(service={}): guid={} belongs to serviceId={}", serviceName, row[0], row[1]);
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/*
+	 * existing tags of a resource that match an incoming tag are retained; incoming tags without a match are to be
+	 * created, and the existing tags not retained are to be removed from the resource. Like ServiceTagsProcessor, tags
+	 * match when type and attributes are the same; tags having validity-periods never match, and are replaced.
+	 */
+	static TagChanges getTagChanges(List<RangerTag> existingTags, List<RangerTag> incomingTags) {
+		TagChanges     ret      = new TagChanges();
+		Set<RangerTag> retained = Collections.newSetFromMap(new IdentityHashMap<>()); // RangerTag.equals() ignores the id
+
+		for (RangerTag incomingTag : incomingTags) {
+			RangerTag matchingTag = findMatchingTag(incomingTag, existingTags);
+
+			if (matchingTag != null) {
+				if (retained.add(matchingTag)) {
+					ret.retained.add(matchingTag);
+				}
+			} else if (findMatchingTag(incomingTag, ret.toCreate) == null) {
+				ret.toCreate.add(incomingTag);
+			}
+		}
+
+		for (RangerTag existingTag : existingTags) {
+			if (!retained.contains(existingTag)) {
+				ret.toRemove.add(existingTag);
+			}
+		}
+
+		return ret;
+	}
+
+	private void load(ServiceTags serviceTags, boolean isDelete) throws Exception {
+		XXService service = daoManager.getXXService().findByName(serviceTags.getServiceName());
+
+		if (service == null) {
+			throw new Exception("service does not exist. name=" + serviceTags.getServiceName());
+		}
+
+		serviceId   = service.getId();
+		serviceName = service.getName();
+
+		for (Object[] row : daoManager.getXXServiceResource().findIdGuidAndSignatureByServiceId(serviceId)) {
+			addToIndex(new ExistingResource((Long) row[0], (String) row[1], (String) row[2]));
+		}
+
+		hasOtherServiceGuids = hasOtherServiceGuids(serviceTags);
+
+		if (hasOtherServiceGuids) {
+			return;
+		}
+
+		for (XXTagResourceMap tagResourceMap : daoManager.getXXTagResourceMap().findByServiceId(serviceId)) {
+			tagResourceMaps.computeIfAbsent(tagResourceMap.getResourceId(), k -> new ArrayList<>()).add(tagResourceMap);
+		}
+
+		if (!isDelete) {
+			loadTagDefs(serviceTags);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("ServiceTagsBulkImporter.load(service={}): resources={}, taggedResources={}, tagDefs={}", serviceTags.getServiceName(), resourcesByGuid.size(), tagResourceMaps.size(), tagDefIds.size());
+		}
+	}
+
+	private void loadTagDefs(ServiceTags serviceTags) throws Exception {
+		if (MapUtils.isNotEmpty(serviceTags.getTagDefinitions())) {
+			for (RangerTagDef tagDef : serviceTags.getTagDefinitions().values()) {
+				RangerTagDef existing = null;
+
+				if (StringUtils.isNotEmpty(tagDef.getGuid())) {
+					existing = tagStore.getTagDefByGuid(tagDef.getGuid());
+				}
+
+				if (existing == null && StringUtils.isNotEmpty(tagDef.getName())) {
+					existing = tagStore.getTagDefByName(tagDef.getName());
+				}
+
+				RangerTagDef tagDefInStore = existing != null ? existing : tagStore.createTagDef(tagDef);
+
+				tagDefIds.put(tagDefInStore.getName(), tagDefInStore.getId());
+			}
+		}
+
+		if (MapUtils.isNotEmpty(serviceTags.getTags())) {
+			for (RangerTag tag : serviceTags.getTags().values()) {
+				if (!tagDefIds.containsKey(tag.getType())) {
+					XXTagDef xTagDef = daoManager.getXXTagDef().findByName(tag.getType());
+
+					if (xTagDef == null) {
+						throw new Exception("No TagDefinition found with name :" + tag.getType());
+					}
+
+					tagDefIds.put(xTagDef.getName(), xTagDef.getId());
+				}
+			}
+		}
+	}
+
+	private void addOrUpdateResources(List<RangerServiceResource> resources, ServiceTags serviceTags) throws Exception {
+		Date                          now             = DateUtil.getUTCDate();
+		Long                          userId          = ContextUtil.getCurrentUserId();
+		Map<String, ResourceUpdate>   updatesByGuid   = new HashMap<>();
+		Map<String, ResourceUpdate>   updatesBySign   = new HashMap<>();
+		Set<ResourceUpdate>           updates         = new LinkedHashSet<>();
+		List<Long>                    idsToLoad       = new ArrayList<>();
+
+		// find the existing resource for each uploaded resource; when a chunk has the same resource more than once, the last one wins
+		for (RangerServiceResource resource : resources) {
+			if (StringUtils.isBlank(resource.getServiceName())) {
+				resource.setServiceName(serviceTags.getServiceName());
+			}
+
+			String         guid      = resource.getGuid();
+			String         signature = new RangerServiceResourceSignature(resource).getSignature();
+			List<Long>     tagIds    = serviceTags.getResourceToTagIds() != null ? serviceTags.getResourceToTagIds().get(resource.getId()) : null;
+			ResourceUpdate update    = StringUtils.isNotBlank(guid) ? updatesByGuid.get(guid) : null;
+
+			if (update == null) {
+				ExistingResource existing = StringUtils.isNotBlank(guid) ? resourcesByGuid.get(guid) : null;
+
+				if (existing == null) {
+					update = updatesBySign.get(signature);
+
+					if (update == null) {
+						existing = resourcesBySignature.get(signature);
+					}
+				}
+
+				if (update == null && existing != null) {
+					update = updatesByGuid.get(existing.guid);
+				}
+
+				if (update == null) {
+					update = new ResourceUpdate(existing);
+
+					if (existing != null) {
+						idsToLoad.add(existing.id);
+					}
+
+					updates.add(update);
+				}
+			}
+
+			update.resource  = resource;
+			update.signature = signature;
+			update.tagIds    = tagIds;
+
+			if (StringUtils.isNotBlank(update.getGuid())) {
+				updatesByGuid.put(update.getGuid(), update);
+			}
+
+			updatesBySign.put(signature, update);
+		}
+
+		Map<Long, XXServiceResource> xResources = new HashMap<>();
+
+		for (XXServiceResource xResource : daoManager.getXXServiceResource().findByIds(idsToLoad)) {
+			xResources.put(xResource.getId(), xResource);
+		}
+
+		List<Long> tagResourceMapIdsToDelete = new ArrayList<>();
+		List<Long> tagIdsToDelete            = new ArrayList<>();
+		List<Long> resourceIdsToDelete       = new ArrayList<>();
+
+		for (ResourceUpdate update : updates) {
+			RangerServiceResource resource          = update.resource;
+			boolean               isResourceDeleted = update.tagIds != null && update.tagIds.isEmpty();
+
+			if (update.existing == null) {
+				if (isResourceDeleted) { // no tags for a new resource: nothing to do
+					continue;
+				}
+
+				update.xResource = new XXServiceResource();
+
+				update.xResource.setGuid(StringUtils.isNotBlank(resource.getGuid()) ? resource.getGuid() : guidUtil.genGUID());
+				update.xResource.setServiceId(serviceId);
+				update.xResource.setResourceSignature(update.signature);
+				update.xResource.setServiceResourceElements(JsonUtils.mapToJson(resource.getResourceElements()));
+				update.xResource.setVersion(resource.getVersion());
+				update.xResource.setIsEnabled(resource.getIsEnabled() != null ? resource.getIsEnabled() : Boolean.TRUE);
+				update.xResource.setCreateTime(now);
+				update.xResource.setUpdateTime(now);
+				update.xResource.setAddedByUserId(userId);
+				update.xResource.setUpdatedByUserId(userId);
+
+				daoManager.getXXServiceResource().create(update.xResource);
+
+				update.isChanged = true;
+			} else {
+				update.xResource = xResources.get(update.existing.id);
+
+				if (update.xResource == null) {
+					throw new Exception("service-resource (id=" + update.existing.id + ", guid=" + update.existing.guid + ") not found");
+				}
+
+				if (isResourceDeleted) {
+					collectDeletes(update.existing, update.xResource, tagResourceMapIdsToDelete, tagIdsToDelete);
+
+					resourceIdsToDelete.add(update.existing.id);
+
+					update.isChanged = true;
+
+					continue;
+				}
+
+				if (!StringUtils.equals(update.signature, update.existing.signature)) {
+					update.xResource.setResourceSignature(update.signature);
+					update.xResource.setServiceResourceElements(JsonUtils.mapToJson(resource.getResourceElements()));
+					update.xResource.setUpdateTime(now);
+					update.xResource.setUpdatedByUserId(userId);
+
+					update.isChanged = true;
+				}
+			}
+
+			if (update.tagIds != null) {
+				List<RangerTag> incomingTags = new ArrayList<>(update.tagIds.size());
+
+				for (Long tagId : update.tagIds) {
+					RangerTag tag = serviceTags.getTags() != null ? serviceTags.getTags().get(tagId) : null;
+
+					if (tag == null) {
+						LOG.error("Tag (id=" + tagId + ") not found. Skipping addition of this tag for resource (id=" + resource.getId() + ")");
+					} else {
+						incomingTags.add(tag);
+					}
+				}
+
+				List<RangerTag> existingTags = update.existing != null ? getExistingTags(update.existing.id, update.xResource) : Collections.emptyList();
+				TagChanges      tagChanges   = getTagChanges(existingTags, incomingTags);
+
+				for (RangerTag tag : tagChanges.toRemove) {
+					collectDeletes(update.existing.id, tag, tagResourceMapIdsToDelete, tagIdsToDelete);
+				}
+
+				for (RangerTag tag : tagChanges.toCreate) {
+					XXTag xTag = toXXTag(tag, now, userId);
+
+					daoManager.getXXTag().create(xTag);
+
+					update.createdTags.add(xTag);
+				}
+
+				update.retainedTags  = tagChanges.retained;
+				update.isTagsChanged = !tagChanges.toRemove.isEmpty() || !tagChanges.toCreate.isEmpty();
+				update.isChanged     = update.isChanged || update.isTagsChanged;
+			}
+		}
+
+		// ids of the created resources and tags are needed for tag-resource-maps, and for tags stored with the resource
+		daoManager.getXXServiceResource().flush();
+
+		List<XXTagResourceMap> tagResourceMapsToCreate = new ArrayList<>();
+
+		for (ResourceUpdate update : updates) {
+			if (update.xResource == null || resourceIdsToDelete.contains(update.xResource.getId())) {
+				continue;
+			}
+
+			Long resourceId = update.xResource.getId();
+
+			for (XXTag xTag : update.createdTags) {
+				XXTagResourceMap tagResourceMap = new XXTagResourceMap();
+
+				tagResourceMap.setGuid(guidUtil.genGUID());
+				tagResourceMap.setTagId(xTag.getId());
+				tagResourceMap.setResourceId(resourceId);
+				tagResourceMap.setCreateTime(now);
+				tagResourceMap.setUpdateTime(now);
+				tagResourceMap.setAddedByUserId(userId);
+				tagResourceMap.setUpdatedByUserId(userId);
+
+				tagResourceMapsToCreate.add(tagResourceMap);
+			}
+
+			if (update.isTagsChanged) {
+				List<RangerTag> tags = new ArrayList<>(update.retainedTags);
+
+				for (XXTag xTag : update.createdTags) {
+					tags.add(tagService.getPopulatedViewObject(xTag));
+				}
+
+				update.xResource.setTags(JsonUtils.listToJson(tags));
+			}
+
+			if (update.existing != null && update.isChanged) {
+				daoManager.getXXServiceResource().update(update.xResource);
+			}
+		}
+
+		daoManager.getXXTagResourceMap().batchCreate(tagResourceMapsToCreate);
+
+		deleteByIds(tagResourceMapIdsToDelete, tagIdsToDelete, resourceIdsToDelete);
+
+		// update the index, for later chunks
+		for (XXTagResourceMap tagResourceMap : tagResourceMapsToCreate) {
+			tagResourceMaps.computeIfAbsent(tagResourceMap.getResourceId(), k -> new ArrayList<>()).add(tagResourceMap);
+		}
+
+		for (ResourceUpdate update : updates) {
+			if (update.existing != null) {
+				removeFromIndex(update.existing);
+			}
+
+			if (update.xResource != null) {
+				Long resourceId = update.xResource.getId();
+
+				if (resourceIdsToDelete.contains(resourceId)) {
+					tagResourceMaps.remove(resourceId);
+				} else {
+					addToIndex(new ExistingResource(resourceId, update.xResource.getGuid(), update.xResource.getResourceSignature()));
+				}
+
+				if (update.isChanged) {
+					changedResourceIds.add(resourceId);
+				}
+			}
+		}
+	}
+
+	private void deleteResources(List<ExistingResource> resources) {
+		if (resources.isEmpty()) {
+			return;
+		}
+
+		List<Long> resourceIds = new ArrayList<>(resources.size());
+
+		for (ExistingResource resource : resources) {
+			resourceIds.add(resource.id);
+		}
+
+		Map<Long, XXServiceResource> xResources = new HashMap<>();
+
+		for (XXServiceResource xResource : daoManager.getXXServiceResource().findByIds(resourceIds)) {
+			xResources.put(xResource.getId(), xResource);
+		}
+
+		List<Long> tagResourceMapIdsToDelete = new ArrayList<>();
+		List<Long> tagIdsToDelete            = new ArrayList<>();
+
+		for (ExistingResource resource : resources) {
+			collectDeletes(resource, xResources.get(resource.id), tagResourceMapIdsToDelete, tagIdsToDelete);
+		}
+
+		deleteByIds(tagResourceMapIdsToDelete, tagIdsToDelete, resourceIds);
+
+		for (ExistingResource resource : resources) {
+			removeFromIndex(resource);
+
+			tagResourceMaps.remove(resource.id);
+
+			changedResourceIds.add(resource.id);
+		}
+	}
+
+	private void updateTagVersion() {
+		Iterator<Long>        iter    = changedResourceIds.iterator();
+		ServiceVersionUpdater updater = new ServiceVersionUpdater(daoManager, serviceId, VERSION_TYPE.TAG_VERSION, ServiceTags.TagsChangeType.SERVICE_RESOURCE_UPDATE, iter.next(), null);
+
+		// updates the version, and adds the change-log record for the first resource
+		ServiceDBStore.persistVersionChange(updater);
+
+		if (TagDBStore.isSupportsTagDeltas() && iter.hasNext()) {
+			Date                 now        = new Date();
+			List<XXTagChangeLog> changeLogs = new ArrayList<>();
+
+			while (iter.hasNext()) {
+				XXTagChangeLog changeLog = new XXTagChangeLog();
+
+				changeLog.setCreateTime(now);
+				changeLog.setServiceId(serviceId);
+				changeLog.setChangeType(ServiceTags.TagsChangeType.SERVICE_RESOURCE_UPDATE.ordinal());
+				changeLog.setServiceTagsVersion(updater.version);
+				changeLog.setServiceResourceId(iter.next());
+
+				changeLogs.add(changeLog);
+			}
+
+			daoManager.getXXTagChangeLog().batchCreate(changeLogs);
+		}
+
+		LOG.info("ServiceTagsBulkImporter.updateTagVersion(serviceId={}): tagVersion={}, changedResources={}", serviceId, updater.version, changedResourceIds.size());
+
+		changedResourceIds.clear();
+	}
+
+	private List<ExistingResource> findResources(List<RangerServiceResource> resources) {
+		Map<Long, ExistingResource> ret = new LinkedHashMap<>();
+
+		for (RangerServiceResource resource : resources) {
+			ExistingResource existing = StringUtils.isNotBlank(resource.getGuid()) ? resourcesByGuid.get(resource.getGuid()) : null;
+
+			if (existing == null && MapUtils.isNotEmpty(resource.getResourceElements())) {
+				if (StringUtils.isBlank(resource.getServiceName())) {
+					resource.setServiceName(serviceName);
+				}
+
+				existing = resourcesBySignature.get(new RangerServiceResourceSignature(resource).getSignature());
+			}
+
+			if (existing != null) {
+				ret.put(existing.id, existing);
+			}
+		}
+
+		return new ArrayList<>(ret.values());
+	}
+
+	private List<ExistingResource> getResourcesNotIn(List<RangerServiceResource> resources) {
+		Set<String> uploadedGuids = new HashSet<>();
+
+		for (RangerServiceResource resource : resources) {
+			uploadedGuids.add(resource.getGuid());
+		}
+
+		List<ExistingResource> ret = new ArrayList<>();
+
+		for (ExistingResource resource : resourcesByGuid.values()) {
+			if (!uploadedGuids.contains(resource.guid)) {
+				ret.add(resource);
+			}
+		}
+
+		return ret;
+	}
+
+	/*
+	 * tags associated with the resource, as stored with the resource. Tags mapped to the resource, but missing in the
+	 * stored tags, are returned with only the id; these never match an incoming tag, and will only be unmapped
+	 */
+	private List<RangerTag> getExistingTags(Long resourceId, XXServiceResource xResource) {
+		List<XXTagResourceMap> mappings = tagResourceMaps.get(resourceId);
+
+		if (CollectionUtils.isEmpty(mappings)) {
+			return Collections.emptyList();
+		}
+
+		Map<Long, RangerTag> storedTags = new HashMap<>();
+
+		if (xResource != null && StringUtils.isNotEmpty(xResource.getTags())) {
+			List<RangerTag> tags = RangerTagDBRetriever.gsonBuilder.fromJson(xResource.getTags(), RangerServiceResourceService.duplicatedDataType);
+
+			if (tags != null) {
+				for (RangerTag tag : tags) {
+					storedTags.put(tag.getId(), tag);
+				}
+			}
+		}
+
+		Map<Long, RangerTag> ret = new LinkedHashMap<>();
+
+		for (XXTagResourceMap mapping : mappings) {
+			RangerTag tag = storedTags.get(mapping.getTagId());
+
+			if (tag == null) {
+				tag = new RangerTag();
+
+				tag.setId(mapping.getTagId());
+				tag.setOwner(RangerTag.OWNER_GLOBAL);
+			}
+
+			ret.put(tag.getId(), tag);
+		}
+
+		return new ArrayList<>(ret.values());
+	}
+
+	private void collectDeletes(ExistingResource resource, XXServiceResource xResource, List<Long> tagResourceMapIds, List<Long> tagIds) {
+		for (RangerTag tag : getExistingTags(resource.id, xResource)) {
+			collectDeletes(resource.id, tag, tagResourceMapIds, tagIds);
+		}
+	}
+
+	// like TagDBStore.deleteTagResourceMap(): the tag is deleted as well, if it is private to the resource
+	private void collectDeletes(Long resourceId, RangerTag tag, List<Long> tagResourceMapIds, List<Long> tagIds) {
+		List<XXTagResourceMap> mappings = tagResourceMaps.get(resourceId);
+
+		if (mappings != null) {
+			for (Iterator<XXTagResourceMap> iter = mappings.iterator(); iter.hasNext(); ) {
+				XXTagResourceMap mapping = iter.next();
+
+				if (mapping.getTagId().equals(tag.getId())) {
+					tagResourceMapIds.add(mapping.getId());
+
+					iter.remove();
+				}
+			}
+		}
+
+		if (isResourcePrivateTag(tag)) {
+			tagIds.add(tag.getId());
+		}
+	}
+
+	private void deleteByIds(List<Long> tagResourceMapIds, List<Long> tagIds, List<Long> resourceIds) {
+		if (tagResourceMapIds.isEmpty() && tagIds.isEmpty() && resourceIds.isEmpty()) {
+			return;
+		}
+
+		// bulk deletes are not ordered with pending inserts/updates by the persistence provider
+		daoManager.getXXTagResourceMap().flush();
+
+		daoManager.getXXTagResourceMap().deleteByIds(tagResourceMapIds);
+		daoManager.getXXTag().deleteByIds(tagIds);
+		daoManager.getXXServiceResource().deleteByIds(resourceIds);
+	}
+
+	private XXTag toXXTag(RangerTag tag, Date now, Long userId) throws Exception {
+		tag = tagStore.validateTag(tag);
+
+		Long tagDefId = tagDefIds.get(tag.getType());
+
+		if (tagDefId == null) {
+			throw new Exception("No TagDefinition found with name :" + tag.getType());
+		}
+
+		Map<String, Object> options         = tag.getOptions() != null ? new HashMap<>(tag.getOptions()) : new HashMap<>();
+		String              validityPeriods = JsonUtils.listToJson(tag.getValidityPeriods());
+
+		if (StringUtils.isNotBlank(validityPeriods)) {
+			options.put(RangerTag.OPTION_TAG_VALIDITY_PERIODS, validityPeriods);
+		} else {
+			options.remove(RangerTag.OPTION_TAG_VALIDITY_PERIODS);
+		}
+
+		XXTag ret = new XXTag();
+
+		ret.setGuid(guidUtil.genGUID());
+		ret.setType(tagDefId);
+		ret.setOwner(tag.getOwner());
+		ret.setOptions(JsonUtils.mapToJson(options));
+		ret.setTagAttrs(JsonUtils.mapToJson(tag.getAttributes()));
+		ret.setCreateTime(now);
+		ret.setUpdateTime(now);
+		ret.setAddedByUserId(userId);
+		ret.setUpdatedByUserId(userId);
+
+		return ret;
+	}
+
+	private void addToIndex(ExistingResource resource) {
+		resourcesByGuid.put(resource.guid, resource);
+
+		if (resource.signature != null) {
+			resourcesBySignature.put(resource.signature, resource);
+		}
+	}
+
+	private void removeFromIndex(ExistingResource resource) {
+		resourcesByGuid.remove(resource.guid, resource);
+
+		if (resource.signature != null) {
+			resourcesBySignature.remove(resource.signature, resource);
+		}
+	}
+
+	private void runInTransaction(Task task) throws Exception {
+		try {
+			txTemplate.execute(status -> {
+				try {
+					task.run();
+				} catch (Exception excp) {
+					throw new TaskFailedException(excp);
+				}
+
+				return null;
+			});
+		} catch (TaskFailedException excp) {
+			throw (Exception) excp.getCause();
+		}
+	}
+
+	private static RangerTag findMatchingTag(RangerTag incomingTag, List<RangerTag> tags) {
+		for (RangerTag tag : tags) {
+			if (isMatch(incomingTag, tag)) {
+				return tag;
+			}
+		}
+
+		return null;
+	}
+
+	private static boolean isMatch(RangerTag incomingTag, RangerTag existingTag) {
+		Map<String, String> incomingAttributes = incomingTag.getAttributes() != null ? incomingTag.getAttributes() : Collections.emptyMap();
+		Map<String, String> existingAttributes = existingTag.getAttributes() != null ? existingTag.getAttributes() : Collections.emptyMap();
+
+		return isResourcePrivateTag(existingTag) &&
+		       StringUtils.equals(incomingTag.getType(), existingTag.getType()) &&
+		       incomingAttributes.equals(existingAttributes) &&
+		       CollectionUtils.isEmpty(incomingTag.getValidityPeriods()) &&
+		       CollectionUtils.isEmpty(existingTag.getValidityPeriods());
+	}
+
+	private static boolean isResourcePrivateTag(RangerTag tag) {
+		return tag.getOwner() == null || tag.getOwner() == RangerTag.OWNER_SERVICERESOURCE;
+	}
+
+	static class TagChanges {
+		final List<RangerTag> retained = new ArrayList<>();
+		final List<RangerTag> toCreate = new ArrayList<>();
+		final List<RangerTag> toRemove = new ArrayList<>();
+	}
+
+	private static class ExistingResource {
+		final Long   id;
+		final String guid;
+		final String signature;
+
+		ExistingResource(Long id, String guid, String signature) {
+			this.id        = id;
+			this.guid      = guid;
+			this.signature = signature;
+		}
+	}
+
+	private static class ResourceUpdate {
+		final ExistingResource      existing;
+		final List<XXTag>           createdTags  = new ArrayList<>();
+		RangerServiceResource       resource;
+		String                      signature;
+		List<Long>                  tagIds;       // null when tags of the resource are not in the upload
+		XXServiceResource           xResource;
+		List<RangerTag>             retainedTags = Collections.emptyList();
+		boolean                     isTagsChanged;
+		boolean                     isChanged;
+
+		ResourceUpdate(ExistingResource existing) {
+			this.existing = existing;
+		}
+
+		String getGuid() {
+			return existing != null ? existing.guid : resource.getGuid();
+		}
+	}
+
+	private interface Task {
+		void run() throws Exception;
+	}
+
+	private static class TaskFailedException extends RuntimeException {
+		TaskFailedException(Exception cause) {
+			super(cause);
+		}
+	}
+}
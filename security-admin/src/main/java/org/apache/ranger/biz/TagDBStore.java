@@ -31,6 +31,7 @@
 import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.authorization.hadoop.config.RangerAdminConfig;
 import org.apache.ranger.authorization.utils.JsonUtils;
+import org.apache.ranger.common.GUIDUtil;
 import org.apache.ranger.common.MessageEnums;
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.RangerAdminTagEnricher;
@@ -106,6 +107,9 @@ public class TagDBStore extends AbstractTagStore {
 	@Qualifier(value = "transactionManager")
 	PlatformTransactionManager txManager;
 
+	@Autowired
+	GUIDUtil guidUtil;
+
 	@Autowired
 	RESTErrorUtil errorUtil;
 
@@ -114,10 +118,16 @@ public class TagDBStore extends AbstractTagStore {
 
 	RangerAdminConfig config;
 
+	private boolean isBulkImportEnabled = false;
+	private int     bulkImportChunkSize  = 1000;
+
 	@PostConstruct
 	public void initStore() {
 		config = RangerAdminConfig.getInstance();
 
+		isBulkImportEnabled = config.getBoolean("ranger.admin.tag.import.bulk.enabled", false);
+		bulkImportChunkSize = config.getInt("ranger.admin.tag.import.bulk.chunk.size", 1000);
+
 		RangerAdminTagEnricher.setTagStore(this);
 		RangerAdminTagEnricher.setDaoManager(daoManager);
 	}
@@ -1134,7 +1144,22 @@ public void deleteAllTagObjectsForService(String serviceName) throws Exception {
 		}
 	}
 
-	private RangerTag validateTag(RangerTag tag) throws Exception {
+	/*
+	 * ServiceTags having only resource-private tags, as uploaded by tagsync, can be imported in chunks by ServiceTagsBulkImporter.
+	 * Disabled by default; enable with ranger.admin.tag.import.bulk.enabled=true
+	 */
+	public boolean isBulkImportSupported(ServiceTags serviceTags) {
+		return isBulkImportEnabled && serviceTags != null && ServiceTagsBulkImporter.isSupported(serviceTags);
+	}
+
+	/*
+	 * returns false, without making any change, if the ServiceTags are to be imported by ServiceTagsProcessor instead
+	 */
+	public boolean bulkImportServiceTags(ServiceTags serviceTags) throws Exception {
+		return new ServiceTagsBulkImporter(this, bulkImportChunkSize).importServiceTags(serviceTags);
+	}
+
+	RangerTag validateTag(RangerTag tag) throws Exception {
 		List<RangerValiditySchedule> validityPeriods = tag.getValidityPeriods();
 
 		if (CollectionUtils.isNotEmpty(validityPeriods)) {
@@ -27,6 +27,7 @@
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.Query;
 import javax.servlet.http.HttpServletResponse;
@@ -50,6 +51,7 @@
 import org.apache.ranger.common.UserSessionBase;
 import org.apache.ranger.db.RangerDaoManager;
 import org.apache.ranger.entity.XXGroupPermission;
+import org.apache.ranger.entity.XXModuleDef;
 import org.apache.ranger.entity.XXPortalUser;
 import org.apache.ranger.entity.XXPortalUserRole;
 import org.apache.ranger.entity.XXTrxLog;
@@ -583,6 +585,66 @@ public XXPortalUser mapVXPortalUserToXXPortalUser(VXPortalUser userProfile) {
 	 */
 	public VXPortalUser mapXXPortalUserToVXPortalUser(XXPortalUser user,
 			Collection<String> userRoleList) {
+		return mapXXPortalUserToVXPortalUser(user, userRoleList, null, null, null);
+	}
+
+	/**
+	 * Maps the given users to profiles, as mapXXPortalUserToVXPortalUser() does; roles, permissions and group
+	 * permissions of all the users are looked up with one query each, instead of per user.
+	 *
+	 * @param users
+	 * @return profiles by user-id; users for which no profile is returned are not in the map
+	 */
+	public Map<Long, VXPortalUser> mapXXPortalUsersToVXPortalUsers(Collection<XXPortalUser> users) {
+		Map<Long, VXPortalUser> ret = new HashMap<>();
+
+		if (users == null || users.isEmpty() || ContextUtil.getCurrentUserSession() == null) {
+			return ret;
+		}
+
+		List<Long> userIds = new ArrayList<>(users.size());
+
+		for (XXPortalUser user : users) {
+			userIds.add(user.getId());
+		}
+
+		Map<Long, List<String>>            userRoles        = getRolesForUsers(userIds);
+		Map<Long, List<XXUserPermission>>  userPermissions  = new HashMap<>();
+		Map<Long, List<XXGroupPermission>> groupPermissions = new HashMap<>();
+		Map<Long, String>                  moduleNames      = new HashMap<>();
+
+		for (XXUserPermission xUserPermission : daoManager.getXXUserPermission().findByUserPermissionIdsAndIsAllowed(userIds)) {
+			userPermissions.computeIfAbsent(xUserPermission.getUserId(), k -> new ArrayList<>()).add(xUserPermission);
+		}
+
+		for (Object[] row : daoManager.getXXGroupPermission().findByVXPortalUserIds(userIds)) {
+			groupPermissions.computeIfAbsent((Long) row[0], k -> new ArrayList<>()).add((XXGroupPermission) row[1]);
+		}
+
+		for (XXModuleDef xModuleDef : daoManager.getXXModuleDef().getAll()) {
+			moduleNames.put(xModuleDef.getId(), xModuleDef.getModule());
+		}
+
+		for (XXPortalUser user : users) {
+			List<String>            roles                = userRoles.get(user.getId());
+			List<XXUserPermission>  permissions          = userPermissions.get(user.getId());
+			List<XXGroupPermission> userGroupPermissions = groupPermissions.get(user.getId());
+			VXPortalUser            userProfile          = mapXXPortalUserToVXPortalUser(user,
+					roles != null ? roles : new ArrayList<>(),
+					permissions != null ? permissions : new ArrayList<>(),
+					userGroupPermissions != null ? userGroupPermissions : new ArrayList<>(),
+					moduleNames);
+
+			if (userProfile != null) {
+				ret.put(user.getId(), userProfile);
+			}
+		}
+
+		return ret;
+	}
+
+	private VXPortalUser mapXXPortalUserToVXPortalUser(XXPortalUser user, Collection<String> userRoleList, List<XXUserPermission> xUserPermissions,
+	                                                   List<XXGroupPermission> xxGroupPermissions, Map<Long, String> moduleNames) {
 		if (user == null) {
 			return null;
 		}
@@ -592,7 +654,7 @@ public VXPortalUser mapXXPortalUserToVXPortalUser(XXPortalUser user,
 		}
 
 		VXPortalUser userProfile = new VXPortalUser();
-		gjUserToUserProfile(user, userProfile);
+		gjUserToUserProfile(user, userProfile, userRoleList, xUserPermissions, xxGroupPermissions, moduleNames);
 		if (sess.isUserAdmin() || sess.isKeyAdmin()
 				|| sess.getXXPortalUser().getId().equals(user.getId())) {
 			if (userRoleList == null) {
@@ -612,6 +674,14 @@ public VXPortalUser mapXXPortalUserToVXPortalUser(XXPortalUser user,
 	}
 
 	protected void gjUserToUserProfile(XXPortalUser user, VXPortalUser userProfile) {
+		gjUserToUserProfile(user, userProfile, null, null, null, null);
+	}
+
+	/*
+	 * roles, permissions, group permissions and module names are looked up in the database when not given
+	 */
+	private void gjUserToUserProfile(XXPortalUser user, VXPortalUser userProfile, Collection<String> userRoleList, List<XXUserPermission> xUserPermissions,
+	                                 List<XXGroupPermission> xxGroupPermissions, Map<Long, String> moduleNames) {
 		UserSessionBase sess = ContextUtil.getCurrentUserSession();
 		if (sess == null) {
 			return;
@@ -632,37 +702,41 @@ protected void gjUserToUserProfile(XXPortalUser user, VXPortalUser userProfile)
 
 			userProfile.setUserSource(sess.getAuthProvider());
 
-			List<XXPortalUserRole> gjUserRoleList = daoManager
-					.getXXPortalUserRole().findByParentId(user.getId());
+			if (userRoleList != null) {
+				userProfile.getUserRoleList().addAll(userRoleList);
+			} else {
+				List<XXPortalUserRole> gjUserRoleList = daoManager
+						.getXXPortalUserRole().findByParentId(user.getId());
 
-			for (XXPortalUserRole gjUserRole : gjUserRoleList) {
-				userProfile.getUserRoleList().add(gjUserRole.getUserRole());
+				for (XXPortalUserRole gjUserRole : gjUserRoleList) {
+					userProfile.getUserRoleList().add(gjUserRole.getUserRole());
+				}
 			}
 
 			userProfile.setId(user.getId());
-			List<XXUserPermission> xUserPermissions = daoManager
-					.getXXUserPermission().findByUserPermissionIdAndIsAllowed(
-							userProfile.getId());
-			List<XXGroupPermission> xxGroupPermissions = daoManager
-					.getXXGroupPermission().findbyVXPortalUserId(
-							userProfile.getId());
+			if (xUserPermissions == null) {
+				xUserPermissions = daoManager
+						.getXXUserPermission().findByUserPermissionIdAndIsAllowed(
+								userProfile.getId());
+			}
+			if (xxGroupPermissions == null) {
+				xxGroupPermissions = daoManager
+						.getXXGroupPermission().findbyVXPortalUserId(
+								userProfile.getId());
+			}
 
 			List<VXGroupPermission> groupPermissions = new ArrayList<VXGroupPermission>();
 			List<VXUserPermission> vxUserPermissions = new ArrayList<VXUserPermission>();
 			for (XXGroupPermission xxGroupPermission : xxGroupPermissions) {
 				VXGroupPermission groupPermission = xGroupPermissionService
 						.populateViewBean(xxGroupPermission);
-				groupPermission.setModuleName(daoManager.getXXModuleDef()
-						.findByModuleId(groupPermission.getModuleId())
-						.getModule());
+				groupPermission.setModuleName(getModuleName(groupPermission.getModuleId(), moduleNames));
 				groupPermissions.add(groupPermission);
 			}
 			for (XXUserPermission xUserPermission : xUserPermissions) {
 				VXUserPermission vXUserPermission = xUserPermissionService
 						.populateViewBean(xUserPermission);
-				vXUserPermission.setModuleName(daoManager.getXXModuleDef()
-						.findByModuleId(vXUserPermission.getModuleId())
-						.getModule());
+				vXUserPermission.setModuleName(getModuleName(vXUserPermission.getModuleId(), moduleNames));
 				vxUserPermissions.add(vXUserPermission);
 			}
 			userProfile.setGroupPermissions(groupPermissions);
@@ -674,6 +748,10 @@ protected void gjUserToUserProfile(XXPortalUser user, VXPortalUser userProfile)
 
 	}
 
+	private String getModuleName(Long moduleId, Map<Long, String> moduleNames) {
+		return moduleNames != null ? moduleNames.get(moduleId) : daoManager.getXXModuleDef().findByModuleId(moduleId).getModule();
+	}
+
 	/**
 	 * Translates XXPortalUser to VUserProfile. This method should be called in
 	 * the same transaction in which the XXPortalUser was retrieved from the
@@ -710,6 +788,22 @@ public Collection<String> getRolesForUser(XXPortalUser user) {
 		return roleList;
 	}
 
+	/**
+	 * Looks up the roles of the given users with one query; users without roles are not in the returned map.
+	 *
+	 * @param userIds
+	 * @return roles by user-id
+	 */
+	public Map<Long, List<String>> getRolesForUsers(List<Long> userIds) {
+		Map<Long, List<String>> ret = new HashMap<>();
+
+		for (XXPortalUserRole role : daoManager.getXXPortalUserRole().findByUserIds(userIds)) {
+			ret.computeIfAbsent(role.getUserId(), k -> new ArrayList<>()).add(role.getUserRole());
+		}
+
+		return ret;
+	}
+
 	/**
 	 * @param searchCriteria
 	 * @return
@@ -995,6 +995,7 @@ public VXGroup updateXGroup(VXGroup vXGroup) {
 		if (vXGroup != null) {
 			updateXgroupUserForGroupUpdate(vXGroup);
 			RangerServicePoliciesCache.sInstance=null;
+			updateUserStoreVersion("updateXGroup(" + vXGroup.getName() + ")");
 		}
 		return vXGroup;
 	}
@@ -1096,6 +1097,7 @@ public void modifyUserVisibility(HashMap<Long, Integer> visibilityMap) {
 			vObj.setIsVisible(entry.getValue());
 			vObj = xUserService.updateResource(vObj);
 		}
+		updateUserStoreVersion("modifyUserVisibility(usersCount=" + visibilityMap.size() + ")");
 	}
 
 	public void modifyGroupsVisibility(HashMap<Long, Integer> groupVisibilityMap) {
@@ -1108,6 +1110,7 @@ public void modifyGroupsVisibility(HashMap<Long, Integer> groupVisibilityMap) {
 			vObj.setIsVisible(entry.getValue());
 			vObj = xGroupService.updateResource(vObj);
 		}
+		updateUserStoreVersion("modifyGroupsVisibility(groupsCount=" + groupVisibilityMap.size() + ")");
 	}
 
 	// Module permissions
@@ -2242,6 +2245,7 @@ public void deleteXGroup(Long id, boolean force) {
 						"delete");
 				xaBizUtil.createTrxLog(xXTrxLogsXXGroup);
 			}
+			updateUserStoreVersion("deleteXGroup(" + xXGroup.getName() + ")");
 		}
 	}
 
@@ -2509,6 +2513,7 @@ public synchronized void deleteXUser(Long id, boolean force) {
 				trxLogList=xPortalUserService.getTransactionLog(xPortalUserService.populateViewBean(xXPortalUser), "delete");
 				xaBizUtil.createTrxLog(trxLogList);
 			}
+			updateUserStoreVersion("deleteXUser(" + xXUser.getName() + ")");
 		}
 	}
 
@@ -2736,18 +2741,29 @@ public Map<String, Set<String>> getUserGroups() {
 	}
 
 	public RangerUserStore getRangerUserStoreIfUpdated(Long lastKnownUserStoreVersion) throws Exception {
+		return getRangerUserStoreIfUpdated(lastKnownUserStoreVersion, false);
+	}
+
+	public RangerUserStore getRangerUserStoreIfUpdated(Long lastKnownUserStoreVersion, boolean isDeltaSupported) throws Exception {
 		if (logger.isDebugEnabled()) {
-			logger.debug("==> XUserMgr.getRangerUserStoreIfUpdated(lastKnownUserStoreVersion=" + lastKnownUserStoreVersion + ")");
+			logger.debug("==> XUserMgr.getRangerUserStoreIfUpdated(lastKnownUserStoreVersion=" + lastKnownUserStoreVersion + ", isDeltaSupported=" + isDeltaSupported + ")");
 		}
 
-		RangerUserStore ret = RangerUserStoreCache.getInstance().getLatestRangerUserStoreOrCached(this);
+		RangerUserStoreCache userStoreCache = RangerUserStoreCache.getInstance();
+		RangerUserStore      ret            = userStoreCache.getLatestRangerUserStoreOrCached(this);
 
 		if (ret != null && Objects.equals(ret.getUserStoreVersion(), lastKnownUserStoreVersion)) {
 			ret = null;
+		} else if (ret != null && isDeltaSupported) {
+			RangerUserStore delta = userStoreCache.getRangerUserStoreDelta(lastKnownUserStoreVersion);
+
+			if (delta != null) {
+				ret = delta;
+			}
 		}
 
 		if (logger.isDebugEnabled()) {
-			logger.debug("<== XUserMgr.getRangerUserStoreIfUpdated(lastKnownUserStoreVersion=" + lastKnownUserStoreVersion + "): ret=" + ret);
+			logger.debug("<== XUserMgr.getRangerUserStoreIfUpdated(lastKnownUserStoreVersion=" + lastKnownUserStoreVersion + ", isDeltaSupported=" + isDeltaSupported + "): ret=" + ret);
 		}
 
 		return ret;
@@ -2757,8 +2773,30 @@ public int createOrUpdateXUsers(VXUserList users) {
 		if (logger.isDebugEnabled()) {
 			logger.debug("==> createOrUpdateXUsers(): Started");
 		}
+
+		int ret = persistXUsers(users);
+
+		if (ret == 0) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("<== createOrUpdateXUsers(): No users created or updated");
+			}
+
+			return ret;
+		}
+
+		updateUserGroupGlobalStateInNewTransaction();
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("<== createOrUpdateXUsers(): Done");
+		}
+
+		return ret;
+	}
+
+	private int persistXUsers(VXUserList users) {
 		xaBizUtil.blockAuditorRoleUser();
-		int ret = 0;
+
+		List<VXUser> validUsers = new ArrayList<>();
 
 		for (VXUser vXUser : users.getList()) {
 			final String userName  = vXUser == null ? null : vXUser.getName();
@@ -2775,43 +2813,27 @@ public int createOrUpdateXUsers(VXUserList users) {
 			}
 
 			checkAccess(userName);
-			TransactionTemplate txTemplate = new TransactionTemplate(txManager);
-			txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
-			try {
-				txTemplate.execute(new TransactionCallback<Object>() {
-					@Override
-					public Object doInTransaction(TransactionStatus status) {
-						VXPortalUser vXPortalUser = userMgr.getUserProfileByLoginId(userName);
-						if (vXPortalUser == null) {
-							if (logger.isDebugEnabled()) {
-								logger.debug("create user " + userName);
-							}
-							createXUser(vXUser, userName);
-						} else {
-							if (logger.isDebugEnabled()) {
-								logger.debug("Update user " + userName);
-							}
-							updateXUser(vXUser, vXPortalUser);
-						}
-						return null;
-					}
-				});
-			} catch (Throwable ex) {
-				logger.error("XUserMgr.createOrUpdateXUsers(): Failed to update DB for users: ", ex);
-				throw restErrorUtil.createRESTException("Failed to create or update users ",
-						MessageEnums.ERROR_CREATING_OBJECT);
-			}
-			ret++;
+
+			validUsers.add(vXUser);
 		}
 
-		if (ret == 0) {
-			if (logger.isDebugEnabled()) {
-				logger.debug("<== createOrUpdateXUsers(): No users created or updated");
-			}
+		int     ret         = validUsers.size();
+		boolean oldBulkMode = RangerBizUtil.isBulkMode();
 
-			return ret;
+		try {
+			RangerBizUtil.setBulkMode(true);
+
+			for (int i = 0; i < ret; i += RangerBizUtil.batchPersistSize) {
+				createOrUpdateXUsers(validUsers.subList(i, Math.min(ret, i + RangerBizUtil.batchPersistSize)));
+			}
+		} finally {
+			RangerBizUtil.setBulkMode(oldBulkMode);
 		}
 
+		return ret;
+	}
+
+	private void updateUserGroupGlobalStateInNewTransaction() {
 		TransactionTemplate txTemplate = new TransactionTemplate(txManager);
 		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
 		try {
@@ -2842,14 +2864,95 @@ public Void doInTransaction(TransactionStatus status) {
 			throw restErrorUtil.createRESTException("Failed to create or update users ",
 					MessageEnums.ERROR_CREATING_OBJECT);
 		}
-		if (logger.isDebugEnabled()) {
-			logger.debug("<== createOrUpdateXUsers(): Done");
+	}
+
+	/*
+	 * creates or updates the given users in a single transaction, after looking up their existing
+	 * profiles, roles, permissions and x_user entries with one query each. If the transaction fails (for example, a login-id differing only in
+	 * case, or the same user listed twice), the users are processed one per transaction as before,
+	 * so that the failure is reported for the user that caused it.
+	 */
+	private void createOrUpdateXUsers(final List<VXUser> users) {
+		TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		try {
+			txTemplate.execute(new TransactionCallback<Object>() {
+				@Override
+				public Object doInTransaction(TransactionStatus status) {
+					if (users.size() == 1) {
+						VXUser vXUser = users.get(0);
+
+						createOrUpdateXUser(vXUser, userMgr.getUserProfileByLoginId(vXUser.getName()), daoManager.getXXUser().findByUserName(vXUser.getName()));
+					} else {
+						List<String>              loginIds    = new ArrayList<>(users.size());
+						Map<String, XXPortalUser> portalUsers = new HashMap<>();
+
+						for (VXUser vXUser : users) {
+							loginIds.add(vXUser.getName());
+						}
+
+						for (XXPortalUser xXPortalUser : daoManager.getXXPortalUser().findByLoginIds(loginIds)) {
+							portalUsers.put(xXPortalUser.getLoginId(), xXPortalUser);
+						}
+
+						Map<Long, VXPortalUser> userProfiles = userMgr.mapXXPortalUsersToVXPortalUsers(portalUsers.values());
+						Map<String, XXUser>     xUsers       = new HashMap<>();
+						List<String>            userNames    = new ArrayList<>(users.size());
+
+						for (VXUser vXUser : users) {
+							userNames.add(vXUser.getName().trim());
+						}
+
+						for (XXUser xUser : daoManager.getXXUser().findByUserNames(userNames)) {
+							xUsers.put(xUser.getName(), xUser);
+						}
+
+						for (VXUser vXUser : users) {
+							XXPortalUser xXPortalUser = portalUsers.get(vXUser.getName());
+							VXPortalUser vXPortalUser = xXPortalUser != null ? userProfiles.get(xXPortalUser.getId()) : null;
+
+							createOrUpdateXUser(vXUser, vXPortalUser, xUsers.get(vXUser.getName().trim()));
+						}
+
+						xaBizUtil.bulkModeOnlyFlushAndClear();
+					}
+
+					return null;
+				}
+			});
+		} catch (Throwable ex) {
+			if (users.size() == 1) {
+				logger.error("XUserMgr.createOrUpdateXUsers(): Failed to update DB for users: ", ex);
+				throw restErrorUtil.createRESTException("Failed to create or update users ",
+						MessageEnums.ERROR_CREATING_OBJECT);
+			}
+
+			logger.warn("XUserMgr.createOrUpdateXUsers(): Failed to update DB for " + users.size() + " users; retrying one user at a time", ex);
+
+			for (VXUser vXUser : users) {
+				createOrUpdateXUsers(Collections.singletonList(vXUser));
+			}
 		}
+	}
 
-		return ret;
+	/*
+	 * xUser: existing x_user entry of the user, null if there is none
+	 */
+	private void createOrUpdateXUser(VXUser vXUser, VXPortalUser vXPortalUser, XXUser xUser) {
+		if (vXPortalUser == null) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("create user " + vXUser.getName());
+			}
+			createXUser(vXUser, vXUser.getName(), xUser);
+		} else {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Update user " + vXUser.getName());
+			}
+			updateXUser(vXUser, vXPortalUser, xUser);
+		}
 	}
 
-	private void createXUser(VXUser vXUser, String username) {
+	private void createXUser(VXUser vXUser, String username, XXUser xUser) {
 		if (logger.isDebugEnabled()) {
 			logger.debug("Creating user: " + username);
 		}
@@ -2901,7 +3004,6 @@ private void createXUser(VXUser vXUser, String username) {
 			}
 		}
 
-		XXUser xUser = daoManager.getXXUser().findByUserName(vXUser.getName());
 		if (xUser == null) {
 			vXUser = xUserService.createResource(vXUser);
 		} else {
@@ -2922,6 +3024,19 @@ private void createXUser(VXUser vXUser, String username) {
 
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public int createOrUpdateXGroups(VXGroupList groups) {
+		persistXGroups(groups);
+
+		updateUserStoreVersion("createOrUpdateXGroups(groupsCount=" + groups.getListSize() + ")");
+
+		return groups.getListSize();
+	}
+
+	private void persistXGroups(VXGroupList groups) {
+		checkAdminAccess();
+		xaBizUtil.blockAuditorRoleUser();
+
+		List<VXGroup> validGroups = new ArrayList<>();
+
 		for (VXGroup vXGroup : groups.getList()) {
             if (vXGroup == null || vXGroup.getName() == null
                     || "null".equalsIgnoreCase(vXGroup.getName())
@@ -2929,12 +3044,22 @@ public int createOrUpdateXGroups(VXGroupList groups) {
                 logger.warn("Ignoring invalid groupname " + vXGroup==null? null : vXGroup.getName());
                 continue;
             }
-			createXGroupWithoutLogin(vXGroup);
+			validGroups.add(vXGroup);
 		}
 
-		updateUserStoreVersion("createOrUpdateXGroups(groupsCount=" + groups.getListSize() + ")");
+		boolean oldBulkMode = RangerBizUtil.isBulkMode();
 
-		return groups.getListSize();
+		try {
+			RangerBizUtil.setBulkMode(true);
+
+			for (int i = 0; i < validGroups.size(); i += RangerBizUtil.batchPersistSize) {
+				xGroupService.createOrUpdateXGroupsWithOutLogin(validGroups.subList(i, Math.min(validGroups.size(), i + RangerBizUtil.batchPersistSize)));
+
+				xaBizUtil.bulkModeOnlyFlushAndClear();
+			}
+		} finally {
+			RangerBizUtil.setBulkMode(oldBulkMode);
+		}
 	}
 
 	public int createOrDeleteXGroupUserList(List<GroupUserInfo> groupUserInfoList) {
@@ -2962,6 +3087,7 @@ public int createOrDeleteXGroupUserList(List<GroupUserInfo> groupUserInfoList) {
 					xGroupUserService.createOrDeleteXGroupUsers(groupUserInfo, usersFromDB);
 				}
 				updatedGroups = groupUserInfoList.size();
+				updateUserStoreVersion("createOrDeleteXGroupUserList(groupsCount=" + updatedGroups + ")");
 			}
 		}
 		if (logger.isDebugEnabled()) {
@@ -2972,6 +3098,101 @@ public int createOrDeleteXGroupUserList(List<GroupUserInfo> groupUserInfoList) {
 		return updatedGroups;
 	}
 
+	/*
+	 * Following methods consume users, groups and group memberships streamed by usersync, in chunks of
+	 * batchPersistSize entries; each chunk is persisted in a transaction of its own, so that the memory
+	 * needed does not depend on the number of entries in the stream. The userStore version is updated
+	 * once, after the entire stream is persisted.
+	 */
+	public int createOrUpdateXUsers(Iterator<VXUser> users) {
+		int ret = 0;
+
+		for (List<VXUser> chunk = nextChunk(users); !chunk.isEmpty(); chunk = nextChunk(users)) {
+			ret += persistXUsers(new VXUserList(chunk));
+		}
+
+		if (ret > 0) {
+			updateUserGroupGlobalStateInNewTransaction();
+		}
+
+		return ret;
+	}
+
+	public int createOrUpdateXGroups(Iterator<VXGroup> groups) {
+		TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+		int                 ret        = 0;
+
+		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+		for (List<VXGroup> chunk = nextChunk(groups); !chunk.isEmpty(); chunk = nextChunk(groups)) {
+			final VXGroupList groupList = new VXGroupList(chunk);
+
+			txTemplate.execute(status -> {
+				persistXGroups(groupList);
+
+				return null;
+			});
+
+			ret += chunk.size();
+		}
+
+		if (ret > 0) {
+			updateUserGroupGlobalStateInNewTransaction();
+		}
+
+		return ret;
+	}
+
+	public int createOrDeleteXGroupUserList(Iterator<GroupUserInfo> groupUserInfos) {
+		checkAdminAccess();
+		xaBizUtil.blockAuditorRoleUser();
+
+		TransactionTemplate txTemplate  = new TransactionTemplate(txManager);
+		Map<String, Long>   usersFromDB = null;
+		int                 ret         = 0;
+
+		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+		for (List<GroupUserInfo> chunk = nextChunk(groupUserInfos); !chunk.isEmpty(); chunk = nextChunk(groupUserInfos)) {
+			if (usersFromDB == null) {
+				usersFromDB = txTemplate.execute(status -> daoManager.getXXUser().getAllUserIds());
+
+				if (MapUtils.isEmpty(usersFromDB)) {
+					break;
+				}
+			}
+
+			final Map<String, Long>   userIds    = usersFromDB;
+			final List<GroupUserInfo> groupUsers = chunk;
+
+			txTemplate.execute(status -> {
+				for (GroupUserInfo groupUserInfo : groupUsers) {
+					xGroupUserService.createOrDeleteXGroupUsers(groupUserInfo, userIds);
+				}
+
+				return null;
+			});
+
+			ret += chunk.size();
+		}
+
+		if (ret > 0) {
+			updateUserGroupGlobalStateInNewTransaction();
+		}
+
+		return ret;
+	}
+
+	private static <T> List<T> nextChunk(Iterator<T> iter) {
+		List<T> ret = new ArrayList<>();
+
+		while (ret.size() < RangerBizUtil.batchPersistSize && iter.hasNext()) {
+			ret.add(iter.next());
+		}
+
+		return ret;
+	}
+
 	@Transactional(readOnly = false, propagation = Propagation.REQUIRED)
 	public List<String> updateUserRoleAssignments(UsersGroupRoleAssignments ugRoleAssignments) {
 		List<String> updatedUsers = new ArrayList<>();
@@ -3148,7 +3369,7 @@ private void createOrUpdateUserPermisson(Long portalUserId, Long xUserId, Long m
 		}
 	}
 
-	private VXUser updateXUser(VXUser vXUser, VXPortalUser oldUserProfile) {
+	private VXUser updateXUser(VXUser vXUser, VXPortalUser oldUserProfile, XXUser xUser) {
 		if (logger.isDebugEnabled()) {
 			logger.debug("Updating user: " + vXUser.getName());
 		}
@@ -3243,7 +3464,6 @@ else if(password != null){
 
 		// TODO I've to get the transaction log from here.
 		// There is nothing to log anything in XXUser so far.
-		XXUser xUser = daoManager.getXXUser().findByUserName(vXUser.getName());
 		if (xUser == null) {
 			logger.warn("Could not find corresponding xUser for username: [" + vXPortalUser.getLoginId() + "], So not updating this user");
 			return vXUser;
@@ -3293,6 +3513,7 @@ public int updateDeletedUsers(Set<String> deletedUsers) {
 				xUserService.updateResource(vObj);
 			}
 		}
+		updateUserStoreVersion("updateDeletedUsers(usersCount=" + deletedUsers.size() + ")");
 		return deletedUsers.size();
 	}
 
@@ -3305,6 +3526,7 @@ public int updateDeletedGroups(Set<String> deletedGroups) {
 				xGroupService.updateResource(vObj);
 			}
 		}
+		updateUserStoreVersion("updateDeletedGroups(groupsCount=" + deletedGroups.size() + ")");
 		return deletedGroups.size();
 	}
 
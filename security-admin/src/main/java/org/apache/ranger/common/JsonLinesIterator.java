@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.ranger.plugin.util.JsonUtilsV2;
+
+/**
+ * Reads objects from a stream of newline-delimited JSON (one object per line), one object at a time,
+ * so that the memory needed does not depend on the number of objects in the stream. Compressed request
+ * bodies are decoded by GZIPContentEncodingFilter before they reach the REST resources.
+ */
+public class JsonLinesIterator<T> implements Iterator<T> {
+	public static final String MEDIA_TYPE = "application/x-ndjson";
+
+	private final BufferedReader reader;
+	private final Class<T>       clazz;
+	private       T              next;
+	private       int            lineNumber;
+
+	public JsonLinesIterator(InputStream in, Class<T> clazz) {
+		this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		this.clazz  = clazz;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next == null) {
+			for (String line = readLine(); line != null; line = readLine()) {
+				lineNumber++;
+
+				if (!line.trim().isEmpty()) {
+					try {
+						next = JsonUtilsV2.jsonToObj(line, clazz);
+					} catch (Exception excp) { // includes JsonParseException, an IOException
+						throw new IllegalArgumentException("invalid " + clazz.getSimpleName() + " at line " + lineNumber, excp);
+					}
+
+					break;
+				}
+			}
+		}
+
+		return next != null;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		T ret = next;
+
+		next = null;
+
+		return ret;
+	}
+
+	private String readLine() {
+		try {
+			return reader.readLine();
+		} catch (IOException excp) {
+			throw new UncheckedIOException(excp);
+		}
+	}
+}
@@ -35,13 +35,17 @@ public class RangerUserStoreCache {
 	private static final Logger LOG = LoggerFactory.getLogger(RangerUserStoreCache.class);
 
 	private static final int MAX_WAIT_TIME_FOR_UPDATE = 10;
+	private static final int MAX_DELTAS_TO_RETAIN     = 10;
 
 	public static volatile RangerUserStoreCache 	sInstance = null;
 
-	private final int             waitTimeInSeconds;
-	private final boolean         dedupStrings;
-	private final ReentrantLock   lock = new ReentrantLock();
-	private       RangerUserStore rangerUserStore;
+	private final int                        waitTimeInSeconds;
+	private final boolean                    dedupStrings;
+	private final boolean                    deltasEnabled;
+	private final int                        maxDeltasToRetain;
+	private final ReentrantLock              lock   = new ReentrantLock();
+	private final Map<Long, RangerUserStore> deltas = new LinkedHashMap<>(); // delta from version (key) to the next version, oldest first
+	private       RangerUserStore            rangerUserStore;
 
 	public static RangerUserStoreCache getInstance() {
 		if (sInstance == null) {
@@ -59,6 +63,8 @@ private RangerUserStoreCache() {
 
 		this.waitTimeInSeconds = config.getInt("ranger.admin.userstore.download.cache.max.waittime.for.update", MAX_WAIT_TIME_FOR_UPDATE);
 		this.dedupStrings      = config.getBoolean("ranger.admin.userstore.dedup.strings", Boolean.TRUE);
+		this.deltasEnabled     = config.getBoolean("ranger.admin.userstore.deltas.enabled", Boolean.TRUE);
+		this.maxDeltasToRetain = config.getInt("ranger.admin.userstore.deltas.max.count", MAX_DELTAS_TO_RETAIN);
 		this.rangerUserStore   = new RangerUserStore();
 	}
 
@@ -101,7 +107,7 @@ public RangerUserStore getLatestRangerUserStoreOrCached(XUserMgr xUserMgr) throw
 						rangerUserStore.dedupStrings();
 					}
 
-					this.rangerUserStore = rangerUserStore;
+					updateDeltas(this.rangerUserStore, rangerUserStore);
 
 					LOG.info("RangerUserStoreCache refreshed from version " + cachedUserStoreVersion + " to " + dbUserStoreVersion + ": users=" + rangerUsersInDB.size() + ", groups=" + rangerGroupsInDB.size() + ", userGroupMappings=" + userGroups.size());
 				}
@@ -126,5 +132,63 @@ public RangerUserStore getLatestRangerUserStoreOrCached(XUserMgr xUserMgr) throw
 
 		return ret;
 	}
+
+	/*
+	 * Returns the changes from the given version to the latest cached version, as a single delta; null if the
+	 * changes since the given version are not available, in which case the full userstore should be sent
+	 */
+	public RangerUserStore getRangerUserStoreDelta(Long lastKnownUserStoreVersion) {
+		RangerUserStore ret = null;
+
+		if (deltasEnabled && lastKnownUserStoreVersion != null && lastKnownUserStoreVersion != -1L) {
+			synchronized (deltas) {
+				Long latestVersion = rangerUserStore.getUserStoreVersion();
+
+				for (Long version = lastKnownUserStoreVersion; !Objects.equals(version, latestVersion); ) {
+					RangerUserStore delta = deltas.get(version);
+
+					if (delta == null) {
+						ret = null;
+
+						break;
+					}
+
+					ret     = ret == null ? delta : ret.applyDelta(delta);
+					version = delta.getUserStoreVersion();
+				}
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RangerUserStoreCache.getRangerUserStoreDelta(lastKnownUserStoreVersion=" + lastKnownUserStoreVersion + "): " + (ret == null ? "delta not available" : ("changedUsers=" + ret.getChangedUsers().size() + ", changedGroups=" + ret.getChangedGroups().size())));
+		}
+
+		return ret;
+	}
+
+	private void updateDeltas(RangerUserStore oldUserStore, RangerUserStore newUserStore) {
+		RangerUserStore delta = null;
+
+		if (deltasEnabled && oldUserStore.getUserStoreVersion() != null && oldUserStore.getUserStoreVersion() != -1L) {
+			delta = RangerUserStore.getDelta(oldUserStore, newUserStore);
+
+			LOG.info("RangerUserStoreCache: delta from version " + oldUserStore.getUserStoreVersion() + " to " + newUserStore.getUserStoreVersion() + ": changedUsers=" + delta.getChangedUsers().size() + ", changedGroups=" + delta.getChangedGroups().size());
+		}
+
+		synchronized (deltas) {
+			if (delta != null) {
+				deltas.put(oldUserStore.getUserStoreVersion(), delta);
+
+				for (Iterator<Long> iter = deltas.keySet().iterator(); deltas.size() > maxDeltasToRetain && iter.hasNext(); ) {
+					iter.next();
+					iter.remove();
+				}
+			} else {
+				deltas.clear();
+			}
+
+			this.rangerUserStore = newUserStore;
+		}
+	}
 }
 
@@ -88,6 +88,9 @@ public class ServiceUtil {
 	@Autowired
 	ServiceDBStore svcStore;
 
+	@Autowired
+	ServiceVersionInfoCache serviceVersionInfoCache;
+
 	static {
 		mapServiceTypeToAssetType.put(EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_HDFS_NAME,  Integer.valueOf(RangerCommonEnums.ASSET_HDFS));
 		mapServiceTypeToAssetType.put(EmbeddedServiceDefsUtil.EMBEDDED_SERVICEDEF_HBASE_NAME, Integer.valueOf(RangerCommonEnums.ASSET_HBASE));
@@ -1480,6 +1483,10 @@ public boolean isValidService(String serviceName, HttpServletRequest request){
 					MessageEnums.OPER_NOT_ALLOWED_FOR_ENTITY);
 		}
 
+		if (serviceVersionInfoCache.isServiceEnabled(serviceName)) {
+			return isValid;
+		}
+
 		RangerService service = null;
 		try {
 			if(null != request.getAttribute("downloadPolicy") && StringUtils.equalsIgnoreCase(request.getAttribute("downloadPolicy").toString(), "secure")){
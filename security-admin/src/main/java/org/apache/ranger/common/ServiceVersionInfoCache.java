@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.common;
+
+import org.apache.ranger.authorization.hadoop.config.RangerAdminConfig;
+import org.apache.ranger.biz.ServiceDBStore;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.entity.XXServiceVersionInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.ranger.db.XXGlobalStateDao.RANGER_GLOBAL_STATE_NAME_ROLE;
+import static org.apache.ranger.db.XXGlobalStateDao.RANGER_GLOBAL_STATE_NAME_USER_GROUP;
+
+/**
+ * In-memory table of policy/tag/role/userstore/GDS versions of all services, refreshed periodically
+ * from the database. Download endpoints consult this table to answer "not modified" for plugins
+ * that already have the latest version, without any database access in the request path.
+ *
+ * A version reported as unchanged can be stale by at most the refresh interval; when the table
+ * could not be refreshed within the max-staleness period, all checks return false, so that the
+ * requests go through the regular database lookups.
+ */
+@Component
+public class ServiceVersionInfoCache {
+	private static final Logger LOG = LoggerFactory.getLogger(ServiceVersionInfoCache.class);
+
+	public static final String PROP_ENABLED             = "ranger.admin.service.version.cache.enabled";
+	public static final String PROP_REFRESH_INTERVAL_MS = "ranger.admin.service.version.cache.refresh.interval.ms";
+	public static final String PROP_MAX_STALENESS_MS    = "ranger.admin.service.version.cache.max.staleness.ms";
+
+	private static final long DEFAULT_REFRESH_INTERVAL_MS = 5 * 1000L;
+
+	@Autowired
+	RangerDaoManager daoMgr;
+
+	@Autowired
+	@Qualifier(value = "transactionManager")
+	PlatformTransactionManager txManager;
+
+	private          boolean                  isEnabled         = false;
+	private          boolean                  isHttpEnabled     = true;
+	private          long                     refreshIntervalMs = DEFAULT_REFRESH_INTERVAL_MS;
+	private          long                     maxStalenessMs    = 3 * DEFAULT_REFRESH_INTERVAL_MS;
+	private          ScheduledExecutorService scheduler         = null;
+	private volatile VersionTable             versionTable      = null;
+
+	@PostConstruct
+	public void init() {
+		RangerAdminConfig config = RangerAdminConfig.getInstance();
+
+		isEnabled         = config.getBoolean(PROP_ENABLED, true);
+		refreshIntervalMs = config.getLong(PROP_REFRESH_INTERVAL_MS, DEFAULT_REFRESH_INTERVAL_MS);
+		maxStalenessMs    = config.getLong(PROP_MAX_STALENESS_MS, 3 * refreshIntervalMs);
+		isHttpEnabled     = PropertiesUtil.getBooleanProperty("ranger.service.http.enabled", true);
+
+		LOG.info("{}={}", PROP_ENABLED, isEnabled);
+		LOG.info("{}={}", PROP_REFRESH_INTERVAL_MS, refreshIntervalMs);
+		LOG.info("{}={}", PROP_MAX_STALENESS_MS, maxStalenessMs);
+
+		if (isEnabled && refreshIntervalMs > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "ServiceVersionInfoCacheRefresher");
+
+				t.setDaemon(true);
+
+				return t;
+			});
+
+			scheduler.scheduleWithFixedDelay(this::refresh, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+		} else {
+			isEnabled = false;
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+
+			scheduler = null;
+		}
+
+		versionTable = null;
+	}
+
+	/*
+	 * policy and GDS downloads validate client certificate when http is disabled; such requests
+	 * must go through ServiceUtil.isValidateHttpsAuthentication(), hence the check for isHttpEnabled
+	 */
+	public boolean isPolicyVersionUnchanged(String serviceName, Long lastKnownVersion) {
+		return isHttpEnabled && isSecurePolicyVersionUnchanged(serviceName, lastKnownVersion);
+	}
+
+	/*
+	 * for downloads from /secure/ endpoints, which are authenticated before reaching ServiceREST
+	 */
+	public boolean isSecurePolicyVersionUnchanged(String serviceName, Long lastKnownVersion) {
+		ServiceVersions versions = getServiceVersions(serviceName, lastKnownVersion);
+
+		return versions != null && lastKnownVersion.equals(versions.policyVersion);
+	}
+
+	public boolean isTagVersionUnchanged(String serviceName, Long lastKnownVersion) {
+		ServiceVersions versions = getServiceVersions(serviceName, lastKnownVersion);
+
+		return versions != null && lastKnownVersion.equals(versions.tagVersion);
+	}
+
+	public boolean isRoleVersionUnchanged(String serviceName, Long lastKnownVersion) {
+		ServiceVersions versions = getServiceVersions(serviceName, lastKnownVersion);
+
+		return versions != null && lastKnownVersion.equals(versions.roleVersion);
+	}
+
+	public boolean isGdsVersionUnchanged(String serviceName, Long lastKnownVersion) {
+		ServiceVersions versions = isHttpEnabled ? getServiceVersions(serviceName, lastKnownVersion) : null;
+
+		return versions != null && lastKnownVersion.equals(versions.gdsVersion);
+	}
+
+	public boolean isUserStoreVersionUnchanged(String serviceName, Long lastKnownVersion) {
+		ServiceVersions versions = getServiceVersions(serviceName, lastKnownVersion);
+
+		return versions != null && lastKnownVersion.equals(versions.userStoreVersion);
+	}
+
+	/*
+	 * returns true when the fresh version table has the given service as enabled; false when the service
+	 * is disabled or not found, or the table is stale - callers then look up the service in the database
+	 */
+	public boolean isServiceEnabled(String serviceName) {
+		return getServiceVersions(serviceName) != null;
+	}
+
+	/*
+	 * returns versions of the given service only when the service is enabled, the version table is
+	 * fresh and the plugin has a valid lastKnownVersion; returns null otherwise
+	 */
+	private ServiceVersions getServiceVersions(String serviceName, Long lastKnownVersion) {
+		return (lastKnownVersion == null || lastKnownVersion <= 0) ? null : getServiceVersions(serviceName);
+	}
+
+	private ServiceVersions getServiceVersions(String serviceName) {
+		final ServiceVersions ret;
+		final VersionTable    table = versionTable;
+
+		if (!isEnabled || table == null || serviceName == null) {
+			ret = null;
+		} else if ((System.currentTimeMillis() - table.loadTime) > maxStalenessMs) {
+			LOG.debug("ServiceVersionInfoCache: version table is stale (loadTime={}); ignoring", table.loadTime);
+
+			ret = null;
+		} else {
+			ServiceVersions versions = table.services.get(serviceName);
+
+			ret = (versions != null && versions.isEnabled) ? versions : null;
+		}
+
+		return ret;
+	}
+
+	void refresh() {
+		LOG.debug("==> ServiceVersionInfoCache.refresh()");
+
+		try {
+			TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+
+			txTemplate.setReadOnly(true);
+
+			VersionTable table = txTemplate.execute(status -> loadVersionTable());
+
+			if (table != null) {
+				VersionTable prevTable = versionTable;
+
+				versionTable = table;
+
+				if (prevTable == null || prevTable.services.size() != table.services.size() || !Objects.equals(prevTable.userStoreVersion, table.userStoreVersion)) {
+					LOG.info("ServiceVersionInfoCache: refreshed versions of {} services; userStoreVersion={}", table.services.size(), table.userStoreVersion);
+				}
+			}
+		} catch (Throwable excp) {
+			LOG.error("ServiceVersionInfoCache.refresh(): failed to load service versions", excp);
+		}
+
+		LOG.debug("<== ServiceVersionInfoCache.refresh()");
+	}
+
+	private VersionTable loadVersionTable() {
+		long                         loadTime          = System.currentTimeMillis();
+		boolean                      rolesByService    = ServiceDBStore.isSupportsRolesDownloadByService();
+		Long                         globalRoleVersion = rolesByService ? null : daoMgr.getXXGlobalState().getAppDataVersion(RANGER_GLOBAL_STATE_NAME_ROLE);
+		Long                         userStoreVersion  = daoMgr.getXXGlobalState().getAppDataVersion(RANGER_GLOBAL_STATE_NAME_USER_GROUP);
+		List<Object[]>               rows              = daoMgr.getXXServiceVersionInfo().getAllWithServiceNameAndStatus();
+		Map<String, ServiceVersions> services          = new HashMap<>();
+
+		if (rows != null) {
+			for (Object[] row : rows) {
+				if (row == null || row.length != 3) {
+					continue;
+				}
+
+				XXServiceVersionInfo versionInfo = (XXServiceVersionInfo) row[0];
+				String               serviceName = (String) row[1];
+				Boolean              isEnabled   = (Boolean) row[2];
+
+				if (versionInfo != null && serviceName != null) {
+					Long roleVersion = rolesByService ? versionInfo.getRoleVersion() : globalRoleVersion;
+
+					services.put(serviceName, new ServiceVersions(Boolean.TRUE.equals(isEnabled), versionInfo.getPolicyVersion(), versionInfo.getTagVersion(), roleVersion, versionInfo.getGdsVersion(), userStoreVersion));
+				}
+			}
+		}
+
+		return new VersionTable(loadTime, Collections.unmodifiableMap(services), userStoreVersion);
+	}
+
+	private static class VersionTable {
+		final long                         loadTime;
+		final Map<String, ServiceVersions> services;
+		final Long                         userStoreVersion;
+
+		VersionTable(long loadTime, Map<String, ServiceVersions> services, Long userStoreVersion) {
+			this.loadTime         = loadTime;
+			this.services         = services;
+			this.userStoreVersion = userStoreVersion;
+		}
+	}
+
+	private static class ServiceVersions {
+		final boolean isEnabled;
+		final Long    policyVersion;
+		final Long    tagVersion;
+		final Long    roleVersion;
+		final Long    gdsVersion;
+		final Long    userStoreVersion;
+
+		ServiceVersions(boolean isEnabled, Long policyVersion, Long tagVersion, Long roleVersion, Long gdsVersion, Long userStoreVersion) {
+			this.isEnabled        = isEnabled;
+			this.policyVersion    = policyVersion;
+			this.tagVersion       = tagVersion;
+			this.roleVersion      = roleVersion;
+			this.gdsVersion       = gdsVersion;
+			this.userStoreVersion = userStoreVersion;
+		}
+	}
+}
@@ -26,7 +26,9 @@
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Function;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
@@ -48,6 +50,7 @@
 	private static final int    DEFAULT_BATCH_DELETE_BATCH_SIZE = 1000;
 	private static       int    BATCH_DELETE_BATCH_SIZE;
 	private static final String GDS_TABLES = "x_gds_";
+	private static final int    MAX_IN_LIST_SIZE = 1000; // limit of Oracle on the number of values in an IN-list
 
 	static {
 		try {
@@ -157,6 +160,25 @@ public void batchDeleteByIds(String namedQuery, List<Long> ids, String paramName
 		}
 	}
 
+	/*
+	 * runs the given query, which has an IN-list of the given values, for chunks of at most batchPersistSize
+	 * and MAX_IN_LIST_SIZE values; returns results of all the chunks
+	 */
+	protected <V, R> List<R> findByInList(Collection<V> values, Function<List<V>, List<R>> query) {
+		List<R> ret = new ArrayList<R>();
+
+		if (values != null && !values.isEmpty()) {
+			List<V> valueList = values instanceof List ? (List<V>) values : new ArrayList<V>(values);
+			int     chunkSize = RangerBizUtil.batchPersistSize > 0 ? Math.min(RangerBizUtil.batchPersistSize, MAX_IN_LIST_SIZE) : MAX_IN_LIST_SIZE;
+
+			for (int fromIndex = 0; fromIndex < valueList.size(); fromIndex += chunkSize) {
+				ret.addAll(query.apply(valueList.subList(fromIndex, Math.min(valueList.size(), fromIndex + chunkSize))));
+			}
+		}
+
+		return ret;
+	}
+
 	public T update(T obj) {
 		em.merge(obj);
 		if (!RangerBizUtil.isBulkMode()) {
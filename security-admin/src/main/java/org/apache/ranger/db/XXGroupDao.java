@@ -21,6 +21,7 @@
 
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -84,6 +85,12 @@ public XXGroup findByGroupName(String groupName) {
 		return null;
 	}
 
+	public List<XXGroup> findByGroupNames(Collection<String> groupNames) {
+		return findByInList(groupNames, subList -> getEntityManager()
+				.createNamedQuery("XXGroup.findByGroupNames", tClass)
+				.setParameter("names", subList).getResultList());
+	}
+
 	public Map<Long, String> getAllGroupIdNames() {
 		Map<Long, String> groups = new HashMap<Long, String>();
 		try {
@@ -99,6 +106,18 @@ public Map<Long, String> getAllGroupIdNames() {
 	}
 
 
+	public Map<String, Long> getIdsByNames(Collection<String> names) {
+		Map<String, Long> groups = new HashMap<String, Long>();
+		List<Object[]>    rows   = findByInList(names, subList -> getEntityManager().createNamedQuery("XXGroup.getIdsByNames", Object[].class)
+				.setParameter("names", subList).getResultList());
+
+		for (Object[] row : rows) {
+			groups.put((String) row[0], (Long) row[1]);
+		}
+
+		return groups;
+	}
+
 	public List<GroupInfo> getAllGroupsInfo() {
 		List<GroupInfo> ret = new ArrayList<>();
 
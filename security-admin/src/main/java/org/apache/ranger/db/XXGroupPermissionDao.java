@@ -83,6 +83,17 @@ public List<XXGroupPermission> findByGroupId(Long groupId) {
 		}
 		return null;
 	}
+	/*
+	 * returns id of the portal user and the group permission, for group permissions of the given portal users
+	 */
+	public List<Object[]> findByVXPortalUserIds(List<Long> userIds) {
+		return findByInList(userIds, subList -> getEntityManager()
+				.createNamedQuery("XXGroupPermission.findByVXPortalUserIds", Object[].class)
+				.setParameter("userIds", subList)
+				.setParameter("isAllowed", RangerCommonEnums.IS_ALLOWED)
+				.getResultList());
+	}
+
 	public List<XXGroupPermission> findbyVXPortalUserId(Long userId) {
 		if (userId != null) {
 			try {
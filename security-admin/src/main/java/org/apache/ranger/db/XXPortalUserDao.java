@@ -19,6 +19,7 @@
 
 package org.apache.ranger.db;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -55,6 +56,12 @@ public XXPortalUser findByLoginId(String loginId) {
 		return null;
 	}
 
+	public List<XXPortalUser> findByLoginIds(Collection<String> loginIds) {
+		return findByInList(loginIds, subList -> getEntityManager()
+				.createNamedQuery("XXPortalUser.findByLoginIds", tClass)
+				.setParameter("loginIds", subList).getResultList());
+	}
+
 	public XXPortalUser findByEmailAddress(String emailAddress) {
 		if (daoManager.getStringUtil().isEmpty(emailAddress)) {
 			return null;
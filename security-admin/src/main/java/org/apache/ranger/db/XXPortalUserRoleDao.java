@@ -45,6 +45,11 @@ public List<XXPortalUserRole> findByUserId(Long userId) {
 				.setParameter("userId", userId).getResultList();
 	}
 	
+	public List<XXPortalUserRole> findByUserIds(List<Long> userIds) {
+		return findByInList(userIds, subList -> getEntityManager().createNamedQuery("XXPortalUserRole.findByUserIds", tClass)
+				.setParameter("userIds", subList).getResultList());
+	}
+
 	public XXPortalUserRole findByRoleUserId(Long userId, String role) {
 		if(userId == null || role == null || role.isEmpty()){
 			return null;
@@ -25,7 +25,10 @@
 
 import javax.persistence.NoResultException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class XXRoleDao extends BaseDao<XXRole> {
@@ -97,6 +100,18 @@ public List<String> getAllNames() {
         }
     }
 
+    public Map<String, Long> getIdsByNames(Collection<String> names) {
+        Map<String, Long> ret  = new HashMap<>();
+        List<Object[]>    rows = findByInList(names, subList -> getEntityManager().createNamedQuery("XXRole.getIdsByNames", Object[].class)
+                .setParameter("names", subList).getResultList());
+
+        for (Object[] row : rows) {
+            ret.put((String) row[0], (Long) row[1]);
+        }
+
+        return ret;
+    }
+
     @SuppressWarnings("unchecked")
 	public List<XXRole> findByUserId(Long UserId) {
 		if (UserId == null) {
@@ -27,6 +27,7 @@
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.authorization.utils.StringUtil;
+import org.apache.ranger.biz.RangerBizUtil;
 import org.apache.ranger.common.db.BaseDao;
 import org.apache.ranger.entity.XXServiceResource;
 import org.springframework.stereotype.Service;
@@ -139,4 +140,52 @@ public List<String> findServiceResourceGuidsInServiceId(Long serviceId) {
 			return new ArrayList<String>();
 		}
 	}
+
+	public List<Object[]> findIdGuidAndSignatureByServiceId(Long serviceId) {
+		if (serviceId == null) {
+			return new ArrayList<Object[]>();
+		}
+		try {
+			return getEntityManager().createNamedQuery("XXServiceResource.findIdGuidAndSignatureByServiceId", Object[].class)
+					.setParameter("serviceId", serviceId).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<Object[]>();
+		}
+	}
+
+	public List<Object[]> findGuidAndServiceIdByGuids(List<String> guids) {
+		List<Object[]> ret = new ArrayList<Object[]>();
+
+		if (CollectionUtils.isNotEmpty(guids)) {
+			for (int fromIndex = 0; fromIndex < guids.size(); fromIndex += RangerBizUtil.batchPersistSize) {
+				List<String> subList = guids.subList(fromIndex, Math.min(guids.size(), fromIndex + RangerBizUtil.batchPersistSize));
+
+				ret.addAll(getEntityManager().createNamedQuery("XXServiceResource.findGuidAndServiceIdByGuids", Object[].class)
+						.setParameter("guids", subList).getResultList());
+			}
+		}
+
+		return ret;
+	}
+
+	public List<XXServiceResource> findByIds(List<Long> ids) {
+		List<XXServiceResource> ret = new ArrayList<XXServiceResource>();
+
+		if (CollectionUtils.isNotEmpty(ids)) {
+			for (int fromIndex = 0; fromIndex < ids.size(); fromIndex += RangerBizUtil.batchPersistSize) {
+				List<Long> subList = ids.subList(fromIndex, Math.min(ids.size(), fromIndex + RangerBizUtil.batchPersistSize));
+
+				ret.addAll(getEntityManager().createNamedQuery("XXServiceResource.findByIds", tClass)
+						.setParameter("ids", subList).getResultList());
+			}
+		}
+
+		return ret;
+	}
+
+	public void deleteByIds(List<Long> ids) {
+		if (CollectionUtils.isNotEmpty(ids)) {
+			batchDeleteByIds("XXServiceResource.deleteByIds", ids, "ids");
+		}
+	}
 }
@@ -76,6 +76,13 @@ public List<Object[]> getAllWithServiceNames(){
 				.getResultList();
 	}
 
+	@SuppressWarnings("unchecked")
+	public List<Object[]> getAllWithServiceNameAndStatus() {
+		return getEntityManager()
+				.createNamedQuery("XXServiceVersionInfo.getAllWithServiceNameAndStatus")
+				.getResultList();
+	}
+
 	public void updateServiceVersionInfoForTagResourceMapCreate(Long resourceId, Long tagId) {
 		if (resourceId == null || tagId == null) {
 			LOG.warn("Unexpected null value for resourceId and/or tagId");
@@ -24,6 +24,7 @@
 
 import javax.persistence.NoResultException;
 
+import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.ranger.authorization.utils.StringUtil;
 import org.apache.ranger.common.db.BaseDao;
@@ -140,4 +141,10 @@ public List<XXTag> findByServiceIdAndOwner(Long serviceId, Short owner) {
 			return new ArrayList<XXTag>();
 		}
 	}
+
+	public void deleteByIds(List<Long> ids) {
+		if (CollectionUtils.isNotEmpty(ids)) {
+			batchDeleteByIds("XXTag.deleteByIds", ids, "ids");
+		}
+	}
 }
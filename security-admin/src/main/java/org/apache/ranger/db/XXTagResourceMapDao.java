@@ -191,4 +191,10 @@ private List<XXTagResourceMap> fromRows(List<Object[]> rows) {
 
 		return ret;
 	}
+
+	public void deleteByIds(List<Long> ids) {
+		if (CollectionUtils.isNotEmpty(ids)) {
+			batchDeleteByIds("XXTagResourceMap.deleteByIds", ids, "ids");
+		}
+	}
 }
@@ -34,6 +34,7 @@
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.HashSet;
@@ -70,6 +71,12 @@ public XXUser findByUserName(String name) {
 		return null;
 	}
 
+	public List<XXUser> findByUserNames(Collection<String> names) {
+		return findByInList(names, subList -> getEntityManager()
+				.createNamedQuery("XXUser.findByUserNames", XXUser.class)
+				.setParameter("names", subList).getResultList());
+	}
+
 	public XXUser findByPortalUserId(Long portalUserId) {
 		if (portalUserId == null) {
 			return null;
@@ -123,6 +130,18 @@ public Map<String, Long> getAllUserIds() {
 		return users;
 	}
 
+	public Map<String, Long> getIdsByNames(Collection<String> names) {
+		Map<String, Long> users = new HashMap<>();
+		List<Object[]>    rows  = findByInList(names, subList -> getEntityManager().createNamedQuery("XXUser.getIdsByNames", Object[].class)
+				.setParameter("names", subList).getResultList());
+
+		for (Object[] row : rows) {
+			users.put((String) row[0], (Long) row[1]);
+		}
+
+		return users;
+	}
+
 	public List<Object[]> getAllUserIdNames() {
 		List<Object[]> users = new ArrayList<Object[]>();
 		try {
@@ -64,6 +64,14 @@ public List<XXUserPermission> findByModuleId(Long moduleId,boolean isUpdate) {
 		return null;
 	}
 
+	public List<XXUserPermission> findByUserPermissionIdsAndIsAllowed(List<Long> userIds) {
+		return findByInList(userIds, subList -> getEntityManager()
+				.createNamedQuery("XXUserPermission.findByUserPermissionIdsAndIsAllowed", XXUserPermission.class)
+				.setParameter("userIds", subList)
+				.setParameter("isAllowed", RangerCommonEnums.IS_ALLOWED)
+				.getResultList());
+	}
+
 	@SuppressWarnings("unchecked")
 	public List<XXUserPermission> findByUserPermissionIdAndIsAllowed(Long userId) {
 		if (userId != null) {
@@ -35,12 +35,14 @@
 import org.elasticsearch.action.get.MultiGetItemResponse;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.search.SearchHit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
 
+import javax.ws.rs.WebApplicationException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
@@ -73,10 +75,23 @@ public VXAccessAuditList searchXAccessAudits(SearchCriteria searchCriteria) {
 		Map<String, Object> paramList = searchCriteria.getParamList();
 		updateUserExclusion(paramList);
 
+		String            searchKey  = getSearchKey(searchCriteria);
+		VXAccessAuditList cachedList = getCachedSearchResult(searchKey);
+		if (cachedList != null) {
+			return cachedList;
+		}
+
 		SearchResponse response;
 		try {
-			response = elasticSearchUtil.searchResources(searchCriteria, searchFields, sortFields, client, elasticSearchMgr.index);
-		} catch (IOException e) {
+			response = executeSearch(searchCriteria, () -> elasticSearchUtil.searchResources(searchCriteria, searchFields, sortFields, client, elasticSearchMgr.index));
+		} catch (WebApplicationException e) {
+			throw e;
+		} catch (IllegalArgumentException e) {
+			LOGGER.warn(String.format("ElasticSearch query failed: %s", e.getMessage()));
+			throw restErrorUtil.createRESTException(
+					e.getMessage(),
+					MessageEnums.INVALID_INPUT_DATA);
+		} catch (Exception e) {
 			LOGGER.warn(String.format("ElasticSearch query failed: %s", e.getMessage()));
 			throw restErrorUtil.createRESTException(
 					"Error querying search engine",
@@ -128,6 +143,15 @@ public VXAccessAuditList searchXAccessAudits(SearchCriteria searchCriteria) {
 		returnList.setTotalCount(response.getHits().getTotalHits().value);
 		returnList.setStartIndex(searchCriteria.getStartIndex());
 		returnList.setVXAccessAudits(xAccessAuditList);
+
+		Object cursor = paramList.get(PARAM_CURSOR);
+		if (cursor != null && !cursor.toString().isEmpty()) {
+			SearchHit[] hits = response.getHits().getHits();
+			returnList.setNextCursor(hits.length > 0 ? elasticSearchUtil.encodeCursor(hits[hits.length - 1].getSortValues()) : cursor.toString());
+		}
+
+		cacheSearchResult(searchKey, returnList);
+
 		return returnList;
 	}
 
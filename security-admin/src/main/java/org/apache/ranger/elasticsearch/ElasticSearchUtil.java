@@ -19,6 +19,7 @@
 
 package org.apache.ranger.elasticsearch;
 
+import org.apache.ranger.AccessAuditsService;
 import org.apache.ranger.common.*;
 import org.apache.solr.client.solrj.util.ClientUtils;
 import org.elasticsearch.action.get.MultiGetItemResponse;
@@ -41,6 +42,7 @@
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -51,6 +53,8 @@
 public class ElasticSearchUtil {
     private static final Logger logger = LoggerFactory.getLogger(ElasticSearchUtil.class);
 
+    private static final String AUDIT_EVENT_ID_FIELD = "id";
+
     @Autowired
     StringUtil stringUtil;
 
@@ -70,6 +74,13 @@ public ElasticSearchUtil() {
     }
 
     public SearchResponse searchResources(SearchCriteria searchCriteria, List<SearchField> searchFields, List<SortField> sortFields, RestHighLevelClient client, String index) throws IOException {
+        SearchRequest query = new SearchRequest();
+        query.indices(index);
+        query.source(buildSearchSource(searchCriteria, searchFields, sortFields));
+        return client.search(query, RequestOptions.DEFAULT);
+    }
+
+    SearchSourceBuilder buildSearchSource(SearchCriteria searchCriteria, List<SearchField> searchFields, List<SortField> sortFields) {
         // See Also: https://www.elastic.co/guide/en/elasticsearch/client/java-rest/current/java-rest-high-query-builders.html
         QueryAccumulator queryAccumulator = new QueryAccumulator(searchCriteria);
         if (searchCriteria.getParamList() != null) {
@@ -85,13 +96,20 @@ public SearchResponse searchResources(SearchCriteria searchCriteria, List<Search
         queryAccumulator.queries.stream().filter(x -> x != null).forEach(boolQueryBuilder::must);
         SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
         setSortClause(searchCriteria, sortFields, searchSourceBuilder);
-        searchSourceBuilder.from(searchCriteria.getStartIndex());
+        Object cursor = searchCriteria.getParamValue(AccessAuditsService.PARAM_CURSOR);
+        if (cursor != null && !cursor.toString().isEmpty()) {
+            // search_after needs a unique tie-breaker after the requested sort (evtTime by default): the event id,
+            // which is indexed as keyword with doc_values. _id is not used as sorting on it loads fielddata on every shard
+            searchSourceBuilder.sort(AUDIT_EVENT_ID_FIELD, SortOrder.ASC);
+            if (!AccessAuditsService.CURSOR_START.equals(cursor.toString())) {
+                searchSourceBuilder.searchAfter(decodeCursor(cursor.toString()));
+            }
+        } else {
+            searchSourceBuilder.from(searchCriteria.getStartIndex());
+        }
         searchSourceBuilder.size(searchCriteria.getMaxRows());
         searchSourceBuilder.fetchSource(true);
-        SearchRequest query = new SearchRequest();
-        query.indices(index);
-        query.source(searchSourceBuilder.query(boolQueryBuilder));
-        return client.search(query, RequestOptions.DEFAULT);
+        return searchSourceBuilder.query(boolQueryBuilder);
     }
 
     public void setSortClause(SearchCriteria searchCriteria,
@@ -136,6 +154,70 @@ public void setSortClause(SearchCriteria searchCriteria,
         }
     }
 
+    /*
+     * cursor is the sort values of the last hit of a page, each value encoded as type:base64(value)
+     */
+    public String encodeCursor(Object[] sortValues) {
+        if (sortValues == null || sortValues.length == 0) {
+            return null;
+        }
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        StringBuilder  sb      = new StringBuilder();
+        for (Object value : sortValues) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            final char type;
+            if (value == null) {
+                type = 'n';
+            } else if (value instanceof Long) {
+                type = 'l';
+            } else if (value instanceof Integer) {
+                type = 'i';
+            } else if (value instanceof Double) {
+                type = 'd';
+            } else if (value instanceof Float) {
+                type = 'f';
+            } else if (value instanceof Boolean) {
+                type = 'b';
+            } else {
+                type = 's';
+            }
+            sb.append(type).append(':');
+            if (value != null) {
+                sb.append(encoder.encodeToString(value.toString().getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+        return sb.toString();
+    }
+
+    public Object[] decodeCursor(String cursor) {
+        Base64.Decoder decoder = Base64.getUrlDecoder();
+        String[]       items   = cursor.split(",");
+        Object[]       ret     = new Object[items.length];
+        try {
+            for (int i = 0; i < items.length; i++) {
+                String item = items[i];
+                if (item.length() < 2 || item.charAt(1) != ':') {
+                    throw new IllegalArgumentException("invalid cursor: " + cursor);
+                }
+                String value = new String(decoder.decode(item.substring(2)), StandardCharsets.UTF_8);
+                switch (item.charAt(0)) {
+                    case 'n': ret[i] = null; break;
+                    case 'l': ret[i] = Long.valueOf(value); break;
+                    case 'i': ret[i] = Integer.valueOf(value); break;
+                    case 'd': ret[i] = Double.valueOf(value); break;
+                    case 'f': ret[i] = Float.valueOf(value); break;
+                    case 'b': ret[i] = Boolean.valueOf(value); break;
+                    default:  ret[i] = value; break;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor, e);
+        }
+        return ret;
+    }
+
     public QueryBuilder orList(String fieldName, Collection<?> valueList) {
         if (valueList == null || valueList.isEmpty()) {
             return null;
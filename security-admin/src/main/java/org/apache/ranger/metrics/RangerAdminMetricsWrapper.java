@@ -28,6 +28,7 @@
 
 import org.apache.ranger.metrics.source.RangerAdminMetricsSourceContextEnricher;
 import org.apache.ranger.metrics.source.RangerAdminMetricsSourceDenyConditions;
+import org.apache.ranger.metrics.source.RangerAdminMetricsSourcePluginInfo;
 import org.apache.ranger.metrics.source.RangerAdminMetricsSourcePolicyMasking;
 import org.apache.ranger.metrics.source.RangerAdminMetricsSourcePolicyResourceAccess;
 import org.apache.ranger.metrics.source.RangerAdminMetricsSourcePolicyRowFiltering;
@@ -67,6 +68,9 @@ public class RangerAdminMetricsWrapper {
     @Autowired
     private RangerAdminMetricsSourceDenyConditions denyConditionSource;
 
+    @Autowired
+    private RangerAdminMetricsSourcePluginInfo pluginInfoSource;
+
     @PostConstruct
     public void init() {
         LOG.info("===>> RangerAdminMetricsWrapper.init()");
@@ -91,6 +95,9 @@ public void init() {
             //Source: DenyConditionService
             sourceWrappers.add(new RangerMetricsSourceWrapper("RangerAdminMetricsSourceDenyConditionService", "Deny Condition in Ranger Admin", context, denyConditionSource));
 
+            //Source: PluginInfo
+            sourceWrappers.add(new RangerMetricsSourceWrapper("RangerAdminMetricsSourcePluginInfo", "Plugin activity and plugin-info writer metrics in Ranger Admin", context, pluginInfoSource));
+
             rangerMetricsSystemWrapper.init(context, sourceWrappers, Collections.emptyList());
         } catch (Exception e) {
             LOG.error("RangerAdminMetricsWrapper: Exception occured while initializing Metric Starter:", e);
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.metrics.source;
+
+import java.util.Map;
+
+import org.apache.ranger.service.RangerPluginInfoService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class RangerAdminMetricsSourcePluginInfo extends RangerAdminMetricsSourceBase {
+
+    @Autowired
+    private RangerPluginInfoService pluginInfoService;
+
+    public RangerAdminMetricsSourcePluginInfo() {
+        super("admin", "PluginInfo");
+    }
+
+    @Override
+    protected void refresh() {
+        Map<String, Long> pluginInfoMetrics = pluginInfoService.getPluginInfoMetrics();
+        addMetricEntries("PluginInfo", pluginInfoMetrics);
+    }
+}
@@ -43,6 +43,7 @@
 import javax.ws.rs.core.Response;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.ranger.AccessAuditsService;
 import org.apache.ranger.admin.client.datatype.RESTResponse;
 import org.apache.ranger.biz.AssetMgr;
 import org.apache.ranger.biz.RangerBizUtil;
@@ -723,6 +724,8 @@ public VXAccessAuditList getAccessLogs(@Context HttpServletRequest request){
 		searchUtil.extractString(request, searchCriteria, "agentHost", "Agent Host Name", StringUtil.VALIDATION_TEXT);
 
 		searchUtil.extractString(request, searchCriteria, "eventId", "Event Id", null);
+		searchUtil.extractString(request, searchCriteria, AccessAuditsService.PARAM_CURSOR, "Cursor", null);
+		searchUtil.extractString(request, searchCriteria, AccessAuditsService.PARAM_SEARCH_ID, "Search Id", StringUtil.VALIDATION_NAME);
 
 		boolean isKeyAdmin = msBizUtil.isKeyAdmin();
 		boolean isAuditKeyAdmin = msBizUtil.isAuditKeyAdmin();
@@ -735,6 +738,15 @@ else if (xxServiceDef != null) {
 		}
 		return assetMgr.getAccessLogs(searchCriteria);
 	}
+
+	@DELETE
+	@Path("/accessAudit/search/{searchId}")
+	@PreAuthorize("@rangerPreAuthSecurityHandler.isAPIAccessible(\"" + RangerAPIList.GET_ACCESS_LOGS + "\")")
+	public void cancelAccessLogSearch(@PathParam("searchId") String searchId) {
+		if (!assetMgr.cancelAccessLogSearch(searchId)) {
+			throw restErrorUtil.createRESTException(HttpServletResponse.SC_NOT_FOUND, "No running access-log search with id " + searchId, true);
+		}
+	}
 	
 	@POST
 	@Path("/resources/grant")
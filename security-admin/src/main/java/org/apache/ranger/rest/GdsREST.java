@@ -27,6 +27,7 @@
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.RangerSearchUtil;
 import org.apache.ranger.common.ServiceUtil;
+import org.apache.ranger.common.ServiceVersionInfoCache;
 import org.apache.ranger.plugin.model.RangerGds.RangerDataset;
 import org.apache.ranger.plugin.model.RangerGds.RangerDatasetInProject;
 import org.apache.ranger.plugin.model.RangerGds.RangerDataShareInDataset;
@@ -109,6 +110,9 @@ public class GdsREST {
     @Autowired
     AssetMgr assetMgr;
 
+    @Autowired
+    ServiceVersionInfoCache serviceVersionInfoCache;
+
 
     @POST
     @Path("/dataset")
@@ -1549,7 +1553,11 @@ public ServiceGdsInfo getServiceGdsInfoIfUpdated(@PathParam("serviceName") Strin
 
             boolean isValid = serviceUtil.isValidateHttpsAuthentication(serviceName, request);
 
-            if (isValid) {
+            if (isValid && serviceVersionInfoCache.isGdsVersionUnchanged(serviceName, lastKnownVersion)) {
+                downloadedVersion = lastKnownVersion;
+                httpCode          = HttpServletResponse.SC_NOT_MODIFIED;
+                logMsg            = "No change since last update";
+            } else if (isValid) {
                 ret = gdsStore.getGdsInfoIfUpdated(serviceName, lastKnownVersion);
 
                 if (ret == null) {
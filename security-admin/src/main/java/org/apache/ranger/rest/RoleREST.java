@@ -49,6 +49,7 @@
 import org.apache.ranger.common.RangerSearchUtil;
 import org.apache.ranger.common.RangerValidatorFactory;
 import org.apache.ranger.common.ServiceUtil;
+import org.apache.ranger.common.ServiceVersionInfoCache;
 import org.apache.ranger.common.UserSessionBase;
 import org.apache.ranger.common.PropertiesUtil;
 import org.apache.ranger.common.AppConstants;
@@ -137,6 +138,9 @@ public class RoleREST {
     @Autowired
     XUserMgr userMgr;
 
+    @Autowired
+    ServiceVersionInfoCache serviceVersionInfoCache;
+
     static {
         INVALID_USERS.add(RangerPolicyEngine.USER_CURRENT);
         INVALID_USERS.add(RangerPolicyEngine.RESOURCE_OWNER);
@@ -991,7 +995,15 @@ public RangerRoles getRangerRolesIfUpdated(
 
         try {
             bizUtil.failUnauthenticatedDownloadIfNotAllowed();
+
             isValid = serviceUtil.isValidService(serviceName, request);
+
+            if (isValid && serviceVersionInfoCache.isRoleVersionUnchanged(serviceName, lastKnownRoleVersion)) {
+                isValid           = false;
+                downloadedVersion = lastKnownRoleVersion;
+                httpCode          = HttpServletResponse.SC_NOT_MODIFIED;
+                logMsg            = "No change since last update";
+            }
         } catch (WebApplicationException webException) {
             httpCode = webException.getResponse().getStatus();
             logMsg = webException.getResponse().getEntity().toString();
@@ -1095,7 +1107,12 @@ public RangerRoles getSecureRangerRolesIfUpdated(
                 }
 
                 if (isAllowed) {
-                    RangerRoles roles = roleStore.getRoles(serviceName, lastKnownRoleVersion);
+                    RangerRoles roles = null;
+
+                    if (!serviceVersionInfoCache.isRoleVersionUnchanged(serviceName, lastKnownRoleVersion)) {
+                        roles = roleStore.getRoles(serviceName, lastKnownRoleVersion);
+                    }
+
                     if (roles == null) {
                         downloadedVersion = lastKnownRoleVersion;
                         httpCode = HttpServletResponse.SC_NOT_MODIFIED;
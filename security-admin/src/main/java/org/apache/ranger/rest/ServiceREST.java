@@ -24,6 +24,12 @@
 import java.security.SecureRandom;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 import javax.annotation.Nonnull;
@@ -75,6 +81,7 @@
 import org.apache.ranger.common.RangerSearchUtil;
 import org.apache.ranger.common.RangerValidatorFactory;
 import org.apache.ranger.common.ServiceUtil;
+import org.apache.ranger.common.ServiceVersionInfoCache;
 import org.apache.ranger.common.SortField.SORT_ORDER;
 import org.apache.ranger.common.UserSessionBase;
 import org.apache.ranger.common.db.RangerTransactionSynchronizationAdapter;
@@ -88,6 +95,7 @@
 import org.apache.ranger.entity.XXServiceDef;
 import org.apache.ranger.entity.XXTrxLog;
 import org.apache.ranger.entity.XXRole;
+import org.apache.ranger.plugin.errors.ValidationErrorCode;
 import org.apache.ranger.plugin.model.*;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
@@ -113,6 +121,7 @@
 import org.apache.ranger.plugin.util.ServicePolicies;
 import org.apache.ranger.security.context.RangerAPIList;
 import org.apache.ranger.security.context.RangerContextHolder;
+import org.apache.ranger.security.context.RangerSecurityContext;
 import org.apache.ranger.security.web.filter.RangerCSRFPreventionFilter;
 import org.apache.ranger.service.RangerPluginInfoService;
 import org.apache.ranger.service.RangerPolicyLabelsService;
@@ -132,13 +141,16 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Scope;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.google.gson.JsonSyntaxException;
 import com.sun.jersey.core.header.FormDataContentDisposition;
@@ -242,6 +254,13 @@ public class ServiceREST {
 	@Autowired
 	RangerTransactionSynchronizationAdapter rangerTransactionSynchronizationAdapter;
 
+	@Autowired
+	ServiceVersionInfoCache serviceVersionInfoCache;
+
+	@Autowired
+	@Qualifier(value = "transactionManager")
+	PlatformTransactionManager txManager;
+
 	private RangerPolicyEngineOptions delegateAdminOptions;
 	private RangerPolicyEngineOptions policySearchAdminOptions;
 	private RangerPolicyEngineOptions defaultAdminOptions;
@@ -249,6 +268,10 @@ public class ServiceREST {
 
 	private final int maxPolicyNameLength = config.getInt("ranger.policyname.maxlength", 255);
 	private final boolean isPolicyNameLengthValidationEnabled = config.getBoolean("ranger.policyname.maxlength.validation.enabled", true);
+	private final int policyImportValidationThreads = config.getInt("ranger.admin.policy.import.validation.threads", 4);
+	private static volatile ExecutorService policyImportValidatorExecutor = null;
+
+	private final boolean isPolicyImportVersionUpdateDeferred = config.getBoolean("ranger.admin.policy.import.defer.version.update", true);
 
 	public ServiceREST() {
 	}
@@ -2299,6 +2322,8 @@ public void importPoliciesFromFile(
 		}
 
 		RangerContextHolder.getOrCreateOpContext().setBulkModeContext(true);
+		RangerContextHolder.getOrCreateOpContext().setDeferPolicyVersionUpdate(isPolicyImportVersionUpdateDeferred);
+		RangerContextHolder.getOrCreateOpContext().setCacheServiceDefRefIds(true);
 
 		RangerPerfTracer perf = null;
 		String metaDataInfo = null;
@@ -2410,6 +2435,8 @@ public void importPoliciesFromFile(
 					}
 					boolean deleteIfExists=("true".equalsIgnoreCase(StringUtils.trimToEmpty(request.getParameter(PARAM_DELETE_IF_EXISTS)))) ? true : false ;
 					boolean updateIfExists=("true".equalsIgnoreCase(StringUtils.trimToEmpty(request.getParameter(PARAM_UPDATE_IF_EXISTS)))) ? true : false ;
+					boolean mergeIfExists = "true".equalsIgnoreCase(StringUtils.trimToEmpty(request.getParameter(PARAM_MERGE_IF_EXISTS)));
+					boolean isPoliciesDeleted = false;
 					String polResource = request.getParameter(SearchFilter.POL_RESOURCE);
 					if (updateIfExists) {
 						isOverride = false;
@@ -2422,6 +2449,7 @@ public void importPoliciesFromFile(
 						}
 						if (CollectionUtils.isNotEmpty(sourceServices) && CollectionUtils.isNotEmpty(destinationServices)) {
 							deletePoliciesProvidedInServiceMap(sourceServices, destinationServices,destinationZoneName);//In order to delete Zone specific policies from service
+							isPoliciesDeleted = true;
 						}
 					} else if (updateIfExists && StringUtils.isNotEmpty(polResource)) {
 						if (LOG.isDebugEnabled()) {
@@ -2452,12 +2480,30 @@ public void importPoliciesFromFile(
 						}
 					}
 
-					totalPolicyCreate = createPolicesBasedOnPolicyMap(request,policiesMap, serviceNameList, updateIfExists, totalPolicyCreate);
+					LOG.info("importPoliciesFromFile(): importing {} policies from file {}", policiesMap.size(), fileName);
+
+					// policies that are only to be created are validated upfront, in parallel unless policies were deleted in this transaction
+					boolean isPreValidated = !updateIfExists && !mergeIfExists && !deleteIfExists;
+
+					if (isPreValidated) {
+						validatePoliciesForImport(policiesMap.values(), serviceNameList, !isPoliciesDeleted);
+					}
+
+					long startTime      = System.currentTimeMillis();
+					int  principalCount = svcStore.resolvePolicyPrincipals(policiesMap.values());
+
+					LOG.info("importPoliciesFromFile(): resolved {} users/groups/roles in {} ms", principalCount, System.currentTimeMillis() - startTime);
+
+					totalPolicyCreate = createPolicesBasedOnPolicyMap(request,policiesMap, serviceNameList, updateIfExists, isPreValidated, totalPolicyCreate);
 					if(!(totalPolicyCreate > 0)){
 						LOG.error("zero policy is created from provided data file!!");
 						throw restErrorUtil.createRESTException("zero policy is created from provided data file!!");
 					}
 
+					int serviceCount = svcStore.applyDeferredPolicyVersionUpdates();
+
+					LOG.info("importPoliciesFromFile(): imported {} policies; policy version will be updated for {} services", totalPolicyCreate, serviceCount);
+
 				} catch (IOException e) {
 					LOG.error(e.getMessage());
 					throw restErrorUtil.createRESTException(e.getMessage());
@@ -2497,6 +2543,9 @@ public void importPoliciesFromFile(
 			bizUtil.createTrxLog(trxLogListError);
 			throw restErrorUtil.createRESTException(excp.getMessage());
 		} finally {
+			RangerContextHolder.getOrCreateOpContext().setDeferPolicyVersionUpdate(false);
+			RangerContextHolder.getOrCreateOpContext().clearPrincipalIds();
+			RangerContextHolder.getOrCreateOpContext().setCacheServiceDefRefIds(false);
 			RangerPerfTracer.log(perf);
 			List<XXTrxLog> trxLogListEnd = new ArrayList<XXTrxLog>();
 			XXTrxLog xxTrxLogEnd = new XXTrxLog();
@@ -2514,10 +2563,13 @@ public void importPoliciesFromFile(
 	}
 	
 	private int createPolicesBasedOnPolicyMap(HttpServletRequest request, Map<String, RangerPolicy> policiesMap,
-			List<String> serviceNameList, boolean updateIfExists, int totalPolicyCreate) {
+			List<String> serviceNameList, boolean updateIfExists, boolean isPreValidated, int totalPolicyCreate) {
 		boolean mergeIfExists  = "true".equalsIgnoreCase(StringUtils.trimToEmpty(request.getParameter(PARAM_MERGE_IF_EXISTS)))  ? true : false;
 		boolean deleteIfExists = "true".equalsIgnoreCase(StringUtils.trimToEmpty(request.getParameter(PARAM_DELETE_IF_EXISTS))) ? true : false;
 		if (!CollectionUtils.sizeIsEmpty(policiesMap.entrySet())) {
+			long startTime     = System.currentTimeMillis();
+			int  reportedCount = 0;
+
 			for (Entry<String, RangerPolicy> entry : policiesMap.entrySet()) {
 				RangerPolicy policy = entry.getValue();
 				if (policy != null){
@@ -2546,6 +2598,8 @@ private int createPolicesBasedOnPolicyMap(HttpServletRequest request, Map<String
 										} else {
 											createPolicy(policy, request);
 										}
+									} else if (isPreValidated) {
+										createPreValidatedPolicy(policy);
 									} else {
 										createPolicy(policy, request);
 									}
@@ -2582,6 +2636,8 @@ private int createPolicesBasedOnPolicyMap(HttpServletRequest request, Map<String
 							} else {
 								createPolicy(policy, request);
 							}
+						} else if (isPreValidated) {
+							createPreValidatedPolicy(policy);
 						} else {
 							createPolicy(policy, request);
 						}
@@ -2593,12 +2649,16 @@ private int createPolicesBasedOnPolicyMap(HttpServletRequest request, Map<String
 				}
 				if(totalPolicyCreate % RangerBizUtil.policyBatchSize == 0) {
 					bizUtil.bulkModeOnlyFlushAndClear();
+
+					if (totalPolicyCreate > reportedCount) {
+						reportedCount = totalPolicyCreate;
+
+						LOG.info("importPoliciesFromFile(): created {} of {} policies in {} ms", totalPolicyCreate, policiesMap.size(), System.currentTimeMillis() - startTime);
+					}
 				}
 			}
 			bizUtil.bulkModeOnlyFlushAndClear();
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("Total Policy Created From Json file : " + totalPolicyCreate);
-			}
+			LOG.info("importPoliciesFromFile(): created {} of {} policies in {} ms", totalPolicyCreate, policiesMap.size(), System.currentTimeMillis() - startTime);
 		}
 		return totalPolicyCreate;
 	}
@@ -2822,21 +2882,13 @@ private List<RangerPolicy> getAllFilteredPolicyList(SearchFilter filter,
 				&& "full".equalsIgnoreCase(request.getParameter("resourceMatch"))) {
 			policyLists = serviceUtil.getMatchingPoliciesForResource(request, policyLists);
 		}
-		Map<Long, RangerPolicy> orderedPolicies = new TreeMap<Long, RangerPolicy>();
-		
+		// the list holds references to the policies in RangerServicePoliciesCache; they are only ordered by ID and
+		// de-duplicated here, not copied or modified - createTime/updateTime are left out by the JSON export writer
 		if (!CollectionUtils.isEmpty(policyLists)) {
-			for (RangerPolicy policy : policyLists) {
-				if (policy != null) {
-					//set createTime & updateTime Time as null since exported policies dont need this
-					policy.setCreateTime(null);
-					policy.setUpdateTime(null);
-					orderedPolicies.put(policy.getId(), policy);
-				}
-			}
-			if (!orderedPolicies.isEmpty()) {
-				policyLists.clear();
-				policyLists.addAll(orderedPolicies.values());
-			}
+			Set<Long> policyIds = new HashSet<>();
+
+			policyLists.removeIf(policy -> policy == null || !policyIds.add(policy.getId()));
+			policyLists.sort(Comparator.comparing(RangerPolicy::getId));
 		}
 		return policyLists;
 	}
@@ -3171,6 +3223,15 @@ public ServicePolicies getServicePoliciesIfUpdated(
 			bizUtil.failUnauthenticatedDownloadIfNotAllowed();
 
 			isValid = serviceUtil.isValidateHttpsAuthentication(serviceName, request);
+
+			if (isValid && serviceVersionInfoCache.isPolicyVersionUnchanged(serviceName, lastKnownVersion)) {
+				isValid           = false;
+				downloadedVersion = lastKnownVersion;
+				httpCode          = HttpServletResponse.SC_NOT_MODIFIED;
+				logMsg            = "No change since last update";
+
+				createPolicyDownloadAudit(serviceName, lastKnownVersion, pluginId, httpCode, clusterName, zoneName, request);
+			}
 		} catch (WebApplicationException webException) {
 			httpCode = webException.getResponse().getStatus();
 			logMsg = webException.getResponse().getEntity().toString();
@@ -3293,7 +3354,10 @@ public ServicePolicies getSecureServicePoliciesIfUpdated(
 					}
 				}
 				if (isAllowed) {
-					ret  = svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion, !supportsPolicyDeltas);
+					if (!serviceVersionInfoCache.isSecurePolicyVersionUnchanged(serviceName, lastKnownVersion)) {
+						ret = svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion, !supportsPolicyDeltas);
+					}
+
 					if (ret == null) {
 						downloadedVersion = lastKnownVersion;
 						httpCode = HttpServletResponse.SC_NOT_MODIFIED;
@@ -4526,6 +4590,34 @@ private RangerPolicy createPolicyUnconditionally(RangerPolicy policy) throws Exc
 			LOG.debug("==> ServiceREST.createPolicyUnconditionally( "+ policy +")");
 		}
 		RangerPolicy ret = null;
+
+		validatePolicyForCreate(policy);
+
+		bizUtil.blockAuditorRoleUser();
+
+		ret = svcStore.createPolicy(policy);
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("<== ServiceREST.createPolicyUnconditionally( " + ret + ")");
+		}
+
+		return ret;
+	}
+
+	private RangerPolicy createPreValidatedPolicy(RangerPolicy policy) {
+		try {
+			bizUtil.blockAuditorRoleUser();
+
+			return svcStore.createPolicy(policy);
+		} catch(WebApplicationException excp) {
+			throw excp;
+		} catch(Throwable excp) {
+			LOG.error("createPolicy(" + policy + ") failed", excp);
+
+			throw restErrorUtil.createRESTException(excp.getMessage());
+		}
+	}
+
+	private void validatePolicyForCreate(RangerPolicy policy) throws Exception {
 		if (StringUtils.isBlank(policy.getName())) {
 			String guid = policy.getGuid();
 			if (StringUtils.isBlank(guid)) {
@@ -4551,11 +4643,147 @@ private RangerPolicy createPolicyUnconditionally(RangerPolicy policy) throws Exc
 		validator.validate(policy, Action.CREATE, bizUtil.isAdmin() || isServiceAdmin(policy.getService()) || isZoneAdmin(policy.getZoneName()));
 
 		ensureAdminAccess(policy);
-		bizUtil.blockAuditorRoleUser();
+	}
 
-		ret = svcStore.createPolicy(policy);
-		if(LOG.isDebugEnabled()) {
-			LOG.debug("<== ServiceREST.createPolicyUnconditionally( " + ret + ")");
+	/*
+	 * Validates the policies to be created by an import before any of them is created. Validation, which reads the
+	 * existing policies, users and service-defs, is done by a pool of threads - each in its own read-only transaction;
+	 * hence it can run in parallel only when no policy was updated or deleted earlier in the import transaction.
+	 */
+	private void validatePoliciesForImport(Collection<RangerPolicy> policies, List<String> serviceNameList, boolean allowParallel) throws Exception {
+		long               startTime   = System.currentTimeMillis();
+		List<RangerPolicy> toValidate  = new ArrayList<>();
+
+		for (RangerPolicy policy : policies) {
+			if (policy != null && StringUtils.isNotBlank(policy.getService()) && isServiceSelected(policy.getService(), serviceNameList)) {
+				toValidate.add(policy);
+			}
+		}
+
+		int threadCount = allowParallel ? Math.min(policyImportValidationThreads, (toValidate.size() + RangerBizUtil.policyBatchSize - 1) / RangerBizUtil.policyBatchSize) : 1;
+
+		if (threadCount <= 1) {
+			for (RangerPolicy policy : toValidate) {
+				validatePolicyForCreate(policy);
+			}
+		} else {
+			RangerSecurityContext securityContext = RangerContextHolder.getSecurityContext();
+			ExecutorService       executor        = getPolicyImportValidatorExecutor(policyImportValidationThreads);
+			List<Future<Void>>    results         = new ArrayList<>();
+
+			try {
+				for (int i = 0; i < toValidate.size(); i += RangerBizUtil.policyBatchSize) {
+					List<RangerPolicy> batch = toValidate.subList(i, Math.min(i + RangerBizUtil.policyBatchSize, toValidate.size()));
+
+					results.add(executor.submit(() -> validatePoliciesInReadOnlyTransaction(batch, securityContext)));
+				}
+
+				for (Future<Void> result : results) {
+					try {
+						result.get();
+					} catch (ExecutionException excp) {
+						Throwable cause = excp.getCause();
+
+						throw (cause instanceof Exception) ? (Exception) cause : excp;
+					}
+				}
+			} finally {
+				// on failure, don't let the remaining batches of this import hold the shared validator threads
+				for (Future<Void> result : results) {
+					result.cancel(true);
+				}
+			}
+		}
+
+		// policies in the file are not visible to the validator; ensure that they don't conflict with each other
+		Map<String, String> policyNameBySignature = new HashMap<>();
+
+		for (RangerPolicy policy : toValidate) {
+			String key          = policy.getService() + "|" + new RangerPolicyResourceSignature(policy).getSignature();
+			String existingName = policyNameBySignature.put(key, policy.getName());
+
+			if (existingName != null) {
+				throw restErrorUtil.createRESTException(ValidationErrorCode.POLICY_VALIDATION_ERR_DUPLICATE_POLICY_RESOURCE.getMessage(existingName, policy.getService()));
+			}
+		}
+
+		LOG.info("importPoliciesFromFile(): validated {} policies in {} ms (threads={})", toValidate.size(), System.currentTimeMillis() - startTime, threadCount);
+	}
+
+	/*
+	 * Policy import validators are shared by all imports in this process, so that concurrent imports don't add up
+	 * to an unbounded number of threads; idle threads time out.
+	 */
+	private static ExecutorService getPolicyImportValidatorExecutor(int threadCount) {
+		ExecutorService ret = policyImportValidatorExecutor;
+
+		if (ret == null) {
+			synchronized (ServiceREST.class) {
+				ret = policyImportValidatorExecutor;
+
+				if (ret == null) {
+					ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+						Thread t = new Thread(r, "PolicyImportValidator");
+
+						t.setDaemon(true);
+
+						return t;
+					});
+
+					executor.allowCoreThreadTimeOut(true);
+
+					ret                           = executor;
+					policyImportValidatorExecutor = ret;
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private Void validatePoliciesInReadOnlyTransaction(List<RangerPolicy> policies, RangerSecurityContext securityContext) throws Exception {
+		RangerContextHolder.setSecurityContext(securityContext);
+
+		try {
+			TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+
+			txTemplate.setReadOnly(true);
+
+			Exception failure = txTemplate.execute(status -> {
+				try {
+					for (RangerPolicy policy : policies) {
+						validatePolicyForCreate(policy);
+					}
+
+					return null;
+				} catch (Exception excp) {
+					status.setRollbackOnly();
+
+					return excp;
+				}
+			});
+
+			if (failure != null) {
+				throw failure;
+			}
+		} finally {
+			RangerContextHolder.resetSecurityContext();
+		}
+
+		return null;
+	}
+
+	private boolean isServiceSelected(String serviceName, List<String> serviceNameList) {
+		boolean ret = CollectionUtils.isEmpty(serviceNameList);
+
+		if (!ret) {
+			for (String service : serviceNameList) {
+				if (StringUtils.isNotEmpty(service.trim()) && serviceName.trim().equalsIgnoreCase(service.trim())) {
+					ret = true;
+
+					break;
+				}
+			}
 		}
 
 		return ret;
@@ -29,6 +29,7 @@
 import org.apache.ranger.common.MessageEnums;
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.RangerSearchUtil;
+import org.apache.ranger.common.ServiceVersionInfoCache;
 import org.apache.ranger.db.RangerDaoManager;
 import org.apache.ranger.entity.XXService;
 import org.apache.ranger.entity.XXServiceDef;
@@ -128,6 +129,9 @@ public class TagREST {
     @Autowired
     RangerTagResourceMapService rangerTagResourceMapService;
 
+    @Autowired
+    ServiceVersionInfoCache serviceVersionInfoCache;
+
     public TagREST() {
 	}
 
@@ -1352,8 +1356,12 @@ public void importServiceTags(ServiceTags serviceTags) {
         }
 
         try {
-            ServiceTagsProcessor serviceTagsProcessor = new ServiceTagsProcessor(tagStore);
-            serviceTagsProcessor.process(serviceTags);
+            boolean isImported = tagStore.isBulkImportSupported(serviceTags) && tagStore.bulkImportServiceTags(serviceTags);
+
+            if (!isImported) {
+                ServiceTagsProcessor serviceTagsProcessor = new ServiceTagsProcessor(tagStore);
+                serviceTagsProcessor.process(serviceTags);
+            }
         } catch (Exception excp) {
             LOG.error("importServiceTags() failed", excp);
 
@@ -1400,7 +1408,9 @@ public ServiceTags getServiceTagsIfUpdated(@PathParam("serviceName") String serv
         try {
             bizUtil.failUnauthenticatedDownloadIfNotAllowed();
 
-            ret = tagStore.getServiceTagsIfUpdated(serviceName, lastKnownVersion, !supportsTagDeltas);
+            if (!serviceVersionInfoCache.isTagVersionUnchanged(serviceName, lastKnownVersion)) {
+                ret = tagStore.getServiceTagsIfUpdated(serviceName, lastKnownVersion, !supportsTagDeltas);
+            }
 
             if (ret == null) {
                 downloadedVersion = lastKnownVersion;
@@ -1491,7 +1501,9 @@ public ServiceTags getSecureServiceTagsIfUpdated(@PathParam("serviceName") Strin
         		}
         	}
         	if (isAllowed) {
-	            ret = tagStore.getServiceTagsIfUpdated(serviceName, lastKnownVersion, !supportsTagDeltas);
+	            if (!serviceVersionInfoCache.isTagVersionUnchanged(serviceName, lastKnownVersion)) {
+	                ret = tagStore.getServiceTagsIfUpdated(serviceName, lastKnownVersion, !supportsTagDeltas);
+	            }
 
 				if(ret == null) {
                     downloadedVersion = lastKnownVersion;
@@ -19,6 +19,9 @@
 
 package org.apache.ranger.rest;
 
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.Set;
 import java.util.Map;
 import java.util.List;
@@ -49,7 +52,9 @@
 import org.apache.ranger.biz.AssetMgr;
 import org.apache.ranger.biz.ServiceDBStore;
 import org.apache.ranger.common.ServiceUtil;
+import org.apache.ranger.common.ServiceVersionInfoCache;
 import org.apache.ranger.common.ContextUtil;
+import org.apache.ranger.common.JsonLinesIterator;
 import org.apache.ranger.common.MessageEnums;
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.RangerConstants;
@@ -66,6 +71,7 @@
 import org.apache.ranger.plugin.model.RangerPrincipal;
 import org.apache.ranger.plugin.model.RangerService;
 import org.apache.ranger.plugin.store.EmbeddedServiceDefsUtil;
+import org.apache.ranger.plugin.util.RangerPluginCapability;
 import org.apache.ranger.plugin.util.RangerRESTUtils;
 import org.apache.ranger.plugin.util.RangerUserStore;
 import org.apache.ranger.security.context.RangerAPIList;
@@ -168,6 +174,9 @@ public class XUserREST {
 	@Autowired
 	ServiceDBStore svcStore;
 
+	@Autowired
+	ServiceVersionInfoCache serviceVersionInfoCache;
+
 
 	static final Logger logger = LoggerFactory.getLogger(XUserMgr.class);
 
@@ -1447,6 +1456,13 @@ public RangerUserStore getRangerUserStoreIfUpdated(@PathParam("serviceName") Str
             bizUtil.failUnauthenticatedDownloadIfNotAllowed();
 
             isValid = serviceUtil.isValidService(serviceName, request);
+
+            if (isValid && serviceVersionInfoCache.isUserStoreVersionUnchanged(serviceName, lastKnownUserStoreVersion)) {
+                isValid           = false;
+                downloadedVersion = lastKnownUserStoreVersion;
+                httpCode          = HttpServletResponse.SC_NOT_MODIFIED;
+                logMsg            = "No change since last update";
+            }
         } catch (WebApplicationException webException) {
             httpCode = webException.getResponse().getStatus();
             logMsg   = webException.getResponse().getEntity().toString();
@@ -1461,7 +1477,7 @@ public RangerUserStore getRangerUserStoreIfUpdated(@PathParam("serviceName") Str
 
                 if (xService != null) {
 
-                    RangerUserStore rangerUserStore = xUserMgr.getRangerUserStoreIfUpdated(lastKnownUserStoreVersion);
+                    RangerUserStore rangerUserStore = xUserMgr.getRangerUserStoreIfUpdated(lastKnownUserStoreVersion, isUserStoreDeltaSupported(pluginCapabilities));
 
                     if (rangerUserStore == null) {
                         downloadedVersion = lastKnownUserStoreVersion;
@@ -1544,7 +1560,12 @@ public RangerUserStore getSecureRangerUserStoreIfUpdated(@PathParam("serviceName
 				}
 
 				if (isAllowed) {
-					RangerUserStore rangerUserStore = xUserMgr.getRangerUserStoreIfUpdated(lastKnownUserStoreVersion);
+					RangerUserStore rangerUserStore = null;
+
+					if (!serviceVersionInfoCache.isUserStoreVersionUnchanged(serviceName, lastKnownUserStoreVersion)) {
+						rangerUserStore = xUserMgr.getRangerUserStoreIfUpdated(lastKnownUserStoreVersion, isUserStoreDeltaSupported(pluginCapabilities));
+					}
+
 					if (rangerUserStore == null) {
 						downloadedVersion = lastKnownUserStoreVersion;
 						httpCode = HttpServletResponse.SC_NOT_MODIFIED;
@@ -1591,6 +1612,14 @@ public VXUgsyncAuditInfo postUserGroupAuditInfo(VXUgsyncAuditInfo vxUgsyncAuditI
 		return xUserMgr.postUserGroupAuditInfo(vxUgsyncAuditInfo);
 	}
 
+	@GET
+	@Path("/ugsync/userstore/version")
+	@Produces({ "application/json" })
+	@PreAuthorize("hasRole('ROLE_SYS_ADMIN')")
+	public Long getUserStoreVersion() {
+		return xUserMgr.getUserStoreVersion();
+	}
+
 	@GET
 	@Path("/ugsync/groupusers")
 	@Produces({ "application/json" })
@@ -1629,6 +1658,37 @@ public int addOrUpdateGroupUsersList(List<GroupUserInfo> groupUserInfoList) {
 		return xUserMgr.createOrDeleteXGroupUserList(groupUserInfoList);
 	}
 
+	@POST
+	@Path("/ugsync/users/stream")
+	@Consumes({ JsonLinesIterator.MEDIA_TYPE })
+	@Produces({ "application/json" })
+	@PreAuthorize("hasRole('ROLE_SYS_ADMIN')")
+	@Transactional(readOnly = false, propagation = Propagation.NOT_SUPPORTED)
+	public String addOrUpdateUsers(InputStream users) {
+		int ret = xUserMgr.createOrUpdateXUsers(readJsonLines(users, VXUser.class));
+		return String.valueOf(ret);
+	}
+
+	@POST
+	@Path("/ugsync/groups/stream")
+	@Consumes({ JsonLinesIterator.MEDIA_TYPE })
+	@Produces({ "application/json" })
+	@PreAuthorize("hasRole('ROLE_SYS_ADMIN')")
+	@Transactional(readOnly = false, propagation = Propagation.NOT_SUPPORTED)
+	public int addOrUpdateGroups(InputStream groups) {
+		return xUserMgr.createOrUpdateXGroups(readJsonLines(groups, VXGroup.class));
+	}
+
+	@POST
+	@Path("/ugsync/groupusers/stream")
+	@Consumes({ JsonLinesIterator.MEDIA_TYPE })
+	@Produces({ "application/json" })
+	@PreAuthorize("hasRole('ROLE_SYS_ADMIN')")
+	@Transactional(readOnly = false, propagation = Propagation.NOT_SUPPORTED)
+	public int addOrUpdateGroupUsersList(InputStream groupUserInfos) {
+		return xUserMgr.createOrDeleteXGroupUserList(readJsonLines(groupUserInfos, GroupUserInfo.class));
+	}
+
 	@POST
 	@Path("/users/roleassignments")
 	@Produces({ "application/json" })
@@ -1654,4 +1714,38 @@ public int updateDeletedGroups(Set<String> deletedGroups){
 	public int updateDeletedUsers(Set<String> deletedUsers){
 		return xUserMgr.updateDeletedUsers(deletedUsers);
 	}
+
+	private boolean isUserStoreDeltaSupported(String pluginCapabilities) {
+		boolean ret = false;
+
+		if (StringUtils.isNotEmpty(pluginCapabilities)) {
+			try {
+				ret = new RangerPluginCapability(Long.parseLong(pluginCapabilities, 16)).isSupported(RangerPluginCapability.RangerPluginFeature.RANGER_PLUGIN_CAPABILITY_USERSTORE_DELTAS);
+			} catch (NumberFormatException excp) {
+				logger.warn("invalid pluginCapabilities: {}", pluginCapabilities);
+			}
+		}
+
+		return ret;
+	}
+
+	private <T> Iterator<T> readJsonLines(InputStream in, Class<T> clazz) {
+		final JsonLinesIterator<T> iter = new JsonLinesIterator<>(in, clazz);
+
+		return new Iterator<T>() {
+			@Override
+			public boolean hasNext() {
+				try {
+					return iter.hasNext();
+				} catch (IllegalArgumentException | UncheckedIOException excp) {
+					throw restErrorUtil.createRESTException(HttpServletResponse.SC_BAD_REQUEST, excp.getMessage(), true);
+				}
+			}
+
+			@Override
+			public T next() {
+				return iter.next();
+			}
+		};
+	}
 }
@@ -20,11 +20,21 @@
 package org.apache.ranger.security.context;
 
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 public class RangerAdminOpContext implements Serializable {
 	private static final long serialVersionUID = 1L;
 	private boolean bulkModeContext = false;
 	private Boolean createPrincipalsIfAbsent = null;
+	private boolean deferPolicyVersionUpdate = false;
+	private final Set<Long> deferredPolicyVersionServiceIds = new HashSet<>();
+	private final Set<Long> deferredRoleVersionServiceIds = new HashSet<>();
+	private final Map<String, Long> principalIds = new HashMap<>();
+	private boolean cacheServiceDefRefIds = false;
+	private final Map<String, Map<String, Long>> serviceDefRefIds = new HashMap<>();
 
 	public boolean isBulkModeContext() {
 		return bulkModeContext;
@@ -41,4 +51,52 @@ public Boolean getCreatePrincipalsIfAbsent() {
 	public void setCreatePrincipalsIfAbsent(Boolean createPrincipalsIfAbsent) {
 		this.createPrincipalsIfAbsent = createPrincipalsIfAbsent;
 	}
+
+	public boolean isDeferPolicyVersionUpdate() {
+		return deferPolicyVersionUpdate;
+	}
+
+	public void setDeferPolicyVersionUpdate(boolean deferPolicyVersionUpdate) {
+		this.deferPolicyVersionUpdate = deferPolicyVersionUpdate;
+	}
+
+	public Set<Long> getDeferredPolicyVersionServiceIds() {
+		return deferredPolicyVersionServiceIds;
+	}
+
+	public Set<Long> getDeferredRoleVersionServiceIds() {
+		return deferredRoleVersionServiceIds;
+	}
+
+	public Long getPrincipalId(String principalType, String principalName) {
+		return principalIds.get(principalType + ":" + principalName);
+	}
+
+	public void setPrincipalId(String principalType, String principalName, Long principalId) {
+		principalIds.put(principalType + ":" + principalName, principalId);
+	}
+
+	public void clearPrincipalIds() {
+		principalIds.clear();
+	}
+
+	public boolean isCacheServiceDefRefIds() {
+		return cacheServiceDefRefIds;
+	}
+
+	public void setCacheServiceDefRefIds(boolean cacheServiceDefRefIds) {
+		this.cacheServiceDefRefIds = cacheServiceDefRefIds;
+
+		if (!cacheServiceDefRefIds) {
+			serviceDefRefIds.clear();
+		}
+	}
+
+	public Map<String, Long> getServiceDefRefIds(String refType, Long serviceDefId) {
+		return serviceDefRefIds.get(refType + ":" + serviceDefId);
+	}
+
+	public void setServiceDefRefIds(String refType, Long serviceDefId, Map<String, Long> refIds) {
+		serviceDefRefIds.put(refType + ":" + serviceDefId, refIds);
+	}
 }
@@ -20,12 +20,20 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.ranger.authorization.hadoop.config.RangerAdminConfig;
 import org.apache.ranger.biz.RangerBizUtil;
 import org.apache.ranger.common.JSONUtil;
 import org.apache.ranger.common.RangerSearchUtil;
@@ -42,8 +50,16 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
 
@@ -52,6 +68,16 @@ public class RangerPluginInfoService {
 
 	private static final Logger LOG = LoggerFactory.getLogger(RangerPluginInfoService.class);
 
+	public static final String PROP_BATCH_WRITE_ENABLED           = "ranger.plugin.activity.audit.batch.enabled";
+	public static final String PROP_BATCH_WRITE_FLUSH_INTERVAL_MS = "ranger.plugin.activity.audit.batch.flush.interval.ms";
+	public static final String PROP_BATCH_WRITE_MAX_PENDING       = "ranger.plugin.activity.audit.batch.max.pending";
+
+	private static final long     DEFAULT_FLUSH_INTERVAL_MS = 10 * 1000L;
+	private static final int      DEFAULT_MAX_PENDING       = 10000;
+	private static final long     ACTIVITY_RETENTION_MS     = 24 * 60 * 60 * 1000L;
+	private static final long[]   FRESHNESS_BUCKETS_MS      = { 60 * 1000L, 5 * 60 * 1000L, 15 * 60 * 1000L, 60 * 60 * 1000L };
+	private static final String[] FRESHNESS_BUCKET_NAMES    = { "ActiveIn1Min", "ActiveIn5Min", "ActiveIn15Min", "ActiveIn1Hour" };
+
 	@Autowired
 	RangerSearchUtil searchUtil;
 
@@ -64,9 +90,29 @@ public class RangerPluginInfoService {
 	@Autowired
 	RangerDaoManager daoManager;
 
+	@Autowired
+	@Qualifier(value = "transactionManager")
+	PlatformTransactionManager txManager;
+
 	private List<SortField> sortFields = new ArrayList<SortField>();
 	private List<SearchField> searchFields = new ArrayList<SearchField>();
 
+	// pending plugin-info writes, by plugin (service, host, appType) in arrival order; guarded by pendingWritesLock
+	private final    Object                            pendingWritesLock   = new Object();
+	private          Map<String, PendingPluginWrites>  pendingWrites       = new LinkedHashMap<>();
+	private          int                               pendingWriteCount   = 0;
+	private final    Map<String, Long>        lastActivityTimes   = new ConcurrentHashMap<>();
+	private final    AtomicLong               receivedCount       = new AtomicLong();
+	private final    AtomicLong               coalescedCount      = new AtomicLong();
+	private final    AtomicLong               writtenCount        = new AtomicLong();
+	private final    AtomicLong               failedCount         = new AtomicLong();
+	private volatile long                     lastFlushTime       = 0;
+	private volatile long                     lastFlushDuration   = 0;
+	private          boolean                  isBatchWriteEnabled = false;
+	private          long                     flushIntervalMs     = DEFAULT_FLUSH_INTERVAL_MS;
+	private          int                      maxPendingWrites    = DEFAULT_MAX_PENDING;
+	private          ScheduledExecutorService flushExecutor       = null;
+
 	RangerPluginInfoService() {
 
 		searchFields.add(new SearchField(SearchFilter.SERVICE_NAME, "obj.serviceName", SearchField.DATA_TYPE.STRING, SearchField.SEARCH_TYPE.FULL));
@@ -80,6 +126,230 @@ public class RangerPluginInfoService {
 
 	}
 
+	@PostConstruct
+	public void init() {
+		RangerAdminConfig config = RangerAdminConfig.getInstance();
+
+		isBatchWriteEnabled = config.getBoolean(PROP_BATCH_WRITE_ENABLED, true);
+		flushIntervalMs     = config.getLong(PROP_BATCH_WRITE_FLUSH_INTERVAL_MS, DEFAULT_FLUSH_INTERVAL_MS);
+		maxPendingWrites    = config.getInt(PROP_BATCH_WRITE_MAX_PENDING, DEFAULT_MAX_PENDING);
+
+		if (flushIntervalMs <= 0) {
+			isBatchWriteEnabled = false;
+		}
+
+		LOG.info("{}={}", PROP_BATCH_WRITE_ENABLED, isBatchWriteEnabled);
+		LOG.info("{}={}", PROP_BATCH_WRITE_FLUSH_INTERVAL_MS, flushIntervalMs);
+		LOG.info("{}={}", PROP_BATCH_WRITE_MAX_PENDING, maxPendingWrites);
+
+		if (isBatchWriteEnabled) {
+			flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "PluginInfoBatchWriter");
+
+				t.setDaemon(true);
+
+				return t;
+			});
+
+			flushExecutor.scheduleWithFixedDelay(this::flushPendingWrites, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (flushExecutor != null) {
+			flushExecutor.shutdown();
+
+			try {
+				flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+			} catch (InterruptedException excp) {
+				LOG.warn("RangerPluginInfoService.destroy(): interrupted while waiting for batch writer to stop");
+			}
+
+			flushExecutor = null;
+
+			flushPendingWrites();
+		}
+	}
+
+	public boolean isBatchWriteEnabled() {
+		return isBatchWriteEnabled;
+	}
+
+	/**
+	 * Records that the given plugin contacted Ranger Admin; used only for plugin freshness metrics.
+	 */
+	public void recordPluginActivity(RangerPluginInfo pluginInfo) {
+		lastActivityTimes.put(getPluginKey(pluginInfo), System.currentTimeMillis());
+	}
+
+	/**
+	 * Queues the given plugin-info write to be executed in the next batch, once the current transaction completes.
+	 * An earlier pending update for the same plugin and entity-type is replaced by the given one, as the later
+	 * write carries the latest state; a delete is never merged with updates, so that the writes for a plugin are
+	 * executed in the order they were received.
+	 */
+	public void scheduleWrite(RangerPluginInfo pluginInfo, int entityType, boolean isDelete, Runnable writer) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			// responses like 304 roll back the request transaction, hence queue on completion rather than on commit
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					addPendingWrite(pluginInfo, entityType, isDelete, writer);
+				}
+			});
+		} else {
+			addPendingWrite(pluginInfo, entityType, isDelete, writer);
+		}
+	}
+
+	public Map<String, Long> getPluginInfoMetrics() {
+		Map<String, Long> ret          = new LinkedHashMap<>();
+		long              now          = System.currentTimeMillis();
+		long[]            activeCounts = new long[FRESHNESS_BUCKETS_MS.length];
+		int               pendingCount;
+
+		synchronized (pendingWritesLock) {
+			pendingCount = pendingWriteCount;
+		}
+
+		for (Long lastActivityTime : lastActivityTimes.values()) {
+			long elapsed = now - lastActivityTime;
+
+			for (int i = 0; i < FRESHNESS_BUCKETS_MS.length; i++) {
+				if (elapsed <= FRESHNESS_BUCKETS_MS[i]) {
+					activeCounts[i]++;
+				}
+			}
+		}
+
+		ret.put("PluginCount", (long) lastActivityTimes.size());
+
+		for (int i = 0; i < FRESHNESS_BUCKETS_MS.length; i++) {
+			ret.put(FRESHNESS_BUCKET_NAMES[i], activeCounts[i]);
+		}
+
+		ret.put("WritesReceived", receivedCount.get());
+		ret.put("WritesCoalesced", coalescedCount.get());
+		ret.put("WritesCompleted", writtenCount.get());
+		ret.put("WritesFailed", failedCount.get());
+		ret.put("WritesPending", (long) pendingCount);
+		ret.put("LastFlushAgeMs", lastFlushTime > 0 ? (now - lastFlushTime) : -1L);
+		ret.put("LastFlushDurationMs", lastFlushDuration);
+
+		return ret;
+	}
+
+	void flushPendingWrites() {
+		final List<Runnable> writes;
+
+		synchronized (pendingWritesLock) {
+			if (pendingWrites.isEmpty()) {
+				writes = null;
+			} else {
+				writes = new ArrayList<>(pendingWriteCount);
+
+				for (PendingPluginWrites pluginWrites : pendingWrites.values()) {
+					writes.addAll(pluginWrites.writes);
+				}
+
+				pendingWrites     = new LinkedHashMap<>();
+				pendingWriteCount = 0;
+			}
+		}
+
+		long startTime = System.currentTimeMillis();
+
+		if (writes != null) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("==> RangerPluginInfoService.flushPendingWrites(count=" + writes.size() + ")");
+			}
+
+			int chunkSize = Math.max(1, RangerBizUtil.batchPersistSize);
+
+			for (int fromIdx = 0; fromIdx < writes.size(); fromIdx += chunkSize) {
+				List<Runnable> chunk = writes.subList(fromIdx, Math.min(fromIdx + chunkSize, writes.size()));
+
+				try {
+					executeInTransaction(chunk);
+
+					writtenCount.addAndGet(chunk.size());
+				} catch (Throwable excp) {
+					LOG.warn("RangerPluginInfoService.flushPendingWrites(): batch of " + chunk.size() + " writes failed; retrying individually", excp);
+
+					// one failed write, for example a concurrent insert by another Ranger Admin instance, rolls back the whole batch
+					for (Runnable write : chunk) {
+						try {
+							executeInTransaction(Collections.singletonList(write));
+
+							writtenCount.incrementAndGet();
+						} catch (Throwable excp2) {
+							failedCount.incrementAndGet();
+
+							LOG.error("RangerPluginInfoService.flushPendingWrites(): failed to write plugin-info", excp2);
+						}
+					}
+				}
+			}
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("<== RangerPluginInfoService.flushPendingWrites(count=" + writes.size() + "): timeTaken=" + (System.currentTimeMillis() - startTime) + "ms");
+			}
+		}
+
+		lastFlushTime     = startTime;
+		lastFlushDuration = System.currentTimeMillis() - startTime;
+
+		lastActivityTimes.values().removeIf(lastActivityTime -> (startTime - lastActivityTime) > ACTIVITY_RETENTION_MS);
+	}
+
+	private void addPendingWrite(RangerPluginInfo pluginInfo, int entityType, boolean isDelete, Runnable writer) {
+		boolean flushNeeded;
+
+		synchronized (pendingWritesLock) {
+			PendingPluginWrites pluginWrites = pendingWrites.computeIfAbsent(getPluginKey(pluginInfo), k -> new PendingPluginWrites());
+
+			if (pluginWrites.add(entityType, isDelete, writer)) {
+				coalescedCount.incrementAndGet();
+			} else {
+				pendingWriteCount++;
+			}
+
+			flushNeeded = pendingWriteCount >= maxPendingWrites;
+		}
+
+		receivedCount.incrementAndGet();
+
+		if (flushNeeded && flushExecutor != null) {
+			try {
+				flushExecutor.execute(this::flushPendingWrites);
+			} catch (Exception excp) {
+				LOG.warn("RangerPluginInfoService.scheduleWrite(): failed to schedule flush", excp);
+			}
+		}
+	}
+
+	private void executeInTransaction(List<Runnable> writes) {
+		TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+
+		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+		txTemplate.execute(status -> {
+			for (Runnable write : writes) {
+				write.run();
+			}
+
+			// flush within the transaction so that EclipseLink sends the statements as a JDBC batch
+			daoManager.getXXPluginInfo().flush();
+
+			return null;
+		});
+	}
+
+	private static String getPluginKey(RangerPluginInfo pluginInfo) {
+		return pluginInfo.getServiceName() + "|" + pluginInfo.getHostName() + "|" + pluginInfo.getAppType();
+	}
+
 	public List<SearchField> getSearchFields() {
 		return searchFields;
 	}
@@ -316,4 +586,47 @@ private Map<String, String> jsonStringToMap(String jsonStr, XXServiceVersionInfo
 
 		return ret;
 	}
-}
\ No newline at end of file
+
+	/*
+	 * Pending writes of a plugin, in the order received. Updates since the last delete are coalesced per
+	 * entity-type; consecutive deletes are coalesced into one. Not thread-safe; guarded by pendingWritesLock.
+	 */
+	private static class PendingPluginWrites {
+		final List<Runnable>        writes            = new ArrayList<>();
+		final Map<Integer, Integer> updateIdxByEntity = new HashMap<>();
+		boolean                     isLastDelete      = false;
+
+		// returns true if the write replaced an earlier pending write
+		boolean add(int entityType, boolean isDelete, Runnable writer) {
+			final boolean ret;
+
+			if (isDelete) {
+				ret = isLastDelete;
+
+				if (ret) {
+					writes.set(writes.size() - 1, writer);
+				} else {
+					writes.add(writer);
+				}
+
+				updateIdxByEntity.clear();
+			} else {
+				Integer idx = updateIdxByEntity.get(entityType);
+
+				ret = idx != null;
+
+				if (ret) {
+					writes.set(idx, writer);
+				} else {
+					updateIdxByEntity.put(entityType, writes.size());
+
+					writes.add(writer);
+				}
+			}
+
+			isLastDelete = isDelete;
+
+			return ret;
+		}
+	}
+}
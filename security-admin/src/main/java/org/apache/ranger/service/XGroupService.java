@@ -142,6 +142,49 @@ public VXGroup createXGroupWithOutLogin(VXGroup vxGroup) {
 		return vxGroup;
 	}
 
+	/*
+	 * creates or updates the given groups, looking up the existing ones with a single query; unlike
+	 * createXGroupWithOutLogin(), doesn't read back the groups after write
+	 */
+	public int createOrUpdateXGroupsWithOutLogin(List<VXGroup> vxGroups) {
+		List<String>         groupNames     = new ArrayList<>(vxGroups.size());
+		Map<String, XXGroup> existingGroups = new HashMap<>();
+
+		for (VXGroup vxGroup : vxGroups) {
+			groupNames.add(vxGroup.getName());
+		}
+
+		for (XXGroup xxGroup : daoManager.getXXGroup().findByGroupNames(groupNames)) {
+			existingGroups.put(xxGroup.getName(), xxGroup);
+		}
+
+		boolean setCreatedBy = daoManager.getXXPortalUser().getById(createdByUserId) != null;
+
+		for (VXGroup vxGroup : vxGroups) {
+			XXGroup xxGroup     = existingGroups.get(vxGroup.getName());
+			boolean groupExists = xxGroup != null;
+
+			if (!groupExists) {
+				xxGroup = new XXGroup();
+			}
+
+			xxGroup = mapViewToEntityBean(vxGroup, xxGroup, 0);
+
+			if (setCreatedBy) {
+				xxGroup.setAddedByUserId(createdByUserId);
+				xxGroup.setUpdatedByUserId(createdByUserId);
+			}
+
+			if (groupExists) {
+				getDao().update(xxGroup);
+			} else {
+				existingGroups.put(vxGroup.getName(), getDao().create(xxGroup));
+			}
+		}
+
+		return vxGroups.size();
+	}
+
 	public VXGroup readResourceWithOutLogin(Long id) {
 		XXGroup resource = getDao().getById(id);
 		if (resource == null) {
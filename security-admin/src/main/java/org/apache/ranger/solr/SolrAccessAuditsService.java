@@ -23,6 +23,9 @@
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+
+import javax.ws.rs.WebApplicationException;
+
 import org.apache.ranger.AccessAuditsService;
 import org.apache.ranger.audit.provider.MiscUtil;
 import org.apache.ranger.common.MessageEnums;
@@ -86,8 +89,24 @@ public VXAccessAuditList searchXAccessAudits(SearchCriteria searchCriteria) {
 
 		updateUserExclusion(paramList);
 
-		QueryResponse response = solrUtil.searchResources(searchCriteria,
-				searchFields, sortFields, solrClient);
+		String            searchKey  = getSearchKey(searchCriteria);
+		VXAccessAuditList cachedList = getCachedSearchResult(searchKey);
+		if (cachedList != null) {
+			return cachedList;
+		}
+
+		QueryResponse response;
+		try {
+			response = executeSearch(searchCriteria, () -> solrUtil.searchResources(searchCriteria,
+					searchFields, sortFields, solrClient));
+		} catch (WebApplicationException e) {
+			throw e;
+		} catch (Exception e) {
+			LOGGER.warn("Solr query failed", e);
+			throw restErrorUtil.createRESTException(
+					"Error running solr query, please check solr configs. " + e.getMessage(),
+					MessageEnums.ERROR_SYSTEM);
+		}
 		SolrDocumentList docs = response.getResults();
 		for (int i = 0; i < docs.size(); i++) {
 			SolrDocument doc = docs.get(i);
@@ -117,6 +136,10 @@ else if("hive".equalsIgnoreCase(vXAccessAudit.getServiceType()) && ("grant".equa
 		returnList.setTotalCount((int) docs.getNumFound());
 		returnList.setStartIndex((int) docs.getStart());
 		returnList.setVXAccessAudits(xAccessAuditList);
+		returnList.setNextCursor(response.getNextCursorMark());
+
+		cacheSearchResult(searchKey, returnList);
+
 		return returnList;
 	}
 
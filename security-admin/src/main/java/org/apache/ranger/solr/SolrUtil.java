@@ -25,6 +25,7 @@
 import java.util.List;
 import java.util.TimeZone;
 
+import org.apache.ranger.AccessAuditsService;
 import org.apache.ranger.common.MessageEnums;
 import org.apache.ranger.common.PropertiesUtil;
 import org.apache.ranger.common.RESTErrorUtil;
@@ -40,6 +41,7 @@
 import org.apache.solr.client.solrj.request.QueryRequest;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -156,7 +158,16 @@ public QueryResponse searchResources(SearchCriteria searchCriteria,
 		}
 
 		setSortClause(searchCriteria, sortFieldList, query);
-		query.setStart(searchCriteria.getStartIndex());
+
+		Object cursorMark = searchCriteria.getParamValue(AccessAuditsService.PARAM_CURSOR);
+		if (cursorMark != null && !cursorMark.toString().isEmpty()) {
+			// cursorMark requires the uniqueKey in sort, as tie-breaker; start must be 0
+			query.addSort("id", ORDER.asc);
+			query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark.toString());
+			query.setStart(0);
+		} else {
+			query.setStart(searchCriteria.getStartIndex());
+		}
 		query.setRows(searchCriteria.getMaxRows());
 
 		// Fields to get
@@ -171,7 +171,8 @@ public Set<String> getRolesForUser(String userName) {
 
     public Set<String> getRolesForUserAndGroups(String userName, Collection<String> groups) {
         RangerRolesUtil rolesUtil = initGetRolesUtil();
-        Set<String>     ret       = getRolesForUser(userName);
+        Set<String>     userRoles = getRolesForUser(userName);
+        Set<String>     ret       = userRoles != null ? new HashSet<>(userRoles) : null; // roles in rolesUtil are unmodifiable
 
         if (rolesUtil != null) {
             final Map<String, Set<String>> groupRoleMapping = rolesUtil.getGroupRoleMapping();
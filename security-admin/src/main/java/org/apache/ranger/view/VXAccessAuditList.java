@@ -37,6 +37,7 @@
 public class VXAccessAuditList extends VList {
 	private static final long serialVersionUID = 1L;
     List<VXAccessAudit> vXAccessAudits = new ArrayList<VXAccessAudit>();
+    String nextCursor;
 
     public VXAccessAuditList() {
 	super();
@@ -62,6 +63,21 @@ public void setVXAccessAudits(List<VXAccessAudit> vXAccessAudits) {
 	this.vXAccessAudits = vXAccessAudits;
     }
 
+    /**
+     * @return the cursor to fetch the page following this one; set only for cursor based searches
+     */
+    public String getNextCursor() {
+	return nextCursor;
+    }
+
+    /**
+     * @param nextCursor
+     *            the nextCursor to set
+     */
+    public void setNextCursor(String nextCursor) {
+	this.nextCursor = nextCursor;
+    }
+
     @Override
     public int getListSize() {
 	if (vXAccessAudits != null) {
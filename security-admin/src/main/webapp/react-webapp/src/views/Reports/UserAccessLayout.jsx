@@ -453,7 +453,7 @@ function UserAccessLayout() {
     let fileExtension;
 
     if (exportType === "downloadExcel") {
-      fileExtension = ".xls";
+      fileExtension = ".xlsx";
     } else if (exportType === "csv") {
       fileExtension = ".csv";
     } else {
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.biz;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.entity.XXAccessTypeDef;
+import org.apache.ranger.entity.XXPolicy;
+import org.apache.ranger.entity.XXResourceDef;
+import org.apache.ranger.entity.XXServiceDef;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.security.context.RangerContextHolder;
+import org.apache.ranger.service.RangerAuditFields;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Answers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestPolicyRefUpdater {
+
+	@InjectMocks
+	PolicyRefUpdater policyRefUpdater = new PolicyRefUpdater();
+
+	@Mock(answer = Answers.RETURNS_DEEP_STUBS)
+	RangerDaoManager daoMgr;
+
+	@Mock
+	RangerAuditFields<?> rangerAuditFields;
+
+	@Before
+	public void setup() {
+		RangerContextHolder.getOrCreateOpContext().setCacheServiceDefRefIds(true);
+	}
+
+	@After
+	public void tearDown() {
+		RangerContextHolder.resetOpContext();
+	}
+
+	@Test
+	public void test1ResolveServiceDefRefsOncePerServiceDef() throws Exception {
+		XXServiceDef xServiceDef = serviceDef();
+
+		Mockito.when(rangerAuditFields.populateAuditFields(Mockito.any(), Mockito.any())).then(AdditionalAnswers.returnsFirstArg());
+		Mockito.when(daoMgr.getXXResourceDef().findByServiceDefId(xServiceDef.getId())).thenReturn(Collections.singletonList(resourceDef(11L, "path")));
+		Mockito.when(daoMgr.getXXAccessTypeDef().findByServiceDefId(xServiceDef.getId())).thenReturn(Arrays.asList(accessTypeDef(21L, "read"), accessTypeDef(22L, "write")));
+
+		policyRefUpdater.createNewPolMappingForRefTable(policy(1L, "path", "read"), xPolicy(1L), xServiceDef, false);
+		policyRefUpdater.createNewPolMappingForRefTable(policy(2L, "path", "write"), xPolicy(2L), xServiceDef, false);
+
+		Mockito.verify(daoMgr.getXXResourceDef()).findByServiceDefId(xServiceDef.getId());
+		Mockito.verify(daoMgr.getXXAccessTypeDef()).findByServiceDefId(xServiceDef.getId());
+		Mockito.verify(daoMgr.getXXResourceDef(), Mockito.never()).findByNameAndPolicyId(Mockito.anyString(), Mockito.anyLong());
+		Mockito.verify(daoMgr.getXXAccessTypeDef(), Mockito.never()).findByNameAndServiceId(Mockito.anyString(), Mockito.anyLong());
+	}
+
+	@Test
+	public void test2RejectUnknownResourceWithCachedRefs() {
+		XXServiceDef xServiceDef = serviceDef();
+
+		Mockito.when(daoMgr.getXXResourceDef().findByServiceDefId(xServiceDef.getId())).thenReturn(Collections.singletonList(resourceDef(11L, "path")));
+
+		try {
+			policyRefUpdater.createNewPolMappingForRefTable(policy(1L, "table", "read"), xPolicy(1L), xServiceDef, false);
+
+			Assert.fail("expected failure for unknown resource-type");
+		} catch (Exception excp) {
+			Assert.assertTrue(excp.getMessage(), excp.getMessage().startsWith("table: is not a valid resource-type"));
+		}
+	}
+
+	@Test
+	public void test3RejectUnknownAccessTypeWithCachedRefs() {
+		XXServiceDef xServiceDef = serviceDef();
+
+		Mockito.when(rangerAuditFields.populateAuditFields(Mockito.any(), Mockito.any())).then(AdditionalAnswers.returnsFirstArg());
+		Mockito.when(daoMgr.getXXResourceDef().findByServiceDefId(xServiceDef.getId())).thenReturn(Collections.singletonList(resourceDef(11L, "path")));
+		Mockito.when(daoMgr.getXXAccessTypeDef().findByServiceDefId(xServiceDef.getId())).thenReturn(Collections.singletonList(accessTypeDef(21L, "read")));
+
+		try {
+			policyRefUpdater.createNewPolMappingForRefTable(policy(1L, "path", "execute"), xPolicy(1L), xServiceDef, false);
+
+			Assert.fail("expected failure for unknown access-type");
+		} catch (Exception excp) {
+			Assert.assertTrue(excp.getMessage(), excp.getMessage().startsWith("execute: is not a valid access-type"));
+		}
+	}
+
+	@Test
+	public void test4LookupPerPolicyWithoutCache() throws Exception {
+		RangerContextHolder.getOrCreateOpContext().setCacheServiceDefRefIds(false);
+
+		XXServiceDef xServiceDef = serviceDef();
+
+		Mockito.when(daoMgr.getXXResourceDef().findByNameAndPolicyId("path", 1L)).thenReturn(null);
+
+		try {
+			policyRefUpdater.createNewPolMappingForRefTable(policy(1L, "path", "read"), xPolicy(1L), xServiceDef, false);
+
+			Assert.fail("expected failure for unknown resource-type");
+		} catch (Exception excp) {
+			Assert.assertTrue(excp.getMessage(), excp.getMessage().startsWith("path: is not a valid resource-type"));
+		}
+
+		Mockito.verify(daoMgr.getXXResourceDef(), Mockito.never()).findByServiceDefId(Mockito.anyLong());
+	}
+
+	private RangerPolicy policy(Long id, String resourceName, String accessType) {
+		RangerPolicy     ret        = new RangerPolicy();
+		RangerPolicyItem policyItem = new RangerPolicyItem();
+
+		policyItem.setAccesses(Collections.singletonList(new RangerPolicyItemAccess(accessType)));
+
+		ret.setId(id);
+		ret.setName("policy-" + id);
+		ret.setService("hdfsdev");
+		ret.setResources(Collections.singletonMap(resourceName, new RangerPolicyResource("/data")));
+		ret.setPolicyItems(Collections.singletonList(policyItem));
+
+		return ret;
+	}
+
+	private XXPolicy xPolicy(Long id) {
+		XXPolicy ret = new XXPolicy();
+
+		ret.setId(id);
+		ret.setService(1L);
+
+		return ret;
+	}
+
+	private XXServiceDef serviceDef() {
+		XXServiceDef ret = new XXServiceDef();
+
+		ret.setId(1L);
+		ret.setName("hdfs");
+
+		return ret;
+	}
+
+	private XXResourceDef resourceDef(Long id, String name) {
+		XXResourceDef ret = new XXResourceDef();
+
+		ret.setId(id);
+		ret.setName(name);
+
+		return ret;
+	}
+
+	private XXAccessTypeDef accessTypeDef(Long id, String name) {
+		XXAccessTypeDef ret = new XXAccessTypeDef();
+
+		ret.setId(id);
+		ret.setName(name);
+
+		return ret;
+	}
+}
@@ -19,6 +19,8 @@
 
 import static org.mockito.ArgumentMatchers.anyString;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -26,7 +28,13 @@
 import java.util.List;
 import java.util.Map;
 
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.commons.collections.ListUtils;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.ranger.common.ContextUtil;
 import org.apache.ranger.common.GUIDUtil;
 import org.apache.ranger.common.JSONUtil;
@@ -56,6 +64,7 @@
 import org.apache.ranger.plugin.store.ServicePredicateUtil;
 import org.apache.ranger.plugin.util.SearchFilter;
 import org.apache.ranger.plugin.util.ServicePolicies;
+import org.apache.ranger.security.context.RangerAdminOpContext;
 import org.apache.ranger.security.context.RangerContextHolder;
 import org.apache.ranger.security.context.RangerSecurityContext;
 import org.apache.ranger.service.RangerAuditFields;
@@ -66,6 +75,7 @@
 import org.apache.ranger.service.RangerServiceWithAssignedIdService;
 import org.apache.ranger.service.XGroupService;
 import org.apache.ranger.service.XUserService;
+import org.apache.ranger.view.RangerExportPolicyList;
 import org.apache.ranger.view.RangerPolicyList;
 import org.apache.ranger.view.RangerServiceDefList;
 import org.apache.ranger.view.RangerServiceList;
@@ -73,6 +83,7 @@
 import org.apache.ranger.view.VXString;
 import org.apache.ranger.view.VXUser;
 import org.apache.ranger.view.VXUserList;
+import com.google.gson.GsonBuilder;
 import org.junit.Assert;
 import org.junit.FixMethodOrder;
 import org.junit.Rule;
@@ -2681,4 +2692,148 @@ public void test53GetPolicyByGUIDAndZoneName() throws Exception {
 		Mockito.verify(xPolicyDao).findPolicyByGUIDAndServiceNameAndZoneName(rangerPolicy.getGuid(), null, zoneName);
 		Mockito.verify(policyService).getPopulatedViewObject(xPolicy);
 	}
+
+	@Test
+	public void test54ApplyDeferredPolicyVersionUpdates() {
+		RangerAdminOpContext opContext = RangerContextHolder.getOrCreateOpContext();
+
+		try {
+			opContext.setDeferPolicyVersionUpdate(true);
+			opContext.getDeferredPolicyVersionServiceIds().add(1L);
+			opContext.getDeferredPolicyVersionServiceIds().add(2L);
+			opContext.getDeferredRoleVersionServiceIds().add(1L);
+
+			int serviceCount = serviceDBStore.applyDeferredPolicyVersionUpdates();
+
+			Assert.assertEquals(2, serviceCount);
+			Assert.assertFalse(opContext.isDeferPolicyVersionUpdate());
+			Assert.assertTrue(opContext.getDeferredPolicyVersionServiceIds().isEmpty());
+			Assert.assertTrue(opContext.getDeferredRoleVersionServiceIds().isEmpty());
+			Mockito.verify(transactionSynchronizationAdapter, Mockito.times(3)).executeOnTransactionCommit(Mockito.any(ServiceDBStore.ServiceVersionUpdater.class));
+		} finally {
+			RangerContextHolder.resetOpContext();
+		}
+	}
+
+	@Test
+	public void test55GetObjectInJsonStreamsPolicies() throws Exception {
+		final ByteArrayOutputStream content  = new ByteArrayOutputStream();
+		HttpServletResponse         response = Mockito.mock(HttpServletResponse.class);
+		List<RangerPolicy>          policies = new ArrayList<>();
+
+		policies.add(rangerPolicy());
+		policies.add(rangerPolicy());
+		policies.get(1).setId(2L);
+
+		Mockito.when(response.getOutputStream()).thenReturn(servletOutputStream(content));
+
+		serviceDBStore.getObjectInJson(policies, response, ServiceDBStore.JSON_FILE_NAME_TYPE.POLICY);
+
+		RangerExportPolicyList exported = new GsonBuilder().create().fromJson(content.toString("UTF-8"), RangerExportPolicyList.class);
+
+		Assert.assertEquals(2, exported.getPolicies().size());
+		Assert.assertEquals(Long.valueOf(2L), exported.getPolicies().get(1).getId());
+		Assert.assertNull(exported.getPolicies().get(0).getCreateTime());
+		Assert.assertNull(exported.getPolicies().get(0).getUpdateTime());
+		Assert.assertNotNull("exported policies must not be modified", policies.get(0).getCreateTime());
+		Assert.assertFalse(exported.getMetaDataInfo().isEmpty());
+	}
+
+	@Test
+	public void test56ApplyDeferredPolicyVersionUpdatesWithNothingDeferred() {
+		RangerAdminOpContext opContext = RangerContextHolder.getOrCreateOpContext();
+
+		try {
+			opContext.setDeferPolicyVersionUpdate(true);
+
+			int serviceCount = serviceDBStore.applyDeferredPolicyVersionUpdates();
+
+			Assert.assertEquals(0, serviceCount);
+			Assert.assertFalse(opContext.isDeferPolicyVersionUpdate());
+			Mockito.verify(transactionSynchronizationAdapter, Mockito.never()).executeOnTransactionCommit(Mockito.any(Runnable.class));
+		} finally {
+			RangerContextHolder.resetOpContext();
+		}
+	}
+
+	@Test
+	public void test57GetPoliciesInCSVStreamsRows() throws Exception {
+		final ByteArrayOutputStream content  = new ByteArrayOutputStream();
+		HttpServletResponse         response = Mockito.mock(HttpServletResponse.class);
+		List<RangerPolicy>          policies = exportPolicies();
+
+		Mockito.when(response.getOutputStream()).thenReturn(servletOutputStream(content));
+
+		serviceDBStore.getPoliciesInCSV(policies, response);
+
+		String[] lines = content.toString("UTF-8").split("\n");
+
+		Assert.assertEquals(3, lines.length);
+		Assert.assertTrue(lines[0].startsWith("ID|Name|Resources|"));
+		Assert.assertTrue(lines[1].startsWith("1|" + policies.get(0).getName() + "|"));
+		Assert.assertTrue(lines[2].startsWith("2|" + policies.get(1).getName() + "|"));
+		Mockito.verify(response).setContentType("text/csv");
+		Mockito.verify(response).setStatus(HttpServletResponse.SC_OK);
+	}
+
+	@Test
+	public void test58GetPoliciesInExcelStreamsWorkbook() throws Exception {
+		final ByteArrayOutputStream content  = new ByteArrayOutputStream();
+		HttpServletResponse         response = Mockito.mock(HttpServletResponse.class);
+		List<RangerPolicy>          policies = exportPolicies();
+
+		Mockito.when(response.getOutputStream()).thenReturn(servletOutputStream(content));
+
+		serviceDBStore.getPoliciesInExcel(policies, response);
+
+		try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(content.toByteArray()))) {
+			Sheet sheet = workbook.getSheetAt(0);
+
+			Assert.assertEquals(2, sheet.getLastRowNum());
+			Assert.assertEquals("ID", sheet.getRow(0).getCell(0).getStringCellValue());
+			Assert.assertEquals(1, (long) sheet.getRow(1).getCell(0).getNumericCellValue());
+			Assert.assertEquals(policies.get(0).getName(), sheet.getRow(1).getCell(1).getStringCellValue());
+			Assert.assertEquals(2, (long) sheet.getRow(2).getCell(0).getNumericCellValue());
+			Assert.assertEquals(policies.get(1).getName(), sheet.getRow(2).getCell(1).getStringCellValue());
+		}
+
+		Mockito.verify(response).setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+		Mockito.verify(response).setStatus(HttpServletResponse.SC_OK);
+	}
+
+	private List<RangerPolicy> exportPolicies() {
+		List<RangerPolicy> ret = new ArrayList<>();
+
+		for (long id = 1; id <= 2; id++) {
+			RangerPolicy policy = rangerPolicy();
+
+			policy.setId(id);
+			policy.setName("policy-" + id);
+			policy.setServiceType("hdfs");
+			policy.setPolicyType(RangerPolicy.POLICY_TYPE_ACCESS);
+			policy.getResources().put("path", new RangerPolicyResource("/data/" + id, false, true));
+
+			ret.add(policy);
+		}
+
+		return ret;
+	}
+
+	private ServletOutputStream servletOutputStream(final ByteArrayOutputStream content) {
+		return new ServletOutputStream() {
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+			}
+
+			@Override
+			public void write(int b) {
+				content.write(b);
+			}
+		};
+	}
 }
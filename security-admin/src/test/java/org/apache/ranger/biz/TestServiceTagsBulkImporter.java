@@ -0,0 +1,540 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.biz;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ranger.authorization.utils.JsonUtils;
+import org.apache.ranger.common.GUIDUtil;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.db.XXServiceDao;
+import org.apache.ranger.db.XXServiceResourceDao;
+import org.apache.ranger.db.XXServiceVersionInfoDao;
+import org.apache.ranger.db.XXTagChangeLogDao;
+import org.apache.ranger.db.XXTagDao;
+import org.apache.ranger.db.XXTagDefDao;
+import org.apache.ranger.db.XXTagResourceMapDao;
+import org.apache.ranger.entity.XXService;
+import org.apache.ranger.entity.XXServiceResource;
+import org.apache.ranger.entity.XXServiceVersionInfo;
+import org.apache.ranger.entity.XXTag;
+import org.apache.ranger.entity.XXTagChangeLog;
+import org.apache.ranger.entity.XXTagDef;
+import org.apache.ranger.entity.XXTagResourceMap;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.model.RangerValiditySchedule;
+import org.apache.ranger.plugin.store.RangerServiceResourceSignature;
+import org.apache.ranger.plugin.util.ServiceTags;
+import org.apache.ranger.service.RangerTagService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+public class TestServiceTagsBulkImporter {
+	private static final String SERVICE_NAME = "cl1_hive";
+	private static final Long   SERVICE_ID   = 1L;
+	private static final long   TAG_VERSION  = 5L;
+
+	private Object supportsTagDeltas;
+	private Object isSupportsTagDeltasInitialized;
+
+	@Before
+	public void enableTagDeltas() {
+		// change-log records for each changed resource are written only when tag-deltas are enabled
+		supportsTagDeltas              = ReflectionTestUtils.getField(TagDBStore.class, "SUPPORTS_TAG_DELTAS");
+		isSupportsTagDeltasInitialized = ReflectionTestUtils.getField(TagDBStore.class, "IS_SUPPORTS_TAG_DELTAS_INITIALIZED");
+
+		ReflectionTestUtils.setField(TagDBStore.class, "SUPPORTS_TAG_DELTAS", true);
+		ReflectionTestUtils.setField(TagDBStore.class, "IS_SUPPORTS_TAG_DELTAS_INITIALIZED", true);
+	}
+
+	@After
+	public void restoreTagDeltas() {
+		ReflectionTestUtils.setField(TagDBStore.class, "SUPPORTS_TAG_DELTAS", supportsTagDeltas);
+		ReflectionTestUtils.setField(TagDBStore.class, "IS_SUPPORTS_TAG_DELTAS_INITIALIZED", isSupportsTagDeltasInitialized);
+	}
+
+	@Test
+	public void testGetTagChanges() {
+		RangerTag existingPII     = newTag(1L, "PII", "level", "high");
+		RangerTag existingExpired = newTag(2L, "EXPIRES_ON", "date", "2025-01-01");
+		RangerTag existingShared  = newTag(3L, "FINANCE", null, null);
+		RangerTag incomingPII     = newTag(null, "PII", "level", "high");
+		RangerTag incomingExpired = newTag(null, "EXPIRES_ON", "date", "2026-01-01");
+		RangerTag incomingFinance = newTag(null, "FINANCE", null, null);
+
+		existingShared.setOwner(RangerTag.OWNER_GLOBAL);
+
+		ServiceTagsBulkImporter.TagChanges changes = ServiceTagsBulkImporter.getTagChanges(Arrays.asList(existingPII, existingExpired, existingShared),
+		                                                                                   Arrays.asList(incomingPII, incomingExpired, incomingFinance, incomingFinance));
+
+		Assert.assertEquals(Collections.singletonList(existingPII), changes.retained);
+		Assert.assertEquals(Arrays.asList(incomingExpired, incomingFinance), changes.toCreate);
+		Assert.assertEquals(Arrays.asList(existingExpired, existingShared), changes.toRemove);
+
+		// tags having validity-periods are always replaced
+		RangerTag existingScheduled = newTag(4L, "PII", "level", "high");
+		RangerTag incomingScheduled = newTag(null, "PII", "level", "high");
+
+		existingScheduled.setValidityPeriods(Collections.singletonList(new RangerValiditySchedule()));
+		incomingScheduled.setValidityPeriods(Collections.singletonList(new RangerValiditySchedule()));
+
+		changes = ServiceTagsBulkImporter.getTagChanges(Collections.singletonList(existingScheduled), Collections.singletonList(incomingScheduled));
+
+		Assert.assertTrue(changes.retained.isEmpty());
+		Assert.assertEquals(Collections.singletonList(incomingScheduled), changes.toCreate);
+		Assert.assertEquals(Collections.singletonList(existingScheduled), changes.toRemove);
+	}
+
+	@Test
+	public void testIsSupported() {
+		ServiceTags serviceTags = newServiceTags(ServiceTags.OP_ADD_OR_UPDATE, newTag(1L, "PII", null, null));
+
+		Assert.assertTrue(ServiceTagsBulkImporter.isSupported(serviceTags));
+
+		// tags with guid, and shared tags, are imported by ServiceTagsProcessor
+		serviceTags.getTags().get(1L).setGuid("tag-guid-1");
+
+		Assert.assertFalse(ServiceTagsBulkImporter.isSupported(serviceTags));
+
+		serviceTags = newServiceTags(ServiceTags.OP_REPLACE, newTag(1L, "PII", null, null));
+
+		serviceTags.getTags().get(1L).setOwner(RangerTag.OWNER_GLOBAL);
+
+		Assert.assertFalse(ServiceTagsBulkImporter.isSupported(serviceTags));
+
+		// delete by guid doesn't need resource-elements
+		serviceTags = newServiceTags(ServiceTags.OP_DELETE, null);
+
+		serviceTags.getServiceResources().get(0).setResourceElements(null);
+
+		Assert.assertTrue(ServiceTagsBulkImporter.isSupported(serviceTags));
+
+		serviceTags.getServiceResources().get(0).setGuid(null);
+
+		Assert.assertFalse(ServiceTagsBulkImporter.isSupported(serviceTags));
+	}
+
+	@Test
+	public void testResourceGuidOfOtherServiceIsNotImported() throws Exception {
+		TagDBStore           tagStore           = new TagDBStore();
+		RangerDaoManager     daoManager         = Mockito.mock(RangerDaoManager.class);
+		XXServiceDao         serviceDao         = Mockito.mock(XXServiceDao.class);
+		XXServiceResourceDao serviceResourceDao = Mockito.mock(XXServiceResourceDao.class);
+		XXTagResourceMapDao  tagResourceMapDao  = Mockito.mock(XXTagResourceMapDao.class);
+		XXService            service            = new XXService();
+
+		service.setId(1L);
+		service.setName("cl1_hive");
+
+		tagStore.daoManager = daoManager;
+		tagStore.txManager  = Mockito.mock(PlatformTransactionManager.class);
+
+		Mockito.when(daoManager.getXXService()).thenReturn(serviceDao);
+		Mockito.when(daoManager.getXXServiceResource()).thenReturn(serviceResourceDao);
+		Mockito.when(daoManager.getXXTagResourceMap()).thenReturn(tagResourceMapDao);
+		Mockito.when(serviceDao.findByName("cl1_hive")).thenReturn(service);
+		Mockito.when(serviceResourceDao.findIdGuidAndSignatureByServiceId(1L)).thenReturn(Collections.emptyList());
+		Mockito.when(serviceResourceDao.findGuidAndServiceIdByGuids(Collections.singletonList("resource-guid-1"))).thenReturn(Collections.singletonList(new Object[] { "resource-guid-1", 2L }));
+
+		// like ServiceTagsProcessor, the resource of the other service must be found by its guid: left to ServiceTagsProcessor
+		Assert.assertFalse(new ServiceTagsBulkImporter(tagStore, 10).importServiceTags(newServiceTags(ServiceTags.OP_DELETE, null)));
+
+		Mockito.verify(tagResourceMapDao, Mockito.never()).findByServiceId(Mockito.anyLong());
+		Mockito.verify(serviceResourceDao, Mockito.never()).deleteByIds(Mockito.anyList());
+	}
+
+	@Test
+	public void testAddOrUpdateResources() throws Exception {
+		ImportFixture fixture = new ImportFixture();
+
+		fixture.addExistingResource(10L, "resource-guid-1", "db1", newTag(100L, "PII", null, null));
+		fixture.addExistingResource(11L, "resource-guid-2", "db2", newTag(101L, "FINANCE", null, null));
+
+		ServiceTags serviceTags = newServiceTags(ServiceTags.OP_ADD_OR_UPDATE);
+
+		addResource(serviceTags, 1L, "resource-guid-1", "db1", newTag(1L, "PII", null, null));     // unchanged
+		addResource(serviceTags, 2L, "resource-guid-2", "db2", newTag(2L, "PII", null, null));     // FINANCE replaced by PII
+		addResource(serviceTags, 3L, "resource-guid-3", "db3", newTag(3L, "FINANCE", null, null)); // new resource
+
+		Assert.assertTrue(fixture.importServiceTags(serviceTags));
+
+		// created: the new resource, and a tag for each changed resource; tags of the unchanged resource are not rewritten
+		Assert.assertEquals(Collections.singletonList("resource-guid-3"), fixture.getCreatedResourceGuids());
+		Assert.assertEquals(Arrays.asList(1L, 2L), fixture.getCreatedTagDefIds()); // PII for resource-guid-2, FINANCE for resource-guid-3
+		Assert.assertEquals(new HashSet<>(Arrays.asList(11L, 12L)), fixture.mappedResourceIds);
+
+		// updated: only the resource whose tags changed
+		Assert.assertEquals(Collections.singletonList(11L), fixture.updatedResourceIds);
+
+		// deleted: the FINANCE tag of resource-guid-2, and its mapping
+		Assert.assertEquals(Collections.singletonList(1101L), fixture.deletedMappingIds);
+		Assert.assertEquals(Collections.singletonList(101L), fixture.deletedTagIds);
+		Assert.assertTrue(fixture.deletedResourceIds.isEmpty());
+
+		fixture.verifyTagVersionUpdated(11L, 12L);
+	}
+
+	@Test
+	public void testDeleteResources() throws Exception {
+		ImportFixture fixture = new ImportFixture();
+
+		fixture.addExistingResource(10L, "resource-guid-1", "db1", newTag(100L, "PII", null, null));
+		fixture.addExistingResource(11L, "resource-guid-2", "db2", newTag(101L, "FINANCE", null, null));
+
+		ServiceTags serviceTags = newServiceTags(ServiceTags.OP_DELETE);
+
+		addResource(serviceTags, 1L, "resource-guid-2", "db2", null);
+		addResource(serviceTags, 2L, "resource-guid-4", "db4", null); // not in the service: ignored
+
+		Assert.assertTrue(fixture.importServiceTags(serviceTags));
+
+		Assert.assertEquals(Collections.singletonList(1101L), fixture.deletedMappingIds);
+		Assert.assertEquals(Collections.singletonList(101L), fixture.deletedTagIds);
+		Assert.assertEquals(Collections.singletonList(11L), fixture.deletedResourceIds);
+		Assert.assertTrue(fixture.getCreatedResourceGuids().isEmpty());
+		Assert.assertTrue(fixture.getCreatedTagDefIds().isEmpty());
+		Assert.assertTrue(fixture.updatedResourceIds.isEmpty());
+
+		fixture.verifyTagVersionUpdated(11L);
+	}
+
+	@Test
+	public void testReplaceDeletesResourcesNotUploaded() throws Exception {
+		ImportFixture fixture = new ImportFixture();
+
+		fixture.addExistingResource(10L, "resource-guid-1", "db1", newTag(100L, "PII", null, null));
+		fixture.addExistingResource(11L, "resource-guid-2", "db2", newTag(101L, "FINANCE", null, null));
+
+		ServiceTags serviceTags = newServiceTags(ServiceTags.OP_REPLACE);
+
+		addResource(serviceTags, 1L, "resource-guid-1", "db1", newTag(1L, "PII", null, null));
+
+		Assert.assertTrue(fixture.importServiceTags(serviceTags));
+
+		// resource-guid-2, not in the upload, is deleted along with its tags; resource-guid-1 is unchanged
+		Assert.assertEquals(Collections.singletonList(1101L), fixture.deletedMappingIds);
+		Assert.assertEquals(Collections.singletonList(101L), fixture.deletedTagIds);
+		Assert.assertEquals(Collections.singletonList(11L), fixture.deletedResourceIds);
+		Assert.assertTrue(fixture.getCreatedResourceGuids().isEmpty());
+		Assert.assertTrue(fixture.getCreatedTagDefIds().isEmpty());
+		Assert.assertTrue(fixture.updatedResourceIds.isEmpty());
+
+		fixture.verifyTagVersionUpdated(11L);
+	}
+
+	@Test
+	public void testUnchangedResourcesDontUpdateTagVersion() throws Exception {
+		ImportFixture fixture = new ImportFixture();
+
+		fixture.addExistingResource(10L, "resource-guid-1", "db1", newTag(100L, "PII", "level", "high"));
+
+		ServiceTags serviceTags = newServiceTags(ServiceTags.OP_ADD_OR_UPDATE);
+
+		addResource(serviceTags, 1L, "resource-guid-1", "db1", newTag(1L, "PII", "level", "high"));
+
+		Assert.assertTrue(fixture.importServiceTags(serviceTags));
+
+		Mockito.verify(fixture.tagDao, Mockito.never()).create(Mockito.any());
+		Mockito.verify(fixture.serviceResourceDao, Mockito.never()).create(Mockito.any());
+		Mockito.verify(fixture.serviceResourceDao, Mockito.never()).update(Mockito.any());
+		Mockito.verify(fixture.serviceVersionInfoDao, Mockito.never()).update(Mockito.any());
+		Mockito.verify(fixture.tagChangeLogDao, Mockito.never()).create(Mockito.any());
+		Mockito.verify(fixture.tagChangeLogDao, Mockito.never()).batchCreate(Mockito.anyList());
+	}
+
+	private static ServiceTags newServiceTags(String op) {
+		ServiceTags ret = new ServiceTags();
+
+		ret.setOp(op);
+		ret.setServiceName(SERVICE_NAME);
+
+		return ret;
+	}
+
+	private static void addResource(ServiceTags serviceTags, Long id, String guid, String database, RangerTag tag) {
+		RangerServiceResource resource = newResource(guid, database);
+
+		resource.setId(id);
+
+		serviceTags.getServiceResources().add(resource);
+
+		if (tag != null) {
+			serviceTags.getTags().put(tag.getId(), tag);
+			serviceTags.getResourceToTagIds().put(id, Collections.singletonList(tag.getId()));
+		}
+	}
+
+	private static RangerServiceResource newResource(String guid, String database) {
+		Map<String, RangerPolicyResource> elements = new HashMap<>();
+
+		elements.put("database", new RangerPolicyResource(database));
+
+		return new RangerServiceResource(guid, SERVICE_NAME, elements);
+	}
+
+	private static ServiceTags newServiceTags(String op, RangerTag tag) {
+		Map<String, RangerPolicyResource> elements = new HashMap<>();
+
+		elements.put("database", new RangerPolicyResource("db1"));
+
+		RangerServiceResource resource = new RangerServiceResource("resource-guid-1", "cl1_hive", elements);
+		ServiceTags           ret      = new ServiceTags();
+
+		resource.setId(1L);
+
+		ret.setOp(op);
+		ret.setServiceName("cl1_hive");
+		ret.getServiceResources().add(resource);
+
+		if (tag != null) {
+			ret.getTags().put(tag.getId(), tag);
+			ret.getResourceToTagIds().put(resource.getId(), Collections.singletonList(tag.getId()));
+		}
+
+		return ret;
+	}
+
+	private static RangerTag newTag(Long id, String type, String attrName, String attrValue) {
+		Map<String, String> attributes = new HashMap<>();
+
+		if (attrName != null) {
+			attributes.put(attrName, attrValue);
+		}
+
+		RangerTag ret = new RangerTag(null, type, attributes, RangerTag.OWNER_SERVICERESOURCE);
+
+		ret.setId(id);
+
+		return ret;
+	}
+
+	/*
+	 * TagDBStore with mock DAOs, having service cl1_hive with the given existing resources; records the writes of the import
+	 */
+	private static class ImportFixture {
+		final RangerDaoManager        daoManager            = Mockito.mock(RangerDaoManager.class);
+		final XXServiceResourceDao    serviceResourceDao    = Mockito.mock(XXServiceResourceDao.class);
+		final XXTagResourceMapDao     tagResourceMapDao     = Mockito.mock(XXTagResourceMapDao.class);
+		final XXTagDao                tagDao                = Mockito.mock(XXTagDao.class);
+		final XXServiceVersionInfoDao serviceVersionInfoDao = Mockito.mock(XXServiceVersionInfoDao.class);
+		final XXTagChangeLogDao       tagChangeLogDao       = Mockito.mock(XXTagChangeLogDao.class);
+		final TagDBStore              tagStore              = new TagDBStore();
+		final XXServiceVersionInfo    versionInfo           = new XXServiceVersionInfo();
+		final List<Object[]>          resourceRows          = new ArrayList<>();
+		final List<XXServiceResource> xResources            = new ArrayList<>();
+		final List<XXTagResourceMap>  tagResourceMaps       = new ArrayList<>();
+		final List<XXServiceResource> createdResources      = new ArrayList<>();
+		final List<XXTag>             createdTags           = new ArrayList<>();
+		final Set<Long>               mappedResourceIds     = new HashSet<>(); // of the created tag-resource-maps
+		final List<Long>              updatedResourceIds    = new ArrayList<>();
+		final List<Long>              deletedMappingIds     = new ArrayList<>();
+		final List<Long>              deletedTagIds         = new ArrayList<>();
+		final List<Long>              deletedResourceIds    = new ArrayList<>();
+
+		ImportFixture() {
+			XXService        service          = new XXService();
+			XXServiceDao     serviceDao       = Mockito.mock(XXServiceDao.class);
+			XXTagDefDao      tagDefDao        = Mockito.mock(XXTagDefDao.class);
+			RangerTagService rangerTagService = Mockito.mock(RangerTagService.class);
+
+			service.setId(SERVICE_ID);
+			service.setName(SERVICE_NAME);
+
+			versionInfo.setServiceId(SERVICE_ID);
+			versionInfo.setTagVersion(TAG_VERSION);
+
+			tagStore.daoManager       = daoManager;
+			tagStore.rangerTagService = rangerTagService;
+			tagStore.guidUtil         = new GUIDUtil();
+			tagStore.txManager        = Mockito.mock(PlatformTransactionManager.class);
+
+			Mockito.when(daoManager.getXXService()).thenReturn(serviceDao);
+			Mockito.when(daoManager.getXXServiceResource()).thenReturn(serviceResourceDao);
+			Mockito.when(daoManager.getXXTagResourceMap()).thenReturn(tagResourceMapDao);
+			Mockito.when(daoManager.getXXTag()).thenReturn(tagDao);
+			Mockito.when(daoManager.getXXTagDef()).thenReturn(tagDefDao);
+			Mockito.when(daoManager.getXXServiceVersionInfo()).thenReturn(serviceVersionInfoDao);
+			Mockito.when(daoManager.getXXTagChangeLog()).thenReturn(tagChangeLogDao);
+			Mockito.when(serviceDao.findByName(SERVICE_NAME)).thenReturn(service);
+			Mockito.when(serviceDao.getById(SERVICE_ID)).thenReturn(service);
+			Mockito.when(tagDefDao.findByName("PII")).thenReturn(newTagDef(1L, "PII"));
+			Mockito.when(tagDefDao.findByName("FINANCE")).thenReturn(newTagDef(2L, "FINANCE"));
+			Mockito.when(serviceVersionInfoDao.findByServiceId(SERVICE_ID)).thenReturn(versionInfo);
+			Mockito.when(serviceResourceDao.findIdGuidAndSignatureByServiceId(SERVICE_ID)).thenReturn(resourceRows);
+			Mockito.when(tagResourceMapDao.findByServiceId(SERVICE_ID)).thenReturn(tagResourceMaps);
+			Mockito.when(serviceResourceDao.findByIds(Mockito.anyList())).thenAnswer(invocation -> {
+				List<?>                 ids = invocation.getArgument(0);
+				List<XXServiceResource> ret = new ArrayList<>();
+
+				for (XXServiceResource xResource : xResources) {
+					if (ids.contains(xResource.getId())) {
+						ret.add(xResource);
+					}
+				}
+
+				return ret;
+			});
+			Mockito.when(serviceResourceDao.create(Mockito.any())).thenAnswer(invocation -> {
+				XXServiceResource xResource = invocation.getArgument(0);
+
+				xResource.setId(12L + createdResources.size());
+
+				createdResources.add(xResource);
+
+				return xResource;
+			});
+			Mockito.when(tagDao.create(Mockito.any())).thenAnswer(invocation -> {
+				XXTag xTag = invocation.getArgument(0);
+
+				xTag.setId(200L + createdTags.size());
+
+				createdTags.add(xTag);
+
+				return xTag;
+			});
+			Mockito.when(serviceResourceDao.update(Mockito.any())).thenAnswer(invocation -> {
+				XXServiceResource xResource = invocation.getArgument(0);
+
+				updatedResourceIds.add(xResource.getId());
+
+				return xResource;
+			});
+			Mockito.when(tagResourceMapDao.batchCreate(Mockito.anyList())).thenAnswer(invocation -> {
+				List<XXTagResourceMap> mappings = invocation.getArgument(0);
+
+				for (XXTagResourceMap mapping : mappings) {
+					mappedResourceIds.add(mapping.getResourceId());
+				}
+
+				return mappings;
+			});
+			Mockito.doAnswer(invocation -> deletedMappingIds.addAll(invocation.getArgument(0))).when(tagResourceMapDao).deleteByIds(Mockito.anyList());
+			Mockito.doAnswer(invocation -> deletedTagIds.addAll(invocation.getArgument(0))).when(tagDao).deleteByIds(Mockito.anyList());
+			Mockito.doAnswer(invocation -> deletedResourceIds.addAll(invocation.getArgument(0))).when(serviceResourceDao).deleteByIds(Mockito.anyList());
+			Mockito.when(rangerTagService.getPopulatedViewObject(Mockito.any())).thenAnswer(invocation -> {
+				XXTag     xTag = invocation.getArgument(0);
+				RangerTag ret  = new RangerTag();
+
+				ret.setId(xTag.getId());
+
+				return ret;
+			});
+		}
+
+		void addExistingResource(Long id, String guid, String database, RangerTag tag) {
+			RangerServiceResource resource  = newResource(guid, database);
+			String                signature = new RangerServiceResourceSignature(resource).getSignature();
+			XXServiceResource     xResource = new XXServiceResource();
+			XXTagResourceMap      mapping   = new XXTagResourceMap();
+
+			xResource.setId(id);
+			xResource.setGuid(guid);
+			xResource.setServiceId(SERVICE_ID);
+			xResource.setResourceSignature(signature);
+			xResource.setTags(JsonUtils.listToJson(Collections.singletonList(tag)));
+
+			mapping.setId(tag.getId() + 1000L);
+			mapping.setTagId(tag.getId());
+			mapping.setResourceId(id);
+
+			resourceRows.add(new Object[] { id, guid, signature });
+			xResources.add(xResource);
+			tagResourceMaps.add(mapping);
+		}
+
+		boolean importServiceTags(ServiceTags serviceTags) throws Exception {
+			return new ServiceTagsBulkImporter(tagStore, 10).importServiceTags(serviceTags);
+		}
+
+		List<String> getCreatedResourceGuids() {
+			List<String> ret = new ArrayList<>();
+
+			for (XXServiceResource xResource : createdResources) {
+				ret.add(xResource.getGuid());
+			}
+
+			return ret;
+		}
+
+		List<Long> getCreatedTagDefIds() {
+			List<Long> ret = new ArrayList<>();
+
+			for (XXTag xTag : createdTags) {
+				ret.add(xTag.getType());
+			}
+
+			return ret;
+		}
+
+		/*
+		 * tag-version is updated once, with one change-log record for each changed resource
+		 */
+		@SuppressWarnings("unchecked")
+		void verifyTagVersionUpdated(Long... changedResourceIds) {
+			ArgumentCaptor<XXTagChangeLog>       changeLog  = ArgumentCaptor.forClass(XXTagChangeLog.class);
+			ArgumentCaptor<List<XXTagChangeLog>> changeLogs = ArgumentCaptor.forClass(List.class);
+			List<XXTagChangeLog>                 all        = new ArrayList<>();
+			List<Long>                           resources  = new ArrayList<>();
+
+			Mockito.verify(serviceVersionInfoDao, Mockito.times(1)).update(versionInfo);
+			Assert.assertEquals(Long.valueOf(TAG_VERSION + 1), versionInfo.getTagVersion());
+
+			Mockito.verify(tagChangeLogDao, Mockito.times(1)).create(changeLog.capture());
+			Mockito.verify(tagChangeLogDao, Mockito.atMost(1)).batchCreate(changeLogs.capture());
+
+			all.add(changeLog.getValue());
+
+			for (List<XXTagChangeLog> batch : changeLogs.getAllValues()) {
+				all.addAll(batch);
+			}
+
+			for (XXTagChangeLog log : all) {
+				Assert.assertEquals(SERVICE_ID, log.getServiceId());
+				Assert.assertEquals(Long.valueOf(TAG_VERSION + 1), log.getServiceTagsVersion());
+				Assert.assertEquals(Integer.valueOf(ServiceTags.TagsChangeType.SERVICE_RESOURCE_UPDATE.ordinal()), log.getChangeType());
+
+				resources.add(log.getServiceResourceId());
+			}
+
+			Assert.assertEquals(Arrays.asList(changedResourceIds), resources);
+		}
+
+		private static XXTagDef newTagDef(Long id, String name) {
+			XXTagDef ret = new XXTagDef();
+
+			ret.setId(id);
+			ret.setName(name);
+
+			return ret;
+		}
+	}
+}
@@ -17,9 +17,11 @@
 package org.apache.ranger.biz;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
@@ -2164,4 +2166,99 @@ public void test51UpdateUserWithPass() {
 		thrown.expect(WebApplicationException.class);
 		userMgr.updateUserWithPass(userProfile);
 	}
+
+	@Test
+	public void test52GetRolesForUsers() {
+		XXPortalUserRole role1 = new XXPortalUserRole();
+		XXPortalUserRole role2 = new XXPortalUserRole();
+		XXPortalUserRole role3 = new XXPortalUserRole();
+		role1.setUserId(1L);
+		role1.setUserRole(RangerConstants.ROLE_USER);
+		role2.setUserId(1L);
+		role2.setUserRole(RangerConstants.ROLE_SYS_ADMIN);
+		role3.setUserId(2L);
+		role3.setUserRole(RangerConstants.ROLE_USER);
+		XXPortalUserRoleDao roleDao = Mockito.mock(XXPortalUserRoleDao.class);
+		Mockito.when(daoManager.getXXPortalUserRole()).thenReturn(roleDao);
+		Mockito.when(roleDao.findByUserIds(Arrays.asList(1L, 2L, 3L))).thenReturn(Arrays.asList(role1, role2, role3));
+
+		Map<Long, List<String>> rolesByUserId = userMgr.getRolesForUsers(Arrays.asList(1L, 2L, 3L));
+
+		Assert.assertEquals(Arrays.asList(RangerConstants.ROLE_USER, RangerConstants.ROLE_SYS_ADMIN), rolesByUserId.get(1L));
+		Assert.assertEquals(Arrays.asList(RangerConstants.ROLE_USER), rolesByUserId.get(2L));
+		Assert.assertFalse(rolesByUserId.containsKey(3L));
+		Mockito.verify(roleDao, Mockito.never()).findByUserId(Mockito.anyLong());
+	}
+
+	@Test
+	public void test53MapXXPortalUsersToVXPortalUsers() {
+		setup();
+		XXPortalUser user1 = new XXPortalUser();
+		XXPortalUser user2 = new XXPortalUser();
+		user1.setId(1L);
+		user1.setLoginId("user1");
+		user2.setId(2L);
+		user2.setLoginId("user2");
+		XXPortalUserRole role1 = new XXPortalUserRole();
+		role1.setUserId(1L);
+		role1.setUserRole(RangerConstants.ROLE_USER);
+		XXUserPermission xUserPermission = new XXUserPermission();
+		xUserPermission.setId(1L);
+		xUserPermission.setUserId(1L);
+		xUserPermission.setModuleId(1L);
+		xUserPermission.setIsAllowed(1);
+		XXGroupPermission xGroupPermission = new XXGroupPermission();
+		xGroupPermission.setId(1L);
+		xGroupPermission.setModuleId(2L);
+		xGroupPermission.setIsAllowed(1);
+		XXModuleDef module1 = new XXModuleDef();
+		XXModuleDef module2 = new XXModuleDef();
+		module1.setId(1L);
+		module1.setModule("Resource Based Policies");
+		module2.setId(2L);
+		module2.setModule("Reports");
+
+		XXPortalUserRoleDao roleDao = Mockito.mock(XXPortalUserRoleDao.class);
+		XXUserPermissionDao xUserPermissionDao = Mockito.mock(XXUserPermissionDao.class);
+		XXGroupPermissionDao xGroupPermissionDao = Mockito.mock(XXGroupPermissionDao.class);
+		XXModuleDefDao xModuleDefDao = Mockito.mock(XXModuleDefDao.class);
+		Mockito.when(daoManager.getXXPortalUserRole()).thenReturn(roleDao);
+		Mockito.when(daoManager.getXXUserPermission()).thenReturn(xUserPermissionDao);
+		Mockito.when(daoManager.getXXGroupPermission()).thenReturn(xGroupPermissionDao);
+		Mockito.when(daoManager.getXXModuleDef()).thenReturn(xModuleDefDao);
+		Mockito.when(roleDao.findByUserIds(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(role1));
+		Mockito.when(xUserPermissionDao.findByUserPermissionIdsAndIsAllowed(Arrays.asList(1L, 2L))).thenReturn(Arrays.asList(xUserPermission));
+		Mockito.when(xGroupPermissionDao.findByVXPortalUserIds(Arrays.asList(1L, 2L))).thenReturn(Arrays.<Object[]>asList(new Object[] { 2L, xGroupPermission }));
+		Mockito.when(xModuleDefDao.getAll()).thenReturn(Arrays.asList(module1, module2));
+		Mockito.when(xUserPermissionService.populateViewBean(xUserPermission)).thenAnswer(invocation -> {
+			VXUserPermission ret = new VXUserPermission();
+			ret.setModuleId(xUserPermission.getModuleId());
+			return ret;
+		});
+		Mockito.when(xGroupPermissionService.populateViewBean(xGroupPermission)).thenAnswer(invocation -> {
+			VXGroupPermission ret = new VXGroupPermission();
+			ret.setModuleId(xGroupPermission.getModuleId());
+			return ret;
+		});
+
+		Map<Long, VXPortalUser> userProfiles = userMgr.mapXXPortalUsersToVXPortalUsers(Arrays.asList(user1, user2));
+
+		Assert.assertEquals(2, userProfiles.size());
+		VXPortalUser userProfile1 = userProfiles.get(1L);
+		VXPortalUser userProfile2 = userProfiles.get(2L);
+		Assert.assertEquals("user1", userProfile1.getLoginId());
+		Assert.assertEquals(Arrays.asList(RangerConstants.ROLE_USER), userProfile1.getUserRoleList());
+		Assert.assertEquals(1, userProfile1.getUserPermList().size());
+		Assert.assertEquals("Resource Based Policies", userProfile1.getUserPermList().get(0).getModuleName());
+		Assert.assertTrue(userProfile1.getGroupPermissions().isEmpty());
+		Assert.assertEquals("user2", userProfile2.getLoginId());
+		Assert.assertTrue(userProfile2.getUserRoleList().isEmpty());
+		Assert.assertTrue(userProfile2.getUserPermList().isEmpty());
+		Assert.assertEquals(1, userProfile2.getGroupPermissions().size());
+		Assert.assertEquals("Reports", userProfile2.getGroupPermissions().get(0).getModuleName());
+		Mockito.verify(roleDao, Mockito.never()).findByParentId(Mockito.anyLong());
+		Mockito.verify(xUserPermissionDao, Mockito.never()).findByUserPermissionIdAndIsAllowed(Mockito.anyLong());
+		Mockito.verify(xGroupPermissionDao, Mockito.never()).findbyVXPortalUserId(Mockito.anyLong());
+		Mockito.verify(xModuleDefDao, Mockito.never()).findByModuleId(Mockito.anyLong());
+	}
 }
@@ -16,7 +16,13 @@
  */
 package org.apache.ranger.biz;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -30,6 +36,7 @@
 
 import org.apache.ranger.common.AppConstants;
 import org.apache.ranger.common.ContextUtil;
+import org.apache.ranger.common.JsonLinesIterator;
 import org.apache.ranger.common.MessageEnums;
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.RangerCommonEnums;
@@ -4696,4 +4703,210 @@ public void test132CreateExternalUser() {
 		Assert.assertNotNull(createdXUser);
 		Assert.assertEquals(createdXUser.getName(), vXUser.getName());
 	}
+	@Test
+	public void test133CreateOrUpdateXUsersInBatch() throws Exception {
+		destroySession();
+		setup();
+		VXUser vXUser1 = vxUser();
+		VXUser vXUser2 = vxUser();
+		vXUser1.setFirstName("testuser1");
+		vXUser2.setFirstName("testuser2");
+		vXUser2.setName("testuser2");
+		List<VXUser> vXUserList = new ArrayList<VXUser>();
+		vXUserList.add(vXUser1);
+		vXUserList.add(vXUser2);
+		VXUserList users = new VXUserList(vXUserList);
+
+		VXPortalUser vXPortalUser1 = userProfile();
+		VXPortalUser vXPortalUser2 = userProfile();
+		vXPortalUser2.setLoginId("testuser2");
+		XXPortalUser xXPortalUser1 = xxPortalUser(vXPortalUser1);
+		XXPortalUser xXPortalUser2 = xxPortalUser(vXPortalUser2);
+		xXPortalUser2.setLoginId("testuser2");
+		xXPortalUser2.setId(userId + 1);
+		Map<Long, VXPortalUser> portalUserProfiles = new HashMap<>();
+		portalUserProfiles.put(xXPortalUser1.getId(), vXPortalUser1);
+		portalUserProfiles.put(xXPortalUser2.getId(), vXPortalUser2);
+		XXUser xXUser2 = xxUser(vXUser2);
+		xXUser2.setId(userId + 1);
+		List<Boolean> bulkModeOnUpdate = new ArrayList<>();
+
+		XXPortalUserDao xXPortalUserDao = Mockito.mock(XXPortalUserDao.class);
+		Mockito.when(daoManager.getXXPortalUser()).thenReturn(xXPortalUserDao);
+		Mockito.when(xXPortalUserDao.findByLoginIds(Mockito.anyList())).thenReturn(Arrays.asList(xXPortalUser1, xXPortalUser2));
+		Mockito.when(userMgr.mapXXPortalUsersToVXPortalUsers(Mockito.anyCollection())).thenReturn(portalUserProfiles);
+		Mockito.when(userMgr.updateUserWithPass((VXPortalUser) Mockito.any())).thenAnswer(invocation -> {
+			bulkModeOnUpdate.add(RangerBizUtil.isBulkMode());
+
+			return xXPortalUser1;
+		});
+		XXUserDao xxUserDao = Mockito.mock(XXUserDao.class);
+		Mockito.when(daoManager.getXXUser()).thenReturn(xxUserDao);
+		Mockito.when(xxUserDao.findByUserNames(Mockito.anyList())).thenReturn(Arrays.asList(xxUser(vXUser1), xXUser2));
+		Mockito.when(xUserService.updateResource((VXUser) Mockito.any())).thenAnswer(invocation -> invocation.getArgument(0));
+		XXModuleDefDao xXModuleDefDao = Mockito.mock(XXModuleDefDao.class);
+		Mockito.when(daoManager.getXXModuleDef()).thenReturn(xXModuleDefDao);
+		Mockito.when(xXModuleDefDao.getAll()).thenReturn(new ArrayList<XXModuleDef>());
+
+		int createdOrUpdatedUserCount = xUserMgr.createOrUpdateXUsers(users);
+
+		Assert.assertEquals(2, createdOrUpdatedUserCount);
+		Mockito.verify(xXPortalUserDao, Mockito.times(1)).findByLoginIds(Mockito.anyList());
+		Mockito.verify(userMgr, Mockito.times(1)).mapXXPortalUsersToVXPortalUsers(Mockito.argThat(portalUsers -> portalUsers.size() == 2 && portalUsers.containsAll(Arrays.asList(xXPortalUser1, xXPortalUser2))));
+		Mockito.verify(userMgr, Mockito.never()).mapXXPortalUserToVXPortalUser(Mockito.any(), Mockito.anyCollection());
+		Mockito.verify(xxUserDao, Mockito.times(1)).findByUserNames(Mockito.argThat(names -> names.size() == 2 && names.containsAll(Arrays.asList(vXUser1.getName(), vXUser2.getName()))));
+		Mockito.verify(xxUserDao, Mockito.never()).findByUserName(Mockito.anyString());
+		Mockito.verify(userMgr, Mockito.never()).getUserProfileByLoginId(Mockito.anyString());
+		Mockito.verify(userMgr, Mockito.never()).mapXXPortalUserVXPortalUser(Mockito.any());
+		Assert.assertEquals(Arrays.asList(true, true), bulkModeOnUpdate);
+		Assert.assertFalse(RangerBizUtil.isBulkMode());
+		Mockito.verify(xUserService, Mockito.times(2)).updateResource((VXUser) Mockito.any());
+		Mockito.verify(xxGlobalStateDao, Mockito.times(1)).onGlobalAppDataChange(RANGER_USER_GROUP_GLOBAL_STATE_NAME);
+	}
+
+	@Test
+	public void test134CreateOrUpdateXGroupsUpdatesVersionOnce() throws Exception {
+		destroySession();
+		setup();
+		VXGroup vXGroup1 = vxGroup();
+		VXGroup vXGroup2 = vxGroup();
+		VXGroup vXGroup3 = vxGroup();
+		vXGroup2.setName("testgroup2");
+		vXGroup3.setName("null");
+		VXGroupList groups = new VXGroupList(Arrays.asList(vXGroup1, vXGroup2, vXGroup3));
+
+		xUserMgr.createOrUpdateXGroups(groups);
+
+		Mockito.verify(xGroupService, Mockito.times(1)).createOrUpdateXGroupsWithOutLogin(Arrays.asList(vXGroup1, vXGroup2));
+		Mockito.verify(xGroupService, Mockito.never()).createXGroupWithOutLogin((VXGroup) Mockito.any());
+		Mockito.verify(xxGlobalStateDao, Mockito.times(1)).onGlobalAppDataChange(RANGER_USER_GROUP_GLOBAL_STATE_NAME);
+	}
+
+	@Test
+	public void test135CreateOrDeleteXGroupUserListFromStream() throws Exception {
+		destroySession();
+		setup();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int groupCount = RangerBizUtil.batchPersistSize + 1;
+
+		try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < groupCount; i++) {
+				writer.write("{\"groupName\":\"group" + i + "\",\"addUsers\":[\"user" + i + "\"]}\n");
+			}
+		}
+
+		XXUserDao xxUserDao = Mockito.mock(XXUserDao.class);
+		Map<String, Long> usersFromDB = new HashMap<>();
+		usersFromDB.put("user0", 1L);
+		Mockito.when(daoManager.getXXUser()).thenReturn(xxUserDao);
+		Mockito.when(xxUserDao.getAllUserIds()).thenReturn(usersFromDB);
+
+		JsonLinesIterator<GroupUserInfo> groupUserInfos = new JsonLinesIterator<>(new ByteArrayInputStream(out.toByteArray()), GroupUserInfo.class);
+
+		Assert.assertEquals(groupCount, xUserMgr.createOrDeleteXGroupUserList(groupUserInfos));
+		Mockito.verify(xxUserDao, Mockito.times(1)).getAllUserIds();
+		Mockito.verify(xGroupUserService, Mockito.times(groupCount)).createOrDeleteXGroupUsers(Mockito.any(GroupUserInfo.class), Mockito.eq(usersFromDB));
+		Mockito.verify(xxGlobalStateDao, Mockito.times(1)).onGlobalAppDataChange(RANGER_USER_GROUP_GLOBAL_STATE_NAME);
+	}
+
+	@Test
+	public void test136CreateOrUpdateXUsersFromStreamUpdatesVersionOnce() throws Exception {
+		destroySession();
+		setup();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int userCount = RangerBizUtil.batchPersistSize + 1;
+
+		try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < userCount; i++) {
+				writer.write("{\"name\":\"user" + i + "\",\"firstName\":\"user" + i + "\"}\n");
+			}
+			writer.write("{\"name\":\"null\",\"firstName\":\"invalid\"}\n");
+		}
+
+		XXPortalUserDao xXPortalUserDao = Mockito.mock(XXPortalUserDao.class);
+		XXUserDao xxUserDao = Mockito.mock(XXUserDao.class);
+		XXModuleDefDao xXModuleDefDao = Mockito.mock(XXModuleDefDao.class);
+		Mockito.when(daoManager.getXXPortalUser()).thenReturn(xXPortalUserDao);
+		Mockito.when(xXPortalUserDao.findByLoginIds(Mockito.anyList())).thenAnswer(invocation -> {
+			List<XXPortalUser> ret = new ArrayList<>();
+			for (Object loginId : (List<?>) invocation.getArgument(0)) {
+				XXPortalUser xXPortalUser = new XXPortalUser();
+				xXPortalUser.setId((long) ret.size());
+				xXPortalUser.setLoginId((String) loginId);
+				ret.add(xXPortalUser);
+			}
+			return ret;
+		});
+		Mockito.when(userMgr.mapXXPortalUsersToVXPortalUsers(Mockito.anyCollection())).thenAnswer(invocation -> {
+			Map<Long, VXPortalUser> ret = new HashMap<>();
+			for (Object xXPortalUser : (Collection<?>) invocation.getArgument(0)) {
+				ret.put(((XXPortalUser) xXPortalUser).getId(), userProfile());
+			}
+			return ret;
+		});
+		Mockito.when(userMgr.getUserProfileByLoginId(Mockito.anyString())).thenReturn(userProfile());
+		Mockito.when(userMgr.updateUserWithPass((VXPortalUser) Mockito.any())).thenReturn(xxPortalUser(userProfile()));
+		Mockito.when(daoManager.getXXUser()).thenReturn(xxUserDao);
+		Mockito.when(xxUserDao.findByUserNames(Mockito.anyList())).thenAnswer(invocation -> {
+			List<XXUser> ret = new ArrayList<>();
+			for (Object name : (List<?>) invocation.getArgument(0)) {
+				XXUser xXUser = xxUser(vxUser());
+				xXUser.setName((String) name);
+				ret.add(xXUser);
+			}
+			return ret;
+		});
+		Mockito.when(xxUserDao.findByUserName(Mockito.anyString())).thenReturn(xxUser(vxUser()));
+		Mockito.when(xUserService.updateResource((VXUser) Mockito.any())).thenAnswer(invocation -> invocation.getArgument(0));
+		Mockito.when(daoManager.getXXModuleDef()).thenReturn(xXModuleDefDao);
+		Mockito.when(xXModuleDefDao.getAll()).thenReturn(new ArrayList<XXModuleDef>());
+
+		JsonLinesIterator<VXUser> users = new JsonLinesIterator<>(new ByteArrayInputStream(out.toByteArray()), VXUser.class);
+
+		Assert.assertEquals(userCount, xUserMgr.createOrUpdateXUsers(users));
+		Mockito.verify(xXPortalUserDao, Mockito.times(1)).findByLoginIds(Mockito.anyList());
+		Mockito.verify(userMgr, Mockito.times(1)).getUserProfileByLoginId("user" + (userCount - 1));
+		Mockito.verify(xxUserDao, Mockito.times(1)).findByUserNames(Mockito.anyList());
+		Mockito.verify(xxUserDao, Mockito.times(1)).findByUserName("user" + (userCount - 1));
+		Mockito.verify(xUserService, Mockito.times(userCount)).updateResource((VXUser) Mockito.any());
+		Mockito.verify(xxGlobalStateDao, Mockito.times(1)).onGlobalAppDataChange(RANGER_USER_GROUP_GLOBAL_STATE_NAME);
+	}
+
+	@Test
+	public void test137CreateOrUpdateXGroupsFromStreamUpdatesVersionOnce() throws Exception {
+		destroySession();
+		setup();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int groupCount = RangerBizUtil.batchPersistSize + 1;
+
+		try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < groupCount; i++) {
+				writer.write("{\"name\":\"group" + i + "\"}\n");
+			}
+		}
+
+		JsonLinesIterator<VXGroup> groups = new JsonLinesIterator<>(new ByteArrayInputStream(out.toByteArray()), VXGroup.class);
+
+		Assert.assertEquals(groupCount, xUserMgr.createOrUpdateXGroups(groups));
+		Mockito.verify(xGroupService, Mockito.times(2)).createOrUpdateXGroupsWithOutLogin(Mockito.anyList());
+		Mockito.verify(xxGlobalStateDao, Mockito.times(1)).onGlobalAppDataChange(RANGER_USER_GROUP_GLOBAL_STATE_NAME);
+	}
+
+	@Test
+	public void test138StreamWithInvalidLineIsRejected() throws Exception {
+		destroySession();
+		setup();
+		JsonLinesIterator<VXGroup> groups = new JsonLinesIterator<>(new ByteArrayInputStream("{\"name\":\"group1\"}\n\n{invalid\n".getBytes(StandardCharsets.UTF_8)), VXGroup.class);
+
+		Assert.assertTrue(groups.hasNext());
+		Assert.assertEquals("group1", groups.next().getName());
+
+		try {
+			groups.hasNext();
+
+			Assert.fail("expected failure for invalid line");
+		} catch (IllegalArgumentException excp) {
+			Assert.assertEquals("invalid VXGroup at line 3", excp.getMessage());
+		}
+	}
 }
@@ -76,6 +76,9 @@ public class TestServiceUtil {
         @Mock
         XXGroupDao xxGroupDao;
 
+        @Mock
+        ServiceVersionInfoCache serviceVersionInfoCache;
+
         @Test
         public void testGetServiceByName() throws Exception{
                 RangerService expectedRangerService = new RangerService();
@@ -1627,6 +1630,19 @@ public void testIsValidService() throws Exception{
 
         }
 
+        @Test
+        public void testIsValidServiceFromVersionInfoCache() throws Exception{
+                HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+                String serviceName = "hiveService";
+
+                Mockito.when(serviceVersionInfoCache.isServiceEnabled(serviceName)).thenReturn(true);
+                boolean isValid = serviceUtil.isValidService(serviceName, request);
+
+                Assert.assertTrue(isValid);
+                Mockito.verify(svcStore, Mockito.never()).getServiceByName(serviceName);
+                Mockito.verify(svcStore, Mockito.never()).getServiceByNameForDP(serviceName);
+        }
+
         @Test
         public void testIsValidateHttpsAuthentication() throws Exception{
 
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ranger.common.db;
+
+import org.apache.ranger.biz.RangerBizUtil;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.db.XXGroupDao;
+import org.apache.ranger.db.XXUserDao;
+import org.apache.ranger.entity.XXUser;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class TestBaseDao {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFindByInListInChunks() {
+        RangerDaoManager    daoManager = Mockito.mock(RangerDaoManager.class);
+        EntityManager       em         = Mockito.mock(EntityManager.class);
+        TypedQuery<XXUser>  query      = Mockito.mock(TypedQuery.class);
+        List<Integer>       chunkSizes = new ArrayList<>();
+        List<String>        names      = new ArrayList<>();
+        int                 chunkSize  = Math.min(RangerBizUtil.batchPersistSize, 1000);
+
+        for (int i = 0; i < 2 * chunkSize + 1; i++) {
+            names.add("user" + i);
+        }
+
+        Mockito.when(daoManager.getEntityManager()).thenReturn(em);
+        Mockito.when(em.createNamedQuery("XXUser.findByUserNames", XXUser.class)).thenReturn(query);
+        Mockito.when(query.setParameter(Mockito.eq("names"), Mockito.any())).thenAnswer(invocation -> {
+            chunkSizes.add(((Collection<String>) invocation.getArgument(1)).size());
+
+            return query;
+        });
+        Mockito.when(query.getResultList()).thenAnswer(invocation -> Collections.singletonList(new XXUser()));
+
+        XXUserDao dao = new XXUserDao(daoManager);
+
+        Assert.assertEquals(3, dao.findByUserNames(names).size());
+        Assert.assertEquals(3, chunkSizes.size());
+        Assert.assertEquals(chunkSize, chunkSizes.get(0).intValue());
+        Assert.assertEquals(chunkSize, chunkSizes.get(1).intValue());
+        Assert.assertEquals(1, chunkSizes.get(2).intValue());
+
+        Assert.assertTrue(dao.findByUserNames(Collections.emptyList()).isEmpty());
+        Mockito.verify(em, Mockito.times(3)).createNamedQuery("XXUser.findByUserNames", XXUser.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetIdsByNamesInChunks() {
+        RangerDaoManager     daoManager = Mockito.mock(RangerDaoManager.class);
+        EntityManager        em         = Mockito.mock(EntityManager.class);
+        TypedQuery<Object[]> query      = Mockito.mock(TypedQuery.class);
+        List<List<String>>   chunks     = new ArrayList<>();
+        List<String>         names      = new ArrayList<>();
+        int                  chunkSize  = Math.min(RangerBizUtil.batchPersistSize, 1000);
+
+        for (int i = 0; i < chunkSize + 1; i++) {
+            names.add("group" + i);
+        }
+
+        Mockito.when(daoManager.getEntityManager()).thenReturn(em);
+        Mockito.when(em.createNamedQuery("XXGroup.getIdsByNames", Object[].class)).thenReturn(query);
+        Mockito.when(query.setParameter(Mockito.eq("names"), Mockito.any())).thenAnswer(invocation -> {
+            chunks.add(new ArrayList<>((Collection<String>) invocation.getArgument(1)));
+
+            return query;
+        });
+        Mockito.when(query.getResultList()).thenAnswer(invocation -> {
+            List<String>   chunk = chunks.get(chunks.size() - 1);
+            List<Object[]> ret   = new ArrayList<>();
+
+            for (String name : chunk) {
+                ret.add(new Object[] { name, (long) names.indexOf(name) });
+            }
+
+            return ret;
+        });
+
+        Map<String, Long> ids = new XXGroupDao(daoManager).getIdsByNames(names);
+
+        Assert.assertEquals(2, chunks.size());
+        Assert.assertEquals(chunkSize, chunks.get(0).size());
+        Assert.assertEquals(1, chunks.get(1).size());
+        Assert.assertEquals(names.size(), ids.size());
+        Assert.assertEquals(Long.valueOf(chunkSize), ids.get("group" + chunkSize));
+
+        Assert.assertTrue(new XXGroupDao(daoManager).getIdsByNames(null).isEmpty());
+    }
+}
@@ -30,15 +30,23 @@
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import org.apache.ranger.AccessAuditsService;
 import org.apache.ranger.audit.destination.ElasticSearchAuditDestination;
 import org.apache.ranger.audit.model.AuthzAuditEvent;
 import org.apache.ranger.common.PropertiesUtil;
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.SearchCriteria;
+import org.apache.ranger.common.SortField;
 import org.apache.ranger.common.StringUtil;
 import org.apache.ranger.view.VXAccessAuditList;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -73,6 +81,43 @@ public void testQuery() {
         });
     }
 
+    @Test
+    public void testCursorEncoding() {
+        ElasticSearchUtil elasticSearchUtil = new ElasticSearchUtil();
+        Object[]          sortValues        = new Object[] {1700000000123L, "event,id:1", null, 5};
+        String            cursor            = elasticSearchUtil.encodeCursor(sortValues);
+
+        Assert.assertArrayEquals(sortValues, elasticSearchUtil.decodeCursor(cursor));
+    }
+
+    @Test
+    public void testCursorSearchSortsOnEventIdAfterRequestedSort() {
+        ElasticSearchUtil elasticSearchUtil = new ElasticSearchUtil();
+        SearchCriteria    searchCriteria    = new SearchCriteria();
+        Object[]          sortValues        = new Object[] {1700000000123L, "event-1"};
+
+        elasticSearchUtil.stringUtil = new StringUtil();
+
+        searchCriteria.setMaxRows(25);
+        searchCriteria.getParamList().put(AccessAuditsService.PARAM_CURSOR, elasticSearchUtil.encodeCursor(sortValues));
+
+        SearchSourceBuilder  searchSource = elasticSearchUtil.buildSearchSource(searchCriteria, new ArrayList<>(), Arrays.asList(new SortField("eventTime", "evtTime", true, SortField.SORT_ORDER.DESC)));
+        List<SortBuilder<?>> sorts        = searchSource.sorts();
+
+        Assert.assertEquals(2, sorts.size());
+        Assert.assertEquals("evtTime", ((FieldSortBuilder) sorts.get(0)).getFieldName());
+        Assert.assertEquals(SortOrder.DESC, sorts.get(0).order());
+        Assert.assertEquals("id", ((FieldSortBuilder) sorts.get(1)).getFieldName());
+        Assert.assertEquals(SortOrder.ASC, sorts.get(1).order());
+        Assert.assertArrayEquals(sortValues, searchSource.searchAfter());
+        Assert.assertEquals(-1, searchSource.from());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCursor() {
+        new ElasticSearchUtil().decodeCursor("not-a-cursor");
+    }
+
     private SearchCriteria getSearchCriteria() {
         SearchCriteria searchCriteria = new SearchCriteria();
         searchCriteria.setDistinct(false);
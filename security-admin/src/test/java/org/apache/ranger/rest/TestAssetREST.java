@@ -806,7 +806,7 @@ public void testGetAccessLogs() {
 		Mockito.verify(msBizUtil).isKeyAdmin();
 		Mockito.verify(assetMgr).getAccessLogs(searchCriteria);
 		Mockito.verify(daoManager).getXXServiceDef();
-		Mockito.verify(searchUtil, Mockito.times(14)).extractString((HttpServletRequest) Mockito.any(),
+		Mockito.verify(searchUtil, Mockito.times(16)).extractString((HttpServletRequest) Mockito.any(),
 				(SearchCriteria) Mockito.any(), Mockito.anyString(), Mockito.anyString(), Mockito.nullable(String.class));
 		Mockito.verify(searchUtil, Mockito.times(4)).extractInt((HttpServletRequest) Mockito.any(),
 				(SearchCriteria) Mockito.any(), Mockito.anyString(), Mockito.anyString());
@@ -829,6 +829,21 @@ public void testGetAccessLogs() {
 
 	}
 
+	@Test
+	public void testCancelAccessLogSearch() {
+		Mockito.when(assetMgr.cancelAccessLogSearch("search-1")).thenReturn(true);
+		assetREST.cancelAccessLogSearch("search-1");
+		Mockito.verify(assetMgr).cancelAccessLogSearch("search-1");
+	}
+
+	@Test
+	public void testCancelAccessLogSearchNotRunning() {
+		Mockito.when(assetMgr.cancelAccessLogSearch("search-1")).thenReturn(false);
+		Mockito.when(restErrorUtil.createRESTException(Mockito.anyInt(), Mockito.anyString(), Mockito.anyBoolean())).thenThrow(new WebApplicationException());
+		thrown.expect(WebApplicationException.class);
+		assetREST.cancelAccessLogSearch("search-1");
+	}
+
 	@Test
 	public void testGetAccessLogsForKms() {
 		SearchCriteria searchCriteria = new SearchCriteria();
@@ -862,7 +877,7 @@ public void testGetAccessLogsForKms() {
 		Mockito.verify(msBizUtil).isKeyAdmin();
 		Mockito.verify(assetMgr).getAccessLogs(searchCriteria);
 		Mockito.verify(daoManager).getXXServiceDef();
-		Mockito.verify(searchUtil, Mockito.times(14)).extractString((HttpServletRequest) Mockito.any(),
+		Mockito.verify(searchUtil, Mockito.times(16)).extractString((HttpServletRequest) Mockito.any(),
 				(SearchCriteria) Mockito.any(), Mockito.anyString(), Mockito.anyString(), Mockito.nullable(String.class));
 		Mockito.verify(searchUtil, Mockito.times(4)).extractInt((HttpServletRequest) Mockito.any(),
 				(SearchCriteria) Mockito.any(), Mockito.anyString(), Mockito.anyString());
@@ -43,6 +43,8 @@
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
 
 import java.util.*;
 import java.io.File;
@@ -109,6 +111,9 @@ public class TestRoleREST {
     @Mock(answer = Answers.RETURNS_DEEP_STUBS)
     RoleRefUpdater roleRefUpdater;
 
+    @Mock
+    ServiceVersionInfoCache serviceVersionInfoCache;
+
     @InjectMocks private RoleREST roleRest = new RoleREST();
 
     @Before
@@ -1194,6 +1199,38 @@ public void test20dimportRolesFromFileWithUpdate() throws Exception {
 		Mockito.verify(restErrorUtil).createRESTException(Mockito.anyString());
 	}
 
+	@Test
+	public void test21GetRangerRolesIfUpdatedFromVersionInfoCache() throws Exception {
+		HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+
+		Mockito.when(serviceUtil.isValidService("serviceName", request)).thenReturn(true);
+		Mockito.when(serviceVersionInfoCache.isRoleVersionUnchanged("serviceName", 5L)).thenReturn(true);
+		Mockito.when(restErrorUtil.createRESTException(Mockito.eq(HttpServletResponse.SC_NOT_MODIFIED), Mockito.anyString(), Mockito.anyBoolean()))
+				.thenReturn(new WebApplicationException(HttpServletResponse.SC_NOT_MODIFIED));
+
+		WebApplicationException excp = Assert.assertThrows(WebApplicationException.class,
+				() -> roleRest.getRangerRolesIfUpdated("serviceName", 5L, 0L, "pluginId", "", "", request));
+
+		Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, excp.getResponse().getStatus());
+		Mockito.verify(roleStore, Mockito.never()).getRoles(Mockito.anyString(), Mockito.anyLong());
+	}
+
+	@Test
+	public void test22GetRangerRolesIfUpdatedForUnknownService() throws Exception {
+		HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+
+		Mockito.when(serviceUtil.isValidService("unknownService", request)).thenThrow(new WebApplicationException(Response.status(HttpServletResponse.SC_NOT_FOUND).entity("not found").build()));
+		Mockito.when(restErrorUtil.createRESTException(Mockito.eq(HttpServletResponse.SC_NOT_FOUND), Mockito.any(), Mockito.anyBoolean()))
+				.thenReturn(new WebApplicationException(HttpServletResponse.SC_NOT_FOUND));
+
+		WebApplicationException excp = Assert.assertThrows(WebApplicationException.class,
+				() -> roleRest.getRangerRolesIfUpdated("unknownService", 5L, 0L, "pluginId", "", "", request));
+
+		// the version table must not turn an invalid service into 304
+		Assert.assertEquals(HttpServletResponse.SC_NOT_FOUND, excp.getResponse().getStatus());
+		Mockito.verify(serviceVersionInfoCache, Mockito.never()).isRoleVersionUnchanged(Mockito.anyString(), Mockito.anyLong());
+	}
+
     private RangerRole createRole(){
         String name = "test-role";
         String name2 = "admin";
@@ -48,6 +48,7 @@
 import org.apache.ranger.common.RangerValidatorFactory;
 import org.apache.ranger.common.ServiceUtil;
 import org.apache.ranger.common.StringUtil;
+import org.apache.ranger.common.ServiceVersionInfoCache;
 import org.apache.ranger.common.UserSessionBase;
 import org.apache.ranger.common.db.RangerTransactionSynchronizationAdapter;
 import org.apache.ranger.db.RangerDaoManager;
@@ -69,9 +70,11 @@
 import org.apache.ranger.plugin.model.RangerServiceDef.RangerPolicyConditionDef;
 import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
 import org.apache.ranger.plugin.model.RangerServiceDef.RangerServiceConfigDef;
+import org.apache.ranger.plugin.errors.ValidationErrorCode;
 import org.apache.ranger.plugin.model.validation.RangerPolicyValidator;
 import org.apache.ranger.plugin.model.validation.RangerServiceDefValidator;
 import org.apache.ranger.plugin.model.validation.RangerServiceValidator;
+import org.apache.ranger.plugin.model.validation.RangerValidator.Action;
 import org.apache.ranger.plugin.policyengine.RangerAccessResource;
 import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngineImpl;
@@ -222,6 +225,9 @@ public class TestServiceREST {
 
 	@Mock
 	RangerTransactionSynchronizationAdapter rangerTransactionSynchronizationAdapter;
+
+	@Mock
+	ServiceVersionInfoCache serviceVersionInfoCache;
 	
 	@Rule
 	public ExpectedException thrown = ExpectedException.none();
@@ -2803,4 +2809,148 @@ public void test81GetPolicyByNameAndServiceNameWithZoneNameIsNull() throws Excep
 		Assert.assertEquals(dbRangerPolicy.getId(), rangerPolicy.getId());
 		Assert.assertEquals(dbRangerPolicy.getName(), rangerPolicy.getName());
 	}
+
+	@Test
+	public void test82GetServicePoliciesIfUpdatedFromVersionInfoCache() throws Exception {
+		HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+		String serviceName = "HDFS_1";
+		Long lastKnownVersion = 1L;
+		String pluginId = "1";
+		Mockito.when(serviceUtil.isValidateHttpsAuthentication(serviceName, request)).thenReturn(true);
+		Mockito.when(serviceVersionInfoCache.isPolicyVersionUnchanged(serviceName, lastKnownVersion)).thenReturn(true);
+		Mockito.when(restErrorUtil.createRESTException(Mockito.eq(HttpServletResponse.SC_NOT_MODIFIED), Mockito.anyString(), Mockito.anyBoolean()))
+				.thenReturn(new WebApplicationException(HttpServletResponse.SC_NOT_MODIFIED));
+		try {
+			serviceREST.getServicePoliciesIfUpdated(serviceName, lastKnownVersion, 0L, pluginId, "", "", true, capabilityVector, request);
+			Assert.fail("expected WebApplicationException");
+		} catch (WebApplicationException excp) {
+			Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, excp.getResponse().getStatus());
+		}
+		Mockito.verify(serviceUtil).isValidateHttpsAuthentication(serviceName, request);
+		Mockito.verify(svcStore, Mockito.never()).getServicePoliciesIfUpdated(Mockito.anyString(), Mockito.anyLong(), Mockito.anyBoolean());
+	}
+
+	@Test
+	public void test83ImportPoliciesFromFileValidationFailure() throws Exception {
+		Map<String, RangerPolicy> policiesMap = new LinkedHashMap<String, RangerPolicy>();
+		RangerPolicy rangerPolicy = rangerPolicy();
+		policiesMap.put("Name", rangerPolicy);
+
+		Mockito.doThrow(new Exception("invalid policy")).when(policyValidator).validate(rangerPolicy, Action.CREATE, true);
+		Mockito.when(restErrorUtil.createRESTException(Mockito.anyString())).thenReturn(new WebApplicationException());
+
+		try {
+			importPoliciesFromFile(policiesMap, false);
+			Assert.fail("expected WebApplicationException");
+		} catch (WebApplicationException excp) {
+			// expected
+		}
+
+		Mockito.verify(restErrorUtil).createRESTException("invalid policy");
+		Mockito.verify(svcStore, Mockito.never()).createPolicy(Mockito.any(RangerPolicy.class));
+		Mockito.verify(svcStore, Mockito.never()).applyDeferredPolicyVersionUpdates();
+		Assert.assertFalse(RangerContextHolder.getOrCreateOpContext().isDeferPolicyVersionUpdate());
+		Assert.assertFalse(RangerContextHolder.getOrCreateOpContext().isCacheServiceDefRefIds());
+	}
+
+	@Test
+	public void test84ImportPoliciesFromFileWithDuplicateResources() throws Exception {
+		Map<String, RangerPolicy> policiesMap = new LinkedHashMap<String, RangerPolicy>();
+		RangerPolicy rangerPolicy1 = rangerPolicy();
+		RangerPolicy rangerPolicy2 = rangerPolicy();
+		rangerPolicy2.setName("HDFS_1-1-20150316062453-copy");
+		policiesMap.put("Name1", rangerPolicy1);
+		policiesMap.put("Name2", rangerPolicy2);
+
+		Mockito.when(restErrorUtil.createRESTException(Mockito.anyString())).thenReturn(new WebApplicationException());
+
+		try {
+			importPoliciesFromFile(policiesMap, true);
+			Assert.fail("expected WebApplicationException");
+		} catch (WebApplicationException excp) {
+			// expected
+		}
+
+		Mockito.verify(restErrorUtil).createRESTException(ValidationErrorCode.POLICY_VALIDATION_ERR_DUPLICATE_POLICY_RESOURCE.getMessage(rangerPolicy1.getName(), rangerPolicy1.getService()));
+		Mockito.verify(svcStore, Mockito.never()).createPolicy(Mockito.any(RangerPolicy.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void importPoliciesFromFile(Map<String, RangerPolicy> policiesMap, boolean isValid) throws Exception {
+		HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+		XXService xService = xService();
+		XXServiceDao xServiceDao = Mockito.mock(XXServiceDao.class);
+		XXServiceDefDao xServiceDefDao = Mockito.mock(XXServiceDefDao.class);
+		XXSecurityZoneRefServiceDao xSecZoneRefServiceDao = Mockito.mock(XXSecurityZoneRefServiceDao.class);
+		XXSecurityZoneRefTagServiceDao xSecZoneRefTagServiceDao = Mockito.mock(XXSecurityZoneRefTagServiceDao.class);
+		XXSecurityZoneDao xSecZoneDao = Mockito.mock(XXSecurityZoneDao.class);
+		XXSecurityZone xSecZone = Mockito.mock(XXSecurityZone.class);
+		List<XXSecurityZoneRefService> zoneServiceList = new ArrayList<>();
+		List<XXSecurityZoneRefTagService> zoneTagServiceList = new ArrayList<>();
+		zoneServiceList.add(Mockito.mock(XXSecurityZoneRefService.class));
+		zoneTagServiceList.add(Mockito.mock(XXSecurityZoneRefTagService.class));
+		Map<String, String> zoneMappingMap = new LinkedHashMap<String, String>();
+		zoneMappingMap.put("ZoneSource", "ZoneDestination");
+
+		SearchFilter filter = new SearchFilter();
+		filter.setParam("serviceType", "value");
+
+		File jsonPolicyFile = getFile(importPoliceTestFilePath);
+		InputStream uploadedInputStream = new FileInputStream(jsonPolicyFile);
+		FormDataContentDisposition fileDetail = FormDataContentDisposition.name("file")
+				.fileName(jsonPolicyFile.getName()).size(uploadedInputStream.toString().length()).build();
+		InputStream zoneInputStream = IOUtils.toInputStream("ZoneSource=ZoneDestination", "UTF-8");
+
+		Mockito.when(searchUtil.getSearchFilter(request, policyService.sortFields)).thenReturn(filter);
+		Mockito.when(request.getParameter("serviceType")).thenReturn("hdfs,hbase,hive,yarn,knox,storm,solr,kafka,nifi,atlas,sqoop");
+		Mockito.when(svcStore.createPolicyMap(Mockito.any(Map.class), Mockito.any(List.class),Mockito.anyString(),Mockito.any(Map.class), Mockito.any(List.class), Mockito.any(List.class),
+				Mockito.any(RangerPolicy.class), Mockito.any(Map.class))).thenReturn(policiesMap);
+		Mockito.when(validatorFactory.getPolicyValidator(svcStore)).thenReturn(policyValidator);
+		Mockito.when(bizUtil.isAdmin()).thenReturn(true);
+		Mockito.when(daoManager.getXXService()).thenReturn(xServiceDao);
+		Mockito.when(daoManager.getXXServiceDef()).thenReturn(xServiceDefDao);
+		Mockito.when(xServiceDao.findByName("HDFS_1-1-20150316062453")).thenReturn(xService);
+		if (isValid) {
+			Mockito.when(xServiceDefDao.getById(xService.getType())).thenReturn(serviceDef());
+		}
+		Mockito.when(svcStore.getMapFromInputStream(zoneInputStream)).thenReturn(zoneMappingMap);
+		Mockito.when(daoManager.getXXSecurityZoneDao()).thenReturn(xSecZoneDao);
+		Mockito.when(xSecZoneDao.findByZoneName(Mockito.anyString())).thenReturn(xSecZone);
+		Mockito.when(daoManager.getXXSecurityZoneRefService()).thenReturn(xSecZoneRefServiceDao);
+		Mockito.when(xSecZoneRefServiceDao.findByServiceNameAndZoneId(Mockito.anyString(),Mockito.anyLong())).thenReturn(zoneServiceList);
+		Mockito.when(daoManager.getXXSecurityZoneRefTagService()).thenReturn(xSecZoneRefTagServiceDao);
+		Mockito.when(xSecZoneRefTagServiceDao.findByTagServiceNameAndZoneId(Mockito.anyString(),Mockito.anyLong())).thenReturn(zoneTagServiceList);
+
+		serviceREST.importPoliciesFromFile(request, null, zoneInputStream, uploadedInputStream, fileDetail, false, "unzoneToUnZone");
+	}
+
+	@Test
+	public void test83GetSecureServicePoliciesIfUpdatedFromVersionInfoCache() throws Exception {
+		HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+		Long lastKnownVersion = 1L;
+		String pluginId = "1";
+		XXService xService = xService();
+		XXServiceDef xServiceDef = serviceDef();
+		String serviceName = xService.getName();
+		RangerService rs = rangerService();
+		XXServiceDefDao xServiceDefDao = Mockito.mock(XXServiceDefDao.class);
+		Mockito.when(serviceUtil.isValidService(serviceName, request)).thenReturn(true);
+		Mockito.when(daoManager.getXXService()).thenReturn(xServiceDao);
+		Mockito.when(xServiceDao.findByName(serviceName)).thenReturn(xService);
+		Mockito.when(daoManager.getXXServiceDef()).thenReturn(xServiceDefDao);
+		Mockito.when(xServiceDefDao.getById(xService.getType())).thenReturn(xServiceDef);
+		Mockito.when(svcStore.getServiceByName(serviceName)).thenReturn(rs);
+		Mockito.when(bizUtil.isUserAllowed(rs, ServiceREST.Allowed_User_List_For_Download)).thenReturn(true);
+		Mockito.when(serviceVersionInfoCache.isSecurePolicyVersionUnchanged(serviceName, lastKnownVersion)).thenReturn(true);
+		Mockito.when(restErrorUtil.createRESTException(Mockito.eq(HttpServletResponse.SC_NOT_MODIFIED), Mockito.anyString(), Mockito.anyBoolean()))
+				.thenReturn(new WebApplicationException(HttpServletResponse.SC_NOT_MODIFIED));
+		try {
+			serviceREST.getSecureServicePoliciesIfUpdated(serviceName, lastKnownVersion, 0L, pluginId, "", "", true, capabilityVector, request);
+			Assert.fail("expected WebApplicationException");
+		} catch (WebApplicationException excp) {
+			Assert.assertEquals(HttpServletResponse.SC_NOT_MODIFIED, excp.getResponse().getStatus());
+		}
+		Mockito.verify(bizUtil).isUserAllowed(rs, ServiceREST.Allowed_User_List_For_Download);
+		Mockito.verify(svcStore, Mockito.never()).getServicePoliciesIfUpdated(Mockito.anyString(), Mockito.anyLong(), Mockito.anyBoolean());
+	}
 }
@@ -30,6 +30,7 @@
 import org.apache.ranger.biz.TagDBStore;
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.RangerSearchUtil;
+import org.apache.ranger.common.ServiceVersionInfoCache;
 import org.apache.ranger.db.RangerDaoManager;
 import org.apache.ranger.db.XXServiceDao;
 import org.apache.ranger.db.XXServiceDefDao;
@@ -116,6 +117,9 @@ public class TestTagREST {
 	@Mock
 	RangerServiceResourceWithTagsService serviceResourceWithTagsService;
 
+	@Mock
+	ServiceVersionInfoCache serviceVersionInfoCache;
+
 	@Rule
 	public ExpectedException thrown = ExpectedException.none();
 
@@ -34,6 +34,7 @@
 import org.apache.ranger.common.SortField;
 import org.apache.ranger.common.AppConstants;
 import org.apache.ranger.common.RangerConstants;
+import org.apache.ranger.common.ServiceVersionInfoCache;
 import org.apache.ranger.common.StringUtil;
 import org.apache.ranger.common.UserSessionBase;
 import org.apache.ranger.db.RangerDaoManager;
@@ -201,6 +202,7 @@ public class TestXUserREST {
 	@Mock RangerPolicyItem rangerPolicyItem;
 	@Mock RangerDataMaskPolicyItem rangerDataMaskPolicyItem;
 	@Mock RangerRowFilterPolicyItem rangerRowFilterPolicyItem;
+	@Mock ServiceVersionInfoCache serviceVersionInfoCache;
 	
 	@Test
 	public void test1getXGroup() {
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.service;
+
+import java.util.Map;
+
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.plugin.model.RangerPluginInfo;
+import org.junit.Assert;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.mockito.Answers;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@RunWith(MockitoJUnitRunner.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestRangerPluginInfoService {
+
+	@InjectMocks
+	RangerPluginInfoService pluginInfoService = new RangerPluginInfoService();
+
+	@Mock(answer = Answers.RETURNS_DEEP_STUBS)
+	RangerDaoManager daoManager;
+
+	@Mock
+	PlatformTransactionManager txManager;
+
+	@Test
+	public void test1CoalescePendingWrites() {
+		RangerPluginInfo pluginInfo = pluginInfo("host1");
+		Runnable         write1     = Mockito.mock(Runnable.class);
+		Runnable         write2     = Mockito.mock(Runnable.class);
+		Runnable         write3     = Mockito.mock(Runnable.class);
+
+		pluginInfoService.scheduleWrite(pluginInfo, RangerPluginInfo.ENTITY_TYPE_POLICIES, false, write1);
+		pluginInfoService.scheduleWrite(pluginInfo, RangerPluginInfo.ENTITY_TYPE_POLICIES, false, write2);
+		pluginInfoService.scheduleWrite(pluginInfo, RangerPluginInfo.ENTITY_TYPE_TAGS, false, write3);
+
+		Assert.assertEquals(Long.valueOf(2), pluginInfoService.getPluginInfoMetrics().get("WritesPending"));
+
+		pluginInfoService.flushPendingWrites();
+
+		Mockito.verify(write1, Mockito.never()).run();
+		Mockito.verify(write2).run();
+		Mockito.verify(write3).run();
+
+		Map<String, Long> metrics = pluginInfoService.getPluginInfoMetrics();
+
+		Assert.assertEquals(Long.valueOf(3), metrics.get("WritesReceived"));
+		Assert.assertEquals(Long.valueOf(1), metrics.get("WritesCoalesced"));
+		Assert.assertEquals(Long.valueOf(2), metrics.get("WritesCompleted"));
+		Assert.assertEquals(Long.valueOf(0), metrics.get("WritesPending"));
+	}
+
+	@Test
+	public void test2RetryFailedBatchIndividually() {
+		Runnable failingWrite = Mockito.mock(Runnable.class);
+		Runnable write        = Mockito.mock(Runnable.class);
+
+		Mockito.doThrow(new RuntimeException("duplicate key")).when(failingWrite).run();
+
+		pluginInfoService.scheduleWrite(pluginInfo("host1"), RangerPluginInfo.ENTITY_TYPE_POLICIES, false, failingWrite);
+		pluginInfoService.scheduleWrite(pluginInfo("host2"), RangerPluginInfo.ENTITY_TYPE_POLICIES, false, write);
+
+		pluginInfoService.flushPendingWrites();
+
+		Map<String, Long> metrics = pluginInfoService.getPluginInfoMetrics();
+
+		Assert.assertEquals(Long.valueOf(1), metrics.get("WritesCompleted"));
+		Assert.assertEquals(Long.valueOf(1), metrics.get("WritesFailed"));
+	}
+
+	@Test
+	public void test3PluginFreshnessMetrics() {
+		pluginInfoService.recordPluginActivity(pluginInfo("host1"));
+		pluginInfoService.recordPluginActivity(pluginInfo("host2"));
+		pluginInfoService.recordPluginActivity(pluginInfo("host1"));
+
+		Map<String, Long> metrics = pluginInfoService.getPluginInfoMetrics();
+
+		Assert.assertEquals(Long.valueOf(2), metrics.get("PluginCount"));
+		Assert.assertEquals(Long.valueOf(2), metrics.get("ActiveIn1Min"));
+	}
+
+	@Test
+	public void test4KeepDeleteAndUpdateInOrder() {
+		RangerPluginInfo pluginInfo = pluginInfo("host1");
+		Runnable         update1    = Mockito.mock(Runnable.class);
+		Runnable         delete1    = Mockito.mock(Runnable.class);
+		Runnable         delete2    = Mockito.mock(Runnable.class);
+		Runnable         update2    = Mockito.mock(Runnable.class);
+		Runnable         update3    = Mockito.mock(Runnable.class);
+
+		pluginInfoService.scheduleWrite(pluginInfo, RangerPluginInfo.ENTITY_TYPE_POLICIES, false, update1);
+		pluginInfoService.scheduleWrite(pluginInfo, RangerPluginInfo.ENTITY_TYPE_POLICIES, true, delete1);
+		pluginInfoService.scheduleWrite(pluginInfo, RangerPluginInfo.ENTITY_TYPE_TAGS, true, delete2);
+		pluginInfoService.scheduleWrite(pluginInfo, RangerPluginInfo.ENTITY_TYPE_POLICIES, false, update2);
+		pluginInfoService.scheduleWrite(pluginInfo, RangerPluginInfo.ENTITY_TYPE_POLICIES, false, update3);
+
+		Assert.assertEquals(Long.valueOf(3), pluginInfoService.getPluginInfoMetrics().get("WritesPending"));
+
+		pluginInfoService.flushPendingWrites();
+
+		InOrder inOrder = Mockito.inOrder(update1, delete2, update3);
+
+		inOrder.verify(update1).run();
+		inOrder.verify(delete2).run();
+		inOrder.verify(update3).run();
+		Mockito.verify(delete1, Mockito.never()).run();
+		Mockito.verify(update2, Mockito.never()).run();
+	}
+
+	@Test
+	public void test5ScheduleWriteAfterTransactionCompletion() {
+		Runnable write = Mockito.mock(Runnable.class);
+
+		TransactionSynchronizationManager.initSynchronization();
+
+		try {
+			pluginInfoService.scheduleWrite(pluginInfo("host1"), RangerPluginInfo.ENTITY_TYPE_POLICIES, false, write);
+
+			Assert.assertEquals(Long.valueOf(0), pluginInfoService.getPluginInfoMetrics().get("WritesPending"));
+
+			for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+				synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+			}
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		Assert.assertEquals(Long.valueOf(1), pluginInfoService.getPluginInfoMetrics().get("WritesPending"));
+
+		pluginInfoService.flushPendingWrites();
+
+		Mockito.verify(write).run();
+	}
+
+	private RangerPluginInfo pluginInfo(String hostName) {
+		RangerPluginInfo ret = new RangerPluginInfo();
+
+		ret.setServiceName("hdfsdev");
+		ret.setHostName(hostName);
+		ret.setAppType("hdfs");
+
+		return ret;
+	}
+}
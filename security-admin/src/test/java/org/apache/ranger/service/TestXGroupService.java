@@ -21,6 +21,7 @@
 import org.apache.ranger.db.RangerDaoManager;
 import org.apache.ranger.db.XXGroupDao;
 import org.apache.ranger.db.XXPortalUserDao;
+import org.junit.Assert;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -35,6 +36,8 @@
 import org.apache.ranger.util.RangerEnumUtil;
 import org.apache.ranger.view.VXGroup;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 
 import org.apache.ranger.common.StringUtil;
@@ -125,6 +128,26 @@ public void test5GetTransactionLog() {
 		XGroupService.getTransactionLog(vObj, mObj, "create");
 	}
 
+	@Test
+	public void test6CreateOrUpdateXGroupsWithOutLogin() {
+		VXGroup existingGroup = createvXGroup();
+		VXGroup newGroup      = createvXGroup();
+		newGroup.setName("testGroup2");
+		XXGroup resource = createXXGroup();
+		Mockito.when(daoManager.getXXGroup()).thenReturn(xXGroupDao);
+		Mockito.when(xXGroupDao.findByGroupNames(Mockito.anyList())).thenReturn(Collections.singletonList(resource));
+		Mockito.when(daoManager.getXXPortalUser()).thenReturn(xXPortalUserDao);
+		Mockito.when(xXPortalUserDao.getById(1L)).thenReturn(tUser);
+
+		int count = XGroupService.createOrUpdateXGroupsWithOutLogin(Arrays.asList(existingGroup, newGroup));
+
+		Assert.assertEquals(2, count);
+		Mockito.verify(xXGroupDao, Mockito.times(1)).findByGroupNames(Arrays.asList("testGroup", "testGroup2"));
+		Mockito.verify(xXGroupDao, Mockito.never()).findByGroupName(Mockito.anyString());
+		Mockito.verify(entityDao, Mockito.times(1)).update(resource);
+		Mockito.verify(entityDao, Mockito.times(1)).create(Mockito.argThat((XXGroup group) -> "testGroup2".equals(group.getName())));
+	}
+
 	public VXGroup createvXGroup() {
 		VXGroup vXGroup = new VXGroup();
 		Date date = new Date();
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.solr;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.WebApplicationException;
+
+import org.apache.ranger.AccessAuditsService;
+import org.apache.ranger.common.MessageEnums;
+import org.apache.ranger.common.PropertiesUtil;
+import org.apache.ranger.common.RESTErrorUtil;
+import org.apache.ranger.common.SearchCriteria;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.view.VXAccessAuditList;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.mockito.Answers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class TestSolrAccessAuditsService {
+
+	@InjectMocks
+	SolrAccessAuditsService solrAccessAuditsService = new SolrAccessAuditsService();
+
+	@Mock
+	SolrMgr solrMgr;
+
+	@Mock
+	SolrUtil solrUtil;
+
+	@Mock
+	RESTErrorUtil restErrorUtil;
+
+	@Mock(answer = Answers.RETURNS_DEEP_STUBS)
+	RangerDaoManager daoManager;
+
+	@Mock
+	SolrClient solrClient;
+
+	@Mock
+	QueryResponse queryResponse;
+
+	@Before
+	public void setUp() {
+		solrAccessAuditsService.initSearch();
+
+		SolrDocument doc = new SolrDocument();
+
+		doc.setField("id", "event-1");
+		doc.setField("reqUser", "user1");
+
+		SolrDocumentList docs = new SolrDocumentList();
+
+		docs.add(doc);
+		docs.setNumFound(100);
+
+		Mockito.when(solrMgr.getSolrClient()).thenReturn(solrClient);
+		Mockito.when(queryResponse.getResults()).thenReturn(docs);
+		Mockito.when(solrUtil.searchResources(Mockito.any(SearchCriteria.class), Mockito.anyList(), Mockito.anyList(), Mockito.eq(solrClient))).thenReturn(queryResponse);
+	}
+
+	@After
+	public void tearDown() {
+		solrAccessAuditsService.destroySearch();
+	}
+
+	@Test
+	public void test1RepeatedSearchServedFromCache() {
+		VXAccessAuditList list1 = solrAccessAuditsService.searchXAccessAudits(searchCriteria(0, "user1", "user2"));
+		VXAccessAuditList list2 = solrAccessAuditsService.searchXAccessAudits(searchCriteria(0, "user2", "user1"));
+
+		Assert.assertEquals(1, list1.getResultSize());
+		Assert.assertEquals(100, list1.getTotalCount());
+		Assert.assertEquals("user1", list2.getVXAccessAudits().get(0).getRequestUser());
+
+		solrAccessAuditsService.searchXAccessAudits(searchCriteria(25, "user1", "user2"));
+
+		Mockito.verify(solrUtil, Mockito.times(2)).searchResources(Mockito.any(SearchCriteria.class), Mockito.anyList(), Mockito.anyList(), Mockito.eq(solrClient));
+	}
+
+	@Test
+	public void test2CursorSearchReturnsNextCursor() {
+		Mockito.when(queryResponse.getNextCursorMark()).thenReturn("AoE/ZXZlbnQtMQ==");
+
+		SearchCriteria searchCriteria = searchCriteria(0, "user1");
+
+		searchCriteria.getParamList().put(AccessAuditsService.PARAM_CURSOR, AccessAuditsService.CURSOR_START);
+
+		VXAccessAuditList list = solrAccessAuditsService.searchXAccessAudits(searchCriteria);
+
+		Assert.assertEquals("AoE/ZXZlbnQtMQ==", list.getNextCursor());
+	}
+
+	@Test
+	public void test3SearchPoolSharedAcrossStores() {
+		SolrAccessAuditsService otherService = new SolrAccessAuditsService();
+
+		otherService.initSearch();
+		otherService.destroySearch();
+
+		VXAccessAuditList list = solrAccessAuditsService.searchXAccessAudits(searchCriteria(0, "user1"));
+
+		Assert.assertEquals(1, list.getResultSize());
+	}
+
+	@Test
+	public void test4CancelRunningSearch() throws Exception {
+		CountDownLatch searchStarted = new CountDownLatch(1);
+		CountDownLatch searchRelease = new CountDownLatch(1);
+
+		Mockito.when(restErrorUtil.createRESTException(Mockito.anyString(), Mockito.any(MessageEnums.class))).thenReturn(new WebApplicationException());
+		Mockito.when(solrUtil.searchResources(Mockito.any(SearchCriteria.class), Mockito.anyList(), Mockito.anyList(), Mockito.eq(solrClient))).then(invocation -> {
+			searchStarted.countDown();
+			searchRelease.await();
+
+			return queryResponse;
+		});
+
+		SearchCriteria searchCriteria = searchCriteria(0, "user1");
+
+		searchCriteria.getParamList().put(AccessAuditsService.PARAM_SEARCH_ID, "search-1");
+
+		ExecutorService           requestThread = Executors.newSingleThreadExecutor();
+		Future<VXAccessAuditList> request       = requestThread.submit(() -> solrAccessAuditsService.searchXAccessAudits(searchCriteria));
+
+		try {
+			Assert.assertTrue(searchStarted.await(10, TimeUnit.SECONDS));
+			Assert.assertFalse(AccessAuditsService.cancelSearch("search-2"));
+			Assert.assertTrue(AccessAuditsService.cancelSearch("search-1"));
+
+			try {
+				request.get(10, TimeUnit.SECONDS);
+
+				Assert.fail("expected cancelled search to fail");
+			} catch (ExecutionException excp) {
+				Assert.assertTrue(excp.getCause() instanceof WebApplicationException);
+			}
+
+			Assert.assertFalse(AccessAuditsService.cancelSearch("search-1"));
+		} finally {
+			searchRelease.countDown();
+			requestThread.shutdownNow();
+		}
+	}
+
+	@Test
+	public void test5ServiceUserExclusionKeepsRequestedExclusions() {
+		PropertiesUtil.getPropertiesMap().put("ranger.plugins.hdfs.serviceuser", "hdfs");
+
+		try {
+			SearchCriteria searchCriteria = searchCriteria(0, "user1");
+
+			searchCriteria.getParamList().put("excludeServiceUser", "true");
+			searchCriteria.getParamList().put("-requestUser", Arrays.asList("user2", 3));
+
+			solrAccessAuditsService.searchXAccessAudits(searchCriteria);
+
+			Assert.assertEquals(Arrays.asList("hdfs", "user2", "3"), searchCriteria.getParamList().get("-requestUser"));
+		} finally {
+			PropertiesUtil.getPropertiesMap().remove("ranger.plugins.hdfs.serviceuser");
+		}
+	}
+
+	private SearchCriteria searchCriteria(int startIndex, String... users) {
+		SearchCriteria ret = new SearchCriteria();
+
+		ret.setStartIndex(startIndex);
+		ret.setMaxRows(25);
+		ret.setSortBy("eventTime");
+		ret.setSortType("desc");
+		ret.getParamList().put("requestUser", Arrays.asList(users));
+
+		return ret;
+	}
+}
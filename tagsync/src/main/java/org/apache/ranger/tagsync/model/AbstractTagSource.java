@@ -54,7 +54,12 @@ public String toString( ) {
 		return this.name;
 	}
 
-	protected void updateSink(final ServiceTags toUpload) throws Exception {
+	/*
+	 * returns false when the sink rejected the given ServiceTags as invalid
+	 */
+	protected boolean updateSink(final ServiceTags toUpload) throws Exception {
+		boolean ret = true;
+
 		if (toUpload == null) {
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("No ServiceTags to upload");
@@ -70,7 +75,10 @@ protected void updateSink(final ServiceTags toUpload) throws Exception {
 			}
 			try {
 				ServiceTags uploaded = tagSink.upload(toUpload);
-				if (LOG.isDebugEnabled()) {
+				if (uploaded == null) {
+					LOG.error("Upload of serviceTags of service " + toUpload.getServiceName() + " was rejected");
+					ret = false;
+				} else if (LOG.isDebugEnabled()) {
 					String uploadedJSON = new Gson().toJson(uploaded);
 					LOG.debug("Uploaded serviceTags=" + uploadedJSON);
 				}
@@ -81,6 +89,8 @@ protected void updateSink(final ServiceTags toUpload) throws Exception {
 				throw exception;
 			}
 		}
+
+		return ret;
 	}
 
 }
@@ -26,6 +26,9 @@
 
 public interface TagSink {
 	boolean initialize(Properties properties);
+	/*
+	 * returns the uploaded ServiceTags, or null when the destination rejected them as invalid
+	 */
 	ServiceTags upload(ServiceTags toUpload) throws Exception;
 	boolean start();
 	void stop();
@@ -100,6 +100,9 @@ public class TagSyncConfig extends Configuration {
 	private static final int DEFAULT_TAGSYNC_TAGADMIN_CONNECTION_CHECK_INTERVAL = 15000;
 	private static final long DEFAULT_TAGSYNC_ATLASREST_SOURCE_DOWNLOAD_INTERVAL = 900000;
 	public  static final int  DEFAULT_TAGSYNC_ATLASREST_SOURCE_ENTITIES_BATCH_SIZE = 10000;
+	private static final long DEFAULT_TAGSYNC_ATLASREST_SOURCE_FULL_SYNC_INTERVAL = 86400000;
+	private static final int  DEFAULT_TAGSYNC_ATLAS_SOURCE_WORKER_COUNT = 4;
+	private static final long DEFAULT_TAGSYNC_ATLAS_SOURCE_COALESCE_WINDOW = 1000;
 	private static final long DEFAULT_TAGSYNC_FILESOURCE_MOD_TIME_CHECK_INTERVAL = 60000;
 	private static final long DEFAULT_TAGSYNC_SOURCE_RETRY_INITIALIZATION_INTERVAL = 10000;
 
@@ -123,7 +126,20 @@ public class TagSyncConfig extends Configuration {
 	private static final int     DEFAULT_TAGSYNC_SINK_MAX_BATCH_SIZE = 1;
 	private static final String  TAGSYNC_SINK_MAX_BATCH_SIZE_PROP    = "ranger.tagsync.dest.ranger.max.batch.size";
 
+	private static final String  TAGSYNC_TAGADMIN_COMPRESSION_ENABLED_PROP         = "ranger.tagsync.dest.ranger.compression.enabled";
+	private static final String  TAGSYNC_TAGADMIN_MAX_INFLIGHT_UPLOADS_PROP        = "ranger.tagsync.dest.ranger.max.inflight.uploads";
+	private static final String  TAGSYNC_TAGADMIN_MAX_MERGED_RESOURCES_PROP        = "ranger.tagsync.dest.ranger.max.merged.resources";
+	private static final String  TAGSYNC_TAGADMIN_UPLOAD_TARGET_LATENCY_PROP       = "ranger.tagsync.dest.ranger.upload.target.latency.millis";
+	private static final int     DEFAULT_TAGSYNC_TAGADMIN_MAX_INFLIGHT_UPLOADS     = 4;
+	private static final int     DEFAULT_TAGSYNC_TAGADMIN_MAX_MERGED_RESOURCES     = 10000;
+	private static final long    DEFAULT_TAGSYNC_TAGADMIN_UPLOAD_TARGET_LATENCY    = 10000;
+
 	private static final String TAGSYNC_ATLASREST_SOURCE_ENTITIES_BATCH_SIZE = "ranger.tagsync.source.atlasrest.entities.batch.size";
+	private static final String TAGSYNC_ATLASREST_SOURCE_INCREMENTAL_UPLOAD_ENABLED = "ranger.tagsync.source.atlasrest.incremental.upload.enabled";
+	private static final String TAGSYNC_ATLASREST_SOURCE_FULL_SYNC_INTERVAL = "ranger.tagsync.source.atlasrest.full.sync.interval.millis";
+	private static final String TAGSYNC_ATLASREST_SOURCE_INDEX_FILE = "ranger.tagsync.source.atlasrest.index.file";
+	private static final String TAGSYNC_ATLAS_SOURCE_WORKER_COUNT = "ranger.tagsync.source.atlas.worker.count";
+	private static final String TAGSYNC_ATLAS_SOURCE_COALESCE_WINDOW = "ranger.tagsync.source.atlas.coalesce.window.millis";
 	public static final String TAGSYNC_SERVER_HA_ENABLED_PARAM = "ranger-tagsync.server.ha.enabled";
 
 	private Properties props;
@@ -568,4 +584,103 @@ static public int getAtlasRestSourceEntitiesBatchSize(Properties prop) {
 
 		return ret;
 	}
+
+	static public boolean isAtlasRestSourceIncrementalUploadEnabled(Properties prop) {
+		String val = prop.getProperty(TAGSYNC_ATLASREST_SOURCE_INCREMENTAL_UPLOAD_ENABLED);
+
+		return StringUtils.isBlank(val) || Boolean.parseBoolean(val.trim());
+	}
+
+	static public long getAtlasRestSourceFullSyncIntervalInMillis(Properties prop) {
+		String val = prop.getProperty(TAGSYNC_ATLASREST_SOURCE_FULL_SYNC_INTERVAL);
+		long   ret = DEFAULT_TAGSYNC_ATLASREST_SOURCE_FULL_SYNC_INTERVAL;
+
+		if (StringUtils.isNotBlank(val)) {
+			try {
+				ret = Long.valueOf(val);
+			} catch (NumberFormatException exception) {
+				// Ignore
+			}
+		}
+
+		return ret;
+	}
+
+	static public String getAtlasRestSourceIndexFile(Properties prop) {
+		return prop.getProperty(TAGSYNC_ATLASREST_SOURCE_INDEX_FILE);
+	}
+
+	static public int getAtlasSourceWorkerCount(Properties prop) {
+		String val = prop.getProperty(TAGSYNC_ATLAS_SOURCE_WORKER_COUNT);
+		int    ret = DEFAULT_TAGSYNC_ATLAS_SOURCE_WORKER_COUNT;
+
+		if (StringUtils.isNotBlank(val)) {
+			try {
+				ret = Integer.valueOf(val);
+			} catch (NumberFormatException exception) {
+				// Ignore
+			}
+		}
+
+		return ret;
+	}
+
+	static public long getAtlasSourceCoalesceWindowInMillis(Properties prop) {
+		String val = prop.getProperty(TAGSYNC_ATLAS_SOURCE_COALESCE_WINDOW);
+		long   ret = DEFAULT_TAGSYNC_ATLAS_SOURCE_COALESCE_WINDOW;
+
+		if (StringUtils.isNotBlank(val)) {
+			try {
+				ret = Long.valueOf(val);
+			} catch (NumberFormatException exception) {
+				// Ignore
+			}
+		}
+
+		return ret;
+	}
+
+	static public boolean isTagAdminCompressionEnabled(Properties prop) {
+		String val = prop.getProperty(TAGSYNC_TAGADMIN_COMPRESSION_ENABLED_PROP);
+
+		return StringUtils.isNotBlank(val) && Boolean.parseBoolean(val.trim());
+	}
+
+	static public int getTagAdminMaxInFlightUploads(Properties prop) {
+		return getIntProperty(prop, TAGSYNC_TAGADMIN_MAX_INFLIGHT_UPLOADS_PROP, DEFAULT_TAGSYNC_TAGADMIN_MAX_INFLIGHT_UPLOADS);
+	}
+
+	static public int getTagAdminMaxMergedResources(Properties prop) {
+		return getIntProperty(prop, TAGSYNC_TAGADMIN_MAX_MERGED_RESOURCES_PROP, DEFAULT_TAGSYNC_TAGADMIN_MAX_MERGED_RESOURCES);
+	}
+
+	static public long getTagAdminUploadTargetLatencyInMillis(Properties prop) {
+		String val = prop.getProperty(TAGSYNC_TAGADMIN_UPLOAD_TARGET_LATENCY_PROP);
+		long   ret = DEFAULT_TAGSYNC_TAGADMIN_UPLOAD_TARGET_LATENCY;
+
+		if (StringUtils.isNotBlank(val)) {
+			try {
+				ret = Long.valueOf(val);
+			} catch (NumberFormatException exception) {
+				// Ignore
+			}
+		}
+
+		return ret;
+	}
+
+	private static int getIntProperty(Properties prop, String name, int defaultValue) {
+		String val = prop.getProperty(name);
+		int    ret = defaultValue;
+
+		if (StringUtils.isNotBlank(val)) {
+			try {
+				ret = Integer.valueOf(val);
+			} catch (NumberFormatException exception) {
+				// Ignore
+			}
+		}
+
+		return ret;
+	}
 }
@@ -19,6 +19,11 @@
  * under the License.
  */
 import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import org.apache.ranger.plugin.util.RangerMetricsUtil;
 import org.slf4j.Logger;
@@ -27,8 +32,18 @@
 public class TagSyncMetricsProducer implements Runnable {
 
 	private static final Logger LOG = LoggerFactory.getLogger(TagSyncMetricsProducer.class);
+
+	private static final Map<String, Supplier<Map<String, Object>>> METRICS_SOURCES = new ConcurrentHashMap<>();
+
 	private boolean shutdownFlag = false;
 
+	/*
+	 * metrics returned by the given source are written, along with JVM metrics, under "tagsync"/name
+	 */
+	public static void registerMetricsSource(String name, Supplier<Map<String, Object>> source) {
+		METRICS_SOURCES.put(name, source);
+	}
+
 	public static void main(String[] args) {
 		TagSyncMetricsProducer tagSyncMetrics = new TagSyncMetricsProducer();
 		tagSyncMetrics.run();
@@ -86,7 +101,13 @@ private void writeJVMMetrics(String logFileNameWithPath, TagSyncConfig config) t
 					rangerMetricsUtil.setIsRoleActive(0);
 				}
 			}
-			rangerMetricsUtil.writeMetricsToFile(userMetricFile);
+			Map<String, Object> tagSyncMetrics = new TreeMap<>();
+
+			for (Map.Entry<String, Supplier<Map<String, Object>>> entry : METRICS_SOURCES.entrySet()) {
+				tagSyncMetrics.put(entry.getKey(), entry.getValue().get());
+			}
+
+			rangerMetricsUtil.writeMetricsToFile(userMetricFile, tagSyncMetrics.isEmpty() ? null : Collections.singletonMap("tagsync", tagSyncMetrics));
 
 		} catch (Throwable t) {
 			LOG.error("TagSyncMetricsProducer.writeJVMMetrics() failed to write metrics into file. Error details: ", t);
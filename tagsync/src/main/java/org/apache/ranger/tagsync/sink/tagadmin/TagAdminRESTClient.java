@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.tagsync.sink.tagadmin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.HttpHeaders;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.ranger.plugin.util.RangerRESTClient;
+import org.apache.ranger.plugin.util.RangerRESTUtils;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+
+public class TagAdminRESTClient extends RangerRESTClient {
+
+	public TagAdminRESTClient(String url, String sslConfigFileName, Configuration config) {
+		super(url, sslConfigFileName, config);
+	}
+
+	/*
+	 * puts the given object as gzip-compressed JSON. The body is compressed once, and resent as is on retries
+	 */
+	public ClientResponse putCompressed(String relativeUrl, Object obj, Cookie sessionId) throws Exception {
+		List<String>   urls         = getConfiguredURLs();
+		byte[]         body         = compress(toJson(obj));
+		ClientResponse ret          = null;
+		int            startIndex   = getLastKnownActiveUrlIndex();
+		int            currentIndex = 0;
+		int            retryAttempt = 0;
+
+		for (int index = 0; index < urls.size(); index++) {
+			try {
+				currentIndex = (startIndex + index) % urls.size();
+
+				WebResource webResource = sessionId != null ? createWebResourceForCookieAuth(currentIndex, relativeUrl) : getClient().resource(urls.get(currentIndex) + relativeUrl);
+
+				WebResource.Builder builder = webResource.getRequestBuilder();
+
+				if (sessionId != null) {
+					builder = builder.cookie(sessionId);
+				}
+
+				ret = builder.accept(RangerRESTUtils.REST_EXPECTED_MIME_TYPE).type(RangerRESTUtils.REST_MIME_TYPE_JSON)
+						.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+						.put(ClientResponse.class, body);
+
+				if (ret != null) {
+					setLastKnownActiveUrlIndex(currentIndex);
+					break;
+				}
+			} catch (ClientHandlerException ex) {
+				if (shouldRetry(urls.get(currentIndex), index, retryAttempt, ex)) {
+					retryAttempt++;
+
+					index = -1; // start from first url
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private static byte[] compress(String json) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(json.length() / 4 + 64);
+
+		try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(out), StandardCharsets.UTF_8)) {
+			writer.write(json);
+		}
+
+		return out.toByteArray();
+	}
+}
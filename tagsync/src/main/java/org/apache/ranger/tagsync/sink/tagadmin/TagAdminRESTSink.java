@@ -21,12 +21,25 @@
 
 import java.io.IOException;
 import java.security.PrivilegedAction;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.Cookie;
@@ -35,16 +48,30 @@
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.ranger.admin.client.datatype.RESTResponse;
-import org.apache.ranger.plugin.util.RangerRESTClient;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.model.RangerTagDef;
 import org.apache.ranger.plugin.util.ServiceTags;
 import org.apache.ranger.tagsync.model.TagSink;
 import org.apache.ranger.tagsync.process.TagSyncConfig;
+import org.apache.ranger.tagsync.process.TagSyncMetricsProducer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.sun.jersey.api.client.ClientResponse;
 
-public class TagAdminRESTSink implements TagSink, Runnable {
+/**
+ * Uploads ServiceTags to Ranger Admin. Uploads of different services are done in parallel, up to maxInFlightUploads
+ * at a time; uploads of a service are done one at a time, in the order received, so that tag-versions in Ranger Admin
+ * reflect the order of changes.
+ *
+ * While an upload of a service is in progress, subsequent add_or_update (or delete) ServiceTags of the service are
+ * queued; these are then merged and uploaded in a single request. The number of resources merged in a request is
+ * adjusted after each upload, to keep the upload latency close to uploadTargetLatencyInMillis. When Ranger Admin
+ * rejects a merged request (HTTP 400), its ServiceTags are uploaded again one at a time, so that only the invalid
+ * ones are rejected. upload() returns null for rejected ServiceTags.
+ */
+public class TagAdminRESTSink implements TagSink {
 	private static final Logger LOG = LoggerFactory.getLogger(TagAdminRESTSink.class);
 
 	private static final String REST_PREFIX = "/service";
@@ -52,24 +79,52 @@ public class TagAdminRESTSink implements TagSink, Runnable {
 
 	private static final String REST_URL_IMPORT_SERVICETAGS_RESOURCE = REST_PREFIX + MODULE_PREFIX + "/importservicetags/";
 
+	private static final int INITIAL_MERGED_RESOURCES = 1000;
+
+	enum UploadResult { UPLOADED, REJECTED, FAILED } // REJECTED: Ranger Admin returned HTTP 400, hence not retried
+
 	private long rangerAdminConnectionCheckInterval;
 
-	private Cookie sessionId=null;
+	private volatile Cookie sessionId=null;
 
-	private boolean isValidRangerCookie=false;
+	private volatile boolean isValidRangerCookie=false;
 
 	List<NewCookie> cookieList=new ArrayList<>();
 
 	private boolean isRangerCookieEnabled;
 	private String rangerAdminCookieName;
 
-	private RangerRESTClient tagRESTClient = null;
+	private TagAdminRESTClient tagRESTClient = null;
 
 	private boolean isKerberized;
 
-	private BlockingQueue<UploadWorkItem> uploadWorkItems;
+	private boolean isCompressionEnabled;
+
+	private int  maxInFlightUploads;
+	private int  maxMergedResources;
+	private long uploadTargetLatencyInMillis;
 
-	private Thread myThread = null;
+	private final Map<String, ServiceUploadQueue> serviceQueues = new HashMap<>();
+
+	private ExecutorService uploadExecutor = null;
+
+	private final AtomicInteger queuedItemCount     = new AtomicInteger();
+	private final AtomicInteger inFlightUploadCount = new AtomicInteger();
+	private final AtomicLong    uploadCount         = new AtomicLong();
+	private final AtomicLong    uploadedItemCount   = new AtomicLong();
+	private final AtomicLong    uploadFailureCount  = new AtomicLong();
+	private final AtomicLong    uploadTimeInMillis  = new AtomicLong();
+	private volatile long       lastUploadLatencyInMillis = 0;
+
+	public TagAdminRESTSink() {
+	}
+
+	TagAdminRESTSink(int maxInFlightUploads, int maxMergedResources, long uploadTargetLatencyInMillis, long rangerAdminConnectionCheckInterval) {
+		this.maxInFlightUploads                 = maxInFlightUploads;
+		this.maxMergedResources                 = maxMergedResources;
+		this.uploadTargetLatencyInMillis        = uploadTargetLatencyInMillis;
+		this.rangerAdminConnectionCheckInterval = rangerAdminConnectionCheckInterval;
+	}
 
 	@Override
 	public boolean initialize(Properties properties) {
@@ -87,6 +142,10 @@ public boolean initialize(Properties properties) {
 		isKerberized = TagSyncConfig.getTagsyncKerberosIdentity(properties) != null;
 		isRangerCookieEnabled = TagSyncConfig.isTagSyncRangerCookieEnabled(properties);
 		rangerAdminCookieName=TagSyncConfig.getRangerAdminCookieName(properties);
+		isCompressionEnabled = TagSyncConfig.isTagAdminCompressionEnabled(properties);
+		maxInFlightUploads = TagSyncConfig.getTagAdminMaxInFlightUploads(properties);
+		maxMergedResources = TagSyncConfig.getTagAdminMaxMergedResources(properties);
+		uploadTargetLatencyInMillis = TagSyncConfig.getTagAdminUploadTargetLatencyInMillis(properties);
 		sessionId=null;
 
 		if (LOG.isDebugEnabled()) {
@@ -95,17 +154,20 @@ public boolean initialize(Properties properties) {
 			LOG.debug("userName=" + userName);
 			LOG.debug("rangerAdminConnectionCheckInterval=" + rangerAdminConnectionCheckInterval);
 			LOG.debug("isKerberized=" + isKerberized);
+			LOG.debug("isCompressionEnabled=" + isCompressionEnabled);
+			LOG.debug("maxInFlightUploads=" + maxInFlightUploads);
+			LOG.debug("maxMergedResources=" + maxMergedResources);
+			LOG.debug("uploadTargetLatencyInMillis=" + uploadTargetLatencyInMillis);
 		}
 
 		if (StringUtils.isNotBlank(restUrl)) {
-			tagRESTClient = new RangerRESTClient(restUrl, sslConfigFile, TagSyncConfig.getInstance());
+			tagRESTClient = new TagAdminRESTClient(restUrl, sslConfigFile, TagSyncConfig.getInstance());
 			if (!isKerberized) {
 				tagRESTClient.setBasicAuthInfo(userName, password);
 			}
 			// Build and cache REST client. This will catch any errors in building REST client up-front
 			tagRESTClient.getClient();
 
-			uploadWorkItems = new LinkedBlockingQueue<UploadWorkItem>();
 			ret = true;
 		} else {
 			LOG.error("No value specified for property 'ranger.tagsync.tagadmin.rest.url'!");
@@ -127,7 +189,7 @@ public ServiceTags upload(ServiceTags toUpload) throws Exception {
 
 		UploadWorkItem uploadWorkItem = new UploadWorkItem(toUpload);
 
-		uploadWorkItems.put(uploadWorkItem);
+		enqueue(uploadWorkItem);
 
 		// Wait until message is successfully delivered
 		ServiceTags ret = uploadWorkItem.waitForUpload();
@@ -139,7 +201,7 @@ public ServiceTags upload(ServiceTags toUpload) throws Exception {
 		return ret;
 	}
 
-	private ServiceTags doUpload(ServiceTags serviceTags) throws Exception {
+	UploadResult doUpload(ServiceTags serviceTags) throws Exception {
 			if(isKerberized) {
 				try{
 					UserGroupInformation userGroupInformation = UserGroupInformation.getLoginUser();
@@ -156,40 +218,41 @@ private ServiceTags doUpload(ServiceTags serviceTags) throws Exception {
 							LOG.debug("Using Principal = " + userGroupInformation.getUserName());
 						}
 						final ServiceTags serviceTag = serviceTags;
-						ServiceTags ret = userGroupInformation.doAs(new PrivilegedAction<ServiceTags>() {
+						UploadResult ret = userGroupInformation.doAs(new PrivilegedAction<UploadResult>() {
 							@Override
-							public ServiceTags run() {
+							public UploadResult run() {
 								try {
 									return uploadServiceTags(serviceTag);
 								} catch (Exception e) {
 									LOG.error("Upload of service-tags failed with message ", e);
 								}
-								return null;
+								return UploadResult.FAILED;
 							}
 						});
 						return ret;
 					} else {
 						LOG.error("Failed to get UserGroupInformation.getLoginUser()");
-						return null; // This will cause retries !!!
+						return UploadResult.FAILED; // This will cause retries !!!
 					}
 				}catch(Exception e){
 					LOG.error("Upload of service-tags failed with message ", e);
 				}
-				return null;
+				return UploadResult.FAILED;
 			}else{
 				return uploadServiceTags(serviceTags);
 			}
 	}
 	
-	private ServiceTags uploadServiceTags(ServiceTags serviceTags) throws Exception {
+	private UploadResult uploadServiceTags(ServiceTags serviceTags) throws Exception {
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> doUpload()");
 		}
+		UploadResult   ret      = UploadResult.UPLOADED;
 		ClientResponse response = null;
 		if (isRangerCookieEnabled) {
 			response = uploadServiceTagsUsingCookie(serviceTags);
 		} else {
-			response = tagRESTClient.put(REST_URL_IMPORT_SERVICETAGS_RESOURCE, null, serviceTags);
+			response = putServiceTags(serviceTags, null);
 		}
 
 		if(response == null || response.getStatus() != HttpServletResponse.SC_NO_CONTENT) {
@@ -203,13 +266,14 @@ private ServiceTags uploadServiceTags(ServiceTags serviceTags) throws Exception
 				throw new Exception("Upload of service-tags failed with response: " + response);
 			}
 
+			ret = UploadResult.REJECTED;
 		}
 
 		if(LOG.isDebugEnabled()) {
-			LOG.debug("<== doUpload()");
+			LOG.debug("<== doUpload(): " + ret);
 		}
 
-		return serviceTags;
+		return ret;
 	}
 
 	private ClientResponse uploadServiceTagsUsingCookie(ServiceTags serviceTags) {
@@ -260,13 +324,13 @@ private ClientResponse tryWithCookie(ServiceTags serviceTags) {
 		return clientResponsebySessionId;
 	}
 
-	private synchronized ClientResponse uploadTagsWithCred(ServiceTags serviceTags) {
+	private ClientResponse uploadTagsWithCred(ServiceTags serviceTags) {
 			if (sessionId == null) {
 				tagRESTClient.resetClient();
 
 				ClientResponse response = null;
 				try {
-					response = tagRESTClient.put(REST_URL_IMPORT_SERVICETAGS_RESOURCE, null, serviceTags);
+					response = putServiceTags(serviceTags, null);
 				} catch (Exception e) {
 					LOG.error("Failed to get response, Error is : "+e.getMessage());
 				}
@@ -306,9 +370,10 @@ private ClientResponse uploadTagsWithCookie(ServiceTags serviceTags) {
 			LOG.debug("==> uploadTagsWithCookie");
 		}
 
-		ClientResponse response = null;
+		ClientResponse response         = null;
+		Cookie         currentSessionId = sessionId; // sessionId can be reset by concurrent uploads
 		try {
-			response = tagRESTClient.put(REST_URL_IMPORT_SERVICETAGS_RESOURCE, serviceTags, sessionId);
+			response = putServiceTags(serviceTags, currentSessionId);
 		} catch (Exception e) {
 			LOG.error("Failed to get response, Error is : "+e.getMessage());
 		}
@@ -325,7 +390,7 @@ private ClientResponse uploadTagsWithCookie(ServiceTags serviceTags) {
 				List<NewCookie> respCookieList = response.getCookies();
 				for (NewCookie respCookie : respCookieList) {
 					if (respCookie.getName().equalsIgnoreCase(rangerAdminCookieName)) {
-						if (!(sessionId.getValue().equalsIgnoreCase(respCookie.toCookie().getValue()))) {
+						if (currentSessionId == null || !(currentSessionId.getValue().equalsIgnoreCase(respCookie.toCookie().getValue()))) {
 							sessionId = respCookie.toCookie();
 						}
 						isValidRangerCookie = true;
@@ -342,90 +407,398 @@ private ClientResponse uploadTagsWithCookie(ServiceTags serviceTags) {
 		return response;
 	}
 
+	private ClientResponse putServiceTags(ServiceTags serviceTags, Cookie sessionId) throws Exception {
+		final ClientResponse ret;
+
+		if (isCompressionEnabled) {
+			ret = tagRESTClient.putCompressed(REST_URL_IMPORT_SERVICETAGS_RESOURCE, serviceTags, sessionId);
+		} else if (sessionId != null) {
+			ret = tagRESTClient.put(REST_URL_IMPORT_SERVICETAGS_RESOURCE, serviceTags, sessionId);
+		} else {
+			ret = tagRESTClient.put(REST_URL_IMPORT_SERVICETAGS_RESOURCE, null, serviceTags);
+		}
+
+		return ret;
+	}
+
 	@Override
 	public boolean start() {
+		uploadExecutor = Executors.newFixedThreadPool(Math.max(maxInFlightUploads, 1), r -> {
+			Thread t = new Thread(r, "TagAdminRESTSink-upload");
+
+			t.setDaemon(true);
+
+			return t;
+		});
 
-		myThread = new Thread(this);
-		myThread.setDaemon(true);
-		myThread.start();
+		TagSyncMetricsProducer.registerMetricsSource("tagAdminSink", this::getMetrics);
 
 		return true;
 	}
 
 	@Override
 	public void stop() {
-		if (myThread != null && myThread.isAlive()) {
-			myThread.interrupt();
+		if (uploadExecutor != null) {
+			uploadExecutor.shutdownNow();
 		}
 	}
 
-	@Override
-	public void run() {
-		if (LOG.isDebugEnabled()) {
-			LOG.debug("==> TagAdminRESTSink.run()");
-		}
+	private void enqueue(UploadWorkItem uploadWorkItem) {
+		ServiceTags serviceTags = uploadWorkItem.getServiceTags();
+		String      serviceName = serviceTags.getServiceName() != null ? serviceTags.getServiceName() : "";
 
-		while (true) {
-			if (TagSyncConfig.isTagSyncServiceActive()) {
-				UploadWorkItem uploadWorkItem;
+		synchronized (serviceQueues) {
+			ServiceUploadQueue serviceQueue = serviceQueues.computeIfAbsent(serviceName, k -> new ServiceUploadQueue(k, Math.max(1, Math.min(maxMergedResources, INITIAL_MERGED_RESOURCES))));
+
+			serviceQueue.items.add(uploadWorkItem);
+			queuedItemCount.incrementAndGet();
+
+			if (!serviceQueue.isUploadInProgress) {
+				serviceQueue.isUploadInProgress = true;
 
 				try {
-					uploadWorkItem = uploadWorkItems.take();
+					uploadExecutor.execute(() -> uploadQueuedItems(serviceQueue));
+				} catch (RejectedExecutionException excp) { // after stop()
+					serviceQueue.items.remove(uploadWorkItem);
+					queuedItemCount.decrementAndGet();
 
-					ServiceTags toUpload = uploadWorkItem.getServiceTags();
+					serviceQueue.isUploadInProgress = false;
 
-					boolean doRetry;
+					throw excp;
+				}
+			}
+		}
+	}
 
-					do {
-						doRetry = false;
+	/*
+	 * uploads queued items of the service one request at a time, until the queue is empty. On any other exit, like
+	 * when interrupted by stop(), the items taken and the items still queued are failed, so that no caller waits forever
+	 */
+	private void uploadQueuedItems(ServiceUploadQueue serviceQueue) {
+		List<UploadWorkItem> items        = Collections.emptyList();
+		boolean              isQueueEmpty = false;
 
-						try {
-							ServiceTags uploaded = doUpload(toUpload);
-							if (uploaded == null) { // Treat this as if an Exception is thrown by doUpload
-								doRetry = true;
-								Thread.sleep(rangerAdminConnectionCheckInterval);
-							} else {
-								// ServiceTags uploaded successfully
-								uploadWorkItem.uploadCompleted(uploaded);
+		try {
+			while (true) {
+				synchronized (serviceQueues) {
+					items = serviceQueue.takeNextBatch();
+
+					if (items.isEmpty()) {
+						serviceQueue.isUploadInProgress = false;
+						isQueueEmpty                    = true;
+
+						return;
+					}
+
+					queuedItemCount.addAndGet(-items.size());
+				}
+
+				ServiceTags toUpload = items.size() == 1 ? items.get(0).getServiceTags() : mergeServiceTags(items);
+
+				Set<UploadWorkItem> rejectedItems = Collections.emptySet();
+
+				inFlightUploadCount.incrementAndGet();
+
+				try {
+					long         startTime = System.currentTimeMillis();
+					UploadResult result    = uploadWithRetries(toUpload);
+
+					if (result == UploadResult.REJECTED) {
+						if (items.size() > 1) {
+							LOG.warn("Ranger admin rejected " + items.size() + " merged ServiceTags of service " + serviceQueue.serviceName + ". Uploading them one at a time");
+
+							rejectedItems = new HashSet<>();
+
+							for (UploadWorkItem item : items) {
+								if (uploadWithRetries(item.getServiceTags()) == UploadResult.REJECTED) {
+									rejectedItems.add(item);
+								}
 							}
-						} catch (InterruptedException interrupted) {
-							LOG.error("Caught exception..: ", interrupted);
-							return;
-						} catch (Exception exception) {
-							doRetry = true;
-							Thread.sleep(rangerAdminConnectionCheckInterval);
+						} else {
+							rejectedItems = new HashSet<>(items);
 						}
-					} while (doRetry);
+					}
+
+					long latency = System.currentTimeMillis() - startTime;
+
+					serviceQueue.onUploadCompleted(getResourceCount(toUpload), latency);
+
+					lastUploadLatencyInMillis = latency;
 
-				} catch (InterruptedException exception) {
-					LOG.error("Interrupted..: ", exception);
-					return;
+					uploadTimeInMillis.addAndGet(latency);
+					uploadCount.incrementAndGet();
+					uploadedItemCount.addAndGet(items.size());
+				} finally {
+					inFlightUploadCount.decrementAndGet();
+				}
+
+				for (UploadWorkItem item : items) {
+					if (rejectedItems.contains(item)) {
+						item.uploadRejected();
+					} else {
+						item.uploadCompleted(item.getServiceTags());
+					}
 				}
+
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Uploaded " + items.size() + " ServiceTags of service " + serviceQueue.serviceName + " in a single request. Resources=" + getResourceCount(toUpload) + ", batchLimit=" + serviceQueue.batchLimit);
+				}
+
+				items = Collections.emptyList();
 			}
+		} catch (InterruptedException interrupted) {
+			LOG.error("Interrupted..: ", interrupted);
+		} catch (RuntimeException excp) {
+			LOG.error("Upload of service-tags of service " + serviceQueue.serviceName + " failed", excp);
+		} finally {
+			if (!isQueueEmpty) {
+				failItems(serviceQueue, items);
+			}
+		}
+	}
+
+	private void failItems(ServiceUploadQueue serviceQueue, List<UploadWorkItem> takenItems) {
+		List<UploadWorkItem> toFail = new ArrayList<>(takenItems);
+
+		synchronized (serviceQueues) {
+			queuedItemCount.addAndGet(-serviceQueue.items.size());
+
+			toFail.addAll(serviceQueue.items);
+
+			serviceQueue.items.clear();
+
+			serviceQueue.isUploadInProgress = false;
 		}
 
+		Exception failure = new Exception("Upload of service-tags of service " + serviceQueue.serviceName + " was aborted");
+
+		for (UploadWorkItem item : toFail) {
+			item.uploadFailed(failure);
+		}
+	}
+
+	/*
+	 * uploads the given ServiceTags, retrying until Ranger Admin accepts or rejects it
+	 */
+	private UploadResult uploadWithRetries(ServiceTags toUpload) throws InterruptedException {
+		UploadResult ret;
+
+		while (true) {
+			if (!TagSyncConfig.isTagSyncServiceActive()) {
+				Thread.sleep(rangerAdminConnectionCheckInterval);
+
+				continue;
+			}
+
+			try {
+				ret = doUpload(toUpload);
+			} catch (InterruptedException interrupted) {
+				throw interrupted;
+			} catch (Exception exception) {
+				LOG.error("Upload of service-tags failed. Will retry after " + rangerAdminConnectionCheckInterval + " milliseconds", exception);
+
+				ret = UploadResult.FAILED;
+			}
+
+			if (ret != UploadResult.FAILED) {
+				break;
+			}
+
+			uploadFailureCount.incrementAndGet();
+
+			Thread.sleep(rangerAdminConnectionCheckInterval);
+		}
+
+		return ret;
+	}
+
+	/*
+	 * merges ServiceTags having the same op into one; resources, tags and tag-definitions are given new ids so that ids
+	 * from different ServiceTags don't collide. Resources are kept in the order received, as later ones override earlier ones.
+	 */
+	static ServiceTags mergeServiceTags(List<UploadWorkItem> items) {
+		ServiceTags             first            = items.get(0).getServiceTags();
+		Map<Long, RangerTagDef> tagDefs          = new LinkedHashMap<>();
+		Map<Long, RangerTag>    tags             = new LinkedHashMap<>();
+		Map<Long, List<Long>>   resourceToTagIds = new LinkedHashMap<>();
+		ServiceTags             ret              = new ServiceTags(first.getOp(), first.getServiceName(), first.getTagVersion(), first.getTagUpdateTime(), tagDefs, tags, new ArrayList<>(), resourceToTagIds);
+		Map<String, Long>       tagDefIds        = new HashMap<>();
+
+		for (UploadWorkItem item : items) {
+			ServiceTags     serviceTags = item.getServiceTags();
+			Map<Long, Long> tagIdMap    = new HashMap<>();
+
+			if (serviceTags.getTagDefinitions() != null) {
+				for (RangerTagDef tagDef : serviceTags.getTagDefinitions().values()) {
+					String key = tagDef.getName() != null ? tagDef.getName() : tagDef.getGuid();
+
+					if (key == null || !tagDefIds.containsKey(key)) {
+						long tagDefId = tagDefs.size();
+
+						tagDefs.put(tagDefId, tagDef);
+
+						if (key != null) {
+							tagDefIds.put(key, tagDefId);
+						}
+					}
+				}
+			}
+
+			if (serviceTags.getTags() != null) {
+				for (Map.Entry<Long, RangerTag> entry : serviceTags.getTags().entrySet()) {
+					long tagId = tags.size();
+
+					tags.put(tagId, entry.getValue());
+					tagIdMap.put(entry.getKey(), tagId);
+				}
+			}
+
+			for (RangerServiceResource resource : serviceTags.getServiceResources()) {
+				RangerServiceResource copy   = new RangerServiceResource(resource.getGuid(), resource.getServiceName(), resource.getResourceElements(), resource.getResourceSignature(), resource.getOwnerUser(), resource.getAdditionalInfo());
+				List<Long>            tagIds = serviceTags.getResourceToTagIds() != null ? serviceTags.getResourceToTagIds().get(resource.getId()) : null;
+
+				copy.setId((long) ret.getServiceResources().size());
+
+				ret.getServiceResources().add(copy);
+
+				if (tagIds != null) {
+					List<Long> newTagIds = new ArrayList<>(tagIds.size());
+
+					for (Long tagId : tagIds) {
+						Long newTagId = tagIdMap.get(tagId);
+
+						if (newTagId != null) {
+							newTagIds.add(newTagId);
+						}
+					}
+
+					resourceToTagIds.put(copy.getId(), newTagIds);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private static int getResourceCount(ServiceTags serviceTags) {
+		return serviceTags.getServiceResources() != null ? serviceTags.getServiceResources().size() : 0;
+	}
+
+	private static boolean isMergeable(ServiceTags serviceTags) {
+		return StringUtils.equalsIgnoreCase(serviceTags.getOp(), ServiceTags.OP_ADD_OR_UPDATE) || StringUtils.equalsIgnoreCase(serviceTags.getOp(), ServiceTags.OP_DELETE);
+	}
+
+	Map<String, Object> getMetrics() {
+		Map<String, Object> ret        = new LinkedHashMap<>();
+		Map<String, Object> batchSizes = new TreeMap<>();
+		long                uploads    = uploadCount.get();
+
+		synchronized (serviceQueues) {
+			for (ServiceUploadQueue serviceQueue : serviceQueues.values()) {
+				batchSizes.put(serviceQueue.serviceName, serviceQueue.batchLimit);
+			}
+		}
+
+		ret.put("queuedUploads", queuedItemCount.get());
+		ret.put("inFlightUploads", inFlightUploadCount.get());
+		ret.put("uploads", uploads);
+		ret.put("uploadedServiceTags", uploadedItemCount.get());
+		ret.put("uploadFailures", uploadFailureCount.get());
+		ret.put("lastUploadLatencyMillis", lastUploadLatencyInMillis);
+		ret.put("avgUploadLatencyMillis", uploads > 0 ? uploadTimeInMillis.get() / uploads : 0);
+		ret.put("batchLimits", batchSizes);
+
+		return ret;
+	}
+
+	private class ServiceUploadQueue {
+		private final String                serviceName;
+		private final Deque<UploadWorkItem> items = new ArrayDeque<>();
+		private       boolean               isUploadInProgress = false;
+		private volatile int                batchLimit; // max resources to merge in a request
+
+		ServiceUploadQueue(String serviceName, int batchLimit) {
+			this.serviceName = serviceName;
+			this.batchLimit  = batchLimit;
+		}
+
+		/*
+		 * returns the next item in the queue, along with subsequent items having the same op, up to batchLimit resources
+		 */
+		List<UploadWorkItem> takeNextBatch() {
+			List<UploadWorkItem> ret   = new ArrayList<>();
+			UploadWorkItem       first = items.poll();
+
+			if (first != null) {
+				int resourceCount = getResourceCount(first.getServiceTags());
+
+				ret.add(first);
+
+				if (isMergeable(first.getServiceTags())) {
+					while (!items.isEmpty()) {
+						ServiceTags next = items.peek().getServiceTags();
+
+						if (!StringUtils.equalsIgnoreCase(next.getOp(), first.getServiceTags().getOp()) || (resourceCount + getResourceCount(next)) > batchLimit) {
+							break;
+						}
+
+						resourceCount += getResourceCount(next);
+
+						ret.add(items.poll());
+					}
+				}
+			}
+
+			return ret;
+		}
+
+		/*
+		 * grows the batch limit while uploads complete well within the target latency, and shrinks it when they take longer
+		 */
+		void onUploadCompleted(int resourceCount, long latencyInMillis) {
+			if (latencyInMillis > uploadTargetLatencyInMillis) {
+				batchLimit = Math.max(1, Math.min(batchLimit, resourceCount) / 2);
+			} else if (latencyInMillis < uploadTargetLatencyInMillis / 2 && resourceCount >= batchLimit / 2) {
+				batchLimit = Math.max(1, Math.min(batchLimit * 2, maxMergedResources));
+			}
+		}
 	}
 
 	static class UploadWorkItem {
 		private ServiceTags serviceTags;
-		private BlockingQueue<ServiceTags> uploadedServiceTags;
+		private BlockingQueue<Object> uploadResult; // uploaded ServiceTags, UploadResult.REJECTED, or the Exception that failed the upload
 
 		ServiceTags getServiceTags() {
 			return serviceTags;
 		}
 
-		ServiceTags waitForUpload() throws InterruptedException {
-			return uploadedServiceTags.take();
+		ServiceTags waitForUpload() throws Exception {
+			Object result = uploadResult.take();
+
+			if (result instanceof Exception) {
+				throw (Exception) result;
+			}
+
+			return result == UploadResult.REJECTED ? null : (ServiceTags) result;
 		}
 
-		void uploadCompleted(ServiceTags uploaded) throws InterruptedException {
+		void uploadCompleted(ServiceTags uploaded) {
 			// ServiceTags uploaded successfully
-			uploadedServiceTags.put(uploaded);
+			uploadResult.offer(uploaded);
+		}
+
+		void uploadRejected() {
+			// ServiceTags rejected by Ranger Admin, hence not retried
+			uploadResult.offer(UploadResult.REJECTED);
+		}
+
+		void uploadFailed(Exception failure) {
+			uploadResult.offer(failure);
 		}
 
 		UploadWorkItem(ServiceTags serviceTags) {
 			setServiceTags(serviceTags);
-			uploadedServiceTags = new ArrayBlockingQueue<ServiceTags>(1);
+			uploadResult = new ArrayBlockingQueue<>(1);
 		}
 
 		void setServiceTags(ServiceTags serviceTags) {
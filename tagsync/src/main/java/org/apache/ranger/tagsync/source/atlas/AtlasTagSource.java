@@ -34,6 +34,7 @@
 import org.apache.atlas.kafka.AtlasKafkaMessage;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.ranger.tagsync.process.TagSyncConfig;
+import org.apache.ranger.tagsync.process.TagSyncMetricsProducer;
 import org.apache.ranger.tagsync.source.atlasrest.RangerAtlasEntityWithTags;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,9 +44,16 @@
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AtlasTagSource extends AbstractTagSource {
 	private static final Logger LOG = LoggerFactory.getLogger(AtlasTagSource.class);
@@ -58,7 +66,12 @@ public class AtlasTagSource extends AbstractTagSource {
 
 	public static final int    MAX_WAIT_TIME_IN_MILLIS = 1000;
 
+	private static final int   LANE_QUEUE_MIN_CAPACITY         = 1000;
+	private static final long  UPLOAD_RETRY_INTERVAL_IN_MILLIS = 1000;
+
 	private             int    maxBatchSize;
+	private             int    workerCount;
+	private             long   coalesceWindowInMillis;
 
 	private ConsumerRunnable consumerTask;
 	private Thread myThread = null;
@@ -112,14 +125,16 @@ public boolean initialize(Properties properties) {
 		}
 
 		if (ret) {
+			maxBatchSize           = TagSyncConfig.getSinkMaxBatchSize(properties);
+			workerCount            = TagSyncConfig.getAtlasSourceWorkerCount(properties);
+			coalesceWindowInMillis = TagSyncConfig.getAtlasSourceCoalesceWindowInMillis(properties);
+
 			NotificationInterface notification = NotificationProvider.get();
 			List<NotificationConsumer<EntityNotification>> iterators = notification.createConsumers(NotificationInterface.NotificationType.ENTITIES, 1);
 
 			consumerTask = new ConsumerRunnable(iterators.get(0));
 		}
 
-		maxBatchSize = TagSyncConfig.getSinkMaxBatchSize(properties);
-
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== AtlasTagSource.initialize(), result=" + ret);
 		}
@@ -137,6 +152,8 @@ public boolean start() {
 			myThread = new Thread(consumerTask);
 			myThread.setDaemon(true);
 			myThread.start();
+
+			TagSyncMetricsProducer.registerMetricsSource("atlasKafkaSource", consumerTask::getMetrics);
 		}
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("<== AtlasTagSource.start()");
@@ -165,16 +182,19 @@ private static String getPrintableEntityNotification(EntityNotificationWrapper n
 	private class ConsumerRunnable implements Runnable {
 
 		private final NotificationConsumer<EntityNotification> consumer;
-
-		private final List<RangerAtlasEntityWithTags>             atlasEntitiesWithTags = new ArrayList<>();
-		private final List<AtlasKafkaMessage<EntityNotification>> messages              = new ArrayList<>();
-		private       AtlasKafkaMessage<EntityNotification>       lastUnhandledMessage  = null;
-
-		private long    offsetOfLastMessageCommittedToKafka  = -1L;
-		private boolean isHandlingDeleteOps                  = false;
+		private final NotificationLane[]                       lanes;
+		private final Map<TopicPartition, PartitionOffsets>    partitionOffsets      = new ConcurrentHashMap<>();
+		private final AtomicLong                               notificationsReceived = new AtomicLong();
+		private final AtomicLong                               uploadCount           = new AtomicLong();
+		private final AtomicLong                               uploadedEntityCount   = new AtomicLong();
 
 		private ConsumerRunnable(NotificationConsumer<EntityNotification> consumer) {
 			this.consumer = consumer;
+			this.lanes    = new NotificationLane[Math.max(workerCount, 1)];
+
+			for (int i = 0; i < lanes.length; i++) {
+				lanes[i] = new NotificationLane(maxBatchSize, coalesceWindowInMillis, UPLOAD_RETRY_INTERVAL_IN_MILLIS, this::buildAndUploadServiceTags);
+			}
 		}
 
 		@Override
@@ -183,87 +203,158 @@ public void run() {
 				LOG.debug("==> ConsumerRunnable.run()");
 			}
 
-			while (true) {
-				if (TagSyncConfig.isTagSyncServiceActive()) {
-					if (LOG.isDebugEnabled()) {
-						LOG.debug("==> ConsumerRunnable.run() is running as server is active");
-					}
-					try {
-						List<AtlasKafkaMessage<EntityNotification>> newMessages = consumer.receive(MAX_WAIT_TIME_IN_MILLIS);
+			for (int i = 0; i < lanes.length; i++) {
+				Thread laneThread = new Thread(lanes[i], "AtlasTagSource-worker-" + i);
+
+				laneThread.setDaemon(true);
+				laneThread.start();
 
-					if (newMessages.size() == 0) {
+				lanes[i].thread = laneThread;
+			}
+
+			try {
+				while (true) {
+					if (TagSyncConfig.isTagSyncServiceActive()) {
 						if (LOG.isDebugEnabled()) {
-							LOG.debug("AtlasTagSource.ConsumerRunnable.run: no message from NotificationConsumer within " + MAX_WAIT_TIME_IN_MILLIS + " milliseconds");
-						}
-						if (CollectionUtils.isNotEmpty(atlasEntitiesWithTags)) {
-							buildAndUploadServiceTags();
+							LOG.debug("==> ConsumerRunnable.run() is running as server is active");
 						}
-					} else {
-						for (AtlasKafkaMessage<EntityNotification> message : newMessages) {
-							EntityNotification notification = message != null ? message.getMessage() : null;
-
-							if (notification != null) {
-								EntityNotificationWrapper notificationWrapper = null;
-								try {
-									notificationWrapper = new EntityNotificationWrapper(notification);
-								} catch (Throwable e) {
-									LOG.error("notification:[" + notification + "] has some issues..perhaps null entity??", e);
-								}
-								if (notificationWrapper != null) {
-									if (LOG.isDebugEnabled()) {
-										LOG.debug("Message-offset=" + message.getOffset() + ", Notification=" + getPrintableEntityNotification(notificationWrapper));
-									}
-
-									if (AtlasNotificationMapper.isNotificationHandled(notificationWrapper)) {
-
-										if ((notificationWrapper.getIsEntityDeleteOp() && !isHandlingDeleteOps) || (!notificationWrapper.getIsEntityDeleteOp() && isHandlingDeleteOps)) {
-											if (CollectionUtils.isNotEmpty(atlasEntitiesWithTags)) {
-												buildAndUploadServiceTags();
-											}
-											isHandlingDeleteOps = !isHandlingDeleteOps;
-										}
-
-										atlasEntitiesWithTags.add(new RangerAtlasEntityWithTags(notificationWrapper));
-										messages.add(message);
-									} else {
-										AtlasNotificationMapper.logUnhandledEntityNotification(notificationWrapper);
-										lastUnhandledMessage = message;
-									}
+						try {
+							List<AtlasKafkaMessage<EntityNotification>> newMessages = consumer.receive(MAX_WAIT_TIME_IN_MILLIS);
+
+							if (newMessages.size() == 0) {
+								if (LOG.isDebugEnabled()) {
+									LOG.debug("AtlasTagSource.ConsumerRunnable.run: no message from NotificationConsumer within " + MAX_WAIT_TIME_IN_MILLIS + " milliseconds");
 								}
 							} else {
-								LOG.error("Null entityNotification received from Kafka!! Ignoring..");
+								for (AtlasKafkaMessage<EntityNotification> message : newMessages) {
+									dispatch(message);
+								}
 							}
-						}
-						if (CollectionUtils.isNotEmpty(atlasEntitiesWithTags) && atlasEntitiesWithTags.size() >= maxBatchSize) {
-							buildAndUploadServiceTags();
+
+							commitToKafka();
+						} catch (InterruptedException interrupted) {
+							throw interrupted;
+						} catch (Exception exception) {
+							LOG.error("Caught exception..: ", exception);
+							// If transient error, retry after short interval
+							Thread.sleep(100);
 						}
 					}
-					if (lastUnhandledMessage != null) {
-						commitToKafka(lastUnhandledMessage);
-						lastUnhandledMessage = null;
+				}
+			} catch (InterruptedException interrupted) {
+				LOG.error("Interrupted: ", interrupted);
+				LOG.error("Returning from thread. May cause process to be up but not processing events!!");
+			} finally {
+				for (NotificationLane lane : lanes) {
+					if (lane.thread != null) {
+						lane.thread.interrupt();
 					}
+				}
+			}
+		}
 
-				} catch (Exception exception) {
-					LOG.error("Caught exception..: ", exception);
-					// If transient error, retry after short interval
+		/*
+		 * hands over the notification to the lane of its entity, so that notifications of an entity are processed in the
+		 * order received; notifications not handled by tagsync are considered processed right away
+		 */
+		private void dispatch(AtlasKafkaMessage<EntityNotification> message) throws InterruptedException {
+			EntityNotification notification = message != null ? message.getMessage() : null;
+
+			if (notification == null) {
+				LOG.error("Null entityNotification received from Kafka!! Ignoring..");
+
+				return;
+			}
+
+			PartitionOffsets offsets = partitionOffsets.computeIfAbsent(new TopicPartition(message.getTopic(), message.getPartition()), k -> new PartitionOffsets());
+
+			offsets.received(message.getOffset(), message.getMsgCreated());
+			notificationsReceived.incrementAndGet();
+
+			EntityNotificationWrapper notificationWrapper = null;
+			try {
+				notificationWrapper = new EntityNotificationWrapper(notification);
+			} catch (Throwable e) {
+				LOG.error("notification:[" + notification + "] has some issues..perhaps null entity??", e);
+			}
+
+			if (notificationWrapper != null) {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Message-offset=" + message.getOffset() + ", Notification=" + getPrintableEntityNotification(notificationWrapper));
+				}
+
+				if (AtlasNotificationMapper.isNotificationHandled(notificationWrapper)) {
+					String           guid = notificationWrapper.getRangerAtlasEntity() != null ? notificationWrapper.getRangerAtlasEntity().getGuid() : null;
+					NotificationLane lane = lanes[guid != null ? (guid.hashCode() & Integer.MAX_VALUE) % lanes.length : 0];
+
+					lane.queue.put(new PendingNotification(new RangerAtlasEntityWithTags(notificationWrapper), notificationWrapper.getIsEntityDeleteOp(), message, offsets));
+
+					return;
+				}
+
+				AtlasNotificationMapper.logUnhandledEntityNotification(notificationWrapper);
+			}
+
+			offsets.processed(message.getOffset());
+		}
+
+		/*
+		 * commits, for each partition, the offset up to which all messages have been processed
+		 */
+		private void commitToKafka() {
+			for (Map.Entry<TopicPartition, PartitionOffsets> entry : partitionOffsets.entrySet()) {
+				TopicPartition   partition     = entry.getKey();
+				PartitionOffsets offsets       = entry.getValue();
+				long             messageOffset = offsets.getCommittableOffset();
+
+				if (messageOffset > offsets.lastCommittedOffset) {
 					try {
-						Thread.sleep(100);
-					} catch (InterruptedException interrupted) {
-						LOG.error("Interrupted: ", interrupted);
-						LOG.error("Returning from thread. May cause process to be up but not processing events!!");
-						return;
+						if (LOG.isDebugEnabled()) {
+							LOG.debug("Committing message with offset:[" + messageOffset + "] of partition:[" + partition + "] to Kafka");
+						}
+						consumer.commit(partition, messageOffset);
+					} catch (Exception commitException) {
+						LOG.warn("Ranger tagsync already processed message at offset " + messageOffset + ". Ignoring failure in committing offset of partition:[" + partition + "]", commitException);
 					}
+
+					offsets.lastCommittedOffset = messageOffset;
 				}
-			  }
 			}
 		}
 
-		private void buildAndUploadServiceTags() throws Exception {
+		private Map<String, Object> getMetrics() {
+			Map<String, Object> ret        = new LinkedHashMap<>();
+			Map<String, Object> partitions = new TreeMap<>();
+			long                now        = System.currentTimeMillis();
+			int                 queued     = 0;
+			long                failures   = 0;
+
+			for (NotificationLane lane : lanes) {
+				queued   += lane.queue.size() + lane.batchSize;
+				failures += lane.uploadFailureCount.get();
+			}
+
+			for (Map.Entry<TopicPartition, PartitionOffsets> entry : partitionOffsets.entrySet()) {
+				partitions.put(entry.getKey().toString(), entry.getValue().getMetrics(now));
+			}
+
+			ret.put("workers", lanes.length);
+			ret.put("notificationsReceived", notificationsReceived.get());
+			ret.put("notificationsPending", queued);
+			ret.put("uploads", uploadCount.get());
+			ret.put("uploadedEntities", uploadedEntityCount.get());
+			ret.put("uploadFailures", failures);
+			ret.put("partitions", partitions);
+
+			return ret;
+		}
+
+		private void buildAndUploadServiceTags(List<RangerAtlasEntityWithTags> atlasEntitiesWithTags, boolean isHandlingDeleteOps) throws Exception {
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("==> buildAndUploadServiceTags()");
 			}
 
-			if (CollectionUtils.isNotEmpty(atlasEntitiesWithTags) && CollectionUtils.isNotEmpty(messages)) {
+			if (CollectionUtils.isNotEmpty(atlasEntitiesWithTags)) {
 
 				Map<String, ServiceTags> serviceTagsMap = AtlasNotificationMapper.processAtlasEntities(atlasEntitiesWithTags);
 
@@ -287,51 +378,175 @@ private void buildAndUploadServiceTags() throws Exception {
 							LOG.debug("serviceTags=" + serviceTagsString);
 						}
 						updateSink(entry.getValue());
+
+						uploadCount.incrementAndGet();
 					}
 				}
 
-				AtlasKafkaMessage<EntityNotification> latestMessageDeliveredToRanger       = messages.get(messages.size() - 1);
-				commitToKafka(latestMessageDeliveredToRanger);
+				uploadedEntityCount.addAndGet(atlasEntitiesWithTags.size());
+			}
 
-				atlasEntitiesWithTags.clear();
-				messages.clear();
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("<== buildAndUploadServiceTags()");
+			}
+		}
+	}
 
-				if (LOG.isDebugEnabled()) {
-					LOG.debug("Completed processing batch of messages of size:[" + messages.size() + "] received from NotificationConsumer");
+	interface BatchUploader {
+		void upload(List<RangerAtlasEntityWithTags> atlasEntitiesWithTags, boolean isHandlingDeleteOps) throws Exception;
+	}
+
+	/*
+	 * Processes notifications of a subset of entities: notifications received within coalesceWindowInMillis, up to
+	 * maxBatchSize, are uploaded together; only the last notification of an entity in a batch is uploaded. Delete and
+	 * add/update notifications are uploaded in separate batches. A failed upload is retried until it succeeds.
+	 */
+	static class NotificationLane implements Runnable {
+		final         BlockingQueue<PendingNotification>     queue;
+		final         AtomicLong                             uploadFailureCount  = new AtomicLong();
+		private final int                                    maxBatchSize;
+		private final long                                   coalesceWindowInMillis;
+		private final long                                   retryIntervalInMillis;
+		private final BatchUploader                          uploader;
+		private final Map<String, RangerAtlasEntityWithTags> batch               = new LinkedHashMap<>();
+		private final List<PendingNotification>              batchMessages       = new ArrayList<>();
+		private       boolean                                isHandlingDeleteOps = false;
+		private       long                                   batchStartTime      = 0;
+		private volatile int                                 batchSize           = 0;
+		private       Thread                                 thread;
+
+		NotificationLane(int maxBatchSize, long coalesceWindowInMillis, long retryIntervalInMillis, BatchUploader uploader) {
+			this.queue                  = new LinkedBlockingQueue<>(Math.max(maxBatchSize * 2, LANE_QUEUE_MIN_CAPACITY));
+			this.maxBatchSize           = maxBatchSize;
+			this.coalesceWindowInMillis = coalesceWindowInMillis;
+			this.retryIntervalInMillis  = retryIntervalInMillis;
+			this.uploader               = uploader;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					long                waitTime = batchMessages.isEmpty() ? coalesceWindowInMillis : Math.max(0, batchStartTime + coalesceWindowInMillis - System.currentTimeMillis());
+					PendingNotification next     = queue.poll(waitTime, TimeUnit.MILLISECONDS);
+
+					if (next != null) {
+						add(next);
+					}
+
+					if (isBatchDue()) {
+						uploadBatch();
+					}
 				}
+			} catch (InterruptedException interrupted) {
+				LOG.info("AtlasTagSource worker {} interrupted. Exiting", Thread.currentThread().getName());
+			}
+		}
+
+		void add(PendingNotification next) throws InterruptedException {
+			if (next.isDeleteOp != isHandlingDeleteOps) {
+				uploadBatch();
 
+				isHandlingDeleteOps = next.isDeleteOp;
 			}
 
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("<== buildAndUploadServiceTags()");
+			if (batchMessages.isEmpty()) {
+				batchStartTime = System.currentTimeMillis();
 			}
+
+			String key = next.entityWithTags.getEntity() != null && next.entityWithTags.getEntity().getGuid() != null ? next.entityWithTags.getEntity().getGuid() : ("offset:" + next.message.getPartition() + ":" + next.message.getOffset());
+
+			batch.remove(key); // keep the entity at the position of its last notification
+			batch.put(key, next.entityWithTags);
+			batchMessages.add(next);
+
+			batchSize = batchMessages.size();
 		}
 
-		private void commitToKafka(AtlasKafkaMessage<EntityNotification> messageToCommit) {
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("==> commitToKafka(" + messageToCommit + ")");
-			}
+		boolean isBatchDue() {
+			return !batchMessages.isEmpty() && (batchMessages.size() >= maxBatchSize || (System.currentTimeMillis() - batchStartTime) >= coalesceWindowInMillis);
+		}
 
-			long messageOffset = messageToCommit.getOffset();
-			int  partitionId   = messageToCommit.getPartition();
+		void uploadBatch() throws InterruptedException {
+			if (batchMessages.isEmpty()) {
+				return;
+			}
 
-			if (offsetOfLastMessageCommittedToKafka < messageOffset) {
-				TopicPartition partition = new TopicPartition(messageToCommit.getTopic(), partitionId);
+			while (true) {
 				try {
-					if (LOG.isDebugEnabled()) {
-						LOG.debug("Committing message with offset:[" + messageOffset + "] to Kafka");
-					}
-					consumer.commit(partition, messageOffset);
-					offsetOfLastMessageCommittedToKafka = messageOffset;
-				} catch (Exception commitException) {
-					LOG.warn("Ranger tagsync already processed message at offset " + messageOffset + ". Ignoring failure in committing message:[" + messageToCommit + "]", commitException);
+					uploader.upload(new ArrayList<>(batch.values()), isHandlingDeleteOps);
+
+					break;
+				} catch (Exception exception) {
+					uploadFailureCount.incrementAndGet();
+
+					LOG.error("Failed to upload tags for " + batch.size() + " entities. Will retry after " + retryIntervalInMillis + " milliseconds", exception);
+
+					Thread.sleep(retryIntervalInMillis);
 				}
 			}
 
+			for (PendingNotification notification : batchMessages) {
+				notification.offsets.processed(notification.message.getOffset());
+			}
+
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("<== commitToKafka(" + messageToCommit + ")");
+				LOG.debug("Completed processing batch of messages of size:[" + batchMessages.size() + "] received from NotificationConsumer");
 			}
+
+			batch.clear();
+			batchMessages.clear();
+
+			batchSize = 0;
 		}
 	}
-}
 
+	static class PendingNotification {
+		final RangerAtlasEntityWithTags             entityWithTags;
+		final boolean                               isDeleteOp;
+		final AtlasKafkaMessage<EntityNotification> message;
+		final PartitionOffsets                      offsets;
+
+		PendingNotification(RangerAtlasEntityWithTags entityWithTags, boolean isDeleteOp, AtlasKafkaMessage<EntityNotification> message, PartitionOffsets offsets) {
+			this.entityWithTags = entityWithTags;
+			this.isDeleteOp     = isDeleteOp;
+			this.message        = message;
+			this.offsets        = offsets;
+		}
+	}
+
+	/*
+	 * offsets of messages of a partition received but not yet processed; messages are processed out of order across lanes,
+	 * hence the offset committed to Kafka is the one just before the oldest message not yet processed
+	 */
+	static class PartitionOffsets {
+		private final TreeMap<Long, Long> pending             = new TreeMap<>(); // offset -> message creation time
+		private       long                lastReceivedOffset  = -1L;
+		              long                lastCommittedOffset = -1L; // accessed only by the consumer thread
+
+		synchronized void received(long offset, long msgCreated) {
+			pending.put(offset, msgCreated);
+
+			lastReceivedOffset = Math.max(lastReceivedOffset, offset);
+		}
+
+		synchronized void processed(long offset) {
+			pending.remove(offset);
+		}
+
+		synchronized long getCommittableOffset() {
+			return pending.isEmpty() ? lastReceivedOffset : pending.firstKey() - 1;
+		}
+
+		synchronized Map<String, Object> getMetrics(long now) {
+			Map<String, Object> ret = new LinkedHashMap<>();
+
+			ret.put("lastReceivedOffset", lastReceivedOffset);
+			ret.put("lastCommittedOffset", lastCommittedOffset);
+			ret.put("pendingMessages", pending.size());
+			ret.put("lagMillis", pending.isEmpty() || pending.firstEntry().getValue() <= 0 ? 0 : now - pending.firstEntry().getValue());
+
+			return ret;
+		}
+	}
+}
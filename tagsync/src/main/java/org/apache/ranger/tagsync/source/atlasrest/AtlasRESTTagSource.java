@@ -80,6 +80,8 @@ protected DateFormat initialValue() {
 	private boolean  isKerberized     = false;
 	private String[] userNamePassword = null;
 	private int      entitiesBatchSize = TagSyncConfig.DEFAULT_TAGSYNC_ATLASREST_SOURCE_ENTITIES_BATCH_SIZE;
+	private long     fullSyncIntervalInMillis;
+	private UploadedServiceTagsIndex uploadedIndex = null; // null when incremental upload is disabled
 
 	private Thread myThread = null;
 
@@ -136,6 +138,13 @@ public boolean initialize(Properties properties) {
 		sleepTimeBetweenCycleInMillis = TagSyncConfig.getTagSourceAtlasDownloadIntervalInMillis(properties);
 		isKerberized = TagSyncConfig.getTagsyncKerberosIdentity(properties) != null;
 		entitiesBatchSize = TagSyncConfig.getAtlasRestSourceEntitiesBatchSize(properties);
+		fullSyncIntervalInMillis = TagSyncConfig.getAtlasRestSourceFullSyncIntervalInMillis(properties);
+
+		if (TagSyncConfig.isAtlasRestSourceIncrementalUploadEnabled(properties)) {
+			uploadedIndex = new UploadedServiceTagsIndex(TagSyncConfig.getAtlasRestSourceIndexFile(properties));
+
+			uploadedIndex.load();
+		}
 
 		String restEndpoint       = TagSyncConfig.getAtlasRESTEndpoint(properties);
 		String sslConfigFile = TagSyncConfig.getAtlasRESTSslConfigFile(properties);
@@ -226,7 +235,11 @@ public void synchUp() throws Exception {
 			}
 			Map<String, ServiceTags> serviceTagsMap = AtlasNotificationMapper.processAtlasEntities(rangerAtlasEntities);
 
-			if (MapUtils.isNotEmpty(serviceTagsMap)) {
+			if (uploadedIndex != null) {
+				if (serviceTagsMap != null) {
+					uploadChanges(serviceTagsMap);
+				}
+			} else if (MapUtils.isNotEmpty(serviceTagsMap)) {
 				for (Map.Entry<String, ServiceTags> entry : serviceTagsMap.entrySet()) {
 					if (LOG.isDebugEnabled()) {
 						Gson gsonBuilder = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z")
@@ -243,6 +256,56 @@ public void synchUp() throws Exception {
 
 	}
 
+	/*
+	 * uploads only the resources added/updated/removed since the last upload, as recorded in uploadedIndex. Complete
+	 * ServiceTags are uploaded (op=replace) in the first cycle and every fullSyncIntervalInMillis after, to reconcile
+	 * with changes made in Ranger Admin by other means. When an upload of a service is rejected, the fingerprints
+	 * of the service are left as before, so that its changes are uploaded again in the next cycle.
+	 */
+	void uploadChanges(Map<String, ServiceTags> serviceTagsMap) throws Exception {
+		boolean     isFullSync    = uploadedIndex.isFullSyncDue(fullSyncIntervalInMillis);
+		long        syncTime      = System.currentTimeMillis();
+		Set<String> serviceNames  = uploadedIndex.getServiceNames();
+		int         uploadCount   = 0;
+		int         rejectedCount = 0;
+
+		serviceNames.addAll(serviceTagsMap.keySet());
+
+		try {
+			for (String serviceName : serviceNames) {
+				ServiceTags       serviceTags  = serviceTagsMap.get(serviceName);
+				Map<String, Long> fingerprints = UploadedServiceTagsIndex.getFingerprints(serviceTags);
+				boolean           isAccepted   = true;
+
+				if (isFullSync && serviceTags != null) {
+					isAccepted = updateSink(serviceTags);
+
+					uploadCount++;
+				} else {
+					for (ServiceTags changes : uploadedIndex.getChanges(serviceName, serviceTags, fingerprints)) {
+						isAccepted = updateSink(changes) && isAccepted;
+
+						uploadCount++;
+					}
+				}
+
+				if (isAccepted) {
+					uploadedIndex.setFingerprints(serviceName, fingerprints);
+				} else {
+					rejectedCount++;
+				}
+			}
+
+			if (isFullSync) {
+				uploadedIndex.setLastFullSyncTime(syncTime);
+			}
+		} finally {
+			uploadedIndex.save();
+		}
+
+		LOG.info("AtlasRESTTagSource.uploadChanges(): fullSync=" + isFullSync + ", services=" + serviceNames.size() + ", uploads=" + uploadCount + ", rejectedServices=" + rejectedCount);
+	}
+
     private List<RangerAtlasEntityWithTags> getAtlasActiveEntities() {
         if (LOG.isDebugEnabled()) {
             LOG.debug("==> getAtlasActiveEntities()");
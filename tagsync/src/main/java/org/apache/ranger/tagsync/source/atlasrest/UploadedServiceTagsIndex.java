@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.tagsync.source.atlasrest;
+
+import com.google.gson.Gson;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.util.ServiceTags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Fingerprints of the service-resources, and their tags, last uploaded to Ranger Admin - by service name and resource guid.
+ *
+ * Used to compute the changes in ServiceTags built from the full set of Atlas entities since the last upload, so that
+ * only the added/updated resources (op=add_or_update) and the guids of removed resources (op=delete) are sent to Ranger Admin.
+ * The index is updated only after the changes are uploaded successfully; it can optionally be saved in a local file, so
+ * that a restart of tagsync doesn't result in a full upload.
+ */
+public class UploadedServiceTagsIndex {
+	private static final Logger LOG = LoggerFactory.getLogger(UploadedServiceTagsIndex.class);
+
+	private static final Gson GSON = new Gson();
+
+	private final File                           indexFile; // null when the index is not saved
+	private       Map<String, Map<String, Long>> fingerprints     = new HashMap<>();
+	private       long                           lastFullSyncTime = 0;
+
+	public UploadedServiceTagsIndex(String indexFilePath) {
+		this.indexFile = StringUtils.isNotBlank(indexFilePath) ? new File(indexFilePath) : null;
+	}
+
+	public boolean isFullSyncDue(long fullSyncIntervalMillis) {
+		return lastFullSyncTime <= 0 || fullSyncIntervalMillis <= 0 || (System.currentTimeMillis() - lastFullSyncTime) >= fullSyncIntervalMillis;
+	}
+
+	public Set<String> getServiceNames() {
+		return new HashSet<>(fingerprints.keySet());
+	}
+
+	/*
+	 * returns fingerprints of the resources in the given serviceTags, by resource guid; resources without guid are not included
+	 */
+	public static Map<String, Long> getFingerprints(ServiceTags serviceTags) {
+		Map<String, Long> ret = new HashMap<>();
+
+		if (serviceTags != null && serviceTags.getServiceResources() != null) {
+			for (RangerServiceResource resource : serviceTags.getServiceResources()) {
+				if (StringUtils.isNotBlank(resource.getGuid())) {
+					ret.put(resource.getGuid(), getFingerprint(resource, serviceTags));
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	/*
+	 * returns the changes to upload for the given service: an add_or_update ServiceTags with new/modified resources, and a
+	 * delete ServiceTags with resources no longer present. Either can be absent, when there are no such changes.
+	 */
+	public List<ServiceTags> getChanges(String serviceName, ServiceTags current, Map<String, Long> currentFingerprints) {
+		List<ServiceTags> ret                  = new ArrayList<>(2);
+		Map<String, Long> uploadedFingerprints = fingerprints.getOrDefault(serviceName, Collections.emptyMap());
+		ServiceTags       upserts              = newServiceTags(ServiceTags.OP_ADD_OR_UPDATE, serviceName);
+		ServiceTags       deletes              = newServiceTags(ServiceTags.OP_DELETE, serviceName);
+
+		if (current != null && current.getServiceResources() != null) {
+			for (RangerServiceResource resource : current.getServiceResources()) {
+				String guid = resource.getGuid();
+
+				if (StringUtils.isBlank(guid) || !currentFingerprints.get(guid).equals(uploadedFingerprints.get(guid))) {
+					addResource(upserts, resource, current);
+				}
+			}
+		}
+
+		for (String guid : uploadedFingerprints.keySet()) {
+			if (!currentFingerprints.containsKey(guid)) {
+				RangerServiceResource resource = new RangerServiceResource();
+
+				resource.setId((long) deletes.getServiceResources().size());
+				resource.setGuid(guid);
+				resource.setServiceName(serviceName);
+
+				deletes.getServiceResources().add(resource);
+			}
+		}
+
+		if (!upserts.getServiceResources().isEmpty()) {
+			upserts.setTagDefinitions(current.getTagDefinitions());
+
+			ret.add(upserts);
+		}
+
+		if (!deletes.getServiceResources().isEmpty()) {
+			ret.add(deletes);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("UploadedServiceTagsIndex.getChanges(service={}): resources={}, addedOrUpdated={}, deleted={}", serviceName, currentFingerprints.size(), upserts.getServiceResources().size(), deletes.getServiceResources().size());
+		}
+
+		return ret;
+	}
+
+	/*
+	 * records the fingerprints of resources of the given service, after they are successfully uploaded
+	 */
+	public void setFingerprints(String serviceName, Map<String, Long> uploadedFingerprints) {
+		if (MapUtils.isEmpty(uploadedFingerprints)) {
+			fingerprints.remove(serviceName);
+		} else {
+			fingerprints.put(serviceName, uploadedFingerprints);
+		}
+	}
+
+	public void setLastFullSyncTime(long lastFullSyncTime) {
+		this.lastFullSyncTime = lastFullSyncTime;
+	}
+
+	public void load() {
+		if (indexFile == null || !indexFile.exists()) {
+			return;
+		}
+
+		try (Reader reader = new InputStreamReader(new GZIPInputStream(new FileInputStream(indexFile)), StandardCharsets.UTF_8)) {
+			IndexSnapshot snapshot = GSON.fromJson(reader, IndexSnapshot.class);
+
+			if (snapshot != null && snapshot.fingerprints != null) {
+				fingerprints     = snapshot.fingerprints;
+				lastFullSyncTime = snapshot.lastFullSyncTime;
+
+				LOG.info("Loaded uploaded-resources index from {}: services={}, lastFullSyncTime={}", indexFile, fingerprints.size(), lastFullSyncTime);
+			}
+		} catch (Exception excp) {
+			LOG.warn("Failed to load uploaded-resources index from {}. Next sync will upload all resources", indexFile, excp);
+
+			fingerprints     = new HashMap<>();
+			lastFullSyncTime = 0;
+		}
+	}
+
+	public void save() {
+		if (indexFile == null) {
+			return;
+		}
+
+		File tmpFile = new File(indexFile.getPath() + ".tmp");
+
+		try {
+			File parent = indexFile.getAbsoluteFile().getParentFile();
+
+			if (parent != null && !parent.exists()) {
+				parent.mkdirs();
+			}
+
+			try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(tmpFile)), StandardCharsets.UTF_8)) {
+				GSON.toJson(new IndexSnapshot(fingerprints, lastFullSyncTime), writer);
+			}
+
+			Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (Exception excp) {
+			LOG.warn("Failed to save uploaded-resources index to {}", indexFile, excp);
+
+			tmpFile.delete();
+		}
+	}
+
+	private static ServiceTags newServiceTags(String op, String serviceName) {
+		ServiceTags ret = new ServiceTags();
+
+		ret.setOp(op);
+		ret.setServiceName(serviceName);
+
+		return ret;
+	}
+
+	private static void addResource(ServiceTags to, RangerServiceResource resource, ServiceTags from) {
+		List<Long> fromTagIds = from.getResourceToTagIds().get(resource.getId());
+		List<Long> toTagIds   = new ArrayList<>();
+
+		if (fromTagIds != null) {
+			for (Long tagId : fromTagIds) {
+				RangerTag tag = from.getTags().get(tagId);
+
+				if (tag != null) {
+					to.getTags().put(tagId, tag);
+
+					toTagIds.add(tagId);
+				}
+			}
+		}
+
+		to.getServiceResources().add(resource);
+		to.getResourceToTagIds().put(resource.getId(), toTagIds);
+	}
+
+	/*
+	 * fingerprint of resource-elements and tags of the resource; ids assigned while building ServiceTags are excluded, as
+	 * these differ across sync cycles
+	 */
+	private static Long getFingerprint(RangerServiceResource resource, ServiceTags serviceTags) {
+		List<String> tags   = new ArrayList<>();
+		List<Long>   tagIds = serviceTags.getResourceToTagIds().get(resource.getId());
+
+		if (tagIds != null) {
+			for (Long tagId : tagIds) {
+				RangerTag tag = serviceTags.getTags().get(tagId);
+
+				if (tag != null) {
+					Map<String, Object> tagInfo = new TreeMap<>();
+
+					tagInfo.put("type", tag.getType());
+					tagInfo.put("attributes", tag.getAttributes() != null ? new TreeMap<>(tag.getAttributes()) : null);
+					tagInfo.put("options", tag.getOptions() != null ? new TreeMap<>(tag.getOptions()) : null);
+					tagInfo.put("validityPeriods", CollectionUtils.isNotEmpty(tag.getValidityPeriods()) ? tag.getValidityPeriods() : null);
+
+					tags.add(GSON.toJson(tagInfo));
+				}
+			}
+		}
+
+		Collections.sort(tags);
+
+		String str = GSON.toJson(resource.getResourceElements() != null ? new TreeMap<>(resource.getResourceElements()) : null) + GSON.toJson(tags);
+
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(str.getBytes(StandardCharsets.UTF_8));
+			long   ret    = 0;
+
+			for (int i = 0; i < Long.BYTES; i++) {
+				ret = (ret << 8) | (digest[i] & 0xff);
+			}
+
+			return ret;
+		} catch (Exception excp) { // SHA-256 is always available
+			return (long) str.hashCode();
+		}
+	}
+
+	private static class IndexSnapshot {
+		Map<String, Map<String, Long>> fingerprints;
+		long                           lastFullSyncTime;
+
+		IndexSnapshot(Map<String, Map<String, Long>> fingerprints, long lastFullSyncTime) {
+			this.fingerprints     = fingerprints;
+			this.lastFullSyncTime = lastFullSyncTime;
+		}
+	}
+}
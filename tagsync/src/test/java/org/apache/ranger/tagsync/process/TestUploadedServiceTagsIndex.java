@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.tagsync.process;
+
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.util.ServiceTags;
+import org.apache.ranger.tagsync.source.atlasrest.UploadedServiceTagsIndex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestUploadedServiceTagsIndex {
+	private static final String SERVICE_NAME = "cl1_hive";
+
+	@Test
+	public void testChanges() throws Exception {
+		UploadedServiceTagsIndex index = new UploadedServiceTagsIndex(null);
+
+		ServiceTags v1 = newServiceTags();
+
+		addResource(v1, "guid-1", "db1", "PII");
+		addResource(v1, "guid-2", "db2", "PII");
+		addResource(v1, "guid-3", "db3", "FINANCE");
+
+		List<ServiceTags> changes = index.getChanges(SERVICE_NAME, v1, UploadedServiceTagsIndex.getFingerprints(v1));
+
+		Assert.assertEquals(1, changes.size());
+		Assert.assertEquals(3, changes.get(0).getServiceResources().size());
+
+		index.setFingerprints(SERVICE_NAME, UploadedServiceTagsIndex.getFingerprints(v1));
+
+		// same resources and tags, built with different ids: no changes
+		ServiceTags v2 = newServiceTags();
+
+		addResource(v2, "guid-3", "db3", "FINANCE");
+		addResource(v2, "guid-2", "db2", "PII");
+		addResource(v2, "guid-1", "db1", "PII");
+
+		Assert.assertTrue(index.getChanges(SERVICE_NAME, v2, UploadedServiceTagsIndex.getFingerprints(v2)).isEmpty());
+
+		// guid-1 tag changed, guid-2 removed, guid-4 added
+		ServiceTags v3 = newServiceTags();
+
+		addResource(v3, "guid-1", "db1", "FINANCE");
+		addResource(v3, "guid-3", "db3", "FINANCE");
+		addResource(v3, "guid-4", "db4", "PII");
+
+		changes = index.getChanges(SERVICE_NAME, v3, UploadedServiceTagsIndex.getFingerprints(v3));
+
+		Assert.assertEquals(2, changes.size());
+
+		ServiceTags upserts = changes.get(0);
+		ServiceTags deletes = changes.get(1);
+
+		Assert.assertEquals(ServiceTags.OP_ADD_OR_UPDATE, upserts.getOp());
+		Assert.assertEquals(2, upserts.getServiceResources().size());
+		Assert.assertEquals("guid-1", upserts.getServiceResources().get(0).getGuid());
+		Assert.assertEquals("guid-4", upserts.getServiceResources().get(1).getGuid());
+		Assert.assertEquals("FINANCE", upserts.getTags().get(upserts.getResourceToTagIds().get(upserts.getServiceResources().get(0).getId()).get(0)).getType());
+		Assert.assertEquals(2, upserts.getTags().size());
+
+		Assert.assertEquals(ServiceTags.OP_DELETE, deletes.getOp());
+		Assert.assertEquals(1, deletes.getServiceResources().size());
+		Assert.assertEquals("guid-2", deletes.getServiceResources().get(0).getGuid());
+
+		// all resources of the service removed
+		changes = index.getChanges(SERVICE_NAME, null, Collections.emptyMap());
+
+		Assert.assertEquals(1, changes.size());
+		Assert.assertEquals(3, changes.get(0).getServiceResources().size());
+	}
+
+	@Test
+	public void testSaveLoad() throws Exception {
+		File indexFile = File.createTempFile("tagsync-index", ".json.gz");
+
+		try {
+			ServiceTags serviceTags = newServiceTags();
+
+			addResource(serviceTags, "guid-1", "db1", "PII");
+
+			UploadedServiceTagsIndex index = new UploadedServiceTagsIndex(indexFile.getPath());
+
+			index.setFingerprints(SERVICE_NAME, UploadedServiceTagsIndex.getFingerprints(serviceTags));
+			index.setLastFullSyncTime(System.currentTimeMillis());
+			index.save();
+
+			UploadedServiceTagsIndex loaded = new UploadedServiceTagsIndex(indexFile.getPath());
+
+			loaded.load();
+
+			Assert.assertFalse(loaded.isFullSyncDue(60000));
+			Assert.assertTrue(loaded.getChanges(SERVICE_NAME, serviceTags, UploadedServiceTagsIndex.getFingerprints(serviceTags)).isEmpty());
+		} finally {
+			indexFile.delete();
+		}
+	}
+
+	private static ServiceTags newServiceTags() {
+		ServiceTags ret = new ServiceTags();
+
+		ret.setOp(ServiceTags.OP_REPLACE);
+		ret.setServiceName(SERVICE_NAME);
+
+		return ret;
+	}
+
+	private static void addResource(ServiceTags serviceTags, String guid, String database, String tagType) {
+		Map<String, RangerPolicyResource> elements = new HashMap<>();
+
+		elements.put("database", new RangerPolicyResource(database));
+
+		RangerServiceResource resource = new RangerServiceResource(guid, SERVICE_NAME, elements);
+		RangerTag             tag      = new RangerTag(tagType, new HashMap<>());
+
+		resource.setId((long) serviceTags.getServiceResources().size());
+		tag.setId((long) serviceTags.getTags().size());
+
+		serviceTags.getServiceResources().add(resource);
+		serviceTags.getTags().put(tag.getId(), tag);
+		serviceTags.getResourceToTagIds().put(resource.getId(), Collections.singletonList(tag.getId()));
+	}
+}
@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.tagsync.sink.tagadmin;
+
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.model.RangerTagDef;
+import org.apache.ranger.plugin.util.ServiceTags;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+public class TestTagAdminRESTSink {
+	private static final String SERVICE_NAME = "cl1_hive";
+
+	@Test
+	public void testMergeServiceTags() {
+		ServiceTags first  = newServiceTags();
+		ServiceTags second = newServiceTags();
+
+		addResource(first, "guid-1", "db1", "PII");
+		addResource(first, "guid-2", "db2", "FINANCE");
+		addResource(second, "guid-3", "db3", "PII");
+
+		ServiceTags merged = TagAdminRESTSink.mergeServiceTags(Arrays.asList(new TagAdminRESTSink.UploadWorkItem(first), new TagAdminRESTSink.UploadWorkItem(second)));
+
+		Assert.assertEquals(ServiceTags.OP_ADD_OR_UPDATE, merged.getOp());
+		Assert.assertEquals(SERVICE_NAME, merged.getServiceName());
+		Assert.assertEquals(3, merged.getServiceResources().size());
+		Assert.assertEquals(3, merged.getTags().size());
+		Assert.assertEquals(2, merged.getTagDefinitions().size()); // tag-defs are merged by name
+
+		String[] expectedTagTypes = { "PII", "FINANCE", "PII" };
+
+		for (int i = 0; i < 3; i++) {
+			RangerServiceResource resource = merged.getServiceResources().get(i);
+
+			Assert.assertEquals("guid-" + (i + 1), resource.getGuid());
+			Assert.assertEquals(Long.valueOf(i), resource.getId());
+			Assert.assertEquals(expectedTagTypes[i], merged.getTags().get(merged.getResourceToTagIds().get(resource.getId()).get(0)).getType());
+		}
+
+		// ServiceTags given to the sink should not be modified
+		Assert.assertEquals(Long.valueOf(0), second.getServiceResources().get(0).getId());
+	}
+
+	@Test
+	public void testQueuedUploadsAreMerged() throws Exception {
+		RecordingSink   sink    = new RecordingSink(serviceTags -> TagAdminRESTSink.UploadResult.UPLOADED);
+		ExecutorService callers = Executors.newCachedThreadPool();
+
+		sink.start();
+
+		try {
+			List<Future<ServiceTags>> results = uploadWhileFirstIsInProgress(sink, callers, 3);
+
+			for (int i = 0; i < results.size(); i++) {
+				Assert.assertEquals("guid-" + i, results.get(i).get(10, TimeUnit.SECONDS).getServiceResources().get(0).getGuid());
+			}
+
+			// first upload by itself, the 2 queued while it was in progress in a single request
+			Assert.assertEquals(Arrays.asList(1, 2), sink.uploadedResourceCounts);
+			Assert.assertEquals(0, sink.getMetrics().get("queuedUploads"));
+			Assert.assertEquals(3L, sink.getMetrics().get("uploadedServiceTags"));
+		} finally {
+			sink.stop();
+			callers.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testRejectedMergedUploadIsSplit() throws Exception {
+		RecordingSink   sink    = new RecordingSink(serviceTags -> serviceTags.getServiceResources().size() > 1 ? TagAdminRESTSink.UploadResult.REJECTED : TagAdminRESTSink.UploadResult.UPLOADED);
+		ExecutorService callers = Executors.newCachedThreadPool();
+
+		sink.start();
+
+		try {
+			List<Future<ServiceTags>> results = uploadWhileFirstIsInProgress(sink, callers, 3);
+
+			for (Future<ServiceTags> result : results) {
+				Assert.assertNotNull(result.get(10, TimeUnit.SECONDS));
+			}
+
+			// merged request rejected with HTTP 400: its ServiceTags are uploaded one at a time
+			Assert.assertEquals(Arrays.asList(1, 2, 1, 1), sink.uploadedResourceCounts);
+			Assert.assertEquals(0L, sink.getMetrics().get("uploadFailures"));
+		} finally {
+			sink.stop();
+			callers.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testRejectedServiceTagsAreReported() throws Exception {
+		RecordingSink   sink    = new RecordingSink(serviceTags -> serviceTags.getServiceResources().stream().anyMatch(resource -> "guid-1".equals(resource.getGuid())) ? TagAdminRESTSink.UploadResult.REJECTED : TagAdminRESTSink.UploadResult.UPLOADED);
+		ExecutorService callers = Executors.newCachedThreadPool();
+
+		sink.start();
+
+		try {
+			List<Future<ServiceTags>> results = uploadWhileFirstIsInProgress(sink, callers, 3);
+
+			// only the invalid ServiceTags of the merged request are reported as rejected, with null
+			Assert.assertNotNull(results.get(0).get(10, TimeUnit.SECONDS));
+			Assert.assertNull(results.get(1).get(10, TimeUnit.SECONDS));
+			Assert.assertNotNull(results.get(2).get(10, TimeUnit.SECONDS));
+
+			sink.isBlocked = false;
+
+			Assert.assertNull(sink.upload(serviceTags(1)));
+			Assert.assertEquals(Arrays.asList(1, 2, 1, 1, 1), sink.uploadedResourceCounts);
+			Assert.assertEquals(0L, sink.getMetrics().get("uploadFailures"));
+		} finally {
+			sink.stop();
+			callers.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFailedUploadIsRetried() throws Exception {
+		int[]         attempts = { 0 };
+		RecordingSink sink     = new RecordingSink(serviceTags -> ++attempts[0] < 3 ? TagAdminRESTSink.UploadResult.FAILED : TagAdminRESTSink.UploadResult.UPLOADED);
+
+		sink.start();
+
+		try {
+			Assert.assertNotNull(sink.upload(serviceTags(0)));
+			Assert.assertEquals(Arrays.asList(1, 1, 1), sink.uploadedResourceCounts);
+			Assert.assertEquals(2L, sink.getMetrics().get("uploadFailures"));
+		} finally {
+			sink.stop();
+		}
+	}
+
+	@Test
+	public void testStopFailsPendingUploads() throws Exception {
+		RecordingSink   sink    = new RecordingSink(serviceTags -> TagAdminRESTSink.UploadResult.UPLOADED);
+		ExecutorService callers = Executors.newCachedThreadPool();
+
+		sink.start();
+
+		try {
+			List<Future<ServiceTags>> results = new ArrayList<>();
+
+			sink.isBlocked = true;
+
+			results.add(callers.submit(() -> sink.upload(serviceTags(0))));
+
+			Assert.assertTrue(sink.uploadStarted.await(10, TimeUnit.SECONDS));
+
+			results.add(callers.submit(() -> sink.upload(serviceTags(1))));
+
+			waitForQueuedUploads(sink, 1);
+
+			// interrupts the upload in progress: the taken and the queued ServiceTags fail, instead of blocking the callers
+			sink.stop();
+
+			for (Future<ServiceTags> result : results) {
+				try {
+					result.get(10, TimeUnit.SECONDS);
+
+					Assert.fail("upload() should fail after stop()");
+				} catch (ExecutionException excp) {
+					// expected
+				}
+			}
+
+			Assert.assertEquals(0, sink.getMetrics().get("queuedUploads"));
+
+			try {
+				sink.upload(serviceTags(2));
+
+				Assert.fail("upload() should fail after stop()");
+			} catch (RejectedExecutionException excp) {
+				// expected
+			}
+		} finally {
+			callers.shutdownNow();
+		}
+	}
+
+	/*
+	 * uploads count ServiceTags, each with one resource; all but the first are queued while the first is being uploaded
+	 */
+	private static List<Future<ServiceTags>> uploadWhileFirstIsInProgress(RecordingSink sink, ExecutorService callers, int count) throws Exception {
+		List<Future<ServiceTags>> ret = new ArrayList<>();
+
+		sink.isBlocked = true;
+
+		ret.add(callers.submit(() -> sink.upload(serviceTags(0))));
+
+		Assert.assertTrue(sink.uploadStarted.await(10, TimeUnit.SECONDS));
+
+		for (int i = 1; i < count; i++) {
+			final int index = i;
+
+			ret.add(callers.submit(() -> sink.upload(serviceTags(index))));
+		}
+
+		waitForQueuedUploads(sink, count - 1);
+
+		sink.isBlocked = false;
+
+		sink.uploadUnblocked.countDown();
+
+		return ret;
+	}
+
+	private static void waitForQueuedUploads(TagAdminRESTSink sink, int count) throws InterruptedException {
+		for (int i = 0; i < 200 && !Integer.valueOf(count).equals(sink.getMetrics().get("queuedUploads")); i++) {
+			Thread.sleep(50);
+		}
+
+		Assert.assertEquals(count, sink.getMetrics().get("queuedUploads"));
+	}
+
+	private static ServiceTags serviceTags(int index) {
+		ServiceTags ret = newServiceTags();
+
+		addResource(ret, "guid-" + index, "db" + index, "PII");
+
+		return ret;
+	}
+
+	private static ServiceTags newServiceTags() {
+		ServiceTags ret = new ServiceTags();
+
+		ret.setOp(ServiceTags.OP_ADD_OR_UPDATE);
+		ret.setServiceName(SERVICE_NAME);
+
+		return ret;
+	}
+
+	private static void addResource(ServiceTags serviceTags, String guid, String database, String tagType) {
+		Map<String, RangerPolicyResource> elements = new HashMap<>();
+
+		elements.put("database", new RangerPolicyResource(database));
+
+		RangerServiceResource resource = new RangerServiceResource(guid, SERVICE_NAME, elements);
+		RangerTag             tag      = new RangerTag(tagType, new HashMap<>());
+		RangerTagDef          tagDef   = new RangerTagDef(tagType);
+
+		resource.setId((long) serviceTags.getServiceResources().size());
+		tag.setId((long) serviceTags.getTags().size());
+		tagDef.setId((long) serviceTags.getTagDefinitions().size());
+
+		serviceTags.getServiceResources().add(resource);
+		serviceTags.getTags().put(tag.getId(), tag);
+		serviceTags.getTagDefinitions().put(tagDef.getId(), tagDef);
+		serviceTags.getResourceToTagIds().put(resource.getId(), Collections.singletonList(tag.getId()));
+	}
+
+	private static class RecordingSink extends TagAdminRESTSink {
+		final List<Integer>                                        uploadedResourceCounts = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch                                       uploadStarted          = new CountDownLatch(1);
+		final CountDownLatch                                       uploadUnblocked        = new CountDownLatch(1);
+		final Function<ServiceTags, TagAdminRESTSink.UploadResult> responder;
+		volatile boolean                                           isBlocked;
+
+		RecordingSink(Function<ServiceTags, TagAdminRESTSink.UploadResult> responder) {
+			super(1, 100, 60000, 1);
+
+			this.responder = responder;
+		}
+
+		@Override
+		UploadResult doUpload(ServiceTags serviceTags) throws Exception {
+			if (isBlocked) {
+				uploadStarted.countDown();
+				uploadUnblocked.await();
+			}
+
+			uploadedResourceCounts.add(serviceTags.getServiceResources().size());
+
+			return responder.apply(serviceTags);
+		}
+	}
+}
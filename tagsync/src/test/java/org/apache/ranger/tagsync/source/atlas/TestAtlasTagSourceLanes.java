@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.tagsync.source.atlas;
+
+import org.apache.atlas.kafka.AtlasKafkaMessage;
+import org.apache.atlas.model.notification.EntityNotification;
+import org.apache.ranger.tagsync.source.atlas.AtlasTagSource.NotificationLane;
+import org.apache.ranger.tagsync.source.atlas.AtlasTagSource.PartitionOffsets;
+import org.apache.ranger.tagsync.source.atlas.AtlasTagSource.PendingNotification;
+import org.apache.ranger.tagsync.source.atlasrest.RangerAtlasEntity;
+import org.apache.ranger.tagsync.source.atlasrest.RangerAtlasEntityWithTags;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class TestAtlasTagSourceLanes {
+	private static final String TOPIC = "ATLAS_ENTITIES";
+
+	@Test
+	public void testCommittableOffsetWithOutOfOrderProcessing() {
+		PartitionOffsets offsets = new PartitionOffsets();
+
+		Assert.assertEquals(-1L, offsets.getCommittableOffset());
+
+		for (long offset = 10; offset <= 14; offset++) {
+			offsets.received(offset, 0);
+		}
+
+		// nothing processed: commit up to the message before the first pending one
+		Assert.assertEquals(9L, offsets.getCommittableOffset());
+
+		// later messages processed by other lanes don't move the committable offset past the first pending one
+		offsets.processed(12);
+		offsets.processed(14);
+
+		Assert.assertEquals(9L, offsets.getCommittableOffset());
+
+		offsets.processed(10);
+
+		Assert.assertEquals(10L, offsets.getCommittableOffset());
+
+		offsets.processed(11);
+
+		Assert.assertEquals(12L, offsets.getCommittableOffset()); // 13 is the first pending
+
+		offsets.processed(13);
+
+		Assert.assertEquals(14L, offsets.getCommittableOffset()); // all processed: last received
+	}
+
+	@Test
+	public void testLastNotificationPerEntityInBatch() throws Exception {
+		RecordingUploader uploader = new RecordingUploader(0);
+		NotificationLane  lane     = new NotificationLane(100, 60000, 1, uploader);
+		PartitionOffsets  offsets  = new PartitionOffsets();
+
+		RangerAtlasEntityWithTags guid1First = entity("guid-1");
+		RangerAtlasEntityWithTags guid2      = entity("guid-2");
+		RangerAtlasEntityWithTags guid1Last  = entity("guid-1");
+
+		lane.add(notification(guid1First, false, 1, offsets));
+		lane.add(notification(guid2, false, 2, offsets));
+		lane.add(notification(guid1Last, false, 3, offsets));
+
+		Assert.assertFalse(lane.isBatchDue());
+
+		lane.uploadBatch();
+
+		// one upload, having the last notification of each entity, at the position of that notification
+		Assert.assertEquals(1, uploader.batches.size());
+		Assert.assertEquals(2, uploader.batches.get(0).size());
+		Assert.assertSame(guid2, uploader.batches.get(0).get(0));
+		Assert.assertSame(guid1Last, uploader.batches.get(0).get(1));
+
+		// all 3 messages are processed, though only 2 entities were uploaded
+		Assert.assertEquals(3L, offsets.getCommittableOffset());
+	}
+
+	@Test
+	public void testBatchDueAtMaxBatchSize() throws Exception {
+		RecordingUploader uploader = new RecordingUploader(0);
+		NotificationLane  lane     = new NotificationLane(2, 60000, 1, uploader);
+		PartitionOffsets  offsets  = new PartitionOffsets();
+
+		lane.add(notification(entity("guid-1"), false, 1, offsets));
+
+		Assert.assertFalse(lane.isBatchDue());
+
+		lane.add(notification(entity("guid-1"), false, 2, offsets)); // messages are counted, not entities
+
+		Assert.assertTrue(lane.isBatchDue());
+	}
+
+	@Test
+	public void testDeleteAndAddInSeparateBatches() throws Exception {
+		RecordingUploader uploader = new RecordingUploader(0);
+		NotificationLane  lane     = new NotificationLane(100, 60000, 1, uploader);
+		PartitionOffsets  offsets  = new PartitionOffsets();
+
+		lane.add(notification(entity("guid-1"), false, 1, offsets));
+		lane.add(notification(entity("guid-2"), false, 2, offsets));
+		lane.add(notification(entity("guid-1"), true, 3, offsets)); // uploads the pending add/update batch first
+		lane.add(notification(entity("guid-3"), true, 4, offsets));
+		lane.add(notification(entity("guid-1"), false, 5, offsets)); // uploads the pending delete batch first
+
+		lane.uploadBatch();
+
+		Assert.assertEquals(3, uploader.batches.size());
+		Assert.assertEquals(Boolean.FALSE, uploader.isDeleteOps.get(0));
+		Assert.assertEquals(2, uploader.batches.get(0).size());
+		Assert.assertEquals(Boolean.TRUE, uploader.isDeleteOps.get(1));
+		Assert.assertEquals(2, uploader.batches.get(1).size());
+		Assert.assertEquals(Boolean.FALSE, uploader.isDeleteOps.get(2));
+		Assert.assertEquals(1, uploader.batches.get(2).size());
+		Assert.assertEquals(5L, offsets.getCommittableOffset());
+	}
+
+	@Test
+	public void testRetryFailedUpload() throws Exception {
+		RecordingUploader uploader = new RecordingUploader(2);
+		NotificationLane  lane     = new NotificationLane(100, 60000, 1, uploader);
+		PartitionOffsets  offsets  = new PartitionOffsets();
+
+		lane.add(notification(entity("guid-1"), false, 1, offsets));
+		lane.uploadBatch();
+
+		// same batch is uploaded until it succeeds; offsets are marked processed only after the successful upload
+		Assert.assertEquals(3, uploader.attempts);
+		Assert.assertEquals(2L, lane.uploadFailureCount.get());
+		Assert.assertEquals(1, uploader.batches.size());
+		Assert.assertEquals(1L, offsets.getCommittableOffset());
+	}
+
+	@Test
+	public void testRunUploadsAfterCoalesceWindow() throws Exception {
+		RecordingUploader uploader = new RecordingUploader(0);
+		NotificationLane  lane     = new NotificationLane(100, 50, 1, uploader);
+		PartitionOffsets  offsets  = new PartitionOffsets();
+		Thread            thread   = new Thread(lane);
+
+		thread.setDaemon(true);
+		thread.start();
+
+		try {
+			lane.queue.put(notification(entity("guid-1"), false, 1, offsets));
+			lane.queue.put(notification(entity("guid-2"), false, 2, offsets));
+
+			for (int i = 0; i < 100 && offsets.getCommittableOffset() != 2L; i++) {
+				Thread.sleep(50);
+			}
+		} finally {
+			thread.interrupt();
+		}
+
+		Assert.assertEquals(2L, offsets.getCommittableOffset());
+		Assert.assertEquals(2, uploader.batches.stream().mapToInt(List::size).sum());
+	}
+
+	private static RangerAtlasEntityWithTags entity(String guid) {
+		return new RangerAtlasEntityWithTags(new RangerAtlasEntity("hive_db", guid, Collections.emptyMap()), Collections.emptyList(), null);
+	}
+
+	private static PendingNotification notification(RangerAtlasEntityWithTags entityWithTags, boolean isDeleteOp, long offset, PartitionOffsets offsets) {
+		offsets.received(offset, System.currentTimeMillis());
+
+		return new PendingNotification(entityWithTags, isDeleteOp, new AtlasKafkaMessage<EntityNotification>(null, offset, TOPIC, 0), offsets);
+	}
+
+	private static class RecordingUploader implements AtlasTagSource.BatchUploader {
+		final List<List<RangerAtlasEntityWithTags>> batches     = Collections.synchronizedList(new ArrayList<>());
+		final List<Boolean>                         isDeleteOps = Collections.synchronizedList(new ArrayList<>());
+		private   int                               failuresLeft;
+		volatile  int                               attempts;
+
+		RecordingUploader(int failureCount) {
+			this.failuresLeft = failureCount;
+		}
+
+		@Override
+		public void upload(List<RangerAtlasEntityWithTags> atlasEntitiesWithTags, boolean isHandlingDeleteOps) throws Exception {
+			attempts++;
+
+			if (failuresLeft > 0) {
+				failuresLeft--;
+
+				throw new Exception("upload failed");
+			}
+
+			batches.add(atlasEntitiesWithTags);
+			isDeleteOps.add(isHandlingDeleteOps);
+		}
+	}
+}
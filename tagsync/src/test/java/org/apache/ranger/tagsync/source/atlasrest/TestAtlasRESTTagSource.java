@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.tagsync.source.atlasrest;
+
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceResource;
+import org.apache.ranger.plugin.model.RangerTag;
+import org.apache.ranger.plugin.util.ServiceTags;
+import org.apache.ranger.tagsync.model.TagSink;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+public class TestAtlasRESTTagSource {
+	private static final String SERVICE_NAME = "cl1_hive";
+
+	@Test
+	public void testRejectedChangesAreUploadedAgain() throws Exception {
+		RecordingSink      sink   = new RecordingSink();
+		AtlasRESTTagSource source = new AtlasRESTTagSource();
+
+		source.initialize(new Properties()); // no Atlas endpoint; incremental upload enabled, with an in-memory index
+		source.setTagSink(sink);
+
+		// first cycle: full sync
+		source.uploadChanges(serviceTagsMap(serviceTags("PII")));
+
+		Assert.assertEquals(1, sink.uploaded.size());
+		Assert.assertEquals(ServiceTags.OP_REPLACE, sink.uploaded.get(0).getOp());
+
+		// change rejected by Ranger Admin: fingerprints of the service are not updated
+		sink.uploaded.clear();
+		sink.isRejecting = true;
+
+		source.uploadChanges(serviceTagsMap(serviceTags("FINANCE")));
+
+		Assert.assertEquals(1, sink.uploaded.size());
+		Assert.assertEquals(ServiceTags.OP_ADD_OR_UPDATE, sink.uploaded.get(0).getOp());
+
+		// hence the change is uploaded again in the next cycle
+		sink.uploaded.clear();
+		sink.isRejecting = false;
+
+		source.uploadChanges(serviceTagsMap(serviceTags("FINANCE")));
+
+		Assert.assertEquals(1, sink.uploaded.size());
+		Assert.assertEquals(ServiceTags.OP_ADD_OR_UPDATE, sink.uploaded.get(0).getOp());
+
+		// accepted: no more changes to upload
+		sink.uploaded.clear();
+
+		source.uploadChanges(serviceTagsMap(serviceTags("FINANCE")));
+
+		Assert.assertTrue(sink.uploaded.isEmpty());
+	}
+
+	private static Map<String, ServiceTags> serviceTagsMap(ServiceTags serviceTags) {
+		return Collections.singletonMap(SERVICE_NAME, serviceTags);
+	}
+
+	private static ServiceTags serviceTags(String tagType) {
+		ServiceTags                       ret      = new ServiceTags();
+		Map<String, RangerPolicyResource> elements = new HashMap<>();
+
+		elements.put("database", new RangerPolicyResource("db1"));
+
+		RangerServiceResource resource = new RangerServiceResource("guid-1", SERVICE_NAME, elements);
+		RangerTag             tag      = new RangerTag(tagType, new HashMap<>());
+
+		resource.setId(0L);
+		tag.setId(0L);
+
+		ret.setOp(ServiceTags.OP_REPLACE);
+		ret.setServiceName(SERVICE_NAME);
+		ret.getServiceResources().add(resource);
+		ret.getTags().put(tag.getId(), tag);
+		ret.getResourceToTagIds().put(resource.getId(), Collections.singletonList(tag.getId()));
+
+		return ret;
+	}
+
+	private static class RecordingSink implements TagSink {
+		final List<ServiceTags> uploaded = new ArrayList<>();
+		boolean                 isRejecting;
+
+		@Override
+		public boolean initialize(Properties properties) {
+			return true;
+		}
+
+		@Override
+		public ServiceTags upload(ServiceTags toUpload) {
+			uploaded.add(toUpload);
+
+			return isRejecting ? null : toUpload;
+		}
+
+		@Override
+		public boolean start() {
+			return true;
+		}
+
+		@Override
+		public void stop() {
+		}
+	}
+}
@@ -20,19 +20,40 @@
 package org.apache.ranger.ldapusersync.process;
 
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.HashMap;
 import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.naming.Context;
 import javax.naming.InvalidNameException;
@@ -59,6 +80,7 @@
 import org.apache.ranger.ugsyncutil.model.LdapSyncSourceInfo;
 import org.apache.ranger.ugsyncutil.model.UgsyncAuditInfo;
 import org.apache.ranger.usergroupsync.UserGroupSink;
+import org.apache.ranger.usergroupsync.UserGroupSinkPipeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -70,6 +92,9 @@ public class LdapUserGroupBuilder implements UserGroupSource {
 	
 	private static final Logger LOG = LoggerFactory.getLogger(LdapUserGroupBuilder.class);
 
+	// search metrics of the latest completed sync cycle, written to the usersync metrics file
+	private static volatile Map<String, Object> lastSyncSearchMetrics = Collections.emptyMap();
+
 	private UserGroupSyncConfig config = UserGroupSyncConfig.getInstance();
 
 	private static final String DATA_TYPE_BYTEARRAY = "byte[]";
@@ -81,6 +106,20 @@ public class LdapUserGroupBuilder implements UserGroupSource {
 	private static long deltaSyncGroupTime = 0; // Used for AD uSNChanged
 	private String deltaSyncUserTimeStamp; // Used for OpenLdap modifyTimestamp
 	private String deltaSyncGroupTimeStamp; // Used for OpenLdap modifyTimestamp
+	private String deltaSyncStateFile; // to persist deltaSync* high-water marks across restarts
+	private String deltaSyncScope; // source configuration the persisted high-water marks are valid for
+	private long   deltaSyncFullSyncIntervalMs;
+	private long   lastFullSyncTime;
+	private long   highestDeltaSyncUserTime; // updated by concurrent searches of a sync cycle, under lock on this
+	private long   highestDeltaSyncGroupTime;
+	private int    syncedUserCount;
+
+	private static final String STATE_SYNC_SCOPE          = "syncScope";
+	private static final String STATE_USER_TIME           = "deltaSyncUserTime";
+	private static final String STATE_USER_TIMESTAMP      = "deltaSyncUserTimeStamp";
+	private static final String STATE_GROUP_TIME          = "deltaSyncGroupTime";
+	private static final String STATE_GROUP_TIMESTAMP     = "deltaSyncGroupTimeStamp";
+	private static final String STATE_LAST_FULL_SYNC_TIME = "lastFullSyncTime";
 
   private String ldapUrl;
   private String ldapBindDn;
@@ -119,6 +158,8 @@ public class LdapUserGroupBuilder implements UserGroupSource {
 	private String groupCloudIdAttribute;
 	private Set<String> otherGroupAttributes;
 	private int groupHierarchyLevels;
+	private int groupHierarchyFilterSize;
+	private int searchThreads;
     private int deleteCycles;
     private String currentSyncSource;
 
@@ -132,6 +173,8 @@ public class LdapUserGroupBuilder implements UserGroupSource {
 	private Map<String, Map<String, String>> sourceUsers; // key is user DN and value is map of user attributes containing original name, DN, etc...
 	private Map<String, Map<String, String>> sourceGroups; // key is group DN and value is map of group attributes containing original name, DN, etc...
 	private Map<String, Set<String>> sourceGroupUsers; // key is group DN and value is set of user DNs (members)
+	private UserGroupSinkPipeline sinkPipeline; // to send users/groups to the sink as they are read from AD/LDAP
+	private Map<String, SearchMetrics> searchMetrics; // key is operation, or operation[searchBase]
 
 	public static void main(String[] args) throws Throwable {
 		LdapUserGroupBuilder ugBuilder = new LdapUserGroupBuilder();
@@ -146,7 +189,11 @@ public void init() throws Throwable{
 		DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
 		deltaSyncUserTimeStamp = dateFormat.format(new Date(0));
 		deltaSyncGroupTimeStamp = dateFormat.format(new Date(0));
+		lastFullSyncTime = 0;
 		setConfig();
+		if (config.isDeltaSyncEnabled()) {
+			loadDeltaSyncState();
+		}
 		ugsyncAuditInfo = new UgsyncAuditInfo();
 		ldapSyncSourceInfo = new LdapSyncSourceInfo();
 		ldapSyncSourceInfo.setLdapUrl(ldapUrl);
@@ -160,6 +207,13 @@ public void init() throws Throwable{
 	}
 
 	private void createLdapContext() throws Throwable {
+		LdapConnection connection = openLdapConnection();
+
+		ldapContext = connection.context;
+		tls = connection.tls;
+	}
+
+	private LdapConnection openLdapConnection() throws Exception {
 		Properties env = new Properties();
 		env.put(Context.INITIAL_CONTEXT_FACTORY,
 				"com.sun.jndi.ldap.LdapCtxFactory");
@@ -193,29 +247,34 @@ private void createLdapContext() throws Throwable {
 				env.put("java.naming.ldap.attributes.binary", otherGroupAttribute);
 			}
 		}
-		ldapContext = new InitialLdapContext(env, null);
+		LdapContext context = new InitialLdapContext(env, null);
+		StartTlsResponse tlsResponse = null;
 		if (!ldapUrl.startsWith("ldaps")) {
 			if (config.isStartTlsEnabled()) {
-				tls = (StartTlsResponse) ldapContext.extendedOperation(new StartTlsRequest());
+				tlsResponse = (StartTlsResponse) context.extendedOperation(new StartTlsRequest());
 				if (config.getSSLTrustStorePath() != null && !config.getSSLTrustStorePath().trim().isEmpty()) {
-					tls.negotiate(CustomSSLSocketFactory.getDefault());
+					tlsResponse.negotiate(CustomSSLSocketFactory.getDefault());
 				} else {
-					tls.negotiate();
+					tlsResponse.negotiate();
 				}
 				LOG.info("Starting TLS session...");
 			}
 		}
 
-		ldapContext.addToEnvironment(Context.SECURITY_PRINCIPAL, ldapBindDn);
-		ldapContext.addToEnvironment(Context.SECURITY_CREDENTIALS, ldapBindPassword);
-		ldapContext.addToEnvironment(Context.SECURITY_AUTHENTICATION, ldapAuthenticationMechanism);
-		ldapContext.addToEnvironment(Context.REFERRAL, ldapReferral);
+		context.addToEnvironment(Context.SECURITY_PRINCIPAL, ldapBindDn);
+		context.addToEnvironment(Context.SECURITY_CREDENTIALS, ldapBindPassword);
+		context.addToEnvironment(Context.SECURITY_AUTHENTICATION, ldapAuthenticationMechanism);
+		context.addToEnvironment(Context.REFERRAL, ldapReferral);
+
+		return new LdapConnection(context, tlsResponse);
 	}
 
 	private void setConfig() throws Throwable {
 		LOG.info("LdapUserGroupBuilder initialization started");
 
 		currentSyncSource = config.getCurrentSyncSource();
+		deltaSyncStateFile = config.getDeltaSyncStateFile();
+		deltaSyncFullSyncIntervalMs = config.getDeltaSyncFullSyncInterval();
 		groupSearchFirstEnabled = true;
 		userSearchEnabled = config.isUserSearchEnabled();
 		groupSearchEnabled = config.isGroupSearchEnabled();
@@ -263,6 +322,8 @@ private void setConfig() throws Throwable {
 		groupNameAttribute = config.getGroupNameAttribute();
 		groupCloudIdAttribute = config.getGroupCloudIdAttribute();
 		groupHierarchyLevels = config.getGroupHierarchyLevels();
+		groupHierarchyFilterSize = config.getGroupHierarchyFilterSize();
+		searchThreads = config.getLdapSearchThreads();
 
 		extendedGroupSearchFilter = "(&" + extendedGroupSearchFilter + "(|(" + groupMemberAttributeName + "={0})(" + groupMemberAttributeName + "={1})))";
 
@@ -307,6 +368,9 @@ private void setConfig() throws Throwable {
 			userSearchFilter = computedSearchFilter;
 		}
 
+		deltaSyncScope = ldapUrl + "|" + Arrays.toString(userSearchBase) + "|" + userObjectClass + "|" + userSearchFilter + "|" + userSearchEnabled
+				+ "|" + Arrays.toString(groupSearchBase) + "|" + groupObjectClass + "|" + groupSearchFilter + "|" + groupSearchEnabled;
+
 		LOG.info("LdapUserGroupBuilder initialization completed with --  "
 				+ "ldapUrl: " + ldapUrl
 				+ ",  ldapBindDn: " + ldapBindDn
@@ -337,6 +401,10 @@ private void setConfig() throws Throwable {
 				+ ", groupSearchFirstEnabled: " + groupSearchFirstEnabled
 				+ ", userSearchEnabled: " + userSearchEnabled
 				+ ",  ldapReferral: " + ldapReferral
+				+ ",  searchThreads: " + searchThreads
+				+ ",  groupHierarchyFilterSize: " + groupHierarchyFilterSize
+				+ ",  deltaSyncStateFile: " + deltaSyncStateFile
+				+ ",  deltaSyncFullSyncIntervalMs: " + deltaSyncFullSyncIntervalMs
 		);
 	}
 
@@ -365,6 +433,7 @@ public void updateSink(UserGroupSink sink) throws Throwable {
 		sourceGroupUsers = new HashMap<>();
 		long highestdeltaSyncUserTime = 0;
 		long highestdeltaSyncGroupTime = 0;
+		long syncStartTime = System.currentTimeMillis();
 
 		if (config.isUserSyncDeletesEnabled() && deleteCycles >= config.getUserSyncDeletesFrequency()) {
 			deleteCycles = 1;
@@ -376,35 +445,45 @@ public void updateSink(UserGroupSink sink) throws Throwable {
 		if (config.isUserSyncDeletesEnabled()) {
 			deleteCycles++;
 		}
-		if (groupSearchEnabled) {
-			highestdeltaSyncGroupTime = getGroups(computeDeletes);
-		}
-		if (userSearchEnabled) {
-			LOG.info("Performing user search to retrieve users from AD/LDAP");
-			highestdeltaSyncUserTime = getUsers(computeDeletes);
-		}
-
-		if (groupHierarchyLevels > 0) {
-			LOG.info("Going through group hierarchy for nested group evaluation");
-            Set<String> groupFullNames = sourceGroups.keySet();
-			for(String group : groupFullNames) {
-				Set<String> nextLevelGroups = groupUserTable.column(group).keySet();
-				goUpGroupHierarchy(nextLevelGroups, groupHierarchyLevels-1, group);
+		boolean fullSync = computeDeletes || isFullSyncDue(syncStartTime);
+		sinkPipeline = new UserGroupSinkPipeline(sink, computeDeletes);
+		searchMetrics = new ConcurrentHashMap<>();
+		try {
+			if (groupSearchEnabled) {
+				highestdeltaSyncGroupTime = getGroups(fullSync);
+			}
+			if (userSearchEnabled) {
+				LOG.info("Performing user search to retrieve users from AD/LDAP");
+				highestdeltaSyncUserTime = getUsers(fullSync);
 			}
-			LOG.info("Completed group hierarchy computation");
-		}
 
-		Iterator<String> groupUserTableIterator = groupUserTable.rowKeySet().iterator();
-		while (groupUserTableIterator.hasNext()) {
-			String groupName = groupUserTableIterator.next();
-			Map<String,String> groupUsersMap =  groupUserTable.row(groupName);
-			Set<String> userSet = new HashSet<String>();
-			for(Map.Entry<String, String> entry : groupUsersMap.entrySet()){
-				if (sourceUsers.containsKey(entry.getValue())) {
-					userSet.add(entry.getValue());
+			if (groupHierarchyLevels > 0) {
+				LOG.info("Going through group hierarchy for nested group evaluation");
+				Set<String> groupFullNames = sourceGroups.keySet();
+				for(String group : groupFullNames) {
+					Set<String> nextLevelGroups = groupUserTable.column(group).keySet();
+					goUpGroupHierarchy(nextLevelGroups, groupHierarchyLevels-1, group);
 				}
-		    }
-			sourceGroupUsers.put(groupName, userSet);
+				LOG.info("Completed group hierarchy computation");
+			}
+
+			Iterator<String> groupUserTableIterator = groupUserTable.rowKeySet().iterator();
+			while (groupUserTableIterator.hasNext()) {
+				String groupName = groupUserTableIterator.next();
+				Map<String,String> groupUsersMap =  groupUserTable.row(groupName);
+				Set<String> userSet = new HashSet<String>();
+				for(Map.Entry<String, String> entry : groupUsersMap.entrySet()){
+					if (sourceUsers.containsKey(entry.getValue())) {
+						userSet.add(entry.getValue());
+					}
+			    }
+				sourceGroupUsers.put(groupName, userSet);
+			}
+		} catch (Throwable t) {
+			sinkPipeline.close();
+			throw t;
+		} finally {
+			publishSearchMetrics();
 		}
 
 		if (LOG.isDebugEnabled()) {
@@ -414,7 +493,7 @@ public void updateSink(UserGroupSink sink) throws Throwable {
 		}
 
 		try {
-			sink.addOrUpdateUsersGroups(sourceGroups, sourceUsers, sourceGroupUsers, computeDeletes);
+			sinkPipeline.finish(sourceGroupUsers);
 			DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
 			LOG.info("deltaSyncUserTime = " + deltaSyncUserTime + " and highestdeltaSyncUserTime = " + highestdeltaSyncUserTime);
 			if (deltaSyncUserTime < highestdeltaSyncUserTime) {
@@ -432,8 +511,17 @@ public void updateSink(UserGroupSink sink) throws Throwable {
 				// Incrementing the highest timestamp value (for OpenLdap) with 1min in order to avoid search record repetition for next sync cycle.
 				deltaSyncGroupTimeStamp = dateFormat.format(new Date(highestdeltaSyncGroupTime + 60l));
 			}
+
+			if (fullSync) {
+				lastFullSyncTime = syncStartTime;
+			}
+
+			saveDeltaSyncState();
 		} catch (Throwable t) {
 			LOG.error("Failed to update ranger admin. Will retry in next sync cycle!!", t);
+		} finally {
+			sinkPipeline.close();
+			sinkPipeline = null;
 		}
 
 		ldapSyncSourceInfo.setUserSearchFilter(extendedUserSearchFilter);
@@ -446,432 +534,406 @@ public void updateSink(UserGroupSink sink) throws Throwable {
 		}
 	}
 
-	private long getUsers(boolean computeDeletes) throws Throwable {
+	private long getUsers(boolean fullSync) throws Throwable {
+		DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+		if (groupUserTable.rowKeySet().size() != 0 || !config.isDeltaSyncEnabled() || (fullSync)) {
+			// Fix RANGER-1957: Perform full sync when there are updates to the groups or when incremental sync is not enabled
+			deltaSyncUserTime = 0;
+			deltaSyncUserTimeStamp = dateFormat.format(new Date(0));
+		}
+
+		extendedUserSearchFilter = "(objectclass=" + userObjectClass + ")(|(uSNChanged>=" + deltaSyncUserTime + ")(modifyTimestamp>=" + deltaSyncUserTimeStamp + "Z))";
+
+		if (userSearchFilter != null && !userSearchFilter.trim().isEmpty()) {
+			String customFilter = userSearchFilter.trim();
+			if (!customFilter.startsWith("(")) {
+				customFilter = "(" + customFilter + ")";
+			}
+
+			extendedUserSearchFilter = "(&" + extendedUserSearchFilter + customFilter + ")";
+		} else {
+			extendedUserSearchFilter = "(&" + extendedUserSearchFilter + ")";
+		}
+		LOG.info("extendedUserSearchFilter = " + extendedUserSearchFilter);
+
+		highestDeltaSyncUserTime = deltaSyncUserTime;
+		syncedUserCount = 0;
+
+		// When multiple OUs are configured, go through each OU as the user search base to search for users.
+		List<LdapSearch> searches = new ArrayList<>();
+		for (String searchBase : userSearchBase) {
+			searches.add(new LdapSearch("getUsers", searchBase, context -> getUsers(context, searchBase)));
+		}
+		runSearches(searches);
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("highestdeltaSyncUserTime = " + highestDeltaSyncUserTime);
+		}
+		return highestDeltaSyncUserTime;
+	}
+
+	private int getUsers(LdapContext context, String searchBase) throws Throwable {
 		NamingEnumeration<SearchResult> userSearchResultEnum = null;
-		NamingEnumeration<SearchResult> groupSearchResultEnum = null;
-		long highestdeltaSyncUserTime;
+		DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+		byte[] cookie = null;
+		int counter = 0;
 		try {
-			createLdapContext();
-			int total;
+			int paged = 0;
 			// Activate paged results
 			if (pagedResultsEnabled)   {
-				ldapContext.setRequestControls(new Control[]{
+				context.setRequestControls(new Control[]{
 						new PagedResultsControl(pagedResultsSize, Control.NONCRITICAL) });
 			}
-			DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
-			if (groupUserTable.rowKeySet().size() != 0 || !config.isDeltaSyncEnabled() || (computeDeletes)) {
-				// Fix RANGER-1957: Perform full sync when there are updates to the groups or when incremental sync is not enabled
-				deltaSyncUserTime = 0;
-				deltaSyncUserTimeStamp = dateFormat.format(new Date(0));
-			}
+			do {
+				userSearchResultEnum = context
+						.search(searchBase, extendedUserSearchFilter,
+								userSearchControls);
 
-			extendedUserSearchFilter = "(objectclass=" + userObjectClass + ")(|(uSNChanged>=" + deltaSyncUserTime + ")(modifyTimestamp>=" + deltaSyncUserTimeStamp + "Z))";
+				while (userSearchResultEnum.hasMore()) {
+					// searchResults contains all the user entries
+					final SearchResult userEntry = userSearchResultEnum.next();
 
-			if (userSearchFilter != null && !userSearchFilter.trim().isEmpty()) {
-				String customFilter = userSearchFilter.trim();
-				if (!customFilter.startsWith("(")) {
-					customFilter = "(" + customFilter + ")";
+					if (addUser(userEntry, dateFormat)) {
+						counter++;
+					}
 				}
 
-				extendedUserSearchFilter = "(&" + extendedUserSearchFilter + customFilter + ")";
-			} else {
-				extendedUserSearchFilter = "(&" + extendedUserSearchFilter + ")";
+				// Examine the paged results control response
+				cookie = getPagedResultsCookie(context);
+				// Re-activate paged results
+				if (pagedResultsEnabled)   {
+					if (LOG.isDebugEnabled()) {
+						LOG.debug(String.format("Fetched paged results round: %s", ++paged));
+					}
+					context.setRequestControls(new Control[]{
+							new PagedResultsControl(pagedResultsSize, cookie, Control.CRITICAL) });
+				}
+			} while (cookie != null);
+			LOG.info("LdapUserGroupBuilder.getUsers() completed with user count: "
+					+ counter + " for search base " + searchBase);
+		} catch (Exception t) {
+			LOG.error("LdapUserGroupBuilder.getUsers() failed with exception: ", t);
+			LOG.info("LdapUserGroupBuilder.getUsers() user count: "
+					+ counter + " for search base " + searchBase);
+		} finally {
+			if (userSearchResultEnum != null) {
+				userSearchResultEnum.close();
 			}
-			LOG.info("extendedUserSearchFilter = " + extendedUserSearchFilter);
-
-			highestdeltaSyncUserTime = deltaSyncUserTime;
-
-			// When multiple OUs are configured, go through each OU as the user search base to search for users.
-			for (int ou=0; ou<userSearchBase.length; ou++) {
-				byte[] cookie = null;
-				int counter = 0;
-				try {
-				int paged = 0;
-				do {
-					userSearchResultEnum = ldapContext
-							.search(userSearchBase[ou], extendedUserSearchFilter,
-									userSearchControls);
-
-					while (userSearchResultEnum.hasMore()) {
-						// searchResults contains all the user entries
-						final SearchResult userEntry = userSearchResultEnum.next();
-
-						if (userEntry == null)  {
-							LOG.info("userEntry null, skipping sync for the entry");
-							continue;
-						}
-
-						Attributes attributes =   userEntry.getAttributes();
-						if (attributes == null)  {
-							LOG.info("attributes  missing for entry " + userEntry.getNameInNamespace() +
-									", skipping sync");
-							continue;
-						}
-
-						Attribute userNameAttr  = attributes.get(userNameAttribute);
-						if (userNameAttr == null)  {
-							LOG.info(userNameAttribute + " missing for entry " + userEntry.getNameInNamespace() +
-									", skipping sync");
-							continue;
-						}
-
-						String userFullName = (userEntry.getNameInNamespace());
-						String userName = (String) userNameAttr.get();
-
-						if (userName == null || userName.trim().isEmpty())  {
-							LOG.info(userNameAttribute + " empty for entry " + userEntry.getNameInNamespace() +
-									", skipping sync");
-							continue;
-						}
+		}
+		return counter;
+	}
 
-						Attribute timeStampAttr  = attributes.get("uSNChanged");
-						if (timeStampAttr != null) {
-							String uSNChangedVal = (String) timeStampAttr.get();
-							long currentDeltaSyncTime = Long.parseLong(uSNChangedVal);
-							LOG.info("uSNChangedVal = " + uSNChangedVal + "and currentDeltaSyncTime = " + currentDeltaSyncTime);
-							if (currentDeltaSyncTime > highestdeltaSyncUserTime) {
-								highestdeltaSyncUserTime = currentDeltaSyncTime;
-							}
-						} else {
-							timeStampAttr = attributes.get("modifytimestamp");
-							if (timeStampAttr != null) {
-								String timeStampVal = (String) timeStampAttr.get();
-								Date parseDate = dateFormat.parse(timeStampVal);
-								long currentDeltaSyncTime = parseDate.getTime();
-								LOG.info("timeStampVal = " + timeStampVal + "and currentDeltaSyncTime = " + currentDeltaSyncTime);
-								if (currentDeltaSyncTime > highestdeltaSyncUserTime) {
-									highestdeltaSyncUserTime = currentDeltaSyncTime;
-									deltaSyncUserTimeStamp = timeStampVal;
-								}
-							}
-						}
+	/*
+	 * adds the given user entry to sourceUsers/groupUserTable; called concurrently by searches of different OUs
+	 */
+	private synchronized boolean addUser(SearchResult userEntry, DateFormat dateFormat) throws Throwable {
+		if (userEntry == null)  {
+			LOG.info("userEntry null, skipping sync for the entry");
+			return false;
+		}
 
-						// Get all the groups from the group name attribute of the user only when group search is not enabled.
-						if (!groupSearchEnabled) {
-							for (String useGroupNameAttribute : userGroupNameAttributeSet) {
-								Attribute userGroupfAttribute = userEntry.getAttributes().get(useGroupNameAttribute);
-								if (userGroupfAttribute != null) {
-									NamingEnumeration<?> groupEnum = userGroupfAttribute.getAll();
-									while (groupEnum.hasMore()) {
-										String groupDN = (String) groupEnum.next();
-										if (LOG.isDebugEnabled()) {
-											LOG.debug("Adding " + groupDN + " to " + userName);
-										}
-										Map<String, String> groupAttrMap = new HashMap<>();
-										String groupName = getShortName(groupDN);
-										groupAttrMap.put(UgsyncCommonConstants.ORIGINAL_NAME, groupName);
-										groupAttrMap.put(UgsyncCommonConstants.FULL_NAME, groupDN);
-										groupAttrMap.put(UgsyncCommonConstants.SYNC_SOURCE, currentSyncSource);
-										groupAttrMap.put(UgsyncCommonConstants.LDAP_URL, config.getLdapUrl());
-										sourceGroups.put(groupDN, groupAttrMap);
-										if (LOG.isDebugEnabled()) {
-											LOG.debug("As groupsearch is disabled, adding group " + groupName + " from user memberof attribute for user " + userName);
-										}
-										groupUserTable.put(groupDN, userFullName, userFullName);
-									}
-								}
-							}
-						}
+		Attributes attributes =   userEntry.getAttributes();
+		if (attributes == null)  {
+			LOG.info("attributes  missing for entry " + userEntry.getNameInNamespace() +
+					", skipping sync");
+			return false;
+		}
 
-						Map<String, String> userAttrMap = new HashMap<>();
-						userAttrMap.put(UgsyncCommonConstants.ORIGINAL_NAME, userName);
-						userAttrMap.put(UgsyncCommonConstants.FULL_NAME, userFullName);
-						userAttrMap.put(UgsyncCommonConstants.SYNC_SOURCE, currentSyncSource);
-						userAttrMap.put(UgsyncCommonConstants.LDAP_URL, config.getLdapUrl());
-						Attribute userCloudIdAttr = attributes.get(userCloudIdAttribute);
-						if (userCloudIdAttr != null) {
-							addToAttrMap(userAttrMap, "cloud_id", userCloudIdAttr, config.getUserCloudIdAttributeDataType());
-						}
-						for (String otherUserAttribute : otherUserAttributes) {
-							if (attributes.get(otherUserAttribute) != null) {
-								String attrType = config.getOtherUserAttributeDataType(otherUserAttribute);
-								addToAttrMap(userAttrMap, otherUserAttribute, attributes.get(otherUserAttribute), attrType);
-							}
-						}
+		Attribute userNameAttr  = attributes.get(userNameAttribute);
+		if (userNameAttr == null)  {
+			LOG.info(userNameAttribute + " missing for entry " + userEntry.getNameInNamespace() +
+					", skipping sync");
+			return false;
+		}
 
-						sourceUsers.put(userFullName, userAttrMap);
-						if ((groupUserTable.containsColumn(userFullName) || groupUserTable.containsColumn(userName))) {
-							//Update the username in the groupUserTable with the one from username attribute.
-							Map<String, String> userMap = groupUserTable.column(userFullName);
-							if (MapUtils.isEmpty(userMap)) {
-								userMap = groupUserTable.column(userName);
-							}
-							for (Map.Entry<String, String> entry : userMap.entrySet()) {
-								if (LOG.isDebugEnabled()) {
-									LOG.debug("Updating groupUserTable " + entry.getValue() + " with: " + userName + " for " + entry.getKey());
-								}
-								groupUserTable.put(entry.getKey(), userFullName, userFullName);
-							}
-						}
-						counter++;
+		String userFullName = (userEntry.getNameInNamespace());
+		String userName = (String) userNameAttr.get();
 
-                        if (counter <= 2000) {
-                            LOG.info("Updating user count: " + counter + ", userName: " + userName);
-                            if ( counter == 2000 ) {
-                                LOG.info("===> 2000 user records have been synchronized so far. From now on, only a summary progress log will be written for every 100 users. To continue to see detailed log for every user, please enable Trace level logging. <===");
-                            }
-                        } else {
-                            if (LOG.isTraceEnabled()) {
-                                LOG.trace("Updating user count: " + counter
-                                        + ", userName: " + userName);
-                            } else  {
-                                if ( counter % 100 == 0) {
-                                    LOG.info("Synced " + counter + " users till now");
-                                }
-                            }
-                        }
+		if (userName == null || userName.trim().isEmpty())  {
+			LOG.info(userNameAttribute + " empty for entry " + userEntry.getNameInNamespace() +
+					", skipping sync");
+			return false;
+		}
 
-					}
+		Attribute timeStampAttr  = attributes.get("uSNChanged");
+		if (timeStampAttr != null) {
+			String uSNChangedVal = (String) timeStampAttr.get();
+			long currentDeltaSyncTime = Long.parseLong(uSNChangedVal);
+			LOG.info("uSNChangedVal = " + uSNChangedVal + "and currentDeltaSyncTime = " + currentDeltaSyncTime);
+			if (currentDeltaSyncTime > highestDeltaSyncUserTime) {
+				highestDeltaSyncUserTime = currentDeltaSyncTime;
+			}
+		} else {
+			timeStampAttr = attributes.get("modifytimestamp");
+			if (timeStampAttr != null) {
+				String timeStampVal = (String) timeStampAttr.get();
+				Date parseDate = dateFormat.parse(timeStampVal);
+				long currentDeltaSyncTime = parseDate.getTime();
+				LOG.info("timeStampVal = " + timeStampVal + "and currentDeltaSyncTime = " + currentDeltaSyncTime);
+				if (currentDeltaSyncTime > highestDeltaSyncUserTime) {
+					highestDeltaSyncUserTime = currentDeltaSyncTime;
+					deltaSyncUserTimeStamp = timeStampVal;
+				}
+			}
+		}
 
-					// Examine the paged results control response
-					Control[] controls = ldapContext.getResponseControls();
-					if (controls != null) {
-						for (int i = 0; i < controls.length; i++) {
-							if (controls[i] instanceof PagedResultsResponseControl) {
-								PagedResultsResponseControl prrc =
-										(PagedResultsResponseControl)controls[i];
-								total = prrc.getResultSize();
-								if (total != 0) {
-									if (LOG.isDebugEnabled()) {
-										LOG.debug("END-OF-PAGE total : " + total);
-									}
-								} else {
-									if (LOG.isDebugEnabled()) {
-										LOG.debug("END-OF-PAGE total : unknown");
-									}
-								}
-								cookie = prrc.getCookie();
-							}
-						}
-					} else {
+		// Get all the groups from the group name attribute of the user only when group search is not enabled.
+		if (!groupSearchEnabled) {
+			for (String useGroupNameAttribute : userGroupNameAttributeSet) {
+				Attribute userGroupfAttribute = userEntry.getAttributes().get(useGroupNameAttribute);
+				if (userGroupfAttribute != null) {
+					NamingEnumeration<?> groupEnum = userGroupfAttribute.getAll();
+					while (groupEnum.hasMore()) {
+						String groupDN = (String) groupEnum.next();
 						if (LOG.isDebugEnabled()) {
-							LOG.debug("No controls were sent from the server");
+							LOG.debug("Adding " + groupDN + " to " + userName);
 						}
-					}
-					// Re-activate paged results
-					if (pagedResultsEnabled)   {
+						Map<String, String> groupAttrMap = new HashMap<>();
+						String groupName = getShortName(groupDN);
+						groupAttrMap.put(UgsyncCommonConstants.ORIGINAL_NAME, groupName);
+						groupAttrMap.put(UgsyncCommonConstants.FULL_NAME, groupDN);
+						groupAttrMap.put(UgsyncCommonConstants.SYNC_SOURCE, currentSyncSource);
+						groupAttrMap.put(UgsyncCommonConstants.LDAP_URL, config.getLdapUrl());
+						putSourceGroup(groupDN, groupAttrMap);
 						if (LOG.isDebugEnabled()) {
-							LOG.debug(String.format("Fetched paged results round: %s", ++paged));
+							LOG.debug("As groupsearch is disabled, adding group " + groupName + " from user memberof attribute for user " + userName);
 						}
-						ldapContext.setRequestControls(new Control[]{
-								new PagedResultsControl(pagedResultsSize, cookie, Control.CRITICAL) });
+						groupUserTable.put(groupDN, userFullName, userFullName);
 					}
-				} while (cookie != null);
-				LOG.info("LdapUserGroupBuilder.getUsers() completed with user count: "
-						+ counter);
-				} catch (Exception t) {
-					LOG.error("LdapUserGroupBuilder.getUsers() failed with exception: ", t);
-					LOG.info("LdapUserGroupBuilder.getUsers() user count: "
-							+ counter);
 				}
 			}
-		} finally {
-			if (userSearchResultEnum != null) {
-				userSearchResultEnum.close();
-			}
-			if (groupSearchResultEnum != null) {
-				groupSearchResultEnum.close();
+		}
+
+		Map<String, String> userAttrMap = new HashMap<>();
+		userAttrMap.put(UgsyncCommonConstants.ORIGINAL_NAME, userName);
+		userAttrMap.put(UgsyncCommonConstants.FULL_NAME, userFullName);
+		userAttrMap.put(UgsyncCommonConstants.SYNC_SOURCE, currentSyncSource);
+		userAttrMap.put(UgsyncCommonConstants.LDAP_URL, config.getLdapUrl());
+		Attribute userCloudIdAttr = attributes.get(userCloudIdAttribute);
+		if (userCloudIdAttr != null) {
+			addToAttrMap(userAttrMap, "cloud_id", userCloudIdAttr, config.getUserCloudIdAttributeDataType());
+		}
+		for (String otherUserAttribute : otherUserAttributes) {
+			if (attributes.get(otherUserAttribute) != null) {
+				String attrType = config.getOtherUserAttributeDataType(otherUserAttribute);
+				addToAttrMap(userAttrMap, otherUserAttribute, attributes.get(otherUserAttribute), attrType);
 			}
-			closeLdapContext();
 		}
-		if (LOG.isDebugEnabled()) {
-			LOG.debug("highestdeltaSyncUserTime = " + highestdeltaSyncUserTime);
+
+		putSourceUser(userFullName, userAttrMap);
+		if ((groupUserTable.containsColumn(userFullName) || groupUserTable.containsColumn(userName))) {
+			//Update the username in the groupUserTable with the one from username attribute.
+			Map<String, String> userMap = groupUserTable.column(userFullName);
+			if (MapUtils.isEmpty(userMap)) {
+				userMap = groupUserTable.column(userName);
+			}
+			for (Map.Entry<String, String> entry : userMap.entrySet()) {
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("Updating groupUserTable " + entry.getValue() + " with: " + userName + " for " + entry.getKey());
+				}
+				groupUserTable.put(entry.getKey(), userFullName, userFullName);
+			}
 		}
-		return highestdeltaSyncUserTime;
-	}
+		syncedUserCount++;
 
-	private long getGroups(boolean computeDeletes) throws Throwable {
-		NamingEnumeration<SearchResult> groupSearchResultEnum = null;
-        DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
-        long highestdeltaSyncGroupTime = deltaSyncGroupTime;
-		try {
-			createLdapContext();
-			int total;
-			// Activate paged results
-			if (pagedResultsEnabled)   {
-				ldapContext.setRequestControls(new Control[]{
-						new PagedResultsControl(pagedResultsSize, Control.NONCRITICAL) });
+		if (syncedUserCount <= 2000) {
+			LOG.info("Updating user count: " + syncedUserCount + ", userName: " + userName);
+			if ( syncedUserCount == 2000 ) {
+				LOG.info("===> 2000 user records have been synchronized so far. From now on, only a summary progress log will be written for every 100 users. To continue to see detailed log for every user, please enable Trace level logging. <===");
 			}
-			extendedGroupSearchFilter = "(objectclass=" + groupObjectClass + ")";
-			if (groupSearchFilter != null && !groupSearchFilter.trim().isEmpty()) {
-				String customFilter = groupSearchFilter.trim();
-				if (!customFilter.startsWith("(")) {
-					customFilter = "(" + customFilter + ")";
+		} else {
+			if (LOG.isTraceEnabled()) {
+				LOG.trace("Updating user count: " + syncedUserCount
+						+ ", userName: " + userName);
+			} else  {
+				if ( syncedUserCount % 100 == 0) {
+					LOG.info("Synced " + syncedUserCount + " users till now");
 				}
-				extendedGroupSearchFilter = extendedGroupSearchFilter + customFilter;
 			}
+		}
 
-			if (!config.isDeltaSyncEnabled() || (computeDeletes)) {
-				// Perform full sync when incremental sync is not enabled
-				deltaSyncGroupTime = 0;
-				deltaSyncGroupTimeStamp = dateFormat.format(new Date(0));
+		return true;
+	}
+
+	private long getGroups(boolean fullSync) throws Throwable {
+		DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+		highestDeltaSyncGroupTime = deltaSyncGroupTime;
+		extendedGroupSearchFilter = "(objectclass=" + groupObjectClass + ")";
+		if (groupSearchFilter != null && !groupSearchFilter.trim().isEmpty()) {
+			String customFilter = groupSearchFilter.trim();
+			if (!customFilter.startsWith("(")) {
+				customFilter = "(" + customFilter + ")";
 			}
+			extendedGroupSearchFilter = extendedGroupSearchFilter + customFilter;
+		}
 
-			extendedAllGroupsSearchFilter = "(&"  + extendedGroupSearchFilter + "(|(uSNChanged>=" + deltaSyncGroupTime + ")(modifyTimestamp>=" + deltaSyncGroupTimeStamp + "Z)))";
+		if (!config.isDeltaSyncEnabled() || (fullSync)) {
+			// Perform full sync when incremental sync is not enabled, or when a full reconciliation is due
+			deltaSyncGroupTime = 0;
+			deltaSyncGroupTimeStamp = dateFormat.format(new Date(0));
+		}
 
-			LOG.info("extendedAllGroupsSearchFilter = " + extendedAllGroupsSearchFilter);
-			for (int ou=0; ou<groupSearchBase.length; ou++) {
-				byte[] cookie = null;
-				int counter = 0;
-				try {
-					int paged = 0;
-					do {
-						groupSearchResultEnum = ldapContext
-								.search(groupSearchBase[ou], extendedAllGroupsSearchFilter,
-										groupSearchControls);
-						while (groupSearchResultEnum.hasMore()) {
-							final SearchResult groupEntry = groupSearchResultEnum.next();
-							if (groupEntry == null) {
-								LOG.info("groupEntry null, skipping sync for the entry");
-								continue;
-							}
-							counter++;
-							Attributes attributes =   groupEntry.getAttributes();
-							Attribute groupNameAttr = attributes.get(groupNameAttribute);
-							if (groupNameAttr == null) {
-								LOG.info(groupNameAttribute + " empty for entry " + groupEntry.getNameInNamespace() +
-										", skipping sync");
-								continue;
-							}
-							String groupFullName = (groupEntry.getNameInNamespace());
-							String gName = (String) groupNameAttr.get();
-							Map<String, String> groupAttrMap = new HashMap<>();
-                            groupAttrMap.put(UgsyncCommonConstants.ORIGINAL_NAME, gName);
-                            groupAttrMap.put(UgsyncCommonConstants.FULL_NAME, groupFullName);
-                            groupAttrMap.put(UgsyncCommonConstants.SYNC_SOURCE, currentSyncSource);
-                            groupAttrMap.put(UgsyncCommonConstants.LDAP_URL, config.getLdapUrl());
-							Attribute groupCloudIdAttr = attributes.get(groupCloudIdAttribute);
-							if (groupCloudIdAttr != null) {
-								addToAttrMap(groupAttrMap, "cloud_id", groupCloudIdAttr, config.getGroupCloudIdAttributeDataType());
-							}
-							for (String otherGroupAttribute : otherGroupAttributes) {
-								if (attributes.get(otherGroupAttribute) != null) {
-									String attrType = config.getOtherGroupAttributeDataType(otherGroupAttribute);
-									addToAttrMap(groupAttrMap, otherGroupAttribute, attributes.get(otherGroupAttribute), attrType);
-								}
-							}
-							sourceGroups.put(groupFullName, groupAttrMap);
-
-							Attribute timeStampAttr  = attributes.get("uSNChanged");
-							if (timeStampAttr != null) {
-								String uSNChangedVal = (String) timeStampAttr.get();
-								long currentDeltaSyncTime = Long.parseLong(uSNChangedVal);
-								if (currentDeltaSyncTime > highestdeltaSyncGroupTime) {
-									highestdeltaSyncGroupTime = currentDeltaSyncTime;
-								}
-							} else {
-								timeStampAttr = attributes.get("modifytimestamp");
-								if (timeStampAttr != null) {
-									String timeStampVal = (String) timeStampAttr.get();
-									Date parseDate = dateFormat.parse(timeStampVal);
-									long currentDeltaSyncTime = parseDate.getTime();
-									LOG.info("timeStampVal = " + timeStampVal + "and currentDeltaSyncTime = " + currentDeltaSyncTime);
-									if (currentDeltaSyncTime > highestdeltaSyncGroupTime) {
-										highestdeltaSyncGroupTime = currentDeltaSyncTime;
-										deltaSyncGroupTimeStamp = timeStampVal;
-									}
-								}
-							}
-							Attribute groupMemberAttr = attributes.get(groupMemberAttributeName);
-							int userCount = 0;
-							if (groupMemberAttr == null || groupMemberAttr.size() <= 0) {
-								LOG.info("No members available for " + gName);
-								sourceGroupUsers.put(groupFullName, new HashSet<>());
-								continue;
-							}
+		extendedAllGroupsSearchFilter = "(&"  + extendedGroupSearchFilter + "(|(uSNChanged>=" + deltaSyncGroupTime + ")(modifyTimestamp>=" + deltaSyncGroupTimeStamp + "Z)))";
 
-							NamingEnumeration<?> userEnum = groupMemberAttr.getAll();
-							while (userEnum.hasMore()) {
-								String originalUserFullName = (String) userEnum.next();
-								if (originalUserFullName == null || originalUserFullName.trim().isEmpty()) {
-									sourceGroupUsers.put(groupFullName, new HashSet<>());
-									continue;
-								}
-								userCount++;
-
-								if (!userSearchEnabled) {
-									Map<String, String> userAttrMap = new HashMap<>();
-									String userName = getShortName(originalUserFullName);
-                                    userAttrMap.put(UgsyncCommonConstants.ORIGINAL_NAME, userName);
-                                    userAttrMap.put(UgsyncCommonConstants.FULL_NAME, originalUserFullName);
-                                    userAttrMap.put(UgsyncCommonConstants.SYNC_SOURCE, currentSyncSource);
-                                    userAttrMap.put(UgsyncCommonConstants.LDAP_URL, config.getLdapUrl());
-									sourceUsers.put(originalUserFullName, userAttrMap);
-									if (LOG.isDebugEnabled()) {
-										LOG.debug("As usersearch is disabled, adding user " + userName + " from group member attribute for group " + gName);
-									}
-								}
+		LOG.info("extendedAllGroupsSearchFilter = " + extendedAllGroupsSearchFilter);
 
-								groupUserTable.put(groupFullName, originalUserFullName, originalUserFullName);
-							}
+		List<LdapSearch> searches = new ArrayList<>();
+		for (String searchBase : groupSearchBase) {
+			searches.add(new LdapSearch("getGroups", searchBase, context -> getGroups(context, searchBase)));
+		}
+		runSearches(searches);
 
-							LOG.info("No. of members in the group " + gName + " = " + userCount);
-						}
-						// Examine the paged results control response
-						Control[] controls = ldapContext.getResponseControls();
-						if (controls != null) {
-							for (int i = 0; i < controls.length; i++) {
-								if (controls[i] instanceof PagedResultsResponseControl) {
-									PagedResultsResponseControl prrc =
-											(PagedResultsResponseControl)controls[i];
-									total = prrc.getResultSize();
-									if (total != 0) {
-										if (LOG.isDebugEnabled()) {
-											LOG.debug("END-OF-PAGE total : " + total);
-										}
-									} else {
-										if (LOG.isDebugEnabled()) {
-											LOG.debug("END-OF-PAGE total : unknown");
-										}
-									}
-									cookie = prrc.getCookie();
-								}
-							}
-						} else {
-							if (LOG.isDebugEnabled()) {
-								LOG.debug("No controls were sent from the server");
-							}
-						}
-						// Re-activate paged results
-						if (pagedResultsEnabled)   {
-							if (LOG.isDebugEnabled()) {
-								LOG.debug(String.format("Fetched paged results round: %s", ++paged));
-							}
-							ldapContext.setRequestControls(new Control[]{
-									new PagedResultsControl(pagedResultsSize, cookie, Control.CRITICAL) });
-						}
-					} while (cookie != null);
-					LOG.info("LdapUserGroupBuilder.getGroups() completed with group count: "
-							+ counter);
-				} catch (Exception t) {
-					LOG.error("LdapUserGroupBuilder.getGroups() failed with exception: " + t);
-					LOG.info("LdapUserGroupBuilder.getGroups() group count: "
-							+ counter);
-				}
+		if (groupHierarchyLevels > 0) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("deltaSyncGroupTime = " + deltaSyncGroupTime);
 			}
+			if (deltaSyncGroupTime > 0) {
+				LOG.info("LdapUserGroupBuilder.getGroups(): Going through group hierarchy for nested group evaluation for deltasync");
+				goUpGroupHierarchyLdap(sourceGroups.keySet(), groupHierarchyLevels-1);
+			}
+		}
 
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("highestdeltaSyncGroupTime = " + highestDeltaSyncGroupTime);
+		}
+
+		return highestDeltaSyncGroupTime;
+	}
+
+	private int getGroups(LdapContext context, String searchBase) throws Throwable {
+		NamingEnumeration<SearchResult> groupSearchResultEnum = null;
+		DateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+		byte[] cookie = null;
+		int counter = 0;
+		try {
+			int paged = 0;
+			// Activate paged results
+			if (pagedResultsEnabled)   {
+				context.setRequestControls(new Control[]{
+						new PagedResultsControl(pagedResultsSize, Control.NONCRITICAL) });
+			}
+			do {
+				groupSearchResultEnum = context
+						.search(searchBase, extendedAllGroupsSearchFilter,
+								groupSearchControls);
+				while (groupSearchResultEnum.hasMore()) {
+					final SearchResult groupEntry = groupSearchResultEnum.next();
+					if (groupEntry == null) {
+						LOG.info("groupEntry null, skipping sync for the entry");
+						continue;
+					}
+					counter++;
+					addGroup(groupEntry, dateFormat);
+				}
+				// Examine the paged results control response
+				cookie = getPagedResultsCookie(context);
+				// Re-activate paged results
+				if (pagedResultsEnabled)   {
+					if (LOG.isDebugEnabled()) {
+						LOG.debug(String.format("Fetched paged results round: %s", ++paged));
+					}
+					context.setRequestControls(new Control[]{
+							new PagedResultsControl(pagedResultsSize, cookie, Control.CRITICAL) });
+				}
+			} while (cookie != null);
+			LOG.info("LdapUserGroupBuilder.getGroups() completed with group count: "
+					+ counter + " for search base " + searchBase);
+		} catch (Exception t) {
+			LOG.error("LdapUserGroupBuilder.getGroups() failed with exception: " + t);
+			LOG.info("LdapUserGroupBuilder.getGroups() group count: "
+					+ counter + " for search base " + searchBase);
 		} finally {
 			if (groupSearchResultEnum != null) {
 				groupSearchResultEnum.close();
 			}
-			closeLdapContext();
 		}
+		return counter;
+	}
 
-        if (groupHierarchyLevels > 0) {
-			if (LOG.isDebugEnabled()) {
-				LOG.debug("deltaSyncGroupTime = " + deltaSyncGroupTime);
+	/*
+	 * adds the given group entry and its members to sourceGroups/groupUserTable; called concurrently by searches of different OUs
+	 */
+	private synchronized void addGroup(SearchResult groupEntry, DateFormat dateFormat) throws Throwable {
+		Attributes attributes =   groupEntry.getAttributes();
+		Attribute groupNameAttr = attributes.get(groupNameAttribute);
+		if (groupNameAttr == null) {
+			LOG.info(groupNameAttribute + " empty for entry " + groupEntry.getNameInNamespace() +
+					", skipping sync");
+			return;
+		}
+		String groupFullName = (groupEntry.getNameInNamespace());
+		String gName = (String) groupNameAttr.get();
+		Map<String, String> groupAttrMap = new HashMap<>();
+		groupAttrMap.put(UgsyncCommonConstants.ORIGINAL_NAME, gName);
+		groupAttrMap.put(UgsyncCommonConstants.FULL_NAME, groupFullName);
+		groupAttrMap.put(UgsyncCommonConstants.SYNC_SOURCE, currentSyncSource);
+		groupAttrMap.put(UgsyncCommonConstants.LDAP_URL, config.getLdapUrl());
+		Attribute groupCloudIdAttr = attributes.get(groupCloudIdAttribute);
+		if (groupCloudIdAttr != null) {
+			addToAttrMap(groupAttrMap, "cloud_id", groupCloudIdAttr, config.getGroupCloudIdAttributeDataType());
+		}
+		for (String otherGroupAttribute : otherGroupAttributes) {
+			if (attributes.get(otherGroupAttribute) != null) {
+				String attrType = config.getOtherGroupAttributeDataType(otherGroupAttribute);
+				addToAttrMap(groupAttrMap, otherGroupAttribute, attributes.get(otherGroupAttribute), attrType);
+			}
+		}
+		putSourceGroup(groupFullName, groupAttrMap);
+
+		Attribute timeStampAttr  = attributes.get("uSNChanged");
+		if (timeStampAttr != null) {
+			String uSNChangedVal = (String) timeStampAttr.get();
+			long currentDeltaSyncTime = Long.parseLong(uSNChangedVal);
+			if (currentDeltaSyncTime > highestDeltaSyncGroupTime) {
+				highestDeltaSyncGroupTime = currentDeltaSyncTime;
+			}
+		} else {
+			timeStampAttr = attributes.get("modifytimestamp");
+			if (timeStampAttr != null) {
+				String timeStampVal = (String) timeStampAttr.get();
+				Date parseDate = dateFormat.parse(timeStampVal);
+				long currentDeltaSyncTime = parseDate.getTime();
+				LOG.info("timeStampVal = " + timeStampVal + "and currentDeltaSyncTime = " + currentDeltaSyncTime);
+				if (currentDeltaSyncTime > highestDeltaSyncGroupTime) {
+					highestDeltaSyncGroupTime = currentDeltaSyncTime;
+					deltaSyncGroupTimeStamp = timeStampVal;
+				}
+			}
+		}
+		Attribute groupMemberAttr = attributes.get(groupMemberAttributeName);
+		int userCount = 0;
+		if (groupMemberAttr == null || groupMemberAttr.size() <= 0) {
+			LOG.info("No members available for " + gName);
+			sourceGroupUsers.put(groupFullName, new HashSet<>());
+			return;
+		}
+
+		NamingEnumeration<?> userEnum = groupMemberAttr.getAll();
+		while (userEnum.hasMore()) {
+			String originalUserFullName = (String) userEnum.next();
+			if (originalUserFullName == null || originalUserFullName.trim().isEmpty()) {
+				sourceGroupUsers.put(groupFullName, new HashSet<>());
+				continue;
+			}
+			userCount++;
+
+			if (!userSearchEnabled) {
+				Map<String, String> userAttrMap = new HashMap<>();
+				String userName = getShortName(originalUserFullName);
+				userAttrMap.put(UgsyncCommonConstants.ORIGINAL_NAME, userName);
+				userAttrMap.put(UgsyncCommonConstants.FULL_NAME, originalUserFullName);
+				userAttrMap.put(UgsyncCommonConstants.SYNC_SOURCE, currentSyncSource);
+				userAttrMap.put(UgsyncCommonConstants.LDAP_URL, config.getLdapUrl());
+				putSourceUser(originalUserFullName, userAttrMap);
+				if (LOG.isDebugEnabled()) {
+					LOG.debug("As usersearch is disabled, adding user " + userName + " from group member attribute for group " + gName);
+				}
 			}
-            if (deltaSyncGroupTime > 0) {
-				LOG.info("LdapUserGroupBuilder.getGroups(): Going through group hierarchy for nested group evaluation for deltasync");
-				goUpGroupHierarchyLdap(sourceGroups.keySet(), groupHierarchyLevels-1);
-            }
-        }
 
-        if (LOG.isDebugEnabled()) {
-        	LOG.debug("highestdeltaSyncGroupTime = " + highestdeltaSyncGroupTime);
+			groupUserTable.put(groupFullName, originalUserFullName, originalUserFullName);
 		}
 
-        return highestdeltaSyncGroupTime;
+		LOG.info("No. of members in the group " + gName + " = " + userCount);
 	}
 
 	private void goUpGroupHierarchy(Set<String> groups, int groupHierarchyLevels, String groupSName) throws InvalidNameException {
@@ -907,153 +969,418 @@ private void goUpGroupHierarchyLdap(Set<String> groupDNs, int groupHierarchyLeve
 		}
 		Set<String> nextLevelGroups = new HashSet<String>();
 
+		String groupFilterPrefix = "(&(objectclass=" + groupObjectClass + ")";
+		if (groupSearchFilter != null && !groupSearchFilter.trim().isEmpty()) {
+			String customFilter = groupSearchFilter.trim();
+			if (!customFilter.startsWith("(")) {
+				customFilter = "(" + customFilter + ")";
+			}
+			groupFilterPrefix += customFilter;
+		}
+
+		// search for parents of at most groupHierarchyFilterSize groups per request, to keep the filters small
+		List<String> groupFilters = new ArrayList<>();
+		StringBuilder filter = null;
+		int filterSize = 0;
+
+		for (String groupDN : groupDNs) {
+			if (filter == null) {
+				filter = new StringBuilder(groupFilterPrefix).append("(|");
+			}
+			filter.append("(").append(groupMemberAttributeName).append("=")
+					.append(groupDN).append(")");
+
+			if (++filterSize >= groupHierarchyFilterSize) {
+				groupFilters.add(filter.append("))").toString());
+				filter = null;
+				filterSize = 0;
+			}
+		}
+		if (filter != null) {
+			groupFilters.add(filter.append("))").toString());
+		}
+
+		List<LdapSearch> searches = new ArrayList<>();
+		for (String groupFilter : groupFilters) {
+			LOG.info("extendedAllGroupsSearchFilter = " + groupFilter);
+			for (String searchBase : groupSearchBase) {
+				searches.add(new LdapSearch("goUpGroupHierarchyLdap", searchBase, context -> goUpGroupHierarchyLdap(context, searchBase, groupFilter, nextLevelGroups)));
+			}
+		}
+		runSearches(searches);
+
+		goUpGroupHierarchyLdap(nextLevelGroups, groupHierarchyLevels-1);
+	}
+
+	private int goUpGroupHierarchyLdap(LdapContext context, String searchBase, String groupFilter, Set<String> nextLevelGroups) throws Throwable {
 		NamingEnumeration<SearchResult> groupSearchResultEnum = null;
+		byte[] cookie = null;
+		int counter = 0;
 		try {
-			createLdapContext();
-			int total;
 			// Activate paged results
 			if (pagedResultsEnabled)   {
-				ldapContext.setRequestControls(new Control[]{
+				context.setRequestControls(new Control[]{
 						new PagedResultsControl(pagedResultsSize, Control.NONCRITICAL) });
 			}
-			String groupFilter = "(&(objectclass=" + groupObjectClass + ")";
-			if (groupSearchFilter != null && !groupSearchFilter.trim().isEmpty()) {
-				String customFilter = groupSearchFilter.trim();
-				if (!customFilter.startsWith("(")) {
-					customFilter = "(" + customFilter + ")";
+			do {
+				groupSearchResultEnum = context
+						.search(searchBase, groupFilter,
+								groupSearchControls);
+				while (groupSearchResultEnum.hasMore()) {
+					final SearchResult groupEntry = groupSearchResultEnum.next();
+					if (groupEntry == null) {
+						LOG.info("groupEntry null, skipping sync for the entry");
+						continue;
+					}
+					counter++;
+					addNestedGroup(groupEntry, nextLevelGroups);
 				}
-				groupFilter += customFilter + "(|";
+				// Examine the paged results control response
+				cookie = getPagedResultsCookie(context);
+				// Re-activate paged results
+				if (pagedResultsEnabled)   {
+					context.setRequestControls(new Control[]{
+							new PagedResultsControl(pagedResultsSize, cookie, Control.CRITICAL) });
+				}
+			} while (cookie != null);
+			LOG.info("LdapUserGroupBuilder.goUpGroupHierarchyLdap() completed with group count: "
+					+ counter + " for search base " + searchBase);
+		} catch (RuntimeException re) {
+			LOG.error("LdapUserGroupBuilder.goUpGroupHierarchyLdap() failed with runtime exception: ", re);
+			throw re;
+		} catch (Exception t) {
+			LOG.error("LdapUserGroupBuilder.goUpGroupHierarchyLdap() failed with exception: ", t);
+			LOG.info("LdapUserGroupBuilder.goUpGroupHierarchyLdap() group count: "
+					+ counter + " for search base " + searchBase);
+		} finally {
+			if (groupSearchResultEnum != null) {
+				groupSearchResultEnum.close();
 			}
-			StringBuilder filter = new StringBuilder();
+		}
+		return counter;
+	}
 
-			for (String groupDN : groupDNs) {
-				filter.append("(").append(groupMemberAttributeName).append("=")
-						.append(groupDN).append(")");
-			}
-			filter.append("))");
-			groupFilter += filter;
+	/*
+	 * adds the given parent group entry and its members to sourceGroups/groupUserTable; called concurrently by searches of a hierarchy level
+	 */
+	private synchronized void addNestedGroup(SearchResult groupEntry, Set<String> nextLevelGroups) throws Throwable {
+		Attribute groupNameAttr = groupEntry.getAttributes().get(groupNameAttribute);
+		if (groupNameAttr == null) {
+			LOG.info(groupNameAttribute + " empty for entry " + groupEntry.getNameInNamespace() +
+					", skipping sync");
+			return;
+		}
+		String groupFullName = (groupEntry.getNameInNamespace());
+		nextLevelGroups.add(groupFullName);
+		String gName = (String) groupNameAttr.get();
+
+		Attribute groupMemberAttr = groupEntry.getAttributes().get(groupMemberAttributeName);
+		int userCount = 0;
+		if (groupMemberAttr == null || groupMemberAttr.size() <= 0) {
+			LOG.info("No members available for " + gName);
+			return;
+		}
 
-			LOG.info("extendedAllGroupsSearchFilter = " + groupFilter);
-			for (int ou=0; ou<groupSearchBase.length; ou++) {
-				byte[] cookie = null;
-				int counter = 0;
-				try {
-					do {
-						groupSearchResultEnum = ldapContext
-								.search(groupSearchBase[ou], groupFilter,
-										groupSearchControls);
-						while (groupSearchResultEnum.hasMore()) {
-							final SearchResult groupEntry = groupSearchResultEnum.next();
-							if (groupEntry == null) {
-								LOG.info("groupEntry null, skipping sync for the entry");
-								continue;
-							}
-							counter++;
-							Attribute groupNameAttr = groupEntry.getAttributes().get(groupNameAttribute);
-							if (groupNameAttr == null) {
-								LOG.info(groupNameAttribute + " empty for entry " + groupEntry.getNameInNamespace() +
-										", skipping sync");
-								continue;
-							}
-							String groupFullName = (groupEntry.getNameInNamespace());
-							nextLevelGroups.add(groupFullName);
-							String gName = (String) groupNameAttr.get();
-
-							Attribute groupMemberAttr = groupEntry.getAttributes().get(groupMemberAttributeName);
-							int userCount = 0;
-							if (groupMemberAttr == null || groupMemberAttr.size() <= 0) {
-								LOG.info("No members available for " + gName);
-								continue;
-							}
 
+		Map<String, String> groupAttrMap = new HashMap<>();
+		groupAttrMap.put(UgsyncCommonConstants.ORIGINAL_NAME, gName);
+		groupAttrMap.put(UgsyncCommonConstants.FULL_NAME, groupFullName);
+		groupAttrMap.put(UgsyncCommonConstants.SYNC_SOURCE, currentSyncSource);
+		groupAttrMap.put(UgsyncCommonConstants.LDAP_URL, config.getLdapUrl());
+		for (String otherGroupAttribute : otherGroupAttributes) {
+			Attribute otherGroupAttr = groupEntry.getAttributes().get(otherGroupAttribute);
+			if (otherGroupAttr != null) {
+				groupAttrMap.put(otherGroupAttribute, (String) otherGroupAttr.get());
+			}
+		}
+		putSourceGroup(groupFullName, groupAttrMap);
 
-							Map<String, String> groupAttrMap = new HashMap<>();
-                            groupAttrMap.put(UgsyncCommonConstants.ORIGINAL_NAME, gName);
-                            groupAttrMap.put(UgsyncCommonConstants.FULL_NAME, groupFullName);
-                            groupAttrMap.put(UgsyncCommonConstants.SYNC_SOURCE, currentSyncSource);
-                            groupAttrMap.put(UgsyncCommonConstants.LDAP_URL, config.getLdapUrl());
-							for (String otherGroupAttribute : otherGroupAttributes) {
-								Attribute otherGroupAttr = groupEntry.getAttributes().get(otherGroupAttribute);
-								if (otherGroupAttr != null) {
-									groupAttrMap.put(otherGroupAttribute, (String) otherGroupAttr.get());
-								}
-							}
-							sourceGroups.put(groupFullName, groupAttrMap);
+		NamingEnumeration<?> userEnum = groupMemberAttr.getAll();
+		while (userEnum.hasMore()) {
+			String originalUserFullName = (String) userEnum.next();
+			if (originalUserFullName == null || originalUserFullName.trim().isEmpty()) {
+				continue;
+			}
+			userCount++;
+			if (!userSearchEnabled && !sourceGroups.containsKey(originalUserFullName)) {
+				Map<String, String> userAttrMap = new HashMap<>();
+				String userName = getShortName(originalUserFullName);
+				userAttrMap.put(UgsyncCommonConstants.ORIGINAL_NAME, userName);
+				userAttrMap.put(UgsyncCommonConstants.FULL_NAME, originalUserFullName);
+				userAttrMap.put(UgsyncCommonConstants.SYNC_SOURCE, currentSyncSource);
+				userAttrMap.put(UgsyncCommonConstants.LDAP_URL, config.getLdapUrl());
+				putSourceUser(originalUserFullName, userAttrMap);
+			}
+			groupUserTable.put(groupFullName, originalUserFullName, originalUserFullName);
 
-							NamingEnumeration<?> userEnum = groupMemberAttr.getAll();
-							while (userEnum.hasMore()) {
-								String originalUserFullName = (String) userEnum.next();
-								if (originalUserFullName == null || originalUserFullName.trim().isEmpty()) {
-									continue;
-								}
-								userCount++;
-								if (!userSearchEnabled && !sourceGroups.containsKey(originalUserFullName)) {
-									Map<String, String> userAttrMap = new HashMap<>();
-									String userName = getShortName(originalUserFullName);
-                                    userAttrMap.put(UgsyncCommonConstants.ORIGINAL_NAME, userName);
-                                    userAttrMap.put(UgsyncCommonConstants.FULL_NAME, originalUserFullName);
-                                    userAttrMap.put(UgsyncCommonConstants.SYNC_SOURCE, currentSyncSource);
-                                    userAttrMap.put(UgsyncCommonConstants.LDAP_URL, config.getLdapUrl());
-									sourceUsers.put(originalUserFullName, userAttrMap);
-								}
-								groupUserTable.put(groupFullName, originalUserFullName, originalUserFullName);
+		}
+		LOG.info("No. of members in the group " + gName + " = " + userCount);
+	}
 
-							}
-							LOG.info("No. of members in the group " + gName + " = " + userCount);
+	private byte[] getPagedResultsCookie(LdapContext context) throws NamingException {
+		byte[] ret = null;
+		Control[] controls = context.getResponseControls();
+		if (controls != null) {
+			for (int i = 0; i < controls.length; i++) {
+				if (controls[i] instanceof PagedResultsResponseControl) {
+					PagedResultsResponseControl prrc =
+							(PagedResultsResponseControl)controls[i];
+					int total = prrc.getResultSize();
+					if (total != 0) {
+						if (LOG.isDebugEnabled()) {
+							LOG.debug("END-OF-PAGE total : " + total);
 						}
-						// Examine the paged results control response
-						Control[] controls = ldapContext.getResponseControls();
-						if (controls != null) {
-							for (int i = 0; i < controls.length; i++) {
-								if (controls[i] instanceof PagedResultsResponseControl) {
-									PagedResultsResponseControl prrc =
-											(PagedResultsResponseControl)controls[i];
-									total = prrc.getResultSize();
-									if (total != 0) {
-										if (LOG.isDebugEnabled()) {
-											LOG.debug("END-OF-PAGE total : " + total);
-										}
-									} else {
-										if (LOG.isDebugEnabled()) {
-											LOG.debug("END-OF-PAGE total : unknown");
-										}
-									}
-									cookie = prrc.getCookie();
+					} else {
+						if (LOG.isDebugEnabled()) {
+							LOG.debug("END-OF-PAGE total : unknown");
+						}
+					}
+					ret = prrc.getCookie();
+				}
+			}
+		} else {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("No controls were sent from the server");
+			}
+		}
+		return ret;
+	}
+
+	/*
+	 * Runs the given searches, each over an LDAP connection of its own for the duration of the search. With
+	 * ranger.usersync.ldap.search.threads > 1, searches run concurrently over a pool of connections opened on
+	 * demand - at most one per thread; connections are closed once all searches complete.
+	 */
+	private void runSearches(List<LdapSearch> searches) throws Throwable {
+		if (searches.isEmpty()) {
+			return;
+		}
+
+		String operation = searches.get(0).operation;
+		int threads = Math.min(searchThreads, searches.size());
+		long startTime = System.currentTimeMillis();
+		BlockingQueue<LdapConnection> idleConnections = new LinkedBlockingQueue<>();
+		List<LdapConnection> connections = Collections.synchronizedList(new ArrayList<>());
+		AtomicInteger entryCount = new AtomicInteger();
+
+		Callable<LdapConnection> connectionSupplier = () -> {
+			LdapConnection ret = idleConnections.poll();
+			if (ret == null) {
+				ret = openLdapConnection();
+				connections.add(ret);
+			}
+			return ret;
+		};
+
+		try {
+			if (threads <= 1) {
+				for (LdapSearch search : searches) {
+					entryCount.addAndGet(runSearch(search, connectionSupplier, idleConnections));
+				}
+			} else {
+				ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+					Thread t = new Thread(r, "LdapUserGroupBuilder-search");
+
+					t.setDaemon(true);
+
+					return t;
+				});
+
+				AtomicReference<Throwable> failure = new AtomicReference<>();
+
+				try {
+					List<Future<?>> futures = new ArrayList<>();
+					for (LdapSearch search : searches) {
+						futures.add(executor.submit(() -> {
+							if (failure.get() == null) { // skip remaining searches once one fails
+								try {
+									entryCount.addAndGet(runSearch(search, connectionSupplier, idleConnections));
+								} catch (Throwable excp) {
+									failure.compareAndSet(null, excp);
 								}
 							}
-						} else {
-							if (LOG.isDebugEnabled()) {
-								LOG.debug("No controls were sent from the server");
-							}
-						}
-						// Re-activate paged results
-						if (pagedResultsEnabled)   {
-							ldapContext.setRequestControls(new Control[]{
-									new PagedResultsControl(pagedResultsSize, cookie, Control.CRITICAL) });
-						}
-					} while (cookie != null);
-					LOG.info("LdapUserGroupBuilder.goUpGroupHierarchyLdap() completed with group count: "
-							+ counter);
-				} catch (RuntimeException re) {
-					LOG.error("LdapUserGroupBuilder.goUpGroupHierarchyLdap() failed with runtime exception: ", re);
-					throw re;
-				} catch (Exception t) {
-					LOG.error("LdapUserGroupBuilder.goUpGroupHierarchyLdap() failed with exception: ", t);
-					LOG.info("LdapUserGroupBuilder.goUpGroupHierarchyLdap() group count: "
-							+ counter);
+						}));
+					}
+					for (Future<?> future : futures) {
+						future.get();
+					}
+				} finally {
+					executor.shutdownNow();
 				}
+
+				if (failure.get() != null) {
+					throw failure.get();
+				}
+			}
+		} finally {
+			for (LdapConnection connection : connections) {
+				connection.close();
 			}
+		}
 
-		} catch (RuntimeException re) {
-			LOG.error("LdapUserGroupBuilder.goUpGroupHierarchyLdap() failed with exception: ", re);
-			throw re;
+		long timeTakenMs = System.currentTimeMillis() - startTime;
+
+		getSearchMetrics(operation).add(searches.size(), entryCount.get(), timeTakenMs);
+
+		LOG.info("LdapUserGroupBuilder." + operation + "(): " + searches.size() + " searches returned " + entryCount.get() + " entries in "
+				+ timeTakenMs + " ms, using " + connections.size() + " connections");
+	}
+
+	private int runSearch(LdapSearch search, Callable<LdapConnection> connectionSupplier, BlockingQueue<LdapConnection> idleConnections) throws Throwable {
+		long startTime = System.currentTimeMillis();
+		LdapConnection connection = connectionSupplier.call();
+		int ret;
+		try {
+			ret = search.task.search(connection.context);
 		} finally {
-			if (groupSearchResultEnum != null) {
-				groupSearchResultEnum.close();
+			idleConnections.offer(connection);
+		}
+
+		long timeTakenMs = System.currentTimeMillis() - startTime;
+
+		getSearchMetrics(search.operation + "[" + search.searchBase + "]").add(1, ret, timeTakenMs);
+
+		LOG.info("LdapUserGroupBuilder." + search.operation + "(): searchBase=" + search.searchBase + ", entries=" + ret
+				+ ", timeTakenMs=" + timeTakenMs);
+
+		return ret;
+	}
+
+	/*
+	 * Returns the search count, entry count and time taken by operation (getUsers, getGroups, goUpGroupHierarchyLdap)
+	 * and by operation[searchBase], for the latest sync cycle
+	 */
+	public static Map<String, Object> getLastSyncSearchMetrics() {
+		return lastSyncSearchMetrics;
+	}
+
+	private SearchMetrics getSearchMetrics(String name) {
+		Map<String, SearchMetrics> metrics = searchMetrics;
+
+		return metrics != null ? metrics.computeIfAbsent(name, k -> new SearchMetrics()) : new SearchMetrics();
+	}
+
+	private void publishSearchMetrics() {
+		Map<String, Object> metrics = new TreeMap<>();
+
+		if (searchMetrics != null) {
+			for (Map.Entry<String, SearchMetrics> entry : searchMetrics.entrySet()) {
+				metrics.put(entry.getKey(), entry.getValue().toMap());
 			}
-			closeLdapContext();
 		}
-		goUpGroupHierarchyLdap(nextLevelGroups, groupHierarchyLevels-1);
+
+		lastSyncSearchMetrics = Collections.unmodifiableMap(metrics);
+	}
+
+	/*
+	 * With delta sync, the entire directory is fetched only periodically (and when no high-water mark
+	 * is known); other sync cycles fetch only the entries changed since the previous cycle
+	 */
+	private boolean isFullSyncDue(long now) {
+		final boolean ret;
+
+		if (!config.isDeltaSyncEnabled() || lastFullSyncTime <= 0) {
+			ret = true;
+		} else {
+			ret = deltaSyncFullSyncIntervalMs > 0 && (now - lastFullSyncTime) >= deltaSyncFullSyncIntervalMs;
+		}
+
+		if (ret && config.isDeltaSyncEnabled()) {
+			LOG.info("Performing full sync with AD/LDAP: lastFullSyncTime=" + lastFullSyncTime + ", fullSyncIntervalMs=" + deltaSyncFullSyncIntervalMs);
+		}
+
+		return ret;
+	}
+
+	private void loadDeltaSyncState() {
+		if (deltaSyncStateFile == null) {
+			return;
+		}
+
+		File file = new File(deltaSyncStateFile);
+
+		if (!file.exists()) {
+			LOG.info("Delta sync state file " + deltaSyncStateFile + " not found. First sync cycle will fetch all entries");
+			return;
+		}
+
+		Properties state = new Properties();
+
+		try (InputStream in = new FileInputStream(file)) {
+			state.load(in);
+
+			if (!StringUtils.equals(deltaSyncScope, state.getProperty(STATE_SYNC_SCOPE))) {
+				LOG.info("Ignoring delta sync state in " + deltaSyncStateFile + ", as it was saved for a different AD/LDAP configuration");
+				return;
+			}
+
+			long   userTime       = Long.parseLong(state.getProperty(STATE_USER_TIME, "0"));
+			long   groupTime      = Long.parseLong(state.getProperty(STATE_GROUP_TIME, "0"));
+			long   fullSyncTime   = Long.parseLong(state.getProperty(STATE_LAST_FULL_SYNC_TIME, "0"));
+			String userTimeStamp  = state.getProperty(STATE_USER_TIMESTAMP);
+			String groupTimeStamp = state.getProperty(STATE_GROUP_TIMESTAMP);
+
+			if (userTimeStamp != null && groupTimeStamp != null) {
+				deltaSyncUserTime       = userTime;
+				deltaSyncGroupTime      = groupTime;
+				deltaSyncUserTimeStamp  = userTimeStamp;
+				deltaSyncGroupTimeStamp = groupTimeStamp;
+				lastFullSyncTime        = fullSyncTime;
+
+				LOG.info("Loaded delta sync state from " + deltaSyncStateFile + ": deltaSyncUserTime=" + deltaSyncUserTime + ", deltaSyncUserTimeStamp=" + deltaSyncUserTimeStamp
+						+ ", deltaSyncGroupTime=" + deltaSyncGroupTime + ", deltaSyncGroupTimeStamp=" + deltaSyncGroupTimeStamp + ", lastFullSyncTime=" + lastFullSyncTime);
+			}
+		} catch (Exception excp) {
+			LOG.warn("Failed to load delta sync state from " + deltaSyncStateFile + ". First sync cycle will fetch all entries", excp);
+		}
+	}
+
+	private void saveDeltaSyncState() {
+		if (deltaSyncStateFile == null || !config.isDeltaSyncEnabled()) {
+			return;
+		}
+
+		Properties state = new Properties();
+
+		state.setProperty(STATE_SYNC_SCOPE, deltaSyncScope);
+		state.setProperty(STATE_USER_TIME, Long.toString(deltaSyncUserTime));
+		state.setProperty(STATE_USER_TIMESTAMP, deltaSyncUserTimeStamp);
+		state.setProperty(STATE_GROUP_TIME, Long.toString(deltaSyncGroupTime));
+		state.setProperty(STATE_GROUP_TIMESTAMP, deltaSyncGroupTimeStamp);
+		state.setProperty(STATE_LAST_FULL_SYNC_TIME, Long.toString(lastFullSyncTime));
+
+		File file    = new File(deltaSyncStateFile);
+		File tmpFile = new File(deltaSyncStateFile + ".tmp");
+
+		try {
+			try (OutputStream out = new FileOutputStream(tmpFile)) {
+				state.store(out, "Ranger usersync: AD/LDAP delta sync state");
+			}
+
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (Exception excp) {
+			LOG.warn("Failed to save delta sync state to " + deltaSyncStateFile, excp);
+		}
+	}
+
+	/*
+	 * adds the given user to sourceUsers and sends it to the sink, unless it was already sent with the same attributes
+	 */
+	private void putSourceUser(String userDN, Map<String, String> userAttrMap) {
+		Map<String, String> prevUserAttrMap = sourceUsers.put(userDN, userAttrMap);
+		if (!userAttrMap.equals(prevUserAttrMap)) {
+			sinkPipeline.addUser(userDN, userAttrMap);
+		}
+	}
+
+	/*
+	 * adds the given group to sourceGroups and sends it to the sink, unless it was already sent with the same attributes
+	 */
+	private void putSourceGroup(String groupDN, Map<String, String> groupAttrMap) {
+		Map<String, String> prevGroupAttrMap = sourceGroups.put(groupDN, groupAttrMap);
+		if (!groupAttrMap.equals(prevGroupAttrMap)) {
+			sinkPipeline.addGroup(groupDN, groupAttrMap);
+		}
 	}
 
 	private void addToAttrMap(Map<String, String> userAttrMap, String attrName, Attribute attr, String attrType) throws Throwable{
@@ -1288,4 +1615,63 @@ private String getDNForMemberOf(String searchFilter) throws Throwable {
 		}
 		return computedSearchFilter;
 	}
+
+	private interface SearchTask {
+		int search(LdapContext context) throws Throwable;
+	}
+
+	private static class LdapSearch {
+		final String     operation;
+		final String     searchBase;
+		final SearchTask task;
+
+		LdapSearch(String operation, String searchBase, SearchTask task) {
+			this.operation  = operation;
+			this.searchBase = searchBase;
+			this.task       = task;
+		}
+	}
+
+	private static class SearchMetrics {
+		final AtomicLong searchCount = new AtomicLong();
+		final AtomicLong entryCount  = new AtomicLong();
+		final AtomicLong timeTakenMs = new AtomicLong();
+
+		void add(long searches, long entries, long timeMs) {
+			searchCount.addAndGet(searches);
+			entryCount.addAndGet(entries);
+			timeTakenMs.addAndGet(timeMs);
+		}
+
+		Map<String, Long> toMap() {
+			Map<String, Long> ret = new LinkedHashMap<>();
+
+			ret.put("searchCount", searchCount.get());
+			ret.put("entryCount", entryCount.get());
+			ret.put("timeTakenMs", timeTakenMs.get());
+
+			return ret;
+		}
+	}
+
+	private static class LdapConnection {
+		final LdapContext      context;
+		final StartTlsResponse tls;
+
+		LdapConnection(LdapContext context, StartTlsResponse tls) {
+			this.context = context;
+			this.tls     = tls;
+		}
+
+		void close() {
+			try {
+				if (tls != null) {
+					tls.close();
+				}
+				context.close();
+			} catch (Exception excp) {
+				LOG.warn("failed to close LDAP connection", excp);
+			}
+		}
+	}
 }
@@ -118,6 +118,9 @@ public class UserGroupSyncConfig  {
 
 	private static final String LGSYNC_LDAP_DELTASYNC_ENABLED = "ranger.usersync.ldap.deltasync";
 	private static final boolean DEFAULT_LGSYNC_LDAP_DELTASYNC_ENABLED = false;
+	private static final String LGSYNC_LDAP_DELTASYNC_STATE_FILE = "ranger.usersync.ldap.deltasync.state.file";
+	private static final String LGSYNC_LDAP_DELTASYNC_FULL_SYNC_INTERVAL_MS = "ranger.usersync.ldap.deltasync.full.sync.interval.ms";
+	private static final long DEFAULT_LGSYNC_LDAP_DELTASYNC_FULL_SYNC_INTERVAL_MS = 24 * 60 * 60 * 1000L;
 
 	private static final String LGSYNC_LDAP_STARTTLS_ENABLED = "ranger.usersync.ldap.starttls";
 	private static final boolean DEFAULT_LGSYNC_LDAP_STARTTLS_ENABLED = false;
@@ -178,6 +181,12 @@ public class UserGroupSyncConfig  {
 	private static final String LGSYNC_PAGED_RESULTS_SIZE = "ranger.usersync.pagedresultssize";
 	private static final int DEFAULT_LGSYNC_PAGED_RESULTS_SIZE = 500;
 
+	private static final String LGSYNC_SEARCH_THREADS = "ranger.usersync.ldap.search.threads";
+	private static final int DEFAULT_LGSYNC_SEARCH_THREADS = 1;
+
+	private static final String LGSYNC_GROUP_HIERARCHY_FILTER_SIZE = "ranger.usersync.ldap.grouphierarchy.filter.size";
+	private static final int DEFAULT_LGSYNC_GROUP_HIERARCHY_FILTER_SIZE = 100;
+
 	private static final String LGSYNC_GROUP_SEARCH_ENABLED = "ranger.usersync.group.searchenabled";
 	private static final boolean DEFAULT_LGSYNC_GROUP_SEARCH_ENABLED = true;
 
@@ -270,6 +279,13 @@ public class UserGroupSyncConfig  {
 	private static final String DEFAULT_WHITELIST_USER_ROLE_ASSIGNMENT_RULES = "&ROLE_SYS_ADMIN:u:admin,rangerusersync,rangertagsync&ROLE_KEY_ADMIN:u:keyadmin";
 
     private static final String USERSYNC_RANGER_COOKIE_ENABLED_PROP = "ranger.usersync.cookie.enabled";
+    private static final String USERSYNC_STREAMING_UPLOAD_ENABLED_PROP = "ranger.usersync.streaming.upload.enabled";
+    private static final String USERSYNC_CACHE_SNAPSHOT_FILE_PROP = "ranger.usersync.cache.snapshot.file";
+    private static final String USERSYNC_SINK_PIPELINE_ENABLED_PROP = "ranger.usersync.sink.pipeline.enabled";
+    private static final String USERSYNC_SINK_PIPELINE_CHUNK_SIZE_PROP = "ranger.usersync.sink.pipeline.chunk.size";
+    private static final int    DEFAULT_USERSYNC_SINK_PIPELINE_CHUNK_SIZE = 1000;
+    private static final String USERSYNC_SINK_PIPELINE_QUEUE_SIZE_PROP = "ranger.usersync.sink.pipeline.queue.size";
+    private static final int    DEFAULT_USERSYNC_SINK_PIPELINE_QUEUE_SIZE = 4;
 
 	private static final String RANGER_ADMIN_COOKIE_NAME_PROPS = "ranger.usersync.dest.ranger.session.cookie.name";
 
@@ -809,6 +825,39 @@ public int getPagedResultsSize() {
 		return pagedResultsSize;
 	}
 
+	/*
+	 * Maximum number of concurrent LDAP searches (and connections) used to search multiple search bases
+	 * and to expand nested groups. 1 to search sequentially over a single connection.
+	 */
+	public int getLdapSearchThreads() {
+		int ret = DEFAULT_LGSYNC_SEARCH_THREADS;
+		String val = prop.getProperty(LGSYNC_SEARCH_THREADS);
+		if (StringUtils.isNotBlank(val)) {
+			try {
+				ret = Integer.parseInt(val.trim());
+			} catch (NumberFormatException excp) {
+				LOG.warn("Invalid value for " + LGSYNC_SEARCH_THREADS + ": " + val + "; using " + ret);
+			}
+		}
+		return Math.max(ret, 1);
+	}
+
+	/*
+	 * Maximum number of group DNs in a single search filter while expanding nested groups
+	 */
+	public int getGroupHierarchyFilterSize() {
+		int ret = DEFAULT_LGSYNC_GROUP_HIERARCHY_FILTER_SIZE;
+		String val = prop.getProperty(LGSYNC_GROUP_HIERARCHY_FILTER_SIZE);
+		if (StringUtils.isNotBlank(val)) {
+			try {
+				ret = Integer.parseInt(val.trim());
+			} catch (NumberFormatException excp) {
+				LOG.warn("Invalid value for " + LGSYNC_GROUP_HIERARCHY_FILTER_SIZE + ": " + val + "; using " + ret);
+			}
+		}
+		return Math.max(ret, 1);
+	}
+
 	public boolean isGroupSearchEnabled() {
 		boolean groupSearchEnabled;
 		String val = prop.getProperty(LGSYNC_GROUP_SEARCH_ENABLED);
@@ -1129,6 +1178,56 @@ public boolean isUserSyncRangerCookieEnabled() {
 		return val == null || Boolean.valueOf(val.trim());
 	}
 
+	/*
+	 * when enabled, users/groups/group memberships are uploaded to Ranger Admin in a single compressed
+	 * newline-delimited JSON stream each, instead of one request per ranger.usersync.max.records.per.api.call entries
+	 */
+	public boolean isStreamingUploadEnabled() {
+		String val = prop.getProperty(USERSYNC_STREAMING_UPLOAD_ENABLED_PROP);
+		return val == null || val.trim().isEmpty() || Boolean.valueOf(val.trim());
+	}
+
+	/*
+	 * File to persist users/groups retrieved from Ranger Admin, so that they are not retrieved again on restart unless
+	 * they were updated in Ranger Admin since; empty to retrieve them from Ranger Admin on every start
+	 */
+	public String getCacheSnapshotFile() {
+		return StringUtils.trimToNull(prop.getProperty(USERSYNC_CACHE_SNAPSHOT_FILE_PROP));
+	}
+
+	/*
+	 * When enabled, sources send users/groups to the sink in chunks while the source is still being read,
+	 * instead of sending all of them at the end of the sync cycle
+	 */
+	public boolean isSinkPipelineEnabled() {
+		String val = prop.getProperty(USERSYNC_SINK_PIPELINE_ENABLED_PROP);
+		return val == null || val.trim().isEmpty() || Boolean.valueOf(val.trim());
+	}
+
+	public int getSinkPipelineChunkSize() {
+		return getPositiveIntProperty(USERSYNC_SINK_PIPELINE_CHUNK_SIZE_PROP, DEFAULT_USERSYNC_SINK_PIPELINE_CHUNK_SIZE);
+	}
+
+	/*
+	 * Maximum number of chunks waiting to be processed by the sink; sources wait when this limit is reached
+	 */
+	public int getSinkPipelineQueueSize() {
+		return getPositiveIntProperty(USERSYNC_SINK_PIPELINE_QUEUE_SIZE_PROP, DEFAULT_USERSYNC_SINK_PIPELINE_QUEUE_SIZE);
+	}
+
+	private int getPositiveIntProperty(String name, int defaultValue) {
+		int ret = defaultValue;
+		String val = prop.getProperty(name);
+		if (StringUtils.isNotBlank(val)) {
+			try {
+				ret = Integer.parseInt(val.trim());
+			} catch (NumberFormatException excp) {
+				LOG.warn("Invalid value for " + name + ": " + val + "; using " + ret);
+			}
+		}
+		return ret > 0 ? ret : defaultValue;
+	}
+
 	public String getRangerAdminCookieName() {
 		String ret = RangerCommonConstants.DEFAULT_COOKIE_NAME;
 		String val = prop.getProperty(RANGER_ADMIN_COOKIE_NAME_PROPS);
@@ -1170,6 +1269,31 @@ public boolean isDeltaSyncEnabled() {
 		return deltaSyncEnabled;
 	}
 
+	/*
+	 * File to persist the delta-sync high-water marks, so that a restarted usersync continues with
+	 * incremental sync instead of fetching the entire directory. Not persisted when not configured.
+	 */
+	public String getDeltaSyncStateFile() {
+		return StringUtils.trimToNull(prop.getProperty(LGSYNC_LDAP_DELTASYNC_STATE_FILE));
+	}
+
+	/*
+	 * Interval between full reconciliations with the directory when delta sync is enabled; 0 or less
+	 * to fetch the entire directory only when computing deletes or when no high-water mark is known.
+	 */
+	public long getDeltaSyncFullSyncInterval() {
+		long ret = DEFAULT_LGSYNC_LDAP_DELTASYNC_FULL_SYNC_INTERVAL_MS;
+		String val = prop.getProperty(LGSYNC_LDAP_DELTASYNC_FULL_SYNC_INTERVAL_MS);
+		if (StringUtils.isNotBlank(val)) {
+			try {
+				ret = Long.parseLong(val.trim());
+			} catch (NumberFormatException excp) {
+				LOG.warn("Invalid value for " + LGSYNC_LDAP_DELTASYNC_FULL_SYNC_INTERVAL_MS + ": " + val + "; using " + ret);
+			}
+		}
+		return ret;
+	}
+
 	/* Used only for unit testing */
 	public void setUserSearchFilter(String filter) {
 		prop.setProperty(LGSYNC_USER_SEARCH_FILTER, filter);
@@ -19,11 +19,23 @@
 
 package org.apache.ranger.unixusersync.process;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Type;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.PrivilegedAction;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Map;
 import java.util.Set;
 import java.util.List;
@@ -33,6 +45,8 @@
 import java.util.StringTokenizer;
 import java.util.LinkedHashMap;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.security.auth.Subject;
 import javax.servlet.http.HttpServletResponse;
@@ -56,9 +70,9 @@
 import com.google.gson.GsonBuilder;
 import com.sun.jersey.api.client.ClientResponse;
 import org.apache.ranger.usergroupsync.AbstractUserGroupSource;
-import org.apache.ranger.usergroupsync.UserGroupSink;
+import org.apache.ranger.usergroupsync.ChunkedUserGroupSink;
 
-public class PolicyMgrUserGroupBuilder extends AbstractUserGroupSource implements UserGroupSink {
+public class PolicyMgrUserGroupBuilder extends AbstractUserGroupSource implements ChunkedUserGroupSink {
 
 	private static final Logger LOG = LoggerFactory.getLogger(PolicyMgrUserGroupBuilder.class);
 
@@ -85,6 +99,12 @@ public class PolicyMgrUserGroupBuilder extends AbstractUserGroupSource implement
 
 	private static final String PM_UPDATE_DELETED_USERS_URI = "/service/xusers/ugsync/users/visibility";	// POST
 	private static final String PM_UPDATE_DELETED_GROUPS_URI = "/service/xusers/ugsync/groups/visibility";	// POST
+
+	private static final String PM_ADD_USERS_STREAM_URI       = "/service/xusers/ugsync/users/stream";		// POST, newline-delimited JSON
+	private static final String PM_ADD_GROUPS_STREAM_URI      = "/service/xusers/ugsync/groups/stream";		// POST, newline-delimited JSON
+	private static final String PM_ADD_GROUP_USERS_STREAM_URI = "/service/xusers/ugsync/groupusers/stream";	// POST, newline-delimited JSON
+	private static final long   STREAMING_UPLOAD_RETRY_INTERVAL_MS = 60 * 60 * 1000L;
+	private static final String PM_GET_USERSTORE_VERSION_URI  = "/service/xusers/ugsync/userstore/version";	// GET
 	private static final Pattern USER_OR_GROUP_NAME_VALIDATION_REGEX =
 			Pattern.compile("^([A-Za-z0-9_]|[\u00C0-\u017F])([a-zA-Z0-9\\s,._\\-+/@= ]|[\u00C0-\u017F])+$", Pattern.CASE_INSENSITIVE);
 
@@ -120,6 +140,13 @@ public class PolicyMgrUserGroupBuilder extends AbstractUserGroupSource implement
 	private Map<String, XGroupInfo> deletedGroups;
 	private Map<String, XUserInfo> deletedUsers;
 
+	private String cacheSnapshotFile; // to persist userCache/groupCache/groupUsersCache across restarts
+	private UserStoreVersionTracker userStoreVersionTracker; // userstore version in Ranger Admin which the caches are known to be consistent with
+
+	private boolean computeDeletes; // for the update in progress
+	private Set<String> sourceGroupDNs; // DNs of groups received in the update in progress; used to compute deleted groups
+	private Set<String> sourceUserDNs; // DNs of users received in the update in progress; used to compute deleted users
+
 	private int noOfNewUsers;
 	private int noOfNewGroups;
 	private int noOfModifiedUsers;
@@ -147,6 +174,8 @@ public class PolicyMgrUserGroupBuilder extends AbstractUserGroupSource implement
 	Map<String, String> whiteListGroupMap = new LinkedHashMap<>();
 
 	private boolean isRangerCookieEnabled;
+	private boolean isStreamingUploadEnabled;
+	private long streamingUploadRetryTime; // streaming uploads are skipped until this time, after a failed streaming upload
 	private String rangerCookieName;
 	private static String errMsgForInactiveServer = "This userGroupSync server is not in active state. Cannot commit transaction!";
 	static {
@@ -195,6 +224,9 @@ synchronized public void init() throws Throwable {
 		isMockRun = config.isMockRunEnabled();
 		isRangerCookieEnabled = config.isUserSyncRangerCookieEnabled();
 		rangerCookieName = config.getRangerAdminCookieName();
+		isStreamingUploadEnabled = config.isStreamingUploadEnabled();
+		cacheSnapshotFile = isMockRun ? null : config.getCacheSnapshotFile();
+		userStoreVersionTracker = new UserStoreVersionTracker(null);
 		groupNameMap = new HashMap<>();
 		userNameMap = new HashMap<>();
 		userCache = new HashMap<>();
@@ -245,7 +277,15 @@ synchronized public void init() throws Throwable {
 			LOG.debug("Entries in whitelist group role assignments: " + whiteListGroupMap);
 		}
 
-		buildUserGroupInfo();
+		Long userStoreVersion = cacheSnapshotFile != null ? getUserStoreVersion() : null;
+
+		if (userStoreVersion == null || !loadCacheSnapshot(userStoreVersion)) {
+			buildUserGroupInfo();
+
+			// version is read before the download, hence changes made in Ranger Admin during the download will result in a different version
+			userStoreVersionTracker = new UserStoreVersionTracker(userStoreVersion);
+			saveCacheSnapshot();
+		}
 
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("PolicyMgrUserGroupBuilderOld.init()==> PolMgrBaseUrl : "+policyMgrBaseUrl+" KeyStore File : "+keyStoreFile+" TrustStore File : "+trustStoreFile+ "Authentication Type : "+authenticationType);
@@ -296,6 +336,20 @@ public void addOrUpdateUsersGroups(Map<String, Map<String, String>> sourceGroups
 									   Map<String, Map<String, String>> sourceUsers,
 									   Map<String, Set<String>> sourceGroupUsers,
 									   boolean computeDeletes) throws Throwable {
+		beginUpdate(computeDeletes);
+
+		if (MapUtils.isNotEmpty(sourceGroups)) {
+			addOrUpdateGroups(sourceGroups);
+		}
+		if (MapUtils.isNotEmpty(sourceUsers)) {
+			addOrUpdateUsers(sourceUsers);
+		}
+
+		endUpdate(sourceGroupUsers);
+	}
+
+	@Override
+	public void beginUpdate(boolean computeDeletes) throws Throwable {
 		checkStatus();
 
 		noOfNewUsers = 0;
@@ -303,35 +357,48 @@ public void addOrUpdateUsersGroups(Map<String, Map<String, String>> sourceGroups
 		noOfModifiedUsers = 0;
 		noOfModifiedGroups = 0;
 		computeRolesForUsers = new HashSet<>();
+		deltaGroupUsers = new HashMap<>();
+
+		this.computeDeletes = computeDeletes;
+		this.sourceGroupDNs = new HashSet<>();
+		this.sourceUserDNs = new HashSet<>();
+
+		// read before any update of this cycle is sent to Ranger Admin; UserGroupSinkPipeline calls this before the source is read
+		if (userStoreVersionTracker.isConsistent()) {
+			userStoreVersionTracker.beginCycle(getUserStoreVersion());
+		}
+	}
+
+	@Override
+	public void endUpdate(Map<String, Set<String>> sourceGroupUsers) throws Throwable {
+		checkStatus();
+
+		boolean hasDeletes = false;
 
+		// users/groups not received in this update are marked deleted only after all chunks have been received
 		if (!isStartupFlag && computeDeletes) {
 			LOG.info("Computing deleted users/groups");
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("Computing deleted users/groups");
 			}
-			if (MapUtils.isNotEmpty(sourceGroups)) {
-				updateDeletedGroups(sourceGroups);
+			if (CollectionUtils.isNotEmpty(sourceGroupDNs)) {
+				updateDeletedGroups(sourceGroupDNs);
 			}
-			if (MapUtils.isNotEmpty(sourceUsers)) {
-				updateDeletedUsers(sourceUsers);
+			if (CollectionUtils.isNotEmpty(sourceUserDNs)) {
+				updateDeletedUsers(sourceUserDNs);
 			}
 
 			if (MapUtils.isNotEmpty(deletedGroups)) {
 				groupCache.putAll(deletedGroups);
+				hasDeletes = true;
 			}
 
 			if (MapUtils.isNotEmpty(deletedUsers)) {
 				userCache.putAll(deletedUsers);
+				hasDeletes = true;
 			}
 		}
 
-		if (MapUtils.isNotEmpty(sourceGroups)) {
-			addOrUpdateGroups(sourceGroups);
-		}
-		if (MapUtils.isNotEmpty(sourceUsers)) {
-			addOrUpdateUsers(sourceUsers);
-		}
-
 		if (MapUtils.isNotEmpty(sourceGroupUsers)) {
 			addOrUpdateGroupUsers(sourceGroupUsers);
 		}
@@ -385,6 +452,8 @@ public void addOrUpdateUsersGroups(Map<String, Map<String, String>> sourceGroups
 			}
 		}
 
+		boolean isUpdatedInCycle = hasDeletes || CollectionUtils.isNotEmpty(computeRolesForUsers) || (noOfNewUsers + noOfNewGroups + noOfModifiedUsers + noOfModifiedGroups) > 0;
+
 		if (CollectionUtils.isNotEmpty(computeRolesForUsers)) {
 			updateUserRoles();
 		}
@@ -393,15 +462,17 @@ public void addOrUpdateUsersGroups(Map<String, Map<String, String>> sourceGroups
 		if (LOG.isDebugEnabled()){
 			LOG.debug("Update cache");
 		}
-		if (MapUtils.isNotEmpty(deltaGroups)) {
-			groupCache.putAll(deltaGroups);
-		}
-		if (MapUtils.isNotEmpty(deltaUsers)) {
-			userCache.putAll(deltaUsers);
-		}
+		sourceGroupDNs = null;
+		sourceUserDNs = null;
+
 		if (MapUtils.isNotEmpty(deltaGroupUsers)) {
 			groupUsersCache.putAll(deltaGroupUsers);
 		}
+
+		// saved after the caches are updated with the changes of this cycle
+		if (userStoreVersionTracker.isConsistent() && userStoreVersionTracker.endCycle(getUserStoreVersion(), isUpdatedInCycle)) {
+			saveCacheSnapshot();
+		}
 	}
 
 	private void buildUserGroupInfo() throws Throwable {
@@ -439,6 +510,139 @@ public Boolean run() {
 		}
 	}
 
+	/*
+	 * returns the version of users/groups in Ranger Admin; null if it could not be retrieved, like from a Ranger Admin
+	 * that doesn't support this API
+	 */
+	private Long getUserStoreVersion() {
+		Long ret = null;
+		String response = null;
+
+		try {
+			if (authenticationType != null && AUTH_KERBEROS.equalsIgnoreCase(authenticationType) && SecureClientLogin.isKerberosCredentialExists(principal, keytab)) {
+				Subject sub = SecureClientLogin.loginUserFromKeytab(principal, keytab, nameRules);
+				response = Subject.doAs(sub, new PrivilegedAction<String>() {
+					@Override
+					public String run() {
+						return getUserStoreVersionResponse();
+					}
+				});
+			} else {
+				response = getUserStoreVersionResponse();
+			}
+
+			if (StringUtils.isNotBlank(response)) {
+				ret = Long.valueOf(response.trim());
+			}
+		} catch (Exception e) {
+			LOG.warn("Failed to get userstore version from Ranger admin. response=" + response, e);
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("PolicyMgrUserGroupBuilder.getUserStoreVersion(): " + ret);
+		}
+
+		return ret;
+	}
+
+	private String getUserStoreVersionResponse() {
+		String response = null;
+
+		if (isRangerCookieEnabled) {
+			response = cookieBasedGetEntity(PM_GET_USERSTORE_VERSION_URI, 0);
+		} else {
+			try {
+				ClientResponse clientResp = ldapUgSyncClient.get(PM_GET_USERSTORE_VERSION_URI, null);
+				if (clientResp != null && clientResp.getStatus() == HttpServletResponse.SC_OK) {
+					response = clientResp.getEntity(String.class);
+				}
+			} catch (Exception e) {
+				LOG.warn("Failed to get userstore version from Ranger admin. Error is : " + e.getMessage());
+			}
+		}
+
+		return response;
+	}
+
+	/*
+	 * loads userCache/groupCache/groupUsersCache from the snapshot, if it was saved for the given userstore version of this Ranger Admin
+	 */
+	private boolean loadCacheSnapshot(Long userStoreVersion) {
+		File file = new File(cacheSnapshotFile);
+
+		if (!file.exists()) {
+			LOG.info("Cache snapshot " + cacheSnapshotFile + " not found. Users and groups will be retrieved from Ranger admin");
+			return false;
+		}
+
+		try (Reader reader = new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), StandardCharsets.UTF_8)) {
+			CacheSnapshot snapshot = new GsonBuilder().create().fromJson(reader, CacheSnapshot.class);
+
+			if (snapshot == null || !snapshot.isFor(policyMgrBaseUrl, userStoreVersion)) {
+				LOG.info("Ignoring cache snapshot " + cacheSnapshotFile + " (userStoreVersion=" + (snapshot != null ? snapshot.userStoreVersion : null)
+						+ "), as it doesn't match userStoreVersion " + userStoreVersion + " of Ranger admin " + policyMgrBaseUrl);
+				return false;
+			}
+
+			if (snapshot.users != null) {
+				for (XUserInfo user : snapshot.users) {
+					userCache.put(user.getName(), user);
+				}
+			}
+			if (snapshot.groups != null) {
+				for (XGroupInfo group : snapshot.groups) {
+					groupCache.put(group.getName(), group);
+				}
+			}
+			if (snapshot.groupUsers != null) {
+				groupUsersCache = snapshot.groupUsers;
+			}
+
+			userStoreVersionTracker = new UserStoreVersionTracker(userStoreVersion);
+
+			LOG.info("Loaded " + userCache.size() + " users and " + groupCache.size() + " groups from cache snapshot " + cacheSnapshotFile + " (userStoreVersion=" + userStoreVersion + ")");
+
+			return true;
+		} catch (Exception excp) {
+			LOG.warn("Failed to load cache snapshot " + cacheSnapshotFile + ". Users and groups will be retrieved from Ranger admin", excp);
+
+			userCache.clear();
+			groupCache.clear();
+			groupUsersCache = new HashMap<>();
+		}
+
+		return false;
+	}
+
+	private void saveCacheSnapshot() {
+		if (cacheSnapshotFile == null || !userStoreVersionTracker.isConsistent()) {
+			return;
+		}
+
+		CacheSnapshot snapshot = new CacheSnapshot();
+
+		snapshot.policyMgrBaseUrl = policyMgrBaseUrl;
+		snapshot.userStoreVersion = userStoreVersionTracker.getCachedVersion();
+		snapshot.users = userCache.values();
+		snapshot.groups = groupCache.values();
+		snapshot.groupUsers = groupUsersCache;
+
+		File file    = new File(cacheSnapshotFile);
+		File tmpFile = new File(cacheSnapshotFile + ".tmp");
+
+		try {
+			try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(tmpFile)), StandardCharsets.UTF_8)) {
+				new GsonBuilder().create().toJson(snapshot, writer);
+			}
+
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			LOG.info("Saved " + userCache.size() + " users and " + groupCache.size() + " groups to cache snapshot " + cacheSnapshotFile + " (userStoreVersion=" + snapshot.userStoreVersion + ")");
+		} catch (Exception excp) {
+			LOG.warn("Failed to save cache snapshot to " + cacheSnapshotFile, excp);
+		}
+	}
+
 	private void buildGroupList() throws Throwable {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> PolicyMgrUserGroupBuilder.buildGroupList()");
@@ -585,7 +789,12 @@ private void buildGroupUserLinkList() throws Throwable {
 		}
 	}
 
-	private void addOrUpdateUsers(Map<String, Map<String, String>> sourceUsers) throws Throwable {
+	@Override
+	public void addOrUpdateUsers(Map<String, Map<String, String>> sourceUsers) throws Throwable {
+		checkStatus();
+		if (computeDeletes) {
+			sourceUserDNs.addAll(sourceUsers.keySet());
+		}
 		computeUserDelta(sourceUsers);
 		if (MapUtils.isNotEmpty(deltaUsers)) {
 			if (addOrUpdateDeltaUsers() == 0) {
@@ -593,10 +802,17 @@ private void addOrUpdateUsers(Map<String, Map<String, String>> sourceUsers) thro
 				LOG.error(msg);
 				throw new Exception(msg);
 			}
+			// update the cache right away, so that later chunks of this update see these users
+			userCache.putAll(deltaUsers);
 		}
 	}
 
-	private void addOrUpdateGroups(Map<String, Map<String, String>> sourceGroups) throws Throwable {
+	@Override
+	public void addOrUpdateGroups(Map<String, Map<String, String>> sourceGroups) throws Throwable {
+		checkStatus();
+		if (computeDeletes) {
+			sourceGroupDNs.addAll(sourceGroups.keySet());
+		}
 		computeGroupDelta(sourceGroups);
 		if (MapUtils.isNotEmpty(deltaGroups)) {
 			if (addOrUpdateDeltaGroups() == 0) {
@@ -604,6 +820,8 @@ private void addOrUpdateGroups(Map<String, Map<String, String>> sourceGroups) th
 				LOG.error(msg);
 				throw new Exception(msg);
 			}
+			// update the cache right away, so that later chunks of this update see these groups
+			groupCache.putAll(deltaGroups);
 		}
 	}
 
@@ -957,9 +1175,7 @@ private int addOrUpdateDeltaUsers() throws Throwable{
 		}
 		int ret = 0;
 
-		GetXUserListResponse xUserList = new GetXUserListResponse();
-		xUserList.setTotalCount(deltaUsers.size());
-		xUserList.setXuserInfoList(new ArrayList<>(deltaUsers.values()));
+		Collection<XUserInfo> xUserList = deltaUsers.values();
 
 		if (authenticationType != null
 				&& AUTH_KERBEROS.equalsIgnoreCase(authenticationType)
@@ -967,7 +1183,7 @@ private int addOrUpdateDeltaUsers() throws Throwable{
 				keytab)) {
 			try {
 				Subject sub = SecureClientLogin.loginUserFromKeytab(principal, keytab, nameRules);
-				final GetXUserListResponse xUserListFinal = xUserList;
+				final Collection<XUserInfo> xUserListFinal = xUserList;
 				ret = Subject.doAs(sub, new PrivilegedAction<Integer>() {
 					@Override
 					public Integer run() {
@@ -993,21 +1209,34 @@ public Integer run() {
 	}
 
 
-	private int getUsers(GetXUserListResponse xUserList) throws Throwable{
+	private int getUsers(Collection<XUserInfo> xUsers) throws Throwable{
 		if(LOG.isDebugEnabled()){
 			LOG.debug("==> PolicyMgrUserGroupBuilder.getUsers()");
 		}
 		int ret = 0;
-		int totalCount = xUserList.getTotalCount();
+		int totalCount = xUsers.size();
 		int uploadedCount = 0;
 		int pageSize = Integer.valueOf(recordsToPullPerCall);
+
+		if (isStreamingUploadActive()) {
+			ret = uploadJsonLines(xUsers, PM_ADD_USERS_STREAM_URI);
+
+			if (ret >= 0) {
+				LOG.info("ret = " + ret + " No. of users uploaded to ranger admin= " + totalCount);
+
+				return ret;
+			}
+
+			ret = 0;
+		}
+		List<XUserInfo> xUserList = new ArrayList<>(xUsers);
 		while (uploadedCount < totalCount) {
 			checkStatus();
 			String response = null;
 			ClientResponse clientRes = null;
 			GetXUserListResponse pagedXUserList = new GetXUserListResponse();
 			int pagedXUserListLen = uploadedCount+pageSize;
-			pagedXUserList.setXuserInfoList(xUserList.getXuserInfoList().subList(uploadedCount,
+			pagedXUserList.setXuserInfoList(xUserList.subList(uploadedCount,
 					pagedXUserListLen>totalCount?totalCount:pagedXUserListLen));
 			pagedXUserList.setTotalCount(pageSize);
 			if (pagedXUserList.getXuserInfoList().size() == 0) {
@@ -1059,9 +1288,7 @@ private int addOrUpdateDeltaGroups() throws Throwable{
 		}
 		int ret = 0;
 
-		GetXGroupListResponse xGroupList = new GetXGroupListResponse();
-		xGroupList.setTotalCount(deltaGroups.size());
-		xGroupList.setXgroupInfoList(new ArrayList<>(deltaGroups.values()));
+		Collection<XGroupInfo> xGroupList = deltaGroups.values();
 
 		if (authenticationType != null
 				&& AUTH_KERBEROS.equalsIgnoreCase(authenticationType)
@@ -1069,7 +1296,7 @@ private int addOrUpdateDeltaGroups() throws Throwable{
 				keytab)) {
 			try {
 				Subject sub = SecureClientLogin.loginUserFromKeytab(principal, keytab, nameRules);
-				final GetXGroupListResponse xGroupListFinal = xGroupList;
+				final Collection<XGroupInfo> xGroupListFinal = xGroupList;
 				ret = Subject.doAs(sub, new PrivilegedAction<Integer>() {
 					@Override
 					public Integer run() {
@@ -1095,22 +1322,35 @@ public Integer run() {
 	}
 
 
-	private int getGroups(GetXGroupListResponse xGroupList) throws Throwable{
+	private int getGroups(Collection<XGroupInfo> xGroups) throws Throwable{
 		if(LOG.isDebugEnabled()){
 			LOG.debug("==> PolicyMgrUserGroupBuilder.getGroups()");
 		}
 
 		int ret = 0;
-		int totalCount = xGroupList.getTotalCount();
+		int totalCount = xGroups.size();
 		int uploadedCount = 0;
 		int pageSize = Integer.valueOf(recordsToPullPerCall);
+
+		if (isStreamingUploadActive()) {
+			ret = uploadJsonLines(xGroups, PM_ADD_GROUPS_STREAM_URI);
+
+			if (ret >= 0) {
+				LOG.info("ret = " + ret + " No. of groups uploaded to ranger admin= " + totalCount);
+
+				return ret;
+			}
+
+			ret = 0;
+		}
+		List<XGroupInfo> xGroupList = new ArrayList<>(xGroups);
 		while (uploadedCount < totalCount) {
 			checkStatus();
 			String response = null;
 			ClientResponse clientRes = null;
 			GetXGroupListResponse pagedXGroupList = new GetXGroupListResponse();
 			int pagedXGroupListLen = uploadedCount+pageSize;
-			pagedXGroupList.setXgroupInfoList(xGroupList.getXgroupInfoList().subList(uploadedCount,
+			pagedXGroupList.setXgroupInfoList(xGroupList.subList(uploadedCount,
 					pagedXGroupListLen>totalCount?totalCount:pagedXGroupListLen));
 			pagedXGroupList.setTotalCount(pageSize);
 
@@ -1198,6 +1438,18 @@ private int getGroupUsers(List<GroupUserInfo> groupUserInfoList) throws Throwabl
 		int totalCount = groupUserInfoList.size();
 		int uploadedCount = 0;
 		int pageSize = Integer.valueOf(recordsToPullPerCall);
+
+		if (isStreamingUploadActive()) {
+			ret = uploadJsonLines(groupUserInfoList, PM_ADD_GROUP_USERS_STREAM_URI);
+
+			if (ret >= 0) {
+				LOG.info("ret = " + ret + " No. of group memberships uploaded to ranger admin= " + totalCount);
+
+				return ret;
+			}
+
+			ret = 0;
+		}
 		while (uploadedCount < totalCount) {
 			checkStatus();
 			String response = null;
@@ -1406,6 +1658,69 @@ private void getUserGroupAuditInfo(UgsyncAuditInfo userInfo) throws Throwable{
 		}
 	}
 
+	private boolean isStreamingUploadActive() {
+		return isStreamingUploadEnabled && System.currentTimeMillis() >= streamingUploadRetryTime;
+	}
+
+	/*
+	 * uploads the given entries in a single request, as a compressed newline-delimited JSON stream; returns the
+	 * count returned by Ranger Admin, or -1 when the upload failed - for example, with a Ranger Admin that doesn't
+	 * support streaming uploads. In such case the caller falls back to paged uploads, and streaming uploads are
+	 * attempted again after STREAMING_UPLOAD_RETRY_INTERVAL_MS.
+	 */
+	private int uploadJsonLines(Collection<?> entries, String apiURL) throws Throwable {
+		checkStatus();
+
+		int    ret      = -1;
+		String response = null;
+
+		if (isRangerCookieEnabled) {
+			response = cookieBasedUploadEntity(entries, apiURL);
+		} else {
+			ClientResponse clientRes = postEntity(apiURL, entries, null);
+
+			if (clientRes != null && clientRes.getStatus() == HttpServletResponse.SC_OK) {
+				response = clientRes.getEntity(String.class);
+			}
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("RESPONSE[" + response + "]");
+		}
+
+		if (StringUtils.isNotEmpty(response)) {
+			try {
+				ret = Integer.parseInt(response.trim());
+			} catch (NumberFormatException e) {
+				ret = -1;
+			}
+		}
+
+		if (ret < 0) {
+			streamingUploadRetryTime = System.currentTimeMillis() + STREAMING_UPLOAD_RETRY_INTERVAL_MS;
+
+			LOG.warn("Failed to upload " + entries.size() + " entries to " + apiURL + "; falling back to paged uploads until " + new Date(streamingUploadRetryTime));
+		} else {
+			streamingUploadRetryTime = 0;
+		}
+
+		return ret;
+	}
+
+	private ClientResponse postEntity(String apiURL, Object obj, Cookie cookie) throws Exception {
+		final ClientResponse ret;
+
+		if (obj instanceof Collection && apiURL.endsWith("/stream")) {
+			ret = ldapUgSyncClient.postJsonLines(apiURL, (Collection<?>) obj, cookie);
+		} else if (cookie != null) {
+			ret = ldapUgSyncClient.post(apiURL, null, obj, cookie);
+		} else {
+			ret = ldapUgSyncClient.post(apiURL, null, obj);
+		}
+
+		return ret;
+	}
+
 	private String cookieBasedUploadEntity(Object obj, String apiURL ) {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug("==> PolicyMgrUserGroupBuilder.cookieBasedUploadEntity()");
@@ -1447,7 +1762,7 @@ private String tryUploadEntityWithCookie(Object obj, String apiURL) {
 		String response = null;
 		ClientResponse clientResp = null;
 		try {
-			clientResp = ldapUgSyncClient.post(apiURL, null, obj, sessionId);
+			clientResp = postEntity(apiURL, obj, sessionId);
 		}
 		catch(Throwable t){
 			LOG.error("Failed to get response, Error is : ", t);
@@ -1495,14 +1810,14 @@ private String tryUploadEntityWithCred(Object obj, String apiURL){
 		String response = null;
 		ClientResponse clientResp = null;
 
-		Gson gson = new GsonBuilder().create();
-		String jsonString = gson.toJson(obj);
-
 		if ( LOG.isDebugEnabled() ) {
+			Gson gson = new GsonBuilder().create();
+			String jsonString = gson.toJson(obj);
+
 			LOG.debug("USER GROUP MAPPING" + jsonString);
 		}
 		try{
-			clientResp = ldapUgSyncClient.post(apiURL, null, obj);
+			clientResp = postEntity(apiURL, obj, null);
 		}
 		catch(Throwable t){
 			LOG.error("Failed to get response, Error is : ", t);
@@ -1762,8 +2077,8 @@ protected boolean isValidString(final String name) {
 		return true;
 	}
 
-	private void updateDeletedGroups(Map<String, Map<String, String>> sourceGroups) throws Throwable {
-		computeDeletedGroups(sourceGroups);
+	private void updateDeletedGroups(Set<String> sourceGroupDNs) throws Throwable {
+		computeDeletedGroups(sourceGroupDNs);
 		if (MapUtils.isNotEmpty(deletedGroups)) {
 			if (updateDeletedGroups() == 0) {
 				String msg = "Failed to update deleted groups to ranger admin";
@@ -1775,16 +2090,16 @@ private void updateDeletedGroups(Map<String, Map<String, String>> sourceGroups)
 		noOfDeletedGroups += deletedGroups.size();
 	}
 
-	private void computeDeletedGroups(Map<String, Map<String, String>> sourceGroups) {
+	private void computeDeletedGroups(Set<String> sourceGroupDNs) {
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("PolicyMgrUserGroupBuilder.computeDeletedGroups(" + sourceGroups.keySet() + ")");
+			LOG.debug("PolicyMgrUserGroupBuilder.computeDeletedGroups(" + sourceGroupDNs + ")");
 		}
 		deletedGroups = new HashMap<>();
 		// Check if the group from cache exists in the sourceGroups. If not, mark as deleted group.
 		for (XGroupInfo groupInfo : groupCache.values()) {
 			Map<String, String> groupOtherAttrs = groupInfo.getOtherAttrsMap();
 			String groupDN = groupOtherAttrs != null ? groupOtherAttrs.get(UgsyncCommonConstants.FULL_NAME) : null;
-			if (StringUtils.isNotEmpty(groupDN) && !sourceGroups.containsKey(groupDN)
+			if (StringUtils.isNotEmpty(groupDN) && !sourceGroupDNs.contains(groupDN)
 					&& StringUtils.equalsIgnoreCase(groupOtherAttrs.get(UgsyncCommonConstants.SYNC_SOURCE), currentSyncSource)
 					&& StringUtils.equalsIgnoreCase(groupOtherAttrs.get(UgsyncCommonConstants.LDAP_URL), ldapUrl)) {
 				if (groupInfo.getIsVisible() != ISHIDDEN) {
@@ -1883,8 +2198,8 @@ private int getDeletedGroups() throws Throwable{
 	}
 
 
-	private void updateDeletedUsers(Map<String, Map<String, String>> sourceUsers) throws Throwable {
-		computeDeletedUsers(sourceUsers);
+	private void updateDeletedUsers(Set<String> sourceUserDNs) throws Throwable {
+		computeDeletedUsers(sourceUserDNs);
 		if (MapUtils.isNotEmpty(deletedUsers)) {
 			if (updateDeletedUsers() == 0) {
 				String msg = "Failed to update deleted users to ranger admin";
@@ -1896,16 +2211,16 @@ private void updateDeletedUsers(Map<String, Map<String, String>> sourceUsers) th
 		noOfDeletedUsers += deletedUsers.size();
 	}
 
-	private void computeDeletedUsers(Map<String, Map<String, String>> sourceUsers) {
+	private void computeDeletedUsers(Set<String> sourceUserDNs) {
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("PolicyMgrUserGroupBuilder.computeDeletedUsers(" + sourceUsers.keySet() + ")");
+			LOG.debug("PolicyMgrUserGroupBuilder.computeDeletedUsers(" + sourceUserDNs + ")");
 		}
 		deletedUsers = new HashMap<>();
 		// Check if the group from cache exists in the sourceGroups. If not, mark as deleted group.
 		for (XUserInfo userInfo : userCache.values()) {
 			Map<String, String> userOtherAttrs = userInfo.getOtherAttrsMap();
 			String userDN = userOtherAttrs != null ? userOtherAttrs.get(UgsyncCommonConstants.FULL_NAME) : null;
-			if (StringUtils.isNotEmpty(userDN) && !sourceUsers.containsKey(userDN)
+			if (StringUtils.isNotEmpty(userDN) && !sourceUserDNs.contains(userDN)
 					&& StringUtils.equalsIgnoreCase(userOtherAttrs.get(UgsyncCommonConstants.SYNC_SOURCE), currentSyncSource)
 					&& StringUtils.equalsIgnoreCase(userOtherAttrs.get(UgsyncCommonConstants.LDAP_URL), ldapUrl)) {
 				if (userInfo.getIsVisible() != ISHIDDEN) {
@@ -2016,4 +2331,22 @@ private void checkStatus() throws Exception {
 			throw new RuntimeException(errMsgForInactiveServer);
 		}
 	}
+
+	/*
+	 * contents of the cache snapshot file
+	 */
+	static class CacheSnapshot {
+		String                   policyMgrBaseUrl;
+		Long                     userStoreVersion;
+		Collection<XUserInfo>    users;
+		Collection<XGroupInfo>   groups;
+		Map<String, Set<String>> groupUsers;
+
+		/*
+		 * a snapshot can be used only with the Ranger Admin it was saved from, and only if no user/group was updated there since
+		 */
+		boolean isFor(String policyMgrBaseUrl, Long userStoreVersion) {
+			return StringUtils.equals(this.policyMgrBaseUrl, policyMgrBaseUrl) && userStoreVersion != null && userStoreVersion.equals(this.userStoreVersion);
+		}
+	}
 }
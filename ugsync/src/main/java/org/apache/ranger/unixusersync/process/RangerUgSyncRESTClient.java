@@ -19,25 +19,44 @@
 
 package org.apache.ranger.unixusersync.process;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSession;
 import javax.net.ssl.TrustManager;
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.security.SecureClientLogin;
 import org.apache.ranger.plugin.util.RangerRESTClient;
+import org.apache.ranger.plugin.util.RangerRESTUtils;
 import org.apache.ranger.unixusersync.config.UserGroupSyncConfig;
 import org.codehaus.jackson.jaxrs.JacksonJsonProvider;
 
 import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.client.config.DefaultClientConfig;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
 import com.sun.jersey.client.urlconnection.HTTPSProperties;
 
 public class RangerUgSyncRESTClient extends RangerRESTClient {
+	public static final String MEDIA_TYPE_JSON_LINES = "application/x-ndjson";
+
+	private static final int STREAM_CHUNK_SIZE = 64 * 1024;
+
 	private String AUTH_KERBEROS = "kerberos";
 
 	public RangerUgSyncRESTClient(String policyMgrBaseUrls, String ugKeyStoreFile, String ugKeyStoreFilepwd,
@@ -77,4 +96,62 @@ public boolean verify(String urlHostName, SSLSession session) {
 		super.setMaxRetryAttempts(config.getPolicyMgrMaxRetryAttempts());
 		super.setRetryIntervalMs(config.getPolicyMgrRetryIntervalMs());
 	}
+
+	/*
+	 * posts the given objects as gzip-compressed newline-delimited JSON, one object per line. Objects are
+	 * serialized while the request is being sent, in chunked transfer-encoding, so that neither the
+	 * serialized form of all objects nor the compressed request is held in memory.
+	 */
+	public ClientResponse postJsonLines(String relativeUrl, Collection<?> objects, Cookie sessionId) throws Exception {
+		List<String>    urls         = getConfiguredURLs();
+		StreamingOutput entity       = out -> {
+			GZIPOutputStream gzipOut = new GZIPOutputStream(out, STREAM_CHUNK_SIZE);
+			Writer           writer  = new BufferedWriter(new OutputStreamWriter(gzipOut, StandardCharsets.UTF_8), STREAM_CHUNK_SIZE);
+
+			for (Object obj : objects) {
+				writer.write(toJson(obj));
+				writer.write('\n');
+			}
+
+			writer.flush();
+			gzipOut.finish();
+		};
+		ClientResponse  ret          = null;
+		int             startIndex   = getLastKnownActiveUrlIndex();
+		int             currentIndex = 0;
+		int             retryAttempt = 0;
+
+		for (int index = 0; index < urls.size(); index++) {
+			try {
+				currentIndex = (startIndex + index) % urls.size();
+
+				WebResource webResource = sessionId != null ? createWebResourceForCookieAuth(currentIndex, relativeUrl) : getClient().resource(urls.get(currentIndex) + relativeUrl);
+
+				webResource.setProperty(ClientConfig.PROPERTY_CHUNKED_ENCODING_SIZE, STREAM_CHUNK_SIZE);
+
+				WebResource.Builder builder = webResource.getRequestBuilder();
+
+				if (sessionId != null) {
+					builder = builder.cookie(sessionId);
+				}
+
+				ret = builder.accept(RangerRESTUtils.REST_EXPECTED_MIME_TYPE).type(MEDIA_TYPE_JSON_LINES)
+						.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+						.post(ClientResponse.class, entity);
+
+				if (ret != null) {
+					setLastKnownActiveUrlIndex(currentIndex);
+					break;
+				}
+			} catch (ClientHandlerException ex) {
+				if (shouldRetry(urls.get(currentIndex), index, retryAttempt, ex)) {
+					retryAttempt++;
+
+					index = -1; // start from first url
+				}
+			}
+		}
+
+		return ret;
+	}
 }
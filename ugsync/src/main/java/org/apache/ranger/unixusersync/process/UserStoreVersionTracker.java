@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.unixusersync.process;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the userstore version in Ranger Admin that the usersync caches are consistent with:
+ *  - the version is read at the start of each sync cycle, before the source is read and before any update is sent
+ *    to Ranger Admin; a version different from the one at the end of the previous cycle means that users/groups
+ *    were updated in Ranger Admin by others
+ *  - at the end of a cycle that sent no updates to Ranger Admin, the version must be the same as at the start
+ *  - at the end of a cycle that sent updates, the version after these updates is taken. Updates by others made
+ *    while this cycle's updates were being sent are not detected
+ *
+ * Once an update by others is detected, the caches are not known to be consistent until the next restart.
+ */
+class UserStoreVersionTracker {
+	private static final Logger LOG = LoggerFactory.getLogger(UserStoreVersionTracker.class);
+
+	private Long cachedVersion;        // version the caches are consistent with; null if not known
+	private Long versionAtCycleStart;
+
+	UserStoreVersionTracker(Long cachedVersion) {
+		this.cachedVersion = cachedVersion;
+	}
+
+	Long getCachedVersion() {
+		return cachedVersion;
+	}
+
+	boolean isConsistent() {
+		return cachedVersion != null;
+	}
+
+	void beginCycle(Long version) {
+		versionAtCycleStart = version;
+
+		if (cachedVersion != null && !cachedVersion.equals(version)) {
+			LOG.info("userstore version in Ranger Admin changed from " + cachedVersion + " to " + version
+					+ " since last sync. Cache snapshot will not be saved until next restart");
+
+			cachedVersion = null;
+		}
+	}
+
+	/*
+	 * returns true if the caches are consistent with a version different from the earlier one, i.e. the snapshot should be saved
+	 */
+	boolean endCycle(Long version, boolean isUpdatedInCycle) {
+		boolean ret = false;
+
+		if (cachedVersion != null) {
+			if (version == null || (!isUpdatedInCycle && !version.equals(versionAtCycleStart))) {
+				LOG.info("userstore version in Ranger Admin changed from " + versionAtCycleStart + " to " + version
+						+ " during sync by others. Cache snapshot will not be saved until next restart");
+
+				cachedVersion = null;
+			} else {
+				ret = !version.equals(cachedVersion);
+
+				cachedVersion = version;
+			}
+		}
+
+		versionAtCycleStart = null;
+
+		return ret;
+	}
+}
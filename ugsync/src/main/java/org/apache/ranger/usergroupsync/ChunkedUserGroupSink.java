@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.usergroupsync;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sink that accepts users/groups in chunks, so that sources can send them while the source is still being read:
+ *   beginUpdate(), addOrUpdateGroups()/addOrUpdateUsers() for each chunk, endUpdate()
+ *
+ * beginUpdate() is called before the source is read. Group memberships are sent only in endUpdate(), as they can be
+ * computed only after all users and groups have been read from the source. See UserGroupSinkPipeline.
+ */
+public interface ChunkedUserGroupSink extends UserGroupSink {
+	void beginUpdate(boolean computeDeletes) throws Throwable;
+
+	void addOrUpdateGroups(Map<String, Map<String, String>> sourceGroups) throws Throwable;
+
+	void addOrUpdateUsers(Map<String, Map<String, String>> sourceUsers) throws Throwable;
+
+	void endUpdate(Map<String, Set<String>> sourceGroupUsers) throws Throwable;
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.usergroupsync;
+
+import org.apache.ranger.unixusersync.config.UserGroupSyncConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends users and groups read by a source to the sink while the source is still being read, so that
+ * computing and uploading the changes of a chunk overlaps with reading the next chunk from the source.
+ *
+ * Chunks are processed by a single thread, in the order they were added; the number of chunks waiting to
+ * be processed is bounded, after which the source waits for the sink to catch up. Once a chunk fails, the
+ * remaining chunks are discarded and the failure is thrown from finish().
+ *
+ * When the sink is not a ChunkedUserGroupSink, or when the pipeline is disabled, users and groups are
+ * collected and sent to the sink in a single addOrUpdateUsersGroups() call from finish().
+ *
+ * Memory: the pipeline reduces the time taken to update the sink, not the memory used by a sync cycle. It holds
+ * only the chunks not yet processed by the sink - at most (queue.size + 1) chunks - but sources still keep all
+ * users and groups read in the cycle, since group memberships (sent in finish()) and the users/groups to delete
+ * can be computed only after the complete source has been read.
+ */
+public class UserGroupSinkPipeline {
+	private static final Logger LOG = LoggerFactory.getLogger(UserGroupSinkPipeline.class);
+
+	private final UserGroupSink                    sink;
+	private final ChunkedUserGroupSink             chunkedSink; // null when users/groups are sent to the sink in finish()
+	private final boolean                          computeDeletes;
+	private final int                              chunkSize;
+	private final ExecutorService                  executor;
+	private final Semaphore                        pendingChunks;
+	private       Map<String, Map<String, String>> groups = new HashMap<>();
+	private       Map<String, Map<String, String>> users  = new HashMap<>();
+	private       int                              chunkCount;
+	private volatile Throwable                     failure;
+
+	public UserGroupSinkPipeline(UserGroupSink sink, boolean computeDeletes) throws Throwable {
+		this(sink, computeDeletes, UserGroupSyncConfig.getInstance());
+	}
+
+	private UserGroupSinkPipeline(UserGroupSink sink, boolean computeDeletes, UserGroupSyncConfig config) throws Throwable {
+		this(sink, computeDeletes, config.isSinkPipelineEnabled(), config.getSinkPipelineChunkSize(), config.getSinkPipelineQueueSize());
+	}
+
+	/*
+	 * for a chunked update, beginUpdate() is called here - i.e. before the source is read - in the caller's thread
+	 */
+	UserGroupSinkPipeline(UserGroupSink sink, boolean computeDeletes, boolean isEnabled, int chunkSize, int queueSize) throws Throwable {
+		this.sink           = sink;
+		this.computeDeletes = computeDeletes;
+
+		if (isEnabled && sink instanceof ChunkedUserGroupSink) {
+			((ChunkedUserGroupSink) sink).beginUpdate(computeDeletes);
+
+			this.chunkedSink   = (ChunkedUserGroupSink) sink;
+			this.chunkSize     = chunkSize;
+			this.pendingChunks = new Semaphore(queueSize);
+			this.executor      = Executors.newSingleThreadExecutor(r -> {
+				Thread t = new Thread(r, "UserGroupSinkPipeline");
+
+				t.setDaemon(true);
+
+				return t;
+			});
+		} else {
+			this.chunkedSink   = null;
+			this.chunkSize     = Integer.MAX_VALUE;
+			this.pendingChunks = null;
+			this.executor      = null;
+		}
+
+		LOG.info("UserGroupSinkPipeline(sink={}, computeDeletes={}): chunkedUpdate={}, chunkSize={}", sink.getClass().getSimpleName(), computeDeletes, executor != null, this.chunkSize);
+	}
+
+	public synchronized void addGroup(String groupDN, Map<String, String> groupAttrs) {
+		groups.put(groupDN, groupAttrs);
+
+		if (executor != null && groups.size() >= chunkSize) {
+			flushGroups();
+		}
+	}
+
+	public synchronized void addUser(String userDN, Map<String, String> userAttrs) {
+		users.put(userDN, userAttrs);
+
+		if (executor != null && users.size() >= chunkSize) {
+			flushUsers();
+		}
+	}
+
+	/*
+	 * sends the remaining users/groups and the group memberships to the sink, and waits for the sink to complete the update
+	 */
+	public synchronized void finish(Map<String, Set<String>> sourceGroupUsers) throws Throwable {
+		if (executor == null) {
+			sink.addOrUpdateUsersGroups(groups, users, sourceGroupUsers, computeDeletes);
+
+			groups = new HashMap<>();
+			users  = new HashMap<>();
+
+			return;
+		}
+
+		flushGroups();
+		flushUsers();
+
+		submit(() -> chunkedSink.endUpdate(sourceGroupUsers));
+
+		executor.shutdown();
+
+		while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+			LOG.info("UserGroupSinkPipeline.finish(): waiting for the sink to complete the update; chunks sent so far: {}", chunkCount);
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+
+		LOG.info("UserGroupSinkPipeline.finish(): sent {} chunks to the sink", chunkCount);
+	}
+
+	/*
+	 * discards the users/groups not yet sent to the sink; called when the source fails before finish()
+	 */
+	public synchronized void close() {
+		if (executor != null && !executor.isTerminated()) {
+			executor.shutdownNow();
+		}
+
+		groups = new HashMap<>();
+		users  = new HashMap<>();
+	}
+
+	private void flushGroups() {
+		if (!groups.isEmpty()) {
+			final Map<String, Map<String, String>> chunk = groups;
+
+			groups = new HashMap<>();
+
+			submit(() -> chunkedSink.addOrUpdateGroups(chunk));
+		}
+	}
+
+	private void flushUsers() {
+		if (!users.isEmpty()) {
+			final Map<String, Map<String, String>> chunk = users;
+
+			users = new HashMap<>();
+
+			submit(() -> chunkedSink.addOrUpdateUsers(chunk));
+		}
+	}
+
+	private void submit(SinkTask task) {
+		pendingChunks.acquireUninterruptibly();
+
+		chunkCount++;
+
+		executor.execute(() -> {
+			try {
+				if (failure == null) {
+					task.run();
+				}
+			} catch (Throwable t) {
+				LOG.error("UserGroupSinkPipeline: sink update failed. Remaining chunks in this sync cycle will be ignored", t);
+
+				failure = t;
+			} finally {
+				pendingChunks.release();
+			}
+		});
+	}
+
+	private interface SinkTask {
+		void run() throws Throwable;
+	}
+}
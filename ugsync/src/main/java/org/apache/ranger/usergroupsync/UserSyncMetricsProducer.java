@@ -20,8 +20,11 @@
 package org.apache.ranger.usergroupsync;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.Map;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.ranger.ldapusersync.process.LdapUserGroupBuilder;
 import org.apache.ranger.plugin.util.RangerMetricsUtil;
 import org.apache.ranger.unixusersync.config.UserGroupSyncConfig;
 import org.slf4j.Logger;
@@ -94,7 +97,8 @@ private void writeJVMMetrics(String logFileNameWithPath) throws Throwable {
 					rangerMetricsUtil.setIsRoleActive(0);
 				}
 			}
-			rangerMetricsUtil.writeMetricsToFile(userMetricFile);
+			Map<String, Object> ldapSearchMetrics = LdapUserGroupBuilder.getLastSyncSearchMetrics();
+			rangerMetricsUtil.writeMetricsToFile(userMetricFile, ldapSearchMetrics.isEmpty() ? null : Collections.singletonMap("ldapSearch", ldapSearchMetrics));
 		} catch (Throwable t) {
 			LOG.error("UserSyncMetricsProducer.writeJVMMetrics() failed to write metrics into file. Error details: ", t);
 			throw t;
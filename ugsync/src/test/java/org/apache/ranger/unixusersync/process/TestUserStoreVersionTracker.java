@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.unixusersync.process;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestUserStoreVersionTracker {
+
+    @Test
+    public void testCycleWithoutUpdates() {
+        UserStoreVersionTracker tracker = new UserStoreVersionTracker(10L);
+
+        tracker.beginCycle(10L);
+
+        assertFalse(tracker.endCycle(10L, false)); // nothing changed, no need to save the snapshot
+        assertTrue(tracker.isConsistent());
+        assertEquals(Long.valueOf(10L), tracker.getCachedVersion());
+    }
+
+    @Test
+    public void testCycleWithUpdates() {
+        UserStoreVersionTracker tracker = new UserStoreVersionTracker(10L);
+
+        tracker.beginCycle(10L);
+
+        assertTrue(tracker.endCycle(12L, true));
+        assertEquals(Long.valueOf(12L), tracker.getCachedVersion());
+
+        // next cycle starts from the version after the updates of the previous cycle
+        tracker.beginCycle(12L);
+
+        assertFalse(tracker.endCycle(12L, false));
+        assertTrue(tracker.isConsistent());
+    }
+
+    @Test
+    public void testUpdatedByOthersBetweenCycles() {
+        UserStoreVersionTracker tracker = new UserStoreVersionTracker(10L);
+
+        tracker.beginCycle(11L);
+
+        assertFalse(tracker.isConsistent());
+        assertFalse(tracker.endCycle(13L, true));
+        assertNull(tracker.getCachedVersion());
+    }
+
+    @Test
+    public void testUpdatedByOthersDuringCycleWithoutUpdates() {
+        UserStoreVersionTracker tracker = new UserStoreVersionTracker(10L);
+
+        // version read at the start of the cycle must be used, not the one read at its end
+        tracker.beginCycle(10L);
+
+        assertFalse(tracker.endCycle(11L, false));
+        assertFalse(tracker.isConsistent());
+
+        // stays inconsistent, even if the version doesn't change later
+        tracker.beginCycle(11L);
+
+        assertFalse(tracker.endCycle(11L, false));
+        assertFalse(tracker.isConsistent());
+    }
+
+    @Test
+    public void testVersionNotAvailable() {
+        UserStoreVersionTracker tracker = new UserStoreVersionTracker(10L);
+
+        tracker.beginCycle(10L);
+
+        assertFalse(tracker.endCycle(null, true));
+        assertFalse(tracker.isConsistent());
+
+        assertFalse(new UserStoreVersionTracker(null).isConsistent());
+    }
+
+    @Test
+    public void testCacheSnapshotMatch() {
+        PolicyMgrUserGroupBuilder.CacheSnapshot snapshot = new PolicyMgrUserGroupBuilder.CacheSnapshot();
+
+        snapshot.policyMgrBaseUrl = "https://admin1:6182";
+        snapshot.userStoreVersion = 10L;
+
+        assertTrue(snapshot.isFor("https://admin1:6182", 10L));
+        assertFalse(snapshot.isFor("https://admin1:6182", 11L)); // updated in Ranger Admin after the snapshot was saved
+        assertFalse(snapshot.isFor("https://admin2:6182", 10L)); // saved from a different Ranger Admin
+        assertFalse(snapshot.isFor("https://admin1:6182", null)); // version not available from Ranger Admin
+    }
+}
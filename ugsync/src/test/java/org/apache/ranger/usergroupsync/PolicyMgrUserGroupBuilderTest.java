@@ -94,7 +94,18 @@ public void addOrUpdateUsersGroups(Map<String, Map<String, String>> sourceGroups
                                            Map<String, Map<String, String>> sourceUsers,
                                            Map<String, Set<String>> sourceGroupUsers,
                                            boolean computeDeletes) throws Throwable {
+                beginUpdate(computeDeletes);
+                addOrUpdateGroups(sourceGroups);
+                addOrUpdateUsers(sourceUsers);
+                endUpdate(sourceGroupUsers);
+        }
+
+        @Override
+        public void beginUpdate(boolean computeDeletes) {
+        }
 
+        @Override
+        public void addOrUpdateUsers(Map<String, Map<String, String>> sourceUsers) {
                 for (String userdn : sourceUsers.keySet()) {
                         //System.out.println("Username: " + sourceUsers.get(userdn).get("original_name"));
                         String username = userNameTransform(sourceUsers.get(userdn).get("original_name"));
@@ -103,6 +114,10 @@ public void addOrUpdateUsersGroups(Map<String, Map<String, String>> sourceGroups
                                 invalidUsers.add(username);
                         }
                 }
+        }
+
+        @Override
+        public void addOrUpdateGroups(Map<String, Map<String, String>> sourceGroups) {
                 for (String groupdn : sourceGroups.keySet()) {
                         //System.out.println("Groupname: " + sourceGroups.get(groupdn).get("original_name"));
                         String groupname = groupNameTransform(sourceGroups.get(groupdn).get("original_name"));
@@ -111,6 +126,10 @@ public void addOrUpdateUsersGroups(Map<String, Map<String, String>> sourceGroups
                                 invalidGroups.add(groupname);
                         }
                 }
+        }
+
+        @Override
+        public void endUpdate(Map<String, Set<String>> sourceGroupUsers) {
                 groupUsers = sourceGroupUsers;
                 //System.out.println("Username: " + user + " and associated groups: " + groups);
         }
@@ -21,6 +21,10 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Map;
 
 import org.apache.directory.server.annotations.CreateLdapConnectionPool;
 import org.apache.directory.server.core.annotations.ApplyLdifFiles;
@@ -466,6 +470,98 @@ public void testGroupsWithNoUsers() throws Throwable {
 		assertEquals(2, sink.getGroupsWithNoUsers());
 	}
 
+	@Test
+	public void testDeltaSyncWithPersistedState() throws Throwable {
+		File stateFile = File.createTempFile("ranger-ugsync-deltasync", ".properties");
+		stateFile.delete();
+		config.setUserNameAttribute("sAMAccountName");
+		config.setUserSearchBase("DC=ranger,DC=qe,DC=hortonworks,DC=com;");
+		config.setUserSearchFilter("cn=*");
+		config.setGroupSearchBase("OU=HdpGroups,OU=HadoopUsers,DC=ranger,DC=qe,DC=hortonworks,DC=com;OU=Groups,DC=ranger,DC=qe,DC=hortonworks,DC=com");
+		config.setGroupSearchFilter("cn=Group2*");
+		config.setUserGroupMemberAttributeName("member");
+		config.setUserObjectClass("organizationalPerson");
+		config.setGroupObjectClass("groupOfNames");
+		config.setGroupSearchEnabled(true);
+		config.setGroupSearchFirstEnabled(true);
+		config.setUserSearchEnabled(true);
+		config.setDeltaSync(true);
+		config.setProperty("ranger.usersync.ldap.deltasync.state.file", stateFile.getAbsolutePath());
+		config.setProperty("ranger.usersync.ldap.deltasync.full.sync.interval.ms", "3600000");
+		try {
+			// first cycle fetches all entries and persists the high-water marks
+			ldapBuilder.init();
+			sink.init();
+			ldapBuilder.updateSink(sink);
+			int totalUsers = sink.getTotalUsers();
+			assertTrue(totalUsers > 0);
+			assertTrue(stateFile.exists());
+
+			// after restart, only entries changed since the previous cycle are fetched
+			ldapBuilder = new LdapUserGroupBuilder();
+			ldapBuilder.init();
+			sink.init();
+			ldapBuilder.updateSink(sink);
+			assertEquals(0, sink.getTotalUsers());
+			assertEquals(0, sink.getTotalGroups());
+
+			// full reconciliation when it is due
+			config.setProperty("ranger.usersync.ldap.deltasync.full.sync.interval.ms", "1");
+			ldapBuilder = new LdapUserGroupBuilder();
+			ldapBuilder.init();
+			sink.init();
+			ldapBuilder.updateSink(sink);
+			assertEquals(totalUsers, sink.getTotalUsers());
+
+			// persisted state is ignored when the sync source configuration changes
+			config.setProperty("ranger.usersync.ldap.deltasync.full.sync.interval.ms", "3600000");
+			config.setGroupSearchFilter("cn=Group1*");
+			ldapBuilder = new LdapUserGroupBuilder();
+			ldapBuilder.init();
+			sink.init();
+			ldapBuilder.updateSink(sink);
+			assertTrue(sink.getTotalUsers() > 0);
+		} finally {
+			config.setDeltaSync(false);
+			config.setProperty("ranger.usersync.ldap.deltasync.state.file", "");
+			config.setProperty("ranger.usersync.ldap.deltasync.full.sync.interval.ms", "");
+			stateFile.delete();
+		}
+	}
+
+	@Test
+	public void testMultipleOUsWithParallelSearch() throws Throwable {
+		config.setUserNameAttribute("sAMAccountName");
+		config.setUserSearchBase("cn=users,DC=ranger,DC=qe,DC=hortonworks,DC=com;ou=HadoopUsers,DC=ranger,DC=qe,DC=hortonworks,DC=com;ou=BusinessUsers,DC=ranger,DC=qe,DC=hortonworks,DC=com");
+		config.setUserSearchFilter("cn=*");
+		config.setGroupSearchBase("OU=HdpGroups,OU=HadoopUsers,DC=ranger,DC=qe,DC=hortonworks,DC=com;OU=Groups,DC=ranger,DC=qe,DC=hortonworks,DC=com");
+		config.setGroupSearchFilter("cn=*");
+		config.setUserGroupMemberAttributeName("member");
+		config.setUserObjectClass("organizationalPerson");
+		config.setGroupObjectClass("groupOfNames");
+		config.setGroupSearchEnabled(true);
+		config.setGroupSearchFirstEnabled(false);
+		try {
+			for (String searchThreads : new String[] {"1", "4"}) {
+				config.setProperty("ranger.usersync.ldap.search.threads", searchThreads);
+				ldapBuilder = new LdapUserGroupBuilder();
+				ldapBuilder.init();
+				sink.init();
+				ldapBuilder.updateSink(sink);
+				assertEquals(111, sink.getTotalUsers());
+				assertEquals(13, sink.getTotalGroups());
+
+				Map<String, Object> searchMetrics = LdapUserGroupBuilder.getLastSyncSearchMetrics();
+				Map<?, ?>           userSearches  = (Map<?, ?>) searchMetrics.get("getUsers");
+				assertEquals(3L, userSearches.get("searchCount"));
+				assertEquals(2L, ((Map<?, ?>) searchMetrics.get("getGroups")).get("searchCount"));
+				assertTrue(searchMetrics.containsKey("getUsers[ou=BusinessUsers,DC=ranger,DC=qe,DC=hortonworks,DC=com]"));
+			}
+		} finally {
+			config.setProperty("ranger.usersync.ldap.search.threads", "");
+		}
+	}
+
 	@After
 	public void shutdown() throws Exception {
 		if (getService().isStarted()) {
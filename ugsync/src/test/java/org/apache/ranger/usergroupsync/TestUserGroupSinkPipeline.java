@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.usergroupsync;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ranger.ugsyncutil.model.UgsyncAuditInfo;
+import org.junit.Test;
+
+public class TestUserGroupSinkPipeline {
+
+	@Test
+	public void testChunkedUpdate() throws Throwable {
+		RecordingChunkedSink  sink     = new RecordingChunkedSink();
+		UserGroupSinkPipeline pipeline = new UserGroupSinkPipeline(sink, true, true, 2, 1);
+
+		for (int i = 0; i < 5; i++) {
+			pipeline.addUser("user" + i, attrs("user" + i));
+		}
+
+		for (int i = 0; i < 3; i++) {
+			pipeline.addGroup("group" + i, attrs("group" + i));
+		}
+
+		Map<String, Set<String>> groupUsers = Collections.singletonMap("group0", Collections.singleton("user0"));
+
+		pipeline.finish(groupUsers);
+
+		// chunks are received in the order they were added; the last partial chunks are sent from finish()
+		assertEquals(Arrays.asList("beginUpdate(true)", "users(2)", "users(2)", "groups(2)", "groups(1)", "users(1)", "endUpdate(1)"), sink.calls);
+		assertEquals(5, sink.users.size());
+		assertEquals(3, sink.groups.size());
+		assertSame(groupUsers, sink.groupUsers);
+	}
+
+	@Test
+	public void testNonChunkedSink() throws Throwable {
+		RecordingSink         sink     = new RecordingSink();
+		UserGroupSinkPipeline pipeline = new UserGroupSinkPipeline(sink, false, true, 2, 1);
+
+		for (int i = 0; i < 5; i++) {
+			pipeline.addUser("user" + i, attrs("user" + i));
+		}
+
+		pipeline.addGroup("group0", attrs("group0"));
+		pipeline.finish(Collections.emptyMap());
+
+		assertEquals(Collections.singletonList("addOrUpdateUsersGroups(1, 5, false)"), sink.calls);
+	}
+
+	@Test
+	public void testDisabledPipeline() throws Throwable {
+		RecordingChunkedSink  sink     = new RecordingChunkedSink();
+		UserGroupSinkPipeline pipeline = new UserGroupSinkPipeline(sink, false, false, 2, 1);
+
+		for (int i = 0; i < 5; i++) {
+			pipeline.addUser("user" + i, attrs("user" + i));
+		}
+
+		pipeline.finish(Collections.emptyMap());
+
+		assertEquals(Collections.singletonList("addOrUpdateUsersGroups(0, 5, false)"), sink.calls);
+	}
+
+	@Test
+	public void testFailedChunk() throws Throwable {
+		RecordingChunkedSink  sink     = new RecordingChunkedSink();
+		UserGroupSinkPipeline pipeline = new UserGroupSinkPipeline(sink, false, true, 2, 1);
+
+		sink.failOnCall = 2; // the first chunk of users
+
+		for (int i = 0; i < 5; i++) {
+			pipeline.addUser("user" + i, attrs("user" + i));
+		}
+
+		try {
+			pipeline.finish(Collections.emptyMap());
+
+			fail("finish() should throw the failure of the sink");
+		} catch (Exception excp) {
+			assertEquals(RecordingChunkedSink.FAILURE_MESSAGE, excp.getMessage());
+		} finally {
+			pipeline.close();
+		}
+
+		// chunks after the failed one, and endUpdate(), are not sent to the sink
+		assertEquals(Arrays.asList("beginUpdate(false)", "users(2)"), sink.calls);
+		assertTrue(sink.users.isEmpty());
+	}
+
+	private static Map<String, String> attrs(String name) {
+		Map<String, String> ret = new HashMap<>();
+
+		ret.put("original_name", name);
+
+		return ret;
+	}
+
+	private static class RecordingSink implements UserGroupSink {
+		final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public void init() {
+		}
+
+		@Override
+		public void postUserGroupAuditInfo(UgsyncAuditInfo ugsyncAuditInfo) {
+		}
+
+		@Override
+		public void addOrUpdateUsersGroups(Map<String, Map<String, String>> sourceGroups, Map<String, Map<String, String>> sourceUsers, Map<String, Set<String>> sourceGroupUsers, boolean computeDeletes) {
+			calls.add("addOrUpdateUsersGroups(" + sourceGroups.size() + ", " + sourceUsers.size() + ", " + computeDeletes + ")");
+		}
+	}
+
+	private static class RecordingChunkedSink extends RecordingSink implements ChunkedUserGroupSink {
+		static final String FAILURE_MESSAGE = "upload failed";
+
+		final Map<String, Map<String, String>> users  = new HashMap<>();
+		final Map<String, Map<String, String>> groups = new HashMap<>();
+		Map<String, Set<String>>               groupUsers;
+		int                                    failOnCall = -1;
+
+		@Override
+		public void beginUpdate(boolean computeDeletes) throws Exception {
+			record("beginUpdate(" + computeDeletes + ")");
+		}
+
+		@Override
+		public void addOrUpdateGroups(Map<String, Map<String, String>> sourceGroups) throws Exception {
+			record("groups(" + sourceGroups.size() + ")");
+
+			groups.putAll(sourceGroups);
+		}
+
+		@Override
+		public void addOrUpdateUsers(Map<String, Map<String, String>> sourceUsers) throws Exception {
+			record("users(" + sourceUsers.size() + ")");
+
+			users.putAll(sourceUsers);
+		}
+
+		@Override
+		public void endUpdate(Map<String, Set<String>> sourceGroupUsers) throws Exception {
+			record("endUpdate(" + sourceGroupUsers.size() + ")");
+
+			groupUsers = sourceGroupUsers;
+		}
+
+		private void record(String call) throws Exception {
+			calls.add(call);
+
+			if (calls.size() == failOnCall) {
+				throw new Exception(FAILURE_MESSAGE);
+			}
+		}
+	}
+}